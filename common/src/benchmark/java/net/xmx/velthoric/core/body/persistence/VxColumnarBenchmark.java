@@ -0,0 +1,129 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.body.persistence;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBufUtil;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.gametest.BodyChunkLayoutTest;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark comparing the record layout of body chunks with the columnar layout of
+ * {@link VxColumnarBodyCodec}.
+ * <p>
+ * The chunks hold the serialized bodies of {@link BodyChunkLayoutTest}, whose schema payloads are shaped like
+ * those of {@link VxBodyCodec#SCHEMA}, including the cases the columnar layout stores as residuals. Only the
+ * chunk layout is measured: the schema payloads are serialized already, as for chunks that were loaded but not
+ * decoded. For 1, 8 and 64 bodies per chunk, every chunk is written and read back with each layout, and the
+ * raw and Zstd-compressed bytes per body and the best encode and decode time per body of all passes are
+ * reported. The compression level is the one of region files. A body that does not read back to its exact
+ * payload fails the benchmark.
+ * <p>
+ * Usage: {@code VxColumnarBenchmark [bodies] [passes]}, by default 64000 bodies per chunk size and 10 passes.
+ * Run it through the {@code columnarBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxColumnarBenchmark {
+
+    private static final int[] BODIES_PER_CHUNK = {1, 8, 64};
+
+    /**
+     * The Zstd level of region files, as used by {@code VxChunkCodec}.
+     */
+    private static final int ZSTD_LEVEL = 5;
+
+    private VxColumnarBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of bodies per chunk size and the number of passes, both optional.
+     */
+    public static void main(String[] args) {
+        int bodies = args.length > 0 ? Integer.parseInt(args[0]) : 64_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        System.out.printf(Locale.ROOT, "%d bodies per chunk size, best of %d passes%n", bodies, passes);
+        System.out.printf(Locale.ROOT, "%-6s %-9s %10s %10s %12s %12s%n", "bodies", "layout", "raw B", "zstd B", "encode", "decode");
+        Random random = new Random(46);
+        for (int perChunk : BODIES_PER_CHUNK) {
+            int chunkCount = Math.max(1, bodies / perChunk);
+            ChunkPos[] positions = new ChunkPos[chunkCount];
+            @SuppressWarnings("unchecked")
+            List<VxSerializedBodyData>[] chunks = new List[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                positions[c] = new ChunkPos(c % 256 - 128, c / 256 - 128);
+                chunks[c] = BodyChunkLayoutTest.createBodies(positions[c], perChunk, random, new HashMap<>());
+            }
+            int total = chunkCount * perChunk;
+
+            for (boolean columnar : new boolean[]{false, true}) {
+                byte[][] encoded = new byte[chunkCount][];
+                long bestEncode = Long.MAX_VALUE;
+                long bestDecode = Long.MAX_VALUE;
+                // The first pass warms up the JIT
+                for (int pass = 0; pass <= passes; pass++) {
+                    long start = System.nanoTime();
+                    for (int c = 0; c < chunkCount; c++) {
+                        encoded[c] = columnar ? BodyChunkLayoutTest.writeColumnar(positions[c], chunks[c]) : BodyChunkLayoutTest.writeRecords(chunks[c]);
+                    }
+                    long written = System.nanoTime();
+                    @SuppressWarnings("unchecked")
+                    List<VxSerializedBodyData>[] decoded = new List[chunkCount];
+                    for (int c = 0; c < chunkCount; c++) {
+                        decoded[c] = BodyChunkLayoutTest.readChunk(positions[c], encoded[c]);
+                    }
+                    long read = System.nanoTime();
+                    if (pass > 0) {
+                        bestEncode = Math.min(bestEncode, written - start);
+                        bestDecode = Math.min(bestDecode, read - written);
+                    }
+
+                    for (int c = 0; c < chunkCount; c++) {
+                        verify(chunks[c], decoded[c], columnar);
+                        BodyChunkLayoutTest.release(decoded[c]);
+                    }
+                }
+
+                long raw = 0;
+                long compressed = 0;
+                for (byte[] chunk : encoded) {
+                    raw += chunk.length;
+                    compressed += Zstd.compress(chunk, ZSTD_LEVEL).length;
+                }
+                System.out.printf(Locale.ROOT, "%-6d %-9s %10.1f %10.1f %9.1f ns %9.1f ns%n", perChunk, columnar ? "columnar" : "record",
+                        (double) raw / total, (double) compressed / total, (double) bestEncode / total, (double) bestDecode / total);
+            }
+            for (List<VxSerializedBodyData> chunk : chunks) {
+                BodyChunkLayoutTest.release(chunk);
+            }
+        }
+    }
+
+    private static void verify(List<VxSerializedBodyData> expected, List<VxSerializedBodyData> actual, boolean columnar) {
+        if (expected.size() != actual.size()) {
+            fail(actual.size() + " of " + expected.size() + " bodies were read in the " + (columnar ? "columnar" : "record") + " layout");
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            VxSerializedBodyData a = expected.get(i);
+            VxSerializedBodyData b = actual.get(i);
+            if (!a.id().equals(b.id()) || !a.typeId().equals(b.typeId()) || !ByteBufUtil.equals(a.bodyData(), b.bodyData())) {
+                fail("body " + a.id() + " changed in the " + (columnar ? "columnar" : "record") + " layout");
+            }
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.constraint.persistence;
+
+import com.github.stephengold.joltjni.*;
+import com.github.stephengold.joltjni.enumerate.*;
+import net.xmx.velthoric.gametest.ConstraintSettingsTest;
+import net.xmx.velthoric.natives.impl.NativeJolt;
+import net.xmx.velthoric.natives.systems.NativeManager;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark comparing the binary constraint settings format of {@link VxConstraintSettingsCodec}
+ * with the legacy Jolt text object stream.
+ * <p>
+ * The benchmark loads the Jolt natives, creates a welded-build-like mix of constraints (mostly fixed, with
+ * hinges, sliders, swing-twists, six-DOF and the remaining subtypes, see {@link ConstraintSettingsTest#createSample})
+ * and encodes and decodes all of them with both formats. The best pass is reported in nanoseconds and bytes per constraint. Every decoded settings object
+ * must produce the same object stream as its original, otherwise the benchmark fails.
+ * <p>
+ * Usage: {@code VxConstraintSettingsBenchmark [constraints] [passes] [nativesDir]}, by default 50000
+ * constraints and 5 passes. Run it through the {@code constraintBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxConstraintSettingsBenchmark {
+
+    /**
+     * The subtypes of the generated constraints, weighted by how often they appear in welded builds.
+     */
+    private static final EConstraintSubType[] MIX = {
+            EConstraintSubType.Fixed, EConstraintSubType.Fixed, EConstraintSubType.Fixed, EConstraintSubType.Fixed,
+            EConstraintSubType.Fixed, EConstraintSubType.Fixed, EConstraintSubType.Hinge, EConstraintSubType.Hinge,
+            EConstraintSubType.Slider, EConstraintSubType.SwingTwist, EConstraintSubType.SixDof,
+            EConstraintSubType.Point, EConstraintSubType.Distance, EConstraintSubType.Cone,
+            EConstraintSubType.Gear, EConstraintSubType.Pulley, EConstraintSubType.RackAndPinion
+    };
+
+    private VxConstraintSettingsBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of constraints, the number of passes and the native extraction directory, all optional.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Path nativesDir = Path.of(args.length > 2 ? args[2] : "build");
+
+        NativeManager.register(new NativeJolt());
+        NativeManager.initialize(nativesDir);
+        Jolt.registerDefaultAllocator();
+        if (!Jolt.newFactory()) {
+            throw new IllegalStateException("Jolt Factory could not be created.");
+        }
+        Jolt.registerTypes();
+
+        Random random = new Random(42);
+        TwoBodyConstraintSettings[] settings = new TwoBodyConstraintSettings[count];
+        EConstraintSubType[] subTypes = new EConstraintSubType[count];
+        for (int i = 0; i < count; i++) {
+            subTypes[i] = MIX[random.nextInt(MIX.length)];
+            settings[i] = ConstraintSettingsTest.createSample(subTypes[i], random);
+        }
+
+        byte[][] streams = new byte[count][];
+        byte[][] binaries = new byte[count][];
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        long streamBytes = 0;
+        long binaryBytes = 0;
+        boolean verified = false;
+
+        for (int pass = 0; pass < passes; pass++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < count; i++) streams[i] = VxConstraintSettingsCodec.encodeStream(settings[i]);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < count; i++) binaries[i] = VxConstraintSettingsCodec.encode(settings[i], subTypes[i]);
+            long t2 = System.nanoTime();
+
+            TwoBodyConstraintSettings[] fromStream = new TwoBodyConstraintSettings[count];
+            TwoBodyConstraintSettings[] fromBinary = new TwoBodyConstraintSettings[count];
+            long t3 = System.nanoTime();
+            for (int i = 0; i < count; i++) fromStream[i] = VxConstraintSettingsCodec.decodeStream(streams[i]);
+            long t4 = System.nanoTime();
+            for (int i = 0; i < count; i++) fromBinary[i] = VxConstraintSettingsCodec.decode(binaries[i]);
+            long t5 = System.nanoTime();
+
+            best[0] = Math.min(best[0], t1 - t0);
+            best[1] = Math.min(best[1], t2 - t1);
+            best[2] = Math.min(best[2], t4 - t3);
+            best[3] = Math.min(best[3], t5 - t4);
+
+            if (!verified) {
+                for (int i = 0; i < count; i++) {
+                    streamBytes += streams[i].length;
+                    binaryBytes += binaries[i].length;
+                    if (fromBinary[i] == null
+                            || !Arrays.equals(streams[i], VxConstraintSettingsCodec.encodeStream(fromBinary[i]))
+                            || !Arrays.equals(binaries[i], VxConstraintSettingsCodec.encode(fromBinary[i], subTypes[i]))) {
+                        System.err.println("FAIL: " + subTypes[i] + " constraint " + i + " differs after a binary round trip");
+                        System.exit(1);
+                    }
+                }
+                verified = true;
+            }
+            for (int i = 0; i < count; i++) {
+                if (fromStream[i] != null) fromStream[i].close();
+                fromBinary[i].close();
+            }
+        }
+        for (TwoBodyConstraintSettings s : settings) s.close();
+
+        System.out.printf(Locale.ROOT, "%d constraints, best of %d passes%n", count, passes);
+        System.out.printf(Locale.ROOT, "%-8s %14s %14s%n", "", "stream", "binary");
+        System.out.printf(Locale.ROOT, "%-8s %12.1f B %12.1f B%n", "size", (double) streamBytes / count, (double) binaryBytes / count);
+        System.out.printf(Locale.ROOT, "%-8s %11.1f ns %11.1f ns%n", "encode", (double) best[0] / count, (double) best[1] / count);
+        System.out.printf(Locale.ROOT, "%-8s %11.1f ns %11.1f ns%n", "decode", (double) best[2] / count, (double) best[3] / count);
+    }
+}
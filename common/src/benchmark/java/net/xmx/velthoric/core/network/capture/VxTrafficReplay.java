@@ -0,0 +1,509 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.capture;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.core.network.internal.VxStateOutbox;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * A headless benchmark that replays a capture of {@link VxTrafficRecorder} through the body state pipeline.
+ * <p>
+ * Every frame runs the same stages as the live server with aggregation enabled, using the production code
+ * wherever it does not depend on a running game:
+ * <ol>
+ *     <li><b>encode:</b> one section per dirty chunk via {@link VxPacketFactory#writeStateRecord}.</li>
+ *     <li><b>dispatch:</b> sections are offered to each watcher's {@link VxStateOutbox} and drained into
+ *     size-bounded payloads, exactly like {@code VxNetworkDispatcher#dispatchAggregatedStates}.</li>
+ *     <li><b>compress:</b> every payload via {@link VxPacketFactory#compressDirect}.</li>
+ *     <li><b>decode:</b> every payload is decompressed and parsed like {@link S2CUpdateBodyStateBatchPacket}
+ *     does on the client. The client data store depends on the native physics library, so the parsed
+ *     states are written into plain per-player arrays of the same shape instead.</li>
+ * </ol>
+ * All player channels are treated as writable. The report lists the payload bytes before and after
+ * compression, and the CPU time and heap allocation of every stage on the replay thread. Pooled direct
+ * buffers are off-heap and therefore not part of the allocation figures.
+ * <p>
+ * The pipeline feeds the {@link VxNetworkMetrics} at the same points as the live server. Every pass replays
+ * the capture twice, with metrics disabled and enabled, and the minimum CPU time of both modes across all
+ * passes yields the overhead of metrics collection.
+ * <p>
+ * Usage: {@code VxTrafficReplay <capture file> [passes]}. Early passes warm up the JIT; the stage table
+ * shows the last pass with metrics enabled. The capture is fully loaded before the first pass, so file
+ * I/O is never part of the measurement. Run it through the {@code replayNetworkCapture} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxTrafficReplay {
+
+    /**
+     * Maximum uncompressed bytes of a single aggregated state packet, matching the dispatcher.
+     */
+    private static final int MAX_AGGREGATE_PAYLOAD_SIZE = 32 * 1024;
+
+    /**
+     * Packet ID under which replayed state packets are counted in the metrics. The real IDs are only
+     * assigned when the mod's packets are registered, which does not happen in a headless replay.
+     */
+    private static final int REPLAY_PACKET_ID = 0;
+
+    /**
+     * Indices of the measured stages, in pipeline order.
+     */
+    private static final int STAGE_ENCODE = 0, STAGE_DISPATCH = 1, STAGE_COMPRESS = 2, STAGE_DECODE = 3;
+
+    /**
+     * Report names of the stages.
+     */
+    private static final String[] STAGE_NAMES = {"encode", "dispatch", "compress", "decode"};
+
+    /**
+     * Source of per-thread CPU time.
+     */
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Source of per-thread heap allocation, or null if the JVM does not support it.
+     */
+    private final com.sun.management.ThreadMXBean allocations;
+
+    /**
+     * The replay thread, the only thread whose work is measured.
+     */
+    private final long threadId = Thread.currentThread().getId();
+
+    /**
+     * The metrics registry fed by the replayed pipeline.
+     */
+    private final VxNetworkMetrics metrics = VxNetworkMetrics.getInstance();
+
+    /**
+     * The decompressed frames of the capture.
+     */
+    private final List<ByteBuf> frames;
+
+    /**
+     * The vertical origin of chunk-relative positions.
+     */
+    private final double minBuildHeight;
+
+    /**
+     * One coalescing outbox per captured player ID.
+     */
+    private final Int2ObjectMap<VxStateOutbox> outboxes = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * The mirrored client state of every captured player ID.
+     */
+    private final Int2ObjectMap<ClientMirror> clients = new Int2ObjectOpenHashMap<>();
+
+    /**
+     * Reusable target of client-side decompression.
+     */
+    private ByteBuffer decompressionBuffer = ByteBuffer.allocateDirect(512 * 1024);
+
+    /**
+     * CPU time spent in each stage during the current pass.
+     */
+    private final long[] stageCpuNanos = new long[STAGE_NAMES.length];
+
+    /**
+     * Heap bytes allocated in each stage during the current pass.
+     */
+    private final long[] stageAllocatedBytes = new long[STAGE_NAMES.length];
+
+    /**
+     * Totals of the current pass.
+     */
+    private long bodyRecords, sections, packets, rawBytes, compressedBytes;
+
+    /**
+     * Creates a replay over already loaded frames.
+     *
+     * @param frames         The decompressed frames of the capture.
+     * @param minBuildHeight The minimum build height of the captured level.
+     */
+    private VxTrafficReplay(List<ByteBuf> frames, int minBuildHeight) {
+        this.frames = frames;
+        this.minBuildHeight = minBuildHeight;
+        this.allocations = threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported()
+                ? sun : null;
+        if (allocations != null) {
+            allocations.setThreadAllocatedMemoryEnabled(true);
+        }
+        threads.setThreadCpuTimeEnabled(true);
+    }
+
+    /**
+     * Entry point of the replay benchmark.
+     *
+     * @param args The capture file and optionally the number of passes.
+     * @throws IOException If the capture cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args[0].isEmpty()) {
+            System.err.println("Usage: VxTrafficReplay <capture file> [passes]");
+            System.exit(2);
+            return;
+        }
+        Path file = Path.of(args[0]);
+        int passes = args.length > 1 ? Math.max(1, Integer.parseInt(args[1])) : 3;
+
+        ObjectArrayList<ByteBuf> frames = new ObjectArrayList<>();
+        int minBuildHeight = load(file, frames);
+
+        VxTrafficReplay replay = new VxTrafficReplay(frames, minBuildHeight);
+        VxNetworkMetrics metrics = VxNetworkMetrics.getInstance();
+        metrics.registerPacketType(REPLAY_PACKET_ID, "S2CUpdateBodyStateBatchPacket (replay)");
+        long bestWithout = Long.MAX_VALUE;
+        long bestWith = Long.MAX_VALUE;
+        for (int pass = 1; pass <= passes; pass++) {
+            metrics.setEnabled(false);
+            replay.reset();
+            replay.run();
+            bestWithout = Math.min(bestWithout, replay.totalCpuNanos());
+
+            metrics.setEnabled(true);
+            metrics.reset();
+            replay.reset();
+            replay.run();
+            bestWith = Math.min(bestWith, replay.totalCpuNanos());
+        }
+        replay.report(file, passes, bestWithout, bestWith);
+    }
+
+    /**
+     * Reads and decompresses all frames of a capture.
+     *
+     * @param file   The capture file.
+     * @param frames Receives one heap buffer per frame.
+     * @return The minimum build height stored in the header.
+     * @throws IOException If the file is not a readable capture.
+     */
+    private static int load(Path file, List<ByteBuf> frames) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            if (in.readInt() != VxTrafficRecorder.MAGIC) {
+                throw new IOException("Not a network capture: " + file);
+            }
+            int version = in.readInt();
+            if (version != VxTrafficRecorder.VERSION) {
+                throw new IOException("Unsupported capture version " + version + ": " + file);
+            }
+            int minBuildHeight = in.readInt();
+
+            while (true) {
+                int rawLength;
+                try {
+                    rawLength = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] compressed = new byte[in.readInt()];
+                in.readFully(compressed);
+                frames.add(Unpooled.wrappedBuffer(Zstd.decompress(compressed, rawLength)));
+            }
+            return minBuildHeight;
+        }
+    }
+
+    /**
+     * Clears all counters and the per-player state of a previous pass.
+     */
+    private void reset() {
+        Arrays.fill(stageCpuNanos, 0);
+        Arrays.fill(stageAllocatedBytes, 0);
+        bodyRecords = sections = packets = rawBytes = compressedBytes = 0;
+        outboxes.clear();
+        clients.clear();
+    }
+
+    /**
+     * Replays all frames once.
+     */
+    private void run() {
+        ObjectArrayList<ByteBuf> chunkSections = new ObjectArrayList<>();
+        ObjectArrayList<int[]> chunkWatchers = new ObjectArrayList<>();
+        ByteBuf aggregate = PooledByteBufAllocator.DEFAULT.directBuffer(MAX_AGGREGATE_PAYLOAD_SIZE);
+        try {
+            for (ByteBuf frame : frames) {
+                frame.readerIndex(0);
+                long timestamp = frame.readLong();
+                // Player positions are not consumed by the state pipeline yet
+                frame.skipBytes(frame.readInt() * (4 + 3 * 8));
+
+                // Stage 1: one section per dirty chunk
+                long frameCpu = cpuTime();
+                long cpu = frameCpu;
+                long alloc = allocatedBytes();
+                int chunkCount = frame.readInt();
+                int frameBodies = 0;
+                for (int i = 0; i < chunkCount; i++) {
+                    long chunkKey = frame.readLong();
+                    int[] watchers = new int[frame.readInt()];
+                    for (int w = 0; w < watchers.length; w++) {
+                        watchers[w] = frame.readInt();
+                    }
+                    int bodyCount = frame.readInt();
+                    ByteBuf section = PooledByteBufAllocator.DEFAULT.directBuffer(12 + bodyCount * 64);
+                    encodeSection(frame, section, chunkKey, bodyCount);
+                    chunkSections.add(section);
+                    chunkWatchers.add(watchers);
+                    frameBodies += bodyCount;
+                }
+                bodyRecords += frameBodies;
+                sections += chunkCount;
+                stop(STAGE_ENCODE, cpu, alloc);
+
+                // Stage 2: coalesce per player, then drain into payloads (compression and decode are timed separately)
+                cpu = cpuTime();
+                alloc = allocatedBytes();
+                try {
+                    for (int i = 0; i < chunkSections.size(); i++) {
+                        for (int playerId : chunkWatchers.get(i)) {
+                            outboxes.computeIfAbsent(playerId, k -> new VxStateOutbox()).offer(chunkSections.get(i), timestamp);
+                        }
+                    }
+                } finally {
+                    for (ByteBuf section : chunkSections) {
+                        section.release();
+                    }
+                    chunkSections.clear();
+                    chunkWatchers.clear();
+                }
+
+                for (Int2ObjectMap.Entry<VxStateOutbox> entry : outboxes.int2ObjectEntrySet()) {
+                    ClientMirror client = clients.computeIfAbsent(entry.getIntKey(), ClientMirror::new);
+                    entry.getValue().drain(aggregate, MAX_AGGREGATE_PAYLOAD_SIZE, payload -> {
+                        rawBytes += payload.readableBytes();
+                        packets++;
+
+                        // Stage 3: compression
+                        long innerCpu = cpuTime();
+                        long innerAlloc = allocatedBytes();
+                        ByteBuf compressed = VxPacketFactory.compressDirect(payload);
+                        int compressedSize = compressed.readableBytes();
+                        metrics.recordCompression(VxNetworkMetrics.PayloadKind.STATE, payload.readableBytes(), compressedSize);
+                        stop(STAGE_COMPRESS, innerCpu, innerAlloc);
+                        compressedBytes += compressedSize;
+
+                        // Stage 4: client decode
+                        long decodeCpu = cpuTime();
+                        long decodeAlloc = allocatedBytes();
+                        try {
+                            decode(compressed, client);
+                        } finally {
+                            compressed.release();
+                        }
+                        stop(STAGE_DECODE, decodeCpu, decodeAlloc);
+
+                        // Exclude the nested stages from the dispatch stage
+                        stageCpuNanos[STAGE_DISPATCH] -= cpuTime() - innerCpu;
+                        stageAllocatedBytes[STAGE_DISPATCH] -= allocatedBytes() - innerAlloc;
+
+                        // Packet ID byte plus the length prefix, like the encoded packet in VxNetworking
+                        metrics.recordPacketSent(client.uuid, client.name, REPLAY_PACKET_ID, 1 + 3 + compressedSize);
+                    });
+                }
+                metrics.recordSyncPass(cpuTime() - frameCpu, 0, frameBodies);
+                metrics.sampleRates(System.nanoTime());
+                stop(STAGE_DISPATCH, cpu, alloc);
+            }
+        } finally {
+            aggregate.release();
+        }
+    }
+
+    /**
+     * Writes the section of one chunk from its captured body records.
+     */
+    private void encodeSection(ByteBuf frame, ByteBuf section, long chunkKey, int bodyCount) {
+        double baseX = ChunkPos.getX(chunkKey) << 4;
+        double baseZ = ChunkPos.getZ(chunkKey) << 4;
+
+        section.writeLong(chunkKey);
+        section.writeInt(bodyCount);
+        for (int b = 0; b < bodyCount; b++) {
+            VxPacketFactory.writeStateRecord(section, frame.readInt(), frame.readBoolean(),
+                    frame.readDouble(), frame.readDouble(), frame.readDouble(),
+                    frame.readFloat(), frame.readFloat(), frame.readFloat(), frame.readFloat(),
+                    frame.readFloat(), frame.readFloat(), frame.readFloat(),
+                    baseX, minBuildHeight, baseZ);
+        }
+    }
+
+    /**
+     * Decompresses and parses one state payload the way the client does.
+     */
+    private void decode(ByteBuf compressed, ClientMirror client) {
+        ByteBuffer compressedNio = compressed.nioBuffer();
+        int size = (int) Zstd.decompressedSize(compressedNio);
+        if (decompressionBuffer.capacity() < size) {
+            decompressionBuffer = ByteBuffer.allocateDirect(size);
+        }
+        decompressionBuffer.clear();
+        Zstd.decompressDirectByteBuffer(decompressionBuffer, 0, size, compressedNio, 0, compressedNio.remaining());
+        ByteBuffer db = decompressionBuffer.duplicate();
+        db.limit(size);
+
+        long timestamp = db.getLong();
+        while (db.hasRemaining()) {
+            long chunkKey = db.getLong();
+            int count = db.getInt();
+            double baseX = ChunkPos.getX(chunkKey) << 4;
+            double baseZ = ChunkPos.getZ(chunkKey) << 4;
+
+            for (int i = 0; i < count; i++) {
+                int slot = VxNetworkIdAllocator.indexOf(db.getInt());
+                byte record = db.get();
+                client.ensureCapacity(slot + 1);
+                client.timestamp[slot] = timestamp;
+                if (record == S2CUpdateBodyStateBatchPacket.RECORD_RESTING) {
+                    client.posX[slot] = db.getDouble();
+                    client.posY[slot] = db.getDouble();
+                    client.posZ[slot] = db.getDouble();
+                    client.readRotation(slot, db);
+                    client.velX[slot] = client.velY[slot] = client.velZ[slot] = 0f;
+                } else {
+                    client.posX[slot] = baseX + db.getFloat();
+                    client.posY[slot] = minBuildHeight + db.getFloat();
+                    client.posZ[slot] = baseZ + db.getFloat();
+                    client.readRotation(slot, db);
+                    client.velX[slot] = db.getFloat();
+                    client.velY[slot] = db.getFloat();
+                    client.velZ[slot] = db.getFloat();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The CPU time of all stages of the last pass.
+     */
+    private long totalCpuNanos() {
+        long total = 0;
+        for (long nanos : stageCpuNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * Adds the CPU time and allocations since the given start values to a stage.
+     */
+    private void stop(int stage, long startCpu, long startAlloc) {
+        stageCpuNanos[stage] += cpuTime() - startCpu;
+        stageAllocatedBytes[stage] += allocatedBytes() - startAlloc;
+    }
+
+    /**
+     * @return The CPU time of the replay thread in nanoseconds.
+     */
+    private long cpuTime() {
+        return threads.getCurrentThreadCpuTime();
+    }
+
+    /**
+     * @return The heap bytes allocated by the replay thread so far, or 0 if unsupported.
+     */
+    private long allocatedBytes() {
+        return allocations != null ? allocations.getThreadAllocatedBytes(threadId) : 0;
+    }
+
+    /**
+     * Prints the results of the last pass.
+     */
+    private void report(Path file, int passes, long cpuWithoutMetrics, long cpuWithMetrics) {
+        int frameCount = Math.max(1, frames.size());
+        System.out.printf(Locale.ROOT, "Velthoric network replay of %s (%d passes, last one reported)%n", file, passes);
+        System.out.printf(Locale.ROOT, "  frames %d, chunk sections %d, body records %d, receiving players %d%n",
+                frames.size(), sections, bodyRecords, outboxes.size());
+        System.out.printf(Locale.ROOT, "  packets %d, payload bytes %d raw / %d compressed (ratio %.2f), %.1f compressed bytes per record%n",
+                packets, rawBytes, compressedBytes,
+                compressedBytes == 0 ? 0.0 : (double) rawBytes / compressedBytes,
+                bodyRecords == 0 ? 0.0 : (double) compressedBytes / bodyRecords);
+        System.out.printf(Locale.ROOT, "  %-10s %12s %14s %16s%n", "stage", "cpu ms", "cpu us/frame",
+                allocations != null ? "heap alloc bytes" : "heap alloc n/a");
+        for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+            System.out.printf(Locale.ROOT, "  %-10s %12.3f %14.3f %16d%n", STAGE_NAMES[stage],
+                    stageCpuNanos[stage] / 1e6, stageCpuNanos[stage] / 1e3 / frameCount, stageAllocatedBytes[stage]);
+        }
+        System.out.printf(Locale.ROOT, "  metrics overhead %+.2f%% (best pass %.3f ms without, %.3f ms with metrics)%n",
+                (cpuWithMetrics - cpuWithoutMetrics) * 100.0 / Math.max(1, cpuWithoutMetrics),
+                cpuWithoutMetrics / 1e6, cpuWithMetrics / 1e6);
+    }
+
+    /**
+     * The parsed state of all bodies as seen by one client, indexed by the dense network index.
+     */
+    private static final class ClientMirror {
+        // Synthetic identity under which the player is counted in the metrics
+        final UUID uuid;
+        final String name;
+
+        // Same shape as the state1 columns of the client data container
+        long[] timestamp = new long[0];
+        double[] posX = new double[0], posY = new double[0], posZ = new double[0];
+        float[] rotX = new float[0], rotY = new float[0], rotZ = new float[0], rotW = new float[0];
+        float[] velX = new float[0], velY = new float[0], velZ = new float[0];
+
+        ClientMirror(int playerId) {
+            this.uuid = new UUID(0L, playerId);
+            this.name = "player-" + playerId;
+        }
+
+        /**
+         * Grows all columns to hold at least {@code required} network IDs.
+         */
+        void ensureCapacity(int required) {
+            if (required <= timestamp.length) return;
+            int capacity = Math.max(required, timestamp.length * 2);
+            timestamp = Arrays.copyOf(timestamp, capacity);
+            posX = Arrays.copyOf(posX, capacity);
+            posY = Arrays.copyOf(posY, capacity);
+            posZ = Arrays.copyOf(posZ, capacity);
+            rotX = Arrays.copyOf(rotX, capacity);
+            rotY = Arrays.copyOf(rotY, capacity);
+            rotZ = Arrays.copyOf(rotZ, capacity);
+            rotW = Arrays.copyOf(rotW, capacity);
+            velX = Arrays.copyOf(velX, capacity);
+            velY = Arrays.copyOf(velY, capacity);
+            velZ = Arrays.copyOf(velZ, capacity);
+        }
+
+        /**
+         * Reads a rotation quaternion into the columns of a body.
+         */
+        void readRotation(int slot, ByteBuffer db) {
+            rotX[slot] = db.getFloat();
+            rotY[slot] = db.getFloat();
+            rotZ[slot] = db.getFloat();
+            rotW[slot] = db.getFloat();
+        }
+    }
+}
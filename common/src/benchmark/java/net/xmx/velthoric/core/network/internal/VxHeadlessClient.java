@@ -0,0 +1,63 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import net.minecraft.resources.ResourceLocation;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.VxBodyType;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
+import net.xmx.velthoric.init.VxMainClass;
+import net.xmx.velthoric.natives.impl.NativeJolt;
+import net.xmx.velthoric.natives.systems.NativeManager;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Sets up client body stores for the network benchmarks without a running Minecraft client.
+ * <p>
+ * Bodies are added to a {@link VxClientBodyDataStore} the way {@code VxClientBodyManager} does when a
+ * spawn arrives, so that the client-side data layout and lookups are the real ones.
+ *
+ * @author xI-Mx-Ix
+ */
+final class VxHeadlessClient {
+
+    /**
+     * A plain body type without providers, behaviors or persistence.
+     */
+    static final VxBodyType<VxBody> BODY_TYPE = VxBodyType.Builder.<VxBody>create(VxBody::new)
+            .noSummon()
+            .setPersistent(false)
+            .build(ResourceLocation.fromNamespaceAndPath(VxMainClass.MODID, "benchmark_body"));
+
+    private VxHeadlessClient() {
+    }
+
+    /**
+     * Loads the Jolt natives, which the client data containers need.
+     *
+     * @param nativesDir The directory to extract the natives to.
+     */
+    static void loadNatives(Path nativesDir) {
+        NativeManager.register(new NativeJolt());
+        NativeManager.initialize(nativesDir);
+    }
+
+    /**
+     * Adds a new body to a client store and binds it to a network ID.
+     *
+     * @param store     The client store.
+     * @param networkId The network ID of the body.
+     * @return The body.
+     */
+    static VxBody addBody(VxClientBodyDataStore store, int networkId) {
+        VxBody body = new VxBody(BODY_TYPE, UUID.randomUUID());
+        int index = store.addBody(body, networkId);
+        body.setDataStoreIndex(store, index);
+        body.setNetworkId(networkId);
+        return body;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataContainer;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
+import net.xmx.velthoric.core.body.tracking.VxSpatialManager;
+import net.xmx.velthoric.core.network.internal.packet.S2CRemoveBodyBatchPacket;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark of body removal batches.
+ * <p>
+ * Two scenes remove the same number of resting bodies from a client store: an area unload, where the
+ * bodies hold densely allocated network IDs and fill whole chunks, and a scattered removal out of an ID
+ * space eight times larger with mixed generations, as after long churn. Each scene is encoded as the
+ * former raw int list, as a {@link VxRemovalSet} and, for the area, as chunk shortcuts. The size of each
+ * encoding and the time to decode it and remove the bodies from a {@link VxClientBodyDataStore} are reported;
+ * shortcuts are applied with one pass over the bodies, as {@code VxClientBodyManager#removeRestingBodiesInChunks}
+ * does. A body left in the store fails the benchmark.
+ * <p>
+ * Usage: {@code VxRemovalBenchmark [bodies] [passes] [nativesDir]}, by default 50000 bodies and 5 passes.
+ * Run it through the {@code removalBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxRemovalBenchmark {
+
+    private static final int BODIES_PER_CHUNK = 32;
+
+    private VxRemovalBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of bodies, the number of passes and the native extraction directory, all optional.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        VxHeadlessClient.loadNatives(Path.of(args.length > 2 ? args[2] : "build"));
+
+        Random random = new Random(40);
+        int[] area = new int[count];
+        for (int i = 0; i < count; i++) {
+            area[i] = VxNetworkIdAllocator.pack(i + 1, 0);
+        }
+        int[] scattered = new int[count];
+        boolean[] used = new boolean[count * 8 + 1];
+        for (int i = 0; i < count; i++) {
+            int index;
+            do {
+                index = 1 + random.nextInt(count * 8);
+            } while (used[index]);
+            used[index] = true;
+            scattered[i] = VxNetworkIdAllocator.pack(index, random.nextInt(1 << VxNetworkIdAllocator.GENERATION_BITS));
+        }
+
+        System.out.printf(Locale.ROOT, "%d bodies, best of %d passes%n", count, passes);
+        System.out.printf(Locale.ROOT, "%-10s %-15s %12s %10s %12s%n", "scene", "encoding", "bytes", "B/body", "apply");
+        run("area", area, passes, true);
+        run("scattered", scattered, passes, false);
+    }
+
+    /**
+     * Measures all encodings of one scene.
+     */
+    private static void run(String scene, int[] ids, int passes, boolean shortcuts) {
+        byte[] intList = encode(ids, false);
+        byte[] removalSet = encode(ids, true);
+        report(scene, "int list", intList.length, ids.length, measure(ids, passes, intList, Mode.INT_LIST));
+        report(scene, "removal set", removalSet.length, ids.length, measure(ids, passes, removalSet, Mode.REMOVAL_SET));
+        if (shortcuts) {
+            byte[] chunks = encodeChunks(ids.length);
+            report(scene, "chunk shortcut", chunks.length, ids.length, measure(ids, passes, chunks, Mode.CHUNKS));
+        }
+    }
+
+    private enum Mode {INT_LIST, REMOVAL_SET, CHUNKS}
+
+    /**
+     * Fills a fresh store with the bodies of a scene, then decodes the batch and removes them.
+     *
+     * @return The best decode and apply time in nanoseconds.
+     */
+    private static long measure(int[] ids, int passes, byte[] batch, Mode mode) {
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass <= passes; pass++) {
+            VxClientBodyDataStore store = new VxClientBodyDataStore();
+            VxBody[] bodies = new VxBody[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                bodies[i] = VxHeadlessClient.addBody(store, ids[i]);
+            }
+            VxClientBodyDataContainer c = store.clientCurrent();
+            for (int i = 0; i < ids.length; i++) {
+                int index = bodies[i].getDataStoreIndex();
+                ChunkPos chunk = chunkOf(i);
+                c.isResting[index] = true;
+                c.state1_posX[index] = chunk.getMiddleBlockX();
+                c.state1_posY[index] = 64.0;
+                c.state1_posZ[index] = chunk.getMiddleBlockZ();
+            }
+
+            long start = System.nanoTime();
+            VxByteBuf buf = new VxByteBuf(Unpooled.wrappedBuffer(batch));
+            switch (mode) {
+                case INT_LIST -> {
+                    int n = buf.readVarInt();
+                    for (int i = 0; i < n; i++) store.removeBodyByNetworkId(buf.readInt());
+                }
+                case REMOVAL_SET -> {
+                    buf.readVarInt(); // No chunk shortcuts
+                    IntArrayList removed = new IntArrayList();
+                    VxRemovalSet.read(buf, removed::add);
+                    removed.forEach(store::removeBodyByNetworkId);
+                }
+                case CHUNKS -> {
+                    int n = buf.readVarInt();
+                    LongOpenHashSet chunkKeys = new LongOpenHashSet(n);
+                    for (int i = 0; i < n; i++) chunkKeys.add(buf.readLong());
+                    IntArrayList doomed = new IntArrayList();
+                    VxClientBodyDataContainer current = store.clientCurrent();
+                    for (VxBody body : bodies) {
+                        int index = body.getDataStoreIndex();
+                        if (index == -1 || index >= current.getCapacity() || !current.isResting[index]) continue;
+                        if (chunkKeys.contains(VxSpatialManager.calculateChunkKey(current.state1_posX[index], current.state1_posZ[index]))) {
+                            doomed.add(body.getNetworkId());
+                        }
+                    }
+                    doomed.forEach(store::removeBodyByNetworkId);
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            if (pass > 0) best = Math.min(best, nanos);
+
+            for (int id : ids) {
+                if (store.getIndexForNetworkId(id) != -1) {
+                    System.err.println("FAIL: body " + id + " survived the " + mode + " batch");
+                    System.exit(1);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Encodes the IDs as the former raw int list or as a removal batch packet.
+     */
+    private static byte[] encode(int[] ids, boolean removalSet) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            if (removalSet) {
+                new S2CRemoveBodyBatchPacket(IntArrayList.wrap(ids.clone()), new LongArrayList()).encode(buf);
+            } else {
+                buf.writeVarInt(ids.length);
+                for (int id : ids) buf.writeInt(id);
+            }
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Encodes a removal batch of the chunks holding the first {@code count} bodies.
+     */
+    private static byte[] encodeChunks(int count) {
+        LongArrayList chunks = new LongArrayList();
+        for (int i = 0; i < count; i += BODIES_PER_CHUNK) {
+            chunks.add(chunkOf(i).toLong());
+        }
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            new S2CRemoveBodyBatchPacket(new IntArrayList(), chunks).encode(buf);
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * @return The chunk of the i-th body. Chunks are filled in rows of 64.
+     */
+    private static ChunkPos chunkOf(int body) {
+        int chunk = body / BODIES_PER_CHUNK;
+        return new ChunkPos(chunk % 64, chunk / 64);
+    }
+
+    private static void report(String scene, String encoding, int bytes, int bodies, long nanos) {
+        System.out.printf(Locale.ROOT, "%-10s %-15s %12d %10.2f %9.2f ms%n",
+                scene, encoding, bytes, (double) bytes / bodies, nanos / 1e6);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataContainer;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
+import net.xmx.velthoric.core.body.client.VxClientBodyInterpolator;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark of rest-state suppression in a settled world.
+ * <p>
+ * Every body of the world lies still. Without suppression, each settled body is reported every sync cycle,
+ * which is what happened whenever a sleeping body was marked dirty, and the client keeps interpolating it.
+ * With suppression, each body is reported once with a resting record and then never again, and the client
+ * drops it from interpolation once it has settled. For both, the benchmark writes the state payloads of every
+ * cycle with the server's record writer, counts their raw and Zstd-compressed bytes, and measures the client
+ * time spent applying them with {@link S2CUpdateBodyStateBatchPacket#applySections} and ticking a
+ * {@link VxClientBodyInterpolator}. One sync cycle is assumed per client tick. A body not rendered at its
+ * server position at the end fails the benchmark.
+ * <p>
+ * Usage: {@code VxRestBenchmark [bodies] [ticks] [passes] [nativesDir]}, by default 10000 bodies, 200 ticks
+ * and 5 passes. Run it through the {@code restBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxRestBenchmark {
+
+    private static final long TICK_NANOS = 50_000_000L;
+    private static final int BODIES_PER_CHUNK = 32;
+    private static final double BASE_Y = -64.0;
+
+    /**
+     * The Zstd level of state payloads, as used by {@code VxPacketFactory}.
+     */
+    private static final int ZSTD_LEVEL = 3;
+
+    private VxRestBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of bodies, the number of ticks, the number of passes and the native extraction
+     *             directory, all optional.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        VxHeadlessClient.loadNatives(Path.of(args.length > 3 ? args[3] : "build"));
+
+        Random random = new Random(26);
+        double[] pos = new double[count * 3];
+        float[] rot = new float[count * 4];
+        for (int i = 0; i < count; i++) {
+            ChunkPos chunk = chunkOf(i);
+            pos[i * 3] = chunk.getMinBlockX() + 0.5 + random.nextDouble() * 15;
+            pos[i * 3 + 1] = 64.0 + random.nextDouble() * 4;
+            pos[i * 3 + 2] = chunk.getMinBlockZ() + 0.5 + random.nextDouble() * 15;
+            // A random resting orientation about the vertical axis
+            double angle = random.nextDouble() * Math.PI;
+            rot[i * 4 + 1] = (float) Math.sin(angle);
+            rot[i * 4 + 3] = (float) Math.cos(angle);
+        }
+
+        byte[] activePayload = payload(pos, rot, false);
+        byte[] restingPayload = payload(pos, rot, true);
+
+        System.out.printf(Locale.ROOT, "%d settled bodies, %d ticks, best of %d passes%n", count, ticks, passes);
+        System.out.printf(Locale.ROOT, "%-12s %14s %14s %12s %12s %12s%n",
+                "sync", "raw bytes", "zstd bytes", "apply/tick", "interp/tick", "client/tick");
+        run("every cycle", activePayload, ticks, ticks, pos, passes, false);
+        run("suppressed", restingPayload, 1, ticks, pos, passes, true);
+    }
+
+    /**
+     * Measures one scene: the payload is sent in the first {@code sentTicks} ticks.
+     */
+    private static void run(String scene, byte[] payload, int sentTicks, int ticks, double[] pos, int passes, boolean resting) {
+        long rawBytes = (long) payload.length * sentTicks;
+        long compressedBytes = (long) Zstd.compress(payload, ZSTD_LEVEL).length * sentTicks;
+
+        long bestApply = Long.MAX_VALUE;
+        long bestInterpolate = Long.MAX_VALUE;
+        int count = pos.length / 3;
+        for (int pass = 0; pass <= passes; pass++) {
+            VxClientBodyDataStore store = new VxClientBodyDataStore();
+            VxClientBodyInterpolator interpolator = new VxClientBodyInterpolator();
+            VxBody[] bodies = new VxBody[count];
+            for (int i = 0; i < count; i++) {
+                bodies[i] = VxHeadlessClient.addBody(store, VxNetworkIdAllocator.pack(i + 1, 0));
+                store.clientCurrent().render_isInitialized[bodies[i].getDataStoreIndex()] = true;
+            }
+
+            long apply = 0;
+            long interpolate = 0;
+            ByteBuf buf = Unpooled.wrappedBuffer(payload);
+            for (int tick = 0; tick < ticks; tick++) {
+                long timestamp = (tick + 1) * TICK_NANOS;
+                long start = System.nanoTime();
+                if (tick < sentTicks) {
+                    // Skip the payload header; each cycle carries the timestamp of its tick
+                    buf.readerIndex(Long.BYTES);
+                    S2CUpdateBodyStateBatchPacket.applySections(buf, store, timestamp, BASE_Y);
+                }
+                long applied = System.nanoTime();
+                interpolator.updateInterpolationTargets(store, timestamp - TICK_NANOS);
+                long end = System.nanoTime();
+                apply += applied - start;
+                interpolate += end - applied;
+            }
+            if (pass > 0) {
+                bestApply = Math.min(bestApply, apply);
+                bestInterpolate = Math.min(bestInterpolate, interpolate);
+            }
+            verify(scene, store, bodies, pos, resting);
+        }
+
+        System.out.printf(Locale.ROOT, "%-12s %14d %14d %9.3f ms %9.3f ms %9.3f ms%n", scene, rawBytes, compressedBytes,
+                bestApply / 1e6 / ticks, bestInterpolate / 1e6 / ticks, (bestApply + bestInterpolate) / 1e6 / ticks);
+    }
+
+    /**
+     * Checks that every body is rendered at its server position, exactly for resting records and within
+     * float precision of the chunk-relative encoding otherwise.
+     */
+    private static void verify(String scene, VxClientBodyDataStore store, VxBody[] bodies, double[] pos, boolean resting) {
+        VxClientBodyDataContainer c = store.clientCurrent();
+        double tolerance = resting ? 0.0 : 1e-4;
+        for (int i = 0; i < bodies.length; i++) {
+            int index = bodies[i].getDataStoreIndex();
+            if (resting && !(c.isResting[index] && c.render_isSettled[index])) {
+                fail("body " + i + " did not settle in the " + scene + " scene");
+            }
+            if (Math.abs(c.posX[index] - pos[i * 3]) > tolerance
+                    || Math.abs(c.posY[index] - pos[i * 3 + 1]) > tolerance
+                    || Math.abs(c.posZ[index] - pos[i * 3 + 2]) > tolerance) {
+                fail("body " + i + " is not rendered at its server position in the " + scene + " scene");
+            }
+        }
+    }
+
+    /**
+     * Writes one state payload holding a record of every body, grouped into chunk sections.
+     */
+    private static byte[] payload(double[] pos, float[] rot, boolean resting) {
+        int count = pos.length / 3;
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            VxPacketFactory.writeStateHeader(buf, TICK_NANOS);
+            for (int first = 0; first < count; first += BODIES_PER_CHUNK) {
+                int last = Math.min(count, first + BODIES_PER_CHUNK);
+                ChunkPos chunk = chunkOf(first);
+                buf.writeLong(chunk.toLong());
+                buf.writeInt(last - first);
+                for (int i = first; i < last; i++) {
+                    VxPacketFactory.writeStateRecord(buf, VxNetworkIdAllocator.pack(i + 1, 0), resting,
+                            pos[i * 3], pos[i * 3 + 1], pos[i * 3 + 2],
+                            rot[i * 4], rot[i * 4 + 1], rot[i * 4 + 2], rot[i * 4 + 3],
+                            0f, 0f, 0f, chunk.getMinBlockX(), BASE_Y, chunk.getMinBlockZ());
+                }
+            }
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * @return The chunk of the i-th body. Chunks are filled in rows of 64.
+     */
+    private static ChunkPos chunkOf(int body) {
+        int chunk = body / BODIES_PER_CHUNK;
+        return new ChunkPos(chunk % 64, chunk / 64);
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
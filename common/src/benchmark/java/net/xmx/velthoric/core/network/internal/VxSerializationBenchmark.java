@@ -0,0 +1,161 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A headless benchmark of the parallel serialization stage of a sync cycle.
+ * <p>
+ * A cycle of dirty, moving bodies is grouped into one job per chunk, as the network dispatcher does.
+ * Each job writes a state payload with the server's record writer into a pooled direct buffer and compresses
+ * it with {@link VxPacketFactory#compressDirect}, which uses the calling thread's Zstd context. The jobs are
+ * split into contiguous ranges over 1, 2, 4 and 8 workers the same way the dispatcher splits them, with one
+ * worker running inline on the calling thread. The best cycle time, the speedup over one worker and the
+ * number of bodies serialized per millisecond are reported. A worker count whose compressed output differs
+ * from the serial output fails the benchmark.
+ * <p>
+ * Usage: {@code VxSerializationBenchmark [bodies] [cycles]}, by default 20000 bodies and 50 cycles.
+ * Run it through the {@code serializationBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxSerializationBenchmark {
+
+    private static final int BODIES_PER_CHUNK = 32;
+    private static final int[] WORKER_COUNTS = {1, 2, 4, 8};
+    private static final double BASE_Y = -64.0;
+
+    private VxSerializationBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of dirty bodies and the number of measured cycles, both optional.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int cycles = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Random random = new Random(31);
+        float[] state = new float[count * 10];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = random.nextFloat();
+        }
+        int jobs = (count + BODIES_PER_CHUNK - 1) / BODIES_PER_CHUNK;
+
+        System.out.printf(Locale.ROOT, "%d dirty bodies in %d chunk jobs, best of %d cycles, %d cores%n",
+                count, jobs, cycles, Runtime.getRuntime().availableProcessors());
+        System.out.printf(Locale.ROOT, "%-8s %12s %10s %14s%n", "workers", "cycle", "speedup", "bodies/ms");
+
+        long[] serialSizes = null;
+        long serialNanos = 0;
+        for (int workers : WORKER_COUNTS) {
+            ExecutorService pool = workers > 1 ? Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "Velthoric-Benchmark-Serializer");
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+            try {
+                long[] sizes = new long[jobs];
+                long best = Long.MAX_VALUE;
+                // The first cycles warm up the JIT and the per-thread buffers and contexts
+                for (int cycle = -5; cycle < cycles; cycle++) {
+                    long start = System.nanoTime();
+                    runCycle(pool, workers, jobs, count, state, sizes);
+                    if (cycle >= 0) best = Math.min(best, System.nanoTime() - start);
+                }
+                if (serialSizes == null) {
+                    serialSizes = sizes;
+                    serialNanos = best;
+                } else {
+                    for (int job = 0; job < jobs; job++) {
+                        if (sizes[job] != serialSizes[job]) {
+                            System.err.println("FAIL: job " + job + " compressed differently with " + workers + " workers");
+                            System.exit(1);
+                        }
+                    }
+                }
+                System.out.printf(Locale.ROOT, "%-8d %9.3f ms %9.2fx %14.0f%n",
+                        workers, best / 1e6, (double) serialNanos / best, count / (best / 1e6));
+            } finally {
+                if (pool != null) pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Serializes every job of one cycle, recording the compressed size of each.
+     */
+    private static void runCycle(ExecutorService pool, int workers, int jobs, int count, float[] state, long[] sizes)
+            throws InterruptedException {
+        if (pool == null) {
+            serializeRange(0, jobs, count, state, sizes);
+            return;
+        }
+        int chunkSize = (jobs + workers - 1) / workers;
+        List<Callable<Void>> calls = new ArrayList<>(workers);
+        for (int from = 0; from < jobs; from += chunkSize) {
+            int start = from;
+            int end = Math.min(jobs, from + chunkSize);
+            calls.add(() -> {
+                serializeRange(start, end, count, state, sizes);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(calls)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Parallel serialization failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Writes and compresses the state payloads of a range of chunk jobs.
+     */
+    private static void serializeRange(int from, int to, int count, float[] state, long[] sizes) {
+        for (int job = from; job < to; job++) {
+            int first = job * BODIES_PER_CHUNK;
+            int last = Math.min(count, first + BODIES_PER_CHUNK);
+            ChunkPos chunk = new ChunkPos(job % 64, job / 64);
+            double baseX = chunk.getMinBlockX();
+            double baseZ = chunk.getMinBlockZ();
+
+            ByteBuf raw = PooledByteBufAllocator.DEFAULT.directBuffer(20 + (last - first) * 64);
+            try {
+                VxPacketFactory.writeStateHeader(raw, 1L);
+                raw.writeLong(chunk.toLong());
+                raw.writeInt(last - first);
+                for (int i = first; i < last; i++) {
+                    int s = i * 10;
+                    VxPacketFactory.writeStateRecord(raw, VxNetworkIdAllocator.pack(i + 1, 0), false,
+                            baseX + state[s] * 16, BASE_Y + 64 + state[s + 1] * 16, baseZ + state[s + 2] * 16,
+                            state[s + 3], state[s + 4], state[s + 5], state[s + 6],
+                            state[s + 7], state[s + 8], state[s + 9], baseX, BASE_Y, baseZ);
+                }
+                ByteBuf compressed = VxPacketFactory.compressDirect(raw);
+                sizes[job] = compressed.readableBytes();
+                compressed.release();
+            } finally {
+                raw.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import com.github.stephengold.joltjni.Vec3;
+import io.netty.buffer.Unpooled;
+import net.xmx.velthoric.core.body.shape.VxBoxShape;
+import net.xmx.velthoric.core.body.shape.VxCapsuleShape;
+import net.xmx.velthoric.core.body.shape.VxCollisionShape;
+import net.xmx.velthoric.core.body.shape.VxConvexHullShape;
+import net.xmx.velthoric.core.body.shape.VxCylinderShape;
+import net.xmx.velthoric.core.body.shape.VxMutableCompoundShape;
+import net.xmx.velthoric.core.body.shape.VxShapeCodec;
+import net.xmx.velthoric.core.body.shape.VxSphereShape;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark of the shape entries in spawn records.
+ * <p>
+ * Two scenes spawn the same number of bodies for a joining client: a homogeneous one, where every body
+ * is a box of the same size, and a mixed one of six common shapes with a share of convex hulls of unique
+ * content and of mutable compounds, which are never shared. Each body carries its own shape instance, as
+ * body types create them. The shape entries are written once inline for every body, as before the shape
+ * registry, and once through a {@link VxShapeRegistry} committed per spawn packet. The bytes of the entries
+ * and the time a {@link VxClientShapeCache} takes to decode them are reported, together with the number of
+ * shape instances the client ends up holding. A body whose shape decodes to different content fails
+ * the benchmark.
+ * <p>
+ * Usage: {@code VxShapeBenchmark [bodies] [passes]}, by default 20000 bodies and 5 passes.
+ * Run it through the {@code shapeBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxShapeBenchmark {
+
+    /**
+     * The number of bodies per simulated spawn packet, after which the registry is committed.
+     */
+    private static final int BODIES_PER_PACKET = 256;
+
+    private VxShapeBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of bodies and the number of passes, both optional.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Random random = new Random(27);
+        VxCollisionShape[] homogeneous = new VxCollisionShape[count];
+        VxCollisionShape[] mixed = new VxCollisionShape[count];
+        for (int i = 0; i < count; i++) {
+            homogeneous[i] = new VxBoxShape(new Vec3(0.5f, 0.5f, 0.5f));
+            mixed[i] = mixedShape(random);
+        }
+
+        System.out.printf(Locale.ROOT, "%d bodies, best of %d passes%n", count, passes);
+        System.out.printf(Locale.ROOT, "%-12s %-9s %12s %10s %12s %10s%n", "scene", "encoding", "bytes", "B/body", "decode", "instances");
+        run("homogeneous", homogeneous, passes);
+        run("mixed", mixed, passes);
+    }
+
+    /**
+     * Creates the shape of a body of the mixed scene.
+     */
+    private static VxCollisionShape mixedShape(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 10) {
+            // Debris with unique hull content
+            float[] points = new float[8 * 3];
+            for (int p = 0; p < points.length; p++) points[p] = random.nextFloat() - 0.5f;
+            return new VxConvexHullShape(points);
+        }
+        if (roll < 15) {
+            return new VxMutableCompoundShape()
+                    .addShape(new VxBoxShape(new Vec3(1f, 0.25f, 2f)), new Vec3(0f, 0f, 0f))
+                    .addShape(new VxCylinderShape(0.1f, 0.4f), new Vec3(0.8f, -0.3f, 1.5f))
+                    .addShape(new VxCylinderShape(0.1f, 0.4f), new Vec3(-0.8f, -0.3f, 1.5f));
+        }
+        return switch (roll % 6) {
+            case 0 -> new VxBoxShape(new Vec3(0.5f, 0.5f, 0.5f));
+            case 1 -> new VxBoxShape(new Vec3(0.25f, 0.25f, 0.25f));
+            case 2 -> new VxBoxShape(new Vec3(1f, 0.1f, 0.5f));
+            case 3 -> new VxSphereShape(0.5f);
+            case 4 -> new VxCapsuleShape(0.5f, 0.3f);
+            default -> new VxCylinderShape(0.5f, 0.5f);
+        };
+    }
+
+    /**
+     * Measures both encodings of one scene.
+     */
+    private static void run(String scene, VxCollisionShape[] shapes, int passes) {
+        byte[][] expected = new byte[shapes.length][];
+        for (int i = 0; i < shapes.length; i++) {
+            expected[i] = encode(shapes[i]);
+        }
+        measure(scene, "inline", encodeInline(shapes), expected, passes);
+        measure(scene, "registry", encodeRegistry(shapes), expected, passes);
+    }
+
+    /**
+     * Writes every shape inline, as spawn records did before the shape registry.
+     */
+    private static byte[] encodeInline(VxCollisionShape[] shapes) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            for (VxCollisionShape shape : shapes) {
+                buf.writeByte(VxShapeRegistry.SHAPE_INLINE);
+                VxShapeCodec.write(buf, shape);
+            }
+            return toBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Writes every shape through a fresh registry, committing after each spawn packet.
+     */
+    private static byte[] encodeRegistry(VxCollisionShape[] shapes) {
+        VxShapeRegistry registry = new VxShapeRegistry();
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            for (int i = 0; i < shapes.length; i++) {
+                registry.writeShape(buf, shapes[i]);
+                if ((i + 1) % BODIES_PER_PACKET == 0) registry.commit();
+            }
+            registry.commit();
+            return toBytes(buf);
+        } finally {
+            buf.release();
+            registry.release();
+        }
+    }
+
+    /**
+     * Decodes the entries into a fresh client cache per pass and reports the best time.
+     */
+    private static void measure(String scene, String encoding, byte[] entries, byte[][] expected, int passes) {
+        long best = Long.MAX_VALUE;
+        VxCollisionShape[] decoded = new VxCollisionShape[expected.length];
+        for (int pass = 0; pass <= passes; pass++) {
+            VxClientShapeCache cache = new VxClientShapeCache();
+            VxByteBuf buf = new VxByteBuf(Unpooled.wrappedBuffer(entries));
+            long start = System.nanoTime();
+            for (int i = 0; i < decoded.length; i++) {
+                decoded[i] = cache.readShape(buf);
+            }
+            long nanos = System.nanoTime() - start;
+            if (pass > 0) best = Math.min(best, nanos);
+            if (buf.isReadable()) fail(scene + " " + encoding + " left " + buf.readableBytes() + " bytes");
+        }
+
+        IdentityHashMap<VxCollisionShape, Boolean> instances = new IdentityHashMap<>();
+        for (int i = 0; i < decoded.length; i++) {
+            if (decoded[i] == null || !Arrays.equals(encode(decoded[i]), expected[i])) {
+                fail("body " + i + " of the " + scene + " scene decoded to a different shape from the " + encoding + " entries");
+            }
+            instances.put(decoded[i], Boolean.TRUE);
+        }
+        System.out.printf(Locale.ROOT, "%-12s %-9s %12d %10.2f %9.2f ms %10d%n",
+                scene, encoding, entries.length, (double) entries.length / expected.length, best / 1e6, instances.size());
+    }
+
+    /**
+     * @return The canonical encoding of a shape.
+     */
+    private static byte[] encode(VxCollisionShape shape) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            VxShapeCodec.write(buf, shape);
+            return toBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static byte[] toBytes(VxByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark of the client decode of state batch packets.
+ * <p>
+ * A batch of moving bodies is written with the server's record writer, compressed and framed as
+ * {@link S2CUpdateBodyStateBatchPacket#encode} sends it. Each iteration then runs the client path on it: the
+ * packet is read from the network buffer, decompressed into the thread's reusable buffer and applied to a
+ * {@link VxClientBodyDataStore} holding every body. The time and the heap bytes allocated by each stage are
+ * reported per packet, averaged over all iterations after a warm-up. Applying the records must not allocate
+ * per body, so an average of more than one allocated byte per body in that stage fails the benchmark.
+ * <p>
+ * Usage: {@code VxStateDecodeBenchmark [bodies] [packets] [nativesDir]}, by default 10000 bodies and 2000
+ * packets. Run it through the {@code stateDecodeBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxStateDecodeBenchmark {
+
+    private static final int BODIES_PER_CHUNK = 32;
+    private static final double BASE_Y = -64.0;
+    private static final String[] STAGES = {"read packet", "decompress", "apply", "release"};
+
+    private VxStateDecodeBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of bodies per packet, the number of measured packets and the native extraction
+     *             directory, all optional.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int packets = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        VxHeadlessClient.loadNatives(Path.of(args.length > 2 ? args[2] : "build"));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean sun
+                && sun.isThreadAllocatedMemorySupported() ? sun : null;
+        if (allocations == null) {
+            System.err.println("FAIL: this JVM cannot report allocated bytes per thread");
+            System.exit(1);
+        }
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        VxClientBodyDataStore store = new VxClientBodyDataStore();
+        for (int i = 0; i < count; i++) {
+            VxHeadlessClient.addBody(store, VxNetworkIdAllocator.pack(i + 1, 0));
+        }
+        byte[] wire = frame(payload(count, new Random(32)));
+
+        long[] nanos = new long[STAGES.length];
+        long[] allocated = new long[STAGES.length];
+        ByteBuf network = Unpooled.wrappedBuffer(wire);
+        int warmup = Math.max(100, packets / 10);
+        for (int packet = -warmup; packet < packets; packet++) {
+            boolean measured = packet >= 0;
+            network.readerIndex(0);
+
+            long t0 = System.nanoTime();
+            long a0 = allocations.getThreadAllocatedBytes(threadId);
+            S2CUpdateBodyStateBatchPacket decoded = S2CUpdateBodyStateBatchPacket.decode(new VxByteBuf(network));
+            long t1 = System.nanoTime();
+            long a1 = allocations.getThreadAllocatedBytes(threadId);
+            ByteBuf db = S2CUpdateBodyStateBatchPacket.decompress(decoded.getData());
+            long t2 = System.nanoTime();
+            long a2 = allocations.getThreadAllocatedBytes(threadId);
+            if (db == null) fail("the payload did not decompress");
+            long timestamp = db.readLong();
+            S2CUpdateBodyStateBatchPacket.applySections(db, store, timestamp, BASE_Y);
+            long t3 = System.nanoTime();
+            long a3 = allocations.getThreadAllocatedBytes(threadId);
+            decoded.release();
+            long t4 = System.nanoTime();
+            long a4 = allocations.getThreadAllocatedBytes(threadId);
+
+            if (measured) {
+                nanos[0] += t1 - t0;
+                nanos[1] += t2 - t1;
+                nanos[2] += t3 - t2;
+                nanos[3] += t4 - t3;
+                allocated[0] += a1 - a0;
+                allocated[1] += a2 - a1;
+                allocated[2] += a3 - a2;
+                allocated[3] += a4 - a3;
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%d bodies per packet, %d compressed bytes, average of %d packets%n",
+                count, wire.length, packets);
+        System.out.printf(Locale.ROOT, "%-12s %12s %14s %12s%n", "stage", "time", "garbage/packet", "B/body");
+        long totalNanos = 0;
+        long totalAllocated = 0;
+        for (int stage = 0; stage < STAGES.length; stage++) {
+            report(STAGES[stage], nanos[stage], allocated[stage], packets, count);
+            totalNanos += nanos[stage];
+            totalAllocated += allocated[stage];
+        }
+        report("total", totalNanos, totalAllocated, packets, count);
+
+        if ((double) allocated[2] / packets > count) {
+            fail("applying a packet allocated " + allocated[2] / packets + " bytes for " + count + " bodies");
+        }
+    }
+
+    private static void report(String stage, long nanos, long allocated, int packets, int bodies) {
+        System.out.printf(Locale.ROOT, "%-12s %9.3f ms %14.1f %12.3f%n", stage, nanos / 1e6 / packets,
+                (double) allocated / packets, (double) allocated / packets / bodies);
+    }
+
+    /**
+     * Writes a state payload holding an active record of every body, grouped into chunk sections.
+     */
+    private static byte[] payload(int count, Random random) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            VxPacketFactory.writeStateHeader(buf, 50_000_000L);
+            for (int first = 0; first < count; first += BODIES_PER_CHUNK) {
+                int last = Math.min(count, first + BODIES_PER_CHUNK);
+                ChunkPos chunk = new ChunkPos(first / BODIES_PER_CHUNK % 64, first / BODIES_PER_CHUNK / 64);
+                double baseX = chunk.getMinBlockX();
+                double baseZ = chunk.getMinBlockZ();
+                buf.writeLong(chunk.toLong());
+                buf.writeInt(last - first);
+                for (int i = first; i < last; i++) {
+                    VxPacketFactory.writeStateRecord(buf, VxNetworkIdAllocator.pack(i + 1, 0), false,
+                            baseX + random.nextDouble() * 16, BASE_Y + 64 + random.nextDouble() * 16, baseZ + random.nextDouble() * 16,
+                            0f, (float) Math.sin(i), 0f, (float) Math.cos(i),
+                            random.nextFloat(), random.nextFloat(), random.nextFloat(), baseX, BASE_Y, baseZ);
+                }
+            }
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Compresses a payload and frames it the way the packet is written to the network.
+     */
+    private static byte[] frame(byte[] payload) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            new S2CUpdateBodyStateBatchPacket(Unpooled.wrappedBuffer(Zstd.compress(payload, 3))).encode(buf);
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
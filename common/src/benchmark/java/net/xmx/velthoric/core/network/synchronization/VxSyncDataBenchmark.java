@@ -0,0 +1,281 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.synchronization;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.core.network.synchronization.accessor.VxDataAccessor;
+import net.xmx.velthoric.core.network.synchronization.accessor.VxServerAccessor;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A headless benchmark of the server side of custom synchronized data.
+ * <p>
+ * Every tick, each vehicle changes all four of its synced fields, and every player watches every vehicle.
+ * The changes are broadcast twice:
+ * <ul>
+ *     <li><b>former:</b> the layout before dirty-mask records, reimplemented here. A list of dirty entries per
+ *     body, each entry written with its ID and followed by an end marker, copied into a {@code byte[]} that is
+ *     put into a map per player, then framed and compressed through heap arrays.</li>
+ *     <li><b>dirty mask:</b> {@link VxSynchronizedData} records written once per chunk of vehicles into a
+ *     pooled buffer, appended to a pooled batch per player split at 64 KB, and compressed with
+ *     {@link VxPacketFactory#compressDirect}, as {@code VxSyncBehavior} does.</li>
+ * </ul>
+ * The server time, the raw and compressed bytes sent and the heap bytes allocated per tick are reported,
+ * each as the average over all measured ticks after a warm-up.
+ * <p>
+ * Usage: {@code VxSyncDataBenchmark [vehicles] [players] [ticks]}, by default 5000 vehicles, 4 players and
+ * 200 ticks. Run it through the {@code syncDataBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxSyncDataBenchmark {
+
+    private static final int VEHICLES_PER_CHUNK = 8;
+    private static final int MAX_BATCH_PAYLOAD_SIZE = 64 * 1024;
+
+    /**
+     * The former end marker of an entry list.
+     */
+    private static final int END_MARKER = 255;
+
+    /**
+     * The synced fields of a benchmark vehicle.
+     */
+    private static final class Vehicle {
+        static final VxServerAccessor<Float> THROTTLE = VxServerAccessor.create(Vehicle.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float> STEERING = VxServerAccessor.create(Vehicle.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float> RPM = VxServerAccessor.create(Vehicle.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Byte> GEAR = VxServerAccessor.create(Vehicle.class, VxDataSerializers.BYTE);
+
+        static VxSynchronizedData build() {
+            return new VxSynchronizedData.Builder()
+                    .define(THROTTLE, 0f).define(STEERING, 0f).define(RPM, 0f).define(GEAR, (byte) 0)
+                    .build();
+        }
+    }
+
+    private VxSyncDataBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of vehicles, the number of players and the number of measured ticks, all optional.
+     */
+    public static void main(String[] args) {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int players = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean sun
+                && sun.isThreadAllocatedMemorySupported() ? sun : null;
+        if (allocations != null) allocations.setThreadAllocatedMemoryEnabled(true);
+
+        System.out.printf(Locale.ROOT, "%d vehicles with 4 changed fields each, %d players, average of %d ticks%n", vehicles, players, ticks);
+        System.out.printf(Locale.ROOT, "%-11s %12s %12s %12s %14s%n", "layout", "server", "raw B", "zstd B", "garbage");
+        for (boolean former : new boolean[]{true, false}) {
+            VxSynchronizedData[] data = new VxSynchronizedData[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                data[i] = Vehicle.build();
+            }
+            Broadcast broadcast = former ? new FormerBroadcast(players) : new MaskBroadcast(players);
+
+            long nanos = 0;
+            long allocated = 0;
+            long rawBytes = 0;
+            long compressedBytes = 0;
+            int warmup = Math.max(50, ticks / 4);
+            for (int tick = -warmup; tick < ticks; tick++) {
+                for (int i = 0; i < vehicles; i++) {
+                    float t = tick * 0.05f + i;
+                    data[i].set(Vehicle.THROTTLE, (float) Math.sin(t));
+                    data[i].set(Vehicle.STEERING, (float) Math.cos(t * 0.7f));
+                    data[i].set(Vehicle.RPM, 1000f + tick + i);
+                    data[i].set(Vehicle.GEAR, (byte) (tick + i));
+                }
+
+                broadcast.raw = 0;
+                broadcast.compressed = 0;
+                long allocatedBefore = allocations != null ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+                long start = System.nanoTime();
+                broadcast.run(data, start);
+                long end = System.nanoTime();
+                long allocatedAfter = allocations != null ? allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+                if (tick >= 0) {
+                    nanos += end - start;
+                    allocated += allocatedAfter - allocatedBefore;
+                    rawBytes += broadcast.raw;
+                    compressedBytes += broadcast.compressed;
+                }
+                for (VxSynchronizedData d : data) {
+                    if (d.isDirty()) fail("a vehicle was left dirty by the " + (former ? "former" : "dirty mask") + " broadcast");
+                }
+            }
+            System.out.printf(Locale.ROOT, "%-11s %9.3f ms %12d %12d %14s%n", former ? "former" : "dirty mask",
+                    nanos / 1e6 / ticks, rawBytes / ticks, compressedBytes / ticks,
+                    allocations != null ? String.format(Locale.ROOT, "%.0f", (double) allocated / ticks) : "n/a");
+        }
+    }
+
+    /**
+     * One way of broadcasting the changes of a tick to every player.
+     */
+    private abstract static class Broadcast {
+        final int players;
+        long raw;
+        long compressed;
+
+        Broadcast(int players) {
+            this.players = players;
+        }
+
+        abstract void run(VxSynchronizedData[] data, long now);
+    }
+
+    /**
+     * The former layout: entry lists, {@code byte[]} payloads in maps per player and heap compression.
+     */
+    private static final class FormerBroadcast extends Broadcast {
+        private final VxByteBuf scratch = new VxByteBuf(Unpooled.buffer(1024));
+        private final long[] mask = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        private final VxDataAccessor<?>[] fields = {Vehicle.THROTTLE, Vehicle.STEERING, Vehicle.RPM, Vehicle.GEAR};
+
+        FormerBroadcast(int players) {
+            super(players);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void run(VxSynchronizedData[] data, long now) {
+            Map<Integer, Map<Integer, byte[]>> perPlayer = new HashMap<>();
+            for (int i = 0; i < data.length; i++) {
+                data[i].takeSendable(now, mask);
+                List<VxDataAccessor<?>> dirty = new ArrayList<>();
+                for (int f = 0; f < fields.length; f++) {
+                    if ((mask[0] & 1L << f) != 0) dirty.add(fields[f]);
+                }
+                if (dirty.isEmpty()) continue;
+
+                scratch.clear();
+                for (VxDataAccessor<?> field : dirty) {
+                    VxDataAccessor<Object> accessor = (VxDataAccessor<Object>) field;
+                    scratch.writeVarInt(accessor.getId());
+                    accessor.getSerializer().write(scratch, data[i].get(accessor));
+                }
+                scratch.writeVarInt(END_MARKER);
+                byte[] payload = new byte[scratch.readableBytes()];
+                scratch.readBytes(payload);
+                for (int p = 0; p < players; p++) {
+                    perPlayer.computeIfAbsent(p, k -> new HashMap<>()).put(VxNetworkIdAllocator.pack(i + 1, 0), payload);
+                }
+            }
+
+            for (Map<Integer, byte[]> updates : perPlayer.values()) {
+                VxByteBuf temp = new VxByteBuf(Unpooled.buffer());
+                try {
+                    temp.writeVarInt(updates.size());
+                    for (Map.Entry<Integer, byte[]> entry : updates.entrySet()) {
+                        temp.writeVarInt(entry.getKey());
+                        temp.writeByteArray(entry.getValue());
+                    }
+                    byte[] uncompressed = new byte[temp.readableBytes()];
+                    temp.readBytes(uncompressed);
+                    raw += uncompressed.length;
+                    compressed += Zstd.compress(uncompressed).length;
+                } finally {
+                    temp.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * The dirty-mask layout, written the way {@code VxSyncBehavior#broadcastS2CUpdates} writes it.
+     */
+    private static final class MaskBroadcast extends Broadcast {
+        private final long[] sendable = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        private final long[] selected = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        private final Map<Integer, ByteBuf> playerBatches = new Object2ObjectOpenHashMap<>();
+
+        MaskBroadcast(int players) {
+            super(players);
+        }
+
+        @Override
+        void run(VxSynchronizedData[] data, long now) {
+            VxByteBuf chunkBuf = new VxByteBuf(PooledByteBufAllocator.DEFAULT.directBuffer(1024));
+            try {
+                for (int first = 0; first < data.length; first += VEHICLES_PER_CHUNK) {
+                    chunkBuf.clear();
+                    for (int i = first; i < Math.min(data.length, first + VEHICLES_PER_CHUNK); i++) {
+                        synchronized (data[i]) {
+                            if (!data[i].isDirty()) continue;
+                            data[i].takeSendable(now, sendable);
+                            if (data[i].selectUnscoped(sendable, selected)) {
+                                // Every field is fixed-size, so the record is written straight into the chunk buffer
+                                chunkBuf.writeVarInt(VxNetworkIdAllocator.pack(i + 1, 0));
+                                chunkBuf.writeVarInt(data[i].recordSize(selected));
+                                data[i].writeRecord(chunkBuf, selected);
+                            }
+                        }
+                    }
+                    if (!chunkBuf.isReadable()) continue;
+                    for (int p = 0; p < players; p++) {
+                        append(p, chunkBuf);
+                    }
+                }
+                for (ByteBuf batch : playerBatches.values()) {
+                    if (batch.isReadable()) send(batch);
+                }
+            } finally {
+                chunkBuf.release();
+                for (ByteBuf batch : playerBatches.values()) {
+                    batch.release();
+                }
+                playerBatches.clear();
+            }
+        }
+
+        private void append(int player, ByteBuf records) {
+            int length = records.readableBytes();
+            ByteBuf batch = playerBatches.get(player);
+            if (batch == null) {
+                batch = PooledByteBufAllocator.DEFAULT.directBuffer(Math.max(1024, length));
+                playerBatches.put(player, batch);
+            } else if (batch.isReadable() && batch.readableBytes() + length > MAX_BATCH_PAYLOAD_SIZE) {
+                send(batch);
+                batch.clear();
+            }
+            batch.writeBytes(records, records.readerIndex(), length);
+        }
+
+        private void send(ByteBuf batch) {
+            raw += batch.readableBytes();
+            ByteBuf packet = VxPacketFactory.compressDirect(batch);
+            compressed += packet.readableBytes();
+            packet.release();
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
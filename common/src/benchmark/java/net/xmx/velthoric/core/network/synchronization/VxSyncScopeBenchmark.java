@@ -0,0 +1,250 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.synchronization;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.core.network.synchronization.accessor.VxServerAccessor;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark of the bandwidth saved by sync scopes and send rates on a server with driven vehicles.
+ * <p>
+ * Every vehicle is driven by its own player, and further players walk around the area. Each tick, every vehicle
+ * changes its engine RPM, four wheel states and three HUD values of its driver; its health changes every five
+ * seconds. Players track the vehicles within {@link #TRACKING_RANGE} blocks. The same changes are broadcast
+ * with two layouts of the same fields: one where every field goes to every tracker at every change, as before
+ * scopes existed, and one where the RPM and wheels only go to players nearby, the HUD values only to the
+ * driver, and RPM and speed are limited to ten updates per second. Records are selected and framed as
+ * {@code VxSyncBehavior} does and compressed per player and tick with {@link VxPacketFactory#compressDirect}.
+ * The raw and compressed bandwidth in total and per driver and walker are reported. A driver that misses
+ * a gear change of its own vehicle fails the benchmark.
+ * <p>
+ * Usage: {@code VxSyncScopeBenchmark [vehicles] [walkers] [seconds]}, by default 100 vehicles, 100 walkers
+ * and 30 seconds. Run it through the {@code syncScopeBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxSyncScopeBenchmark {
+
+    private static final long TICK_NANOS = 50_000_000L;
+    private static final double TRACKING_RANGE = 160.0;
+    private static final double AREA = 512.0;
+
+    /**
+     * The bit of the gear in both layouts, which follows the definition order.
+     */
+    private static final int GEAR_BIT = 8;
+
+    /**
+     * The synced fields of a vehicle, sent to every tracker.
+     */
+    private static final class Unscoped {
+        static final VxServerAccessor<Float> HEALTH = VxServerAccessor.create(Unscoped.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float> RPM = VxServerAccessor.create(Unscoped.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float>[] WHEELS = wheels(Unscoped.class, 0);
+        static final VxServerAccessor<Float> SPEED = VxServerAccessor.create(Unscoped.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float> THROTTLE = VxServerAccessor.create(Unscoped.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Byte> GEAR = VxServerAccessor.create(Unscoped.class, VxDataSerializers.BYTE);
+    }
+
+    /**
+     * The same fields with scopes and send rates.
+     */
+    private static final class Scoped {
+        static final VxServerAccessor<Float> HEALTH = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float> RPM = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT).nearby(32).maxRate(10);
+        static final VxServerAccessor<Float>[] WHEELS = wheels(Scoped.class, 48);
+        static final VxServerAccessor<Float> SPEED = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT).ridersOnly().maxRate(10);
+        static final VxServerAccessor<Float> THROTTLE = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT).ridersOnly();
+        static final VxServerAccessor<Byte> GEAR = VxServerAccessor.create(Scoped.class, VxDataSerializers.BYTE).ridersOnly();
+    }
+
+    private VxSyncScopeBenchmark() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VxServerAccessor<Float>[] wheels(Class<?> owner, double radius) {
+        VxServerAccessor<Float>[] wheels = new VxServerAccessor[4];
+        for (int i = 0; i < wheels.length; i++) {
+            wheels[i] = VxServerAccessor.create(owner, VxDataSerializers.FLOAT);
+            if (radius > 0) wheels[i].nearby(radius);
+        }
+        return wheels;
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of vehicles, the number of walking players and the simulated seconds, all optional.
+     */
+    public static void main(String[] args) {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int walkers = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        Random random = new Random(35);
+        double[] vehicleX = new double[vehicles];
+        double[] vehicleZ = new double[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            vehicleX[i] = random.nextDouble() * AREA;
+            vehicleZ[i] = random.nextDouble() * AREA;
+        }
+        // Drivers sit in their vehicles, walkers are spread over the area
+        int players = vehicles + walkers;
+        double[] playerX = new double[players];
+        double[] playerZ = new double[players];
+        for (int p = 0; p < players; p++) {
+            playerX[p] = p < vehicles ? vehicleX[p] : random.nextDouble() * AREA;
+            playerZ[p] = p < vehicles ? vehicleZ[p] : random.nextDouble() * AREA;
+        }
+
+        System.out.printf(Locale.ROOT, "%d driven vehicles, %d drivers, %d walkers, %d seconds%n", vehicles, vehicles, walkers, seconds);
+        System.out.printf(Locale.ROOT, "%-9s %12s %12s %16s %16s%n", "layout", "raw KB/s", "zstd KB/s", "driver zstd B/s", "walker zstd B/s");
+        for (boolean scoped : new boolean[]{false, true}) {
+            VxSynchronizedData[] data = new VxSynchronizedData[vehicles];
+            for (int i = 0; i < vehicles; i++) {
+                data[i] = scoped ? buildScoped() : buildUnscoped();
+            }
+            long[] raw = new long[players];
+            long[] compressed = new long[players];
+            int[] gearUpdates = run(data, scoped, seconds * 20, vehicleX, vehicleZ, playerX, playerZ, raw, compressed);
+
+            for (int p = 0; p < vehicles; p++) {
+                if (gearUpdates[p] != seconds * 20) {
+                    fail("driver " + p + " received " + gearUpdates[p] + " of " + seconds * 20
+                            + " gear changes with the " + (scoped ? "scoped" : "unscoped") + " layout");
+                }
+            }
+            long totalRaw = 0;
+            long totalCompressed = 0;
+            long driverCompressed = 0;
+            for (int p = 0; p < players; p++) {
+                totalRaw += raw[p];
+                totalCompressed += compressed[p];
+                if (p < vehicles) driverCompressed += compressed[p];
+            }
+            System.out.printf(Locale.ROOT, "%-9s %12.1f %12.1f %16.0f %16.0f%n", scoped ? "scoped" : "unscoped",
+                    totalRaw / 1024.0 / seconds, totalCompressed / 1024.0 / seconds,
+                    (double) driverCompressed / vehicles / seconds,
+                    walkers > 0 ? (double) (totalCompressed - driverCompressed) / walkers / seconds : 0.0);
+        }
+    }
+
+    /**
+     * Simulates the ticks and broadcasts the changes of each tick.
+     *
+     * @return The number of gear changes each driver received for its own vehicle.
+     */
+    private static int[] run(VxSynchronizedData[] data, boolean scoped, int ticks, double[] vehicleX, double[] vehicleZ,
+                              double[] playerX, double[] playerZ, long[] raw, long[] compressed) {
+        int players = playerX.length;
+        long[] sendable = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        long[] selected = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        long[] scopedSelected = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        int[] gearUpdates = new int[data.length];
+
+        VxByteBuf[] batches = new VxByteBuf[players];
+        VxByteBuf record = new VxByteBuf(PooledByteBufAllocator.DEFAULT.directBuffer(256));
+        for (int p = 0; p < players; p++) {
+            batches[p] = new VxByteBuf(PooledByteBufAllocator.DEFAULT.directBuffer(1024));
+        }
+        try {
+            for (int tick = 0; tick < ticks; tick++) {
+                long now = tick * TICK_NANOS;
+                for (int i = 0; i < data.length; i++) {
+                    drive(data[i], scoped, tick, i);
+                }
+                for (VxByteBuf batch : batches) {
+                    batch.clear();
+                }
+
+                for (int i = 0; i < data.length; i++) {
+                    VxSynchronizedData d = data[i];
+                    if (!d.isDirty()) continue;
+                    d.takeSendable(now, sendable);
+                    boolean unscoped = d.selectUnscoped(sendable, selected);
+                    record.clear();
+                    if (unscoped) writeRecord(record, i, d, selected);
+                    int unscopedLength = record.readableBytes();
+                    for (int p = 0; p < players; p++) {
+                        double dx = playerX[p] - vehicleX[i];
+                        double dz = playerZ[p] - vehicleZ[i];
+                        double distSq = dx * dx + dz * dz;
+                        if (distSq > TRACKING_RANGE * TRACKING_RANGE) continue;
+                        boolean gear = unscoped && (selected[0] & 1L << GEAR_BIT) != 0;
+                        if (unscoped) batches[p].writeBytes(record, record.readerIndex(), unscopedLength);
+                        if (d.hasScoped(sendable) && d.selectScoped(sendable, distSq, p == i, scopedSelected)) {
+                            writeRecord(batches[p], i, d, scopedSelected);
+                            gear |= (scopedSelected[0] & 1L << GEAR_BIT) != 0;
+                        }
+                        if (gear && p == i) gearUpdates[p]++;
+                    }
+                }
+
+                for (int p = 0; p < players; p++) {
+                    if (!batches[p].isReadable()) continue;
+                    raw[p] += batches[p].readableBytes();
+                    ByteBuf packet = VxPacketFactory.compressDirect(batches[p]);
+                    compressed[p] += packet.readableBytes();
+                    packet.release();
+                }
+            }
+        } finally {
+            record.release();
+            for (VxByteBuf batch : batches) {
+                batch.release();
+            }
+        }
+        return gearUpdates;
+    }
+
+    /**
+     * Applies the changes a vehicle makes in one tick.
+     */
+    private static void drive(VxSynchronizedData d, boolean scoped, int tick, int vehicle) {
+        float t = tick * 0.05f + vehicle;
+        if (tick % 100 == 0) d.set(scoped ? Scoped.HEALTH : Unscoped.HEALTH, 100f - tick / 100f);
+        d.set(scoped ? Scoped.RPM : Unscoped.RPM, 2000f + 1500f * (float) Math.sin(t));
+        VxServerAccessor<Float>[] wheels = scoped ? Scoped.WHEELS : Unscoped.WHEELS;
+        for (int w = 0; w < wheels.length; w++) {
+            d.set(wheels[w], t * 12f + w);
+        }
+        d.set(scoped ? Scoped.SPEED : Unscoped.SPEED, 20f + 10f * (float) Math.cos(t));
+        d.set(scoped ? Scoped.THROTTLE : Unscoped.THROTTLE, (float) Math.abs(Math.sin(t * 1.3f)));
+        d.set(scoped ? Scoped.GEAR : Unscoped.GEAR, (byte) (tick + vehicle));
+    }
+
+    /**
+     * Frames a record the way {@code VxSyncBehavior} does for fixed-size layouts.
+     */
+    private static void writeRecord(VxByteBuf out, int vehicle, VxSynchronizedData data, long[] mask) {
+        out.writeVarInt(VxNetworkIdAllocator.pack(vehicle + 1, 0));
+        out.writeVarInt(data.recordSize(mask));
+        data.writeRecord(out, mask);
+    }
+
+    private static VxSynchronizedData buildUnscoped() {
+        VxSynchronizedData.Builder builder = new VxSynchronizedData.Builder().define(Unscoped.HEALTH, 100f).define(Unscoped.RPM, 0f);
+        for (VxServerAccessor<Float> wheel : Unscoped.WHEELS) builder.define(wheel, 0f);
+        return builder.define(Unscoped.SPEED, 0f).define(Unscoped.THROTTLE, 0f).define(Unscoped.GEAR, (byte) 0).build();
+    }
+
+    private static VxSynchronizedData buildScoped() {
+        VxSynchronizedData.Builder builder = new VxSynchronizedData.Builder().define(Scoped.HEALTH, 100f).define(Scoped.RPM, 0f);
+        for (VxServerAccessor<Float> wheel : Scoped.WHEELS) builder.define(wheel, 0f);
+        return builder.define(Scoped.SPEED, 0f).define(Scoped.THROTTLE, 0f).define(Scoped.GEAR, (byte) 0).build();
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence;
+
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * A headless benchmark of the persistence I/O throughput with 1, 2, 4 and 8 I/O workers.
+ * <p>
+ * For each worker count, a real {@link VxChunkBasedStorage} with that many workers saves a square of regions,
+ * every chunk holding one compressible blob, and flushes it. A second storage with the same worker count then
+ * loads every chunk at once through {@link VxChunkBasedStorage#loadChunk}. Each region is served by one worker,
+ * so the regions are spread over the workers by the storage's shard keys. The best write and read throughput of
+ * all passes are reported in MB of chunk data per second, with the speedup over one worker. A chunk that does
+ * not load back to its exact data fails the benchmark.
+ * <p>
+ * Pass a directory on the disk to test as last argument, e.g. one on a tmpfs such as {@code /dev/shm} to
+ * measure the storage without the disk. The operating system's file cache is warm when loading, so read
+ * throughput is higher than on a cold disk.
+ * <p>
+ * Usage: {@code VxIOThroughputBenchmark [regionsPerSide] [chunksPerSide] [bytesPerChunk] [passes] [directory]},
+ * by default 4 by 4 regions of 16 by 16 chunks with 8 KiB each and 3 passes in a temporary directory.
+ * Run it through the {@code ioThroughputBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxIOThroughputBenchmark {
+
+    private static final int[] WORKER_COUNTS = {1, 2, 4, 8};
+
+    /**
+     * A storage of opaque byte arrays with a fixed number of I/O workers, one record per chunk.
+     */
+    private static final class BlobStorage extends VxChunkBasedStorage<byte[], byte[]> {
+
+        BlobStorage(Path directory, int workers) {
+            super(directory, "benchmark", "vxbench", workers);
+        }
+
+        @Override
+        protected void writeSingle(byte[] object, VxByteBuf buffer) {
+            buffer.writeInt(object.length);
+            buffer.writeBytes(object);
+        }
+
+        @Override
+        protected byte[] readSingle(VxByteBuf buffer) {
+            byte[] data = new byte[buffer.readInt()];
+            buffer.readBytes(data);
+            return data;
+        }
+    }
+
+    private VxIOThroughputBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The world size, the chunk size, the number of passes and the directory, all optional.
+     * @throws IOException If the directory cannot be created or deleted.
+     */
+    public static void main(String[] args) throws IOException {
+        int regionsPerSide = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int chunksPerSide = args.length > 1 ? Math.min(32, Integer.parseInt(args[1])) : 16;
+        int bytesPerChunk = args.length > 2 ? Integer.parseInt(args[2]) : 8192;
+        int passes = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+        boolean temporary = args.length <= 4;
+        Path directory = temporary ? Files.createTempDirectory("velthoric-io") : Path.of(args[4]);
+
+        // Chunks are taken from the corner of each region, so every region file is used
+        int chunksPerRegion = chunksPerSide * chunksPerSide;
+        ChunkPos[] positions = new ChunkPos[regionsPerSide * regionsPerSide * chunksPerRegion];
+        for (int i = 0; i < positions.length; i++) {
+            int region = i / chunksPerRegion;
+            int chunk = i % chunksPerRegion;
+            positions[i] = new ChunkPos((region % regionsPerSide) * 32 + chunk % chunksPerSide,
+                    (region / regionsPerSide) * 32 + chunk / chunksPerSide);
+        }
+        byte[][] blobs = new byte[positions.length][bytesPerChunk];
+        Random random = new Random(42);
+        for (byte[] blob : blobs) {
+            // A small alphabet, so the data compresses about as well as body data
+            for (int b = 0; b < blob.length; b++) blob[b] = (byte) random.nextInt(16);
+        }
+        double megabytes = (double) positions.length * bytesPerChunk / 1e6;
+
+        try {
+            System.out.printf(Locale.ROOT, "%d regions, %d chunks of %d bytes (%.1f MB), best of %d passes, %d cores%n",
+                    regionsPerSide * regionsPerSide, positions.length, bytesPerChunk, megabytes, passes,
+                    Runtime.getRuntime().availableProcessors());
+            System.out.printf(Locale.ROOT, "%-8s %12s %9s %12s %9s%n", "workers", "write MB/s", "speedup", "read MB/s", "speedup");
+            double serialWrite = 0;
+            double serialRead = 0;
+            for (int workers : WORKER_COUNTS) {
+                long bestWrite = Long.MAX_VALUE;
+                long bestRead = Long.MAX_VALUE;
+                // The first pass warms up the JIT and the file system
+                for (int pass = 0; pass <= passes; pass++) {
+                    Path storageDirectory = directory.resolve("workers-" + workers);
+                    delete(storageDirectory);
+                    long write = save(storageDirectory, workers, positions, blobs);
+                    long read = load(storageDirectory, workers, positions, blobs);
+                    if (pass > 0) {
+                        bestWrite = Math.min(bestWrite, write);
+                        bestRead = Math.min(bestRead, read);
+                    }
+                }
+                double writeRate = megabytes / (bestWrite / 1e9);
+                double readRate = megabytes / (bestRead / 1e9);
+                if (workers == 1) {
+                    serialWrite = writeRate;
+                    serialRead = readRate;
+                }
+                System.out.printf(Locale.ROOT, "%-8d %12.1f %8.2fx %12.1f %8.2fx%n",
+                        workers, writeRate, writeRate / serialWrite, readRate, readRate / serialRead);
+            }
+        } finally {
+            if (temporary) delete(directory);
+        }
+    }
+
+    /**
+     * Queues every chunk and measures the flush that writes them.
+     *
+     * @return The nanoseconds taken by the flush.
+     */
+    private static long save(Path directory, int workers, ChunkPos[] positions, byte[][] blobs) {
+        BlobStorage storage = new BlobStorage(directory, workers);
+        try {
+            for (int i = 0; i < positions.length; i++) {
+                storage.saveChunk(positions[i], List.of(blobs[i]));
+            }
+            long start = System.nanoTime();
+            storage.flush(true).join();
+            return System.nanoTime() - start;
+        } finally {
+            storage.shutdown();
+        }
+    }
+
+    /**
+     * Loads every chunk at once and checks its data.
+     *
+     * @return The nanoseconds until every load completed.
+     */
+    @SuppressWarnings("unchecked")
+    private static long load(Path directory, int workers, ChunkPos[] positions, byte[][] blobs) {
+        BlobStorage storage = new BlobStorage(directory, workers);
+        try {
+            CompletableFuture<List<byte[]>>[] loads = new CompletableFuture[positions.length];
+            long start = System.nanoTime();
+            for (int i = 0; i < positions.length; i++) {
+                loads[i] = storage.loadChunk(positions[i]);
+            }
+            CompletableFuture.allOf(loads).join();
+            long nanos = System.nanoTime() - start;
+
+            for (int i = 0; i < positions.length; i++) {
+                List<byte[]> loaded = loads[i].join();
+                if (loaded.size() != 1 || !Arrays.equals(loaded.get(0), blobs[i])) {
+                    fail("chunk " + positions[i] + " did not load back with " + workers + " workers");
+                }
+            }
+            return nanos;
+        } finally {
+            storage.shutdown();
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (Files.notExists(directory)) return;
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
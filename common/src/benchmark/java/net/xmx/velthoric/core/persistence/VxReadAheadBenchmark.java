@@ -0,0 +1,226 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * A headless benchmark of chunk load stalls during a simulated flight, with and without read-ahead.
+ * <p>
+ * A strip of chunks is written to region files with a real {@link VxChunkBasedStorage}, about half of them with
+ * data. A player then flies in a straight line at a fixed speed, in real time at 20 ticks per second. Every chunk
+ * entering the view distance is loaded through {@link VxChunkBasedStorage#loadChunk}, like the persistence
+ * handlers do when Minecraft loads a chunk, and the time until its data is available is recorded as the stall of
+ * that load. The flight runs twice, each time with a fresh storage: once without read-ahead and once with a
+ * {@link VxChunkReadAhead} feeding {@link VxChunkBasedStorage#prefetch}.
+ * <p>
+ * The operating system's file cache is warm after writing the region files, so the stalls without read-ahead
+ * are lower than on a cold disk. Pass a directory on the disk to test as last argument to keep the files.
+ * <p>
+ * Usage: {@code VxReadAheadBenchmark [ticks] [blocksPerTick] [viewDistance] [bytesPerChunk] [directory]},
+ * by default 400 ticks at 1.6 blocks per tick (elytra speed), a view distance of 10 and 8 KiB per chunk with data.
+ * Run it through the {@code readAheadBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxReadAheadBenchmark {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * A storage of opaque byte arrays, one record per chunk.
+     */
+    private static final class BlobStorage extends VxChunkBasedStorage<byte[], byte[]> {
+
+        BlobStorage(Path directory) {
+            super(directory, "benchmark", "vxbench");
+        }
+
+        @Override
+        protected void writeSingle(byte[] object, VxByteBuf buffer) {
+            buffer.writeInt(object.length);
+            buffer.writeBytes(object);
+        }
+
+        @Override
+        protected byte[] readSingle(VxByteBuf buffer) {
+            byte[] data = new byte[buffer.readInt()];
+            buffer.readBytes(data);
+            return data;
+        }
+    }
+
+    /**
+     * The measurements of one flight.
+     */
+    private static final class Result {
+        final LongArrayList stalls = new LongArrayList();
+        long hits;
+        long cachedBytes;
+    }
+
+    private VxReadAheadBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The flight parameters and the directory, all optional.
+     * @throws IOException If the region files cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1.6;
+        int viewDistance = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int bytesPerChunk = args.length > 3 ? Integer.parseInt(args[3]) : 8192;
+        boolean temporary = args.length <= 4;
+        Path directory = temporary ? Files.createTempDirectory("velthoric-readahead") : Path.of(args[4]);
+
+        try {
+            int lastChunkX = ((int) Math.floor(ticks * speed) >> 4) + viewDistance;
+            int chunks = populate(directory, lastChunkX, viewDistance, bytesPerChunk);
+
+            fly(directory, false, Math.min(ticks, 100), speed, viewDistance);
+            Result baseline = fly(directory, false, ticks, speed, viewDistance);
+            Result readAhead = fly(directory, true, ticks, speed, viewDistance);
+
+            System.out.printf(Locale.ROOT, "%d chunks stored, %d with data of %d bytes%n",
+                    (lastChunkX + viewDistance + 1) * (2 * viewDistance + 1), chunks, bytesPerChunk);
+            System.out.printf(Locale.ROOT, "%d ticks at %.2f blocks/tick, view distance %d, %d chunk loads%n",
+                    ticks, speed, viewDistance, baseline.stalls.size());
+            System.out.printf(Locale.ROOT, "%-18s %14s %14s%n", "", "on load", "read-ahead");
+            System.out.printf(Locale.ROOT, "%-18s %14d %14d%n", "cache hits", baseline.hits, readAhead.hits);
+            System.out.printf(Locale.ROOT, "%-18s %11.3f ms %11.3f ms%n", "mean stall", mean(baseline.stalls), mean(readAhead.stalls));
+            System.out.printf(Locale.ROOT, "%-18s %11.3f ms %11.3f ms%n", "p99 stall", percentile(baseline.stalls, 0.99), percentile(readAhead.stalls, 0.99));
+            System.out.printf(Locale.ROOT, "%-18s %11.3f ms %11.3f ms%n", "max stall", percentile(baseline.stalls, 1.0), percentile(readAhead.stalls, 1.0));
+            System.out.printf(Locale.ROOT, "%-18s %11.1f ms %11.1f ms%n", "total stall", sum(baseline.stalls), sum(readAhead.stalls));
+            System.out.printf(Locale.ROOT, "%-18s %14s %11.1f KB%n", "cache at end", "-", readAhead.cachedBytes / 1024.0);
+        } finally {
+            if (temporary) {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the chunks of the flight path.
+     *
+     * @return The number of chunks with data.
+     */
+    private static int populate(Path directory, int lastChunkX, int viewDistance, int bytesPerChunk) {
+        BlobStorage storage = new BlobStorage(directory);
+        Random random = new Random(42);
+        int written = 0;
+        try {
+            for (int x = -viewDistance; x <= lastChunkX; x++) {
+                for (int z = -viewDistance; z <= viewDistance; z++) {
+                    if (random.nextBoolean()) continue;
+                    byte[] data = new byte[bytesPerChunk];
+                    for (int i = 0; i < data.length; i++) {
+                        data[i] = (byte) random.nextInt(24); // Compresses like typical body payloads
+                    }
+                    storage.saveChunk(new ChunkPos(x, z), List.of(data));
+                    written++;
+                }
+                storage.flush(true);
+            }
+        } finally {
+            storage.shutdown();
+        }
+        return written;
+    }
+
+    /**
+     * Simulates one flight along the X axis in real time.
+     */
+    private static Result fly(Path directory, boolean readAhead, int ticks, double speed, int viewDistance) {
+        Result result = new Result();
+        BlobStorage storage = new BlobStorage(directory);
+        VxChunkReadAhead predictor = new VxChunkReadAhead(storage::prefetch);
+        UUID player = new UUID(0, 0);
+        LongOpenHashSet loaded = new LongOpenHashSet();
+        List<CompletableFuture<?>> loads = new ArrayList<>();
+        int previousChunkX = Integer.MIN_VALUE;
+        long start = System.nanoTime();
+
+        try {
+            for (int tick = 0; tick < ticks; tick++) {
+                long wait = start + tick * TICK_NANOS - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                double x = tick * speed;
+                double z = 8;
+                int chunkX = (int) Math.floor(x) >> 4;
+
+                if (readAhead && tick % VxChunkReadAhead.UPDATE_INTERVAL == 0) {
+                    predictor.beginUpdate();
+                    predictor.update(player, x, z, viewDistance, loaded::contains);
+                    predictor.endUpdate();
+                }
+
+                if (chunkX == previousChunkX) continue;
+                previousChunkX = chunkX;
+                final int currentX = chunkX;
+                loaded.removeIf(key -> Math.abs(ChunkPos.getX(key) - currentX) > viewDistance);
+
+                for (int cx = chunkX - viewDistance; cx <= chunkX + viewDistance; cx++) {
+                    for (int cz = -viewDistance; cz <= viewDistance; cz++) {
+                        if (!loaded.add(ChunkPos.asLong(cx, cz))) continue;
+                        long requested = System.nanoTime();
+                        loads.add(storage.loadChunk(new ChunkPos(cx, cz)).thenRun(() -> {
+                            long stall = System.nanoTime() - requested;
+                            synchronized (result.stalls) {
+                                result.stalls.add(stall);
+                            }
+                        }));
+                    }
+                }
+            }
+            CompletableFuture.allOf(loads.toArray(new CompletableFuture[0])).join();
+            result.hits = storage.getReadAheadCache().getHits();
+            result.cachedBytes = storage.getReadAheadCache().getBytes();
+        } finally {
+            storage.shutdown();
+        }
+        return result;
+    }
+
+    private static double mean(LongArrayList values) {
+        return values.isEmpty() ? 0 : sum(values) / values.size();
+    }
+
+    private static double sum(LongArrayList values) {
+        long total = 0;
+        for (int i = 0; i < values.size(); i++) total += values.getLong(i);
+        return total / 1e6;
+    }
+
+    private static double percentile(LongArrayList values, double percentile) {
+        if (values.isEmpty()) return 0;
+        long[] sorted = values.toLongArray();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+}
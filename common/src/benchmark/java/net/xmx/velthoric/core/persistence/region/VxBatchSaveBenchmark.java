@@ -0,0 +1,195 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.region;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.world.level.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A headless benchmark of saving 10000 dirty chunks, written chunk by chunk or in one batch per region file.
+ * <p>
+ * A square of chunks spread over several region files is saved into fresh files, then every chunk is changed
+ * and saved again, as an autosave after a busy session does. Chunks hold between 1 and 12 KiB of compressible
+ * data, and the second save changes their sizes. Both saves are done twice:
+ * <ul>
+ *     <li><b>per chunk:</b> one {@link VxRegionFile#write} per chunk, as the storage flushed before writes
+ *     were coalesced.</li>
+ *     <li><b>batched:</b> one {@link VxRegionFile#writeBatch} per region file, as the storage flushes now.</li>
+ * </ul>
+ * The region files are open before the measurement starts. The best time of all passes and the size of the
+ * region files after the second save are reported. A chunk that does not load back to its latest data fails
+ * the benchmark. The data is not forced to disk, so the times mostly measure the work up to the file cache.
+ * <p>
+ * Usage: {@code VxBatchSaveBenchmark [chunksPerSide] [passes] [directory]}, by default 100 by 100 chunks and
+ * 3 passes in a temporary directory. Run it through the {@code batchSaveBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxBatchSaveBenchmark {
+
+    private static final String EXTENSION = "vxbench";
+
+    private VxBatchSaveBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of chunks per side, the number of passes and the directory, all optional.
+     * @throws IOException If the region files cannot be opened or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int chunksPerSide = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        boolean temporary = args.length <= 2;
+        Path directory = temporary ? Files.createTempDirectory("velthoric-save") : Path.of(args[2]);
+
+        Random random = new Random(43);
+        ChunkPos[] positions = new ChunkPos[chunksPerSide * chunksPerSide];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new ChunkPos(i % chunksPerSide, i / chunksPerSide);
+        }
+        ByteBuf[] first = generate(positions.length, random);
+        ByteBuf[] second = generate(positions.length, random);
+        int regionsPerSide = (chunksPerSide + 31) / 32;
+
+        try {
+            System.out.printf(Locale.ROOT, "%d dirty chunks in %d region files, best of %d passes%n",
+                    positions.length, regionsPerSide * regionsPerSide, passes);
+            System.out.printf(Locale.ROOT, "%-10s %12s %12s %14s %12s%n", "writes", "first save", "resave", "resaved/ms", "on disk");
+            for (boolean batched : new boolean[]{false, true}) {
+                long bestFirst = Long.MAX_VALUE;
+                long bestResave = Long.MAX_VALUE;
+                long size = 0;
+                // The first pass warms up the JIT and the file system
+                for (int pass = 0; pass <= passes; pass++) {
+                    Path storage = directory.resolve(batched ? "batched" : "per-chunk");
+                    delete(storage);
+                    VxChunkCodec codec = new VxChunkCodec(storage.resolve("dictionary." + EXTENSION + ".zdict"));
+                    VxRegionFile[] files = new VxRegionFile[regionsPerSide * regionsPerSide];
+                    for (int region = 0; region < files.length; region++) {
+                        files[region] = new VxRegionFile(storage.resolve(String.format(Locale.ROOT, "r.%d.%d.%s",
+                                region % regionsPerSide, region / regionsPerSide, EXTENSION)), codec);
+                    }
+                    try {
+                        long firstSave = save(files, regionsPerSide, positions, first, batched);
+                        long resave = save(files, regionsPerSide, positions, second, batched);
+                        if (pass > 0) {
+                            bestFirst = Math.min(bestFirst, firstSave);
+                            bestResave = Math.min(bestResave, resave);
+                        }
+                        verify(files, regionsPerSide, positions, second, batched);
+                    } finally {
+                        for (VxRegionFile file : files) file.close();
+                    }
+                    size = sizeOf(storage);
+                }
+                System.out.printf(Locale.ROOT, "%-10s %9.1f ms %9.1f ms %14.1f %9.2f MB%n", batched ? "batched" : "per chunk",
+                        bestFirst / 1e6, bestResave / 1e6, positions.length / (bestResave / 1e6), size / 1e6);
+            }
+        } finally {
+            if (temporary) delete(directory);
+        }
+    }
+
+    /**
+     * Saves every chunk once.
+     *
+     * @return The nanoseconds taken.
+     */
+    private static long save(VxRegionFile[] files, int regionsPerSide, ChunkPos[] positions, ByteBuf[] data, boolean batched) {
+        long start = System.nanoTime();
+        if (!batched) {
+            for (int i = 0; i < positions.length; i++) {
+                files[regionOf(positions[i], regionsPerSide)].write(positions[i], data[i]);
+            }
+            return System.nanoTime() - start;
+        }
+
+        List<List<ChunkPos>> regionPositions = new ArrayList<>(files.length);
+        List<List<ByteBuf>> regionData = new ArrayList<>(files.length);
+        for (int region = 0; region < files.length; region++) {
+            regionPositions.add(new ArrayList<>(1024));
+            regionData.add(new ArrayList<>(1024));
+        }
+        for (int i = 0; i < positions.length; i++) {
+            int region = regionOf(positions[i], regionsPerSide);
+            regionPositions.get(region).add(positions[i]);
+            regionData.get(region).add(data[i]);
+        }
+        for (int region = 0; region < files.length; region++) {
+            files[region].writeBatch(regionPositions.get(region), regionData.get(region));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Checks that every chunk reads back to its data.
+     */
+    private static void verify(VxRegionFile[] files, int regionsPerSide, ChunkPos[] positions, ByteBuf[] data, boolean batched)
+            throws IOException {
+        for (int i = 0; i < positions.length; i++) {
+            ByteBuf loaded = files[regionOf(positions[i], regionsPerSide)].read(positions[i]);
+            try {
+                if (loaded == null || !ByteBufUtil.equals(loaded, data[i])) {
+                    fail("chunk " + positions[i] + " did not load back after the " + (batched ? "batched" : "per chunk") + " save");
+                }
+            } finally {
+                if (loaded != null) loaded.release();
+            }
+        }
+    }
+
+    /**
+     * Generates the data of every chunk, 1 to 12 KiB from a small alphabet, so it compresses about as well as body data.
+     */
+    private static ByteBuf[] generate(int count, Random random) {
+        ByteBuf[] data = new ByteBuf[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[1024 + random.nextInt(11 * 1024)];
+            for (int b = 0; b < bytes.length; b++) bytes[b] = (byte) random.nextInt(16);
+            data[i] = Unpooled.wrappedBuffer(bytes);
+        }
+        return data;
+    }
+
+    private static int regionOf(ChunkPos pos, int regionsPerSide) {
+        return (pos.x >> 5) + (pos.z >> 5) * regionsPerSide;
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        long size = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (Files.notExists(directory)) return;
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
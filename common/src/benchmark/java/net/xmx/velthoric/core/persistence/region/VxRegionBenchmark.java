@@ -0,0 +1,262 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.region;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.persistence.schema.VxSchema;
+import net.xmx.velthoric.gametest.SchemaCompilerTest;
+import net.xmx.velthoric.gametest.SchemaCompilerTest.Sample;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A headless benchmark of the region size, save time and load time of a generated world in each chunk format.
+ * <p>
+ * Every chunk of a square of regions holds between 1 and 16 bodies, each stored as a UUID, a type ID and the
+ * sample body schema of {@link SchemaCompilerTest}, which mirrors {@code VxBodyCodec}. The world is saved with
+ * one {@link VxRegionFile#writeBatch} per region into a fresh directory and then loaded back chunk by chunk
+ * from newly opened files, in three formats:
+ * <ul>
+ *     <li><b>legacy:</b> the raw entries written before versioned payloads, by a writer reimplemented here.
+ *     They are loaded through the legacy path of {@link VxRegionFile#read}.</li>
+ *     <li><b>zstd, training:</b> a new storage whose {@link VxChunkCodec} trains its dictionary while the
+ *     world is saved, so the first chunks are compressed without it.</li>
+ *     <li><b>zstd, dictionary:</b> a storage that already has the trained dictionary, as after its first save.</li>
+ * </ul>
+ * The size of the region files and the dictionary on disk and the best save and load time of all passes are
+ * reported. A chunk that does not load back to its exact data fails the benchmark. The operating system's
+ * file cache is warm when loading, so load times are lower than on a cold disk.
+ * <p>
+ * Usage: {@code VxRegionBenchmark [regionsPerSide] [passes] [directory]}, by default 4 by 4 regions and 3 passes
+ * in a temporary directory. Run it through the {@code regionBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxRegionBenchmark {
+
+    private static final String EXTENSION = "vxbench";
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SIZE = 8192;
+    private static final String[] BODY_TYPES = {"velthoric:box", "velthoric:sphere", "velthoric:car", "velthoric:rope", "velthoric:chain"};
+
+    private VxRegionBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of regions per side, the number of passes and the directory, all optional.
+     * @throws IOException If the region files cannot be written or read.
+     */
+    public static void main(String[] args) throws IOException {
+        int regionsPerSide = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        boolean temporary = args.length <= 2;
+        Path directory = temporary ? Files.createTempDirectory("velthoric-region") : Path.of(args[2]);
+
+        try {
+            ByteBuf[][] world = generate(regionsPerSide, new Random(41));
+            long rawBytes = 0;
+            int chunks = 0;
+            for (ByteBuf[] region : world) {
+                for (ByteBuf chunk : region) {
+                    rawBytes += chunk.readableBytes();
+                    chunks++;
+                }
+            }
+
+            System.out.printf(Locale.ROOT, "%d regions, %d chunks, %.1f MB of raw chunk data, best of %d passes%n",
+                    world.length, chunks, rawBytes / 1e6, passes);
+            System.out.printf(Locale.ROOT, "%-18s %12s %8s %12s %12s%n", "format", "on disk", "ratio", "save", "load");
+            Path dictionary = directory.resolve("training").resolve("dictionary." + EXTENSION + ".zdict");
+            run("legacy", directory.resolve("legacy"), null, world, regionsPerSide, passes, rawBytes);
+            run("zstd, training", directory.resolve("training"), null, world, regionsPerSide, passes, rawBytes);
+            run("zstd, dictionary", directory.resolve("dictionary"), dictionary, world, regionsPerSide, passes, rawBytes);
+        } finally {
+            if (temporary) delete(directory);
+        }
+    }
+
+    /**
+     * Saves and loads the world in one format.
+     *
+     * @param dictionary A dictionary to install before each save, or null to start without one.
+     */
+    private static void run(String format, Path directory, Path dictionary, ByteBuf[][] world, int regionsPerSide,
+                            int passes, long rawBytes) throws IOException {
+        boolean legacy = format.equals("legacy");
+        long bestSave = Long.MAX_VALUE;
+        long bestLoad = Long.MAX_VALUE;
+        long size = 0;
+        // The first pass warms up the JIT and the file system
+        for (int pass = 0; pass <= passes; pass++) {
+            delete(directory);
+            Files.createDirectories(directory);
+            if (dictionary != null) {
+                if (Files.notExists(dictionary)) fail("the world is too small to train a dictionary");
+                Files.copy(dictionary, directory.resolve(dictionary.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            long start = System.nanoTime();
+            if (legacy) {
+                saveLegacy(directory, world, regionsPerSide);
+            } else {
+                save(directory, world, regionsPerSide);
+            }
+            long saved = System.nanoTime();
+            load(format, directory, world, regionsPerSide);
+            long loaded = System.nanoTime();
+
+            if (pass > 0) {
+                bestSave = Math.min(bestSave, saved - start);
+                bestLoad = Math.min(bestLoad, loaded - saved);
+            }
+            size = sizeOf(directory);
+        }
+        System.out.printf(Locale.ROOT, "%-18s %9.2f MB %7.1f%% %9.1f ms %9.1f ms%n", format, size / 1e6,
+                100.0 * size / rawBytes, bestSave / 1e6, bestLoad / 1e6);
+    }
+
+    /**
+     * Saves every region with one batch, as the storage's I/O workers do.
+     */
+    private static void save(Path directory, ByteBuf[][] world, int regionsPerSide) throws IOException {
+        VxChunkCodec codec = new VxChunkCodec(directory.resolve("dictionary." + EXTENSION + ".zdict"));
+        for (int region = 0; region < world.length; region++) {
+            List<ChunkPos> positions = new ArrayList<>(1024);
+            List<ByteBuf> data = new ArrayList<>(1024);
+            for (int i = 0; i < world[region].length; i++) {
+                positions.add(chunkPos(region, i, regionsPerSide));
+                data.add(world[region][i]);
+            }
+            try (VxRegionFile file = new VxRegionFile(regionPath(directory, region, regionsPerSide), codec)) {
+                file.writeBatch(positions, data);
+            }
+        }
+    }
+
+    /**
+     * Saves every region in the legacy layout: a header of sector offsets and counts, then each chunk as its plain
+     * length followed by its raw data, padded to full sectors.
+     */
+    private static void saveLegacy(Path directory, ByteBuf[][] world, int regionsPerSide) throws IOException {
+        for (int region = 0; region < world.length; region++) {
+            try (FileChannel channel = FileChannel.open(regionPath(directory, region, regionsPerSide),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                int sector = HEADER_SIZE / SECTOR_SIZE;
+                for (int i = 0; i < world[region].length; i++) {
+                    ByteBuf chunk = world[region][i];
+                    int length = chunk.readableBytes();
+                    int sectors = (length + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+                    ByteBuffer entry = ByteBuffer.allocate(sectors * SECTOR_SIZE);
+                    entry.putInt(length).put(chunk.nioBuffer()).clear();
+                    channel.write(entry, (long) sector * SECTOR_SIZE);
+
+                    ChunkPos pos = chunkPos(region, i, regionsPerSide);
+                    int index = (pos.x & 31) + (pos.z & 31) * 32;
+                    header.putInt(index * 8, sector).putInt(index * 8 + 4, sectors);
+                    sector += sectors;
+                }
+                channel.write(header, 0);
+            }
+        }
+    }
+
+    /**
+     * Loads every chunk from newly opened region files and compares it with the saved data.
+     */
+    private static void load(String format, Path directory, ByteBuf[][] world, int regionsPerSide) throws IOException {
+        VxChunkCodec codec = new VxChunkCodec(directory.resolve("dictionary." + EXTENSION + ".zdict"));
+        for (int region = 0; region < world.length; region++) {
+            try (VxRegionFile file = new VxRegionFile(regionPath(directory, region, regionsPerSide), codec)) {
+                for (int i = 0; i < world[region].length; i++) {
+                    ByteBuf expected = world[region][i];
+                    ByteBuf loaded = file.read(chunkPos(region, i, regionsPerSide));
+                    try {
+                        if (loaded == null || !ByteBufUtil.equals(loaded, expected)) {
+                            fail("chunk " + i + " of region " + region + " did not load back in the " + format + " format");
+                        }
+                    } finally {
+                        if (loaded != null) loaded.release();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the raw data of every chunk, grouped by region.
+     */
+    private static ByteBuf[][] generate(int regionsPerSide, Random random) {
+        VxSchema<Sample> schema = SchemaCompilerTest.createSchema();
+        ByteBuf[][] world = new ByteBuf[regionsPerSide * regionsPerSide][1024];
+        for (ByteBuf[] region : world) {
+            for (int i = 0; i < region.length; i++) {
+                int bodies = 1 + random.nextInt(16);
+                Sample[] samples = SchemaCompilerTest.createSamples(bodies, random);
+                VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+                buf.writeInt(bodies);
+                for (Sample sample : samples) {
+                    buf.writeLong(random.nextLong());
+                    buf.writeLong(random.nextLong());
+                    buf.writeUtf(BODY_TYPES[random.nextInt(BODY_TYPES.length)]);
+                    schema.serialize(sample, buf);
+                }
+                region[i] = buf;
+            }
+        }
+        return world;
+    }
+
+    /**
+     * @return The i-th chunk of a region. Regions are laid out in rows of {@code regionsPerSide}.
+     */
+    private static ChunkPos chunkPos(int region, int i, int regionsPerSide) {
+        return new ChunkPos((region % regionsPerSide) * 32 + (i & 31), (region / regionsPerSide) * 32 + (i >> 5));
+    }
+
+    private static Path regionPath(Path directory, int region, int regionsPerSide) {
+        return directory.resolve(String.format(Locale.ROOT, "r.%d.%d.%s", region % regionsPerSide, region / regionsPerSide, EXTENSION));
+    }
+
+    private static long sizeOf(Path directory) throws IOException {
+        long size = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (Files.notExists(directory)) return;
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
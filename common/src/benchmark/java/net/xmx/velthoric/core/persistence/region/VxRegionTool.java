@@ -0,0 +1,216 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.region;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * An offline maintenance tool for directories of physics region files (e.g., {@code <dimension>/velthoric/bodies}).
+ * <p>
+ * <b>Commands:</b>
+ * <ul>
+ *     <li><b>verify:</b> Checks every region file for entries outside the file, overlapping entries and
+ *     payloads that cannot be read or decoded.</li>
+ *     <li><b>compact:</b> Rewrites every region file without holes (see {@link VxRegionFile#compact()}) and
+ *     checks that every chunk decodes to exactly the same data afterwards. Files without any chunk are deleted.</li>
+ * </ul>
+ * The tool must not be run on a world that is currently loaded by a server.
+ * <p>
+ * Usage: {@code VxRegionTool <verify|compact> <directory>...}. Run it through the {@code regionTool} Gradle task.
+ * The process exits with status 1 if any problem was found.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxRegionTool {
+
+    /**
+     * Matches region file names, capturing the extension.
+     */
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.-?\\d+\\.-?\\d+\\.(\\w+)");
+
+    /**
+     * One codec per file extension, sharing the dictionary of its storage.
+     */
+    private final Map<String, VxChunkCodec> codecs = new HashMap<>();
+
+    private int files;
+    private int failures;
+    private long bytesBefore;
+    private long bytesAfter;
+
+    private VxRegionTool() {
+    }
+
+    /**
+     * Entry point of the tool.
+     *
+     * @param args The command followed by one or more region directories.
+     * @throws IOException If a directory cannot be listed.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("verify") || args[0].equals("compact"))) {
+            System.err.println("Usage: VxRegionTool <verify|compact> <directory>...");
+            System.exit(2);
+            return;
+        }
+        boolean compact = args[0].equals("compact");
+
+        VxRegionTool tool = new VxRegionTool();
+        for (int i = 1; i < args.length; i++) {
+            tool.codecs.clear();
+            tool.processDirectory(Path.of(args[i]), compact);
+        }
+
+        if (compact) {
+            System.out.printf(Locale.ROOT, "%d files, %s -> %s (%.1f%% reclaimed), %d failures%n",
+                    tool.files, formatBytes(tool.bytesBefore), formatBytes(tool.bytesAfter),
+                    tool.bytesBefore > 0 ? 100.0 * (tool.bytesBefore - tool.bytesAfter) / tool.bytesBefore : 0.0,
+                    tool.failures);
+        } else {
+            System.out.printf(Locale.ROOT, "%d files, %s, %d with problems%n", tool.files, formatBytes(tool.bytesBefore), tool.failures);
+        }
+        if (tool.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs the command on every region file of a directory.
+     */
+    private void processDirectory(Path directory, boolean compact) throws IOException {
+        List<Path> regionFiles = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            stream.filter(p -> REGION_FILE.matcher(p.getFileName().toString()).matches())
+                    .sorted()
+                    .forEach(regionFiles::add);
+        }
+
+        for (Path file : regionFiles) {
+            Matcher matcher = REGION_FILE.matcher(file.getFileName().toString());
+            matcher.matches();
+            String extension = matcher.group(1);
+            VxChunkCodec codec = codecs.computeIfAbsent(extension,
+                    ext -> new VxChunkCodec(directory.resolve("dictionary." + ext + ".zdict")));
+
+            files++;
+            try {
+                if (compact) {
+                    compactFile(file, codec);
+                } else {
+                    verifyFile(file, codec);
+                }
+            } catch (IOException e) {
+                failures++;
+                System.out.println("FAIL " + file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Verifies a single region file and prints the result.
+     */
+    private void verifyFile(Path file, VxChunkCodec codec) throws IOException {
+        bytesBefore += Files.size(file);
+        try (VxRegionFile region = new VxRegionFile(file, codec)) {
+            List<String> problems = region.verify();
+            if (problems.isEmpty()) {
+                System.out.printf(Locale.ROOT, "OK   %s (%s, %.0f%% live)%n",
+                        file.getFileName(), formatBytes(Files.size(file)), 100.0 * region.getLiveRatio());
+            } else {
+                failures++;
+                System.out.println("FAIL " + file.getFileName());
+                for (String problem : problems) {
+                    System.out.println("     " + problem);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compacts a single region file, checks data identity and prints the result.
+     */
+    private void compactFile(Path file, VxChunkCodec codec) throws IOException {
+        long sizeBefore = Files.size(file);
+        bytesBefore += sizeBefore;
+
+        byte[][] before = new byte[1024][];
+        int entries;
+        try (VxRegionFile region = new VxRegionFile(file, codec)) {
+            List<String> problems = region.verify();
+            if (!problems.isEmpty()) {
+                // Compacting would silently drop whatever cannot be read
+                failures++;
+                bytesAfter += sizeBefore;
+                System.out.println("SKIP " + file.getFileName() + ": " + problems.size() + " problems, run verify");
+                return;
+            }
+
+            entries = snapshot(region, before);
+            if (entries > 0) {
+                region.compact();
+
+                byte[][] after = new byte[1024][];
+                snapshot(region, after);
+                for (int index = 0; index < 1024; index++) {
+                    if (!Arrays.equals(before[index], after[index])) {
+                        failures++;
+                        System.out.println("FAIL " + file.getFileName() + ": entry " + index + " differs after compaction");
+                    }
+                }
+            }
+        }
+
+        if (entries == 0) {
+            Files.deleteIfExists(file);
+            System.out.println("DEL  " + file.getFileName() + " (no chunks)");
+            return;
+        }
+
+        long sizeAfter = Files.size(file);
+        bytesAfter += sizeAfter;
+        System.out.printf(Locale.ROOT, "OK   %s %s -> %s (%d chunks)%n",
+                file.getFileName(), formatBytes(sizeBefore), formatBytes(sizeAfter), entries);
+    }
+
+    /**
+     * Reads the decoded data of every entry.
+     *
+     * @return The number of entries present.
+     * @throws IOException If an entry cannot be read.
+     */
+    private static int snapshot(VxRegionFile region, byte[][] out) throws IOException {
+        int entries = 0;
+        for (int index = 0; index < 1024; index++) {
+            ByteBuf data = region.read(index);
+            if (data == null) continue;
+            try {
+                out[index] = ByteBufUtil.getBytes(data);
+                entries++;
+            } finally {
+                data.release();
+            }
+        }
+        return entries;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.2f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.region;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark of the fragmentation and allocation time of region file free space management.
+ * <p>
+ * A long-running region is simulated: each of its 1024 chunks has a mean size that drifts slowly, chunks are
+ * rewritten with sizes scattered around their mean, and some are deleted and later written again. Every write
+ * allocates a fresh run before the old one is freed, as {@link VxRegionFile#writeBatch} does. The same sequence
+ * of operations is replayed on two allocators:
+ * <ul>
+ *     <li><b>bitset:</b> the former first-fit scan over a {@link BitSet} of used sectors, reimplemented here,
+ *     where the file never shrinks.</li>
+ *     <li><b>extents:</b> the {@link VxSectorAllocator} of size-class free lists.</li>
+ * </ul>
+ * The best time per operation of all passes, the file length in sectors, the share of it not holding live data
+ * and the number of free runs are reported. An allocation that overlaps a live run fails the benchmark.
+ * <p>
+ * Usage: {@code VxSectorAllocatorBenchmark [chunks] [operations] [passes]}, by default 1024 chunks,
+ * 1000000 operations and 3 passes. Run it through the {@code sectorAllocatorBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxSectorAllocatorBenchmark {
+
+    /**
+     * The sectors of the region header.
+     */
+    private static final int FIRST_SECTOR = 2;
+
+    /**
+     * One way of managing the free sectors of a file.
+     */
+    private interface Allocator {
+        int allocate(int count);
+
+        void free(int start, int count);
+
+        /**
+         * @return The length of the file in sectors.
+         */
+        int end();
+
+        int freeRuns();
+    }
+
+    /**
+     * The former first-fit scan: the file only grows, and freed sectors are cleared in the bitmap.
+     */
+    private static final class BitSetAllocator implements Allocator {
+        private final BitSet used = new BitSet();
+        private int fileSectors = FIRST_SECTOR;
+
+        @Override
+        public int allocate(int count) {
+            for (int i = FIRST_SECTOR; i < fileSectors; i++) {
+                if (!used.get(i)) {
+                    int run = 0;
+                    for (int j = 0; j < count; j++) {
+                        if (i + j < fileSectors && !used.get(i + j)) {
+                            run++;
+                        } else {
+                            break;
+                        }
+                    }
+                    if (run == count) {
+                        used.set(i, i + count);
+                        return i;
+                    }
+                }
+            }
+            int start = fileSectors;
+            used.set(start, start + count);
+            fileSectors = start + count;
+            return start;
+        }
+
+        @Override
+        public void free(int start, int count) {
+            used.clear(start, start + count);
+        }
+
+        @Override
+        public int end() {
+            return fileSectors;
+        }
+
+        @Override
+        public int freeRuns() {
+            int runs = 0;
+            int s = used.nextClearBit(FIRST_SECTOR);
+            while (s < fileSectors) {
+                runs++;
+                int next = used.nextSetBit(s);
+                if (next < 0) break;
+                s = used.nextClearBit(next);
+            }
+            return runs;
+        }
+    }
+
+    /**
+     * The current size-class allocator.
+     */
+    private static final class ExtentAllocator implements Allocator {
+        private final VxSectorAllocator allocator = new VxSectorAllocator(FIRST_SECTOR);
+
+        @Override
+        public int allocate(int count) {
+            return allocator.allocate(count);
+        }
+
+        @Override
+        public void free(int start, int count) {
+            allocator.free(start, count);
+        }
+
+        @Override
+        public int end() {
+            return allocator.getEnd();
+        }
+
+        @Override
+        public int freeRuns() {
+            return allocator.getFreeExtentCount();
+        }
+    }
+
+    private VxSectorAllocatorBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of chunks, the number of operations and the number of passes, all optional.
+     */
+    public static void main(String[] args) {
+        int chunks = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int passes = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        int[] opChunks = new int[operations];
+        int[] opCounts = new int[operations];
+        generate(chunks, opChunks, opCounts, new Random(44));
+
+        System.out.printf(Locale.ROOT, "%d chunks, %d writes and deletes, best of %d passes%n", chunks, operations, passes);
+        System.out.printf(Locale.ROOT, "%-8s %10s %12s %10s %10s %10s%n", "free", "per op", "file", "live", "unused", "free runs");
+        for (boolean extents : new boolean[]{false, true}) {
+            long best = Long.MAX_VALUE;
+            int end = 0;
+            int live = 0;
+            int freeRuns = 0;
+            // The first pass warms up the JIT
+            for (int pass = 0; pass <= passes; pass++) {
+                Allocator allocator = extents ? new ExtentAllocator() : new BitSetAllocator();
+                int[] starts = new int[chunks];
+                int[] counts = new int[chunks];
+                long nanos = replay(allocator, opChunks, opCounts, starts, counts);
+                if (pass > 0) best = Math.min(best, nanos);
+
+                verify(extents ? "extents" : "bitset", starts, counts);
+                end = allocator.end();
+                live = 0;
+                for (int count : counts) live += count;
+                freeRuns = allocator.freeRuns();
+            }
+            System.out.printf(Locale.ROOT, "%-8s %7.1f ns %12d %10d %9.1f%% %10d%n", extents ? "extents" : "bitset",
+                    (double) best / operations, end, live, 100.0 * (end - FIRST_SECTOR - live) / (end - FIRST_SECTOR), freeRuns);
+        }
+    }
+
+    /**
+     * Generates the operations: the chunk of each and its new sector count, 0 for a delete.
+     */
+    private static void generate(int chunks, int[] opChunks, int[] opCounts, Random random) {
+        double[] means = new double[chunks];
+        boolean[] present = new boolean[chunks];
+        for (int c = 0; c < chunks; c++) {
+            // Most chunks are small, a few hold large structures
+            means[c] = random.nextInt(10) == 0 ? 8 + random.nextDouble() * 56 : 1 + random.nextDouble() * 3;
+        }
+        for (int op = 0; op < opChunks.length; op++) {
+            int c = random.nextInt(chunks);
+            means[c] = Math.max(1, means[c] * (0.98 + random.nextDouble() * 0.04));
+            opChunks[op] = c;
+            if (present[c] && random.nextInt(100) < 5) {
+                opCounts[op] = 0;
+                present[c] = false;
+            } else {
+                opCounts[op] = Math.max(1, (int) Math.round(means[c] * (0.75 + random.nextDouble() * 0.5)));
+                present[c] = true;
+            }
+        }
+    }
+
+    /**
+     * Replays the operations on an allocator, allocating each new run before freeing the old one.
+     *
+     * @return The nanoseconds taken.
+     */
+    private static long replay(Allocator allocator, int[] opChunks, int[] opCounts, int[] starts, int[] counts) {
+        long start = System.nanoTime();
+        for (int op = 0; op < opChunks.length; op++) {
+            int c = opChunks[op];
+            int count = opCounts[op];
+            int newStart = count > 0 ? allocator.allocate(count) : 0;
+            if (counts[c] > 0) allocator.free(starts[c], counts[c]);
+            starts[c] = newStart;
+            counts[c] = count;
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Checks that the live runs stay clear of the header and never overlap.
+     */
+    private static void verify(String allocator, int[] starts, int[] counts) {
+        BitSet used = new BitSet();
+        for (int c = 0; c < starts.length; c++) {
+            if (counts[c] == 0) continue;
+            if (starts[c] < FIRST_SECTOR || used.get(starts[c], starts[c] + counts[c]).cardinality() > 0) {
+                fail("the " + allocator + " allocator placed chunk " + c + " over the header or another chunk");
+            }
+            used.set(starts[c], starts[c] + counts[c]);
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAIL: " + message);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.schema;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import net.xmx.velthoric.gametest.SchemaCompilerTest;
+import net.xmx.velthoric.gametest.SchemaCompilerTest.Sample;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A headless benchmark comparing the interpreter of {@link VxSchema} with its compiled codec.
+ * <p>
+ * The benchmark uses the sample schema of {@link SchemaCompilerTest}, which mirrors the body schema of
+ * {@code VxBodyCodec} but operates on plain objects, so it runs without a physics world. For every pass,
+ * all objects are serialized into one pooled buffer and deserialized back with each path, and the best pass
+ * is reported in nanoseconds per object. Both paths must produce identical bytes and identical objects, otherwise the
+ * benchmark fails.
+ * <p>
+ * Usage: {@code VxSchemaBenchmark [objects] [passes]}, by default 100000 objects and 20 passes.
+ * Run it through the {@code schemaBenchmark} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxSchemaBenchmark {
+
+    private VxSchemaBenchmark() {
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of objects and passes, both optional.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        VxSchema<Sample> schema = SchemaCompilerTest.createSchema();
+        if (!schema.isCompiled()) {
+            System.err.println("Schema compilation failed, see log");
+            System.exit(1);
+            return;
+        }
+
+        Sample[] samples = SchemaCompilerTest.createSamples(count, new Random(42));
+        Sample[] targets = new Sample[count];
+        for (int i = 0; i < count; i++) targets[i] = new Sample();
+
+        ByteBuf interpreted = PooledByteBufAllocator.DEFAULT.directBuffer(count * 256);
+        ByteBuf compiled = PooledByteBufAllocator.DEFAULT.directBuffer(count * 256);
+        try {
+            VxByteBuf interpretedBuf = new VxByteBuf(interpreted);
+            VxByteBuf compiledBuf = new VxByteBuf(compiled);
+
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int pass = 0; pass < passes; pass++) {
+                interpreted.clear();
+                long t0 = System.nanoTime();
+                for (Sample sample : samples) schema.serializeInterpreted(sample, interpretedBuf);
+                long t1 = System.nanoTime();
+
+                compiled.clear();
+                long t2 = System.nanoTime();
+                for (Sample sample : samples) schema.serialize(sample, compiledBuf);
+                long t3 = System.nanoTime();
+
+                long t4 = System.nanoTime();
+                for (Sample target : targets) schema.deserializeInterpreted(target, interpretedBuf);
+                long t5 = System.nanoTime();
+
+                long t6 = System.nanoTime();
+                for (Sample target : targets) schema.deserialize(target, compiledBuf);
+                long t7 = System.nanoTime();
+
+                best[0] = Math.min(best[0], t1 - t0);
+                best[1] = Math.min(best[1], t3 - t2);
+                best[2] = Math.min(best[2], t5 - t4);
+                best[3] = Math.min(best[3], t7 - t6);
+            }
+
+            if (interpreted.writerIndex() != compiled.writerIndex()
+                    || !ByteBufUtil.equals(interpreted, 0, compiled, 0, interpreted.writerIndex())) {
+                System.err.println("FAIL: compiled output differs from the interpreter");
+                System.exit(1);
+            }
+            for (int i = 0; i < count; i++) {
+                if (!SchemaCompilerTest.equal(samples[i], targets[i])) {
+                    System.err.println("FAIL: object " + i + " differs after deserialization");
+                    System.exit(1);
+                }
+            }
+
+            System.out.printf(Locale.ROOT, "%d objects, %.1f bytes each, best of %d passes%n",
+                    count, (double) compiled.writerIndex() / count, passes);
+            System.out.printf(Locale.ROOT, "%-12s %14s %14s%n", "", "interpreted", "compiled");
+            System.out.printf(Locale.ROOT, "%-12s %11.1f ns %11.1f ns%n", "serialize", (double) best[0] / count, (double) best[1] / count);
+            System.out.printf(Locale.ROOT, "%-12s %11.1f ns %11.1f ns%n", "deserialize", (double) best[2] / count, (double) best[3] / count);
+        } finally {
+            interpreted.release();
+            compiled.release();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.xmx.velthoric.core.network.capture.VxTrafficRecorder;
+import net.xmx.velthoric.core.network.internal.VxNetworkDispatcher;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
+import net.xmx.velthoric.core.physics.world.VxPhysicsWorld;
+import net.xmx.velthoric.init.VxMainClass;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Commands for inspecting the physics network synchronization.
+ * <p>
+ * {@code /vxnet stats [reset|enable|disable]} prints or controls the {@link VxNetworkMetrics} of the server.
+ * {@code /vxnet capture start|stop|status} records the sync traffic of the executing dimension into
+ * {@code <dimension>/velthoric/captures} for offline replay with the {@code replayNetworkCapture}
+ * Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxNetworkCommand {
+
+    /**
+     * The maximum number of rows of the per-player and per-packet tables of the stats report.
+     */
+    private static final int STATS_ROWS = 10;
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("vxnet")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("stats")
+                        .executes(VxNetworkCommand::printStats)
+                        .then(Commands.literal("reset").executes(context -> {
+                            VxNetworkMetrics.getInstance().reset();
+                            context.getSource().sendSuccess(() -> Component.literal("Network metrics reset."), true);
+                            return 1;
+                        }))
+                        .then(Commands.literal("enable").executes(context -> setMetricsEnabled(context, true)))
+                        .then(Commands.literal("disable").executes(context -> setMetricsEnabled(context, false)))
+                )
+                .then(Commands.literal("capture")
+                        .then(Commands.literal("start").executes(VxNetworkCommand::startCapture))
+                        .then(Commands.literal("stop").executes(VxNetworkCommand::stopCapture))
+                        .then(Commands.literal("status").executes(VxNetworkCommand::captureStatus))
+                )
+        );
+    }
+
+    private static int printStats(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        VxNetworkMetrics.getInstance().dump(STATS_ROWS, line -> source.sendSuccess(() -> Component.literal(line), false));
+        return 1;
+    }
+
+    private static int setMetricsEnabled(CommandContext<CommandSourceStack> context, boolean enabled) {
+        VxNetworkMetrics.getInstance().setEnabled(enabled);
+        context.getSource().sendSuccess(() -> Component.literal("Network metrics " + (enabled ? "enabled." : "disabled.")), true);
+        return 1;
+    }
+
+    private static int startCapture(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        VxNetworkDispatcher dispatcher = getDispatcher(source);
+        if (dispatcher == null) return 0;
+
+        ServerLevel level = source.getLevel();
+        Path worldRoot = level.getServer().getWorldPath(LevelResource.ROOT);
+        Path file = DimensionType.getStorageFolder(level.dimension(), worldRoot)
+                .resolve("velthoric").resolve("captures")
+                .resolve("net-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".vxnc");
+
+        try {
+            dispatcher.startCapture(file);
+        } catch (IllegalStateException e) {
+            source.sendFailure(Component.literal(e.getMessage()));
+            return 0;
+        } catch (Exception e) {
+            VxMainClass.LOGGER.error("Failed to start network capture", e);
+            source.sendFailure(Component.literal("Failed to start network capture: " + e.getMessage()));
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal("Recording network traffic to " + file), true);
+        return 1;
+    }
+
+    private static int stopCapture(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        VxNetworkDispatcher dispatcher = getDispatcher(source);
+        if (dispatcher == null) return 0;
+
+        VxTrafficRecorder recorder = dispatcher.stopCapture();
+        if (recorder == null) {
+            source.sendFailure(Component.literal("No network capture is running in this dimension."));
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal(String.format("Stopped network capture: %d frames (%d dropped), %d KiB raw, written to %s",
+                recorder.getFrameCount(), recorder.getDroppedFrames(), recorder.getRawBytes() / 1024, recorder.getFile())), true);
+        return recorder.getFrameCount();
+    }
+
+    private static int captureStatus(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        VxNetworkDispatcher dispatcher = getDispatcher(source);
+        if (dispatcher == null) return 0;
+
+        VxTrafficRecorder recorder = dispatcher.getCapture();
+        if (recorder == null) {
+            source.sendSuccess(() -> Component.literal("No network capture is running in this dimension."), false);
+            return 0;
+        }
+
+        source.sendSuccess(() -> Component.literal(String.format("Recording to %s: %d frames (%d dropped), %d KiB raw",
+                recorder.getFile(), recorder.getFrameCount(), recorder.getDroppedFrames(), recorder.getRawBytes() / 1024)), false);
+        return recorder.getFrameCount();
+    }
+
+    /**
+     * Resolves the network dispatcher of the source's dimension, reporting a failure if there is none.
+     */
+    private static VxNetworkDispatcher getDispatcher(CommandSourceStack source) {
+        VxPhysicsWorld world = VxPhysicsWorld.get(source.getLevel().dimension());
+        if (world == null) {
+            source.sendFailure(Component.literal("Physics system for this dimension is not initialized."));
+            return null;
+        }
+        return world.getBodyManager().getNetworkDispatcher();
+    }
+}
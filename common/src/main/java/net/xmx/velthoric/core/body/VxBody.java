@@ -29,7 +29,6 @@ import net.xmx.velthoric.math.VxTransform;
 import net.xmx.velthoric.network.VxByteBuf;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.List;
 import java.util.UUID;
 
 /**
@@ -253,8 +252,7 @@ public class VxBody {
      * @param buf The buffer to write into.
      */
     public void writeInitialSyncData(VxByteBuf buf) {
-        List<VxSynchronizedData.Entry<?>> allEntries = this.synchronizedData.getAllEntries();
-        VxSynchronizedData.writeEntries(buf, allEntries);
+        this.synchronizedData.writeAll(buf);
     }
 
     /**
@@ -264,11 +262,7 @@ public class VxBody {
      * @return True if data was written, false if no fields were dirty.
      */
     public boolean writeDirtySyncData(VxByteBuf buf) {
-        List<VxSynchronizedData.Entry<?>> dirtyEntries = this.synchronizedData.getDirtyEntries();
-        if (dirtyEntries == null) return false;
-        VxSynchronizedData.writeEntries(buf, dirtyEntries);
-        this.synchronizedData.clearDirty();
-        return true;
+        return this.synchronizedData.writeDirty(buf);
     }
 
     /**
@@ -6,6 +6,7 @@ package net.xmx.velthoric.core.body.client;
 
 import com.github.stephengold.joltjni.RVec3;
 import net.xmx.velthoric.core.body.VxBodyDataContainer;
+import net.xmx.velthoric.core.network.internal.VxVertexStreamCodec;
 
 /**
  * Client-specific container for physics body data, including interpolation buffers.
@@ -78,11 +79,25 @@ public class VxClientBodyDataContainer extends VxBodyDataContainer {
      * Last rendered vertex data.
      */
     public final float[][] prev_vertexData;
+    /**
+     * The quantized vertex history needed to decode delta-encoded vertex updates.
+     */
+    public final VxVertexStreamCodec.State[] vertexStream;
 
     /**
      * Whether the renderer has finished initializing resources (e.g. GPU buffers) for this body.
      */
     public final boolean[] render_isInitialized;
+    /**
+     * Whether the server announced that this body came to rest.
+     * Resting bodies are skipped by the interpolator until a new active state arrives.
+     */
+    public final boolean[] isResting;
+    /**
+     * Whether the render state of a resting body has fully converged onto its rest transform.
+     * Once set, the body costs no interpolation work at all.
+     */
+    public final boolean[] render_isSettled;
     /**
      * Arbitrary custom data objects attached to the body for client-side logic.
      */
@@ -139,8 +154,11 @@ public class VxClientBodyDataContainer extends VxBodyDataContainer {
         this.state0_vertexData = new float[capacity][];
         this.state1_vertexData = new float[capacity][];
         this.prev_vertexData = new float[capacity][];
+        this.vertexStream = new VxVertexStreamCodec.State[capacity];
 
         this.render_isInitialized = new boolean[capacity];
+        this.isResting = new boolean[capacity];
+        this.render_isSettled = new boolean[capacity];
         this.customData = new Object[capacity];
         this.lastKnownPosition = new RVec3[capacity];
         for (int i = 0; i < capacity; i++) {
@@ -197,8 +215,11 @@ public class VxClientBodyDataContainer extends VxBodyDataContainer {
             System.arraycopy(this.prev_rotZ, 0, next.prev_rotZ, 0, len);
             System.arraycopy(this.prev_rotW, 0, next.prev_rotW, 0, len);
             System.arraycopy(this.prev_vertexData, 0, next.prev_vertexData, 0, len);
+            System.arraycopy(this.vertexStream, 0, next.vertexStream, 0, len);
 
             System.arraycopy(this.render_isInitialized, 0, next.render_isInitialized, 0, len);
+            System.arraycopy(this.isResting, 0, next.isResting, 0, len);
+            System.arraycopy(this.render_isSettled, 0, next.render_isSettled, 0, len);
             System.arraycopy(this.customData, 0, next.customData, 0, len);
             for (int i = 0; i < len; i++) {
                 next.lastKnownPosition[i].set(this.lastKnownPosition[i]);
@@ -223,7 +244,10 @@ public class VxClientBodyDataContainer extends VxBodyDataContainer {
         this.state0_vertexData[index] = null;
         this.state1_vertexData[index] = null;
         this.render_isInitialized[index] = false;
+        this.isResting[index] = false;
+        this.render_isSettled[index] = false;
         this.prev_vertexData[index] = null;
+        this.vertexStream[index] = null;
         this.customData[index] = null;
 
         if (this.lastKnownPosition != null && this.lastKnownPosition[index] != null) {
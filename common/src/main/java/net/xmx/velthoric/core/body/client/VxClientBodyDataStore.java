@@ -4,12 +4,12 @@
  */
 package net.xmx.velthoric.core.body.client;
 
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import net.xmx.velthoric.core.body.VxBody;
 import net.xmx.velthoric.core.body.VxBodyDataContainer;
 import net.xmx.velthoric.core.body.VxBodyDataStore;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -33,9 +33,15 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
     // --- Core Client Mappings ---
 
     /**
-     * Maps a session-specific network ID to its integer index.
+     * The full network ID currently bound to each dense network index, or 0 if the index is unused.
+     * Server indices are compact (see {@link VxNetworkIdAllocator}), so flat arrays replace a hash map.
      */
-    private final Int2IntMap networkIdToIndex = new Int2IntOpenHashMap();
+    private int[] boundNetworkIds = new int[INITIAL_CAPACITY];
+
+    /**
+     * The store index of the body bound to each dense network index.
+     */
+    private int[] storeIndexByNetworkIndex = new int[INITIAL_CAPACITY];
 
     /**
      * Constructs the client data store.
@@ -43,7 +49,6 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
     public VxClientBodyDataStore() {
         super();
         allocate(INITIAL_CAPACITY);
-        networkIdToIndex.defaultReturnValue(-1);
     }
 
     /**
@@ -55,7 +60,14 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
      */
     public int addBody(VxBody body, int networkId) {
         int index = super.reserveIndex(body);
-        networkIdToIndex.put(networkId, index);
+        int networkIndex = VxNetworkIdAllocator.indexOf(networkId);
+        if (networkIndex >= boundNetworkIds.length) {
+            int length = Math.max(networkIndex + 1, boundNetworkIds.length * 2);
+            boundNetworkIds = Arrays.copyOf(boundNetworkIds, length);
+            storeIndexByNetworkIndex = Arrays.copyOf(storeIndexByNetworkIndex, length);
+        }
+        boundNetworkIds[networkIndex] = networkId;
+        storeIndexByNetworkIndex[networkIndex] = index;
         return index;
     }
 
@@ -65,8 +77,9 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
      * @param networkId The network ID of the body to remove.
      */
     public void removeBodyByNetworkId(int networkId) {
-        int index = networkIdToIndex.remove(networkId);
+        int index = getIndexForNetworkId(networkId);
         if (index != -1) {
+            boundNetworkIds[VxNetworkIdAllocator.indexOf(networkId)] = 0;
             UUID id = getIdForIndex(index);
             if (id != null) {
                 // This calls super.removeBody -> which calls this.resetIndex(index)
@@ -75,6 +88,22 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
         }
     }
 
+    /**
+     * Returns the ID of an older generation still bound to the dense index of the given network ID.
+     * <p>
+     * The server only recycles an index after the previous body is gone, but its removal may reach the
+     * client after the spawn of the successor. Such a body must be removed before the new one is bound.
+     *
+     * @param networkId The network ID about to be bound.
+     * @return The superseded network ID, or -1 if the index is free or already bound to this ID.
+     */
+    public int getSupersededNetworkId(int networkId) {
+        int networkIndex = VxNetworkIdAllocator.indexOf(networkId);
+        if (networkIndex >= boundNetworkIds.length) return -1;
+        int bound = boundNetworkIds[networkIndex];
+        return bound == 0 || bound == networkId ? -1 : bound;
+    }
+
     /**
      * Resets all data at a specific index to default values.
      * <p>
@@ -116,13 +145,17 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
 
     /**
      * Gets the index for a given body network ID.
+     * IDs of an older or newer generation than the bound body resolve to -1, so stale packets are dropped.
      *
      * @param networkId The network ID of the body.
-     * @return The integer index, or null if the body is not in the store.
+     * @return The integer index, or -1 if the body is not in the store.
      */
-    public Integer getIndexForNetworkId(int networkId) {
-        int index = networkIdToIndex.get(networkId);
-        return index == -1 ? null : index;
+    public int getIndexForNetworkId(int networkId) {
+        int networkIndex = VxNetworkIdAllocator.indexOf(networkId);
+        if (networkId <= 0 || networkIndex >= boundNetworkIds.length || boundNetworkIds[networkIndex] != networkId) {
+            return -1;
+        }
+        return storeIndexByNetworkIndex[networkIndex];
     }
 
     /**
@@ -146,7 +179,7 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
         bytes += (long) capacity * 8 * 2;  // timestamps
         bytes += (long) capacity * 8 * 9;  // double[] positions (state0, state1, prev)
         bytes += (long) capacity * 4 * 25; // float[] (rotations, velocities, etc)
-        bytes += capacity * 3L;            // boolean[]
+        bytes += capacity * 5L;            // boolean[]
 
         return bytes;
     }
@@ -156,7 +189,7 @@ public class VxClientBodyDataStore extends VxBodyDataStore {
      */
     @Override
     public void clear() {
-        networkIdToIndex.clear();
+        Arrays.fill(boundNetworkIds, 0);
         super.clear();
     }
 }
\ No newline at end of file
@@ -163,33 +163,79 @@ public class VxClientBodyInterpolator {
                 continue;
             }
 
-            // 1. Backup the current render state to 'prev' arrays for frame interpolation.
-            c.prev_posX[i] = c.posX[i];
-            c.prev_posY[i] = c.posY[i];
-            c.prev_posZ[i] = c.posZ[i];
-            c.prev_rotX[i] = c.rotX[i];
-            c.prev_rotY[i] = c.rotY[i];
-            c.prev_rotZ[i] = c.rotZ[i];
-            c.prev_rotW[i] = c.rotW[i];
-
-            // 2. Backup vertex data if it exists (Soft Bodies)
-            float[] currentVerts = c.vertexData[i];
-            if (currentVerts != null) {
-                float[] prevVerts = c.prev_vertexData[i];
-                if (prevVerts == null || prevVerts.length != currentVerts.length) {
-                    prevVerts = new float[currentVerts.length];
-                    c.prev_vertexData[i] = prevVerts;
+            // Resting bodies are excluded from interpolation once their render state has settled.
+            if (c.isResting[i]) {
+                if (!c.render_isSettled[i]) {
+                    settleRestingBody(c, i);
                 }
-                System.arraycopy(currentVerts, 0, prevVerts, 0, currentVerts.length);
-            } else {
-                c.prev_vertexData[i] = null;
+                continue;
             }
 
+            // 1. & 2. Backup the current render state (and vertices) for frame interpolation.
+            backupRenderState(c, i);
+
             // 3. Calculate the new target state
             calculateInterpolatedState(c, i, renderTimestamp);
         }
     }
 
+    /**
+     * Copies the current render state into the {@code prev_} arrays so that
+     * {@link #interpolateFrame} can blend between the last two ticks.
+     *
+     * @param c The body data container.
+     * @param i The index of the body.
+     */
+    private void backupRenderState(VxClientBodyDataContainer c, int i) {
+        c.prev_posX[i] = c.posX[i];
+        c.prev_posY[i] = c.posY[i];
+        c.prev_posZ[i] = c.posZ[i];
+        c.prev_rotX[i] = c.rotX[i];
+        c.prev_rotY[i] = c.rotY[i];
+        c.prev_rotZ[i] = c.rotZ[i];
+        c.prev_rotW[i] = c.rotW[i];
+
+        // Backup vertex data if it exists (Soft Bodies)
+        float[] currentVerts = c.vertexData[i];
+        if (currentVerts != null) {
+            float[] prevVerts = c.prev_vertexData[i];
+            if (prevVerts == null || prevVerts.length != currentVerts.length) {
+                prevVerts = new float[currentVerts.length];
+                c.prev_vertexData[i] = prevVerts;
+            }
+            System.arraycopy(currentVerts, 0, prevVerts, 0, currentVerts.length);
+        } else {
+            c.prev_vertexData[i] = null;
+        }
+    }
+
+    /**
+     * Moves a resting body onto its final rest transform.
+     * <p>
+     * The first call blends from the last rendered state to the rest transform, the second call
+     * collapses the frame history onto it. After that the body is marked as settled and skipped
+     * entirely until the server reports it as active again.
+     *
+     * @param c The body data container.
+     * @param i The index of the body.
+     */
+    private void settleRestingBody(VxClientBodyDataContainer c, int i) {
+        boolean converged = c.posX[i] == c.state1_posX[i]
+                && c.posY[i] == c.state1_posY[i]
+                && c.posZ[i] == c.state1_posZ[i]
+                && c.rotX[i] == c.state1_rotX[i]
+                && c.rotY[i] == c.state1_rotY[i]
+                && c.rotZ[i] == c.state1_rotZ[i]
+                && c.rotW[i] == c.state1_rotW[i];
+
+        backupRenderState(c, i);
+        setRenderStateToLatest(c, i);
+
+        if (converged) {
+            c.render_isSettled[i] = true;
+        }
+    }
+
     /**
      * Calculates the interpolated or extrapolated state for a single body.
      * The result is written to the base arrays ({@code posX}, {@code rotX}, etc.).
@@ -246,7 +292,7 @@ public class VxClientBodyInterpolator {
             c.rotY[i] = c.state1_rotY[i];
             c.rotZ[i] = c.state1_rotZ[i];
             c.rotW[i] = c.state1_rotW[i];
-            c.vertexData[i] = c.state1_vertexData[i];
+            copyRenderVertices(c, i, c.state1_vertexData[i]);
             return;
         }
 
@@ -283,7 +329,7 @@ public class VxClientBodyInterpolator {
                 c.vertexData[i][j] = Mth.lerp(alphaF, fromVerts[j], toVerts[j]);
             }
         } else {
-            c.vertexData[i] = toVerts != null ? toVerts : fromVerts;
+            copyRenderVertices(c, i, toVerts != null ? toVerts : fromVerts);
         }
     }
 
@@ -302,7 +348,30 @@ public class VxClientBodyInterpolator {
         c.rotY[i] = c.state1_rotY[i];
         c.rotZ[i] = c.state1_rotZ[i];
         c.rotW[i] = c.state1_rotW[i];
-        c.vertexData[i] = c.state1_vertexData[i] != null ? c.state1_vertexData[i] : c.state0_vertexData[i];
+        copyRenderVertices(c, i, c.state1_vertexData[i] != null ? c.state1_vertexData[i] : c.state0_vertexData[i]);
+    }
+
+    /**
+     * Copies history vertices into the body's own render vertex array.
+     * <p>
+     * The render array must never alias the {@code state0}/{@code state1} arrays, because the
+     * vertex packet handler decodes new frames into the history array that drops out.
+     *
+     * @param c      The body data container.
+     * @param i      The index of the body.
+     * @param source The vertices to copy, or null.
+     */
+    private void copyRenderVertices(VxClientBodyDataContainer c, int i, float @Nullable [] source) {
+        if (source == null) {
+            c.vertexData[i] = null;
+            return;
+        }
+        float[] target = c.vertexData[i];
+        if (target == null || target.length != source.length) {
+            target = new float[source.length];
+            c.vertexData[i] = target;
+        }
+        System.arraycopy(source, 0, target, 0, source.length);
     }
 
     /**
@@ -6,17 +6,21 @@ package net.xmx.velthoric.core.body.client;
 
 import dev.architectury.event.events.client.ClientTickEvent;
 import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.resources.ResourceLocation;
 import net.xmx.velthoric.core.behavior.VxBehavior;
 import net.xmx.velthoric.core.behavior.VxBehaviorManager;
+import net.xmx.velthoric.core.network.internal.VxClientShapeCache;
 import net.xmx.velthoric.core.network.synchronization.behavior.VxSyncBehavior;
 import net.xmx.velthoric.core.body.VxAbstractBodyManager;
 import net.xmx.velthoric.core.body.client.time.VxClientClock;
 import net.xmx.velthoric.core.body.registry.VxBodyRegistry;
 import net.xmx.velthoric.core.body.VxBodyType;
 import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.tracking.VxSpatialManager;
 import net.xmx.velthoric.event.api.VxClientLevelEvent;
 import net.xmx.velthoric.event.api.VxClientPlayerNetworkEvent;
 import net.xmx.velthoric.init.VxMainClass;
@@ -70,6 +74,11 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
      */
     private final VxClientBodyInterpolator interpolator = new VxClientBodyInterpolator();
 
+    /**
+     * The cache of collision shapes transferred by the server, shared by all bodies referencing them.
+     */
+    private final VxClientShapeCache shapeCache = new VxClientShapeCache();
+
     /**
      * The calculated time offset between the client and server clocks.
      * Client Render Time = Client Game Time + Offset - Adaptive Delay.
@@ -199,8 +208,9 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
      * @param typeId      The ResourceLocation identifying the body's type.
      * @param data        A buffer containing the initial transform and custom sync data.
      * @param timestamp   The server-side timestamp of the spawn event.
+     * @param resting     Whether the body is already resting on the server and will not receive state updates.
      */
-    public void spawnBody(UUID id, int networkId, ResourceLocation typeId, VxByteBuf data, long timestamp) {
+    public void spawnBody(UUID id, int networkId, ResourceLocation typeId, VxByteBuf data, long timestamp, boolean resting) {
         // Prevent duplicate spawning logic
         if (store.hasBody(id)) {
             VxMainClass.LOGGER.warn("Client received spawn request for already existing body: {}", id);
@@ -223,9 +233,16 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
             return;
         }
 
+        // A late removal of the index's previous owner must not leave that body behind
+        int superseded = store.getSupersededNetworkId(networkId);
+        if (superseded != -1) {
+            removeBody(superseded);
+        }
+
         // Register in SoA DataStore
         int index = store.addBody(body, networkId);
         body.setDataStoreIndex(store, index);
+        body.setNetworkId(networkId);
         managedBodies.put(id, body);
 
         // Attach default behaviors defined in the type definition.
@@ -246,7 +263,7 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
         body.getSynchronizedData().readEntries(data, body);
 
         // Initialize interpolation buffers
-        initializeState(index, transform, timestamp);
+        initializeState(index, transform, timestamp, resting);
 
         // Notify the body that it has been added to the client level.
         ClientLevel level = Minecraft.getInstance().level;
@@ -263,8 +280,9 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
      * @param index     The data store index of the body.
      * @param transform The initial transform.
      * @param timestamp The spawn timestamp.
+     * @param resting   Whether the body is resting and should be excluded from interpolation.
      */
-    private void initializeState(int index, VxTransform transform, long timestamp) {
+    private void initializeState(int index, VxTransform transform, long timestamp, boolean resting) {
         VxClientBodyDataContainer c = store.clientCurrent();
         // Extract values
         double x = transform.getTranslation().x();
@@ -279,9 +297,11 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
         c.state0_timestamp[index] = timestamp;
         c.state1_timestamp[index] = timestamp;
 
-        // Mark as active
-        c.state0_isActive[index] = true;
-        c.state1_isActive[index] = true;
+        // Mark as active, unless the server reports the body as already resting
+        c.state0_isActive[index] = !resting;
+        c.state1_isActive[index] = !resting;
+        c.isResting[index] = resting;
+        c.render_isSettled[index] = resting;
 
         // Initialize Position Buffers (State 0, State 1, Render, Previous Frame)
         c.state0_posX[index] = c.state1_posX[index] = c.posX[index] = c.prev_posX[index] = x;
@@ -311,8 +331,8 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
      * @param networkId The network ID of the body to remove.
      */
     public void removeBody(int networkId) {
-        Integer index = store.getIndexForNetworkId(networkId);
-        if (index != null) {
+        int index = store.getIndexForNetworkId(networkId);
+        if (index != -1) {
             UUID id = store.getIdForIndex(index);
             if (id != null) {
                 VxBody body = managedBodies.get(id);
@@ -335,6 +355,29 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
         store.removeBodyByNetworkId(networkId);
     }
 
+    /**
+     * Removes all resting bodies located in the given chunks in a single pass over the managed bodies.
+     * <p>
+     * The chunk of a resting body is derived from its exact rest transform, the same way the server
+     * assigns bodies to chunks. Moving bodies are never affected; the server lists them explicitly.
+     *
+     * @param chunkKeys The packed positions of the chunks to clear.
+     */
+    public void removeRestingBodiesInChunks(LongSet chunkKeys) {
+        VxClientBodyDataContainer c = store.clientCurrent();
+        IntArrayList doomed = new IntArrayList();
+        for (VxBody body : managedBodies.values()) {
+            int index = body.getDataStoreIndex();
+            if (index == -1 || index >= c.getCapacity() || !c.isResting[index]) continue;
+            if (chunkKeys.contains(VxSpatialManager.calculateChunkKey(c.state1_posX[index], c.state1_posZ[index]))) {
+                doomed.add(body.getNetworkId());
+            }
+        }
+        for (int i = 0; i < doomed.size(); i++) {
+            removeBody(doomed.getInt(i));
+        }
+    }
+
     /**
      * Marks a body as having modified CLIENT-authoritative data that needs
      * to be sent to the server (e.g., custom sync data).
@@ -365,6 +408,7 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
     public void clearAll() {
         store.clear();
         this.clearInternal();
+        shapeCache.clear();
         VxSyncBehavior sync = behaviorManager.getBehavior(VxSyncBehavior.ID);
         if (sync != null) sync.clear();
         isClockOffsetInitialized = false;
@@ -440,6 +484,15 @@ public class VxClientBodyManager extends VxAbstractBodyManager {
         return interpolator;
     }
 
+    /**
+     * Returns the client-side shape cache used to resolve shapes in spawn data.
+     *
+     * @return The shape cache instance.
+     */
+    public VxClientShapeCache getShapeCache() {
+        return shapeCache;
+    }
+
     /**
      * Returns the client-side clock.
      *
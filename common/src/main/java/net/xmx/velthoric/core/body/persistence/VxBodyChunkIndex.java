@@ -0,0 +1,28 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.body.persistence;
+
+import java.util.UUID;
+
+/**
+ * A small index of the bodies stored in one chunk entry, built without deserializing the bodies.
+ * It holds the ID and the stored position of every body.
+ *
+ * @param ids       The IDs of the bodies, in storage order.
+ * @param positions The X, Y and Z coordinates of every body, three values per body in the order of {@code ids}.
+ * @author xI-Mx-Ix
+ */
+public record VxBodyChunkIndex(
+        UUID[] ids,
+        double[] positions
+) {
+
+    /**
+     * @return The number of indexed bodies.
+     */
+    public int size() {
+        return ids.length;
+    }
+}
@@ -36,6 +36,20 @@ import java.util.UUID;
  */
 public final class VxBodyCodec {
 
+    /**
+     * Field IDs of the body schema. They are part of the storage format and must never change.
+     */
+    public static final short FIELD_POSITION = 1;
+    public static final short FIELD_ROTATION = 2;
+    public static final short FIELD_LINEAR_VELOCITY = 3;
+    public static final short FIELD_ANGULAR_VELOCITY = 4;
+    public static final short FIELD_MOTION_TYPE = 5;
+    public static final short FIELD_ACTIVATION = 6;
+    public static final short FIELD_BEHAVIORS = 7;
+    public static final short FIELD_SOFT_BODY_VERTICES = 8;
+    public static final short FIELD_SHAPE = 9;
+    public static final short FIELD_TYPE_DATA = 10;
+
     /**
      * The schema definition for physics bodies.
      * This defines all persistent properties and their exact layout.
@@ -44,7 +58,7 @@ public final class VxBodyCodec {
 
     static {
         // Field 1: Position
-        SCHEMA.register((short) 1, "position", VxFieldType.RVEC3,
+        SCHEMA.register(FIELD_POSITION, "position", VxFieldType.RVEC3,
                 body -> body.getPhysicsWorld() != null && body.getDataStoreIndex() != -1,
                 (body, buf) -> {
                     VxServerBodyDataContainer c = body.getPhysicsWorld().getBodyManager().getDataStore().serverCurrent();
@@ -67,7 +81,7 @@ public final class VxBodyCodec {
         );
 
         // Field 2: Rotation
-        SCHEMA.register((short) 2, "rotation", VxFieldType.QUATERNION,
+        SCHEMA.register(FIELD_ROTATION, "rotation", VxFieldType.QUATERNION,
                 body -> body.getPhysicsWorld() != null && body.getDataStoreIndex() != -1,
                 (body, buf) -> {
                     VxServerBodyDataContainer c = body.getPhysicsWorld().getBodyManager().getDataStore().serverCurrent();
@@ -92,7 +106,7 @@ public final class VxBodyCodec {
         );
 
         // Field 3: Linear Velocity
-        SCHEMA.register((short) 3, "linear_velocity", VxFieldType.VEC3F,
+        SCHEMA.register(FIELD_LINEAR_VELOCITY, "linear_velocity", VxFieldType.VEC3F,
                 body -> {
                     if (body.getPhysicsWorld() == null || body.getDataStoreIndex() == -1) return false;
                     VxServerBodyDataContainer c = body.getPhysicsWorld().getBodyManager().getDataStore().serverCurrent();
@@ -120,7 +134,7 @@ public final class VxBodyCodec {
         );
 
         // Field 4: Angular Velocity
-        SCHEMA.register((short) 4, "angular_velocity", VxFieldType.VEC3F,
+        SCHEMA.register(FIELD_ANGULAR_VELOCITY, "angular_velocity", VxFieldType.VEC3F,
                 body -> {
                     if (body.getPhysicsWorld() == null || body.getDataStoreIndex() == -1) return false;
                     VxServerBodyDataContainer c = body.getPhysicsWorld().getBodyManager().getDataStore().serverCurrent();
@@ -148,7 +162,7 @@ public final class VxBodyCodec {
         );
 
         // Field 5: Motion Type
-        SCHEMA.register((short) 5, "motion_type", VxFieldType.BYTE,
+        SCHEMA.register(FIELD_MOTION_TYPE, "motion_type", VxFieldType.BYTE,
                 body -> body.getMotionType() != null && body.getMotionType() != EMotionType.Dynamic,
                 (body, buf) -> buf.writeByte(body.getMotionType().ordinal()),
                 (body, buf) -> {
@@ -158,7 +172,7 @@ public final class VxBodyCodec {
         );
 
         // Field 6: Activation
-        SCHEMA.register((short) 6, "activation", VxFieldType.BYTE,
+        SCHEMA.register(FIELD_ACTIVATION, "activation", VxFieldType.BYTE,
                 body -> body.getActivation() != null && body.getActivation() != EActivation.DontActivate,
                 (body, buf) -> buf.writeByte(body.getActivation().ordinal()),
                 (body, buf) -> {
@@ -168,7 +182,7 @@ public final class VxBodyCodec {
         );
 
         // Field 7: Behavior Bits
-        SCHEMA.register((short) 7, "behaviors", VxFieldType.LONG,
+        SCHEMA.register(FIELD_BEHAVIORS, "behaviors", VxFieldType.LONG,
                 body -> body.getPhysicsWorld() != null && body.getDataStoreIndex() != -1,
                 (body, buf) -> {
                     VxServerBodyDataContainer c = body.getPhysicsWorld().getBodyManager().getDataStore().serverCurrent();
@@ -185,7 +199,7 @@ public final class VxBodyCodec {
         );
 
         // Field 8: Soft Body Vertices
-        SCHEMA.register((short) 8, "soft_body_vertices", VxFieldType.BYTES,
+        SCHEMA.register(FIELD_SOFT_BODY_VERTICES, "soft_body_vertices", VxFieldType.BYTES,
                 body -> {
                     if (body.getPhysicsWorld() == null || body.getDataStoreIndex() == -1) return false;
                     VxServerBodyDataStore store = body.getPhysicsWorld().getBodyManager().getDataStore();
@@ -210,7 +224,7 @@ public final class VxBodyCodec {
         );
 
         // Field 9: Collision Shape
-        SCHEMA.register((short) 9, "shape", VxFieldType.SHAPE,
+        SCHEMA.register(FIELD_SHAPE, "shape", VxFieldType.SHAPE,
                 body -> body.getShape() != null,
                 (body, buf) -> VxShapeCodec.write(buf, body.getShape()),
                 (body, buf) -> {
@@ -224,7 +238,7 @@ public final class VxBodyCodec {
         );
 
         // Field 10: Custom Type Data
-        SCHEMA.register((short) 10, "type_data", VxFieldType.BYTES,
+        SCHEMA.register(FIELD_TYPE_DATA, "type_data", VxFieldType.BYTES,
                 body -> true, // Let the specific handler decide if it actually writes anything
                 (body, buf) -> body.getType().getPersistenceHandler().write(body, buf),
                 (body, buf) -> body.getType().getPersistenceHandler().read(body, buf)
@@ -273,6 +287,21 @@ public final class VxBodyCodec {
         }
     }
 
+    /**
+     * Writes an already serialized body in the format of {@link #serialize(VxBody, VxByteBuf)}.
+     * The body data buffer is not consumed.
+     *
+     * @param data The serialized body.
+     * @param buf  The buffer to write the serialized data into.
+     */
+    public static void serialize(VxSerializedBodyData data, VxByteBuf buf) {
+        ByteBuf payload = data.bodyData();
+        buf.writeUUID(data.id());
+        buf.writeUtf(data.typeId().toString());
+        buf.writeInt(payload.readableBytes());
+        buf.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+    }
+
     /**
      * Deserializes the identity header from the buffer and provides a sliced payload.
      *
@@ -4,18 +4,33 @@
  */
 package net.xmx.velthoric.core.body.persistence;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
 import net.xmx.velthoric.network.VxByteBuf;
 import net.xmx.velthoric.core.body.VxBody;
 import net.xmx.velthoric.core.persistence.VxChunkBasedStorage;
+import net.xmx.velthoric.core.persistence.schema.VxFieldType;
+
+import java.util.*;
 
 /**
  * Storage implementation for physics bodies using the generic region system.
+ * <p>
+ * Chunks are written in the columnar layout of {@link VxColumnarBodyCodec}. Chunks in the record layout
+ * of {@link VxBodyCodec} remain readable and are converted the next time they are saved.
  *
  * @author xI-Mx-Ix
  */
 public class VxBodyStorage extends VxChunkBasedStorage<VxBody, VxSerializedBodyData> {
 
+    /**
+     * Whether chunks are written in the columnar layout. If disabled, the record layout is written,
+     * which older versions can read. Both layouts are always readable.
+     */
+    private static final boolean COLUMNAR_LAYOUT = true;
+
     /**
      * Initializes the storage handler for physics bodies.
      * <p>
@@ -28,6 +43,122 @@ public class VxBodyStorage extends VxChunkBasedStorage<VxBody, VxSerializedBodyD
         super(level, "bodies", "vxb");
     }
 
+    /**
+     * Saves the live bodies of a chunk together with a chunk entry that was loaded but not decoded
+     * (see {@link #loadChunkData}). Stored bodies that are also live are written in their live state.
+     *
+     * @param pos        The chunk position.
+     * @param bodies     The live bodies of the chunk.
+     * @param storedData The undecoded chunk entry.
+     */
+    public void saveChunk(ChunkPos pos, Collection<VxBody> bodies, byte[] storedData) {
+        List<VxSerializedBodyData> stored = decodeChunk(pos, storedData);
+        try {
+            queueChunk(pos, bodies.isEmpty() && stored.isEmpty(), buffer -> {
+                if (COLUMNAR_LAYOUT) {
+                    VxColumnarBodyCodec.write(pos, bodies, stored, buffer);
+                } else {
+                    writeRecords(bodies, stored, buffer);
+                }
+            });
+        } finally {
+            for (VxSerializedBodyData data : stored) {
+                data.bodyData().release();
+            }
+        }
+    }
+
+    /**
+     * Builds the index of a chunk entry obtained from {@link #loadChunkData}.
+     * Columnar chunks are indexed without decoding the bodies; record layout chunks are decoded.
+     *
+     * @param pos  The chunk position.
+     * @param data The chunk entry.
+     * @return The IDs and positions of the stored bodies.
+     */
+    public VxBodyChunkIndex indexChunk(ChunkPos pos, byte[] data) {
+        VxByteBuf buffer = new VxByteBuf(Unpooled.wrappedBuffer(data));
+        if (VxColumnarBodyCodec.isColumnar(buffer)) {
+            return VxColumnarBodyCodec.index(pos, buffer);
+        }
+
+        List<VxSerializedBodyData> stored = decodeChunk(pos, data);
+        UUID[] ids = new UUID[stored.size()];
+        double[] positions = new double[stored.size() * 3];
+        for (int i = 0; i < ids.length; i++) {
+            VxSerializedBodyData body = stored.get(i);
+            ByteBuf payload = body.bodyData();
+            ids[i] = body.id();
+            // The position is the first record of a body payload if it is present
+            int p = payload.readerIndex();
+            if (payload.readableBytes() >= 27 && payload.getShort(p) == VxBodyCodec.FIELD_POSITION
+                    && payload.getByte(p + 2) == VxFieldType.RVEC3.getId()) {
+                positions[i * 3] = payload.getDouble(p + 3);
+                positions[i * 3 + 1] = payload.getDouble(p + 11);
+                positions[i * 3 + 2] = payload.getDouble(p + 19);
+            } else {
+                positions[i * 3] = pos.getMiddleBlockX();
+                positions[i * 3 + 2] = pos.getMiddleBlockZ();
+            }
+            payload.release();
+        }
+        return new VxBodyChunkIndex(ids, positions);
+    }
+
+    /**
+     * Internal: Serializes all bodies of a chunk, in the columnar layout unless it is disabled.
+     *
+     * @param pos    The chunk position.
+     * @param bodies The bodies to save.
+     * @param buffer The buffer to write into.
+     */
+    @Override
+    protected void writeChunk(ChunkPos pos, Collection<VxBody> bodies, VxByteBuf buffer) {
+        if (COLUMNAR_LAYOUT) {
+            VxColumnarBodyCodec.write(pos, bodies, buffer);
+        } else {
+            super.writeChunk(pos, bodies, buffer);
+        }
+    }
+
+    /**
+     * Internal: Reads a chunk in either layout.
+     *
+     * @param pos     The chunk position.
+     * @param buffer  The buffer to read from.
+     * @param results Receives the serialized body data.
+     */
+    @Override
+    protected void readChunk(ChunkPos pos, VxByteBuf buffer, List<VxSerializedBodyData> results) {
+        if (VxColumnarBodyCodec.isColumnar(buffer)) {
+            VxColumnarBodyCodec.read(pos, buffer, results);
+        } else {
+            super.readChunk(pos, buffer, results);
+        }
+    }
+
+    /**
+     * Internal: Writes live and serialized bodies in the record layout.
+     */
+    private void writeRecords(Collection<VxBody> bodies, List<VxSerializedBodyData> stored, VxByteBuf buffer) {
+        Set<UUID> live = new HashSet<>();
+        for (VxBody body : bodies) {
+            live.add(body.getPhysicsId());
+        }
+        List<VxSerializedBodyData> remaining = new ArrayList<>();
+        for (VxSerializedBodyData data : stored) {
+            if (!live.contains(data.id())) remaining.add(data);
+        }
+
+        buffer.writeInt(bodies.size() + remaining.size());
+        for (VxBody body : bodies) {
+            writeSingle(body, buffer);
+        }
+        for (VxSerializedBodyData data : remaining) {
+            VxBodyCodec.serialize(data, buffer);
+        }
+    }
+
     /**
      * Internal: Serializes a physics body to the byte buffer.
      *
@@ -0,0 +1,694 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.body.persistence;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.persistence.schema.VxFieldType;
+import net.xmx.velthoric.core.persistence.schema.VxSchema;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A columnar layout for all bodies of one chunk.
+ * <p>
+ * The record layout of {@link VxBodyCodec} writes each body as one record, so similar values of different
+ * bodies (positions, rotations, motion types) end up interleaved. This layout stores the same data by
+ * <b>column</b> instead, so that the chunk compressor (see
+ * {@link net.xmx.velthoric.core.persistence.region.VxChunkCodec}) sees long runs of similar bytes:
+ * <ul>
+ *     <li>The fixed-size schema fields (position, rotation, velocities, motion type, activation and behaviors)
+ *     of all bodies are stored as one column per field. Each column is a matrix with one row per body,
+ *     stored <b>byte-transposed</b>: first byte 0 of every row, then byte 1, and so on. Sign, exponent and
+ *     high mantissa bytes of neighbouring bodies are usually equal and line up this way.</li>
+ *     <li>Positions are stored relative to the chunk origin when that is exact for every body in the chunk,
+ *     which makes the high bytes of X and Z equal for all bodies.</li>
+ *     <li>Collision shapes are stored once in a per-chunk shape table; bodies refer to their shape by index.</li>
+ *     <li>Body types are stored once in a per-chunk type table.</li>
+ *     <li>All other schema fields (soft body vertices, type data, unknown fields) stay in their TLV form
+ *     as a per-body residual.</li>
+ * </ul>
+ * The layout is lossless: reading a chunk rebuilds exactly the schema payload {@link VxSchema#serialize}
+ * produced for each body. Bodies whose payload cannot be split (e.g. fields out of order) are stored raw.
+ * <p>
+ * <b>Format (version 1):</b>
+ * <ul>
+ *     <li>Header (int): {@link #MARKER} | version. Record layout chunks start with a non-negative body count,
+ *     so the marker tells both layouts apart.</li>
+ *     <li>Body count (VarInt)</li>
+ *     <li>UUIDs: transposed matrix of 16 byte rows</li>
+ *     <li>Type table: count (VarInt), type IDs (UTF), then one index (VarInt) per body</li>
+ *     <li>Field masks: one (VarInt) per body, a bit per column, the shape bit and the raw bit</li>
+ *     <li>Columns: for each column, the transposed matrix of the bodies that have the field.
+ *     The position column is preceded by its mode (byte).</li>
+ *     <li>Shape table: count (VarInt), shapes (byte array), then one index (VarInt) per body with a shape</li>
+ *     <li>Residuals: one byte array per body, holding the remaining TLV records without the end marker,
+ *     or the complete payload for raw bodies</li>
+ * </ul>
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxColumnarBodyCodec {
+
+    /**
+     * The high bit of the chunk header, set for columnar chunks.
+     */
+    public static final int MARKER = 0x80000000;
+
+    /**
+     * The current layout version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The schema fields stored as columns, in ascending ID order.
+     */
+    private static final short[] COLUMN_IDS = {
+            VxBodyCodec.FIELD_POSITION,
+            VxBodyCodec.FIELD_ROTATION,
+            VxBodyCodec.FIELD_LINEAR_VELOCITY,
+            VxBodyCodec.FIELD_ANGULAR_VELOCITY,
+            VxBodyCodec.FIELD_MOTION_TYPE,
+            VxBodyCodec.FIELD_ACTIVATION,
+            VxBodyCodec.FIELD_BEHAVIORS
+    };
+
+    /**
+     * The field types of {@link #COLUMN_IDS}. A field with a different type is kept in the residual.
+     */
+    private static final VxFieldType[] COLUMN_TYPES = {
+            VxFieldType.RVEC3,
+            VxFieldType.QUATERNION,
+            VxFieldType.VEC3F,
+            VxFieldType.VEC3F,
+            VxFieldType.BYTE,
+            VxFieldType.BYTE,
+            VxFieldType.LONG
+    };
+
+    private static final int COLUMN_COUNT = COLUMN_IDS.length;
+    private static final int POSITION_COLUMN = 0;
+
+    /**
+     * Field mask bit for bodies with an entry in the shape table.
+     */
+    private static final int SHAPE_BIT = 1 << COLUMN_COUNT;
+
+    /**
+     * Field mask bit for bodies stored as a complete raw payload.
+     */
+    private static final int RAW_BIT = 1 << (COLUMN_COUNT + 1);
+
+    /**
+     * Position column modes.
+     */
+    private static final byte POSITION_ABSOLUTE = 0;
+    private static final byte POSITION_CHUNK_RELATIVE = 1;
+
+    private VxColumnarBodyCodec() {
+    }
+
+    /**
+     * Checks whether a chunk entry uses the columnar layout, without consuming anything.
+     *
+     * @param buf The chunk data.
+     * @return True for the columnar layout, false for the record layout.
+     */
+    public static boolean isColumnar(ByteBuf buf) {
+        return buf.readableBytes() >= 4 && (buf.getInt(buf.readerIndex()) & MARKER) != 0;
+    }
+
+    /**
+     * Serializes all bodies of a chunk in the columnar layout.
+     * Bodies without any persistent state are skipped, as in {@link VxBodyCodec#serialize}.
+     *
+     * @param pos    The chunk position, used as the origin of relative positions.
+     * @param bodies The bodies of the chunk.
+     * @param out    The buffer to write into.
+     */
+    public static void write(ChunkPos pos, Collection<VxBody> bodies, VxByteBuf out) {
+        write(pos, bodies, Collections.emptyList(), out);
+    }
+
+    /**
+     * Serializes the bodies of a chunk together with bodies that are still in their serialized form,
+     * e.g. bodies of a chunk that was loaded but not yet decoded. A serialized body is skipped if a live
+     * body with the same ID is present, since the live state is newer.
+     *
+     * @param pos    The chunk position, used as the origin of relative positions.
+     * @param bodies The live bodies of the chunk.
+     * @param stored The serialized bodies of the chunk. Their buffers are not consumed.
+     * @param out    The buffer to write into.
+     */
+    public static void write(ChunkPos pos, Collection<VxBody> bodies, Collection<VxSerializedBodyData> stored, VxByteBuf out) {
+        int capacity = bodies.size() + stored.size();
+        UUID[] ids = new UUID[capacity];
+        String[] types = new String[capacity];
+        int[] ends = new int[capacity];
+
+        // Serialize all schema payloads back to back into one scratch buffer
+        ByteBuf payloads = ByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            VxByteBuf payloadBuf = new VxByteBuf(payloads);
+            Set<UUID> live = stored.isEmpty() ? Collections.emptySet() : new HashSet<>();
+            int count = 0;
+            for (VxBody body : bodies) {
+                int start = payloads.writerIndex();
+                VxBodyCodec.SCHEMA.serialize(body, payloadBuf);
+                if (payloads.writerIndex() - start <= 2) { // Only END_OF_SCHEMA tag present
+                    payloads.writerIndex(start);
+                    continue;
+                }
+                ids[count] = body.getPhysicsId();
+                types[count] = body.getType().getTypeId().toString();
+                ends[count] = payloads.writerIndex();
+                count++;
+                if (!stored.isEmpty()) live.add(body.getPhysicsId());
+            }
+            for (VxSerializedBodyData data : stored) {
+                ByteBuf payload = data.bodyData();
+                if (payload.readableBytes() <= 2 || live.contains(data.id())) continue;
+                payloads.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+                ids[count] = data.id();
+                types[count] = data.typeId().toString();
+                ends[count] = payloads.writerIndex();
+                count++;
+            }
+            encode(pos.getMinBlockX(), pos.getMinBlockZ(), count, ids, types, payloads, ends, out);
+        } finally {
+            payloads.release();
+        }
+    }
+
+    /**
+     * Reads a columnar chunk written by {@link #write}.
+     * The body data buffers of the results are owned by the caller.
+     *
+     * @param pos     The chunk position the data was written for.
+     * @param in      The chunk data.
+     * @param results Receives the serialized bodies.
+     */
+    public static void read(ChunkPos pos, VxByteBuf in, List<VxSerializedBodyData> results) {
+        int header = in.readInt();
+        int version = header & ~MARKER;
+        if ((header & MARKER) == 0 || version != VERSION) {
+            throw new DecoderException("Unsupported columnar body chunk version " + version);
+        }
+        decode(pos.getMinBlockX(), pos.getMinBlockZ(), in, results);
+    }
+
+    /**
+     * Builds the index of a columnar chunk written by {@link #write}. Only the IDs, the type table,
+     * the field masks and the position column are read; everything after the position column is skipped.
+     * Bodies without a stored position are indexed at the chunk center.
+     *
+     * @param pos The chunk position the data was written for.
+     * @param in  The chunk data.
+     * @return The index of the chunk.
+     */
+    public static VxBodyChunkIndex index(ChunkPos pos, VxByteBuf in) {
+        int header = in.readInt();
+        int version = header & ~MARKER;
+        if ((header & MARKER) == 0 || version != VERSION) {
+            throw new DecoderException("Unsupported columnar body chunk version " + version);
+        }
+
+        int count = in.readVarInt();
+        if (count < 0 || count > in.readableBytes()) {
+            throw new DecoderException("Invalid body count " + count);
+        }
+        ByteBuffer uuidRows = ByteBuffer.wrap(readTransposed(in, count, 16));
+
+        int typeCount = in.readVarInt();
+        if (typeCount < 0 || typeCount > in.readableBytes()) {
+            throw new DecoderException("Invalid type table size " + typeCount);
+        }
+        for (int t = 0; t < typeCount; t++) {
+            in.readUtf();
+        }
+        for (int i = 0; i < count; i++) {
+            in.readVarInt();
+        }
+
+        int[] masks = new int[count];
+        int rows = 0;
+        for (int i = 0; i < count; i++) {
+            masks[i] = in.readVarInt();
+            if ((masks[i] & (1 << POSITION_COLUMN)) != 0) rows++;
+        }
+
+        byte mode = in.readByte();
+        byte[] column = readTransposed(in, rows, COLUMN_TYPES[POSITION_COLUMN].getFixedLength());
+        if (mode == POSITION_CHUNK_RELATIVE) {
+            fromChunkRelative(column, rows, pos.getMinBlockX(), pos.getMinBlockZ());
+        } else if (mode != POSITION_ABSOLUTE) {
+            throw new DecoderException("Unknown position mode " + mode);
+        }
+
+        ByteBuffer view = ByteBuffer.wrap(column);
+        UUID[] ids = new UUID[count];
+        double[] positions = new double[count * 3];
+        int row = 0;
+        for (int i = 0; i < count; i++) {
+            ids[i] = new UUID(uuidRows.getLong(i * 16), uuidRows.getLong(i * 16 + 8));
+            if ((masks[i] & (1 << POSITION_COLUMN)) != 0) {
+                positions[i * 3] = view.getDouble(row * 24);
+                positions[i * 3 + 1] = view.getDouble(row * 24 + 8);
+                positions[i * 3 + 2] = view.getDouble(row * 24 + 16);
+                row++;
+            } else {
+                positions[i * 3] = pos.getMiddleBlockX();
+                positions[i * 3 + 2] = pos.getMiddleBlockZ();
+            }
+        }
+        return new VxBodyChunkIndex(ids, positions);
+    }
+
+    /**
+     * Writes the columnar layout of already serialized schema payloads.
+     *
+     * @param originX  The block X coordinate of the chunk origin.
+     * @param originZ  The block Z coordinate of the chunk origin.
+     * @param count    The number of bodies.
+     * @param ids      The body IDs.
+     * @param types    The body type IDs.
+     * @param payloads The schema payloads of all bodies, back to back from index 0.
+     * @param ends     The end index of each payload in {@code payloads}.
+     * @param out      The buffer to write into.
+     */
+    static void encode(int originX, int originZ, int count, UUID[] ids, String[] types, ByteBuf payloads, int[] ends, VxByteBuf out) {
+        int[] masks = new int[count];
+        int[][] columnOffsets = new int[COLUMN_COUNT][count];
+        int[] shapeOffsets = new int[count];
+        int[] shapeLengths = new int[count];
+        int[] residualEnds = new int[count];
+
+        ByteBuf residuals = ByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            for (int i = 0; i < count; i++) {
+                int start = i == 0 ? 0 : ends[i - 1];
+                masks[i] = split(payloads, start, ends[i], i, columnOffsets, shapeOffsets, shapeLengths, residuals);
+                residualEnds[i] = residuals.writerIndex();
+            }
+
+            out.writeInt(MARKER | VERSION);
+            out.writeVarInt(count);
+
+            // Identity
+            ByteBuffer uuidRows = ByteBuffer.allocate(count * 16);
+            for (int i = 0; i < count; i++) {
+                uuidRows.putLong(ids[i].getMostSignificantBits()).putLong(ids[i].getLeastSignificantBits());
+            }
+            writeTransposed(out, uuidRows.array(), count, 16);
+
+            Object2IntOpenHashMap<String> typeIndex = new Object2IntOpenHashMap<>();
+            typeIndex.defaultReturnValue(-1);
+            List<String> typeTable = new ArrayList<>();
+            int[] bodyTypes = new int[count];
+            for (int i = 0; i < count; i++) {
+                int index = typeIndex.getInt(types[i]);
+                if (index < 0) {
+                    index = typeTable.size();
+                    typeTable.add(types[i]);
+                    typeIndex.put(types[i], index);
+                }
+                bodyTypes[i] = index;
+            }
+            out.writeVarInt(typeTable.size());
+            for (String type : typeTable) {
+                out.writeUtf(type);
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeVarInt(bodyTypes[i]);
+            }
+
+            for (int i = 0; i < count; i++) {
+                out.writeVarInt(masks[i]);
+            }
+
+            // Fixed-size columns
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                int length = COLUMN_TYPES[c].getFixedLength();
+                int bit = 1 << c;
+                int rows = 0;
+                for (int i = 0; i < count; i++) {
+                    if ((masks[i] & bit) != 0) rows++;
+                }
+                byte[] matrix = new byte[rows * length];
+                int row = 0;
+                for (int i = 0; i < count; i++) {
+                    if ((masks[i] & bit) != 0) {
+                        payloads.getBytes(columnOffsets[c][i], matrix, row++ * length, length);
+                    }
+                }
+                if (c == POSITION_COLUMN) {
+                    out.writeByte(toChunkRelative(matrix, rows, originX, originZ) ? POSITION_CHUNK_RELATIVE : POSITION_ABSOLUTE);
+                }
+                writeTransposed(out, matrix, rows, length);
+            }
+
+            // Shape table
+            // ByteBuffer keys compare by content, so identical shapes share one entry
+            Object2IntOpenHashMap<ByteBuffer> shapeIndex = new Object2IntOpenHashMap<>();
+            shapeIndex.defaultReturnValue(-1);
+            List<byte[]> shapeTable = new ArrayList<>();
+            int[] bodyShapes = new int[count];
+            for (int i = 0; i < count; i++) {
+                if ((masks[i] & SHAPE_BIT) == 0) continue;
+                byte[] shape = new byte[shapeLengths[i]];
+                payloads.getBytes(shapeOffsets[i], shape);
+                ByteBuffer key = ByteBuffer.wrap(shape);
+                int index = shapeIndex.getInt(key);
+                if (index < 0) {
+                    index = shapeTable.size();
+                    shapeTable.add(shape);
+                    shapeIndex.put(key, index);
+                }
+                bodyShapes[i] = index;
+            }
+            out.writeVarInt(shapeTable.size());
+            for (byte[] shape : shapeTable) {
+                out.writeByteArray(shape);
+            }
+            for (int i = 0; i < count; i++) {
+                if ((masks[i] & SHAPE_BIT) != 0) {
+                    out.writeVarInt(bodyShapes[i]);
+                }
+            }
+
+            // Residual TLV records
+            for (int i = 0; i < count; i++) {
+                int start = i == 0 ? 0 : residualEnds[i - 1];
+                out.writeVarInt(residualEnds[i] - start);
+                out.writeBytes(residuals, start, residualEnds[i] - start);
+            }
+        } finally {
+            residuals.release();
+        }
+    }
+
+    /**
+     * Splits one schema payload into column fields, the shape and residual records.
+     * <p>
+     * Columns are only used if the records are in strictly ascending ID order (as {@link VxSchema#serialize}
+     * writes them) and well-formed, which guarantees that merging them back by ID restores the payload exactly.
+     * Otherwise the complete payload is copied to the residuals.
+     *
+     * @return The field mask of the body.
+     */
+    private static int split(ByteBuf payloads, int start, int end, int body, int[][] columnOffsets,
+                             int[] shapeOffsets, int[] shapeLengths, ByteBuf residuals) {
+        int residualMark = residuals.writerIndex();
+        int mask = 0;
+        int previousId = VxSchema.END_OF_SCHEMA;
+        int p = start;
+
+        while (end - p >= 2) {
+            short id = payloads.getShort(p);
+            if (id == VxSchema.END_OF_SCHEMA) {
+                if (p + 2 == end) return mask;
+                break; // Trailing data after the end marker
+            }
+            if (id <= previousId || end - p < 3) break;
+
+            VxFieldType type = VxFieldType.fromId(payloads.getByte(p + 2));
+            if (type == null) break;
+
+            int payload = p + 3;
+            int length;
+            if (type.isVariableLength()) {
+                if (end - payload < 4) break;
+                length = payloads.getInt(payload);
+                payload += 4;
+            } else {
+                length = type.getFixedLength();
+            }
+            if (length < 0 || length > end - payload) break;
+
+            int column = columnOf(id, type);
+            if (column >= 0) {
+                mask |= 1 << column;
+                columnOffsets[column][body] = payload;
+            } else if (id == VxBodyCodec.FIELD_SHAPE && type == VxFieldType.SHAPE) {
+                mask |= SHAPE_BIT;
+                shapeOffsets[body] = payload;
+                shapeLengths[body] = length;
+            } else {
+                residuals.writeBytes(payloads, p, payload + length - p);
+            }
+            previousId = id;
+            p = payload + length;
+        }
+
+        // Not splittable: keep the payload as it is
+        residuals.writerIndex(residualMark);
+        residuals.writeBytes(payloads, start, end - start);
+        return RAW_BIT;
+    }
+
+    /**
+     * Decodes the body section of a columnar chunk.
+     */
+    private static void decode(int originX, int originZ, VxByteBuf in, List<VxSerializedBodyData> results) {
+        int count = in.readVarInt();
+        if (count < 0 || count > in.readableBytes()) {
+            throw new DecoderException("Invalid body count " + count);
+        }
+
+        ByteBuffer uuidRows = ByteBuffer.wrap(readTransposed(in, count, 16));
+
+        int typeCount = in.readVarInt();
+        if (typeCount < 0 || typeCount > in.readableBytes()) {
+            throw new DecoderException("Invalid type table size " + typeCount);
+        }
+        ResourceLocation[] typeTable = new ResourceLocation[typeCount];
+        for (int t = 0; t < typeCount; t++) {
+            typeTable[t] = ResourceLocation.tryParse(in.readUtf());
+        }
+        int[] bodyTypes = new int[count];
+        for (int i = 0; i < count; i++) {
+            bodyTypes[i] = checkIndex(in.readVarInt(), typeCount);
+        }
+
+        int[] masks = new int[count];
+        for (int i = 0; i < count; i++) {
+            masks[i] = in.readVarInt();
+        }
+
+        // Columns, with the row of each body
+        byte[][] columns = new byte[COLUMN_COUNT][];
+        int[][] rowOf = new int[COLUMN_COUNT][count];
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            int bit = 1 << c;
+            int rows = 0;
+            for (int i = 0; i < count; i++) {
+                if ((masks[i] & bit) != 0) rowOf[c][i] = rows++;
+            }
+            byte mode = c == POSITION_COLUMN ? in.readByte() : POSITION_ABSOLUTE;
+            columns[c] = readTransposed(in, rows, COLUMN_TYPES[c].getFixedLength());
+            if (mode == POSITION_CHUNK_RELATIVE) {
+                fromChunkRelative(columns[c], rows, originX, originZ);
+            } else if (mode != POSITION_ABSOLUTE) {
+                throw new DecoderException("Unknown position mode " + mode);
+            }
+        }
+
+        int shapeCount = in.readVarInt();
+        if (shapeCount < 0 || shapeCount > in.readableBytes()) {
+            throw new DecoderException("Invalid shape table size " + shapeCount);
+        }
+        byte[][] shapeTable = new byte[shapeCount][];
+        for (int s = 0; s < shapeCount; s++) {
+            shapeTable[s] = in.readByteArray();
+        }
+        int[] bodyShapes = new int[count];
+        for (int i = 0; i < count; i++) {
+            if ((masks[i] & SHAPE_BIT) != 0) {
+                bodyShapes[i] = checkIndex(in.readVarInt(), shapeCount);
+            }
+        }
+
+        // Rebuild the schema payload of every body
+        for (int i = 0; i < count; i++) {
+            int residualLength = in.readVarInt();
+            if (residualLength < 0 || residualLength > in.readableBytes()) {
+                throw new DecoderException("Invalid residual length " + residualLength);
+            }
+            int residualStart = in.readerIndex();
+            in.skipBytes(residualLength);
+
+            ByteBuf data = ByteBufAllocator.DEFAULT.buffer(residualLength + 128);
+            try {
+                if ((masks[i] & RAW_BIT) != 0) {
+                    data.writeBytes(in, residualStart, residualLength);
+                } else {
+                    merge(masks[i], columns, rowOf, i, shapeTable, bodyShapes[i], in, residualStart, residualStart + residualLength, data);
+                }
+            } catch (RuntimeException e) {
+                data.release();
+                throw e;
+            }
+            UUID id = new UUID(uuidRows.getLong(i * 16), uuidRows.getLong(i * 16 + 8));
+            results.add(new VxSerializedBodyData(typeTable[bodyTypes[i]], id, new VxByteBuf(data)));
+        }
+    }
+
+    /**
+     * Writes the records of one body in ascending ID order: column fields, the shape and residual records
+     * interleaved as they were in the original payload, followed by the end marker.
+     */
+    private static void merge(int mask, byte[][] columns, int[][] rowOf, int body, byte[][] shapeTable, int shape,
+                              ByteBuf residuals, int residualStart, int residualEnd, ByteBuf out) {
+        int r = residualStart;
+
+        for (int c = 0; c <= COLUMN_COUNT; c++) {
+            boolean isShape = c == COLUMN_COUNT;
+            if ((mask & (isShape ? SHAPE_BIT : 1 << c)) == 0) continue;
+            short id = isShape ? VxBodyCodec.FIELD_SHAPE : COLUMN_IDS[c];
+
+            // Residual records that came before this field
+            while (r < residualEnd && residuals.getShort(r) < id) {
+                int length = recordLength(residuals, r, residualEnd);
+                out.writeBytes(residuals, r, length);
+                r += length;
+            }
+
+            out.writeShort(id);
+            if (isShape) {
+                byte[] bytes = shapeTable[shape];
+                out.writeByte(VxFieldType.SHAPE.getId());
+                out.writeInt(bytes.length);
+                out.writeBytes(bytes);
+            } else {
+                int length = COLUMN_TYPES[c].getFixedLength();
+                out.writeByte(COLUMN_TYPES[c].getId());
+                out.writeBytes(columns[c], rowOf[c][body] * length, length);
+            }
+        }
+
+        out.writeBytes(residuals, r, residualEnd - r);
+        out.writeShort(VxSchema.END_OF_SCHEMA);
+    }
+
+    /**
+     * @return The total length of the TLV record at {@code p}, including its header.
+     */
+    private static int recordLength(ByteBuf buf, int p, int end) {
+        VxFieldType type = end - p >= 3 ? VxFieldType.fromId(buf.getByte(p + 2)) : null;
+        if (type == null) {
+            throw new DecoderException("Malformed residual record");
+        }
+        int length = type.isVariableLength()
+                ? (end - p >= 7 ? 7 + buf.getInt(p + 3) : -1)
+                : 3 + type.getFixedLength();
+        if (length < 3 || length > end - p) {
+            throw new DecoderException("Malformed residual record");
+        }
+        return length;
+    }
+
+    /**
+     * @return The column of a schema field, or -1 if it is not stored as a column.
+     */
+    private static int columnOf(short id, VxFieldType type) {
+        for (int c = 0; c < COLUMN_COUNT; c++) {
+            if (COLUMN_IDS[c] == id) {
+                return COLUMN_TYPES[c] == type ? c : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Rewrites the X and Z components of a position matrix (big-endian doubles) relative to the chunk origin,
+     * if that round-trips bit-exactly for every row. Otherwise the matrix is left untouched.
+     *
+     * @return True if the matrix was rewritten.
+     */
+    private static boolean toChunkRelative(byte[] matrix, int rows, int originX, int originZ) {
+        ByteBuffer view = ByteBuffer.wrap(matrix);
+        for (int row = 0; row < rows; row++) {
+            int base = row * 24;
+            if (!isExactlyRelative(view.getDouble(base), originX) || !isExactlyRelative(view.getDouble(base + 16), originZ)) {
+                return false;
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            int base = row * 24;
+            view.putDouble(base, view.getDouble(base) - originX);
+            view.putDouble(base + 16, view.getDouble(base + 16) - originZ);
+        }
+        return true;
+    }
+
+    private static boolean isExactlyRelative(double value, int origin) {
+        return Double.doubleToRawLongBits((value - origin) + origin) == Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Reverses {@link #toChunkRelative}.
+     */
+    private static void fromChunkRelative(byte[] matrix, int rows, int originX, int originZ) {
+        ByteBuffer view = ByteBuffer.wrap(matrix);
+        for (int row = 0; row < rows; row++) {
+            int base = row * 24;
+            view.putDouble(base, view.getDouble(base) + originX);
+            view.putDouble(base + 16, view.getDouble(base + 16) + originZ);
+        }
+    }
+
+    /**
+     * Writes a row-major matrix column by column, i.e. byte {@code j} of every row before byte {@code j + 1}.
+     */
+    private static void writeTransposed(ByteBuf out, byte[] matrix, int rows, int rowLength) {
+        byte[] transposed = new byte[matrix.length];
+        int t = 0;
+        for (int j = 0; j < rowLength; j++) {
+            for (int row = 0; row < rows; row++) {
+                transposed[t++] = matrix[row * rowLength + j];
+            }
+        }
+        out.writeBytes(transposed);
+    }
+
+    /**
+     * Reads a matrix written by {@link #writeTransposed} back into row-major order.
+     */
+    private static byte[] readTransposed(ByteBuf in, int rows, int rowLength) {
+        if ((long) rows * rowLength > in.readableBytes()) {
+            throw new DecoderException("Column exceeds chunk data");
+        }
+        byte[] transposed = new byte[rows * rowLength];
+        in.readBytes(transposed);
+        byte[] matrix = new byte[transposed.length];
+        int t = 0;
+        for (int j = 0; j < rowLength; j++) {
+            for (int row = 0; row < rows; row++) {
+                matrix[row * rowLength + j] = transposed[t++];
+            }
+        }
+        return matrix;
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new DecoderException("Table index " + index + " out of bounds for " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.body.server;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.persistence.VxBodyChunkIndex;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tracks loaded chunks whose bodies have not been decoded yet.
+ * <p>
+ * A dormant chunk keeps the serialized chunk entry as it was read from storage, plus an index of the IDs and
+ * positions of its bodies. The bodies only exist as bytes: they are not part of the body manager, the data store
+ * or the Jolt simulation until the chunk is <i>materialized</i> by {@link VxServerBodyManager}.
+ * <p>
+ * Loads are tracked from the moment they are requested, so that a chunk which unloads while its data is still
+ * being read never becomes dormant. All methods are synchronized on this instance.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxDormantChunks {
+
+    /**
+     * The key returned by {@link #chunkOf} for bodies that are not dormant.
+     */
+    public static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * A loaded chunk whose bodies are still serialized.
+     */
+    public static final class Chunk {
+        private final ChunkPos pos;
+        private final byte[] data;
+        private final VxBodyChunkIndex index;
+        private boolean scheduled;
+        private volatile boolean rewritten;
+
+        Chunk(ChunkPos pos, byte[] data, VxBodyChunkIndex index) {
+            this.pos = pos;
+            this.data = data;
+            this.index = index;
+        }
+
+        /**
+         * @return The chunk position.
+         */
+        public ChunkPos pos() {
+            return pos;
+        }
+
+        /**
+         * @return The serialized chunk entry.
+         */
+        public byte[] data() {
+            return data;
+        }
+
+        /**
+         * @return The IDs and positions of the bodies of the chunk.
+         */
+        public VxBodyChunkIndex index() {
+            return index;
+        }
+
+        /**
+         * @return True if the chunk was saved together with live bodies, so the stored entry differs from {@link #data}.
+         */
+        public boolean isRewritten() {
+            return rewritten;
+        }
+
+        /**
+         * Marks that the chunk was saved together with live bodies.
+         */
+        public void markRewritten() {
+            this.rewritten = true;
+        }
+    }
+
+    private final Long2ObjectMap<Chunk> chunks = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<Object> pendingLoads = new Long2ObjectOpenHashMap<>();
+    private final Object2LongMap<UUID> chunkOfBody = new Object2LongOpenHashMap<>();
+    private long retainedBytes;
+
+    public VxDormantChunks() {
+        chunkOfBody.defaultReturnValue(NONE);
+    }
+
+    /**
+     * Registers a load of a chunk that may become dormant.
+     *
+     * @param chunkKey The packed chunk position.
+     * @return A token identifying this load, to be passed to {@link #completeLoad}.
+     */
+    public synchronized Object beginLoad(long chunkKey) {
+        Object token = new Object();
+        pendingLoads.put(chunkKey, token);
+        return token;
+    }
+
+    /**
+     * Makes a chunk dormant, unless it was unloaded or loaded again since {@link #beginLoad}.
+     *
+     * @param token The token of the load.
+     * @param pos   The chunk position.
+     * @param data  The serialized chunk entry, or null if the chunk has no bodies.
+     * @param index The index of the entry, or null if the chunk has no bodies.
+     * @return True if the chunk is now dormant.
+     */
+    public synchronized boolean completeLoad(Object token, ChunkPos pos, byte @Nullable [] data, @Nullable VxBodyChunkIndex index) {
+        long chunkKey = pos.toLong();
+        if (pendingLoads.get(chunkKey) != token) {
+            return false;
+        }
+        pendingLoads.remove(chunkKey);
+        if (data == null || index == null || index.size() == 0) {
+            return false;
+        }
+
+        removeInternal(chunkKey);
+        Chunk chunk = new Chunk(pos, data, index);
+        chunks.put(chunkKey, chunk);
+        for (UUID id : index.ids()) {
+            chunkOfBody.put(id, chunkKey);
+        }
+        retainedBytes += data.length;
+        return true;
+    }
+
+    /**
+     * Forgets a chunk that is unloading, including a load that is still in progress.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    public synchronized void unload(long chunkKey) {
+        pendingLoads.remove(chunkKey);
+        removeInternal(chunkKey);
+    }
+
+    /**
+     * Removes a chunk after it was materialized, if it is still the given instance.
+     *
+     * @param chunk The materialized chunk.
+     */
+    public synchronized void remove(Chunk chunk) {
+        long chunkKey = chunk.pos().toLong();
+        if (chunks.get(chunkKey) == chunk) {
+            removeInternal(chunkKey);
+        }
+    }
+
+    /**
+     * Marks a chunk as scheduled for materialization.
+     *
+     * @param chunk The chunk.
+     * @return True if the chunk was not scheduled before.
+     */
+    public synchronized boolean trySchedule(Chunk chunk) {
+        if (chunk.scheduled) return false;
+        chunk.scheduled = true;
+        return true;
+    }
+
+    /**
+     * @param chunkKey The packed chunk position.
+     * @return The dormant chunk at the position, or null.
+     */
+    @Nullable
+    public synchronized Chunk get(long chunkKey) {
+        return chunks.isEmpty() ? null : chunks.get(chunkKey);
+    }
+
+    /**
+     * @param id A body ID.
+     * @return The packed position of the dormant chunk holding the body, or {@link #NONE}.
+     */
+    public synchronized long chunkOf(UUID id) {
+        return chunkOfBody.getLong(id);
+    }
+
+    /**
+     * @return A snapshot of all dormant chunks.
+     */
+    public synchronized List<Chunk> snapshot() {
+        return new ArrayList<>(chunks.values());
+    }
+
+    /**
+     * @return The number of dormant chunks.
+     */
+    public synchronized int size() {
+        return chunks.size();
+    }
+
+    /**
+     * @return The number of dormant bodies.
+     */
+    public synchronized int bodyCount() {
+        return chunkOfBody.size();
+    }
+
+    /**
+     * @return The total size of the serialized entries held by dormant chunks, in bytes.
+     */
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Forgets all chunks and loads.
+     */
+    public synchronized void clear() {
+        chunks.clear();
+        pendingLoads.clear();
+        chunkOfBody.clear();
+        retainedBytes = 0;
+    }
+
+    private void removeInternal(long chunkKey) {
+        Chunk chunk = chunks.remove(chunkKey);
+        if (chunk == null) return;
+        for (UUID id : chunk.index().ids()) {
+            chunkOfBody.removeLong(id);
+        }
+        retainedBytes -= chunk.data().length;
+    }
+}
@@ -10,6 +10,7 @@ import com.github.stephengold.joltjni.enumerate.EMotionType;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import net.xmx.velthoric.core.body.VxBodyDataContainer;
+import net.xmx.velthoric.core.network.internal.VxVertexStreamCodec;
 
 /**
  * Server-specific container for physics body data.
@@ -85,14 +86,20 @@ public class VxServerBodyDataContainer extends VxBodyDataContainer {
      * Whether the vertex data has changed and needs to be broadcast.
      */
     public final boolean[] isVertexDataDirty;
-    /**
-     * Whether custom behavior data has changed and needs to be broadcast.
-     */
-    public final boolean[] isCustomDataDirty;
     /**
      * Whether the collision shape has changed and needs to be broadcast.
      */
     public final boolean[] isShapeDirty;
+    /**
+     * Whether the body has been announced to clients as resting.
+     * While set, transform updates are suppressed until the body wakes up again.
+     */
+    public final boolean[] isResting;
+    /**
+     * The quantized vertex history used to delta-encode soft body vertex updates.
+     * Null for rigid bodies and for soft bodies that have not been synchronized yet.
+     */
+    public final VxVertexStreamCodec.State[] vertexStream;
     /**
      * A set of all indices currently marked as dirty for the next network tick.
      */
@@ -126,8 +133,9 @@ public class VxServerBodyDataContainer extends VxBodyDataContainer {
         this.networkId = new int[capacity];
         this.isTransformDirty = new boolean[capacity];
         this.isVertexDataDirty = new boolean[capacity];
-        this.isCustomDataDirty = new boolean[capacity];
         this.isShapeDirty = new boolean[capacity];
+        this.isResting = new boolean[capacity];
+        this.vertexStream = new VxVertexStreamCodec.State[capacity];
         this.dirtyIndices = new IntOpenHashSet(2048);
         this.lastUpdateTimestamp = new long[capacity];
 
@@ -168,8 +176,9 @@ public class VxServerBodyDataContainer extends VxBodyDataContainer {
             System.arraycopy(this.networkId, 0, next.networkId, 0, len);
             System.arraycopy(this.isTransformDirty, 0, next.isTransformDirty, 0, len);
             System.arraycopy(this.isVertexDataDirty, 0, next.isVertexDataDirty, 0, len);
-            System.arraycopy(this.isCustomDataDirty, 0, next.isCustomDataDirty, 0, len);
             System.arraycopy(this.isShapeDirty, 0, next.isShapeDirty, 0, len);
+            System.arraycopy(this.isResting, 0, next.isResting, 0, len);
+            System.arraycopy(this.vertexStream, 0, next.vertexStream, 0, len);
             System.arraycopy(this.lastUpdateTimestamp, 0, next.lastUpdateTimestamp, 0, len);
             next.dirtyIndices.addAll(this.dirtyIndices);
         }
@@ -195,8 +204,9 @@ public class VxServerBodyDataContainer extends VxBodyDataContainer {
         this.activation[index] = EActivation.DontActivate;
         this.isTransformDirty[index] = false;
         this.isVertexDataDirty[index] = false;
-        this.isCustomDataDirty[index] = false;
         this.isShapeDirty[index] = false;
+        this.isResting[index] = false;
+        this.vertexStream[index] = null;
         this.lastUpdateTimestamp[index] = 0L;
         this.dirtyIndices.remove(index);
     }
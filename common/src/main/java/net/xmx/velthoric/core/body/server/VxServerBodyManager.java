@@ -12,6 +12,7 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.ChunkPos;
 import net.xmx.velthoric.core.behavior.VxBehaviorManager;
 import net.xmx.velthoric.core.body.persistence.behavior.VxPersistenceBehavior;
@@ -22,7 +23,10 @@ import net.xmx.velthoric.core.body.VxBodyType;
 import net.xmx.velthoric.core.body.tracking.VxSpatialManager;
 import net.xmx.velthoric.core.body.VxBody;
 import net.xmx.velthoric.core.network.internal.VxNetworkDispatcher;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.synchronization.VxSynchronizedData;
 import net.xmx.velthoric.core.persistence.VxChunkPersistenceHandler;
+import net.xmx.velthoric.core.body.persistence.VxBodyChunkIndex;
 import net.xmx.velthoric.core.body.persistence.VxBodyCodec;
 import net.xmx.velthoric.core.body.persistence.VxBodyStorage;
 import net.xmx.velthoric.core.body.persistence.VxSerializedBodyData;
@@ -33,6 +37,7 @@ import net.xmx.velthoric.math.VxTransform;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 
 /**
@@ -44,7 +49,9 @@ import java.util.function.Consumer;
  *     <li><b>Data Storage:</b> Managing the {@link VxServerBodyDataStore}, which uses a Structure-of-Arrays (SoA) layout for CPU-cache-efficient access to physics data.</li>
  *     <li><b>Jolt Integration:</b> Bridging the gap between high-level Java objects and the native Jolt Physics engine via {@link VxJoltBridge}.</li>
  *     <li><b>Spatial Partitioning:</b> Delegating chunk-based tracking to the {@link VxSpatialManager}.</li>
- *     <li><b>Persistence:</b> Coordinating with {@link VxBodyStorage} to save and load body states to disk.</li>
+ *     <li><b>Persistence:</b> Coordinating with {@link VxBodyStorage} to save and load body states to disk.
+ *     Chunks that load outside the body simulation distance stay serialized in {@link VxDormantChunks} until a player
+ *     comes near, a body enters them or one of their bodies is requested by ID.</li>
  *     <li><b>Networking:</b> Handling synchronization of physics states to clients via {@link VxNetworkDispatcher}.</li>
  * </ul>
  *
@@ -90,15 +97,39 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
     private final Int2ObjectMap<VxBody> joltBodyIdToVxBodyMap = Int2ObjectMaps.synchronize(new Int2ObjectOpenHashMap<>());
 
     /**
-     * A pool of recycled network IDs. When a body is removed, its integer network ID is returned
-     * here to be reused, keeping the integer range compact for network packet optimization.
+     * Hands out network IDs with dense, recycled indices and a generation counter, so that
+     * late packets of a removed body are never applied to the body that reuses its index.
      */
-    private final Deque<Integer> freeNetworkIds = new ArrayDeque<>();
+    private final VxNetworkIdAllocator networkIds = new VxNetworkIdAllocator();
 
     /**
-     * Counter for generating new network IDs when the free pool is empty.
+     * Bodies whose synchronized custom data changed since the last network sync cycle.
+     * Filled by the game thread (and packet handlers) the moment a value changes and drained by
+     * the network thread, so idle bodies cost nothing per cycle. A body is queued at most once
+     * at a time, see {@link VxSynchronizedData#tryMarkQueued()}.
      */
-    private int nextNetworkId = 1;
+    private final Queue<VxBody> dirtyCustomData = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The interval, in game ticks, at which dormant chunks are checked against player positions.
+     */
+    private static final int DORMANT_CHECK_INTERVAL = 10;
+
+    /**
+     * Loaded chunks whose bodies are still serialized, see {@link #onChunkLoad}.
+     */
+    private final VxDormantChunks dormantChunks = new VxDormantChunks();
+
+    /**
+     * The X and Z coordinates of all players of the level, two values per player.
+     * Refreshed every game tick so that chunk loads on other threads never touch the player list.
+     */
+    private volatile double[] playerPositions = new double[0];
+
+    /**
+     * Game ticks left until the next check of the dormant chunks.
+     */
+    private int dormantCheckTimer;
 
     /**
      * Constructs a new manager for the specified physics world.
@@ -147,9 +178,9 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
      */
     private void clear() {
         this.clearInternal();
+        dormantChunks.clear();
         joltBodyIdToVxBodyMap.clear();
-        freeNetworkIds.clear();
-        nextNetworkId = 1;
+        networkIds.clear();
         dataStore.clear();
     }
 
@@ -178,8 +209,20 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
      * @param level The Minecraft server level.
      */
     public void onGameTick(ServerLevel level) {
-        networkDispatcher.onGameTick();
         behaviorManager.onServerTick(level, this.dataStore);
+
+        List<ServerPlayer> players = level.players();
+        double[] positions = new double[players.size() * 2];
+        for (int i = 0; i < players.size(); i++) {
+            positions[i * 2] = players.get(i).getX();
+            positions[i * 2 + 1] = players.get(i).getZ();
+        }
+        this.playerPositions = positions;
+
+        if (--dormantCheckTimer <= 0) {
+            dormantCheckTimer = DORMANT_CHECK_INTERVAL;
+            wakeDormantChunksNearPlayers();
+        }
     }
 
     //================================================================================
@@ -248,6 +291,7 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
             if (oldKey != newKey) {
                 c.chunkKey[index] = newKey;
                 spatialManager.move(body, oldKey, newKey);
+                wakeDormantChunk(newKey);
             }
         }
 
@@ -334,7 +378,8 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
      * Initiates the removal of a body identified by its unique identifier.
      * <p>
      * If the body is currently loaded in memory, it will be removed from the simulation
-     * and internal registries. If the body is not loaded, this method primarily ensures
+     * and internal registries. If the body belongs to a dormant chunk, the chunk is materialized
+     * on the physics thread first. If the body is not loaded at all, this method primarily ensures
      * that dependent constraints are cleaned up.
      * <p>
      * <b>Persistence Note:</b> This method does not trigger an immediate disk write.
@@ -349,6 +394,20 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
         final VxBody body = this.managedBodies.get(id);
 
         if (body == null) {
+            long chunkKey = dormantChunks.chunkOf(id);
+            if (chunkKey != VxDormantChunks.NONE) {
+                // The body is in a loaded but dormant chunk. Decode the chunk so the body
+                // is removed like any other and the next chunk save drops it.
+                world.execute(() -> {
+                    materializeChunk(chunkKey);
+                    VxBody restored = this.managedBodies.get(id);
+                    if (restored != null) {
+                        processBodyRemoval(restored, reason);
+                    }
+                });
+                return;
+            }
+
             // If the body is not in memory, we cannot easily modify the chunk blob without
             // incurring a heavy I/O cost (loading, deserializing, filtering, saving).
             // Therefore, we only ensure that runtime constraints linking to this ID are severed.
@@ -413,7 +472,7 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
         int netId = body.getNetworkId();
         if (netId != -1) {
             dataStore.unregisterNetworkId(netId);
-            freeNetworkIds.add(netId);
+            networkIds.release(netId);
         }
 
         dataStore.removeBody(body.getPhysicsId());
@@ -444,8 +503,8 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
 
             VxServerBodyDataContainer c = dataStore.serverCurrent();
 
-            // Assign Network ID (recycle if available, else increment)
-            int networkId = freeNetworkIds.isEmpty() ? nextNetworkId++ : freeNetworkIds.pop();
+            // Assign Network ID (recycled index with the next generation, else a fresh index)
+            int networkId = networkIds.allocate();
             body.setNetworkId(networkId);
             c.networkId[index] = networkId;
             dataStore.registerNetworkId(networkId, id);
@@ -463,15 +522,16 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
                 }
             }
 
-            // Sync initial dirty state from the body's synchronized data container to the SoA store
+            // Queue data that was changed before the body was added
             if (body.getSynchronizedData().isDirty()) {
-                c.isCustomDataDirty[index] = true;
+                markCustomDataDirty(body);
             }
 
             // Initialize spatial tracking
             long chunkKey = VxSpatialManager.calculateChunkKey(c.posX[index], c.posZ[index]);
             c.chunkKey[index] = chunkKey;
             spatialManager.add(chunkKey, body);
+            wakeDormantChunk(chunkKey);
 
             // Restore body collision ignores
             world.getBodyPairIgnoreManager().onBodyAdded(body);
@@ -500,8 +560,12 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
             c.chunkKey[index] = toKey;
         }
 
+        // Record the departure first, so a chunk shortcut never misses a body that is no longer listed in the chunk
+        networkDispatcher.onBodyLeavingChunk(fromKey);
+
         // Update spatial manager
         spatialManager.move(body, fromKey, toKey);
+        wakeDormantChunk(toKey);
 
         // Notify the network dispatcher about the movement for client-side tracking updates.
         networkDispatcher.onBodyMoved(body, new ChunkPos(fromKey), new ChunkPos(toKey));
@@ -537,17 +601,29 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
     }
 
     /**
-     * Marks the custom data of a body as "dirty," indicating it needs synchronization/saving.
+     * Marks the custom data of a body as "dirty," indicating it needs synchronization.
+     * The body is pushed onto the lock-free dirty queue unless it is already queued.
+     * Safe to call from any thread.
      *
      * @param body The body whose data changed.
      */
     public void markCustomDataDirty(VxBody body) {
-        VxServerBodyDataContainer c = dataStore.serverCurrent();
-        if (body.getDataStoreIndex() != -1) {
-            c.isCustomDataDirty[body.getDataStoreIndex()] = true;
+        if (body.getDataStoreIndex() != -1 && body.getSynchronizedData().tryMarkQueued()) {
+            dirtyCustomData.offer(body);
         }
     }
 
+    /**
+     * Removes the next body from the custom data dirty queue.
+     * The caller must {@link VxSynchronizedData#clearQueued() clear} its queued flag before serializing it.
+     *
+     * @return The next dirty body, or null if the queue is empty.
+     */
+    @Nullable
+    public VxBody pollDirtyCustomData() {
+        return dirtyCustomData.poll();
+    }
+
     /**
      * Registers a mapping between a Jolt Body ID and a VxBody.
      * Usually called internally by the {@link VxJoltBridge}.
@@ -605,26 +681,208 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
         VxJoltBridge.INSTANCE.setSoftBodyVertices(world, body, vertices);
     }
 
+    //================================================================================
+    // Dormant Chunks
+    //================================================================================
+
+    /**
+     * Returns a body by its ID, materializing its chunk if the body is dormant.
+     * <p>
+     * Unlike {@link #getVxBody}, this also finds bodies of loaded chunks that were not decoded yet.
+     * On the physics thread the chunk is decoded immediately and the body is returned. On any other
+     * thread the chunk is scheduled for materialization and null is returned; the body becomes
+     * available through {@link #getVxBody} once the physics thread has processed the chunk.
+     * <p>
+     * Must not be called on the physics thread while iterating the data store, since materializing
+     * a chunk adds bodies to it.
+     *
+     * @param id The UUID of the body.
+     * @return The body, or null if it is not loaded (yet).
+     */
+    @Nullable
+    public VxBody requestBody(UUID id) {
+        VxBody body = managedBodies.get(id);
+        if (body != null) {
+            return body;
+        }
+
+        long chunkKey = dormantChunks.chunkOf(id);
+        if (chunkKey == VxDormantChunks.NONE) {
+            return null;
+        }
+        if (world.isPhysicsThread()) {
+            materializeChunk(chunkKey);
+            return managedBodies.get(id);
+        }
+        wakeDormantChunk(chunkKey);
+        return null;
+    }
+
+    /**
+     * Checks whether a body exists in a loaded chunk that was not decoded yet.
+     * Such a body is not returned by {@link #getVxBody}, but it is not gone either.
+     *
+     * @param id The UUID of the body.
+     * @return True if the body is dormant.
+     */
+    public boolean isDormant(UUID id) {
+        return dormantChunks.chunkOf(id) != VxDormantChunks.NONE;
+    }
+
+    /**
+     * Decodes the bodies of a dormant chunk and adds them to the simulation.
+     * Must be called on the physics thread.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    private void materializeChunk(long chunkKey) {
+        VxDormantChunks.Chunk chunk = dormantChunks.get(chunkKey);
+        if (chunk == null) return;
+
+        // Prevents the bodies added below from scheduling the same chunk again
+        dormantChunks.trySchedule(chunk);
+        List<VxSerializedBodyData> dataList;
+        try {
+            dataList = bodyStorage.decodeChunk(chunk.pos(), chunk.data());
+        } catch (Exception e) {
+            VxMainClass.LOGGER.error("Failed to decode dormant physics chunk {}", chunk.pos(), e);
+            dormantChunks.remove(chunk);
+            return;
+        }
+
+        for (VxSerializedBodyData data : dataList) {
+            if (managedBodies.containsKey(data.id())) {
+                data.bodyData().release();
+                continue;
+            }
+            addSerializedBody(data);
+        }
+
+        // Only forget the chunk once all bodies are live, so a save in between still writes the dormant ones
+        dormantChunks.remove(chunk);
+    }
+
+    /**
+     * Schedules the materialization of a chunk on the physics thread, if the chunk is dormant.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    private void wakeDormantChunk(long chunkKey) {
+        VxDormantChunks.Chunk chunk = dormantChunks.get(chunkKey);
+        if (chunk != null && dormantChunks.trySchedule(chunk)) {
+            world.execute(() -> materializeChunk(chunkKey));
+        }
+    }
+
+    /**
+     * Schedules the materialization of all dormant chunks within the body simulation distance of a player,
+     * measured the same way as when the chunks were loaded, see {@link #isNearPlayer}.
+     */
+    private void wakeDormantChunksNearPlayers() {
+        if (dormantChunks.size() == 0) return;
+
+        int distance = getBodySimulationDistance();
+        for (VxDormantChunks.Chunk chunk : dormantChunks.snapshot()) {
+            if (distance == 0 || isNearPlayer(chunk.pos(), distance)) {
+                wakeDormantChunk(chunk.pos().toLong());
+            }
+        }
+    }
+
+    /**
+     * Checks whether a chunk lies within a chebyshev distance, in chunks, of the chunk of any player.
+     * This is the square the body simulation distance covers, like the view distance.
+     *
+     * @param pos      The chunk position.
+     * @param distance The distance in chunks.
+     * @return True if a player is within the distance.
+     */
+    private boolean isNearPlayer(ChunkPos pos, int distance) {
+        double[] positions = this.playerPositions;
+        for (int i = 0; i < positions.length; i += 2) {
+            int dx = Math.abs((((int) Math.floor(positions[i])) >> 4) - pos.x);
+            int dz = Math.abs((((int) Math.floor(positions[i + 1])) >> 4) - pos.z);
+            if (Math.max(dx, dz) <= distance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Resolves the configured body simulation distance.
+     *
+     * @return The distance in chunks, or 0 if every chunk is decoded on load.
+     */
+    private int getBodySimulationDistance() {
+        int distance = world.getConfig().bodySimulationDistance();
+        if (distance < 0) {
+            distance = world.getLevel().getServer().getPlayerList().getSimulationDistance();
+        }
+        return Math.max(distance, 0);
+    }
+
+    //================================================================================
+    // Chunk Persistence
+    //================================================================================
+
     /**
      * Loads and reconstitutes all physics bodies associated with a given chunk from storage.
      * <p>
      * This method triggers an asynchronous I/O operation and schedules the body instantiation
      * on the physics thread to ensure thread-safe integration into the active simulation.
+     * <p>
+     * If no player is within the body simulation distance of the chunk, the bodies are not decoded.
+     * The chunk keeps its serialized entry and an index of body IDs and positions instead, and becomes
+     * dormant until a player comes near, a body enters it or one of its bodies is requested via
+     * {@link #requestBody}. Dormant bodies are not simulated and not sent to clients.
      *
      * @param pos The position of the chunk to load.
      */
     @Override
     public void onChunkLoad(ChunkPos pos) {
-        bodyStorage.loadChunk(pos).thenAccept(dataList -> {
-            // Schedule instantiation on the physics thread to ensure thread safety
-            world.execute(() -> {
-                for (var data : dataList) {
-                    addSerializedBody(data);
-                }
+        int distance = getBodySimulationDistance();
+        if (distance == 0 || isNearPlayer(pos, distance)) {
+            bodyStorage.loadChunk(pos).thenAccept(dataList -> {
+                // Schedule instantiation on the physics thread to ensure thread safety
+                world.execute(() -> {
+                    for (var data : dataList) {
+                        addSerializedBody(data);
+                    }
+                });
             });
+            return;
+        }
+
+        Object token = dormantChunks.beginLoad(pos.toLong());
+        bodyStorage.loadChunkData(pos).thenAccept(data -> {
+            VxBodyChunkIndex index = null;
+            if (data != null) {
+                try {
+                    index = bodyStorage.indexChunk(pos, data);
+                } catch (Exception e) {
+                    VxMainClass.LOGGER.error("Failed to index physics chunk {}", pos, e);
+                }
+            }
+            if (dormantChunks.completeLoad(token, pos, data, index)) {
+                // A body may have entered the chunk while it was being read
+                if (spatialManager.hasBodiesInChunk(pos.toLong())) {
+                    wakeDormantChunk(pos.toLong());
+                }
+            }
         });
     }
 
+    /**
+     * Reads the bodies of a chunk that is likely to load soon into the read-ahead cache of the storage.
+     *
+     * @param pos The position of the chunk.
+     */
+    @Override
+    public void onChunkPrefetch(ChunkPos pos) {
+        bodyStorage.prefetch(pos);
+    }
+
     /**
      * Serializes all physics bodies within a given chunk and queues them for storage.
      * <p>
@@ -649,6 +907,18 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
             }
         });
 
+        VxDormantChunks.Chunk dormant = dormantChunks.get(pos.toLong());
+        if (dormant != null) {
+            if (bodiesInChunk.isEmpty() && !dormant.isRewritten()) {
+                // Nothing changed since the chunk was read, the stored entry is still current
+                return;
+            }
+            // Keep the bodies that are still serialized next to the live ones
+            bodyStorage.saveChunk(pos, bodiesInChunk, dormant.data());
+            dormant.markRewritten();
+            return;
+        }
+
         // Even if empty, we call save to ensure any previously existing data on disk is cleared
         bodyStorage.saveChunk(pos, bodiesInChunk);
     }
@@ -660,6 +930,7 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
      */
     @Override
     public void onChunkUnload(ChunkPos pos) {
+        dormantChunks.unload(pos.toLong());
         List<VxBody> bodiesToUnload = spatialManager.removeAllInChunk(pos.toLong());
         if (bodiesToUnload.isEmpty()) return;
 
@@ -713,6 +984,13 @@ public class VxServerBodyManager extends VxAbstractBodyManager implements VxChun
         return spatialManager;
     }
 
+    /**
+     * @return The loaded chunks whose bodies are still serialized.
+     */
+    public VxDormantChunks getDormantChunks() {
+        return dormantChunks;
+    }
+
     /**
      * @return The behavior manager for composition-based behavior dispatch.
      */
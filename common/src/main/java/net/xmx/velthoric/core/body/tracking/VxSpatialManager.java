@@ -109,6 +109,18 @@ public class VxSpatialManager {
         }
     }
 
+    /**
+     * Checks whether any body is tracked in the specified chunk.
+     *
+     * @param chunkKey The long-encoded key of the chunk.
+     * @return True if the chunk contains at least one body.
+     */
+    public boolean hasBodiesInChunk(long chunkKey) {
+        synchronized (bodiesByChunk) {
+            return bodiesByChunk.containsKey(chunkKey);
+        }
+    }
+
     /**
      * Atomically removes all bodies associated with a chunk and returns them.
      *
@@ -6,12 +6,10 @@ package net.xmx.velthoric.core.constraint;
 
 import com.github.stephengold.joltjni.*;
 import com.github.stephengold.joltjni.enumerate.EConstraintSubType;
-import com.github.stephengold.joltjni.enumerate.EStreamType;
-import com.github.stephengold.joltjni.std.StringStream;
 import net.xmx.velthoric.core.constraint.manager.VxConstraintManager;
+import net.xmx.velthoric.core.constraint.persistence.VxConstraintSettingsCodec;
 import org.jetbrains.annotations.Nullable;
 
-import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
 /**
@@ -243,18 +241,14 @@ public class VxConstraint {
     }
 
     /**
-     * Serializes constraint settings into a byte array using Jolt's object stream.
+     * Serializes constraint settings into a byte array using {@link VxConstraintSettingsCodec}.
+     * Subtypes without a binary layout fall back to Jolt's object stream.
      *
      * @param settings The settings to serialize.
      * @return A byte array containing the serialized data.
      */
     private byte[] serializeSettings(TwoBodyConstraintSettings settings) {
-        try (StringStream stringStream = new StringStream()) {
-            if (ObjectStreamOut.sWriteObject(stringStream, EStreamType.Text, settings)) {
-                return stringStream.str().getBytes(StandardCharsets.ISO_8859_1);
-            }
-        }
-        throw new IllegalStateException("Failed to serialize constraint settings.");
+        return VxConstraintSettingsCodec.encode(settings, getSubTypeFromSettings(settings));
     }
 
     /**
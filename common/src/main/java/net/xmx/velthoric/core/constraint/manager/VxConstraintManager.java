@@ -6,7 +6,6 @@ package net.xmx.velthoric.core.constraint.manager;
 
 import com.github.stephengold.joltjni.*;
 import com.github.stephengold.joltjni.enumerate.EConstraintSpace;
-import com.github.stephengold.joltjni.std.StringStream;
 import net.minecraft.world.level.ChunkPos;
 import net.xmx.velthoric.core.body.server.VxServerBodyManager;
 import net.xmx.velthoric.init.VxMainClass;
@@ -14,12 +13,12 @@ import net.xmx.velthoric.core.body.VxBody;
 import net.xmx.velthoric.core.constraint.VxConstraint;
 import net.xmx.velthoric.core.persistence.VxChunkPersistenceHandler;
 import net.xmx.velthoric.core.constraint.persistence.VxConstraintCodec;
+import net.xmx.velthoric.core.constraint.persistence.VxConstraintSettingsCodec;
 import net.xmx.velthoric.core.constraint.persistence.VxConstraintStorage;
 import net.xmx.velthoric.core.constraint.persistence.VxSerializedConstraintData;
 import net.xmx.velthoric.core.physics.world.VxPhysicsWorld;
 import org.jetbrains.annotations.Nullable;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -149,6 +148,13 @@ public class VxConstraintManager implements VxChunkPersistenceHandler {
                     VxBody body1 = bodyManager.getVxBody(constraint.getBody1Id());
                     VxBody body2 = bodyManager.getVxBody(constraint.getBody2Id());
 
+                    // A live body must not move without its partner, so a partner in a dormant chunk is decoded now
+                    if (body1 != null && body2 == null) {
+                        body2 = bodyManager.requestBody(constraint.getBody2Id());
+                    } else if (body2 != null && body1 == null) {
+                        body1 = bodyManager.requestBody(constraint.getBody1Id());
+                    }
+
                     if (body1 == null || body2 == null || body1.getBodyId() == 0 || body2.getBodyId() == 0) {
                         dataSystem.addPendingConstraint(constraint);
                         return;
@@ -180,6 +186,10 @@ public class VxConstraintManager implements VxChunkPersistenceHandler {
                     constraint.updateSettingsData(canonicalSettings);
                 }
             }
+        } else if (!VxConstraintSettingsCodec.isBinary(constraint.getSettingsData())
+                && VxConstraintSettingsCodec.supports(constraint.getSubType())) {
+            // Settings loaded from a legacy object stream are stored in the binary format from now on.
+            constraint.updateSettingsData(settings);
         }
 
         world.getPhysicsSystem().addConstraint(joltConstraint);
@@ -188,21 +198,15 @@ public class VxConstraintManager implements VxChunkPersistenceHandler {
     }
 
     /**
-     * Deserializes constraint settings from a VxConstraint's byte data using Jolt's object stream.
+     * Deserializes constraint settings from a VxConstraint's byte data, which is either in the binary
+     * format of {@link VxConstraintSettingsCodec} or a legacy Jolt object stream.
      *
      * @param constraint The constraint containing the data and subtype.
      * @return The deserialized TwoBodyConstraintSettings object, or null on failure.
      */
     @Nullable
     private TwoBodyConstraintSettings deserializeSettings(VxConstraint constraint) {
-        String settingsString = new String(constraint.getSettingsData(), StandardCharsets.ISO_8859_1);
-        try (StringStream stringStream = new StringStream(settingsString);
-             TwoBodyConstraintSettingsRef settingsRef = new TwoBodyConstraintSettingsRef()) {
-            if (ObjectStreamIn.sReadObject(stringStream, settingsRef)) {
-                return settingsRef.getPtr();
-            }
-            return null;
-        }
+        return VxConstraintSettingsCodec.decode(constraint.getSettingsData());
     }
 
     /**
@@ -354,6 +358,16 @@ public class VxConstraintManager implements VxChunkPersistenceHandler {
         });
     }
 
+    /**
+     * Reads the constraints of a chunk that is likely to load soon into the read-ahead cache of the storage.
+     *
+     * @param pos The position of the chunk.
+     */
+    @Override
+    public void onChunkPrefetch(ChunkPos pos) {
+        constraintStorage.prefetch(pos);
+    }
+
     /**
      * Handles the unloading of all constraints anchored within a specific chunk.
      * <p>
@@ -79,6 +79,13 @@ public class VxDependencyDataSystem {
             VxBody body1 = bodyManager.getVxBody(constraint.getBody1Id());
             VxBody body2 = bodyManager.getVxBody(constraint.getBody2Id());
 
+            // The partner of a loaded body may lie in a dormant chunk; requesting it decodes that chunk
+            if (body1 != null && body2 == null) {
+                body2 = bodyManager.requestBody(constraint.getBody2Id());
+            } else if (body2 != null && body1 == null) {
+                body1 = bodyManager.requestBody(constraint.getBody1Id());
+            }
+
             // A body is ready if it's loaded OR if it's the special world body ID.
             boolean body1Ready = (body1 != null && body1.getBodyId() != 0) || constraint.getBody1Id().equals(VxConstraintManager.WORLD_BODY_ID);
             boolean body2Ready = (body2 != null && body2.getBodyId() != 0) || constraint.getBody2Id().equals(VxConstraintManager.WORLD_BODY_ID);
@@ -0,0 +1,550 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.constraint.persistence;
+
+import com.github.stephengold.joltjni.*;
+import com.github.stephengold.joltjni.enumerate.*;
+import com.github.stephengold.joltjni.std.StringStream;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.xmx.velthoric.network.VxByteBuf;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes two-body constraint settings into a compact binary form.
+ * <p>
+ * Every supported constraint subtype has a hand-written layout: a header of
+ * {@code [MAGIC][VERSION][subtype]}, the fields shared by all constraint settings and then the fields of the
+ * subtype in declaration order. Enums are stored as ordinal bytes, vectors and floats in their native precision,
+ * so a decoded settings object is identical to the encoded one.
+ * <p>
+ * Settings that were saved before this codec existed are Jolt text object streams in {@code ISO_8859_1}.
+ * Those always start with an ASCII character, while {@link #MAGIC} has its high bit set, so both formats are
+ * told apart by the first byte and the stream format stays readable. Subtypes without a binary layout
+ * ({@link EConstraintSubType#Path}, whose path is a separate serializable object) are still written as streams.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxConstraintSettingsCodec {
+
+    /**
+     * The first byte of every binary settings blob. It can never start a text object stream.
+     */
+    private static final byte MAGIC = (byte) 0xC5;
+
+    /**
+     * The version of the binary layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The degrees of freedom of a six-DOF constraint, in the order they are stored.
+     */
+    private static final EAxis[] AXES = {
+            EAxis.TranslationX, EAxis.TranslationY, EAxis.TranslationZ,
+            EAxis.RotationX, EAxis.RotationY, EAxis.RotationZ
+    };
+
+    private static final EConstraintSubType[] SUB_TYPES = EConstraintSubType.values();
+    private static final EConstraintSpace[] SPACES = EConstraintSpace.values();
+    private static final ESwingType[] SWING_TYPES = ESwingType.values();
+    private static final ESpringMode[] SPRING_MODES = ESpringMode.values();
+
+    private VxConstraintSettingsCodec() {
+    }
+
+    /**
+     * Checks whether a subtype has a binary layout.
+     *
+     * @param subType The constraint subtype.
+     * @return True if settings of this subtype are written in the binary format.
+     */
+    public static boolean supports(EConstraintSubType subType) {
+        return switch (subType) {
+            case Fixed, Point, Distance, Hinge, Slider, Cone, SwingTwist, SixDof, Gear, Pulley, RackAndPinion -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Checks whether serialized settings are in the binary format.
+     *
+     * @param data The serialized settings.
+     * @return True for binary settings, false for a legacy object stream.
+     */
+    public static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * Serializes constraint settings, in the binary format if the subtype is supported and as a Jolt
+     * object stream otherwise.
+     *
+     * @param settings The settings to serialize.
+     * @param subType  The subtype of the settings.
+     * @return The serialized settings.
+     */
+    public static byte[] encode(TwoBodyConstraintSettings settings, EConstraintSubType subType) {
+        if (!supports(subType)) {
+            return encodeStream(settings);
+        }
+        ByteBuf buffer = ByteBufAllocator.DEFAULT.heapBuffer(256);
+        try {
+            VxByteBuf buf = new VxByteBuf(buffer);
+            buf.writeByte(MAGIC);
+            buf.writeByte(VERSION);
+            buf.writeByte(subType.ordinal());
+            writeBase(settings, buf);
+            writeSettings(settings, subType, buf);
+            byte[] data = new byte[buffer.readableBytes()];
+            buffer.readBytes(data);
+            return data;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Deserializes constraint settings written by {@link #encode} or by the legacy object stream format.
+     *
+     * @param data The serialized settings.
+     * @return A new settings object owned by the caller, or null if a legacy stream could not be read.
+     * @throws DecoderException if binary settings are malformed.
+     */
+    @Nullable
+    public static TwoBodyConstraintSettings decode(byte[] data) {
+        if (!isBinary(data)) {
+            return decodeStream(data);
+        }
+        VxByteBuf buf = new VxByteBuf(Unpooled.wrappedBuffer(data));
+        if (data.length < 3) {
+            throw new DecoderException("Truncated constraint settings header");
+        }
+        buf.skipBytes(1);
+        int version = buf.readUnsignedByte();
+        if (version != VERSION) {
+            throw new DecoderException("Unsupported constraint settings version " + version);
+        }
+        EConstraintSubType subType = SUB_TYPES[checkOrdinal(buf.readUnsignedByte(), SUB_TYPES.length)];
+
+        TwoBodyConstraintSettings settings = create(subType);
+        try {
+            readBase(settings, buf);
+            readSettings(settings, subType, buf);
+            if (buf.isReadable()) {
+                throw new DecoderException(buf.readableBytes() + " trailing bytes in constraint settings");
+            }
+            return settings;
+        } catch (IndexOutOfBoundsException e) {
+            settings.close();
+            throw new DecoderException("Truncated constraint settings", e);
+        } catch (RuntimeException e) {
+            settings.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Serializes settings as a Jolt text object stream, the format used before the binary layout existed.
+     *
+     * @param settings The settings to serialize.
+     * @return The stream as {@code ISO_8859_1} bytes.
+     */
+    public static byte[] encodeStream(TwoBodyConstraintSettings settings) {
+        try (StringStream stringStream = new StringStream()) {
+            if (ObjectStreamOut.sWriteObject(stringStream, EStreamType.Text, settings)) {
+                return stringStream.str().getBytes(StandardCharsets.ISO_8859_1);
+            }
+        }
+        throw new IllegalStateException("Failed to serialize constraint settings.");
+    }
+
+    /**
+     * Deserializes settings from a Jolt text object stream.
+     *
+     * @param data The stream as {@code ISO_8859_1} bytes.
+     * @return The deserialized settings, or null on failure.
+     */
+    @Nullable
+    public static TwoBodyConstraintSettings decodeStream(byte[] data) {
+        String settingsString = new String(data, StandardCharsets.ISO_8859_1);
+        try (StringStream stringStream = new StringStream(settingsString);
+             TwoBodyConstraintSettingsRef settingsRef = new TwoBodyConstraintSettingsRef()) {
+            if (ObjectStreamIn.sReadObject(stringStream, settingsRef)) {
+                return settingsRef.getPtr();
+            }
+            return null;
+        }
+    }
+
+    private static TwoBodyConstraintSettings create(EConstraintSubType subType) {
+        return switch (subType) {
+            case Fixed -> new FixedConstraintSettings();
+            case Point -> new PointConstraintSettings();
+            case Distance -> new DistanceConstraintSettings();
+            case Hinge -> new HingeConstraintSettings();
+            case Slider -> new SliderConstraintSettings();
+            case Cone -> new ConeConstraintSettings();
+            case SwingTwist -> new SwingTwistConstraintSettings();
+            case SixDof -> new SixDofConstraintSettings();
+            case Gear -> new GearConstraintSettings();
+            case Pulley -> new PulleyConstraintSettings();
+            case RackAndPinion -> new RackAndPinionConstraintSettings();
+            default -> throw new DecoderException("No binary layout for constraint subtype " + subType);
+        };
+    }
+
+    /**
+     * Writes the fields shared by all constraint settings.
+     */
+    private static void writeBase(ConstraintSettings settings, VxByteBuf buf) {
+        buf.writeBoolean(settings.getEnabled());
+        buf.writeVarInt(settings.getConstraintPriority());
+        buf.writeVarInt(settings.getNumVelocityStepsOverride());
+        buf.writeVarInt(settings.getNumPositionStepsOverride());
+        buf.writeFloat(settings.getDrawConstraintSize());
+        buf.writeVarLong(settings.getUserData());
+    }
+
+    private static void readBase(ConstraintSettings settings, VxByteBuf buf) {
+        settings.setEnabled(buf.readBoolean());
+        settings.setConstraintPriority(buf.readVarInt());
+        settings.setNumVelocityStepsOverride(buf.readVarInt());
+        settings.setNumPositionStepsOverride(buf.readVarInt());
+        settings.setDrawConstraintSize(buf.readFloat());
+        settings.setUserData(buf.readVarLong());
+    }
+
+    /**
+     * Writes the fields of one subtype.
+     */
+    private static void writeSettings(TwoBodyConstraintSettings settings, EConstraintSubType subType, VxByteBuf buf) {
+        switch (subType) {
+            case Fixed -> {
+                FixedConstraintSettings s = (FixedConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeBoolean(s.getAutoDetectPoint());
+                buf.writeRVec3(s.getPoint1());
+                buf.writeJoltVec3(s.getAxisX1());
+                buf.writeJoltVec3(s.getAxisY1());
+                buf.writeRVec3(s.getPoint2());
+                buf.writeJoltVec3(s.getAxisX2());
+                buf.writeJoltVec3(s.getAxisY2());
+            }
+            case Point -> {
+                PointConstraintSettings s = (PointConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getPoint1());
+                buf.writeRVec3(s.getPoint2());
+            }
+            case Distance -> {
+                DistanceConstraintSettings s = (DistanceConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getPoint1());
+                buf.writeRVec3(s.getPoint2());
+                buf.writeFloat(s.getMinDistance());
+                buf.writeFloat(s.getMaxDistance());
+                writeSpring(s.getLimitsSpringSettings(), buf);
+            }
+            case Hinge -> {
+                HingeConstraintSettings s = (HingeConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getPoint1());
+                buf.writeJoltVec3(s.getHingeAxis1());
+                buf.writeJoltVec3(s.getNormalAxis1());
+                buf.writeRVec3(s.getPoint2());
+                buf.writeJoltVec3(s.getHingeAxis2());
+                buf.writeJoltVec3(s.getNormalAxis2());
+                buf.writeFloat(s.getLimitsMin());
+                buf.writeFloat(s.getLimitsMax());
+                writeSpring(s.getLimitsSpringSettings(), buf);
+                buf.writeFloat(s.getMaxFrictionTorque());
+                writeMotor(s.getMotorSettings(), buf);
+            }
+            case Slider -> {
+                SliderConstraintSettings s = (SliderConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeBoolean(s.getAutoDetectPoint());
+                buf.writeRVec3(s.getPoint1());
+                buf.writeJoltVec3(s.getSliderAxis1());
+                buf.writeJoltVec3(s.getNormalAxis1());
+                buf.writeRVec3(s.getPoint2());
+                buf.writeJoltVec3(s.getSliderAxis2());
+                buf.writeJoltVec3(s.getNormalAxis2());
+                buf.writeFloat(s.getLimitsMin());
+                buf.writeFloat(s.getLimitsMax());
+                writeSpring(s.getLimitsSpringSettings(), buf);
+                buf.writeFloat(s.getMaxFrictionForce());
+                writeMotor(s.getMotorSettings(), buf);
+            }
+            case Cone -> {
+                ConeConstraintSettings s = (ConeConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getPoint1());
+                buf.writeJoltVec3(s.getTwistAxis1());
+                buf.writeRVec3(s.getPoint2());
+                buf.writeJoltVec3(s.getTwistAxis2());
+                buf.writeFloat(s.getHalfConeAngle());
+            }
+            case SwingTwist -> {
+                SwingTwistConstraintSettings s = (SwingTwistConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getPosition1());
+                buf.writeJoltVec3(s.getTwistAxis1());
+                buf.writeJoltVec3(s.getPlaneAxis1());
+                buf.writeRVec3(s.getPosition2());
+                buf.writeJoltVec3(s.getTwistAxis2());
+                buf.writeJoltVec3(s.getPlaneAxis2());
+                buf.writeByte(s.getSwingType().ordinal());
+                buf.writeFloat(s.getNormalHalfConeAngle());
+                buf.writeFloat(s.getPlaneHalfConeAngle());
+                buf.writeFloat(s.getTwistMinAngle());
+                buf.writeFloat(s.getTwistMaxAngle());
+                buf.writeFloat(s.getMaxFrictionTorque());
+                writeMotor(s.getSwingMotorSettings(), buf);
+                writeMotor(s.getTwistMotorSettings(), buf);
+            }
+            case SixDof -> {
+                SixDofConstraintSettings s = (SixDofConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getPosition1());
+                buf.writeJoltVec3(s.getAxisX1());
+                buf.writeJoltVec3(s.getAxisY1());
+                buf.writeRVec3(s.getPosition2());
+                buf.writeJoltVec3(s.getAxisX2());
+                buf.writeJoltVec3(s.getAxisY2());
+                buf.writeByte(s.getSwingType().ordinal());
+                for (EAxis axis : AXES) {
+                    buf.writeFloat(s.getMaxFriction(axis));
+                    buf.writeFloat(s.getLimitMin(axis));
+                    buf.writeFloat(s.getLimitMax(axis));
+                    writeMotor(s.getMotorSettings(axis), buf);
+                }
+                // Jolt only has limit springs for the translational axes.
+                for (int i = 0; i < 3; i++) {
+                    writeSpring(s.getLimitsSpringSettings(AXES[i]), buf);
+                }
+            }
+            case Gear -> {
+                GearConstraintSettings s = (GearConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeJoltVec3(s.getHingeAxis1());
+                buf.writeJoltVec3(s.getHingeAxis2());
+                buf.writeFloat(s.getRatio());
+            }
+            case Pulley -> {
+                PulleyConstraintSettings s = (PulleyConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeRVec3(s.getBodyPoint1());
+                buf.writeRVec3(s.getFixedPoint1());
+                buf.writeRVec3(s.getBodyPoint2());
+                buf.writeRVec3(s.getFixedPoint2());
+                buf.writeFloat(s.getRatio());
+                buf.writeFloat(s.getMinLength());
+                buf.writeFloat(s.getMaxLength());
+            }
+            case RackAndPinion -> {
+                RackAndPinionConstraintSettings s = (RackAndPinionConstraintSettings) settings;
+                buf.writeByte(s.getSpace().ordinal());
+                buf.writeJoltVec3(s.getHingeAxis());
+                buf.writeJoltVec3(s.getSliderAxis());
+                buf.writeFloat(s.getRatio());
+            }
+            default -> throw new IllegalArgumentException("No binary layout for constraint subtype " + subType);
+        }
+    }
+
+    /**
+     * Reads the fields of one subtype, in the order written by {@link #writeSettings}.
+     */
+    private static void readSettings(TwoBodyConstraintSettings settings, EConstraintSubType subType, VxByteBuf buf) {
+        switch (subType) {
+            case Fixed -> {
+                FixedConstraintSettings s = (FixedConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setAutoDetectPoint(buf.readBoolean());
+                s.setPoint1(buf.readRVec3());
+                s.setAxisX1(buf.readJoltVec3());
+                s.setAxisY1(buf.readJoltVec3());
+                s.setPoint2(buf.readRVec3());
+                s.setAxisX2(buf.readJoltVec3());
+                s.setAxisY2(buf.readJoltVec3());
+            }
+            case Point -> {
+                PointConstraintSettings s = (PointConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setPoint1(buf.readRVec3());
+                s.setPoint2(buf.readRVec3());
+            }
+            case Distance -> {
+                DistanceConstraintSettings s = (DistanceConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setPoint1(buf.readRVec3());
+                s.setPoint2(buf.readRVec3());
+                s.setMinDistance(buf.readFloat());
+                s.setMaxDistance(buf.readFloat());
+                readSpring(s.getLimitsSpringSettings(), buf);
+            }
+            case Hinge -> {
+                HingeConstraintSettings s = (HingeConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setPoint1(buf.readRVec3());
+                s.setHingeAxis1(buf.readJoltVec3());
+                s.setNormalAxis1(buf.readJoltVec3());
+                s.setPoint2(buf.readRVec3());
+                s.setHingeAxis2(buf.readJoltVec3());
+                s.setNormalAxis2(buf.readJoltVec3());
+                s.setLimitsMin(buf.readFloat());
+                s.setLimitsMax(buf.readFloat());
+                readSpring(s.getLimitsSpringSettings(), buf);
+                s.setMaxFrictionTorque(buf.readFloat());
+                readMotor(s.getMotorSettings(), buf);
+            }
+            case Slider -> {
+                SliderConstraintSettings s = (SliderConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setAutoDetectPoint(buf.readBoolean());
+                s.setPoint1(buf.readRVec3());
+                s.setSliderAxis1(buf.readJoltVec3());
+                s.setNormalAxis1(buf.readJoltVec3());
+                s.setPoint2(buf.readRVec3());
+                s.setSliderAxis2(buf.readJoltVec3());
+                s.setNormalAxis2(buf.readJoltVec3());
+                s.setLimitsMin(buf.readFloat());
+                s.setLimitsMax(buf.readFloat());
+                readSpring(s.getLimitsSpringSettings(), buf);
+                s.setMaxFrictionForce(buf.readFloat());
+                readMotor(s.getMotorSettings(), buf);
+            }
+            case Cone -> {
+                ConeConstraintSettings s = (ConeConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setPoint1(buf.readRVec3());
+                s.setTwistAxis1(buf.readJoltVec3());
+                s.setPoint2(buf.readRVec3());
+                s.setTwistAxis2(buf.readJoltVec3());
+                s.setHalfConeAngle(buf.readFloat());
+            }
+            case SwingTwist -> {
+                SwingTwistConstraintSettings s = (SwingTwistConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setPosition1(buf.readRVec3());
+                s.setTwistAxis1(buf.readJoltVec3());
+                s.setPlaneAxis1(buf.readJoltVec3());
+                s.setPosition2(buf.readRVec3());
+                s.setTwistAxis2(buf.readJoltVec3());
+                s.setPlaneAxis2(buf.readJoltVec3());
+                s.setSwingType(SWING_TYPES[checkOrdinal(buf.readUnsignedByte(), SWING_TYPES.length)]);
+                s.setNormalHalfConeAngle(buf.readFloat());
+                s.setPlaneHalfConeAngle(buf.readFloat());
+                s.setTwistMinAngle(buf.readFloat());
+                s.setTwistMaxAngle(buf.readFloat());
+                s.setMaxFrictionTorque(buf.readFloat());
+                readMotor(s.getSwingMotorSettings(), buf);
+                readMotor(s.getTwistMotorSettings(), buf);
+            }
+            case SixDof -> {
+                SixDofConstraintSettings s = (SixDofConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setPosition1(buf.readRVec3());
+                s.setAxisX1(buf.readJoltVec3());
+                s.setAxisY1(buf.readJoltVec3());
+                s.setPosition2(buf.readRVec3());
+                s.setAxisX2(buf.readJoltVec3());
+                s.setAxisY2(buf.readJoltVec3());
+                s.setSwingType(SWING_TYPES[checkOrdinal(buf.readUnsignedByte(), SWING_TYPES.length)]);
+                for (EAxis axis : AXES) {
+                    s.setMaxFriction(axis, buf.readFloat());
+                    float min = buf.readFloat();
+                    float max = buf.readFloat();
+                    s.setLimitedAxis(axis, min, max);
+                    readMotor(s.getMotorSettings(axis), buf);
+                }
+                for (int i = 0; i < 3; i++) {
+                    readSpring(s.getLimitsSpringSettings(AXES[i]), buf);
+                }
+            }
+            case Gear -> {
+                GearConstraintSettings s = (GearConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setHingeAxis1(buf.readJoltVec3());
+                s.setHingeAxis2(buf.readJoltVec3());
+                s.setRatio(buf.readFloat());
+            }
+            case Pulley -> {
+                PulleyConstraintSettings s = (PulleyConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setBodyPoint1(buf.readRVec3());
+                s.setFixedPoint1(buf.readRVec3());
+                s.setBodyPoint2(buf.readRVec3());
+                s.setFixedPoint2(buf.readRVec3());
+                s.setRatio(buf.readFloat());
+                s.setMinLength(buf.readFloat());
+                s.setMaxLength(buf.readFloat());
+            }
+            case RackAndPinion -> {
+                RackAndPinionConstraintSettings s = (RackAndPinionConstraintSettings) settings;
+                s.setSpace(readSpace(buf));
+                s.setHingeAxis(buf.readJoltVec3());
+                s.setSliderAxis(buf.readJoltVec3());
+                s.setRatio(buf.readFloat());
+            }
+            default -> throw new DecoderException("No binary layout for constraint subtype " + subType);
+        }
+    }
+
+    /**
+     * Writes spring settings. Frequency and stiffness share one value in Jolt, the mode selects its meaning.
+     */
+    private static void writeSpring(SpringSettings spring, VxByteBuf buf) {
+        ESpringMode mode = spring.getMode();
+        buf.writeByte(mode.ordinal());
+        buf.writeFloat(mode == ESpringMode.StiffnessAndDamping ? spring.getStiffness() : spring.getFrequency());
+        buf.writeFloat(spring.getDamping());
+    }
+
+    private static void readSpring(SpringSettings spring, VxByteBuf buf) {
+        ESpringMode mode = SPRING_MODES[checkOrdinal(buf.readUnsignedByte(), SPRING_MODES.length)];
+        spring.setMode(mode);
+        float value = buf.readFloat();
+        if (mode == ESpringMode.StiffnessAndDamping) {
+            spring.setStiffness(value);
+        } else {
+            spring.setFrequency(value);
+        }
+        spring.setDamping(buf.readFloat());
+    }
+
+    private static void writeMotor(MotorSettings motor, VxByteBuf buf) {
+        writeSpring(motor.getSpringSettings(), buf);
+        buf.writeFloat(motor.getMinForceLimit());
+        buf.writeFloat(motor.getMaxForceLimit());
+        buf.writeFloat(motor.getMinTorqueLimit());
+        buf.writeFloat(motor.getMaxTorqueLimit());
+    }
+
+    private static void readMotor(MotorSettings motor, VxByteBuf buf) {
+        readSpring(motor.getSpringSettings(), buf);
+        motor.setMinForceLimit(buf.readFloat());
+        motor.setMaxForceLimit(buf.readFloat());
+        motor.setMinTorqueLimit(buf.readFloat());
+        motor.setMaxTorqueLimit(buf.readFloat());
+    }
+
+    private static EConstraintSpace readSpace(VxByteBuf buf) {
+        return SPACES[checkOrdinal(buf.readUnsignedByte(), SPACES.length)];
+    }
+
+    private static int checkOrdinal(int ordinal, int count) {
+        if (ordinal >= count) {
+            throw new DecoderException("Enum ordinal " + ordinal + " out of range " + count);
+        }
+        return ordinal;
+    }
+}
@@ -19,6 +19,7 @@ import net.xmx.velthoric.core.mounting.VxMountable;
 import net.xmx.velthoric.core.mounting.entity.VxMountingEntity;
 import net.xmx.velthoric.core.mounting.input.VxMountInput;
 import net.xmx.velthoric.core.mounting.seat.VxSeat;
+import net.xmx.velthoric.core.network.synchronization.VxSyncScope;
 import net.xmx.velthoric.core.physics.world.VxPhysicsWorld;
 import net.xmx.velthoric.init.VxMainClass;
 import net.xmx.velthoric.init.registry.EntityRegistry;
@@ -66,8 +67,9 @@ public class VxMountBehavior implements VxBehavior {
 
     /**
      * Maps a player's UUID to the physics body they are currently associated with.
+     * Concurrent because the network thread reads it to deliver rider-only synchronized data.
      */
-    private final Object2ObjectMap<UUID, UUID> playerToPhysicsIdMap = new Object2ObjectOpenHashMap<>();
+    private final Map<UUID, UUID> playerToPhysicsIdMap = new ConcurrentHashMap<>();
 
     /**
      * Groups all players currently riding a specific body.
@@ -292,7 +294,11 @@ public class VxMountBehavior implements VxBehavior {
         if (world == null) return;
 
         // 2. Trait Validation: Ensure the body actually supports being ridden.
-        VxBody body = world.getBodyManager().getVxBody(physicsId);
+        VxBody body = world.getBodyManager().requestBody(physicsId);
+        if (body == null && world.getBodyManager().isDormant(physicsId)) {
+            // The body's chunk is being decoded; the player can retry once it is live
+            return;
+        }
         if (!(body instanceof VxMountable mountable)) {
             VxMainClass.LOGGER.warn("Player {} requested to mount non-mountable body {}", player.getName().getString(), physicsId);
             return;
@@ -382,6 +388,15 @@ public class VxMountBehavior implements VxBehavior {
         bodyToRidersMap.computeIfAbsent(physicsId, k -> Maps.newHashMap()).put(player.getUUID(), player);
         playerToPhysicsIdMap.put(player.getUUID(), physicsId);
         playerToSeatMap.put(player.getUUID(), seat);
+
+        // Rider-only synchronized data never reached this player; resend it so they start with current values
+        VxPhysicsWorld world = VxPhysicsWorld.get(player.serverLevel().dimension());
+        if (world != null) {
+            VxBody body = world.getBodyManager().getVxBody(physicsId);
+            if (body != null && body.getSynchronizedData().markScopeDirty(VxSyncScope.RIDERS)) {
+                world.getBodyManager().markCustomDataDirty(body);
+            }
+        }
     }
 
     /**
@@ -461,6 +476,17 @@ public class VxMountBehavior implements VxBehavior {
         return playerToPhysicsIdMap.containsKey(player.getUUID());
     }
 
+    /**
+     * Checks whether a player is mounted on a specific body. Safe to call from the network thread.
+     *
+     * @param playerId  The player's UUID.
+     * @param physicsId The body's UUID.
+     * @return True if the player is riding the body.
+     */
+    public boolean isRiding(UUID playerId, UUID physicsId) {
+        return physicsId.equals(playerToPhysicsIdMap.get(playerId));
+    }
+
     /**
      * Validates whether a specific seat on a body is already occupied by someone else.
      *
@@ -505,7 +531,7 @@ public class VxMountBehavior implements VxBehavior {
         VxPhysicsWorld world = VxPhysicsWorld.get(level.dimension());
         if (world == null) return Optional.empty();
 
-        VxBody body = world.getBodyManager().getVxBody(physicsId);
+        VxBody body = world.getBodyManager().requestBody(physicsId);
         if (body instanceof VxMountable mountable) return Optional.of(mountable);
         return Optional.empty();
     }
@@ -20,6 +20,7 @@ import net.minecraft.world.phys.Vec3;
 import net.xmx.velthoric.core.behavior.VxBehaviorManager;
 import net.xmx.velthoric.core.mounting.behavior.VxMountBehavior;
 import net.xmx.velthoric.core.body.client.VxClientBodyManager;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
 import net.xmx.velthoric.core.body.VxBody;
 import net.xmx.velthoric.core.physics.world.VxPhysicsWorld;
 import org.joml.Quaternionf;
@@ -104,7 +105,9 @@ public class VxMountingEntity extends Entity {
                 VxPhysicsWorld physicsWorld = VxPhysicsWorld.get(level().dimension());
                 if (physicsWorld != null) {
                     // If the body is gone (e.g., deleted), we cannot maintain the mounting.
-                    if (physicsWorld.getBodyManager().getVxBody(physicsIdOpt.get()) == null) {
+                    // A body in a dormant chunk is requested instead, it is decoded on the physics thread.
+                    VxServerBodyManager bodyManager = physicsWorld.getBodyManager();
+                    if (bodyManager.requestBody(physicsIdOpt.get()) == null && !bodyManager.isDormant(physicsIdOpt.get())) {
                         this.discard();
                         return; // Exit early as the entity is now marked for removal.
                     }
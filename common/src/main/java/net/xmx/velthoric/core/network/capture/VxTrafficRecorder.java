@@ -0,0 +1,303 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.capture;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.server.level.ServerPlayer;
+import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
+import net.xmx.velthoric.core.persistence.VxIOProcessor;
+import net.xmx.velthoric.init.VxMainClass;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the inputs of the network dispatcher into a compact capture file for offline replay.
+ * <p>
+ * Each sync cycle with dirty bodies becomes one frame holding everything the state pipeline consumes:
+ * the cycle timestamp, the position of every known player and, for every dirty chunk, its watchers and
+ * the full transform of each dirty body. Frames are encoded on the network thread into a reusable buffer,
+ * then compressed and written by a background {@link VxIOProcessor}, so a capture costs the sync loop
+ * little more than a copy of its dirty set.
+ * <p>
+ * <b>File Layout:</b> A header of {@link #MAGIC}, {@link #VERSION} and the minimum build height,
+ * followed by frames of {@code [int rawLength][int compressedLength][Zstd bytes]}.
+ * A decompressed frame is:
+ * <pre>
+ * long timestamp
+ * int playerCount, per player: int playerId, double x, y, z
+ * int chunkCount,  per chunk:  long chunkKey, int watcherCount, int[] playerId,
+ *                              int bodyCount, per body: {@link #BODY_RECORD_SIZE} bytes
+ * body: int networkId, byte resting, double posX, posY, posZ,
+ *       float rotX, rotY, rotZ, rotW, float velX, velY, velZ
+ * </pre>
+ * Player IDs are assigned per capture and stay stable for its whole duration.
+ * <p>
+ * If the disk cannot keep up, frames are dropped instead of stalling the network thread;
+ * the number of dropped frames is reported when the capture stops.
+ * <p>
+ * Captures are replayed by {@code VxTrafficReplay} in the benchmark source set,
+ * run through the {@code replayNetworkCapture} Gradle task.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxTrafficRecorder implements AutoCloseable {
+
+    /**
+     * The magic number at the start of every capture file ("VXNC").
+     */
+    public static final int MAGIC = 0x56584E43;
+
+    /**
+     * The current capture format version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The size of a single body record within a frame.
+     */
+    public static final int BODY_RECORD_SIZE = 4 + 1 + 3 * 8 + 7 * 4;
+
+    /**
+     * Zstd level for capture frames. Captures are written in the background, so a
+     * slightly higher level than the live network path is affordable.
+     */
+    private static final int COMPRESSION_LEVEL = 6;
+
+    /**
+     * Maximum number of frames waiting for the writer before new frames are dropped.
+     */
+    private static final int MAX_PENDING_FRAMES = 256;
+
+    /**
+     * The file this capture is written to.
+     */
+    private final Path file;
+
+    /**
+     * The stream of the capture file. Only accessed by the writer thread.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The background writer.
+     */
+    private final VxIOProcessor writer = new VxIOProcessor("NetCapture");
+
+    /**
+     * Stable per-capture IDs of all players seen so far. Only accessed under this recorder's monitor.
+     */
+    private final Object2IntMap<UUID> playerIds = new Object2IntOpenHashMap<>();
+
+    /**
+     * Reusable frame buffer. Only accessed under this recorder's monitor.
+     */
+    private final ByteBuf frame = Unpooled.buffer(64 * 1024);
+
+    /**
+     * The number of frames handed to the writer but not yet written.
+     */
+    private final AtomicInteger pendingFrames = new AtomicInteger();
+
+    /**
+     * The number of recorded frames.
+     */
+    private int frameCount;
+
+    /**
+     * The number of frames dropped because the writer fell behind.
+     */
+    private int droppedFrames;
+
+    /**
+     * The total uncompressed size of all recorded frames.
+     */
+    private long rawBytes;
+
+    /**
+     * Whether the capture has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Creates the capture file and writes its header.
+     *
+     * @param file           The file to write. Parent directories are created as needed.
+     * @param minBuildHeight The minimum build height of the captured level, the vertical origin of state records.
+     * @throws IOException If the file cannot be created.
+     */
+    public VxTrafficRecorder(Path file, int minBuildHeight) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+        this.out.writeInt(MAGIC);
+        this.out.writeInt(VERSION);
+        this.out.writeInt(minBuildHeight);
+        this.playerIds.defaultReturnValue(-1);
+    }
+
+    /**
+     * Records the state inputs of one sync cycle. Called by the network thread right after the
+     * dirty bodies have been grouped by chunk.
+     *
+     * @param timestamp      The server timestamp of the cycle.
+     * @param dirtyByChunk   The indices of bodies with pending state updates, grouped by chunk.
+     * @param c              The server data container the indices refer to.
+     * @param chunkWatchers  The players watching each chunk.
+     * @param players        All players known to the dispatcher.
+     */
+    public synchronized void recordCycle(long timestamp, Long2ObjectMap<IntArrayList> dirtyByChunk, VxServerBodyDataContainer c,
+                                         Map<Long, Set<UUID>> chunkWatchers, Map<UUID, ServerPlayer> players) {
+        if (closed) return;
+        if (pendingFrames.get() >= MAX_PENDING_FRAMES) {
+            droppedFrames++;
+            return;
+        }
+
+        frame.clear();
+        frame.writeLong(timestamp);
+
+        int countIndex = frame.writerIndex();
+        frame.writeInt(0);
+        int playerCount = 0;
+        for (Map.Entry<UUID, ServerPlayer> entry : players.entrySet()) {
+            ServerPlayer player = entry.getValue();
+            frame.writeInt(playerId(entry.getKey()));
+            frame.writeDouble(player.getX());
+            frame.writeDouble(player.getY());
+            frame.writeDouble(player.getZ());
+            playerCount++;
+        }
+        frame.setInt(countIndex, playerCount);
+
+        frame.writeInt(dirtyByChunk.size());
+        for (Long2ObjectMap.Entry<IntArrayList> entry : dirtyByChunk.long2ObjectEntrySet()) {
+            long chunkKey = entry.getLongKey();
+            frame.writeLong(chunkKey);
+
+            Set<UUID> watchers = chunkWatchers.get(chunkKey);
+            countIndex = frame.writerIndex();
+            frame.writeInt(0);
+            int watcherCount = 0;
+            if (watchers != null) {
+                for (UUID uuid : watchers) {
+                    frame.writeInt(playerId(uuid));
+                    watcherCount++;
+                }
+            }
+            frame.setInt(countIndex, watcherCount);
+
+            IntArrayList indices = entry.getValue();
+            frame.writeInt(indices.size());
+            for (int i = 0; i < indices.size(); i++) {
+                int idx = indices.getInt(i);
+                frame.writeInt(c.networkId[idx]);
+                frame.writeBoolean(c.isResting[idx]);
+                frame.writeDouble(c.posX[idx]);
+                frame.writeDouble(c.posY[idx]);
+                frame.writeDouble(c.posZ[idx]);
+                frame.writeFloat(c.rotX[idx]);
+                frame.writeFloat(c.rotY[idx]);
+                frame.writeFloat(c.rotZ[idx]);
+                frame.writeFloat(c.rotW[idx]);
+                frame.writeFloat(c.velX[idx]);
+                frame.writeFloat(c.velY[idx]);
+                frame.writeFloat(c.velZ[idx]);
+            }
+        }
+
+        byte[] raw = new byte[frame.readableBytes()];
+        frame.readBytes(raw);
+        frameCount++;
+        rawBytes += raw.length;
+
+        pendingFrames.incrementAndGet();
+        writer.execute(() -> {
+            try {
+                byte[] compressed = Zstd.compress(raw, COMPRESSION_LEVEL);
+                out.writeInt(raw.length);
+                out.writeInt(compressed.length);
+                out.write(compressed);
+            } catch (IOException e) {
+                VxMainClass.LOGGER.error("Failed to write network capture frame to {}", file, e);
+            } finally {
+                pendingFrames.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Resolves the stable capture ID of a player.
+     */
+    private int playerId(UUID uuid) {
+        int id = playerIds.getInt(uuid);
+        if (id == -1) {
+            id = playerIds.size();
+            playerIds.put(uuid, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return The file this capture is written to.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The number of recorded frames.
+     */
+    public synchronized int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return The number of frames dropped because the writer fell behind.
+     */
+    public synchronized int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return The total uncompressed size of all recorded frames in bytes.
+     */
+    public synchronized long getRawBytes() {
+        return rawBytes;
+    }
+
+    /**
+     * Stops recording, waits for all pending frames to be written and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        writer.execute(() -> {
+            try {
+                out.close();
+            } catch (IOException e) {
+                VxMainClass.LOGGER.error("Failed to close network capture {}", file, e);
+            }
+        });
+        writer.close();
+    }
+}
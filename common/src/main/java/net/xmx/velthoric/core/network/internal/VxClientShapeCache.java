@@ -0,0 +1,79 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import net.xmx.velthoric.core.body.shape.VxCollisionShape;
+import net.xmx.velthoric.core.body.shape.VxShapeCodec;
+import net.xmx.velthoric.init.VxMainClass;
+import net.xmx.velthoric.network.VxByteBuf;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The client-side mirror of the server's per-connection {@link VxShapeRegistry}.
+ * <p>
+ * Holds a bounded number of decoded {@link VxCollisionShape} instances, indexed by the slot IDs
+ * assigned by the server. A decoded shape is shared by every body that references its slot, so
+ * identical shapes are decoded and kept in memory only once.
+ * <p>
+ * The cache never evicts on its own: the server decides which slot a definition replaces, which
+ * keeps both sides consistent by construction.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxClientShapeCache {
+
+    /**
+     * Decoded shapes by slot ID. Sized to match {@link VxShapeRegistry#CAPACITY}.
+     */
+    private final VxCollisionShape[] slots = new VxCollisionShape[VxShapeRegistry.CAPACITY];
+
+    /**
+     * Reads a shape entry written by {@link VxShapeRegistry#writeShape}.
+     * <p>
+     * Definitions are decoded and stored in their slot; references resolve to the cached instance.
+     *
+     * @param buf The spawn data buffer.
+     * @return The (possibly shared) shape, or null if the body has no shape or the slot is unknown.
+     */
+    @Nullable
+    public VxCollisionShape readShape(VxByteBuf buf) {
+        byte marker = buf.readByte();
+        switch (marker) {
+            case VxShapeRegistry.SHAPE_NONE -> {
+                return null;
+            }
+            case VxShapeRegistry.SHAPE_REFERENCE -> {
+                int slot = buf.readVarInt();
+                VxCollisionShape shape = slot >= 0 && slot < slots.length ? slots[slot] : null;
+                if (shape == null) {
+                    VxMainClass.LOGGER.warn("Received reference to unknown shape slot {}", slot);
+                }
+                return shape;
+            }
+            case VxShapeRegistry.SHAPE_DEFINITION -> {
+                int slot = buf.readVarInt();
+                VxCollisionShape shape = VxShapeCodec.read(buf);
+                if (slot >= 0 && slot < slots.length) {
+                    slots[slot] = shape;
+                }
+                return shape;
+            }
+            case VxShapeRegistry.SHAPE_INLINE -> {
+                return VxShapeCodec.read(buf);
+            }
+            default -> throw new IllegalStateException("Unknown shape marker in spawn data: " + marker);
+        }
+    }
+
+    /**
+     * Drops all cached shapes. Must be called whenever the server-side registry is reset,
+     * i.e. on level change and disconnect.
+     */
+    public void clear() {
+        Arrays.fill(slots, null);
+    }
+}
@@ -9,8 +9,8 @@ import io.netty.buffer.PooledByteBufAllocator;
 import it.unimi.dsi.fastutil.ints.*;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
-import net.minecraft.server.level.ChunkMap;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.ChunkPos;
@@ -20,19 +20,30 @@ import net.xmx.velthoric.core.body.server.VxServerBodyDataStore;
 import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
 import net.xmx.velthoric.core.body.server.VxServerBodyManager;
 import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.tracking.VxSpatialManager;
+import net.xmx.velthoric.core.network.capture.VxTrafficRecorder;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
+import net.xmx.velthoric.core.network.metrics.VxSyncPassEvent;
 import net.xmx.velthoric.core.network.internal.packet.S2CRemoveBodyBatchPacket;
 import net.xmx.velthoric.core.network.internal.packet.S2CSpawnBodyBatchPacket;
 import net.xmx.velthoric.init.VxMainClass;
 import net.xmx.velthoric.network.IVxNetPacket;
 import net.xmx.velthoric.network.VxNetworking;
 import net.xmx.velthoric.util.VxChunkUtil;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The central controller for physics body network synchronization.
@@ -46,6 +57,28 @@ import java.util.concurrent.Executors;
  * This architecture shifts the O(Players * Bodies) complexity to O(Chunks + Players),
  * drastically reducing CPU and GC overhead. The implementation uses Netty's PooledByteBuf
  * to eliminate virtually all allocations during the sync loop.
+ * <p>
+ * <b>Rest Suppression:</b> When a body falls asleep, a single "came to rest" record with its
+ * final transform is broadcast. All further transform updates for that body are suppressed
+ * until it wakes up, so settled worlds cost no sync bandwidth.
+ * <p>
+ * <b>Aggregation:</b> State updates are serialized once per chunk into uncompressed sections, which are
+ * then concatenated per player into a few size-bounded packets per cycle and compressed once per packet.
+ * This trades some compression work (per player instead of per chunk) for far fewer packets and flushes.
+ * Records are coalesced per connection in a {@link VxStateOutbox} (latest state wins) and only written
+ * while the player's Netty channel is writable, with a single flush per cycle.
+ * <p>
+ * <b>Shape Deduplication:</b> Spawn batches reference collision shapes through a per-connection
+ * {@link VxShapeRegistry}, so each distinct shape is transferred to a player only once.
+ * <p>
+ * <b>Spawn Streaming:</b> Spawns and removals are serialized on the network thread. Each player's
+ * {@link VxSpawnScheduler} hands out the nearest ready bodies first, and at most
+ * {@link #SPAWN_BYTES_PER_CYCLE} bytes of spawn records are written per player and cycle, so joining or
+ * teleporting into a crowded area neither stalls the game thread nor delays the bodies around the player.
+ * <p>
+ * <b>Removals:</b> Removals are batched per player in a {@link VxRemovalQueue} and written with the compact
+ * {@link VxRemovalSet} encoding. When a chunk leaves a player's view and the client provably holds the same
+ * resting bodies for it as the server, the whole chunk is removed with a single key.
  *
  * @author xI-Mx-Ix
  */
@@ -81,6 +114,39 @@ public class VxNetworkDispatcher {
      */
     private final int MAX_PACKET_PAYLOAD_SIZE = 128 * 1024;
 
+    /**
+     * Whether state updates are aggregated per player instead of being broadcast per chunk.
+     */
+    private final boolean AGGREGATE_STATE_UPDATES = true;
+
+    /**
+     * Maximum uncompressed bytes of a single aggregated state packet.
+     */
+    private final int MAX_AGGREGATE_PAYLOAD_SIZE = 32 * 1024;
+
+    /**
+     * Uncompressed bytes of spawn records written per player and sync cycle.
+     * The last body of a cycle may exceed the budget, so a single large body is never starved.
+     */
+    private final int SPAWN_BYTES_PER_CYCLE = 48 * 1024;
+
+    /**
+     * How long after a body left a chunk the chunk may not be removed with a chunk shortcut,
+     * because the client may not have received the body's move yet.
+     */
+    private final long CHUNK_REMOVAL_SETTLE_NANOS = 1_000_000_000L;
+
+    /**
+     * Number of worker threads for the parallel serialization stage.
+     */
+    private final int SERIALIZATION_WORKERS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * Minimum number of jobs in a stage before it is split across the worker pool.
+     * Smaller stages are cheaper to run inline on the sync thread.
+     */
+    private final int PARALLEL_SERIALIZATION_THRESHOLD = 16;
+
     /**
      * Maps player UUIDs to the set of body network IDs they are currently tracking.
      */
@@ -106,20 +172,42 @@ public class VxNetworkDispatcher {
     private final Map<UUID, Set<Long>> playerToChunks = new ConcurrentHashMap<>();
 
     /**
-     * Bodies waiting to be spawned for specific players, pending chunk readiness.
+     * Per-connection schedulers of bodies waiting to be spawned, nearest first.
      */
-    private final Map<UUID, ConcurrentLinkedQueue<VxBody>> pendingSpawns = new ConcurrentHashMap<>();
+    private final Map<UUID, VxSpawnScheduler> spawnSchedulers = new ConcurrentHashMap<>();
 
     /**
-     * Network IDs waiting to be removed from specific players' clients.
+     * Schedulers of departed players, released by the network thread which owns their shape registries.
      */
-    private final Map<UUID, ConcurrentLinkedQueue<Integer>> pendingRemovals = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<VxSpawnScheduler> retiredSchedulers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Bodies waiting to be removed from specific players' clients.
+     */
+    private final Map<UUID, VxRemovalQueue> pendingRemovals = new ConcurrentHashMap<>();
+
+    /**
+     * The time a body last left each chunk, used to decide whether a chunk shortcut is safe.
+     * Written by the physics thread as bodies cross chunk borders and read by the game thread
+     * when a player stops watching a chunk.
+     */
+    private final Map<Long, Long> chunkDepartures = new ConcurrentHashMap<>();
 
     /**
      * Dedicated thread executor for off-loading serialization and compression from the main thread.
      */
     private ExecutorService networkSyncExecutor;
 
+    /**
+     * Bounded worker pool for the parallel serialization and compression stages.
+     */
+    private ExecutorService serializationPool;
+
+    /**
+     * Reusable job list of the current sync cycle, one entry per chunk batch.
+     */
+    private final ObjectArrayList<SerializationJob> serializationJobs = new ObjectArrayList<>();
+
     /**
      * Reusable map for grouping transform updates by chunk, cleared every sync cycle.
      */
@@ -135,6 +223,22 @@ public class VxNetworkDispatcher {
      */
     private final Long2ObjectMap<IntArrayList> dirtyShapesByChunk = new Long2ObjectOpenHashMap<>();
 
+    /**
+     * Uncompressed state sections of the current sync cycle, one per dirty chunk.
+     * Only used when {@link #AGGREGATE_STATE_UPDATES} is enabled.
+     */
+    private final ObjectArrayList<StateSection> stateSections = new ObjectArrayList<>();
+
+    /**
+     * Per-connection coalescing outboxes for state records.
+     */
+    private final Map<UUID, VxStateOutbox> stateOutboxes = new ConcurrentHashMap<>();
+
+    /**
+     * The server timestamp shared by all state sections of the current sync cycle.
+     */
+    private long stateCycleTimestamp;
+
     /**
      * Internal cache of indices to minimize the time spent inside the dataStore lock.
      */
@@ -145,6 +249,11 @@ public class VxNetworkDispatcher {
      */
     private final ObjectArrayList<IntArrayList> listPool = new ObjectArrayList<>();
 
+    /**
+     * The running traffic capture, or null if none is active. Read by the network thread every cycle.
+     */
+    private volatile VxTrafficRecorder trafficRecorder;
+
     /**
      * Constructs a new dispatcher and initializes network tuning parameters from config.
      *
@@ -165,12 +274,64 @@ public class VxNetworkDispatcher {
         return this.manager;
     }
 
+    /**
+     * @return The factory used to build compressed packets.
+     */
+    public VxPacketFactory getPacketFactory() {
+        return this.packetFactory;
+    }
+
+    /**
+     * Starts recording the inputs of every sync cycle into a capture file for offline replay.
+     *
+     * @param file The capture file to create.
+     * @throws IOException           If the file cannot be created.
+     * @throws IllegalStateException If a capture is already running.
+     */
+    public synchronized void startCapture(Path file) throws IOException {
+        if (this.trafficRecorder != null) {
+            throw new IllegalStateException("A network capture is already running: " + this.trafficRecorder.getFile());
+        }
+        this.trafficRecorder = new VxTrafficRecorder(file, this.level.getMinBuildHeight());
+    }
+
+    /**
+     * Stops the running capture and waits until all recorded frames are on disk.
+     *
+     * @return The stopped recorder for reporting, or null if no capture was running.
+     */
+    @Nullable
+    public synchronized VxTrafficRecorder stopCapture() {
+        VxTrafficRecorder recorder = this.trafficRecorder;
+        if (recorder != null) {
+            this.trafficRecorder = null;
+            recorder.close();
+        }
+        return recorder;
+    }
+
+    /**
+     * @return The running capture, or null if none is active.
+     */
+    @Nullable
+    public VxTrafficRecorder getCapture() {
+        return this.trafficRecorder;
+    }
+
     /**
      * Initializes and starts the dedicated network synchronization thread.
      */
     public void start() {
         this.networkSyncExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Velthoric-Network-Sync-Thread"));
         this.networkSyncExecutor.submit(this::runSyncLoop);
+        if (SERIALIZATION_WORKERS > 1) {
+            AtomicInteger workerId = new AtomicInteger();
+            this.serializationPool = Executors.newFixedThreadPool(SERIALIZATION_WORKERS, r -> {
+                Thread thread = new Thread(r, "Velthoric-Network-Serializer-" + workerId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
     }
 
     /**
@@ -180,15 +341,10 @@ public class VxNetworkDispatcher {
         if (this.networkSyncExecutor != null) {
             this.networkSyncExecutor.shutdownNow();
         }
-    }
-
-    /**
-     * Entry point for game-thread synchronized tasks, called every server tick.
-     * Processes event-driven updates like spawns and removals.
-     */
-    public void onGameTick() {
-        processPendingRemovals();
-        processPendingSpawns();
+        if (this.serializationPool != null) {
+            this.serializationPool.shutdownNow();
+        }
+        stopCapture();
     }
 
     /**
@@ -196,31 +352,74 @@ public class VxNetworkDispatcher {
      * Handles heavy-duty scanning, serialization, and compression.
      */
     private void runSyncLoop() {
+        VxNetworkMetrics metrics = VxNetworkMetrics.getInstance();
         while (!Thread.currentThread().isInterrupted()) {
             try {
                 long start = System.nanoTime();
+                VxSyncPassEvent event = VxSyncPassEvent.TYPE.isEnabled() ? new VxSyncPassEvent() : null;
+                if (event != null) {
+                    event.begin();
+                }
+
+                // Phase 0: Spawns, which must reach the client before any state or removal of the same body
+                processPendingSpawns();
 
                 // Phase 1: Identification & Grouping
                 prepareUpdateBatches();
+                int dirtyChunks = dirtyBodiesByChunk.size();
+                int dirtyBodies = 0;
+                for (IntArrayList indices : dirtyBodiesByChunk.values()) {
+                    dirtyBodies += indices.size();
+                }
+
+                // Optional: record the inputs of this cycle for offline replay
+                VxTrafficRecorder recorder = this.trafficRecorder;
+                if (recorder != null && dirtyChunks > 0) {
+                    recorder.recordCycle(start, dirtyBodiesByChunk, dataStore.serverCurrent(), chunkWatchers, knownPlayers);
+                }
 
                 // Phase 2: Serialization & Compression (the expensive part)
                 List<BroadcastTask> broadcastTasks = serializeBatches();
+                int broadcastPackets = broadcastTasks.size();
 
                 // Phase 3: Dispatching (directly on network thread using our own chunk→player tracking)
                 if (!broadcastTasks.isEmpty()) {
                     dispatchBroadcasts(broadcastTasks);
                 }
+                if (!stateSections.isEmpty()) {
+                    dispatchAggregatedStates();
+                }
+
+                // Phase 4: Removals, after this cycle's spawns and states
+                processPendingRemovals();
 
                 // Sync custom data
+                long customDataStart = System.nanoTime();
                 VxSyncBehavior behavior = this.manager.getBehaviorManager().getBehavior(VxSyncBehavior.ID);
                 if (behavior != null) {
                     behavior.broadcastS2CUpdates(this.manager, this);
                 }
+                long customDataNanos = System.nanoTime() - customDataStart;
 
                 // Clean up grouping buffers and return them to the pool
                 recycleLists();
 
-                long durationMs = (System.nanoTime() - start) / 1_000_000;
+                long end = System.nanoTime();
+                metrics.recordSyncPass(end - start, customDataNanos, dirtyBodies);
+                metrics.sampleRates(end);
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.dimension = this.level.dimension().location().toString();
+                        event.dirtyBodies = dirtyBodies;
+                        event.dirtyChunks = dirtyChunks;
+                        event.broadcastPackets = broadcastPackets;
+                        event.customDataNanos = customDataNanos;
+                        event.commit();
+                    }
+                }
+
+                long durationMs = (end - start) / 1_000_000;
                 Thread.sleep(Math.max(0, NETWORK_THREAD_TICK_RATE_MS - durationMs));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -234,6 +433,9 @@ public class VxNetworkDispatcher {
     /**
      * Scans the global data store for dirty flags and groups the indices of bodies
      * needing updates by their chunk coordinate.
+     * <p>
+     * Transform updates of sleeping bodies are filtered here: the first update after a body
+     * goes to sleep is kept as its rest record, all later ones are dropped until it wakes.
      */
     private void prepareUpdateBatches() {
         dirtyIndicesSnapshot.clear();
@@ -258,8 +460,18 @@ public class VxNetworkDispatcher {
             long chunkPosLong = c.chunkKey[idx];
 
             if (c.isTransformDirty[idx]) {
-                getOrCreateList(dirtyBodiesByChunk, chunkPosLong).add(idx);
                 c.isTransformDirty[idx] = false;
+
+                if (c.isActive[idx]) {
+                    // The body is (or woke up and is again) simulated: stream regular state updates.
+                    c.isResting[idx] = false;
+                    getOrCreateList(dirtyBodiesByChunk, chunkPosLong).add(idx);
+                } else if (!c.isResting[idx]) {
+                    // The body just went to sleep: send exactly one "came to rest" record.
+                    c.isResting[idx] = true;
+                    getOrCreateList(dirtyBodiesByChunk, chunkPosLong).add(idx);
+                }
+                // Otherwise the body is already resting on all clients and the update is suppressed.
             }
 
             if (c.isVertexDataDirty[idx]) {
@@ -312,27 +524,117 @@ public class VxNetworkDispatcher {
     /**
      * Iterates over grouped dirty bodies and creates compressed binary packets for each chunk.
      * Delegates entirely to the VxPacketFactory for zero-allocation creation.
+     * <p>
+     * With {@link #AGGREGATE_STATE_UPDATES} enabled, state updates are only serialized into
+     * uncompressed {@link #stateSections} here and compressed later per player.
+     * <p>
+     * <b>Parallelism:</b> Every chunk batch is an independent job. Large cycles are split into contiguous
+     * ranges and serialized on the {@link #serializationPool}; each worker uses its own pooled buffers and
+     * its own Zstd context (see {@link VxPacketFactory}). Results are written into a slot per job and
+     * collected in job order, so dispatch order is identical to serial execution.
      *
      * @return A list of tasks containing the chunk coordinate and its corresponding pre-built packet.
+     * @throws InterruptedException If the sync thread is interrupted while waiting for the workers.
      */
-    private List<BroadcastTask> serializeBatches() {
+    private List<BroadcastTask> serializeBatches() throws InterruptedException {
         List<BroadcastTask> tasks = new ArrayList<>(dirtyBodiesByChunk.size() + dirtyVerticesByChunk.size());
+        stateCycleTimestamp = System.nanoTime();
 
+        serializationJobs.clear();
         for (Long2ObjectMap.Entry<IntArrayList> entry : dirtyBodiesByChunk.long2ObjectEntrySet()) {
-            tasks.add(new BroadcastTask(entry.getLongKey(), packetFactory.createStatePacket(entry.getLongKey(), entry.getValue(), level)));
+            serializationJobs.add(new SerializationJob(SerializationJob.STATE, entry.getLongKey(), entry.getValue()));
         }
-
         for (Long2ObjectMap.Entry<IntArrayList> entry : dirtyVerticesByChunk.long2ObjectEntrySet()) {
-            tasks.add(new BroadcastTask(entry.getLongKey(), packetFactory.createVertexPacket(entry.getLongKey(), entry.getValue())));
+            serializationJobs.add(new SerializationJob(SerializationJob.VERTICES, entry.getLongKey(), entry.getValue()));
         }
-
         for (Long2ObjectMap.Entry<IntArrayList> entry : dirtyShapesByChunk.long2ObjectEntrySet()) {
-            tasks.add(new BroadcastTask(entry.getLongKey(), packetFactory.createShapePacket(entry.getLongKey(), entry.getValue())));
+            serializationJobs.add(new SerializationJob(SerializationJob.SHAPES, entry.getLongKey(), entry.getValue()));
+        }
+        if (serializationJobs.isEmpty()) return tasks;
+
+        Object[] results = new Object[serializationJobs.size()];
+        try {
+            runParallel(results.length, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    results[i] = serialize(serializationJobs.get(i));
+                }
+            });
+        } catch (InterruptedException | RuntimeException e) {
+            // Some workers may have finished: return their buffers to the pool before bailing out
+            for (Object result : results) {
+                if (result instanceof BroadcastTask task) task.packet.release();
+                else if (result instanceof StateSection section) section.data().release();
+            }
+            throw e;
         }
 
+        for (Object result : results) {
+            if (result instanceof StateSection section) {
+                stateSections.add(section);
+            } else {
+                tasks.add((BroadcastTask) result);
+            }
+        }
         return tasks;
     }
 
+    /**
+     * Serializes a single chunk batch. Safe to call from any worker: each body belongs to exactly
+     * one chunk batch per kind, and the data store is only read.
+     *
+     * @param job The chunk batch.
+     * @return A {@link StateSection} for aggregated state updates, otherwise a {@link BroadcastTask}.
+     */
+    private Object serialize(SerializationJob job) {
+        return switch (job.type()) {
+            case SerializationJob.STATE -> {
+                if (AGGREGATE_STATE_UPDATES) {
+                    ByteBuf section = PooledByteBufAllocator.DEFAULT.directBuffer(12 + job.indices().size() * 64);
+                    packetFactory.writeStateSection(section, job.chunkPos(), job.indices(), level);
+                    yield new StateSection(job.chunkPos(), section);
+                }
+                yield new BroadcastTask(job.chunkPos(), packetFactory.createStatePacket(job.chunkPos(), job.indices(), level));
+            }
+            case SerializationJob.VERTICES -> new BroadcastTask(job.chunkPos(), packetFactory.createVertexPacket(job.chunkPos(), job.indices()));
+            default -> new BroadcastTask(job.chunkPos(), packetFactory.createShapePacket(job.chunkPos(), job.indices()));
+        };
+    }
+
+    /**
+     * Splits {@code [0, count)} into contiguous ranges and runs them on the worker pool,
+     * or inline if the stage is too small to benefit from parallelism.
+     *
+     * @param count The number of jobs.
+     * @param task  The work for a range of jobs.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    private void runParallel(int count, RangeTask task) throws InterruptedException {
+        if (serializationPool == null || count < PARALLEL_SERIALIZATION_THRESHOLD) {
+            task.run(0, count);
+            return;
+        }
+
+        int workers = Math.min(SERIALIZATION_WORKERS, count);
+        int chunkSize = (count + workers - 1) / workers;
+        List<Callable<Void>> calls = new ArrayList<>(workers);
+        for (int from = 0; from < count; from += chunkSize) {
+            int start = from;
+            int end = Math.min(count, from + chunkSize);
+            calls.add(() -> {
+                task.run(start, end);
+                return null;
+            });
+        }
+
+        for (Future<Void> future : serializationPool.invokeAll(calls)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Parallel serialization failed", e.getCause());
+            }
+        }
+    }
+
     /**
      * Sends pre-built packets to all players watching the respective chunks.
      * Runs directly on the network thread using the internal {@link #chunkWatchers} map
@@ -359,6 +661,66 @@ public class VxNetworkDispatcher {
         }
     }
 
+    /**
+     * Merges the state sections of the current cycle into size-bounded packets per player.
+     * <p>
+     * A player watching hundreds of chunks with a few moving bodies each receives a handful of
+     * packets per cycle instead of one tiny packet (with its own header and Zstd frame) per chunk.
+     * The sections keep their chunk-relative encoding; each aggregate is compressed exactly once.
+     * <p>
+     * Sections first pass through the player's {@link VxStateOutbox}, where a newer record replaces
+     * any queued one of the same body. The outbox is only drained while the player's channel is
+     * writable, and all packets of a cycle are written without flushing and flushed once at the end.
+     * A congested connection therefore never accumulates stale states.
+     */
+    private void dispatchAggregatedStates() throws InterruptedException {
+        try {
+            for (StateSection section : stateSections) {
+                Set<UUID> watchers = chunkWatchers.get(section.chunkPos());
+                if (watchers == null || watchers.isEmpty()) continue;
+
+                for (UUID uuid : watchers) {
+                    if (!knownPlayers.containsKey(uuid)) continue;
+                    stateOutboxes.computeIfAbsent(uuid, k -> new VxStateOutbox()).offer(section.data(), stateCycleTimestamp);
+                }
+            }
+        } finally {
+            // Return all section buffers to the pool, the outboxes hold their own copies
+            for (StateSection section : stateSections) {
+                section.data().release();
+            }
+            stateSections.clear();
+        }
+
+        // Compress and send per player, split across the worker pool for large player counts
+        List<Map.Entry<UUID, VxStateOutbox>> outboxes = new ArrayList<>(stateOutboxes.entrySet());
+        runParallel(outboxes.size(), (from, to) -> {
+            ByteBuf aggregate = PooledByteBufAllocator.DEFAULT.directBuffer(MAX_AGGREGATE_PAYLOAD_SIZE);
+            try {
+                for (int i = from; i < to; i++) {
+                    VxStateOutbox outbox = outboxes.get(i).getValue();
+                    if (outbox.isEmpty()) continue;
+
+                    ServerPlayer player = knownPlayers.get(outboxes.get(i).getKey());
+                    // Keep coalescing while the channel is backed up; the newest states go out once it drains.
+                    if (player == null || !VxNetworking.isWritable(player)) continue;
+
+                    outbox.drain(aggregate, MAX_AGGREGATE_PAYLOAD_SIZE, payload -> {
+                        IVxNetPacket packet = packetFactory.createStatePacket(payload);
+                        try {
+                            VxNetworking.sendToPlayer(player, packet, false);
+                        } finally {
+                            packet.release();
+                        }
+                    });
+                    VxNetworking.flush(player);
+                }
+            } finally {
+                aggregate.release();
+            }
+        });
+    }
+
     /**
      * Called when a new body is added to the level.
      * Identifies all players watching the body's chunk and starts tracking it for them.
@@ -431,6 +793,34 @@ public class VxNetworkDispatcher {
         }
     }
 
+    /**
+     * Records that a body is about to leave a chunk. Clients may still see the body in that chunk for
+     * a moment, which rules out a chunk shortcut there until the chunk has settled again.
+     * <p>
+     * Must be called before the body is moved out of the chunk in the spatial index, so a game thread
+     * that no longer finds the body in the chunk is guaranteed to see the departure.
+     *
+     * @param chunkKey The long-encoded key of the chunk the body leaves.
+     */
+    public void onBodyLeavingChunk(long chunkKey) {
+        long now = System.nanoTime();
+        if (chunkDepartures.size() > 4096) {
+            chunkDepartures.values().removeIf(time -> now - time > CHUNK_REMOVAL_SETTLE_NANOS);
+        }
+        chunkDepartures.put(chunkKey, now);
+    }
+
+    /**
+     * Checks whether no body has left a chunk recently.
+     *
+     * @param chunkKey The long-encoded chunk key.
+     * @return True if clients can no longer see a body in the chunk that the server has moved out.
+     */
+    public boolean isChunkSettled(long chunkKey) {
+        Long departure = chunkDepartures.get(chunkKey);
+        return departure == null || System.nanoTime() - departure > CHUNK_REMOVAL_SETTLE_NANOS;
+    }
+
     /**
      * Bulk tracking update for a player entering a new chunk.
      * Registers the player as a chunk watcher and queues spawns for all bodies in that chunk.
@@ -444,12 +834,20 @@ public class VxNetworkDispatcher {
         knownPlayers.put(uuid, player);
         chunkWatchers.computeIfAbsent(chunkKey, k -> ConcurrentHashMap.newKeySet()).add(uuid);
         playerToChunks.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet()).add(chunkKey);
+        VxRemovalQueue removals = pendingRemovals.get(uuid);
+        if (removals != null) {
+            removals.downgradeChunk(chunkKey);
+        }
         manager.getSpatialManager().forEachInChunk(chunkKey, body -> trackBodyForPlayer(player, body));
     }
 
     /**
      * Bulk tracking update for a player leaving a chunk.
      * Removes the player from chunk watchers and queues removals for all bodies in that chunk.
+     * <p>
+     * The removals are queued as a chunk shortcut if the client is known to hold exactly the server's
+     * bodies for the chunk: every body is resting with its final record delivered and its rest position
+     * inside the chunk, and no body has left the chunk recently. Otherwise they are listed one by one.
      *
      * @param player   The player.
      * @param chunkPos The chunk.
@@ -468,7 +866,50 @@ public class VxNetworkDispatcher {
         if (chunks != null) {
             chunks.remove(chunkKey);
         }
-        manager.getSpatialManager().forEachInChunk(chunkKey, body -> untrackBodyForPlayer(player, body.getNetworkId()));
+        VxSpawnScheduler spawns = spawnSchedulers.get(uuid);
+        if (spawns != null) {
+            spawns.markChunkDropped(chunkKey);
+        }
+
+        IntSet tracked = playerTrackedBodies.get(uuid);
+        if (tracked == null) return;
+        VxStateOutbox outbox = stateOutboxes.get(uuid);
+        VxServerBodyDataContainer c = dataStore.serverCurrent();
+        IntArrayList removed = new IntArrayList();
+        boolean[] settled = {isChunkSettled(chunkKey)};
+
+        manager.getSpatialManager().forEachInChunk(chunkKey, body -> {
+            int networkId = body.getNetworkId();
+            if (!tracked.remove(networkId)) return;
+
+            // Network IDs are recycled: never let a queued state outlive the body on the client.
+            // A body only counts as settled once its rest record or resting spawn was actually sent;
+            // one that fell asleep this cycle may still be waiting for serialization.
+            boolean restDelivered = outbox != null && outbox.discardSettled(networkId);
+            if (spawns != null && spawns.cancel(networkId)) return;
+
+            int index = body.getDataStoreIndex();
+            if (!restDelivered || index == -1 || !c.isResting[index] || c.isTransformDirty[index]
+                    || VxSpatialManager.calculateChunkKey(c.posX[index], c.posZ[index]) != chunkKey) {
+                settled[0] = false;
+            }
+            removed.add(networkId);
+        });
+
+        if (!removed.isEmpty()) {
+            pendingRemovals.computeIfAbsent(uuid, k -> new VxRemovalQueue()).addChunk(chunkKey, removed, settled[0]);
+        }
+    }
+
+    /**
+     * Called once a chunk has actually been sent to a player's client.
+     * Pending spawns inside the chunk become eligible for streaming from now on.
+     *
+     * @param player   The player.
+     * @param chunkPos The chunk.
+     */
+    public void onChunkSent(ServerPlayer player, ChunkPos chunkPos) {
+        spawnSchedulers.computeIfAbsent(player.getUUID(), k -> new VxSpawnScheduler()).markChunkSent(chunkPos.toLong());
     }
 
     /**
@@ -490,10 +931,10 @@ public class VxNetworkDispatcher {
         IntSet tracked = playerTrackedBodies.computeIfAbsent(player.getUUID(), k -> IntSets.synchronize(new IntOpenHashSet()));
         if (tracked.add(body.getNetworkId())) {
             // Cancellation check: if removal is pending, cancel it instead of spawning
-            ConcurrentLinkedQueue<Integer> removals = pendingRemovals.get(player.getUUID());
-            if (removals != null && removals.remove(body.getNetworkId())) return;
+            VxRemovalQueue removals = pendingRemovals.get(player.getUUID());
+            if (removals != null && removals.cancel(body.getNetworkId())) return;
 
-            pendingSpawns.computeIfAbsent(player.getUUID(), k -> new ConcurrentLinkedQueue<>()).add(body);
+            spawnSchedulers.computeIfAbsent(player.getUUID(), k -> new VxSpawnScheduler()).add(body);
         }
     }
 
@@ -507,101 +948,132 @@ public class VxNetworkDispatcher {
     public void untrackBodyForPlayer(ServerPlayer player, int networkId) {
         IntSet tracked = playerTrackedBodies.get(player.getUUID());
         if (tracked != null && tracked.remove(networkId)) {
+            // Network IDs are recycled: never let a queued state outlive the body on the client
+            VxStateOutbox outbox = stateOutboxes.get(player.getUUID());
+            if (outbox != null) {
+                outbox.discard(networkId);
+            }
+
             // Cancellation check: if spawn is pending, cancel it instead of removing
-            ConcurrentLinkedQueue<VxBody> spawns = pendingSpawns.get(player.getUUID());
-            if (spawns != null && spawns.removeIf(b -> b.getNetworkId() == networkId)) return;
+            VxSpawnScheduler spawns = spawnSchedulers.get(player.getUUID());
+            if (spawns != null && spawns.cancel(networkId)) return;
 
-            pendingRemovals.computeIfAbsent(player.getUUID(), k -> new ConcurrentLinkedQueue<>()).add(networkId);
+            pendingRemovals.computeIfAbsent(player.getUUID(), k -> new VxRemovalQueue()).add(networkId);
         }
     }
 
     /**
-     * Processes batched removal requests on the game tick.
-     * Sends compressed removal packets to players.
+     * Processes batched removal requests on the network thread.
+     * Runs after the spawns and states of the cycle, so removals of bodies whose spawn
+     * was already handed out are always sent after that spawn.
+     * <p>
+     * Chunk shortcuts are held back while the player's state outbox still has undelivered records,
+     * since those could move a body into or out of the chunk on the client.
      */
     private void processPendingRemovals() {
         if (pendingRemovals.isEmpty()) return;
 
-        for (Map.Entry<UUID, ConcurrentLinkedQueue<Integer>> entry : pendingRemovals.entrySet()) {
-            ServerPlayer player = level.getServer().getPlayerList().getPlayer(entry.getKey());
+        IntArrayList ids = new IntArrayList();
+        LongArrayList chunks = new LongArrayList();
+        for (Map.Entry<UUID, VxRemovalQueue> entry : pendingRemovals.entrySet()) {
+            VxRemovalQueue queue = entry.getValue();
+            ServerPlayer player = knownPlayers.get(entry.getKey());
             if (player == null) {
-                entry.getValue().clear();
+                queue.clear();
                 continue;
             }
-
-            ConcurrentLinkedQueue<Integer> ids = entry.getValue();
-            if (!ids.isEmpty()) {
-                IntArrayList toRemove = new IntArrayList();
-                Integer id;
-                while ((id = ids.poll()) != null) {
-                    toRemove.add((int) id);
-                }
-                if (!toRemove.isEmpty()) {
-                    VxNetworking.sendToPlayer(player, new S2CRemoveBodyBatchPacket(toRemove));
-                }
+            if (queue.isEmpty()) continue;
+
+            VxStateOutbox outbox = stateOutboxes.get(entry.getKey());
+            ids.clear();
+            chunks.clear();
+            queue.drain(ids, chunks, outbox == null || outbox.isEmpty());
+            if (!ids.isEmpty() || !chunks.isEmpty()) {
+                // Encoded synchronously, so the lists can be reused for the next player
+                VxNetworking.sendToPlayer(player, new S2CRemoveBodyBatchPacket(ids, chunks));
             }
         }
     }
 
     /**
-     * Processes batched spawn requests on the game tick.
-     * Checks if the chunk is ready on the client before sending.
-     * Uses pooled ByteBufs to avoid allocation during serialization.
+     * Streams pending spawns to players on the network thread.
+     * <p>
+     * Every player gets at most {@link #SPAWN_BYTES_PER_CYCLE} bytes of spawn records per cycle,
+     * taken from their {@link VxSpawnScheduler} nearest first. Players whose channel is backed up
+     * are skipped until it drains. Uses a pooled buffer to avoid allocation during serialization.
+     * <p>
+     * Shape definitions only become known to the player's {@link VxShapeRegistry} once their packet
+     * was handed to the connection. Records that are dropped, packets that fail and records left over
+     * by an unexpected error roll their definitions back, so they are sent again with the next body.
      */
     private void processPendingSpawns() {
-        if (pendingSpawns.isEmpty()) return;
+        // Release the shape registries of departed players, which only this thread may touch
+        VxSpawnScheduler retired;
+        while ((retired = retiredSchedulers.poll()) != null) {
+            retired.getShapes().release();
+        }
+        if (spawnSchedulers.isEmpty()) return;
 
-        ChunkMap chunkMap = this.level.getChunkSource().chunkMap;
-        // Reusable pooled buffer for spawn serialization (64KB initial size)
-        ByteBuf spawnBuf = PooledByteBufAllocator.DEFAULT.directBuffer(65536);
+        VxServerBodyDataContainer c = dataStore.serverCurrent();
+        ByteBuf spawnBuf = PooledByteBufAllocator.DEFAULT.directBuffer(SPAWN_BYTES_PER_CYCLE + 4096);
+        IntArrayList restingSpawns = new IntArrayList();
 
         try {
-            for (Map.Entry<UUID, ConcurrentLinkedQueue<VxBody>> entry : pendingSpawns.entrySet()) {
-                ServerPlayer player = level.getServer().getPlayerList().getPlayer(entry.getKey());
-                if (player == null) {
-                    entry.getValue().clear();
-                    continue;
-                }
-
-                ConcurrentLinkedQueue<VxBody> bodies = entry.getValue();
-                if (bodies.isEmpty()) continue;
-
+            for (Map.Entry<UUID, VxSpawnScheduler> entry : spawnSchedulers.entrySet()) {
+                VxSpawnScheduler scheduler = entry.getValue();
+                ServerPlayer player = knownPlayers.get(entry.getKey());
+                if (player == null || !VxNetworking.isWritable(player)) continue;
+
+                VxShapeRegistry shapes = scheduler.getShapes();
+                VxStateOutbox outbox = stateOutboxes.computeIfAbsent(entry.getKey(), k -> new VxStateOutbox());
+                long now = System.nanoTime();
+                double x = player.getX(), y = player.getY(), z = player.getZ();
                 int count = 0;
+                int written = 0;
                 spawnBuf.clear();
 
-                // Snapshot size to avoid infinite loop if new bodies are added during processing
-                int size = bodies.size();
-                for (int i = 0; i < size; i++) {
-                    VxBody body = bodies.poll();
-                    if (body == null) break;
-
-                    int index = body.getDataStoreIndex();
-                    if (index == -1) continue;
-
-                    VxServerBodyDataContainer c = dataStore.serverCurrent();
-                    // Retrieve the cached chunk key and convert to ChunkPos for the vanilla visibility check
-                    ChunkPos bodyChunk = new ChunkPos(c.chunkKey[index]);
-
-                    // Only spawn if the player has received the chunk
-                    if (chunkMap.getPlayers(bodyChunk, false).contains(player)) {
-                        VxSpawnData.writeRaw(spawnBuf, body, System.nanoTime());
+                try {
+                    while (written < SPAWN_BYTES_PER_CYCLE) {
+                        VxBody body = scheduler.poll(c, x, y, z, now);
+                        if (body == null) break;
+
+                        int mark = spawnBuf.writerIndex();
+                        int shapeCheckpoint = shapes.checkpoint();
+                        if (!VxSpawnData.writeIfPresent(spawnBuf, body, now, shapes)) {
+                            // The body was removed while being serialized; its removal is already queued.
+                            spawnBuf.writerIndex(mark);
+                            shapes.rollback(shapeCheckpoint);
+                            continue;
+                        }
+                        written += spawnBuf.writerIndex() - mark;
                         count++;
+                        if (VxSpawnData.isResting(body)) {
+                            // The spawn already tells the client the body is at rest
+                            outbox.beginRestDelivery(body.getNetworkId());
+                            restingSpawns.add(body.getNetworkId());
+                        }
 
                         // Check payload limit
                         if (spawnBuf.readableBytes() > MAX_PACKET_PAYLOAD_SIZE) {
-                            dispatchSpawnPacket(player, spawnBuf, count);
+                            outbox.completeRestDelivery(restingSpawns, dispatchSpawnPacket(player, spawnBuf, count, shapes));
+                            restingSpawns.clear();
                             spawnBuf.clear();
                             count = 0;
                         }
-                    } else {
-                        // Re-add to queue for next tick
-                        bodies.add(body);
                     }
-                }
 
-                // Flush remaining
-                if (count > 0) {
-                    dispatchSpawnPacket(player, spawnBuf, count);
+                    // Flush remaining
+                    if (count > 0) {
+                        outbox.completeRestDelivery(restingSpawns, dispatchSpawnPacket(player, spawnBuf, count, shapes));
+                    }
+                } finally {
+                    // Definitions of records that never made it into a sent packet are unknown to the client
+                    shapes.rollback(0);
+                    outbox.completeRestDelivery(restingSpawns, false);
+                    restingSpawns.clear();
+                }
+                if (written > 0) {
+                    VxNetworking.flush(player);
                 }
             }
         } finally {
@@ -610,14 +1082,17 @@ public class VxNetworkDispatcher {
     }
 
     /**
-     * Compresses and sends a spawn batch to a specific player.
-     * Uses direct Zstd compression.
+     * Compresses and writes a spawn batch to a specific player without flushing.
+     * Uses direct Zstd compression. The shape definitions of the batch are committed to the
+     * player's registry once the packet was handed to the connection, and rolled back if that failed.
      *
      * @param player  The recipient.
      * @param rawData The serialized spawn data buffer.
      * @param count   Number of bodies in the batch.
+     * @param shapes  The shape registry of the recipient.
+     * @return True if the packet was handed to the connection.
      */
-    private void dispatchSpawnPacket(ServerPlayer player, ByteBuf rawData, int count) {
+    private boolean dispatchSpawnPacket(ServerPlayer player, ByteBuf rawData, int count, VxShapeRegistry shapes) {
         int readable = rawData.readableBytes();
         int maxCompressed = (int) com.github.luben.zstd.Zstd.compressBound(readable);
 
@@ -639,17 +1114,22 @@ public class VxNetworkDispatcher {
 
             // The packet takes ownership of the 'compressed' buffer (should release it after write)
             IVxNetPacket packet = new S2CSpawnBodyBatchPacket(count, compressed);
-            VxNetworking.sendToPlayer(player, packet);
+            VxNetworking.sendToPlayer(player, packet, false);
+            shapes.commit();
 
             // Release the pooled buffer
             packet.release();
+            return true;
 
         } catch (Exception e) {
+            // The client never sees this batch, so it must not be referenced as known
+            shapes.rollback(0);
             // Release the buffer if an exception prevented packet creation/sending
             if (compressed.refCnt() > 0) {
                 compressed.release();
             }
-            VxMainClass.LOGGER.error("Failed to compress spawn packet", e);
+            VxMainClass.LOGGER.error("Failed to send spawn packet to {}", player.getName().getString(), e);
+            return false;
         }
     }
 
@@ -663,9 +1143,18 @@ public class VxNetworkDispatcher {
     public void onPlayerDisconnect(ServerPlayer player) {
         UUID uuid = player.getUUID();
         playerTrackedBodies.remove(uuid);
-        pendingSpawns.remove(uuid);
+        VxSpawnScheduler spawns = spawnSchedulers.remove(uuid);
+        if (spawns != null) {
+            // The client drops its shape cache together with the level, so the registry must go too
+            retiredSchedulers.add(spawns);
+        }
         pendingRemovals.remove(uuid);
         knownPlayers.remove(uuid);
+        stateOutboxes.remove(uuid);
+        if (player.hasDisconnected()) {
+            // Only a real disconnect ends the player's metrics, not a change of dimension
+            VxNetworkMetrics.getInstance().removePlayer(uuid);
+        }
         // Use reverse index for efficient cleanup — only touch chunks the player was watching
         Set<Long> watchedChunks = playerToChunks.remove(uuid);
         if (watchedChunks != null) {
@@ -696,7 +1185,17 @@ public class VxNetworkDispatcher {
         VxBody body = manager.getVxBody(id);
         if (body == null || body.getDataStoreIndex() == -1) return;
 
-        long chunkKey = dataStore.serverCurrent().chunkKey[body.getDataStoreIndex()];
+        forEachWatcherOfChunk(dataStore.serverCurrent().chunkKey[body.getDataStoreIndex()], action);
+    }
+
+    /**
+     * Invokes a consumer for each player watching the given chunk. Batches that group bodies
+     * by chunk use this to resolve the receivers once per chunk instead of once per body.
+     *
+     * @param chunkKey The packed chunk position.
+     * @param action   The action to perform for each watching player.
+     */
+    public void forEachWatcherOfChunk(long chunkKey, java.util.function.Consumer<ServerPlayer> action) {
         Set<UUID> watchers = chunkWatchers.get(chunkKey);
         if (watchers == null || watchers.isEmpty()) return;
 
@@ -713,4 +1212,27 @@ public class VxNetworkDispatcher {
      */
     private record BroadcastTask(long chunkPos, IVxNetPacket packet) {
     }
+
+    /**
+     * A chunk batch of one update kind, serialized independently by the worker pool.
+     */
+    private record SerializationJob(byte type, long chunkPos, IntArrayList indices) {
+        private static final byte STATE = 0;
+        private static final byte VERTICES = 1;
+        private static final byte SHAPES = 2;
+    }
+
+    /**
+     * A unit of work over a contiguous range of job indices.
+     */
+    @FunctionalInterface
+    private interface RangeTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * An uncompressed state section for one chunk, waiting to be aggregated per player.
+     */
+    private record StateSection(long chunkPos, ByteBuf data) {
+    }
 }
\ No newline at end of file
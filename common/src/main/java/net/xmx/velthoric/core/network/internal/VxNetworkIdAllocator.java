@@ -0,0 +1,163 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+
+import java.util.Arrays;
+
+/**
+ * Allocates the session-unique network IDs of physics bodies.
+ * <p>
+ * A network ID packs a dense <b>index</b> and a small <b>generation</b> counter:
+ * {@code id = index << GENERATION_BITS | generation}. Indices of removed bodies are recycled, which keeps
+ * the index range close to the number of live bodies, so clients can resolve IDs through flat arrays
+ * instead of hash maps. Every time an index is recycled its generation advances, so a state packet that
+ * was still in flight for the previous owner carries a different ID than the new body and can be rejected
+ * with a single comparison.
+ * <p>
+ * Released indices wait in a FIFO queue and are only reused once {@value #REUSE_DELAY} newer releases
+ * are queued behind them. With only {@value #GENERATION_BITS} generation bits, reusing an index right away
+ * would let a body that is removed and replaced in quick succession wrap its generation within a few ticks;
+ * with the delay, a network ID can only come back after {@code 2^GENERATION_BITS * REUSE_DELAY} releases.
+ * The index range grows by at most the delay over the peak number of live bodies.
+ * <p>
+ * The generation lives in the low bits to keep VarInt-encoded IDs short. A VarInt carries 7 bits
+ * per byte, so with {@value #GENERATION_BITS} generation bits a two-byte ID holds indices up to 1,023
+ * and a three-byte ID indices up to 131,071. This applies to spawns, shape updates and synchronized
+ * data, which write the ID as a VarInt. State and vertex records write it as a fixed four-byte int,
+ * so their records keep a constant size that the client can skip without decoding.
+ * <p>
+ * Index 0 is never handed out, so neither 0 nor -1 is ever a valid network ID.
+ * <p>
+ * This class is not thread-safe and must only be used by the thread adding and removing bodies.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxNetworkIdAllocator {
+
+    /**
+     * The number of low bits holding the generation.
+     */
+    public static final int GENERATION_BITS = 4;
+
+    /**
+     * Mask extracting the generation from a network ID.
+     */
+    public static final int GENERATION_MASK = (1 << GENERATION_BITS) - 1;
+
+    /**
+     * The largest index that can be packed into a non-negative network ID.
+     */
+    public static final int MAX_INDEX = Integer.MAX_VALUE >>> GENERATION_BITS;
+
+    /**
+     * The number of released indices that are held back before the oldest one is reused.
+     */
+    public static final int REUSE_DELAY = 1024;
+
+    /**
+     * Released indices in release order.
+     */
+    private final IntArrayFIFOQueue freeIndices = new IntArrayFIFOQueue();
+
+    /**
+     * The current generation of every index handed out so far.
+     */
+    private byte[] generations = new byte[256];
+
+    /**
+     * Whether each index handed out so far is currently released, guarding against double releases.
+     */
+    private boolean[] free = new boolean[256];
+
+    /**
+     * The next never-used index.
+     */
+    private int nextIndex = 1;
+
+    /**
+     * Hands out a network ID, recycling a free index if possible.
+     *
+     * @return The new network ID.
+     * @throws IllegalStateException If all indices are in use.
+     */
+    public int allocate() {
+        int index;
+        if (freeIndices.size() > REUSE_DELAY || (nextIndex > MAX_INDEX && !freeIndices.isEmpty())) {
+            index = freeIndices.dequeueInt();
+            free[index] = false;
+        } else {
+            if (nextIndex > MAX_INDEX) {
+                throw new IllegalStateException("Network ID space exhausted");
+            }
+            index = nextIndex++;
+            if (index >= generations.length) {
+                int length = Math.max(index + 1, generations.length * 2);
+                generations = Arrays.copyOf(generations, length);
+                free = Arrays.copyOf(free, length);
+            }
+        }
+        return pack(index, generations[index]);
+    }
+
+    /**
+     * Returns a network ID to the allocator. Its index is recycled with the next generation.
+     * IDs that are not currently allocated, including IDs of an index that is already released, are ignored.
+     *
+     * @param networkId The network ID to release.
+     */
+    public void release(int networkId) {
+        int index = indexOf(networkId);
+        if (networkId <= 0 || index >= nextIndex || free[index] || generations[index] != generationOf(networkId)) return;
+        generations[index] = (byte) ((generations[index] + 1) & GENERATION_MASK);
+        free[index] = true;
+        freeIndices.enqueue(index);
+    }
+
+    /**
+     * @return The number of indices handed out so far, i.e. the size a flat lookup table needs.
+     */
+    public int getIndexBound() {
+        return nextIndex;
+    }
+
+    /**
+     * Forgets all allocations. Only safe once no client knows any of the handed out IDs.
+     */
+    public void clear() {
+        freeIndices.clear();
+        Arrays.fill(generations, (byte) 0);
+        Arrays.fill(free, false);
+        nextIndex = 1;
+    }
+
+    /**
+     * Packs an index and a generation into a network ID.
+     *
+     * @param index      The dense index.
+     * @param generation The generation of the index.
+     * @return The network ID.
+     */
+    public static int pack(int index, int generation) {
+        return (index << GENERATION_BITS) | (generation & GENERATION_MASK);
+    }
+
+    /**
+     * @param networkId A network ID.
+     * @return The dense index part of the ID.
+     */
+    public static int indexOf(int networkId) {
+        return networkId >>> GENERATION_BITS;
+    }
+
+    /**
+     * @param networkId A network ID.
+     * @return The generation part of the ID.
+     */
+    public static int generationOf(int networkId) {
+        return networkId & GENERATION_MASK;
+    }
+}
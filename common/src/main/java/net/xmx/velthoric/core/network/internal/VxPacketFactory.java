@@ -5,10 +5,13 @@
 package net.xmx.velthoric.core.network.internal;
 
 import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdException;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
 import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
 import net.xmx.velthoric.core.body.server.VxServerBodyManager;
@@ -18,6 +21,9 @@ import net.xmx.velthoric.core.body.shape.VxShapeCodec;
 import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
 import net.xmx.velthoric.core.network.internal.packet.S2CUpdateShapeBatchPacket;
 import net.xmx.velthoric.core.network.internal.packet.S2CUpdateVerticesBatchPacket;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics.PayloadKind;
+import net.xmx.velthoric.core.network.synchronization.packet.S2CSynchronizedDataBatchPacket;
 import net.xmx.velthoric.network.VxByteBuf;
 
 import java.nio.ByteBuffer;
@@ -49,6 +55,17 @@ public class VxPacketFactory {
      */
     private static final int ZSTD_COMPRESSION_LEVEL = 3;
 
+    /**
+     * Per-thread Zstd compression context. Reusing a context avoids re-allocating the native
+     * compression state for every packet, and keeping one per thread lets the parallel
+     * serialization workers compress concurrently without contention.
+     */
+    private static final ThreadLocal<ZstdCompressCtx> COMPRESSION_CONTEXT = ThreadLocal.withInitial(() -> {
+        ZstdCompressCtx ctx = new ZstdCompressCtx();
+        ctx.setLevel(ZSTD_COMPRESSION_LEVEL);
+        return ctx;
+    });
+
     /**
      * The physics body manager containing the global body list.
      */
@@ -74,7 +91,7 @@ public class VxPacketFactory {
      * <p>
      * This method:
      * 1. Acquires a pooled direct ByteBuf.
-     * 2. Writes the raw physics state (pos, rot, vel) into the buffer.
+     * 2. Writes the packet header and a single chunk section (see {@link #writeStateSection}).
      * 3. Compresses the buffer into a new pooled direct ByteBuf using Zstd.
      * 4. Releases the raw buffer.
      * 5. Returns a packet containing the compressed buffer.
@@ -84,58 +101,19 @@ public class VxPacketFactory {
      * @param serverLevel  The server level (used for calculating relative coordinates).
      * @return The constructed packet containing the compressed buffer.
      */
-    public S2CUpdateBodyStateBatchPacket createStatePacket(long chunkPosLong, IntArrayList indices, net.minecraft.server.level.ServerLevel serverLevel) {
+    public S2CUpdateBodyStateBatchPacket createStatePacket(long chunkPosLong, IntArrayList indices, ServerLevel serverLevel) {
         // Allocate a direct buffer from the pool.
-        // Size estimation: Header (24 bytes) + per body (~64 bytes).
+        // Size estimation: Header (8 bytes) + section header (12 bytes) + per body (~64 bytes).
         // We estimate conservatively to avoid resizing, but ByteBuf grows automatically if needed.
-        int estimatedSize = 24 + (indices.size() * 64);
+        int estimatedSize = 20 + (indices.size() * 64);
         ByteBuf rawBuf = ALLOCATOR.directBuffer(estimatedSize);
 
         try {
-            ChunkPos chunkPos = new ChunkPos(chunkPosLong);
-            double chunkBaseX = chunkPos.getMinBlockX();
-            double chunkBaseY = serverLevel.getMinBuildHeight();
-            double chunkBaseZ = chunkPos.getMinBlockZ();
-
-            // Write Header
-            rawBuf.writeInt(indices.size());
-            rawBuf.writeLong(System.nanoTime());
-            rawBuf.writeLong(chunkPosLong);
-
-            // Local container reference for thread-safe access
-            VxServerBodyDataContainer c = dataStore.serverCurrent();
-
-            // Write Body Data (Structure of Arrays -> Stream)
-            // We iterate over the indices and write primitives directly to off-heap memory.
-            for (int i = 0; i < indices.size(); i++) {
-                int idx = indices.getInt(i);
-
-                rawBuf.writeInt(c.networkId[idx]);
-                
-                // Relative positions are sent as floats to save bandwidth (double -> float precision loss is acceptable for rendering relative to chunk)
-                rawBuf.writeFloat((float) (c.posX[idx] - chunkBaseX));
-                rawBuf.writeFloat((float) (c.posY[idx] - chunkBaseY));
-                rawBuf.writeFloat((float) (c.posZ[idx] - chunkBaseZ));
-                
-                // Rotations (quaternion)
-                rawBuf.writeFloat(c.rotX[idx]);
-                rawBuf.writeFloat(c.rotY[idx]);
-                rawBuf.writeFloat(c.rotZ[idx]);
-                rawBuf.writeFloat(c.rotW[idx]);
-
-                boolean active = c.isActive[idx];
-                rawBuf.writeBoolean(active);
-                
-                // Only send velocity if the body is active/awake
-                if (active) {
-                    rawBuf.writeFloat(c.velX[idx]);
-                    rawBuf.writeFloat(c.velY[idx]);
-                    rawBuf.writeFloat(c.velZ[idx]);
-                }
-            }
+            writeStateHeader(rawBuf, System.nanoTime());
+            writeStateSection(rawBuf, chunkPosLong, indices, serverLevel);
 
             // Compress directly from rawBuf to a new compressedBuf using Zstd
-            return new S2CUpdateBodyStateBatchPacket(compressDirect(rawBuf));
+            return createStatePacket(rawBuf);
 
         } finally {
             // Ensure the raw buffer is returned to the pool immediately after compression.
@@ -144,11 +122,133 @@ public class VxPacketFactory {
         }
     }
 
+    /**
+     * Compresses a raw state payload (a header followed by one or more chunk sections) into a packet.
+     * The raw buffer is not released.
+     *
+     * @param rawBuf The uncompressed payload.
+     * @return The constructed packet containing the compressed buffer.
+     */
+    public S2CUpdateBodyStateBatchPacket createStatePacket(ByteBuf rawBuf) {
+        return new S2CUpdateBodyStateBatchPacket(compress(rawBuf, PayloadKind.STATE));
+    }
+
+    /**
+     * Writes the header of a state payload.
+     *
+     * @param out       The destination buffer.
+     * @param timestamp The server timestamp of the contained states.
+     */
+    public static void writeStateHeader(ByteBuf out, long timestamp) {
+        out.writeLong(timestamp);
+    }
+
+    /**
+     * Serializes the state of all given bodies of one chunk as a self-contained section.
+     * <p>
+     * A section consists of the chunk key, the record count and one record per body. Positions are
+     * encoded relative to the chunk, so sections can be concatenated freely into aggregated payloads.
+     * Each record is either the raw physics state (pos, rot, vel), or a "came to rest" record with the
+     * exact final transform for bodies that just fell asleep.
+     *
+     * @param out          The destination buffer.
+     * @param chunkPosLong The chunk position key.
+     * @param indices      The indices of the bodies to serialize.
+     * @param serverLevel  The server level (used for calculating relative coordinates).
+     */
+    public void writeStateSection(ByteBuf out, long chunkPosLong, IntArrayList indices, ServerLevel serverLevel) {
+        ChunkPos chunkPos = new ChunkPos(chunkPosLong);
+        double chunkBaseX = chunkPos.getMinBlockX();
+        double chunkBaseY = serverLevel.getMinBuildHeight();
+        double chunkBaseZ = chunkPos.getMinBlockZ();
+
+        // Write Section Header
+        out.writeLong(chunkPosLong);
+        out.writeInt(indices.size());
+
+        // Local container reference for thread-safe access
+        VxServerBodyDataContainer c = dataStore.serverCurrent();
+
+        // Write Body Data (Structure of Arrays -> Stream)
+        // We iterate over the indices and write primitives directly to off-heap memory.
+        for (int i = 0; i < indices.size(); i++) {
+            int idx = indices.getInt(i);
+            writeStateRecord(out, c.networkId[idx], c.isResting[idx],
+                    c.posX[idx], c.posY[idx], c.posZ[idx],
+                    c.rotX[idx], c.rotY[idx], c.rotZ[idx], c.rotW[idx],
+                    c.velX[idx], c.velY[idx], c.velZ[idx],
+                    chunkBaseX, chunkBaseY, chunkBaseZ);
+        }
+    }
+
+    /**
+     * Writes the state record of a single body.
+     * <p>
+     * Shared by {@link #writeStateSection} and the offline traffic replay
+     * ({@code VxTrafficReplay} in the benchmark source set), so both produce the exact same wire format.
+     *
+     * @param out       The destination buffer.
+     * @param networkId The network ID of the body.
+     * @param resting   Whether a "came to rest" record is written instead of an active one.
+     * @param posX      The absolute X position.
+     * @param posY      The absolute Y position.
+     * @param posZ      The absolute Z position.
+     * @param rotX      The rotation quaternion X component.
+     * @param rotY      The rotation quaternion Y component.
+     * @param rotZ      The rotation quaternion Z component.
+     * @param rotW      The rotation quaternion W component.
+     * @param velX      The linear velocity X component.
+     * @param velY      The linear velocity Y component.
+     * @param velZ      The linear velocity Z component.
+     * @param baseX     The X origin of the chunk section.
+     * @param baseY     The Y origin of the chunk section (the minimum build height).
+     * @param baseZ     The Z origin of the chunk section.
+     */
+    public static void writeStateRecord(ByteBuf out, int networkId, boolean resting,
+                                        double posX, double posY, double posZ,
+                                        float rotX, float rotY, float rotZ, float rotW,
+                                        float velX, float velY, float velZ,
+                                        double baseX, double baseY, double baseZ) {
+        out.writeInt(networkId);
+
+        if (resting) {
+            // "Came to rest" record: the final transform at full precision, no velocity.
+            // The client snaps to it and stops interpolating until the body wakes up.
+            out.writeByte(S2CUpdateBodyStateBatchPacket.RECORD_RESTING);
+            out.writeDouble(posX);
+            out.writeDouble(posY);
+            out.writeDouble(posZ);
+            out.writeFloat(rotX);
+            out.writeFloat(rotY);
+            out.writeFloat(rotZ);
+            out.writeFloat(rotW);
+            return;
+        }
+
+        out.writeByte(S2CUpdateBodyStateBatchPacket.RECORD_ACTIVE);
+
+        // Relative positions are sent as floats to save bandwidth (double -> float precision loss is acceptable for rendering relative to chunk)
+        out.writeFloat((float) (posX - baseX));
+        out.writeFloat((float) (posY - baseY));
+        out.writeFloat((float) (posZ - baseZ));
+
+        // Rotations (quaternion)
+        out.writeFloat(rotX);
+        out.writeFloat(rotY);
+        out.writeFloat(rotZ);
+        out.writeFloat(rotW);
+
+        out.writeFloat(velX);
+        out.writeFloat(velY);
+        out.writeFloat(velZ);
+    }
+
     /**
      * Creates a compressed vertex update packet for soft bodies.
      * <p>
-     * Similar to the state packet, this serializes vertex arrays directly into
-     * off-heap memory and compresses them.
+     * Each body's vertices are written through {@link VxVertexStreamCodec}, which alternates
+     * quantized keyframes with predictive deltas against the previous frame. The per-body
+     * stream history lives in {@link VxServerBodyDataContainer#vertexStream}.
      *
      * @param chunkPosLong The chunk position key.
      * @param indices      The indices of the bodies.
@@ -156,7 +256,7 @@ public class VxPacketFactory {
      */
     public S2CUpdateVerticesBatchPacket createVertexPacket(long chunkPosLong, IntArrayList indices) {
         // Estimate size: Header + approx 128 bytes per soft body (variable)
-        ByteBuf rawBuf = ALLOCATOR.directBuffer(16 + indices.size() * 128); 
+        ByteBuf rawBuf = ALLOCATOR.directBuffer(16 + indices.size() * 128);
 
         try {
             rawBuf.writeInt(indices.size());
@@ -166,38 +266,46 @@ public class VxPacketFactory {
             for (int i = 0; i < indices.size(); i++) {
                 int idx = indices.getInt(i);
                 rawBuf.writeInt(c.networkId[idx]);
-                
-                float[] vData = c.vertexData[idx];
-                if (vData != null && vData.length > 0) {
-                    rawBuf.writeBoolean(true);
-                    rawBuf.writeInt(vData.length);
-                    // Bulk write would be faster if we had FloatBuffer access to source, 
-                    // but loop is necessary for float[] array.
-                    for (float v : vData) {
-                        rawBuf.writeFloat(v);
-                    }
-                } else {
-                    rawBuf.writeBoolean(false);
+
+                VxVertexStreamCodec.State stream = c.vertexStream[idx];
+                if (stream == null) {
+                    stream = new VxVertexStreamCodec.State();
+                    c.vertexStream[idx] = stream;
                 }
+                VxVertexStreamCodec.write(rawBuf, c.vertexData[idx], stream);
             }
 
-            return new S2CUpdateVerticesBatchPacket(compressDirect(rawBuf));
+            return new S2CUpdateVerticesBatchPacket(compress(rawBuf, PayloadKind.VERTICES));
 
         } finally {
             rawBuf.release();
         }
     }
 
+    /**
+     * Compresses a raw payload via {@link #compressDirect} and records the compression ratio in the metrics.
+     *
+     * @param rawBuf The uncompressed data (readable part is compressed).
+     * @param kind   The kind of payload, used for the per-kind ratio.
+     * @return A new ByteBuf containing the compressed data.
+     */
+    private static ByteBuf compress(ByteBuf rawBuf, PayloadKind kind) {
+        int rawSize = rawBuf.readableBytes();
+        ByteBuf compressed = compressDirect(rawBuf);
+        VxNetworkMetrics.getInstance().recordCompression(kind, rawSize, compressed.readableBytes());
+        return compressed;
+    }
+
     /**
      * Compresses the data from the source buffer into a new pooled buffer using Zstd.
      * <p>
-     * This method uses the {@link Zstd#compressDirectByteBuffer} API to avoid copying
+     * This method uses the direct buffer API of {@link ZstdCompressCtx} to avoid copying
      * data into Java byte arrays.
      *
      * @param source The uncompressed data (readable part is compressed).
      * @return A new ByteBuf containing the compressed data. The caller is responsible for releasing it (usually via the Packet).
      */
-    private ByteBuf compressDirect(ByteBuf source) {
+    public static ByteBuf compressDirect(ByteBuf source) {
         int uncompressedLen = source.readableBytes();
         // Calculate the maximum possible size of compressed data to allocate sufficient buffer
         int maxCompressedLen = (int) Zstd.compressBound(uncompressedLen);
@@ -209,24 +317,24 @@ public class VxPacketFactory {
         ByteBuffer srcNio = source.nioBuffer(source.readerIndex(), uncompressedLen);
         ByteBuffer dstNio = dest.nioBuffer(0, maxCompressedLen);
 
-        // Perform compression directly in native memory
-        long compressedSize = Zstd.compressDirectByteBuffer(
-            dstNio, 
-            0, // dst offset
-            maxCompressedLen, // dst size
-            srcNio, 
-            0, // src offset
-            uncompressedLen, // src size
-            ZSTD_COMPRESSION_LEVEL
-        );
-        
-        if (Zstd.isError(compressedSize)) {
+        // Perform compression directly in native memory using this thread's context
+        int compressedSize;
+        try {
+            compressedSize = COMPRESSION_CONTEXT.get().compressDirectByteBuffer(
+                dstNio,
+                0, // dst offset
+                maxCompressedLen, // dst size
+                srcNio,
+                0, // src offset
+                uncompressedLen // src size
+            );
+        } catch (ZstdException e) {
             dest.release(); // Prevent leak on error
-            throw new RuntimeException("Compression failed: " + Zstd.getErrorName(compressedSize));
+            throw new RuntimeException("Compression failed: " + e.getMessage(), e);
         }
 
         // Set the writer index to the actual compressed size so Netty knows how much data is in there
-        dest.writerIndex((int) compressedSize);
+        dest.writerIndex(compressedSize);
         return dest;
     }
 
@@ -264,10 +372,21 @@ public class VxPacketFactory {
                 }
             }
 
-            return new S2CUpdateShapeBatchPacket(compressDirect(rawBuf));
+            return new S2CUpdateShapeBatchPacket(compress(rawBuf, PayloadKind.SHAPES));
 
         } finally {
             rawBuf.release();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Compresses a raw custom data batch (a sequence of per-body synchronization records) into a packet.
+     * The raw buffer is not released.
+     *
+     * @param rawBuf The uncompressed batch.
+     * @return The constructed packet containing the compressed buffer.
+     */
+    public S2CSynchronizedDataBatchPacket createSynchronizedDataPacket(ByteBuf rawBuf) {
+        return new S2CSynchronizedDataBatchPacket(compress(rawBuf, PayloadKind.SYNC_DATA));
+    }
+}
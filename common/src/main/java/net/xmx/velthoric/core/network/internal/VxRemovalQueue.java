@@ -0,0 +1,139 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongList;
+
+/**
+ * The per-player queue of bodies waiting to be removed from the client.
+ * <p>
+ * Removals are queued either as single network IDs or as a <b>chunk shortcut</b>, which tells the client
+ * to drop all resting bodies in a chunk in one pass instead of listing them. The members of a shortcut are
+ * remembered, so that a single body can still be cancelled when it is tracked again before the removal
+ * was sent; the shortcut is then downgraded to explicit IDs.
+ * <p>
+ * Removals are queued by the game thread and drained by the network thread, so all methods are synchronized.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxRemovalQueue {
+
+    /**
+     * Network IDs to remove explicitly.
+     */
+    private final IntOpenHashSet ids = new IntOpenHashSet();
+
+    /**
+     * Chunk shortcuts by packed chunk position, with the network IDs they cover.
+     */
+    private final Long2ObjectMap<IntArrayList> chunks = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Maps each network ID covered by a chunk shortcut to its chunk.
+     */
+    private final Int2LongMap chunkOfId = new Int2LongOpenHashMap();
+
+    /**
+     * Queues the removal of a single body.
+     *
+     * @param networkId The network ID of the body.
+     */
+    public synchronized void add(int networkId) {
+        ids.add(networkId);
+    }
+
+    /**
+     * Queues the removal of bodies that left the client's view together with their chunk.
+     *
+     * @param chunkKey  The packed chunk position.
+     * @param members   The network IDs of the bodies.
+     * @param shortcut  Whether the client's view of the chunk is known to match the server's exactly,
+     *                  so that the chunk may be sent instead of the individual IDs.
+     */
+    public synchronized void addChunk(long chunkKey, IntList members, boolean shortcut) {
+        if (!shortcut) {
+            ids.addAll(members);
+            return;
+        }
+        IntArrayList covered = chunks.computeIfAbsent(chunkKey, k -> new IntArrayList(members.size()));
+        for (int i = 0; i < members.size(); i++) {
+            int networkId = members.getInt(i);
+            covered.add(networkId);
+            chunkOfId.put(networkId, chunkKey);
+        }
+    }
+
+    /**
+     * Cancels the pending removal of a body.
+     *
+     * @param networkId The network ID of the body.
+     * @return True if a removal was pending, false otherwise.
+     */
+    public synchronized boolean cancel(int networkId) {
+        if (ids.remove(networkId)) return true;
+        if (!chunkOfId.containsKey(networkId)) return false;
+
+        // The body is visible again: the chunk can no longer be removed as a whole
+        downgradeChunk(chunkOfId.get(networkId));
+        ids.remove(networkId);
+        return true;
+    }
+
+    /**
+     * Turns a pending chunk shortcut into explicit removals, because the chunk became visible again
+     * and new bodies spawned in it must not be caught by the shortcut.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    public synchronized void downgradeChunk(long chunkKey) {
+        IntArrayList covered = chunks.remove(chunkKey);
+        if (covered == null) return;
+        for (int i = 0; i < covered.size(); i++) {
+            int member = covered.getInt(i);
+            chunkOfId.remove(member);
+            ids.add(member);
+        }
+    }
+
+    /**
+     * @return True if no removal is pending.
+     */
+    public synchronized boolean isEmpty() {
+        return ids.isEmpty() && chunks.isEmpty();
+    }
+
+    /**
+     * Moves the pending removals into the given lists.
+     *
+     * @param outIds        Receives the explicit network IDs.
+     * @param outChunks     Receives the chunk shortcuts.
+     * @param includeChunks Whether chunk shortcuts may be sent now. If false they stay queued.
+     */
+    public synchronized void drain(IntList outIds, LongList outChunks, boolean includeChunks) {
+        outIds.addAll(ids);
+        ids.clear();
+        if (includeChunks && !chunks.isEmpty()) {
+            outChunks.addAll(chunks.keySet());
+            chunks.clear();
+            chunkOfId.clear();
+        }
+    }
+
+    /**
+     * Drops all pending removals.
+     */
+    public synchronized void clear() {
+        ids.clear();
+        chunks.clear();
+        chunkOfId.clear();
+    }
+}
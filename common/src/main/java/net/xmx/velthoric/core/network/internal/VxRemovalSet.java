@@ -0,0 +1,190 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.function.IntConsumer;
+
+/**
+ * A compact wire encoding for sets of network IDs, used by body removal batches.
+ * <p>
+ * The dense index space of {@link VxNetworkIdAllocator} is split into windows of {@link #WINDOW_SIZE}
+ * indices. Each non-empty window is written in whichever of two forms is smaller:
+ * <ul>
+ *     <li><b>Delta:</b> the sorted IDs as VarInt deltas. Best for a few scattered bodies.</li>
+ *     <li><b>Bitset:</b> one bit per index of the window, followed by the 4-bit generation of every set
+ *     index. Best when a large area is unloaded and the removed indices are dense.</li>
+ * </ul>
+ * Layout: {@code varint windowCount}, then per window {@code varint windowDelta, byte mode} followed by
+ * either {@code varint count, varint idDelta...} or {@code byte[WINDOW_SIZE / 8] bits, byte[(count + 1) / 2] generations}.
+ * <p>
+ * Unloading 50k densely allocated bodies takes about 0.63 bytes per ID instead of the 4 bytes of a raw int list.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxRemovalSet {
+
+    /**
+     * log2 of the number of indices per window.
+     */
+    private static final int WINDOW_BITS = 8;
+
+    /**
+     * The number of indices per window.
+     */
+    private static final int WINDOW_SIZE = 1 << WINDOW_BITS;
+
+    /**
+     * The size in bytes of a window bitset.
+     */
+    private static final int BITSET_BYTES = WINDOW_SIZE / 8;
+
+    private static final byte MODE_DELTA = 0;
+    private static final byte MODE_BITSET = 1;
+
+    private VxRemovalSet() {
+    }
+
+    /**
+     * Writes a set of network IDs. The list is sorted and deduplicated in place.
+     *
+     * @param buf The destination buffer.
+     * @param ids The network IDs to write.
+     */
+    public static void write(VxByteBuf buf, IntArrayList ids) {
+        int count = sortUnique(ids);
+        int[] a = ids.elements();
+
+        int windows = 0;
+        for (int i = 0; i < count; ) {
+            int window = windowOf(a[i]);
+            while (i < count && windowOf(a[i]) == window) i++;
+            windows++;
+        }
+        buf.writeVarInt(windows);
+
+        int previousWindow = 0;
+        for (int start = 0; start < count; ) {
+            int window = windowOf(a[start]);
+            int end = start;
+            int deltaBytes = 0;
+            boolean distinctIndices = true;
+            int previous = window << (WINDOW_BITS + VxNetworkIdAllocator.GENERATION_BITS);
+            while (end < count && windowOf(a[end]) == window) {
+                if (end > start && VxNetworkIdAllocator.indexOf(a[end]) == VxNetworkIdAllocator.indexOf(a[end - 1])) {
+                    // Two generations of one index cannot share a bit
+                    distinctIndices = false;
+                }
+                deltaBytes += VxByteBuf.varIntSize(a[end] - previous);
+                previous = a[end];
+                end++;
+            }
+            int n = end - start;
+            deltaBytes += VxByteBuf.varIntSize(n);
+            int bitsetBytes = BITSET_BYTES + (n + 1) / 2;
+
+            buf.writeVarInt(window - previousWindow);
+            previousWindow = window;
+
+            if (distinctIndices && bitsetBytes < deltaBytes) {
+                buf.writeByte(MODE_BITSET);
+                writeBitset(buf, a, start, end, window);
+            } else {
+                buf.writeByte(MODE_DELTA);
+                buf.writeVarInt(n);
+                previous = window << (WINDOW_BITS + VxNetworkIdAllocator.GENERATION_BITS);
+                for (int i = start; i < end; i++) {
+                    buf.writeVarInt(a[i] - previous);
+                    previous = a[i];
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Reads a set of network IDs written by {@link #write}, in ascending order.
+     *
+     * @param buf    The source buffer.
+     * @param action Receives every network ID.
+     */
+    public static void read(VxByteBuf buf, IntConsumer action) {
+        int windows = buf.readVarInt();
+        int window = 0;
+        byte[] bits = null;
+        for (int w = 0; w < windows; w++) {
+            window += buf.readVarInt();
+            int base = window << WINDOW_BITS;
+            byte mode = buf.readByte();
+
+            if (mode == MODE_BITSET) {
+                if (bits == null) bits = new byte[BITSET_BYTES];
+                buf.readBytes(bits);
+                int generations = 0;
+                int nibble = 0;
+                for (int i = 0; i < WINDOW_SIZE; i++) {
+                    if ((bits[i >>> 3] & (1 << (i & 7))) == 0) continue;
+                    if ((nibble & 1) == 0) generations = buf.readUnsignedByte();
+                    int generation = (nibble & 1) == 0 ? generations & 0x0F : generations >>> 4;
+                    nibble++;
+                    action.accept(VxNetworkIdAllocator.pack(base + i, generation));
+                }
+            } else {
+                int n = buf.readVarInt();
+                int id = window << (WINDOW_BITS + VxNetworkIdAllocator.GENERATION_BITS);
+                for (int i = 0; i < n; i++) {
+                    id += buf.readVarInt();
+                    action.accept(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index bits of a window followed by the packed generations of its IDs.
+     */
+    private static void writeBitset(VxByteBuf buf, int[] a, int start, int end, int window) {
+        byte[] bits = new byte[BITSET_BYTES];
+        int base = window << WINDOW_BITS;
+        for (int i = start; i < end; i++) {
+            int bit = VxNetworkIdAllocator.indexOf(a[i]) - base;
+            bits[bit >>> 3] |= (byte) (1 << (bit & 7));
+        }
+        buf.writeBytes(bits);
+
+        // Two generations per byte, low nibble first, in ascending index order
+        for (int i = start; i < end; i += 2) {
+            int low = VxNetworkIdAllocator.generationOf(a[i]);
+            int high = i + 1 < end ? VxNetworkIdAllocator.generationOf(a[i + 1]) : 0;
+            buf.writeByte(low | (high << 4));
+        }
+    }
+
+    /**
+     * Sorts the list and removes duplicates, returning the new size.
+     */
+    private static int sortUnique(IntArrayList ids) {
+        int size = ids.size();
+        if (size < 2) return size;
+        int[] a = ids.elements();
+        IntArrays.radixSort(a, 0, size);
+        int unique = 1;
+        for (int i = 1; i < size; i++) {
+            if (a[i] != a[unique - 1]) a[unique++] = a[i];
+        }
+        ids.size(unique);
+        return unique;
+    }
+
+    /**
+     * @return The window of a network ID's index.
+     */
+    private static int windowOf(int networkId) {
+        return VxNetworkIdAllocator.indexOf(networkId) >>> WINDOW_BITS;
+    }
+}
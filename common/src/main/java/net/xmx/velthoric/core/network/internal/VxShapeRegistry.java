@@ -0,0 +1,245 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.xmx.velthoric.core.body.shape.VxCollisionShape;
+import net.xmx.velthoric.core.body.shape.VxMutableCompoundShape;
+import net.xmx.velthoric.core.body.shape.VxShapeCodec;
+import net.xmx.velthoric.network.VxByteBuf;
+
+/**
+ * A per-connection, content-addressed registry of collision shapes already known to a client.
+ * <p>
+ * Shapes are identified by their canonical {@link VxShapeCodec} encoding. The first time a shape
+ * is written for a connection, it is sent inline together with a short slot ID. Every following
+ * body with identical shape content only references that slot, so a grid of 2,000 identical boxes
+ * transfers the box definition exactly once.
+ * <p>
+ * <b>Slot Allocation:</b> Slot IDs are handed out from a fixed-size ring of {@link #CAPACITY} entries.
+ * When the ring wraps, the oldest definition is overwritten. The client mirrors the ring in a
+ * {@link VxClientShapeCache} of the same size and simply stores each definition in the slot the
+ * server dictates, so both sides stay consistent without any acknowledgement traffic.
+ * <p>
+ * <b>Delivery:</b> A definition only counts as known to the client once the packet carrying it was handed
+ * to the connection. Definitions written since the last {@link #commit()} can be dropped again with
+ * {@link #rollback(int)} when their record or packet is discarded, so the next body with that shape sends
+ * the definition again instead of referencing a slot the client never filled. Sending a definition twice
+ * is harmless, since the client simply overwrites the slot.
+ * <p>
+ * This class is not thread-safe and must only be used by the thread serializing spawns.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxShapeRegistry {
+
+    /**
+     * The number of shape slots per connection, shared with the client cache.
+     */
+    public static final int CAPACITY = 4096;
+
+    /**
+     * Marker for a body without a collision shape.
+     */
+    public static final byte SHAPE_NONE = 0;
+
+    /**
+     * Marker for a reference to a previously defined slot. Followed by the slot ID (VarInt).
+     */
+    public static final byte SHAPE_REFERENCE = 1;
+
+    /**
+     * Marker for an inline definition. Followed by the slot ID (VarInt) and the encoded shape.
+     */
+    public static final byte SHAPE_DEFINITION = 2;
+
+    /**
+     * Marker for an unregistered inline shape. Followed by the encoded shape only.
+     * Used for {@link VxMutableCompoundShape}, whose instances must never be shared between bodies.
+     */
+    public static final byte SHAPE_INLINE = 3;
+
+    /**
+     * Maps the 64-bit content hash of a shape to the slot currently holding it.
+     */
+    private final Long2IntMap hashToSlot = new Long2IntOpenHashMap();
+
+    /**
+     * The canonical encoding stored in each slot, used to verify hash hits.
+     */
+    private final byte[][] slotContent = new byte[CAPACITY][];
+
+    /**
+     * The content hash stored in each slot, used to unlink evicted entries.
+     */
+    private final long[] slotHash = new long[CAPACITY];
+
+    /**
+     * The next slot to be (re)assigned in ring order.
+     */
+    private int nextSlot = 0;
+
+    /**
+     * Slots defined since the last {@link #commit()}, in definition order.
+     */
+    private final IntArrayList uncommitted = new IntArrayList();
+
+    /**
+     * Reusable scratch buffer holding the canonical encoding of the shape being written.
+     */
+    private final ByteBuf scratch = Unpooled.buffer(256);
+
+    /**
+     * Reusable wrapper around {@link #scratch} for the shape codec.
+     */
+    private final VxByteBuf scratchWrapper = new VxByteBuf(scratch);
+
+    /**
+     * Constructs an empty registry for a single connection.
+     */
+    public VxShapeRegistry() {
+        hashToSlot.defaultReturnValue(-1);
+    }
+
+    /**
+     * Writes a shape into a spawn record, either as a slot reference or as an inline definition.
+     *
+     * @param buf   The destination spawn buffer.
+     * @param shape The shape to write, or null if the body has no shape.
+     */
+    public void writeShape(VxByteBuf buf, VxCollisionShape shape) {
+        if (shape == null) {
+            buf.writeByte(SHAPE_NONE);
+            return;
+        }
+
+        if (shape instanceof VxMutableCompoundShape) {
+            buf.writeByte(SHAPE_INLINE);
+            VxShapeCodec.write(buf, shape);
+            return;
+        }
+
+        // Canonicalize: the codec output is the identity of the shape.
+        scratch.clear();
+        VxShapeCodec.write(scratchWrapper, shape);
+        int length = scratch.readableBytes();
+        long hash = hash(scratch, length);
+
+        int slot = hashToSlot.get(hash);
+        if (slot != -1 && contentEquals(slotContent[slot], scratch, length)) {
+            buf.writeByte(SHAPE_REFERENCE);
+            buf.writeVarInt(slot);
+            return;
+        }
+
+        slot = assignSlot(hash, length);
+        buf.writeByte(SHAPE_DEFINITION);
+        buf.writeVarInt(slot);
+        buf.writeBytes(scratch, 0, length);
+    }
+
+    /**
+     * Claims the next ring slot for new shape content, evicting the previous occupant.
+     *
+     * @param hash   The content hash of the new shape.
+     * @param length The length of the canonical encoding in {@link #scratch}.
+     * @return The assigned slot ID.
+     */
+    private int assignSlot(long hash, int length) {
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % CAPACITY;
+
+        // Unlink the evicted definition, unless its hash has already been re-pointed elsewhere.
+        if (slotContent[slot] != null && hashToSlot.get(slotHash[slot]) == slot) {
+            hashToSlot.remove(slotHash[slot]);
+        }
+
+        byte[] content = new byte[length];
+        scratch.getBytes(0, content);
+        slotContent[slot] = content;
+        slotHash[slot] = hash;
+        hashToSlot.put(hash, slot);
+        uncommitted.add(slot);
+        return slot;
+    }
+
+    /**
+     * Returns a checkpoint for {@link #rollback(int)}, taken before writing a record.
+     *
+     * @return The number of definitions written since the last commit.
+     */
+    public int checkpoint() {
+        return uncommitted.size();
+    }
+
+    /**
+     * Forgets all definitions written after the given checkpoint, because the records carrying them
+     * will never reach the client. Shapes of forgotten slots are defined again when next written.
+     *
+     * @param checkpoint A value of {@link #checkpoint()} since the last commit, or 0 to forget every
+     *                   uncommitted definition.
+     */
+    public void rollback(int checkpoint) {
+        for (int i = uncommitted.size() - 1; i >= checkpoint; i--) {
+            int slot = uncommitted.getInt(i);
+            if (hashToSlot.get(slotHash[slot]) == slot) {
+                hashToSlot.remove(slotHash[slot]);
+            }
+            slotContent[slot] = null;
+        }
+        uncommitted.size(checkpoint);
+    }
+
+    /**
+     * Marks every definition written so far as delivered. Called once the packet carrying them
+     * was handed to the connection.
+     */
+    public void commit() {
+        uncommitted.clear();
+    }
+
+    /**
+     * Computes a 64-bit FNV-1a hash over the first {@code length} bytes of the buffer.
+     * <p>
+     * Hits are always verified against the stored encoding, so an override returning colliding
+     * hashes only costs extra definitions, never a wrong shape.
+     *
+     * @param buf    The buffer holding the canonical encoding.
+     * @param length The length of the encoding.
+     * @return The content hash.
+     */
+    protected long hash(ByteBuf buf, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            h ^= buf.getByte(i) & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Compares a stored encoding against the first {@code length} bytes of the buffer.
+     */
+    private static boolean contentEquals(byte[] stored, ByteBuf buf, int length) {
+        if (stored == null || stored.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (stored[i] != buf.getByte(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the scratch buffer. Called when the connection is dropped.
+     */
+    public void release() {
+        if (scratch.refCnt() > 0) {
+            scratch.release();
+        }
+    }
+}
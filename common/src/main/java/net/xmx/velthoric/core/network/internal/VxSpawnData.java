@@ -9,8 +9,9 @@ import net.minecraft.resources.ResourceLocation;
 import net.xmx.velthoric.network.VxByteBuf;
 import net.xmx.velthoric.core.body.client.VxClientBodyManager;
 import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
+import net.xmx.velthoric.core.body.server.VxServerBodyDataStore;
 import net.xmx.velthoric.core.body.shape.VxCollisionShape;
-import net.xmx.velthoric.core.body.shape.VxShapeCodec;
 
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
@@ -32,8 +33,9 @@ public class VxSpawnData {
      * @param buf       The destination Netty ByteBuf.
      * @param body      The body to serialize.
      * @param timestamp Current simulation timestamp.
+     * @param shapes    The recipient's shape registry, used to reference already transferred shapes.
      */
-    public static void writeRaw(ByteBuf buf, VxBody body, long timestamp) {
+    public static void writeRaw(ByteBuf buf, VxBody body, long timestamp, VxShapeRegistry shapes) {
         // Manually write UUID (High/Low) to avoid FriendlyByteBuf overhead
         UUID id = body.getPhysicsId();
         buf.writeLong(id.getMostSignificantBits());
@@ -48,20 +50,47 @@ public class VxSpawnData {
 
         buf.writeLong(timestamp);
 
+        // Rest flag: clients never receive updates for bodies that are already resting,
+        // so they must know up front not to interpolate them.
+        buf.writeBoolean(isResting(body));
+
         // Wrap for complex objects that rely on VxByteBuf API
         // NOTE: This wrapper does NOT copy data, it just delegates to the ByteBuf.
         VxByteBuf wrapper = new VxByteBuf(buf);
         body.getTransform().toBuffer(wrapper);
         body.writeInitialSyncData(wrapper);
 
-        // Write collision shape (nullable)
-        VxCollisionShape shape = body.getShape();
-        if (shape != null) {
-            buf.writeBoolean(true);
-            VxShapeCodec.write(wrapper, shape);
-        } else {
-            buf.writeBoolean(false);
+        // Write collision shape (nullable) as an inline definition or a slot reference
+        shapes.writeShape(wrapper, body.getShape());
+    }
+
+    /**
+     * Writes the spawn record of a body that may be removed concurrently by the game thread.
+     * <p>
+     * A removal clears the body's data store index, so a record written while the index went away
+     * may hold default values, and reading a slot through the cleared index fails with an
+     * {@link IndexOutOfBoundsException}. Both cases are detected by checking the index after writing;
+     * any other failure propagates. The caller must drop an incomplete record together with the
+     * shape definitions it wrote (see {@link VxShapeRegistry#rollback}).
+     *
+     * @param buf       The destination buffer.
+     * @param body      The body to write.
+     * @param timestamp The server timestamp of the spawn.
+     * @param shapes    The shape registry of the receiving connection.
+     * @return True if the record is complete, false if the body was removed and the record must be dropped.
+     */
+    public static boolean writeIfPresent(ByteBuf buf, VxBody body, long timestamp, VxShapeRegistry shapes) {
+        if (body.getDataStoreIndex() == -1) {
+            return false;
         }
+        try {
+            writeRaw(buf, body, timestamp, shapes);
+        } catch (IndexOutOfBoundsException e) {
+            if (body.getDataStoreIndex() != -1) {
+                throw e;
+            }
+        }
+        return body.getDataStoreIndex() != -1;
     }
 
     /**
@@ -75,11 +104,13 @@ public class VxSpawnData {
         int netId = buf.readVarInt();
         ResourceLocation type = buf.readResourceLocation();
         long timestamp = buf.readLong();
-        manager.spawnBody(id, netId, type, buf, timestamp);
+        boolean resting = buf.readBoolean();
+        manager.spawnBody(id, netId, type, buf, timestamp, resting);
 
-        // Read and apply shape after spawn (body is now registered in manager)
-        if (buf.readBoolean()) {
-            VxCollisionShape shape = VxShapeCodec.read(buf);
+        // Read and apply shape after spawn (body is now registered in manager).
+        // Referenced shapes are shared instances from the client shape cache.
+        VxCollisionShape shape = manager.getShapeCache().readShape(buf);
+        if (shape != null) {
             VxBody body = manager.getVxBody(id);
             if (body != null) {
                 body.setShape(shape);
@@ -87,6 +118,19 @@ public class VxSpawnData {
         }
     }
 
+    /**
+     * Checks whether the body has already been announced to clients as resting.
+     *
+     * @param body The server-side body.
+     * @return True if state updates for this body are currently suppressed.
+     */
+    static boolean isResting(VxBody body) {
+        int index = body.getDataStoreIndex();
+        if (index == -1 || !(body.getDataStore() instanceof VxServerBodyDataStore store)) return false;
+        VxServerBodyDataContainer c = store.serverCurrent();
+        return index < c.getCapacity() && c.isResting[index];
+    }
+
     // --- Primitives Helpers for Raw ByteBuf (Netty doesn't have native VarInt write) ---
 
     /**
@@ -0,0 +1,271 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
+
+/**
+ * The per-player queue of bodies waiting to be spawned on the client, handed out nearest first.
+ * <p>
+ * When a player joins or teleports into a populated area, thousands of bodies become visible at once.
+ * Instead of serializing all of them in queue order, the network thread polls this scheduler under a
+ * byte budget per cycle, so the bodies around the player arrive first and distant ones stream in
+ * over the following cycles.
+ * <p>
+ * <b>Ordering:</b> Pending bodies are kept in insertion slots. The scheduler sorts a primitive array of
+ * packed {@code (squared distance, slot)} keys and consumes it with a cursor. The order is rebuilt
+ * only when new bodies or chunks became ready or the player moved more than {@link #RESORT_DISTANCE}
+ * blocks, and at most every {@link #MIN_RESORT_INTERVAL_NANOS}, so a join costs a few sorts
+ * instead of a priority queue update per body.
+ * <p>
+ * <b>Readiness:</b> A body is only handed out once the client has received the chunk it resides in,
+ * as reported by {@link #markChunkSent}. Bodies in chunks that are not sent yet keep their slot. Once the
+ * cursor reaches the end of the order, it is rewound to the first skipped key, so a skipped body is
+ * reconsidered in the next cycle even if no sort happens, e.g. because it moved into a sent chunk.
+ * <p>
+ * <b>Threading:</b> {@link #add}, {@link #cancel}, {@link #markChunkSent} and {@link #markChunkDropped}
+ * are called by the game thread, {@link #poll} by the network thread. All of them synchronize on the
+ * scheduler and only hold the lock for a few array operations. The {@link VxShapeRegistry} of the
+ * connection is owned by the network thread, which is the only thread serializing spawns.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxSpawnScheduler {
+
+    /**
+     * The distance in blocks the player has to move before the order is rebuilt.
+     */
+    private static final double RESORT_DISTANCE = 16.0;
+
+    /**
+     * The minimum time between two sorts, bounding the sort cost while chunks stream in.
+     */
+    private static final long MIN_RESORT_INTERVAL_NANOS = 50_000_000L;
+
+    /**
+     * Pending bodies by slot. Cancelled or handed out slots are null until the next compaction.
+     */
+    private final ObjectArrayList<VxBody> pending = new ObjectArrayList<>();
+
+    /**
+     * Maps the network ID of each pending body to its slot.
+     */
+    private final Int2IntMap slotByNetworkId = new Int2IntOpenHashMap();
+
+    /**
+     * Packed chunk positions the client has received.
+     */
+    private final LongSet sentChunks = new LongOpenHashSet();
+
+    /**
+     * The per-connection shape registry. Only accessed by the network thread.
+     */
+    private final VxShapeRegistry shapes = new VxShapeRegistry();
+
+    /**
+     * Sorted {@code (squared distance, slot)} keys of the current order.
+     */
+    private long[] order = new long[64];
+
+    /**
+     * The number of valid keys in {@link #order}.
+     */
+    private int orderSize;
+
+    /**
+     * The position of the next key to consume in {@link #order}.
+     */
+    private int cursor;
+
+    /**
+     * The position of the first key skipped since the cursor was last rewound, or -1.
+     */
+    private int firstSkipped = -1;
+
+    /**
+     * Whether bodies or chunks became ready since the last sort.
+     */
+    private boolean orderStale;
+
+    /**
+     * The player position the current order was built for.
+     */
+    private double sortX, sortY, sortZ;
+
+    /**
+     * The time of the last sort.
+     */
+    private long lastSortNanos;
+
+    /**
+     * Constructs an empty scheduler for a single connection.
+     */
+    public VxSpawnScheduler() {
+        slotByNetworkId.defaultReturnValue(-1);
+    }
+
+    /**
+     * Queues a body for spawning. A body that is already pending is ignored.
+     *
+     * @param body The body to spawn.
+     */
+    public synchronized void add(VxBody body) {
+        int networkId = body.getNetworkId();
+        if (slotByNetworkId.containsKey(networkId)) return;
+        slotByNetworkId.put(networkId, pending.size());
+        pending.add(body);
+        orderStale = true;
+    }
+
+    /**
+     * Cancels the pending spawn of a body.
+     *
+     * @param networkId The network ID of the body.
+     * @return True if the spawn was still pending, false if it was never queued or has already been handed out.
+     */
+    public synchronized boolean cancel(int networkId) {
+        int slot = slotByNetworkId.remove(networkId);
+        if (slot == -1) return false;
+        pending.set(slot, null);
+        return true;
+    }
+
+    /**
+     * Marks a chunk as received by the client, making the bodies inside it eligible for spawning.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    public synchronized void markChunkSent(long chunkKey) {
+        if (sentChunks.add(chunkKey) && !slotByNetworkId.isEmpty()) {
+            orderStale = true;
+        }
+    }
+
+    /**
+     * Marks a chunk as no longer present on the client.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    public synchronized void markChunkDropped(long chunkKey) {
+        sentChunks.remove(chunkKey);
+    }
+
+    /**
+     * @return The number of bodies waiting to be spawned.
+     */
+    public synchronized int size() {
+        return slotByNetworkId.size();
+    }
+
+    /**
+     * Hands out the nearest pending body whose chunk the client has received.
+     *
+     * @param c   The server data container to read body positions and chunks from.
+     * @param x   The player's x coordinate.
+     * @param y   The player's y coordinate.
+     * @param z   The player's z coordinate.
+     * @param now The current {@link System#nanoTime()}.
+     * @return The body to spawn, or null if no pending body is ready.
+     */
+    public synchronized VxBody poll(VxServerBodyDataContainer c, double x, double y, double z, long now) {
+        if (slotByNetworkId.isEmpty()) return null;
+
+        if (now - lastSortNanos >= MIN_RESORT_INTERVAL_NANOS && (orderStale || movedSinceSort(x, y, z))) {
+            sort(c, x, y, z, now);
+        }
+
+        while (cursor < orderSize) {
+            int slot = (int) order[cursor++];
+            VxBody body = pending.get(slot);
+            if (body == null) continue;
+
+            int index = body.getDataStoreIndex();
+            if (index == -1 || index >= c.getCapacity()) {
+                // The body is being removed; its removal cancels the spawn on the game thread.
+                continue;
+            }
+            if (!sentChunks.contains(c.chunkKey[index])) {
+                if (firstSkipped == -1) firstSkipped = cursor - 1;
+                continue;
+            }
+
+            pending.set(slot, null);
+            slotByNetworkId.remove(body.getNetworkId());
+            return body;
+        }
+
+        // Nothing ready is left in this pass: start the next one at the first body that was not ready
+        if (firstSkipped != -1) {
+            cursor = firstSkipped;
+            firstSkipped = -1;
+        }
+        return null;
+    }
+
+    /**
+     * @return The shape registry of this connection. Only to be used by the network thread.
+     */
+    public VxShapeRegistry getShapes() {
+        return shapes;
+    }
+
+    /**
+     * Checks whether the player has left the area the current order was built for.
+     */
+    private boolean movedSinceSort(double x, double y, double z) {
+        double dx = x - sortX, dy = y - sortY, dz = z - sortZ;
+        return dx * dx + dy * dy + dz * dz > RESORT_DISTANCE * RESORT_DISTANCE;
+    }
+
+    /**
+     * Compacts the pending slots and rebuilds the order around the given position.
+     */
+    private void sort(VxServerBodyDataContainer c, double x, double y, double z, long now) {
+        // Compact: drop handed out and cancelled slots, re-pointing the network ID index
+        int live = 0;
+        for (int slot = 0; slot < pending.size(); slot++) {
+            VxBody body = pending.get(slot);
+            if (body == null) continue;
+            if (slot != live) {
+                pending.set(live, body);
+                slotByNetworkId.put(body.getNetworkId(), live);
+            }
+            live++;
+        }
+        pending.size(live);
+
+        if (order.length < live) {
+            order = new long[Math.max(live, order.length * 2)];
+        }
+
+        orderSize = 0;
+        for (int slot = 0; slot < live; slot++) {
+            int index = pending.get(slot).getDataStoreIndex();
+            float distSq = Float.POSITIVE_INFINITY;
+            if (index != -1 && index < c.getCapacity()) {
+                double dx = c.posX[index] - x, dy = c.posY[index] - y, dz = c.posZ[index] - z;
+                distSq = (float) (dx * dx + dy * dy + dz * dz);
+            }
+            // Non-negative floats order like their raw bits, so the packed keys sort by distance
+            order[orderSize++] = ((long) Float.floatToRawIntBits(distSq) << 32) | slot;
+        }
+        LongArrays.radixSort(order, 0, orderSize);
+
+        cursor = 0;
+        firstSkipped = -1;
+        orderStale = false;
+        sortX = x;
+        sortY = y;
+        sortZ = z;
+        lastSortNanos = now;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import io.netty.buffer.ByteBuf;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A per-connection coalescing outbox for body state records.
+ * <p>
+ * State records are only ever useful in their newest version. Instead of writing every cycle's
+ * state into a connection that cannot keep up, records are collected here and keyed by network ID:
+ * a newer record for a body simply overwrites its queued, unsent predecessor. The outbox is drained
+ * only while the Netty channel is writable, so a backed-up connection holds at most one record per
+ * tracked body (bounded memory) and receives the newest state as soon as it recovers (bounded latency).
+ * <p>
+ * Spawns and removals never pass through this class and are therefore never coalesced or dropped.
+ * Removed bodies must be {@link #discard discarded}, because network IDs are recycled.
+ * <p>
+ * Records are stored as raw bytes together with the chunk they are relative to and the timestamp of
+ * the cycle that produced them, so draining reproduces the regular section format without re-reading
+ * the data store. Records are offered by the network thread and discarded by the game thread. Both only
+ * hold the monitor briefly: {@link #drain} swaps the queued slots out under it and writes, compresses and
+ * sends them outside of it.
+ * <p>
+ * The outbox also tracks which bodies the client has seen come to rest, either through a drained
+ * "came to rest" record or a spawn sent while resting. Only for those bodies may a removal rely on
+ * the client knowing their final state, see {@link #discardSettled}.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxStateOutbox {
+
+    /**
+     * The stride of a record slot: network ID, record tag and the largest record payload.
+     */
+    private static final int SLOT_SIZE = 4 + 1 + Math.max(
+            S2CUpdateBodyStateBatchPacket.RESTING_RECORD_SIZE,
+            S2CUpdateBodyStateBatchPacket.ACTIVE_RECORD_SIZE);
+
+    /**
+     * Size of a section header (chunk key + record count).
+     */
+    private static final int SECTION_HEADER_SIZE = 8 + 4;
+
+    /**
+     * The queued records of one outbox, or the records swapped out by a running drain.
+     */
+    private static final class Slots {
+
+        /**
+         * Raw record bytes, {@link #SLOT_SIZE} bytes per slot.
+         */
+        byte[] records = new byte[64 * SLOT_SIZE];
+
+        /**
+         * The length of the record in each slot.
+         */
+        int[] recordLength = new int[64];
+
+        /**
+         * The chunk each slot's record is relative to.
+         */
+        long[] chunk = new long[64];
+
+        /**
+         * The server timestamp of the cycle each slot's record was offered in.
+         */
+        long[] timestamp = new long[64];
+
+        /**
+         * Network ID of the body in each slot, used to unlink slots on swap-removal.
+         */
+        int[] networkId = new int[64];
+
+        /**
+         * Scratch permutation used to emit slots grouped by timestamp and chunk.
+         */
+        int[] order = new int[64];
+
+        /**
+         * The number of occupied slots.
+         */
+        int size;
+
+        /**
+         * Grows all slot arrays to hold at least {@code required} slots.
+         */
+        void ensureCapacity(int required) {
+            if (required <= recordLength.length) return;
+            int capacity = Math.max(required, recordLength.length * 2);
+            records = Arrays.copyOf(records, capacity * SLOT_SIZE);
+            recordLength = Arrays.copyOf(recordLength, capacity);
+            chunk = Arrays.copyOf(chunk, capacity);
+            timestamp = Arrays.copyOf(timestamp, capacity);
+            networkId = Arrays.copyOf(networkId, capacity);
+            order = new int[capacity];
+        }
+    }
+
+    /**
+     * Maps a network ID to the slot holding its queued record.
+     */
+    private final Int2IntMap slotByNetworkId = new Int2IntOpenHashMap();
+
+    /**
+     * The queued records, guarded by the monitor.
+     */
+    private Slots queued = new Slots();
+
+    /**
+     * The records of the running drain. Only touched by the draining thread while it does not hold the monitor.
+     */
+    private Slots draining = new Slots();
+
+    /**
+     * Network IDs whose latest record or spawn sent to the client marked them as resting.
+     */
+    private final IntSet restDelivered = new IntOpenHashSet();
+
+    /**
+     * Network IDs whose rest record or resting spawn is being sent. They move to {@link #restDelivered}
+     * once the send completed, unless a newer record or a discard came in between.
+     */
+    private final IntSet restSending = new IntOpenHashSet();
+
+    /**
+     * Constructs an empty outbox for a single connection.
+     */
+    public VxStateOutbox() {
+        slotByNetworkId.defaultReturnValue(-1);
+    }
+
+    /**
+     * Queues all records of a serialized state section, replacing any unsent record of the same body.
+     * The reader index of the section buffer is not modified.
+     *
+     * @param section   A section as written by {@link VxPacketFactory#writeStateSection}.
+     * @param timestamp The server timestamp of the section.
+     */
+    public synchronized void offer(ByteBuf section, long timestamp) {
+        Slots q = queued;
+        int pos = section.readerIndex();
+        long chunkKey = section.getLong(pos);
+        int count = section.getInt(pos + 8);
+        pos += SECTION_HEADER_SIZE;
+
+        for (int i = 0; i < count; i++) {
+            int networkId = section.getInt(pos);
+            byte tag = section.getByte(pos + 4);
+            int length = 5 + (tag == S2CUpdateBodyStateBatchPacket.RECORD_RESTING
+                    ? S2CUpdateBodyStateBatchPacket.RESTING_RECORD_SIZE
+                    : S2CUpdateBodyStateBatchPacket.ACTIVE_RECORD_SIZE);
+
+            int slot = slotByNetworkId.get(networkId);
+            if (slot == -1) {
+                q.ensureCapacity(q.size + 1);
+                slot = q.size++;
+                slotByNetworkId.put(networkId, slot);
+                q.networkId[slot] = networkId;
+            }
+
+            // A newer record supersedes whatever the client was told before
+            restDelivered.remove(networkId);
+            restSending.remove(networkId);
+
+            section.getBytes(pos, q.records, slot * SLOT_SIZE, length);
+            q.recordLength[slot] = length;
+            q.chunk[slot] = chunkKey;
+            q.timestamp[slot] = timestamp;
+            pos += length;
+        }
+    }
+
+    /**
+     * Drops the queued record of a body, if any. Must be called when the body is removed
+     * from the client, as its network ID may be reused by another body.
+     * <p>
+     * A record that a running drain already took is not affected; it reaches the client before
+     * any removal queued afterwards.
+     *
+     * @param networkId The network ID of the removed body.
+     * @return True if a record was queued, i.e. the client has not seen the body's latest state.
+     */
+    public synchronized boolean discard(int networkId) {
+        restDelivered.remove(networkId);
+        restSending.remove(networkId);
+        int slot = slotByNetworkId.remove(networkId);
+        if (slot == -1) return false;
+
+        Slots q = queued;
+        int last = --q.size;
+        if (slot != last) {
+            // Swap-remove: move the last slot into the freed one
+            System.arraycopy(q.records, last * SLOT_SIZE, q.records, slot * SLOT_SIZE, q.recordLength[last]);
+            q.recordLength[slot] = q.recordLength[last];
+            q.chunk[slot] = q.chunk[last];
+            q.timestamp[slot] = q.timestamp[last];
+            q.networkId[slot] = q.networkId[last];
+            slotByNetworkId.put(q.networkId[slot], slot);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the queued record of a body like {@link #discard}, and reports whether the client has its final state.
+     *
+     * @param networkId The network ID of the removed body.
+     * @return True if the client was sent a rest record or resting spawn of the body and no newer record
+     * since, i.e. it holds the body at rest.
+     */
+    public synchronized boolean discardSettled(int networkId) {
+        boolean delivered = restDelivered.contains(networkId);
+        return !discard(networkId) && delivered;
+    }
+
+    /**
+     * Notes that a spawn announcing the body as resting is about to be sent.
+     *
+     * @param networkId The network ID of the body.
+     */
+    public synchronized void beginRestDelivery(int networkId) {
+        restSending.add(networkId);
+    }
+
+    /**
+     * Completes the deliveries begun with {@link #beginRestDelivery}. Bodies discarded or updated in the meantime
+     * are left out.
+     *
+     * @param networkIds The network IDs of the bodies.
+     * @param sent       Whether the send succeeded.
+     */
+    public synchronized void completeRestDelivery(IntList networkIds, boolean sent) {
+        for (int i = 0; i < networkIds.size(); i++) {
+            int networkId = networkIds.getInt(i);
+            if (restSending.remove(networkId) && sent) {
+                restDelivered.add(networkId);
+            }
+        }
+    }
+
+    /**
+     * @return True if no records are queued.
+     */
+    public synchronized boolean isEmpty() {
+        return queued.size == 0;
+    }
+
+    /**
+     * Writes all queued records as state payloads of at most {@code maxBytes} and empties the outbox.
+     * <p>
+     * The queued records are swapped out under the monitor and written without holding it, so
+     * offers and discards never wait for compression or the connection. Records are grouped into one
+     * section per chunk, and records of different cycles go into separate payloads, each carrying the
+     * timestamp of its cycle. Whenever a payload would exceed the limit or the cycle changes, the buffer
+     * is handed to the sink, which must consume it before returning; the buffer is then cleared and reused.
+     * <p>
+     * Must not be called by two threads at the same time.
+     *
+     * @param out      The reusable payload buffer.
+     * @param maxBytes The maximum size of a single payload.
+     * @param sink     Consumer that compresses and sends a complete payload.
+     */
+    public void drain(ByteBuf out, int maxBytes, Consumer<ByteBuf> sink) {
+        Slots d;
+        synchronized (this) {
+            if (queued.size == 0) return;
+            d = queued;
+            queued = draining;
+            queued.size = 0;
+            draining = d;
+            slotByNetworkId.clear();
+            for (int slot = 0; slot < d.size; slot++) {
+                if (isRestRecord(d, slot)) restSending.add(d.networkId[slot]);
+            }
+        }
+
+        boolean sent = false;
+        try {
+            int size = d.size;
+            int[] order = d.order;
+            long[] chunk = d.chunk;
+            long[] timestamp = d.timestamp;
+            for (int i = 0; i < size; i++) order[i] = i;
+            IntArrays.quickSort(order, 0, size, (a, b) -> timestamp[a] != timestamp[b]
+                    ? Long.compare(timestamp[a], timestamp[b])
+                    : Long.compare(chunk[a], chunk[b]));
+
+            int countIndex = -1;
+            int count = 0;
+            long currentChunk = 0;
+            long currentTimestamp = 0;
+
+            for (int i = 0; i < size; i++) {
+                int slot = order[i];
+                int length = d.recordLength[slot];
+                boolean newPayload = countIndex == -1 || timestamp[slot] != currentTimestamp;
+                boolean newSection = newPayload || chunk[slot] != currentChunk;
+                int required = length + (newSection ? SECTION_HEADER_SIZE : 0);
+
+                if (countIndex != -1 && (newPayload || out.readableBytes() + required > maxBytes)) {
+                    out.setInt(countIndex, count);
+                    sink.accept(out);
+                    countIndex = -1;
+                    newPayload = true;
+                    newSection = true;
+                }
+
+                if (newPayload) {
+                    out.clear();
+                    currentTimestamp = timestamp[slot];
+                    VxPacketFactory.writeStateHeader(out, currentTimestamp);
+                }
+
+                if (newSection) {
+                    if (countIndex != -1) {
+                        out.setInt(countIndex, count);
+                    }
+                    currentChunk = chunk[slot];
+                    out.writeLong(currentChunk);
+                    countIndex = out.writerIndex();
+                    out.writeInt(0);
+                    count = 0;
+                }
+
+                out.writeBytes(d.records, slot * SLOT_SIZE, length);
+                count++;
+            }
+
+            out.setInt(countIndex, count);
+            sink.accept(out);
+            sent = true;
+        } finally {
+            synchronized (this) {
+                for (int slot = 0; slot < d.size; slot++) {
+                    if (isRestRecord(d, slot) && restSending.remove(d.networkId[slot]) && sent) {
+                        restDelivered.add(d.networkId[slot]);
+                    }
+                }
+            }
+            d.size = 0;
+        }
+    }
+
+    private static boolean isRestRecord(Slots slots, int slot) {
+        return slots.records[slot * SLOT_SIZE + 4] == S2CUpdateBodyStateBatchPacket.RECORD_RESTING;
+    }
+}
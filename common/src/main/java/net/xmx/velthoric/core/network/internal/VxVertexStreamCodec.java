@@ -0,0 +1,364 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.internal;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Encodes soft body vertex streams as quantized keyframes followed by predictive deltas.
+ * <p>
+ * <b>Keyframes:</b> Every {@link #KEYFRAME_INTERVAL} frames (or whenever the vertex count changes), the
+ * vertices are quantized to 16 bits per axis relative to the bounding box of the soft body. The box origin
+ * and the per-axis quantization step are sent alongside, so the reconstruction error is bounded by half a
+ * step, i.e. {@code extent / 131070} per axis (but never coarser than {@link #MIN_STEP} / 2).
+ * <p>
+ * <b>Deltas:</b> Between keyframes, vertices are quantized on the same grid and only the residual against a
+ * linear prediction ({@code 2 * q[t-1] - q[t-2]}) is written as a ZigZag VarInt. Smoothly moving cloth and
+ * ropes mostly produce single-byte residuals. Because server and client run the identical prediction on the
+ * identical quantized history, there is no drift between keyframes.
+ * <p>
+ * <b>Bulk Writes:</b> Each record is assembled in a thread-local scratch array and copied into the
+ * destination buffer with a single {@code writeBytes} call instead of one call per float.
+ * <p>
+ * Vertex packets are broadcast per chunk, so not every receiver has seen every frame. Each record carries a
+ * wrapping sequence number; clients drop deltas that do not continue their own history and resume with the
+ * next keyframe.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxVertexStreamCodec {
+
+    /**
+     * Record kind for a body without vertex data.
+     */
+    public static final byte RECORD_NONE = 0;
+
+    /**
+     * Record kind for a quantized keyframe.
+     */
+    public static final byte RECORD_KEYFRAME = 1;
+
+    /**
+     * Record kind for a predictive delta frame.
+     */
+    public static final byte RECORD_DELTA = 2;
+
+    /**
+     * The maximum number of delta frames between two keyframes.
+     * Also bounds how long a newly watching client waits before it can display deformations.
+     */
+    public static final int KEYFRAME_INTERVAL = 30;
+
+    /**
+     * The number of quantization levels per axis in a keyframe.
+     */
+    private static final int QUANT_LEVELS = 0xFFFF;
+
+    /**
+     * The finest quantization step (in blocks) used for degenerate axes, e.g. the height of a flat cloth.
+     */
+    private static final float MIN_STEP = 1.0e-4f;
+
+    /**
+     * Reusable scratch space for assembling records before the bulk write.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[16 * 1024]);
+
+    private VxVertexStreamCodec() {
+    }
+
+    /**
+     * The quantized history of a single vertex stream.
+     * <p>
+     * The server keeps one instance per soft body to produce deltas, and each client mirrors it
+     * to reconstruct them. Both sides only ever store the quantized values, never the raw floats.
+     */
+    public static final class State {
+        /**
+         * The sequence number of the last frame written or accepted (wraps at 256).
+         */
+        private int sequence;
+        /**
+         * The number of delta frames since the last keyframe.
+         */
+        private int framesSinceKeyframe;
+        /**
+         * The keyframe grid origin per axis.
+         */
+        private float minX, minY, minZ;
+        /**
+         * The keyframe grid step per axis.
+         */
+        private float stepX, stepY, stepZ;
+        /**
+         * Quantized vertices of the latest frame, or null if no valid history exists.
+         */
+        private int[] current;
+        /**
+         * Quantized vertices of the frame before {@link #current}.
+         */
+        private int[] previous;
+        /**
+         * Whether {@link #previous} holds a valid frame for linear prediction.
+         */
+        private boolean hasPrevious;
+
+        /**
+         * Drops the history, so the next frame must be a keyframe.
+         */
+        private void invalidate() {
+            this.current = null;
+            this.hasPrevious = false;
+        }
+    }
+
+    /**
+     * Writes the next frame of a vertex stream, choosing between a keyframe and a delta.
+     *
+     * @param out      The destination buffer.
+     * @param vertices The flattened vertex positions (x, y, z), or null.
+     * @param state    The server-side history of this stream. Updated in place.
+     */
+    public static void write(ByteBuf out, float[] vertices, State state) {
+        if (vertices == null || vertices.length < 3) {
+            out.writeByte(RECORD_NONE);
+            state.invalidate();
+            return;
+        }
+
+        int n = vertices.length - vertices.length % 3;
+        boolean keyframe = state.current == null
+                || state.current.length != n
+                || state.framesSinceKeyframe >= KEYFRAME_INTERVAL;
+
+        state.sequence = (state.sequence + 1) & 0xFF;
+        byte[] scratch = scratch(n * (keyframe ? 2 : 5));
+        int len = keyframe ? encodeKeyframe(vertices, n, state, scratch) : encodeDelta(vertices, n, state, scratch);
+
+        out.writeByte(keyframe ? RECORD_KEYFRAME : RECORD_DELTA);
+        out.writeByte(state.sequence);
+        writeVarInt(out, n);
+        if (keyframe) {
+            out.writeFloat(state.minX);
+            out.writeFloat(state.minY);
+            out.writeFloat(state.minZ);
+            out.writeFloat(state.stepX);
+            out.writeFloat(state.stepY);
+            out.writeFloat(state.stepZ);
+        }
+        writeVarInt(out, len);
+        out.writeBytes(scratch, 0, len);
+    }
+
+    /**
+     * Reads one record and reconstructs the vertices into a reusable array.
+     * <p>
+     * Deltas that do not continue the local history are skipped, and the history is dropped until the
+     * next keyframe arrives.
+     *
+     * @param in     The source buffer, positioned at the record kind.
+     * @param state  The client-side history of this stream, or null to skip the record.
+     * @param target An array that may be reused for the result, or null.
+     * @return The reconstructed vertices ({@code target} if it had the right length), or null if the
+     * record carried no usable data.
+     */
+    public static float[] read(ByteBuf in, State state, float[] target) {
+        byte kind = in.readByte();
+        if (kind == RECORD_NONE) {
+            if (state != null) state.invalidate();
+            return null;
+        }
+
+        int sequence = in.readUnsignedByte();
+        int n = readVarInt(in);
+        float minX = 0, minY = 0, minZ = 0, stepX = 0, stepY = 0, stepZ = 0;
+        if (kind == RECORD_KEYFRAME) {
+            minX = in.readFloat();
+            minY = in.readFloat();
+            minZ = in.readFloat();
+            stepX = in.readFloat();
+            stepY = in.readFloat();
+            stepZ = in.readFloat();
+        }
+        int len = readVarInt(in);
+
+        if (state == null) {
+            in.skipBytes(len);
+            return null;
+        }
+
+        if (kind == RECORD_KEYFRAME) {
+            state.minX = minX;
+            state.minY = minY;
+            state.minZ = minZ;
+            state.stepX = stepX;
+            state.stepY = stepY;
+            state.stepZ = stepZ;
+            state.current = ensureLength(state.current, n);
+            state.hasPrevious = false;
+            int[] q = state.current;
+            for (int j = 0; j < n; j++) {
+                q[j] = in.readUnsignedShort();
+            }
+        } else {
+            if (state.current == null || state.current.length != n || sequence != ((state.sequence + 1) & 0xFF)) {
+                // We missed a frame (e.g. started watching the chunk mid-stream). Wait for the next keyframe.
+                in.skipBytes(len);
+                state.invalidate();
+                return null;
+            }
+            int[] cur = state.current;
+            int[] prev = state.previous = ensureLength(state.previous, n);
+            boolean linear = state.hasPrevious;
+            for (int j = 0; j < n; j++) {
+                int predicted = linear ? 2 * cur[j] - prev[j] : cur[j];
+                prev[j] = predicted + zigZagDecode(readVarInt(in));
+            }
+            // The freshly decoded frame becomes current, the old current becomes the prediction history.
+            state.previous = cur;
+            state.current = prev;
+            state.hasPrevious = true;
+        }
+        state.sequence = sequence;
+
+        float[] out = target != null && target.length == n ? target : new float[n];
+        dequantize(state, out);
+        return out;
+    }
+
+    /**
+     * Quantizes a keyframe on a fresh grid spanning the bounding box of the vertices.
+     *
+     * @return The number of bytes written to {@code scratch}.
+     */
+    private static int encodeKeyframe(float[] v, int n, State state, byte[] scratch) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < n; j += 3) {
+            minX = Math.min(minX, v[j]);
+            maxX = Math.max(maxX, v[j]);
+            minY = Math.min(minY, v[j + 1]);
+            maxY = Math.max(maxY, v[j + 1]);
+            minZ = Math.min(minZ, v[j + 2]);
+            maxZ = Math.max(maxZ, v[j + 2]);
+        }
+
+        state.minX = minX;
+        state.minY = minY;
+        state.minZ = minZ;
+        state.stepX = Math.max((maxX - minX) / QUANT_LEVELS, MIN_STEP);
+        state.stepY = Math.max((maxY - minY) / QUANT_LEVELS, MIN_STEP);
+        state.stepZ = Math.max((maxZ - minZ) / QUANT_LEVELS, MIN_STEP);
+        state.current = ensureLength(state.current, n);
+        state.hasPrevious = false;
+        state.framesSinceKeyframe = 0;
+
+        int[] q = state.current;
+        int pos = 0;
+        for (int j = 0; j < n; j++) {
+            int value = Math.min(QUANT_LEVELS, Math.max(0, quantize(v[j], state, j % 3)));
+            q[j] = value;
+            scratch[pos++] = (byte) (value >>> 8);
+            scratch[pos++] = (byte) value;
+        }
+        return pos;
+    }
+
+    /**
+     * Quantizes a frame on the current keyframe grid and writes the prediction residuals.
+     *
+     * @return The number of bytes written to {@code scratch}.
+     */
+    private static int encodeDelta(float[] v, int n, State state, byte[] scratch) {
+        int[] cur = state.current;
+        int[] prev = state.previous = ensureLength(state.previous, n);
+        boolean linear = state.hasPrevious;
+
+        int pos = 0;
+        for (int j = 0; j < n; j++) {
+            int value = quantize(v[j], state, j % 3);
+            int predicted = linear ? 2 * cur[j] - prev[j] : cur[j];
+            prev[j] = value;
+
+            int residual = zigZagEncode(value - predicted);
+            while ((residual & -128) != 0) {
+                scratch[pos++] = (byte) (residual & 127 | 128);
+                residual >>>= 7;
+            }
+            scratch[pos++] = (byte) residual;
+        }
+
+        state.previous = cur;
+        state.current = prev;
+        state.hasPrevious = true;
+        state.framesSinceKeyframe++;
+        return pos;
+    }
+
+    /**
+     * Maps a coordinate onto the keyframe grid. Values outside the keyframe box are allowed
+     * and simply produce out-of-range grid indices.
+     */
+    private static int quantize(float value, State state, int axis) {
+        float min = axis == 0 ? state.minX : axis == 1 ? state.minY : state.minZ;
+        float step = axis == 0 ? state.stepX : axis == 1 ? state.stepY : state.stepZ;
+        // Clamp far below the int range so that residual arithmetic cannot overflow.
+        double q = Math.rint((value - min) / (double) step);
+        return (int) Math.max(-(1 << 29), Math.min(1 << 29, q));
+    }
+
+    /**
+     * Reconstructs the float vertices from the quantized history.
+     */
+    private static void dequantize(State state, float[] out) {
+        int[] q = state.current;
+        for (int j = 0; j < out.length; j += 3) {
+            out[j] = state.minX + q[j] * state.stepX;
+            out[j + 1] = state.minY + q[j + 1] * state.stepY;
+            out[j + 2] = state.minZ + q[j + 2] * state.stepZ;
+        }
+    }
+
+    private static int[] ensureLength(int[] array, int length) {
+        return array != null && array.length == length ? array : new int[length];
+    }
+
+    private static byte[] scratch(int required) {
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < required) {
+            scratch = new byte[Math.max(required, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
+    }
+
+    private static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & -128) != 0) {
+            buf.writeByte(value & 127 | 128);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.readByte();
+            value |= (b & 127) << shift;
+            shift += 7;
+        } while ((b & 128) != 0 && shift < 35);
+        return value;
+    }
+}
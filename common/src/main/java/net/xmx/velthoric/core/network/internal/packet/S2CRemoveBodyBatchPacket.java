@@ -4,103 +4,72 @@
  */
 package net.xmx.velthoric.core.network.internal.packet;
 
-import com.github.luben.zstd.Zstd;
 import dev.architectury.networking.NetworkManager;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.xmx.velthoric.core.body.client.VxClientBodyManager;
+import net.xmx.velthoric.core.network.internal.VxRemovalSet;
 import net.xmx.velthoric.network.IVxNetPacket;
 import net.xmx.velthoric.network.VxByteBuf;
-import net.xmx.velthoric.core.body.client.VxClientBodyManager;
-
-import java.nio.ByteBuffer;
 
 /**
  * A network packet for batched removal of physics bodies.
  * <p>
- * This packet uses Zstd compression on the network ID list to minimize bandwidth
- * during mass-deletion events (e.g., chunk unloading or large-scale physics cleanup).
+ * Network IDs are written with {@link VxRemovalSet}, which picks delta-encoded runs or index bitsets per
+ * window of the dense ID space, so unloading a busy area costs well under a byte per body.
+ * <p>
+ * In addition, whole chunks can be removed with a single key: the client drops every resting body
+ * it holds in those chunks in one pass. The server only uses this shortcut when the client's view of the
+ * chunk is known to match its own (see {@code VxNetworkDispatcher#untrackBodiesInChunkForPlayer}).
  *
  * @author xI-Mx-Ix
  */
 public class S2CRemoveBodyBatchPacket implements IVxNetPacket {
 
     /**
-     * The list of primitive network IDs to be removed.
+     * The network IDs to be removed. Sorted in place when encoded.
      */
-    private final IntList networkIds;
+    private final IntArrayList networkIds;
+
+    /**
+     * Packed positions of chunks whose resting bodies are removed as a whole.
+     */
+    private final LongArrayList chunkKeys;
 
     /**
      * @param networkIds List of network IDs.
+     * @param chunkKeys  List of chunks to clear.
      */
-    public S2CRemoveBodyBatchPacket(IntList networkIds) {
+    public S2CRemoveBodyBatchPacket(IntArrayList networkIds, LongArrayList chunkKeys) {
         this.networkIds = networkIds;
+        this.chunkKeys = chunkKeys;
     }
 
     /**
-     * Encodes the IDs into a compressed binary blob using direct buffers.
+     * Encodes the chunk shortcuts followed by the compact ID set.
      */
     @Override
     public void encode(VxByteBuf buf) {
-        // Compress IDs on the fly into the VxByteBuf.
-        // Step 1: Write IDs to a temporary heap buffer (fastest for simple ints) or direct.
-        // Using heap buffer here because encoding logic for var-int logic is simpler.
-        ByteBuf raw = Unpooled.directBuffer(this.networkIds.size() * 4);
-        try {
-            for (int id : this.networkIds) raw.writeInt(id);
-
-            // Step 2: Prepare compression
-            ByteBuffer src = raw.nioBuffer();
-            int max = (int) Zstd.compressBound(raw.readableBytes());
-            ByteBuf comp = Unpooled.directBuffer(max); // Temporary heap buffer for output
-
-            try {
-                ByteBuffer dst = comp.nioBuffer(0, max);
-                // Level 1 is sufficient for integer lists
-                long len = Zstd.compressDirectByteBuffer(dst, 0, max, src, 0, raw.readableBytes(), 1);
-                comp.writerIndex((int) len);
-
-                buf.writeVarInt(comp.readableBytes());
-                buf.writeBytes(comp);
-            } finally {
-                comp.release();
-            }
-        } finally {
-            raw.release();
+        buf.writeVarInt(this.chunkKeys.size());
+        for (int i = 0; i < this.chunkKeys.size(); i++) {
+            buf.writeLong(this.chunkKeys.getLong(i));
         }
+        VxRemovalSet.write(buf, this.networkIds);
     }
 
     /**
-     * Decodes and decompresses the removal list.
+     * Decodes the removal batch.
      */
     public static S2CRemoveBodyBatchPacket decode(VxByteBuf buf) {
-        int len = buf.readVarInt();
-        ByteBuf comp = buf.readBytes(len);
-        try {
-            ByteBuffer src = comp.nioBuffer();
-            long origSize = Zstd.decompressedSize(src);
-
-            // Check valid size
-            if (Zstd.isError(origSize)) throw new RuntimeException("Zstd error: " + Zstd.getErrorName(origSize));
-
-            ByteBuf raw = Unpooled.directBuffer((int) origSize);
-            try {
-                ByteBuffer dst = raw.nioBuffer(0, (int) origSize);
-                Zstd.decompressDirectByteBuffer(dst, 0, (int) origSize, src, 0, src.remaining());
-                raw.writerIndex((int) origSize);
-
-                IntList ids = new IntArrayList(raw.readableBytes() / 4);
-                while (raw.isReadable()) {
-                    ids.add(raw.readInt());
-                }
-                return new S2CRemoveBodyBatchPacket(ids);
-            } finally {
-                raw.release();
-            }
-        } finally {
-            comp.release();
+        int chunkCount = buf.readVarInt();
+        LongArrayList chunks = new LongArrayList(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(buf.readLong());
         }
+        IntArrayList ids = new IntArrayList();
+        VxRemovalSet.read(buf, ids::add);
+        return new S2CRemoveBodyBatchPacket(ids, chunks);
     }
 
     /**
@@ -110,7 +79,12 @@ public class S2CRemoveBodyBatchPacket implements IVxNetPacket {
     public void handle(NetworkManager.PacketContext context) {
         context.queue(() -> {
             VxClientBodyManager manager = VxClientBodyManager.getInstance();
-            for (int id : this.networkIds) manager.removeBody(id);
+            if (!this.chunkKeys.isEmpty()) {
+                manager.removeRestingBodiesInChunks(new LongOpenHashSet(this.chunkKeys));
+            }
+            for (int i = 0; i < this.networkIds.size(); i++) {
+                manager.removeBody(this.networkIds.getInt(i));
+            }
         });
     }
-}
\ No newline at end of file
+}
@@ -7,13 +7,16 @@ package net.xmx.velthoric.core.network.internal.packet;
 import com.github.luben.zstd.Zstd;
 import dev.architectury.networking.NetworkManager;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import net.minecraft.core.SectionPos;
 import net.minecraft.world.level.ChunkPos;
 import net.xmx.velthoric.network.IVxNetPacket;
 import net.xmx.velthoric.network.VxByteBuf;
 import net.xmx.velthoric.core.body.client.VxClientBodyDataContainer;
 import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
 import net.xmx.velthoric.core.body.client.VxClientBodyManager;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
 
@@ -29,17 +32,53 @@ import java.nio.ByteBuffer;
  * <p>
  * <b>Adaptive Delay:</b> The packet handler feeds arrival timestamps to the interpolator
  * to enable dynamic delay calculation based on actual network conditions.
+ * <p>
+ * <b>Record Types:</b> Each body entry starts with a tag byte. {@link #RECORD_ACTIVE} entries carry
+ * the regular chunk-relative state, {@link #RECORD_RESTING} entries announce that a body fell asleep
+ * and carry its exact final transform. No further updates follow for a resting body until it wakes.
+ * <p>
+ * <b>Sections:</b> The decompressed payload is a timestamp followed by one or more chunk sections
+ * (chunk key, record count, records). The server may aggregate the sections of many chunks into a
+ * single packet per player, see {@link net.xmx.velthoric.core.network.internal.VxNetworkDispatcher}.
  *
  * @author xI-Mx-Ix
  */
 public class S2CUpdateBodyStateBatchPacket implements IVxNetPacket {
 
+    /**
+     * Record tag for a body that came to rest. Followed by the exact final transform
+     * (absolute double position, float rotation) and no velocity.
+     */
+    public static final byte RECORD_RESTING = 0;
+
+    /**
+     * Record tag for a simulated body. Followed by the chunk-relative float position,
+     * the rotation and the linear velocity.
+     */
+    public static final byte RECORD_ACTIVE = 1;
+
+    /**
+     * Payload size of a {@link #RECORD_RESTING} record after its tag: 3 doubles + 4 floats.
+     */
+    public static final int RESTING_RECORD_SIZE = 3 * 8 + 4 * 4;
+
+    /**
+     * Payload size of a {@link #RECORD_ACTIVE} record after its tag: 10 floats.
+     */
+    public static final int ACTIVE_RECORD_SIZE = 10 * 4;
+
     /**
      * ThreadLocal buffer for decompression on the client to avoid repeated allocations.
      * Sized at 512KB to handle dense chunk updates.
      */
     private static final ThreadLocal<ByteBuffer> DECOMPRESSION_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(512 * 1024));
 
+    /**
+     * ThreadLocal ByteBuf view over {@link #DECOMPRESSION_BUFFER}, recreated only when that buffer grows.
+     * Avoids allocating a new wrapper for every packet.
+     */
+    private static final ThreadLocal<ByteBuf> DECOMPRESSION_VIEW = ThreadLocal.withInitial(() -> Unpooled.wrappedBuffer(DECOMPRESSION_BUFFER.get().duplicate().clear()));
+
     /**
      * The compressed binary payload. On Server, this is a Pooled Direct Buffer. On Client, it's a slice of the network buffer.
      */
@@ -73,16 +112,18 @@ public class S2CUpdateBodyStateBatchPacket implements IVxNetPacket {
 
     /**
      * Decodes the packet from the network buffer.
-     * Does NOT allocate a byte array, but returns a retained slice/copy in a ByteBuf.
+     * Does NOT allocate a byte array, but copies the payload into a pooled direct ByteBuf.
      *
      * @param buf The input buffer.
      * @return A populated packet instance.
      */
     public static S2CUpdateBodyStateBatchPacket decode(VxByteBuf buf) {
         int length = buf.readVarInt();
-        // Read into a new ByteBuf. This makes a copy from the underlying buffer,
-        // which is unavoidable with FriendlyByteBuf if we want the data to survive the handler scope.
-        ByteBuf copied = buf.readBytes(length);
+        // Copy into a pooled direct buffer. A copy is unavoidable if the data must survive the handler
+        // scope, but pooling it keeps the decode path free of garbage. Direct memory is also what the
+        // Zstd direct API requires. Released in handle().
+        ByteBuf copied = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+        buf.readBytes(copied, length);
         return new S2CUpdateBodyStateBatchPacket(copied);
     }
 
@@ -90,6 +131,9 @@ public class S2CUpdateBodyStateBatchPacket implements IVxNetPacket {
      * Processes the decoded packet on the client's main thread and updates the data store.
      * Uses Zero-Copy decompression directly into the DataStore arrays.
      * <p>
+     * The decode loop is allocation-free per body: network IDs resolve through the primitive
+     * index of {@link VxClientBodyDataStore}, and values are written straight into the columns.
+     * <p>
      * Additionally feeds the packet arrival timestamp to the interpolator's
      * adaptive delay system for dynamic delay calculation.
      *
@@ -102,48 +146,14 @@ public class S2CUpdateBodyStateBatchPacket implements IVxNetPacket {
                 VxClientBodyManager manager = VxClientBodyManager.getInstance();
                 VxClientBodyDataStore store = manager.getStore();
 
-                // 1. Prepare Decompression
-                // Obtain NIO buffer from Netty ByteBuf without copying
-                ByteBuffer compressedNio = this.data.nioBuffer();
-
-                // Determine required size for the output buffer
-                long uncompressedSize = Zstd.decompressedSize(compressedNio);
-
-                if (Zstd.isError(uncompressedSize)) {
+                // 1. Decompress (Direct Memory -> Direct Memory) into the reusable buffer of this thread
+                ByteBuf db = decompress(this.data);
+                if (db == null) {
                     // Corruption or empty payload due to broadcast issue
                     return;
                 }
 
-                // Acquire and resize thread-local buffer if necessary
-                ByteBuffer targetBuf = DECOMPRESSION_BUFFER.get();
-                if (targetBuf.capacity() < uncompressedSize) {
-                    targetBuf = ByteBuffer.allocateDirect((int) uncompressedSize);
-                    DECOMPRESSION_BUFFER.set(targetBuf);
-                }
-
-                // Reset buffer state before writing
-                targetBuf.clear();
-
-                // 2. Decompress (Direct Memory -> Direct Memory)
-                // Writes the raw physics data directly into the reusable buffer
-                Zstd.decompressDirectByteBuffer(targetBuf, 0, (int) uncompressedSize, compressedNio, 0, compressedNio.remaining());
-
-                // Set the limit to the actual data size so the wrapped ByteBuf behaves correctly
-                targetBuf.position(0);
-                targetBuf.limit((int) uncompressedSize);
-
-                // 3. Read directly from the decompressed buffer
-                // Wrapping it in a ByteBuf allows easy reading of primitives without manual offsets
-                ByteBuf db = Unpooled.wrappedBuffer(targetBuf);
-
-                int count = db.readInt();
                 long timestamp = db.readLong();
-                long chunkPosLong = db.readLong();
-
-                ChunkPos cp = new ChunkPos(chunkPosLong);
-                double baseX = cp.getMinBlockX();
-                double baseY = context.getPlayer().level().getMinBuildHeight();
-                double baseZ = cp.getMinBlockZ();
 
                 // Feed clock sync sample
                 long clientNow = manager.getClock().getGameTimeNanos();
@@ -152,70 +162,8 @@ public class S2CUpdateBodyStateBatchPacket implements IVxNetPacket {
                 // Feed adaptive delay system with packet arrival time
                 manager.getInterpolator().onPacketReceived(clientNow);
 
-                // 4. Update Data Store (Zero Object Allocation)
-                VxClientBodyDataContainer c = store.clientCurrent();
-                for (int i = 0; i < count; i++) {
-                    int netId = db.readInt();
-                    Integer idx = store.getIndexForNetworkId(netId);
-
-                    // If the body is not tracked locally (e.g., desync or unloaded), skip the data stream
-                    // to maintain correct buffer offsets for subsequent bodies.
-                    if (idx == null) {
-                        db.skipBytes(12); // Position (3 floats * 4 bytes)
-                        db.skipBytes(16); // Rotation (4 floats * 4 bytes)
-
-                        boolean isActive = db.readBoolean(); // Must read the activity flag
-                        if (isActive) {
-                            db.skipBytes(12); // Velocity (3 floats * 4 bytes)
-                        }
-                        continue;
-                    }
-
-                    int index = idx; // Unbox index once
-
-                    // Bounds check for race condition during container resize
-                    if (index >= c.getCapacity()) {
-                        db.skipBytes(12); // Position
-                        db.skipBytes(16); // Rotation
-                        if (db.readBoolean()) { // isActive
-                            db.skipBytes(12); // Velocity
-                        }
-                        continue;
-                    }
-
-                    // Cycle history states (current -> old)
-                    c.state0_timestamp[index] = c.state1_timestamp[index];
-                    c.state0_posX[index] = c.state1_posX[index];
-                    c.state0_posY[index] = c.state1_posY[index];
-                    c.state0_posZ[index] = c.state1_posZ[index];
-                    c.state0_rotX[index] = c.state1_rotX[index];
-                    c.state0_rotY[index] = c.state1_rotY[index];
-                    c.state0_rotZ[index] = c.state1_rotZ[index];
-                    c.state0_rotW[index] = c.state1_rotW[index];
-                    c.state0_isActive[index] = c.state1_isActive[index];
-
-                    // Read New State into state1
-                    c.state1_timestamp[index] = timestamp;
-                    c.state1_posX[index] = baseX + db.readFloat();
-                    c.state1_posY[index] = baseY + db.readFloat();
-                    c.state1_posZ[index] = baseZ + db.readFloat();
-                    c.state1_rotX[index] = db.readFloat();
-                    c.state1_rotY[index] = db.readFloat();
-                    c.state1_rotZ[index] = db.readFloat();
-                    c.state1_rotW[index] = db.readFloat();
-
-                    boolean active = db.readBoolean();
-                    c.state1_isActive[index] = active;
-
-                    if (active) {
-                        c.state1_velX[index] = db.readFloat();
-                        c.state1_velY[index] = db.readFloat();
-                        c.state1_velZ[index] = db.readFloat();
-                    }
-
-                    // Update culling position for renderer frustum checks
-                    c.lastKnownPosition[index].set(c.state1_posX[index], c.state1_posY[index], c.state1_posZ[index]);
-                }
+                // 2. Update Data Store (Zero Object Allocation), one chunk section at a time
+                applySections(db, store, timestamp, context.getPlayer().level().getMinBuildHeight());
 
             } finally {
                 // Always release the pooled network buffer on client side
@@ -224,6 +172,178 @@ public class S2CUpdateBodyStateBatchPacket implements IVxNetPacket {
         });
     }
 
+    /**
+     * Decompresses a state payload into the calling thread's reusable decompression buffer.
+     * <p>
+     * The payload is read straight from the direct buffer and written into direct memory, and the returned
+     * view is reused, so no garbage is produced unless the payload outgrows the buffer.
+     *
+     * @param data The compressed payload.
+     * @return A view of the decompressed payload, valid until the next call on this thread, or null if the
+     * payload is corrupt.
+     */
+    @Nullable
+    public static ByteBuf decompress(ByteBuf data) {
+        // Obtain NIO buffer from Netty ByteBuf without copying
+        ByteBuffer compressedNio = data.nioBuffer();
+
+        // Determine required size for the output buffer
+        long uncompressedSize = Zstd.decompressedSize(compressedNio);
+        if (Zstd.isError(uncompressedSize)) {
+            return null;
+        }
+
+        // Acquire and resize thread-local buffer if necessary
+        ByteBuffer targetBuf = DECOMPRESSION_BUFFER.get();
+        if (targetBuf.capacity() < uncompressedSize) {
+            targetBuf = ByteBuffer.allocateDirect((int) uncompressedSize);
+            DECOMPRESSION_BUFFER.set(targetBuf);
+            DECOMPRESSION_VIEW.set(Unpooled.wrappedBuffer(targetBuf.duplicate().clear()));
+        }
+
+        // Reset buffer state before writing
+        targetBuf.clear();
+        Zstd.decompressDirectByteBuffer(targetBuf, 0, (int) uncompressedSize, compressedNio, 0, compressedNio.remaining());
+
+        // The reusable ByteBuf view allows easy reading of primitives without manual offsets
+        ByteBuf db = DECOMPRESSION_VIEW.get();
+        db.setIndex(0, (int) uncompressedSize);
+        return db;
+    }
+
+    /**
+     * Applies all chunk sections that follow the payload header to the data store.
+     *
+     * @param db        The decompressed payload, positioned after the timestamp.
+     * @param store     The client data store.
+     * @param timestamp The server timestamp of the payload.
+     * @param baseY     The minimum build height, which is the vertical origin of chunk-relative positions.
+     */
+    public static void applySections(ByteBuf db, VxClientBodyDataStore store, long timestamp, double baseY) {
+        VxClientBodyDataContainer c = store.clientCurrent();
+        while (db.isReadable()) {
+            readSection(db, store, c, timestamp, baseY);
+        }
+    }
+
+    /**
+     * Reads one chunk section and applies its records to the data store.
+     *
+     * @param db        The decompressed payload, positioned at the section header.
+     * @param store     The client data store.
+     * @param c         The current client data container.
+     * @param timestamp The server timestamp of the payload.
+     * @param baseY     The minimum build height, which is the vertical origin of chunk-relative positions.
+     */
+    private static void readSection(ByteBuf db, VxClientBodyDataStore store, VxClientBodyDataContainer c, long timestamp, double baseY) {
+        long chunkPosLong = db.readLong();
+        int count = db.readInt();
+
+        // Derive the chunk origin without allocating a ChunkPos per section
+        double baseX = SectionPos.sectionToBlockCoord(ChunkPos.getX(chunkPosLong));
+        double baseZ = SectionPos.sectionToBlockCoord(ChunkPos.getZ(chunkPosLong));
+
+        for (int i = 0; i < count; i++) {
+            int netId = db.readInt();
+            byte record = db.readByte();
+            int index = store.getIndexForNetworkId(netId);
+
+            // If the body is not tracked locally (e.g., desync or unloaded), skip the data stream
+            // to maintain correct buffer offsets for subsequent bodies.
+            // Bounds check for race condition during container resize.
+            if (index == -1 || index >= c.getCapacity()) {
+                db.skipBytes(record == RECORD_RESTING ? RESTING_RECORD_SIZE : ACTIVE_RECORD_SIZE);
+                continue;
+            }
+
+            if (record == RECORD_RESTING) {
+                applyRestingRecord(c, index, db, timestamp);
+                continue;
+            }
+
+            // Cycle history states (current -> old)
+            c.state0_timestamp[index] = c.state1_timestamp[index];
+            c.state0_posX[index] = c.state1_posX[index];
+            c.state0_posY[index] = c.state1_posY[index];
+            c.state0_posZ[index] = c.state1_posZ[index];
+            c.state0_rotX[index] = c.state1_rotX[index];
+            c.state0_rotY[index] = c.state1_rotY[index];
+            c.state0_rotZ[index] = c.state1_rotZ[index];
+            c.state0_rotW[index] = c.state1_rotW[index];
+            c.state0_isActive[index] = c.state1_isActive[index];
+
+            // A body waking up from rest has no meaningful history: its last state may be
+            // minutes old. Invalidate state0 so the interpolator snaps instead of crawling.
+            if (c.isResting[index]) {
+                c.isResting[index] = false;
+                c.render_isSettled[index] = false;
+                c.state0_timestamp[index] = 0;
+            }
+
+            // Read New State into state1
+            c.state1_timestamp[index] = timestamp;
+            c.state1_posX[index] = baseX + db.readFloat();
+            c.state1_posY[index] = baseY + db.readFloat();
+            c.state1_posZ[index] = baseZ + db.readFloat();
+            c.state1_rotX[index] = db.readFloat();
+            c.state1_rotY[index] = db.readFloat();
+            c.state1_rotZ[index] = db.readFloat();
+            c.state1_rotW[index] = db.readFloat();
+            c.state1_isActive[index] = true;
+            c.state1_velX[index] = db.readFloat();
+            c.state1_velY[index] = db.readFloat();
+            c.state1_velZ[index] = db.readFloat();
+
+            // Update culling position for renderer frustum checks
+            c.lastKnownPosition[index].set(c.state1_posX[index], c.state1_posY[index], c.state1_posZ[index]);
+        }
+    }
+
+    /**
+     * Applies a "came to rest" record to the data store.
+     * <p>
+     * Both history states are collapsed onto the exact final transform and the body is flagged
+     * as resting, which removes it from the per-tick interpolation work until it wakes up.
+     *
+     * @param c         The client data container.
+     * @param index     The data store index of the body.
+     * @param db        The buffer positioned after the record tag.
+     * @param timestamp The server timestamp of the batch.
+     */
+    private static void applyRestingRecord(VxClientBodyDataContainer c, int index, ByteBuf db, long timestamp) {
+        double x = db.readDouble();
+        double y = db.readDouble();
+        double z = db.readDouble();
+        float rx = db.readFloat();
+        float ry = db.readFloat();
+        float rz = db.readFloat();
+        float rw = db.readFloat();
+
+        c.state0_timestamp[index] = c.state1_timestamp[index] = timestamp;
+        c.state0_posX[index] = c.state1_posX[index] = x;
+        c.state0_posY[index] = c.state1_posY[index] = y;
+        c.state0_posZ[index] = c.state1_posZ[index] = z;
+        c.state0_rotX[index] = c.state1_rotX[index] = rx;
+        c.state0_rotY[index] = c.state1_rotY[index] = ry;
+        c.state0_rotZ[index] = c.state1_rotZ[index] = rz;
+        c.state0_rotW[index] = c.state1_rotW[index] = rw;
+        c.state0_velX[index] = c.state0_velY[index] = c.state0_velZ[index] = 0f;
+        c.state1_velX[index] = c.state1_velY[index] = c.state1_velZ[index] = 0f;
+        c.state0_isActive[index] = c.state1_isActive[index] = false;
+
+        c.isResting[index] = true;
+        c.render_isSettled[index] = false;
+
+        c.lastKnownPosition[index].set(x, y, z);
+    }
+
+    /**
+     * @return The compressed payload, still owned by this packet.
+     */
+    public ByteBuf getData() {
+        return this.data;
+    }
+
     /**
      * Releases the compressed payload buffer.
      */
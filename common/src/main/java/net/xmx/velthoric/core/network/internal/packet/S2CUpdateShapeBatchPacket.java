@@ -98,8 +98,8 @@ public class S2CUpdateShapeBatchPacket implements IVxNetPacket {
                             VxCollisionShape shape = VxShapeCodec.read(wrapped);
 
                             // Find the client body and assign the deserialized shape
-                            Integer idx = store.getIndexForNetworkId(netId);
-                            if (idx != null) {
+                            int idx = store.getIndexForNetworkId(netId);
+                            if (idx != -1) {
                                 VxBody body = store.clientCurrent().bodies[idx];
                                 if (body != null) {
                                     body.setShape(shape);
@@ -7,11 +7,13 @@ package net.xmx.velthoric.core.network.internal.packet;
 import com.github.luben.zstd.Zstd;
 import dev.architectury.networking.NetworkManager;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import net.xmx.velthoric.network.IVxNetPacket;
 import net.xmx.velthoric.network.VxByteBuf;
 import net.xmx.velthoric.core.body.client.VxClientBodyManager;
 import net.xmx.velthoric.core.body.client.VxClientBodyDataContainer;
+import net.xmx.velthoric.core.network.internal.VxVertexStreamCodec;
 
 import java.nio.ByteBuffer;
 
@@ -23,6 +25,10 @@ import java.nio.ByteBuffer;
  * <p>
  * Vertex history is cycled (state0 ← state1) on each update to support
  * smooth interpolation of soft body deformations.
+ * <p>
+ * Vertices are encoded with {@link VxVertexStreamCodec} as quantized keyframes and predictive
+ * deltas. Decoding reuses the vertex array that drops out of the history, so steady-state
+ * updates do not allocate.
  *
  * @author xI-Mx-Ix
  */
@@ -40,11 +46,13 @@ public class S2CUpdateVerticesBatchPacket implements IVxNetPacket {
     }
 
     /**
-     * Decodes the packet.
+     * Decodes the packet into a pooled direct buffer, which is released in {@link #handle}.
      */
     public static S2CUpdateVerticesBatchPacket decode(VxByteBuf buf) {
         int len = buf.readVarInt();
-        return new S2CUpdateVerticesBatchPacket(buf.readBytes(len));
+        ByteBuf copied = PooledByteBufAllocator.DEFAULT.directBuffer(len);
+        buf.readBytes(copied, len);
+        return new S2CUpdateVerticesBatchPacket(copied);
     }
 
     /**
@@ -92,23 +100,31 @@ public class S2CUpdateVerticesBatchPacket implements IVxNetPacket {
                 int count = db.readInt();
                 db.readLong(); // chunkPosLong (skipped, handled via body IDs)
 
+                VxClientBodyDataContainer c = manager.getStore().clientCurrent();
                 for (int i = 0; i < count; i++) {
                     int netId = db.readInt();
-                    if (db.readBoolean()) {
-                        int vLen = db.readInt();
-                        // Here we still need an array because the DataStore currently stores float[].
-                        // Ideally the DataStore should use a flat FloatBuffer for soft bodies,
-                        // but strictly following the current DataStore API, we allocate the array here.
-                        float[] verts = new float[vLen];
-                        for (int k = 0; k < vLen; k++) verts[k] = db.readFloat();
-
-                        Integer index = manager.getStore().getIndexForNetworkId(netId);
-                        VxClientBodyDataContainer c = manager.getStore().clientCurrent();
-                        if (index != null && index < c.getCapacity()) {
-                            // Cycle vertex history for interpolation
-                            c.state0_vertexData[index] = c.state1_vertexData[index];
-                            c.state1_vertexData[index] = verts;
-                        }
+                    int index = manager.getStore().getIndexForNetworkId(netId);
+
+                    if (index == -1 || index >= c.getCapacity()) {
+                        // Unknown body: consume the record to keep the stream aligned.
+                        VxVertexStreamCodec.read(db, null, null);
+                        continue;
+                    }
+
+                    VxVertexStreamCodec.State stream = c.vertexStream[index];
+                    if (stream == null) {
+                        stream = new VxVertexStreamCodec.State();
+                        c.vertexStream[index] = stream;
+                    }
+
+                    // Decode into the array dropped from the history (old state0) instead of allocating.
+                    // The interpolator never aliases the history arrays, so reusing it is safe.
+                    float[] recycled = c.state0_vertexData[index];
+                    float[] verts = VxVertexStreamCodec.read(db, stream, recycled);
+                    if (verts != null) {
+                        // Cycle vertex history for interpolation
+                        c.state0_vertexData[index] = c.state1_vertexData[index];
+                        c.state1_vertexData[index] = verts;
                     }
                 }
             } finally {
@@ -0,0 +1,375 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.metrics;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * The registry of all physics networking metrics of the server.
+ * <p>
+ * Metrics are collected at the few places every byte passes through: {@code VxNetworking} (bytes and packets
+ * per player and per packet type), {@code VxPacketFactory} (compression ratio per payload kind),
+ * {@code VxNetworkDispatcher} (sync pass duration and dirty body counts) and {@code VxSyncBehavior}
+ * (custom data records). All counters are {@link LongAdder}s and all distributions {@link VxHistogram}s,
+ * so recording never takes a lock and scales with the parallel serialization workers.
+ * <p>
+ * Per-player send rates are sampled once per second by the network thread (see {@link #sampleRates}).
+ * Byte counts are Velthoric payload bytes, before the Minecraft protocol framing and compression.
+ * Collection can be switched off entirely with {@link #setEnabled}.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxNetworkMetrics {
+
+    /**
+     * The kinds of compressed payloads built by the packet factory.
+     */
+    public enum PayloadKind {
+        STATE, VERTICES, SHAPES, SYNC_DATA
+    }
+
+    /**
+     * The global instance.
+     */
+    private static final VxNetworkMetrics INSTANCE = new VxNetworkMetrics();
+
+    /**
+     * The interval of the per-player rate samples.
+     */
+    private static final long RATE_SAMPLE_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * The number of possible packet IDs (the ID is a single byte).
+     */
+    private static final int PACKET_ID_COUNT = 256;
+
+    /**
+     * Whether metrics are collected.
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * The time of the last reset.
+     */
+    private volatile long resetNanos = System.nanoTime();
+
+    /**
+     * Display names of the registered packet IDs.
+     */
+    private final String[] packetNames = new String[PACKET_ID_COUNT];
+
+    /**
+     * Packets sent per packet ID (counted once per receiving player).
+     */
+    private final LongAdder[] packetCount = new LongAdder[PACKET_ID_COUNT];
+
+    /**
+     * Bytes sent per packet ID (counted once per receiving player).
+     */
+    private final LongAdder[] packetBytes = new LongAdder[PACKET_ID_COUNT];
+
+    /**
+     * Statistics of every player that received data since the last reset.
+     */
+    private final Map<UUID, PlayerStats> players = new ConcurrentHashMap<>();
+
+    /**
+     * Uncompressed bytes per payload kind.
+     */
+    private final LongAdder[] rawBytes = new LongAdder[PayloadKind.values().length];
+
+    /**
+     * Compressed bytes per payload kind.
+     */
+    private final LongAdder[] compressedBytes = new LongAdder[PayloadKind.values().length];
+
+    /**
+     * Compressed payload sizes of all kinds.
+     */
+    private final VxHistogram compressedSize = new VxHistogram();
+
+    /**
+     * Duration of complete sync passes of all dispatchers.
+     */
+    private final VxHistogram syncPassNanos = new VxHistogram();
+
+    /**
+     * Duration of the custom data part of sync passes.
+     */
+    private final VxHistogram customDataNanos = new VxHistogram();
+
+    /**
+     * Bodies with state updates per sync pass.
+     */
+    private final VxHistogram dirtyBodiesPerPass = new VxHistogram();
+
+    /**
+     * Custom data records written per sync pass.
+     */
+    private final VxHistogram customDataRecordsPerPass = new VxHistogram();
+
+    /**
+     * The time of the last per-player rate sample.
+     */
+    private final AtomicLong lastRateSample = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates the registry with all counters allocated up front.
+     */
+    private VxNetworkMetrics() {
+        for (int i = 0; i < PACKET_ID_COUNT; i++) {
+            packetCount[i] = new LongAdder();
+            packetBytes[i] = new LongAdder();
+        }
+        for (int i = 0; i < rawBytes.length; i++) {
+            rawBytes[i] = new LongAdder();
+            compressedBytes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return The global metrics registry.
+     */
+    public static VxNetworkMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Whether metrics are collected.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables collection. Disabled metrics cost a single volatile read per call site.
+     *
+     * @param enabled Whether metrics are collected.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Registers the display name of a packet ID.
+     *
+     * @param id   The packet ID.
+     * @param name The display name.
+     */
+    public void registerPacketType(int id, String name) {
+        packetNames[id & 0xFF] = name;
+    }
+
+    /**
+     * Records an encoded packet sent to one player.
+     *
+     * @param player     The receiving player.
+     * @param playerName The name of the player, used for reports.
+     * @param packetId   The packet ID (first byte of the payload).
+     * @param bytes      The encoded payload size.
+     */
+    public void recordPacketSent(UUID player, String playerName, int packetId, int bytes) {
+        if (!enabled) return;
+        recordPacketType(packetId, bytes, 1);
+
+        PlayerStats stats = players.get(player);
+        if (stats == null) {
+            stats = players.computeIfAbsent(player, k -> new PlayerStats(playerName));
+        }
+        stats.packets.increment();
+        stats.bytes.add(bytes);
+    }
+
+    /**
+     * Records an encoded packet broadcast to several players without per-player attribution.
+     *
+     * @param packetId   The packet ID (first byte of the payload).
+     * @param bytes      The encoded payload size.
+     * @param recipients The number of receiving players.
+     */
+    public void recordPacketBroadcast(int packetId, int bytes, int recipients) {
+        if (!enabled || recipients <= 0) return;
+        recordPacketType(packetId, bytes, recipients);
+    }
+
+    /**
+     * Adds packets to the counters of a packet ID.
+     */
+    private void recordPacketType(int packetId, int bytes, int recipients) {
+        int id = packetId & 0xFF;
+        packetCount[id].add(recipients);
+        packetBytes[id].add((long) bytes * recipients);
+    }
+
+    /**
+     * Records a compressed payload built by the packet factory.
+     *
+     * @param kind       The kind of payload.
+     * @param raw        The uncompressed size.
+     * @param compressed The compressed size.
+     */
+    public void recordCompression(PayloadKind kind, int raw, int compressed) {
+        if (!enabled) return;
+        rawBytes[kind.ordinal()].add(raw);
+        compressedBytes[kind.ordinal()].add(compressed);
+        compressedSize.record(compressed);
+    }
+
+    /**
+     * Records a completed sync pass of a dispatcher.
+     *
+     * @param durationNanos    The duration of the whole pass.
+     * @param customDataNanos  The part of the pass spent broadcasting custom data.
+     * @param dirtyBodies      The number of bodies with state updates.
+     */
+    public void recordSyncPass(long durationNanos, long customDataNanos, int dirtyBodies) {
+        if (!enabled) return;
+        syncPassNanos.record(durationNanos);
+        this.customDataNanos.record(customDataNanos);
+        dirtyBodiesPerPass.record(dirtyBodies);
+    }
+
+    /**
+     * Records the number of custom data records written in one sync pass.
+     *
+     * @param records The number of records. Shared records count once, per-player scoped records once per player.
+     */
+    public void recordCustomDataRecords(int records) {
+        if (!enabled) return;
+        customDataRecordsPerPass.record(records);
+    }
+
+    /**
+     * Updates the per-player send rates if a sample interval has passed. Called by every dispatcher
+     * once per sync pass; only one caller per interval does the work.
+     *
+     * @param now The current {@link System#nanoTime()}.
+     */
+    public void sampleRates(long now) {
+        long last = lastRateSample.get();
+        long elapsed = now - last;
+        if (elapsed < RATE_SAMPLE_INTERVAL_NANOS || !lastRateSample.compareAndSet(last, now)) return;
+
+        for (PlayerStats stats : players.values()) {
+            long total = stats.bytes.sum();
+            stats.bytesPerSecond = (total - stats.sampledBytes) * 1_000_000_000L / elapsed;
+            stats.peakBytesPerSecond = Math.max(stats.peakBytesPerSecond, stats.bytesPerSecond);
+            stats.sampledBytes = total;
+        }
+    }
+
+    /**
+     * Drops the statistics of a player that left.
+     *
+     * @param player The player.
+     */
+    public void removePlayer(UUID player) {
+        players.remove(player);
+    }
+
+    /**
+     * Clears all collected metrics.
+     */
+    public void reset() {
+        for (int i = 0; i < PACKET_ID_COUNT; i++) {
+            packetCount[i].reset();
+            packetBytes[i].reset();
+        }
+        for (int i = 0; i < rawBytes.length; i++) {
+            rawBytes[i].reset();
+            compressedBytes[i].reset();
+        }
+        players.clear();
+        compressedSize.reset();
+        syncPassNanos.reset();
+        customDataNanos.reset();
+        dirtyBodiesPerPass.reset();
+        customDataRecordsPerPass.reset();
+        resetNanos = System.nanoTime();
+    }
+
+    /**
+     * Writes a human-readable report of all metrics.
+     *
+     * @param maxRows The maximum number of rows of the per-player and per-packet tables.
+     * @param out     Receives one line at a time.
+     */
+    public void dump(int maxRows, Consumer<String> out) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - resetNanos) / 1e9);
+        out.accept(String.format(Locale.ROOT, "Velthoric network metrics (%.1f s%s)", seconds, enabled ? "" : ", collection disabled"));
+
+        out.accept(String.format(Locale.ROOT, "Sync pass: %d passes, p50 %.2f ms, p99 %.2f ms, max %.2f ms; custom data p99 %.2f ms",
+                syncPassNanos.getCount(), syncPassNanos.percentile(50) / 1e6, syncPassNanos.percentile(99) / 1e6,
+                syncPassNanos.getMax() / 1e6, customDataNanos.percentile(99) / 1e6));
+        out.accept(String.format(Locale.ROOT, "Per pass: dirty bodies p50 %d / p99 %d, custom data records p50 %d / p99 %d",
+                dirtyBodiesPerPass.percentile(50), dirtyBodiesPerPass.percentile(99),
+                customDataRecordsPerPass.percentile(50), customDataRecordsPerPass.percentile(99)));
+
+        StringBuilder ratios = new StringBuilder("Compression:");
+        for (PayloadKind kind : PayloadKind.values()) {
+            long raw = rawBytes[kind.ordinal()].sum();
+            long compressed = compressedBytes[kind.ordinal()].sum();
+            if (raw == 0) continue;
+            ratios.append(String.format(Locale.ROOT, " %s %.2fx (%d KiB),", kind.name().toLowerCase(Locale.ROOT),
+                    compressed == 0 ? 0.0 : (double) raw / compressed, compressed / 1024));
+        }
+        ratios.append(String.format(Locale.ROOT, " payload p50 %d B / p99 %d B",
+                compressedSize.percentile(50), compressedSize.percentile(99)));
+        out.accept(ratios.toString());
+
+        IntArrayList packets = new IntArrayList();
+        for (int id = 0; id < PACKET_ID_COUNT; id++) {
+            if (packetCount[id].sum() > 0) packets.add(id);
+        }
+        packets.sort((a, b) -> Long.compare(packetBytes[b].sum(), packetBytes[a].sum()));
+        out.accept("Packets by bytes:");
+        for (int i = 0; i < Math.min(maxRows, packets.size()); i++) {
+            int id = packets.getInt(i);
+            long count = packetCount[id].sum();
+            long bytes = packetBytes[id].sum();
+            out.accept(String.format(Locale.ROOT, "  %-32s %9d pkts %10.1f KiB/s  avg %d B",
+                    packetNames[id] != null ? packetNames[id] : "#" + id, count, bytes / 1024.0 / seconds, bytes / count));
+        }
+
+        List<PlayerStats> byRate = new ArrayList<>(players.values());
+        byRate.sort(Comparator.comparingLong((PlayerStats p) -> p.bytesPerSecond).reversed());
+        out.accept("Players by current rate:");
+        for (int i = 0; i < Math.min(maxRows, byRate.size()); i++) {
+            PlayerStats stats = byRate.get(i);
+            out.accept(String.format(Locale.ROOT, "  %-16s %8.1f KiB/s now, %8.1f KiB/s peak, %8.1f KiB/s avg, %d pkts",
+                    stats.name, stats.bytesPerSecond / 1024.0, stats.peakBytesPerSecond / 1024.0,
+                    stats.bytes.sum() / 1024.0 / seconds, stats.packets.sum()));
+        }
+    }
+
+    /**
+     * Counters of a single player.
+     */
+    private static final class PlayerStats {
+        final String name;
+        final LongAdder packets = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        // Written only by the thread that won the sample interval
+        volatile long sampledBytes;
+        volatile long bytesPerSecond;
+        volatile long peakBytesPerSecond;
+
+        PlayerStats(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Java Flight Recorder event emitted once per network sync pass of a dispatcher.
+ * <p>
+ * The event is disabled by default and costs nothing unless a recording enables
+ * {@code velthoric.NetworkSyncPass}, e.g. with a custom JFC file or
+ * {@code jcmd <pid> JFR.start settings=<file>}. The event's duration covers the whole pass.
+ *
+ * @author xI-Mx-Ix
+ */
+@Name("velthoric.NetworkSyncPass")
+@Label("Network Sync Pass")
+@Category({"Velthoric", "Network"})
+@Description("One pass of the physics body network synchronization of a dimension")
+@StackTrace(false)
+@Enabled(false)
+public final class VxSyncPassEvent extends Event {
+
+    /**
+     * The registered type of this event, used to skip the event allocation while it is disabled.
+     */
+    public static final EventType TYPE = EventType.getEventType(VxSyncPassEvent.class);
+
+    @Label("Dimension")
+    public String dimension;
+
+    @Label("Dirty Bodies")
+    @Description("Bodies with state updates in this pass")
+    public int dirtyBodies;
+
+    @Label("Dirty Chunks")
+    @Description("Chunks with state updates in this pass")
+    public int dirtyChunks;
+
+    @Label("Broadcast Packets")
+    @Description("Per-chunk vertex and shape packets built in this pass")
+    public int broadcastPackets;
+
+    @Label("Custom Data Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    public long customDataNanos;
+}
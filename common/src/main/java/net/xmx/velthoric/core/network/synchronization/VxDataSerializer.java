@@ -35,4 +35,14 @@ public interface VxDataSerializer<T> {
      * @return A copy of the value.
      */
     T copy(T value);
+
+    /**
+     * Returns the exact number of bytes {@link #write} produces for any value, or -1 if the size varies.
+     * Bodies whose fields are all fixed-size can size a dirty record before writing it,
+     * which lets the synchronization batch skip an intermediate copy.
+     * @return The fixed encoded size in bytes, or -1.
+     */
+    default int fixedSize() {
+        return -1;
+    }
 }
\ No newline at end of file
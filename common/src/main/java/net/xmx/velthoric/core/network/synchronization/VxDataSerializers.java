@@ -40,6 +40,11 @@ public final class VxDataSerializers {
         public Byte copy(Byte value) {
             return value;
         }
+
+        @Override
+        public int fixedSize() {
+            return 1;
+        }
     });
 
     public static final VxDataSerializer<Integer> INTEGER = register(new VxDataSerializer<>() {
@@ -74,6 +79,11 @@ public final class VxDataSerializers {
         public Float copy(Float value) {
             return value;
         }
+
+        @Override
+        public int fixedSize() {
+            return 4;
+        }
     });
 
     public static final VxDataSerializer<Boolean> BOOLEAN = register(new VxDataSerializer<>() {
@@ -91,6 +101,11 @@ public final class VxDataSerializers {
         public Boolean copy(Boolean value) {
             return value;
         }
+
+        @Override
+        public int fixedSize() {
+            return 1;
+        }
     });
 
     public static final VxDataSerializer<RVec3> RVEC3 = register(new VxDataSerializer<>() {
@@ -108,6 +123,11 @@ public final class VxDataSerializers {
         public RVec3 copy(RVec3 value) {
             return new RVec3(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 3 * 8;
+        }
     });
 
     public static final VxDataSerializer<Quat> QUAT = register(new VxDataSerializer<>() {
@@ -125,6 +145,11 @@ public final class VxDataSerializers {
         public Quat copy(Quat value) {
             return new Quat(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 4 * 4;
+        }
     });
 
     public static final VxDataSerializer<Vec3> VEC3 = register(new VxDataSerializer<>() {
@@ -142,6 +167,11 @@ public final class VxDataSerializers {
         public Vec3 copy(Vec3 value) {
             return new Vec3(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 3 * 4;
+        }
     });
 
     public static final VxDataSerializer<Vec4> VEC4 = register(new VxDataSerializer<>() {
@@ -159,6 +189,11 @@ public final class VxDataSerializers {
         public Vec4 copy(Vec4 value) {
             return new Vec4(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 4 * 4;
+        }
     });
 
     public static final VxDataSerializer<Float2> FLOAT2 = register(new VxDataSerializer<>() {
@@ -176,6 +211,11 @@ public final class VxDataSerializers {
         public Float2 copy(Float2 value) {
             return new Float2(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 2 * 4;
+        }
     });
 
     public static final VxDataSerializer<Float3> FLOAT3 = register(new VxDataSerializer<>() {
@@ -193,6 +233,11 @@ public final class VxDataSerializers {
         public Float3 copy(Float3 value) {
             return new Float3(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 3 * 4;
+        }
     });
 
     public static final VxDataSerializer<UVec4> UVEC4 = register(new VxDataSerializer<>() {
@@ -210,6 +255,11 @@ public final class VxDataSerializers {
         public UVec4 copy(UVec4 value) {
             return new UVec4(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 4 * 4;
+        }
     });
 
     public static final VxDataSerializer<Plane> PLANE = register(new VxDataSerializer<>() {
@@ -227,6 +277,11 @@ public final class VxDataSerializers {
         public Plane copy(Plane value) {
             return new Plane(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 4 * 4;
+        }
     });
 
     public static final VxDataSerializer<Color> COLOR = register(new VxDataSerializer<>() {
@@ -244,6 +299,11 @@ public final class VxDataSerializers {
         public Color copy(Color value) {
             return new Color(value);
         }
+
+        @Override
+        public int fixedSize() {
+            return 4;
+        }
     });
 
     public static final VxDataSerializer<VertexList> VERTEX_LIST = register(new VxDataSerializer<>() {
@@ -399,6 +459,11 @@ public final class VxDataSerializers {
         public UUID copy(UUID value) {
             return value;
         }
+
+        @Override
+        public int fixedSize() {
+            return 2 * 8;
+        }
     });
 
     public static final VxDataSerializer<VxBodyPart> BODY_PART = register(new VxDataSerializer<>() {
@@ -0,0 +1,31 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.network.synchronization;
+
+/**
+ * Defines which of the players tracking a body receive updates of a synchronized data entry.
+ * <p>
+ * Scopes only filter incremental updates. The spawn data of a body always contains every entry,
+ * so scoped entries are best suited for values that change continuously (engine RPM, wheel states,
+ * HUD values), where a player entering the scope receives a fresh value almost immediately.
+ *
+ * @author xI-Mx-Ix
+ */
+public enum VxSyncScope {
+    /**
+     * Updates are sent to every player tracking the body. This is the default.
+     */
+    ALL_TRACKERS,
+
+    /**
+     * Updates are sent only to tracking players within the entry's radius around the body.
+     */
+    NEARBY,
+
+    /**
+     * Updates are sent only to players currently mounted on the body.
+     */
+    RIDERS
+}
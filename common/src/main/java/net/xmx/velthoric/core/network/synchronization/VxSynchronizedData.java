@@ -4,6 +4,7 @@
  */
 package net.xmx.velthoric.core.network.synchronization;
 
+import io.netty.buffer.ByteBuf;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.minecraft.server.level.ServerPlayer;
@@ -15,23 +16,144 @@ import net.xmx.velthoric.core.network.synchronization.accessor.VxServerAccessor;
 import net.xmx.velthoric.core.body.VxBody;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Manages all synchronized data entries for a single physics body instance.
  * It holds the internal map of values and handles reading/writing from network buffers.
+ * <p>
+ * <b>Wire Format:</b> Entries are ordered by accessor ID, and each entry owns one bit of a dirty mask.
+ * A record consists of the mask ({@code ceil(entries / 8)} bytes) followed by the values of the set bits
+ * in ascending order. Both sides build the same layout from the body type's definitions, so no per-entry
+ * IDs or end markers are sent: four changed fields of an eight-field body cost a single header byte.
+ * Records are self-delimiting for a known body type.
+ * <p>
+ * <b>Scopes and Rates:</b> On the server, the broadcaster {@link #takeSendable takes} the changed entries
+ * allowed by their send rate and splits them into {@link #selectUnscoped unscoped} entries, written once for
+ * all trackers, and {@link #selectScoped scoped} entries, written per receiving player.
+ * <p>
+ * <b>Threading:</b> On the server, values change on the game thread while the network thread
+ * serializes them. All mutations of values and the dirty mask are synchronized on this instance;
+ * callers that need several calls to be atomic (e.g. sizing and writing a record) synchronize on it
+ * as well. The {@linkplain #tryMarkQueued() queued flag} is lock-free and guarantees that a body sits
+ * in the server's dirty queue at most once.
+ * The mask selection and sizing methods take no lock: they only read the layout, scope and
+ * size arrays, which are never modified after construction.
  *
  * @author xI-Mx-Ix
  */
 public class VxSynchronizedData {
 
+    /**
+     * The maximum number of 64-bit words of any dirty mask. Accessor IDs are limited to 0..254,
+     * so a body never has more than 255 entries. Callers size scratch masks with this constant.
+     */
+    public static final int MAX_MASK_WORDS = 4;
+
+    /**
+     * Marks entries in {@link #lastSentNanos} that have never been sent.
+     */
+    private static final long NEVER_SENT = Long.MIN_VALUE;
+
     private final Int2ObjectMap<Entry<?>> entries;
+
+    /**
+     * All entries ordered by accessor ID. The position of an entry is its bit in the dirty mask.
+     */
+    private final Entry<?>[] layout;
+
+    /**
+     * The fixed encoded size of each entry in {@link #layout}, or -1 for variable-size serializers.
+     */
+    private final int[] fixedSizes;
+
+    /**
+     * True if every entry has a fixed encoded size, enabling exact record sizing before writing.
+     */
+    private final boolean fixedLayout;
+
+    /**
+     * The number of bytes used by the dirty mask in a record.
+     */
+    private final int maskBytes;
+
+    /**
+     * One bit per entry in {@link #layout}, set when the entry changed since the last write.
+     */
+    private final long[] dirtyMask;
+
+    /**
+     * Bits of entries restricted to {@link VxSyncScope#NEARBY} and {@link VxSyncScope#RIDERS}.
+     */
+    private final long[] scopedMask;
+
+    /**
+     * The squared radius of each {@link VxSyncScope#NEARBY} entry, by bit.
+     */
+    private final double[] radiusSq;
+
+    /**
+     * The minimum interval between two sends of each entry in nanoseconds, 0 if unlimited.
+     */
+    private final long[] minIntervalNanos;
+
+    /**
+     * The time each entry was last handed out for sending, {@link #NEVER_SENT} if never.
+     * {@link System#nanoTime()} has an arbitrary origin, so no valid timestamp can serve as the marker.
+     */
+    private final long[] lastSentNanos;
+
+    /**
+     * Scratch mask for decoding incoming records. Each side has a single reading thread per body.
+     */
+    private final long[] incomingMask;
+
     private boolean isDirty;
 
+    /**
+     * Updater for {@link #queued}, avoiding an atomic wrapper object per body.
+     */
+    private static final AtomicIntegerFieldUpdater<VxSynchronizedData> QUEUED =
+            AtomicIntegerFieldUpdater.newUpdater(VxSynchronizedData.class, "queued");
+
+    /**
+     * 1 while the owning body is in the server's dirty queue, 0 otherwise.
+     */
+    private volatile int queued;
+
     private VxSynchronizedData(Int2ObjectMap<Entry<?>> entries) {
         this.entries = entries;
+        this.layout = entries.values().toArray(new Entry<?>[0]);
+        Arrays.sort(this.layout, Comparator.comparingInt(e -> e.getAccessor().getId()));
+
+        this.fixedSizes = new int[this.layout.length];
+        boolean fixed = true;
+        for (int bit = 0; bit < this.layout.length; bit++) {
+            this.layout[bit].bit = bit;
+            this.fixedSizes[bit] = this.layout[bit].getAccessor().getSerializer().fixedSize();
+            fixed &= this.fixedSizes[bit] >= 0;
+        }
+        this.fixedLayout = fixed;
+        this.maskBytes = (this.layout.length + 7) >>> 3;
+        this.dirtyMask = new long[(this.layout.length + 63) >>> 6];
+        this.incomingMask = new long[Math.max(1, this.dirtyMask.length)];
+
+        this.scopedMask = new long[this.dirtyMask.length];
+        this.radiusSq = new double[this.layout.length];
+        this.minIntervalNanos = new long[this.layout.length];
+        this.lastSentNanos = new long[this.layout.length];
+        Arrays.fill(this.lastSentNanos, NEVER_SENT);
+        for (int bit = 0; bit < this.layout.length; bit++) {
+            VxDataAccessor<?> accessor = this.layout[bit].getAccessor();
+            if (accessor.getScope() != VxSyncScope.ALL_TRACKERS) {
+                this.scopedMask[bit >>> 6] |= 1L << bit;
+            }
+            this.radiusSq[bit] = accessor.getRadius() * accessor.getRadius();
+            this.minIntervalNanos[bit] = accessor.getMinIntervalNanos();
+        }
     }
 
     /**
@@ -59,15 +181,22 @@ public class VxSynchronizedData {
      * @param value    The new value.
      * @param <T>      The data type.
      */
-    public <T> void set(VxDataAccessor<T> accessor, T value) {
+    public synchronized <T> void set(VxDataAccessor<T> accessor, T value) {
         Entry<T> entry = this.getEntry(accessor);
         if (entry != null && !Objects.equals(value, entry.getValue())) {
             entry.setValue(value);
-            entry.setDirty(true);
-            this.isDirty = true;
+            this.markDirty(entry);
         }
     }
 
+    /**
+     * Flags an entry for the next dirty record.
+     */
+    private void markDirty(Entry<?> entry) {
+        this.dirtyMask[entry.bit >>> 6] |= 1L << entry.bit;
+        this.isDirty = true;
+    }
+
     @SuppressWarnings("unchecked")
     @Nullable
     private <T> Entry<T> getEntry(VxDataAccessor<T> accessor) {
@@ -77,62 +206,231 @@ public class VxSynchronizedData {
     /**
      * @return True if any data entries have changed and need synchronization.
      */
-    public boolean isDirty() {
+    public synchronized boolean isDirty() {
         return this.isDirty;
     }
 
     /**
-     * Gathers all dirty entries for network synchronization.
+     * Marks every entry of a scope as changed, e.g. to resend rider-only data to a player who just mounted.
      *
-     * @return A list of dirty entries, or null if nothing is dirty.
+     * @param scope The scope whose entries should be resent.
+     * @return True if the body has entries of that scope.
      */
-    @Nullable
-    public List<Entry<?>> getDirtyEntries() {
-        if (!this.isDirty) {
-            return null;
+    public synchronized boolean markScopeDirty(VxSyncScope scope) {
+        boolean any = false;
+        for (Entry<?> entry : this.layout) {
+            if (entry.getAccessor().getScope() == scope) {
+                this.markDirty(entry);
+                any = true;
+            }
         }
-        List<Entry<?>> dirtyList = new ArrayList<>();
-        for (Entry<?> entry : this.entries.values()) {
-            if (entry.isDirty()) {
-                dirtyList.add(entry);
+        return any;
+    }
+
+    /**
+     * Claims the right to enqueue the owning body into the dirty queue.
+     *
+     * @return True if the body was not queued and must now be enqueued by the caller.
+     */
+    public boolean tryMarkQueued() {
+        return QUEUED.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * Releases the queued flag after the body was taken from the dirty queue.
+     * Must be called before the dirty record is written: a change that races with the write
+     * either lands in the record or re-queues the body, so no update is ever lost.
+     */
+    public void clearQueued() {
+        this.queued = 0;
+    }
+
+    /**
+     * Takes the changed entries whose send rate allows an update at {@code now} and clears them
+     * from the dirty mask. Rate-limited entries stay dirty, so their latest value is sent later.
+     *
+     * @param now The current time in nanoseconds.
+     * @param out Receives the taken bits; must hold at least {@link #MAX_MASK_WORDS} words.
+     * @return True if some changed entries were deferred by their rate limit.
+     */
+    public synchronized boolean takeSendable(long now, long[] out) {
+        boolean deferred = false;
+        for (int word = 0; word < this.dirtyMask.length; word++) {
+            long bits = this.dirtyMask[word];
+            long taken = 0;
+            while (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                long interval = this.minIntervalNanos[bit];
+                long last = this.lastSentNanos[bit];
+                if (interval == 0 || last == NEVER_SENT || now - last >= interval) {
+                    taken |= bits & -bits;
+                    this.lastSentNanos[bit] = now;
+                } else {
+                    deferred = true;
+                }
+                bits &= bits - 1;
             }
+            out[word] = taken;
+            this.dirtyMask[word] &= ~taken;
         }
-        return dirtyList.isEmpty() ? null : dirtyList;
+        this.isDirty = deferred;
+        return deferred;
     }
 
     /**
-     * Gathers all defined entries, for initial spawn synchronization.
+     * Selects the bits of entries that every tracking player receives.
+     * Not synchronized: only reads the scope layout, which is immutable after construction.
      *
-     * @return A list containing all entries.
+     * @param mask The candidate bits.
+     * @param out  Receives the selected bits.
+     * @return True if any bit was selected.
      */
-    public List<Entry<?>> getAllEntries() {
-        return new ArrayList<>(entries.values());
+    public boolean selectUnscoped(long[] mask, long[] out) {
+        long any = 0;
+        for (int word = 0; word < this.dirtyMask.length; word++) {
+            out[word] = mask[word] & ~this.scopedMask[word];
+            any |= out[word];
+        }
+        return any != 0;
+    }
+
+    /**
+     * Selects the bits of scoped entries that a particular player may receive.
+     * Not synchronized: only reads the scope layout, which is immutable after construction.
+     *
+     * @param mask   The candidate bits.
+     * @param distSq The squared distance between the player and the body.
+     * @param rider  Whether the player is mounted on the body.
+     * @param out    Receives the selected bits.
+     * @return True if any bit was selected.
+     */
+    public boolean selectScoped(long[] mask, double distSq, boolean rider, long[] out) {
+        long any = 0;
+        for (int word = 0; word < this.dirtyMask.length; word++) {
+            long bits = mask[word] & this.scopedMask[word];
+            long selected = 0;
+            while (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                VxSyncScope scope = this.layout[bit].getAccessor().getScope();
+                if (scope == VxSyncScope.RIDERS ? rider : distSq <= this.radiusSq[bit]) {
+                    selected |= bits & -bits;
+                }
+                bits &= bits - 1;
+            }
+            out[word] = selected;
+            any |= selected;
+        }
+        return any != 0;
+    }
+
+    /**
+     * Checks a mask for scoped entries.
+     * Not synchronized: only reads the scope layout, which is immutable after construction.
+     *
+     * @param mask The candidate bits.
+     * @return True if the mask contains any scoped entry.
+     */
+    public boolean hasScoped(long[] mask) {
+        for (int word = 0; word < this.dirtyMask.length; word++) {
+            if ((mask[word] & this.scopedMask[word]) != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Computes the exact size of the record {@link #writeRecord} produces for the given bits.
+     * Only available if every entry uses a fixed-size serializer. Not synchronized, like the
+     * selection methods, since it only reads the immutable layout.
+     *
+     * @param mask The bits of the entries to include.
+     * @return The record size in bytes, or -1 if the layout contains variable-size entries.
+     */
+    public int recordSize(long[] mask) {
+        if (!this.fixedLayout) {
+            return -1;
+        }
+        int size = this.maskBytes;
+        for (int word = 0; word < this.dirtyMask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                size += this.fixedSizes[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        return size;
     }
 
     /**
      * Clears the dirty flag for all entries. Called after data has been successfully written to a packet.
      */
-    public void clearDirty() {
+    public synchronized void clearDirty() {
         this.isDirty = false;
-        for (Entry<?> entry : this.entries.values()) {
-            entry.setDirty(false);
+        Arrays.fill(this.dirtyMask, 0L);
+    }
+
+    /**
+     * Writes a record containing all changed entries and clears the dirty state.
+     *
+     * @param buf The buffer to write to.
+     * @return True if a record was written, false if nothing was dirty.
+     */
+    public synchronized boolean writeDirty(VxByteBuf buf) {
+        if (!this.isDirty) {
+            return false;
+        }
+        this.writeRecord(buf, this.dirtyMask);
+        this.clearDirty();
+        return true;
+    }
+
+    /**
+     * Writes a record containing every entry, for initial spawn synchronization.
+     *
+     * @param buf The buffer to write to.
+     */
+    public synchronized void writeAll(VxByteBuf buf) {
+        long[] all = new long[this.dirtyMask.length];
+        for (int bit = 0; bit < this.layout.length; bit++) {
+            all[bit >>> 6] |= 1L << bit;
         }
+        this.writeRecord(buf, all);
     }
 
     /**
-     * Writes a list of entries to a buffer.
+     * Writes the mask followed by the values of all entries whose bit is set.
+     * Fixed-size layouts reserve the whole record up front, so the values are written without
+     * intermediate capacity checks growing the buffer.
      *
-     * @param buf            The buffer to write to.
-     * @param entriesToWrite The list of entries to serialize.
+     * @param buf  The buffer to write to.
+     * @param mask The bits of the entries to include.
      */
     @SuppressWarnings("unchecked")
-    public static void writeEntries(VxByteBuf buf, List<Entry<?>> entriesToWrite) {
-        for (Entry<?> entry : entriesToWrite) {
-            VxDataAccessor<Object> accessor = (VxDataAccessor<Object>) entry.getAccessor();
-            buf.writeVarInt(accessor.getId());
-            accessor.getSerializer().write(buf, entry.getValue());
+    public synchronized void writeRecord(VxByteBuf buf, long[] mask) {
+        if (this.fixedLayout) {
+            buf.ensureWritable(this.recordSize(mask));
+        }
+
+        for (int i = 0; i < this.maskBytes; i++) {
+            buf.writeByte((int) (mask[i >>> 3] >>> ((i & 7) << 3)));
+        }
+        for (int word = 0; word < this.dirtyMask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                Entry<Object> entry = (Entry<Object>) this.layout[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                entry.getAccessor().getSerializer().write(buf, entry.getValue());
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Reads the dirty mask of a record into {@code out}.
+     */
+    private void readMask(ByteBuf buf, long[] out) {
+        Arrays.fill(out, 0L);
+        for (int i = 0; i < this.maskBytes; i++) {
+            out[i >>> 3] |= (buf.readByte() & 0xFFL) << ((i & 7) << 3);
         }
-        buf.writeVarInt(255); // End marker
     }
 
     /**
@@ -147,31 +445,33 @@ public class VxSynchronizedData {
     }
 
     /**
-     * Reads entries from a buffer sent by the server (S2C).
+     * Reads a record from a buffer sent by the server (S2C).
      * This method blindly trusts the source (the server) and applies all updates.
      *
      * @param buf  The buffer to read from.
      * @param body The body instance.
      */
-    public void readEntries(VxByteBuf buf, VxBody body) {
-        while (buf.isReadable()) {
-            int id = buf.readVarInt();
-            if (id == 255) { // End marker
-                break;
-            }
-            Entry<?> entry = this.entries.get(id);
-            if (entry != null) {
+    public synchronized void readEntries(VxByteBuf buf, VxBody body) {
+        long[] mask = this.incomingMask;
+        this.readMask(buf, mask);
+        for (int word = 0; word < mask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (bit >= this.layout.length) {
+                    VxMainClass.LOGGER.error("Unknown synchronized data bit {} for body type {}. Protocol corruption likely.", bit, body.getType().getTypeId());
+                    return; // Cannot skip unknown data length, stop reading to prevent further corruption
+                }
+                Entry<?> entry = this.layout[bit];
                 this.readEntryInternal(buf, entry);
                 this.dispatchUpdate(body, entry.getAccessor());
-            } else {
-                VxMainClass.LOGGER.error("Unknown synchronized data ID {} for body type {}. Protocol corruption likely.", id, body.getType().getTypeId());
-                break; // Cannot skip unknown data length, stop reading to prevent further corruption
             }
         }
     }
 
     /**
-     * Reads entries from a buffer sent by a client (C2S).
+     * Reads a record from a buffer sent by a client (C2S).
      * Validates that the client has authority ({@link VxSyncMode#CLIENT_AUTHORITY}) for each entry.
      * If a client tries to update SERVER-authoritative data, a warning is logged and the update is ignored.
      *
@@ -180,14 +480,19 @@ public class VxSynchronizedData {
      * @param player The player sending the update.
      */
     @SuppressWarnings("unchecked")
-    public void readEntriesC2S(VxByteBuf buf, VxBody body, ServerPlayer player) {
-        while (buf.isReadable()) {
-            int id = buf.readVarInt();
-            if (id == 255) {
-                break;
-            }
-            Entry<?> entry = this.entries.get(id);
-            if (entry != null) {
+    public synchronized void readEntriesC2S(VxByteBuf buf, VxBody body, ServerPlayer player) {
+        long[] mask = this.incomingMask;
+        this.readMask(buf, mask);
+        for (int word = 0; word < mask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                int bit = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (bit >= this.layout.length) {
+                    VxMainClass.LOGGER.error("Unknown C2S synchronized data bit {} from player {} for body type {}.", bit, player.getName().getString(), body.getType().getTypeId());
+                    return;
+                }
+                Entry<?> entry = this.layout[bit];
                 // Must read value to advance buffer regardless of authority
                 Object newValue = entry.getAccessor().getSerializer().read(buf);
 
@@ -195,18 +500,14 @@ public class VxSynchronizedData {
                     // Client allowed to update: Apply and mark dirty so it replicates to OTHER clients
                     if (!Objects.equals(newValue, entry.getValue())) {
                         ((Entry<Object>) entry).setValue(newValue);
-                        entry.setDirty(true);
-                        this.isDirty = true;
+                        this.markDirty(entry);
                         this.dispatchUpdate(body, entry.getAccessor());
                     }
                 } else {
                     // Client NOT allowed: Log warning (Anti-Cheat)
                     VxMainClass.LOGGER.warn("Player {} tried to manipulate SERVER-authoritative data (ID: {}) on Body {}",
-                            player.getName().getString(), id, body.getPhysicsId());
+                            player.getName().getString(), entry.getAccessor().getId(), body.getPhysicsId());
                 }
-            } else {
-                VxMainClass.LOGGER.error("Unknown C2S synchronized data ID {} from player {} for body type {}.", id, player.getName().getString(), body.getType().getTypeId());
-                break;
             }
         }
 
@@ -266,7 +567,10 @@ public class VxSynchronizedData {
     public static class Entry<T> {
         private final VxDataAccessor<T> accessor;
         private T value;
-        private boolean dirty;
+        /**
+         * The position of this entry in the dirty mask, assigned when the container is built.
+         */
+        private int bit;
 
         public Entry(VxDataAccessor<T> accessor, T value) {
             this.accessor = accessor;
@@ -284,13 +588,5 @@ public class VxSynchronizedData {
         public void setValue(T value) {
             this.value = value;
         }
-
-        public boolean isDirty() {
-            return dirty;
-        }
-
-        public void setDirty(boolean dirty) {
-            this.dirty = dirty;
-        }
     }
 }
\ No newline at end of file
@@ -35,6 +35,38 @@ public final class VxClientAccessor<T> extends VxDataAccessor<T> {
         return new VxClientAccessor<>(generateId(bodyClass), serializer);
     }
 
+    /**
+     * Sends updates of this data only to tracking players within the given radius around the body.
+     *
+     * @param radius The radius in blocks.
+     * @return This accessor for chaining.
+     */
+    public VxClientAccessor<T> nearby(double radius) {
+        setNearby(radius);
+        return this;
+    }
+
+    /**
+     * Sends updates of this data only to players mounted on the body.
+     *
+     * @return This accessor for chaining.
+     */
+    public VxClientAccessor<T> ridersOnly() {
+        setRidersOnly();
+        return this;
+    }
+
+    /**
+     * Limits updates of this data to the given number per second.
+     *
+     * @param updatesPerSecond The maximum number of updates per second.
+     * @return This accessor for chaining.
+     */
+    public VxClientAccessor<T> maxRate(int updatesPerSecond) {
+        setMaxRate(updatesPerSecond);
+        return this;
+    }
+
     @Override
     public VxSyncMode getMode() {
         return VxSyncMode.CLIENT_AUTHORITY;
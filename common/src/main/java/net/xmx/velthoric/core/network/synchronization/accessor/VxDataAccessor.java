@@ -8,6 +8,7 @@ import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.xmx.velthoric.core.network.synchronization.VxDataSerializer;
 import net.xmx.velthoric.core.network.synchronization.VxSyncMode;
+import net.xmx.velthoric.core.network.synchronization.VxSyncScope;
 
 import java.util.Objects;
 
@@ -28,6 +29,10 @@ public abstract class VxDataAccessor<T> {
     private final int id;
     private final VxDataSerializer<T> serializer;
 
+    private VxSyncScope scope = VxSyncScope.ALL_TRACKERS;
+    private double radius;
+    private long minIntervalNanos;
+
     protected VxDataAccessor(int id, VxDataSerializer<T> serializer) {
         this.id = id;
         this.serializer = serializer;
@@ -79,6 +84,61 @@ public abstract class VxDataAccessor<T> {
         return serializer;
     }
 
+    /**
+     * @return The set of tracking players that receive updates of this data.
+     */
+    public VxSyncScope getScope() {
+        return scope;
+    }
+
+    /**
+     * @return The radius around the body for {@link VxSyncScope#NEARBY} data, in blocks.
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return The minimum time between two updates of this data in nanoseconds, or 0 if unlimited.
+     */
+    public long getMinIntervalNanos() {
+        return minIntervalNanos;
+    }
+
+    /**
+     * Restricts updates to tracking players within the given radius around the body.
+     *
+     * @param radius The radius in blocks.
+     */
+    protected void setNearby(double radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Sync radius must be positive: " + radius);
+        }
+        this.scope = VxSyncScope.NEARBY;
+        this.radius = radius;
+    }
+
+    /**
+     * Restricts updates to players mounted on the body.
+     */
+    protected void setRidersOnly() {
+        this.scope = VxSyncScope.RIDERS;
+        this.radius = 0;
+    }
+
+    /**
+     * Limits how often updates of this data are sent. Changes in between are coalesced,
+     * and the latest value is sent once the interval has passed.
+     *
+     * @param updatesPerSecond The maximum number of updates per second.
+     */
+    protected void setMaxRate(int updatesPerSecond) {
+        if (updatesPerSecond <= 0) {
+            throw new IllegalArgumentException("Sync rate must be positive: " + updatesPerSecond);
+        }
+        this.minIntervalNanos = 1_000_000_000L / updatesPerSecond;
+    }
+
     /**
      * Returns the authority mode of this accessor.
      * Subclasses define whether they are SERVER or CLIENT authoritative.
@@ -35,6 +35,38 @@ public final class VxServerAccessor<T> extends VxDataAccessor<T> {
         return new VxServerAccessor<>(generateId(bodyClass), serializer);
     }
 
+    /**
+     * Sends updates of this data only to tracking players within the given radius around the body.
+     *
+     * @param radius The radius in blocks.
+     * @return This accessor for chaining.
+     */
+    public VxServerAccessor<T> nearby(double radius) {
+        setNearby(radius);
+        return this;
+    }
+
+    /**
+     * Sends updates of this data only to players mounted on the body.
+     *
+     * @return This accessor for chaining.
+     */
+    public VxServerAccessor<T> ridersOnly() {
+        setRidersOnly();
+        return this;
+    }
+
+    /**
+     * Limits updates of this data to the given number per second.
+     *
+     * @param updatesPerSecond The maximum number of updates per second.
+     * @return This accessor for chaining.
+     */
+    public VxServerAccessor<T> maxRate(int updatesPerSecond) {
+        setMaxRate(updatesPerSecond);
+        return this;
+    }
+
     @Override
     public VxSyncMode getMode() {
         return VxSyncMode.SERVER_AUTHORITY;
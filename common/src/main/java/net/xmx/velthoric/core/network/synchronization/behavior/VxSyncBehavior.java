@@ -5,12 +5,15 @@
 package net.xmx.velthoric.core.network.synchronization.behavior;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.minecraft.server.level.ServerPlayer;
 import net.xmx.velthoric.core.behavior.VxBehavior;
 import net.xmx.velthoric.core.behavior.VxBehaviorId;
@@ -22,8 +25,12 @@ import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
 import net.xmx.velthoric.core.body.server.VxServerBodyManager;
 import net.xmx.velthoric.core.body.VxBody;
 import net.xmx.velthoric.core.network.internal.VxNetworkDispatcher;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
 import net.xmx.velthoric.core.network.synchronization.packet.C2SSynchronizedDataBatchPacket;
-import net.xmx.velthoric.core.network.synchronization.packet.S2CSynchronizedDataBatchPacket;
+import net.xmx.velthoric.core.mounting.behavior.VxMountBehavior;
+import net.xmx.velthoric.core.network.synchronization.VxSyncScope;
+import net.xmx.velthoric.core.network.synchronization.VxSynchronizedData;
+import net.xmx.velthoric.network.IVxNetPacket;
 import net.xmx.velthoric.network.VxByteBuf;
 import net.xmx.velthoric.network.VxNetworking;
 
@@ -42,8 +49,10 @@ import java.util.UUID;
  *   they control (e.g. input-driven custom data).</li>
  * </ul>
  * <p>
- * To minimize allocations and GC pressure, this system uses thread-local serialization 
- * buffers and data-driven bitmask checks for efficiency.
+ * To minimize allocations and GC pressure, this system uses thread-local serialization
+ * buffers and data-driven bitmask checks for efficiency. Each body update is a compact
+ * dirty-mask record (see {@link VxSynchronizedData}), and server batches are written straight
+ * into pooled buffers grouped by chunk and receiving player.
  *
  * @author xI-Mx-Ix
  */
@@ -54,6 +63,11 @@ public class VxSyncBehavior implements VxBehavior {
      */
     private static final int DEFAULT_BUFFER_SIZE = 1024;
 
+    /**
+     * The maximum uncompressed size of a single S2C batch. Larger batches are split.
+     */
+    private static final int MAX_BATCH_PAYLOAD_SIZE = 64 * 1024;
+
     /**
      * Reusable thread-local buffer to avoid frequent allocations during bulk synchronization.
      */
@@ -65,6 +79,33 @@ public class VxSyncBehavior implements VxBehavior {
      */
     private final IntSet dirtyBodiesC2S = new IntOpenHashSet();
 
+    /**
+     * Server-side grouping of dirty bodies by chunk, filled and cleared within a single sync cycle.
+     * Only accessed by the network thread of the owning world.
+     */
+    private final Long2ObjectMap<ObjectArrayList<VxBody>> dirtyByChunk = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Server-side pooled batch buffer per receiving player, filled during a single sync cycle.
+     */
+    private final Map<ServerPlayer, ByteBuf> playerBatches = new Object2ObjectOpenHashMap<>();
+
+    /**
+     * Bodies with changes held back by a send rate limit, re-queued at the end of a sync cycle.
+     */
+    private final ObjectArrayList<VxBody> deferredBodies = new ObjectArrayList<>();
+
+    /**
+     * Scratch dirty masks used while splitting a body's changes by scope (network thread only).
+     */
+    private final long[] sendableMask = new long[VxSynchronizedData.MAX_MASK_WORDS];
+    private final long[] selectedMask = new long[VxSynchronizedData.MAX_MASK_WORDS];
+
+    /**
+     * The number of records serialized in the current broadcast pass, for the network metrics.
+     */
+    private int passRecords;
+
     /**
      * Default constructor.
      */
@@ -135,10 +176,10 @@ public class VxSyncBehavior implements VxBehavior {
             Iterator<Integer> it = dirtyBodiesC2S.iterator();
             while (it.hasNext()) {
                 int netId = it.next();
-                Integer index = store.getIndexForNetworkId(netId);
+                int index = store.getIndexForNetworkId(netId);
 
                 // Body might have been removed or is no longer tracked
-                if (index == null) {
+                if (index == -1) {
                     it.remove();
                     continue;
                 }
@@ -176,8 +217,8 @@ public class VxSyncBehavior implements VxBehavior {
      */
     public void applyS2CUpdate(VxClientBodyManager manager, int networkId, ByteBuf payload) {
         VxClientBodyDataStore store = manager.getStore();
-        Integer index = store.getIndexForNetworkId(networkId);
-        if (index == null) return;
+        int index = store.getIndexForNetworkId(networkId);
+        if (index == -1) return;
 
         UUID id = store.getIdForIndex(index);
         if (id == null) return;
@@ -226,60 +267,178 @@ public class VxSyncBehavior implements VxBehavior {
     /**
      * Scans for bodies with dirty synchronized data and broadcasts updates to tracking players.
      * <p>
+     * Dirty bodies are taken from the manager's lock-free dirty queue, so the cost of a cycle depends only
+     * on the number of changed bodies and the data store monitor is never taken. They are grouped by chunk,
+     * and the unscoped records of a chunk are serialized exactly once into a pooled buffer, which is then
+     * appended to the pooled batch buffer of every player watching that chunk. Bodies whose synchronized
+     * fields are all fixed-size are written straight into the chunk buffer; only variable-size layouts go
+     * through the scratch buffer to determine their length.
+     * <p>
+     * Entries with a {@link VxSyncScope} other than {@link VxSyncScope#ALL_TRACKERS} are written per player
+     * into that player's batch, only if the player is within the entry's radius or mounted on the body.
+     * Entries with a maximum send rate are held back until their interval has passed; their bodies are
+     * re-queued so the latest value is sent in a later cycle.
+     * <p>
      * This method is designed to be called from the network thread to offload serialization.
      *
      * @param bodyManager The server-side body manager.
      * @param dispatcher  The network dispatcher for tracker resolution.
      */
     public void broadcastS2CUpdates(VxServerBodyManager bodyManager, VxNetworkDispatcher dispatcher) {
-        VxServerBodyDataStore dataStore = bodyManager.getDataStore();
-        IntArrayList dirtyIndices = new IntArrayList();
-
-        // 1. Collect indices of bodies with server-side dirty flags
-        VxServerBodyDataContainer c = dataStore.serverCurrent();
-        synchronized (dataStore) {
-            for (int i = 0; i < dataStore.getCapacity(); i++) {
-                if (c.isCustomDataDirty[i]) {
-                    dirtyIndices.add(i);
-                    c.isCustomDataDirty[i] = false;
-                }
+        // 1. Drain the dirty queue and group the changed bodies by chunk. Bodies without changes are never visited.
+        VxServerBodyDataContainer c = bodyManager.getDataStore().serverCurrent();
+        VxBody dirty;
+        while ((dirty = bodyManager.pollDirtyCustomData()) != null) {
+            // Release the flag first: changes racing with serialization re-queue the body instead of getting lost
+            dirty.getSynchronizedData().clearQueued();
+            int index = dirty.getDataStoreIndex();
+            if (index == -1 || index >= c.getCapacity()) continue;
+
+            long chunkKey = c.chunkKey[index];
+            ObjectArrayList<VxBody> list = dirtyByChunk.get(chunkKey);
+            if (list == null) {
+                list = new ObjectArrayList<>();
+                dirtyByChunk.put(chunkKey, list);
             }
+            list.add(dirty);
         }
 
-        if (dirtyIndices.isEmpty()) return;
+        if (dirtyByChunk.isEmpty()) return;
 
-        Map<ServerPlayer, Map<Integer, byte[]>> playerUpdateMap = new Object2ObjectOpenHashMap<>();
-        VxByteBuf serializationBuffer = THREAD_LOCAL_BUF.get();
+        VxMountBehavior mounts = bodyManager.getBehaviorManager().getBehavior(VxMountBehavior.ID);
+        long now = System.nanoTime();
+        passRecords = 0;
+        VxByteBuf chunkBuf = new VxByteBuf(PooledByteBufAllocator.DEFAULT.directBuffer(DEFAULT_BUFFER_SIZE));
+        VxByteBuf recordBuf = new VxByteBuf(PooledByteBufAllocator.DEFAULT.directBuffer(DEFAULT_BUFFER_SIZE));
+        VxByteBuf scratch = THREAD_LOCAL_BUF.get();
+        try {
+            for (Long2ObjectMap.Entry<ObjectArrayList<VxBody>> group : dirtyByChunk.long2ObjectEntrySet()) {
+                long chunkKey = group.getLongKey();
+                chunkBuf.clear();
+
+                // 2. Serialize the unscoped records of this chunk once; scoped records go to each eligible player
+                ObjectArrayList<VxBody> bodies = group.getValue();
+                for (int i = 0; i < bodies.size(); i++) {
+                    VxBody body = bodies.get(i);
+                    VxSynchronizedData data = body.getSynchronizedData();
+                    // Selecting and writing must see the same values while the game thread keeps setting them
+                    synchronized (data) {
+                        if (!data.isDirty()) continue;
+                        if (data.takeSendable(now, sendableMask)) {
+                            deferredBodies.add(body);
+                        }
+                        if (data.selectUnscoped(sendableMask, selectedMask)) {
+                            writeRecord(chunkBuf, scratch, body.getNetworkId(), data, selectedMask);
+                            passRecords++;
+                        }
+                        if (data.hasScoped(sendableMask)) {
+                            dispatchScoped(dispatcher, mounts, c, chunkKey, body, data, recordBuf, scratch);
+                        }
+                    }
+                }
+                if (!chunkBuf.isReadable()) continue;
 
-        // 2. Serialize updates once per body and identify interested players
-        for (int index : dirtyIndices) {
-            UUID id = dataStore.getIdForIndex(index);
-            if (id == null) continue;
-
-            VxBody body = bodyManager.getVxBody(id);
-            if (body == null) continue;
-
-            serializationBuffer.clear();
-            if (body.writeDirtySyncData(serializationBuffer)) {
-                byte[] payload = new byte[serializationBuffer.readableBytes()];
-                serializationBuffer.readBytes(payload);
-
-                int netId = body.getNetworkId();
-                dispatcher.forEachTrackerForBody(netId, player ->
-                    playerUpdateMap.computeIfAbsent(player, p -> new Object2ObjectArrayMap<>())
-                            .put(netId, payload)
-                );
-                body.getSynchronizedData().clearDirty();
+                // 3. Append the chunk's records to the batch of every watching player
+                dispatcher.forEachWatcherOfChunk(chunkKey, player -> appendToBatch(dispatcher, player, chunkBuf));
             }
-        }
 
-        // 3. Dispatch batch packets to players directly from the network thread.
-        if (!playerUpdateMap.isEmpty()) {
-            playerUpdateMap.forEach((player, data) -> {
-                if (!data.isEmpty()) {
-                    VxNetworking.sendToPlayer(player, new S2CSynchronizedDataBatchPacket(data));
+            // 4. Dispatch batch packets to players directly from the network thread.
+            for (Map.Entry<ServerPlayer, ByteBuf> entry : playerBatches.entrySet()) {
+                if (entry.getValue().isReadable()) {
+                    sendBatch(dispatcher, entry.getKey(), entry.getValue());
                 }
-            });
+            }
+        } finally {
+            chunkBuf.release();
+            recordBuf.release();
+            for (ByteBuf batch : playerBatches.values()) {
+                batch.release();
+            }
+            playerBatches.clear();
+            dirtyByChunk.clear();
+            VxNetworkMetrics.getInstance().recordCustomDataRecords(passRecords);
+
+            // Rate-limited changes stay dirty; queue their bodies again for a later cycle
+            for (int i = 0; i < deferredBodies.size(); i++) {
+                bodyManager.markCustomDataDirty(deferredBodies.get(i));
+            }
+            deferredBodies.clear();
+        }
+    }
+
+    /**
+     * Writes the scoped part of a body's changes into the batch of every watching player allowed to see it.
+     * Must be called while holding the monitor of {@code data}, with {@link #sendableMask} populated.
+     */
+    private void dispatchScoped(VxNetworkDispatcher dispatcher, VxMountBehavior mounts, VxServerBodyDataContainer c,
+                                long chunkKey, VxBody body, VxSynchronizedData data, VxByteBuf recordBuf, VxByteBuf scratch) {
+        int index = body.getDataStoreIndex();
+        if (index == -1 || index >= c.getCapacity()) return;
+        double x = c.posX[index];
+        double y = c.posY[index];
+        double z = c.posZ[index];
+
+        dispatcher.forEachWatcherOfChunk(chunkKey, player -> {
+            boolean rider = mounts != null && mounts.isRiding(player.getUUID(), body.getPhysicsId());
+            if (!data.selectScoped(sendableMask, player.distanceToSqr(x, y, z), rider, selectedMask)) return;
+
+            recordBuf.clear();
+            writeRecord(recordBuf, scratch, body.getNetworkId(), data, selectedMask);
+            passRecords++;
+            appendToBatch(dispatcher, player, recordBuf);
+        });
+    }
+
+    /**
+     * Appends serialized records to a player's pooled batch, sending the batch first if it would overflow.
+     */
+    private void appendToBatch(VxNetworkDispatcher dispatcher, ServerPlayer player, ByteBuf records) {
+        int length = records.readableBytes();
+        ByteBuf batch = playerBatches.get(player);
+        if (batch == null) {
+            batch = PooledByteBufAllocator.DEFAULT.directBuffer(Math.max(DEFAULT_BUFFER_SIZE, length));
+            playerBatches.put(player, batch);
+        } else if (batch.isReadable() && batch.readableBytes() + length > MAX_BATCH_PAYLOAD_SIZE) {
+            sendBatch(dispatcher, player, batch);
+            batch.clear();
+        }
+        batch.writeBytes(records, records.readerIndex(), length);
+    }
+
+    /**
+     * Writes a record for the given entries of a body, framed by its network ID and the record length.
+     *
+     * @param out       The buffer to append to.
+     * @param scratch   Scratch buffer used to measure variable-size records.
+     * @param networkId The network ID of the body.
+     * @param data      The body's synchronized data, whose monitor the caller holds.
+     * @param mask      The bits of the entries to write.
+     */
+    private static void writeRecord(VxByteBuf out, VxByteBuf scratch, int networkId, VxSynchronizedData data, long[] mask) {
+        int size = data.recordSize(mask);
+        if (size >= 0) {
+            // Fast path: the record size is known up front, write directly into the batch
+            out.writeVarInt(networkId);
+            out.writeVarInt(size);
+            data.writeRecord(out, mask);
+        } else {
+            scratch.clear();
+            data.writeRecord(scratch, mask);
+            out.writeVarInt(networkId);
+            out.writeVarInt(scratch.readableBytes());
+            out.writeBytes(scratch, scratch.readerIndex(), scratch.readableBytes());
+        }
+    }
+
+    /**
+     * Compresses and sends a raw batch to a player. The raw batch is not released.
+     */
+    private static void sendBatch(VxNetworkDispatcher dispatcher, ServerPlayer player, ByteBuf batch) {
+        IVxNetPacket packet = dispatcher.getPacketFactory().createSynchronizedDataPacket(batch);
+        try {
+            VxNetworking.sendToPlayer(player, packet);
+        } finally {
+            packet.release();
         }
     }
-}
\ No newline at end of file
+}
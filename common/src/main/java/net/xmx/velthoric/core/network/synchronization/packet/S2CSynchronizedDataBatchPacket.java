@@ -6,14 +6,14 @@ package net.xmx.velthoric.core.network.synchronization.packet;
 
 import com.github.luben.zstd.Zstd;
 import dev.architectury.networking.NetworkManager;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
-import net.minecraft.network.FriendlyByteBuf;
 import net.xmx.velthoric.core.body.client.VxClientBodyManager;
 import net.xmx.velthoric.network.IVxNetPacket;
 import net.xmx.velthoric.network.VxByteBuf;
 
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 /**
  * A network packet (Server -> Client) that sends a ZSTD-compressed batch of custom data updates.
@@ -21,108 +21,121 @@ import java.util.Map;
  * This is used to synchronize non-physics state from the server to clients. It allows
  * for efficient updates of arbitrary data associated with physics bodies by bundling
  * multiple updates into a single compressed payload.
- * </p>
+ * <p>
+ * <b>Layout:</b> The decompressed payload is a sequence of body records until the end of the buffer.
+ * Each record is the body's network ID (VarInt), the record length (VarInt) and the dirty-mask record
+ * written by {@link net.xmx.velthoric.core.network.synchronization.VxSynchronizedData}. The length
+ * allows the client to skip bodies it does not know without losing its position.
+ * <p>
+ * Like the state packet, the payload is held as a pooled direct buffer on both sides.
  *
  * @author xI-Mx-Ix
  */
 public class S2CSynchronizedDataBatchPacket implements IVxNetPacket {
 
     /**
-     * A map storing the network IDs of the bodies and their corresponding serialized custom data.
+     * ThreadLocal buffer for decompression on the client to avoid repeated allocations.
+     */
+    private static final ThreadLocal<ByteBuffer> DECOMPRESSION_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(64 * 1024));
+
+    /**
+     * ThreadLocal ByteBuf view over {@link #DECOMPRESSION_BUFFER}, recreated only when that buffer grows.
+     */
+    private static final ThreadLocal<ByteBuf> DECOMPRESSION_VIEW = ThreadLocal.withInitial(() -> Unpooled.wrappedBuffer(DECOMPRESSION_BUFFER.get().duplicate().clear()));
+
+    /**
+     * The compressed binary payload. On Server, this is a Pooled Direct Buffer. On Client, a pooled copy of the network data.
      */
-    private final Map<Integer, byte[]> dataUpdates;
+    private final ByteBuf data;
 
     /**
-     * Constructs a new packet with a map of object network IDs to their custom data.
+     * Constructs a new packet wrapping a compressed batch.
+     * Takes ownership of the passed ByteBuf (it must be released via {@link #release()}).
      *
-     * @param dataUpdates A map where the key is the body's network ID and the value is the serialized custom data.
+     * @param data The compressed Zstd data blob.
      */
-    public S2CSynchronizedDataBatchPacket(Map<Integer, byte[]> dataUpdates) {
-        this.dataUpdates = dataUpdates;
+    public S2CSynchronizedDataBatchPacket(ByteBuf data) {
+        this.data = data;
     }
 
     /**
      * Decodes the packet from the network buffer.
-     * <p>
-     * This method reads the compressed data block, decompresses it using Zstd, and
-     * reconstructs the update map by reading from the decompressed stream.
-     * </p>
+     * The compressed payload is copied into a pooled direct buffer, which is released in {@link #handle}.
      *
      * @param buf The buffer to read the compressed packet data from.
      * @return A new instance of the packet.
-     * @throws IllegalStateException If the decompression or reconstruction fails.
      */
     public static S2CSynchronizedDataBatchPacket decode(VxByteBuf buf) {
-        try {
-            int uncompressedSize = buf.readVarInt();
-            byte[] compressedData = buf.readByteArray();
-
-            // Decompress the received byte array using the uncompressed size hint
-            byte[] decompressedData = Zstd.decompress(compressedData, uncompressedSize);
-
-            FriendlyByteBuf decompressedBuf = new FriendlyByteBuf(Unpooled.wrappedBuffer(decompressedData));
-            int size = decompressedBuf.readVarInt();
-            Map<Integer, byte[]> dataUpdates = new Int2ObjectArrayMap<>(size);
-
-            for (int i = 0; i < size; i++) {
-                int id = decompressedBuf.readVarInt();
-                byte[] data = decompressedBuf.readByteArray();
-                dataUpdates.put(id, data);
-            }
-            return new S2CSynchronizedDataBatchPacket(dataUpdates);
-        } catch (Exception e) {
-            throw new IllegalStateException("Failed to decompress S2C sync data batch packet", e);
-        }
+        int length = buf.readVarInt();
+        ByteBuf copied = PooledByteBufAllocator.DEFAULT.directBuffer(length);
+        buf.readBytes(copied, length);
+        return new S2CSynchronizedDataBatchPacket(copied);
     }
 
     /**
      * Encodes the packet's data into the provided network buffer.
-     * <p>
-     * To maximize bandwidth efficiency, the update map is first written to a temporary
-     * buffer, which is then compressed using Zstd before being written to the final output buffer.
-     * </p>
+     * Writes the length prefix followed by the compressed bytes.
      *
      * @param buf The extended buffer to write the compressed packet data to.
      */
     @Override
     public void encode(VxByteBuf buf) {
-        FriendlyByteBuf tempBuf = new FriendlyByteBuf(Unpooled.buffer());
-        try {
-            tempBuf.writeVarInt(this.dataUpdates.size());
-            for (Map.Entry<Integer, byte[]> entry : this.dataUpdates.entrySet()) {
-                tempBuf.writeVarInt(entry.getKey());
-                tempBuf.writeByteArray(entry.getValue());
-            }
-
-            byte[] uncompressedData = new byte[tempBuf.readableBytes()];
-            tempBuf.readBytes(uncompressedData);
-
-            // Compress the serialized map data
-            byte[] compressedData = Zstd.compress(uncompressedData);
-            buf.writeVarInt(uncompressedData.length);
-            buf.writeByteArray(compressedData);
-        } finally {
-            tempBuf.release();
-        }
+        this.data.readerIndex(0);
+        buf.writeVarInt(this.data.readableBytes());
+        buf.writeBytes(this.data);
     }
 
     /**
      * Handles the packet on the client side.
      * <p>
-     * This method applies the synchronized data updates to the corresponding bodies
-     * via the client-side body manager, which forwards it to the behavior.
-     * </p>
+     * Decompresses the batch into a reusable buffer and forwards each record to the
+     * client-side body manager, which applies it through the sync behavior.
      *
      * @param context The network context.
      */
     @Override
     public void handle(NetworkManager.PacketContext context) {
         context.queue(() -> {
-            VxClientBodyManager manager = VxClientBodyManager.getInstance();
-            for (Map.Entry<Integer, byte[]> entry : this.dataUpdates.entrySet()) {
-                // Apply the serialized data to the body's synchronized data store
-                manager.updateSynchronizedData(entry.getKey(), Unpooled.wrappedBuffer(entry.getValue()));
+            try {
+                ByteBuffer compressedNio = this.data.nioBuffer();
+                long uncompressedSize = Zstd.decompressedSize(compressedNio);
+                if (Zstd.isError(uncompressedSize)) {
+                    return;
+                }
+
+                ByteBuffer targetBuf = DECOMPRESSION_BUFFER.get();
+                if (targetBuf.capacity() < uncompressedSize) {
+                    targetBuf = ByteBuffer.allocateDirect((int) uncompressedSize);
+                    DECOMPRESSION_BUFFER.set(targetBuf);
+                    DECOMPRESSION_VIEW.set(Unpooled.wrappedBuffer(targetBuf.duplicate().clear()));
+                }
+                targetBuf.clear();
+                Zstd.decompressDirectByteBuffer(targetBuf, 0, (int) uncompressedSize, compressedNio, 0, compressedNio.remaining());
+
+                ByteBuf db = DECOMPRESSION_VIEW.get();
+                db.setIndex(0, (int) uncompressedSize);
+                VxByteBuf records = new VxByteBuf(db);
+
+                VxClientBodyManager manager = VxClientBodyManager.getInstance();
+                while (records.isReadable()) {
+                    int networkId = records.readVarInt();
+                    int length = records.readVarInt();
+                    // Apply the record to the body's synchronized data store
+                    manager.updateSynchronizedData(networkId, records.readSlice(length));
+                }
+            } finally {
+                this.release();
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * Releases the pooled payload buffer.
+     */
+    @Override
+    public void release() {
+        if (this.data.refCnt() > 0) {
+            this.data.release();
+        }
+    }
+}
@@ -6,16 +6,23 @@ package net.xmx.velthoric.core.persistence;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.util.IllegalReferenceCountException;
+import it.unimi.dsi.fastutil.bytes.ByteArrays;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.dimension.DimensionType;
 import net.minecraft.world.level.storage.LevelResource;
+import net.xmx.velthoric.core.persistence.region.VxChunkCodec;
 import net.xmx.velthoric.core.persistence.region.VxRegionFile;
 import net.xmx.velthoric.core.persistence.region.VxRegionFileCache;
 import net.xmx.velthoric.init.VxMainClass;
 import net.xmx.velthoric.network.VxByteBuf;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -23,8 +30,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * A high-performance, generic storage system based on Minecraft's Region File concept.
@@ -36,9 +49,19 @@ import java.util.concurrent.ConcurrentHashMap;
  * <b>Performance features:</b>
  * <ul>
  *     <li><b>Netty Pooled Buffers:</b> Uses pooled memory for serialization to minimize GC pressure.</li>
- *     <li><b>Async I/O:</b> Writes are offloaded to a dedicated worker thread via {@link VxIOProcessor}.</li>
- *     <li><b>Batching:</b> Objects are grouped by chunk, reducing the number of file entries significantly.</li>
+ *     <li><b>Async I/O:</b> Reads and writes are offloaded to a small worker pool via {@link VxIOProcessor}.
+ *     Every region file is pinned to one worker, so different regions are processed in parallel while
+ *     work on one file stays ordered. Loads are prioritized over background saves.</li>
+ *     <li><b>Batching:</b> Objects are grouped by chunk, reducing the number of file entries significantly.
+ *     Flushes are coalesced per region file into a single batched write.</li>
+ *     <li><b>Compaction:</b> Region files that become mostly empty are rewritten in the background.</li>
+ *     <li><b>Read-Ahead:</b> Chunks can be {@link #prefetch prefetched} before they load. Their entries wait in
+ *     a bounded {@link VxReadAheadCache}, and the load is served from memory.</li>
  * </ul>
+ * <p>
+ * A chunk whose entry exists but cannot be read or decoded fails to load instead of loading empty.
+ * Its entry is never overwritten by this storage, so it can still be recovered, e.g. by restoring a lost
+ * dictionary file.
  *
  * @param <T> The runtime object type (e.g., VxBody).
  * @param <D> The intermediate serialized data record (e.g., VxSerializedBodyData).
@@ -46,28 +69,118 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public abstract class VxChunkBasedStorage<T, D> {
 
+    /**
+     * The number of I/O workers per storage. Region I/O is mostly latency bound, so a few workers
+     * are enough to keep a disk busy while staying bounded across storages and dimensions.
+     */
+    private static final int IO_WORKERS = Math.clamp(Runtime.getRuntime().availableProcessors() / 4, 1, 4);
+
+    /**
+     * The number of region files kept open per storage, split evenly across the workers.
+     */
+    private static final int MAX_OPEN_FILES = 64;
+
+    /**
+     * The maximum total size of the chunk entries read ahead per storage.
+     */
+    private static final long READ_AHEAD_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * How long a chunk entry that was read ahead is kept if its chunk does not load.
+     */
+    private static final long READ_AHEAD_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
     protected final Path storagePath;
-    protected final VxRegionFileCache regionCache;
     protected final VxIOProcessor ioProcessor;
 
+    /**
+     * One region file cache per I/O worker, indexed by {@link VxIOProcessor#shardOf}.
+     * A cache is only ever accessed from its own worker.
+     */
+    protected final VxRegionFileCache[] regionCaches;
+
     /**
      * Holds serialized chunk data waiting to be written to disk.
      * Key: ChunkPos as Long. Value: Netty ByteBuf (retained).
      */
     protected final ConcurrentHashMap<Long, ByteBuf> pendingWrites = new ConcurrentHashMap<>();
 
+    /**
+     * Holds chunk entries that were read ahead of their chunk load, see {@link #prefetch}.
+     */
+    protected final VxReadAheadCache readAheadCache = new VxReadAheadCache(READ_AHEAD_BYTES, READ_AHEAD_TTL_NANOS);
+
+    /**
+     * Chunks whose stored entry could not be read. Saves to them are skipped to preserve the entry.
+     */
+    protected final Set<Long> unreadableChunks = ConcurrentHashMap.newKeySet();
+
     public VxChunkBasedStorage(ServerLevel level, String folderName, String extension) {
-        Path worldRoot = level.getServer().getWorldPath(LevelResource.ROOT);
-        Path dimensionRoot = DimensionType.getStorageFolder(level.dimension(), worldRoot);
-        this.storagePath = dimensionRoot.resolve("velthoric").resolve(folderName);
-        this.regionCache = new VxRegionFileCache(storagePath, extension);
-        this.ioProcessor = new VxIOProcessor("IO-" + folderName);
+        this(DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT))
+                .resolve("velthoric").resolve(folderName), folderName, extension);
+    }
+
+    /**
+     * Creates a storage in an explicit directory, independent of a level (e.g. for tools and benchmarks).
+     *
+     * @param storagePath The directory of the region files.
+     * @param folderName  The name of the storage, used for the I/O thread names.
+     * @param extension   The file extension of the region files.
+     */
+    protected VxChunkBasedStorage(Path storagePath, String folderName, String extension) {
+        this(storagePath, folderName, extension, IO_WORKERS);
+    }
+
+    /**
+     * Creates a storage in an explicit directory with a fixed number of I/O workers (e.g. for benchmarks).
+     *
+     * @param storagePath The directory of the region files.
+     * @param folderName  The name of the storage, used for the I/O thread names.
+     * @param extension   The file extension of the region files.
+     * @param ioWorkers   The number of I/O workers.
+     */
+    protected VxChunkBasedStorage(Path storagePath, String folderName, String extension, int ioWorkers) {
+        this.storagePath = storagePath;
+        this.ioProcessor = new VxIOProcessor("IO-" + folderName, ioWorkers);
+
+        VxChunkCodec codec = new VxChunkCodec(storagePath.resolve("dictionary." + extension + ".zdict"));
+        int filesPerWorker = Math.max(4, MAX_OPEN_FILES / ioWorkers);
+        this.regionCaches = new VxRegionFileCache[ioWorkers];
+        for (int i = 0; i < ioWorkers; i++) {
+            this.regionCaches[i] = new VxRegionFileCache(storagePath, extension, codec, filesPerWorker);
+        }
     }
 
     public void shutdown() {
+        readAheadCache.clear();
         flush(true).join();
         ioProcessor.close();
-        regionCache.closeAll();
+        for (VxRegionFileCache cache : regionCaches) {
+            cache.closeAll();
+        }
+    }
+
+    /**
+     * @return The cache of chunk entries read ahead of their chunk load.
+     */
+    public VxReadAheadCache getReadAheadCache() {
+        return readAheadCache;
+    }
+
+    /**
+     * @param pos A chunk position.
+     * @return The packed position of the region containing the chunk, used as the I/O shard key.
+     */
+    private static long regionKey(ChunkPos pos) {
+        return ChunkPos.asLong(pos.x >> 5, pos.z >> 5);
+    }
+
+    /**
+     * @param pos A chunk position.
+     * @return The region file cache of the worker owning the chunk's region.
+     */
+    private VxRegionFileCache cacheFor(ChunkPos pos) {
+        return regionCaches[ioProcessor.shardOf(regionKey(pos))];
     }
 
     /**
@@ -75,13 +188,58 @@ public abstract class VxChunkBasedStorage<T, D> {
      * <p>
      * This method prioritizes in-memory pending writes over disk storage to ensure
      * data consistency (Read-Your-Writes). If data is pending in the write queue,
-     * it is used directly; otherwise, the data is read from the region file.
+     * it is used directly; otherwise, the data is taken from the read-ahead cache or read from the region file.
+     * Loads run as urgent work on the region's worker, ahead of any queued saves.
      *
      * @param pos The chunk position.
-     * @return A future containing the list of deserialized data objects.
+     * @return A future containing the list of deserialized data objects. Completes exceptionally if the
+     * chunk has an entry that cannot be read.
      */
     public CompletableFuture<List<D>> loadChunk(ChunkPos pos) {
+        return readChunkAsync(pos, buffer -> deserializeChunk(pos, buffer), Collections.emptyList());
+    }
+
+    /**
+     * Loads the serialized entry of a chunk asynchronously without deserializing it, see {@link #loadChunk}.
+     * The entry can be deserialized later with {@link #decodeChunk}.
+     *
+     * @param pos The chunk position.
+     * @return A future containing a copy of the chunk entry, or null if the chunk has no data. Completes
+     * exceptionally if the chunk has an entry that cannot be read.
+     */
+    public CompletableFuture<byte[]> loadChunkData(ChunkPos pos) {
+        return readChunkAsync(pos, buffer -> buffer.isReadable() ? ByteBufUtil.getBytes(buffer) : null, null);
+    }
+
+    /**
+     * Deserializes a chunk entry obtained from {@link #loadChunkData}, keeping whatever could be read before an error.
+     *
+     * @param pos  The chunk position.
+     * @param data The chunk entry.
+     * @return The deserialized data objects.
+     */
+    public List<D> decodeChunk(ChunkPos pos, byte[] data) {
+        return deserializeChunk(pos, Unpooled.wrappedBuffer(data));
+    }
+
+    /**
+     * Reads the entry of a chunk on the region's worker and converts it while the buffer is valid.
+     *
+     * @param pos    The chunk position.
+     * @param reader Converts the chunk entry. The buffer is released after it returns.
+     * @param empty  The result for chunks without data.
+     * @param <R>    The result type.
+     * @return A future containing the result.
+     */
+    private <R> CompletableFuture<R> readChunkAsync(ChunkPos pos, Function<ByteBuf, R> reader, R empty) {
         long key = pos.toLong();
+        long shard = regionKey(pos);
+        if (ioProcessor.isShutdown()) {
+            return CompletableFuture.completedFuture(empty);
+        }
+
+        // A read-ahead entry is used once, by the load it was read for, and is never newer than a pending write
+        byte[] readAhead = readAheadCache.take(key);
 
         // Check the pending writes map on the calling thread to capture the latest state.
         ByteBuf pendingBuf = pendingWrites.get(key);
@@ -89,7 +247,7 @@ public abstract class VxChunkBasedStorage<T, D> {
         if (pendingBuf != null) {
             // If the pending buffer is not readable (empty), it represents a pending deletion.
             if (!pendingBuf.isReadable()) {
-                return CompletableFuture.completedFuture(Collections.emptyList());
+                return CompletableFuture.completedFuture(empty);
             }
 
             // Create a retained duplicate of the buffer.
@@ -97,74 +255,177 @@ public abstract class VxChunkBasedStorage<T, D> {
             // We retain it to ensure it remains valid during the asynchronous deserialization, even if flush() completes.
             final ByteBuf asyncSlice = pendingBuf.retainedDuplicate();
 
-            return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ioProcessor.supply(shard, true, () -> {
+                    try {
+                        return reader.apply(asyncSlice);
+                    } finally {
+                        asyncSlice.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                asyncSlice.release();
+                return CompletableFuture.completedFuture(empty);
+            }
+        }
+
+        if (readAhead != null) {
+            if (readAhead.length == 0) {
+                return CompletableFuture.completedFuture(empty);
+            }
+            // Served from memory. Converted on the region's worker as urgent work, ahead of its queued writes and read-aheads
+            try {
+                return ioProcessor.supply(shard, true, () -> reader.apply(Unpooled.wrappedBuffer(readAhead)));
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.completedFuture(empty);
+            }
+        }
+
+        // If no pending data exists, proceed to read from disk on the I/O thread.
+        try {
+            return ioProcessor.supply(shard, true, () -> readFromDisk(pos, reader, empty));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(empty);
+        }
+    }
+
+    /**
+     * Reads the entry of a chunk on the region's worker, see {@link #readChunkAsync}.
+     */
+    private <R> R readFromDisk(ChunkPos pos, Function<ByteBuf, R> reader, R empty) {
+        long key = pos.toLong();
+        // Secondary check within the async thread: a save may have been queued in the meantime.
+        // Since loads overtake queued saves, that data must be used instead of the disk state.
+        ByteBuf lateCheck = pendingWrites.get(key);
+        if (lateCheck != null) {
+            if (!lateCheck.isReadable()) return empty;
+            ByteBuf lateSlice = null;
+            try {
+                lateSlice = lateCheck.retainedDuplicate();
+            } catch (IllegalReferenceCountException e) {
+                // The write completed and released the buffer concurrently, the disk is up to date.
+            }
+            if (lateSlice != null) {
                 try {
-                    return deserializeChunk(asyncSlice);
+                    return reader.apply(lateSlice);
                 } finally {
-                    asyncSlice.release();
+                    lateSlice.release();
                 }
-            }, ioProcessor.getExecutor());
+            }
         }
 
-        // If no pending data exists, proceed to read from disk on the I/O thread.
-        return CompletableFuture.supplyAsync(() -> {
-            // Secondary check within the async thread to handle edge cases.
-            ByteBuf lateCheck = pendingWrites.get(key);
-            if (lateCheck != null) {
-                if (!lateCheck.isReadable()) return Collections.emptyList();
-                // Note: Ideally we would use the pending buffer here, but the race window is negligible.
-                // Proceeding to disk is a safe fallback.
+        ByteBuf diskBuf;
+        try {
+            // Do not create the file if it doesn't exist (lazy loading).
+            VxRegionFile regionFile = cacheFor(pos).getRegionFile(pos, false);
+            if (regionFile == null) {
+                return empty;
             }
+            diskBuf = regionFile.read(pos);
+        } catch (IOException e) {
+            // Loading the chunk empty would let the next save delete the stored entry
+            unreadableChunks.add(key);
+            VxMainClass.LOGGER.error("Failed to load chunk data at {}. The stored entry is kept and the chunk will not be saved.", pos, e);
+            throw new CompletionException(e);
+        }
 
-            try {
-                // Do not create the file if it doesn't exist (lazy loading).
-                VxRegionFile regionFile = regionCache.getRegionFile(pos, false);
-                if (regionFile == null) {
-                    return Collections.emptyList();
-                }
+        if (diskBuf == null) {
+            return empty;
+        }
+        try {
+            return reader.apply(diskBuf);
+        } finally {
+            diskBuf.release();
+        }
+    }
 
-                ByteBuf diskBuf = regionFile.read(pos);
-                if (diskBuf != null) {
-                    try {
-                        return deserializeChunk(diskBuf);
-                    } finally {
-                        diskBuf.release();
-                    }
-                }
-            } catch (IOException e) {
-                VxMainClass.LOGGER.error("Failed to load chunk data at {}", pos, e);
+    /**
+     * Reads the entry of a chunk into the read-ahead cache in the background, so that a following
+     * {@link #loadChunk} or {@link #loadChunkData} is served from memory.
+     * <p>
+     * Does nothing if the chunk is already cached, being read or has a pending write. Read-ahead runs
+     * as background work, so it never delays chunk loads.
+     *
+     * @param pos The chunk position.
+     */
+    public void prefetch(ChunkPos pos) {
+        long key = pos.toLong();
+        if (pendingWrites.containsKey(key)) return;
+
+        Object token = readAheadCache.begin(key);
+        if (token == null) return;
+
+        try {
+            ioProcessor.run(regionKey(pos), false, () -> readAheadCache.complete(key, token, readAhead(pos)));
+        } catch (RejectedExecutionException e) {
+            readAheadCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Reads the entry of a chunk from its region file for {@link #prefetch}.
+     *
+     * @param pos The chunk position.
+     * @return A copy of the entry, an empty array if the chunk has no data, or null if the read failed.
+     */
+    private byte @Nullable [] readAhead(ChunkPos pos) {
+        try {
+            VxRegionFile regionFile = cacheFor(pos).getRegionFile(pos, false);
+            if (regionFile == null) {
+                return ByteArrays.EMPTY_ARRAY;
+            }
+            ByteBuf diskBuf = regionFile.read(pos);
+            if (diskBuf == null) {
+                return ByteArrays.EMPTY_ARRAY;
+            }
+            try {
+                return ByteBufUtil.getBytes(diskBuf);
+            } finally {
+                diskBuf.release();
             }
-            return Collections.emptyList();
-        }, ioProcessor.getExecutor());
+        } catch (IOException e) {
+            VxMainClass.LOGGER.error("Failed to read ahead chunk data at {}", pos, e);
+            return null;
+        }
     }
 
     /**
      * Serializes a collection of objects belonging to a chunk and queues them for writing.
+     *
+     * @param pos     The chunk position.
+     * @param objects The objects to save.
+     */
+    public void saveChunk(ChunkPos pos, Collection<T> objects) {
+        queueChunk(pos, objects.isEmpty(), buffer -> writeChunk(pos, objects, buffer));
+    }
+
+    /**
+     * Serializes a chunk entry and queues it for writing.
      * <p>
      * This method manages the lifecycle of the Netty buffers. It updates the pending write map
      * with the new state. If a pending write for this chunk already exists, the previous buffer
      * is released to prevent memory leaks.
      *
-     * @param pos     The chunk position.
-     * @param objects The objects to save.
+     * @param pos    The chunk position.
+     * @param empty  Whether the chunk has no data, which deletes its entry.
+     * @param writer Writes the chunk entry, only called if the chunk is not empty.
      */
-    public void saveChunk(ChunkPos pos, Collection<T> objects) {
+    protected void queueChunk(ChunkPos pos, boolean empty, Consumer<VxByteBuf> writer) {
         long key = pos.toLong();
+        if (unreadableChunks.contains(key)) {
+            VxMainClass.LOGGER.debug("Skipping save of chunk {}, its stored entry could not be read", pos);
+            return;
+        }
         ByteBuf newBuffer;
 
-        if (objects.isEmpty()) {
+        if (empty) {
             // Use the shared EMPTY_BUFFER to signify deletion or an empty chunk.
             newBuffer = Unpooled.EMPTY_BUFFER;
         } else {
             newBuffer = ByteBufAllocator.DEFAULT.ioBuffer();
             boolean success = false;
             try {
-                VxByteBuf vxBuf = new VxByteBuf(newBuffer);
-                vxBuf.writeInt(objects.size());
-
-                for (T obj : objects) {
-                    writeSingle(obj, vxBuf);
-                }
+                writer.accept(new VxByteBuf(newBuffer));
                 success = true;
             } catch (Exception e) {
                 VxMainClass.LOGGER.error("Failed to serialize chunk {}", pos, e);
@@ -186,12 +447,16 @@ public abstract class VxChunkBasedStorage<T, D> {
         if (oldBuffer != null && oldBuffer != Unpooled.EMPTY_BUFFER) {
             oldBuffer.release();
         }
+
+        // Only after the pending write is visible, so a read-ahead cannot start from the old disk state again
+        readAheadCache.invalidate(key);
     }
 
     /**
      * Flushes all pending buffers to disk asynchronously.
      * <p>
-     * This method iterates over the pending writes and schedules I/O tasks.
+     * This method groups the pending writes by region and schedules one I/O task per region file,
+     * which writes all of its chunks in a single batch (see {@link VxRegionFile#writeBatch}).
      * It uses reference counting to ensure buffers remain valid during the asynchronous operation.
      * The map entry is only removed after the write completes, and only if the entry has not
      * been updated by a subsequent save operation in the meantime.
@@ -207,6 +472,7 @@ public abstract class VxChunkBasedStorage<T, D> {
         }
 
         List<CompletableFuture<Void>> futures = new ArrayList<>();
+        Long2ObjectMap<RegionBatch> batches = new Long2ObjectOpenHashMap<>();
 
         // Create a snapshot of keys to iterate over the currently pending tasks
         for (Long chunkKey : pendingWrites.keySet()) {
@@ -231,35 +497,47 @@ public abstract class VxChunkBasedStorage<T, D> {
             }
 
             ChunkPos pos = new ChunkPos(chunkKey);
+            batches.computeIfAbsent(regionKey(pos), k -> new RegionBatch()).add(chunkKey, pos, buffer);
+        }
 
+        // Submit one coalesced write per region to the worker owning it
+        for (Long2ObjectMap.Entry<RegionBatch> entry : batches.long2ObjectEntrySet()) {
+            RegionBatch batch = entry.getValue();
             try {
-                CompletableFuture<Void> writeTask = CompletableFuture.runAsync(() -> {
+                CompletableFuture<Void> writeTask = ioProcessor.run(entry.getLongKey(), false, () -> {
                     try {
-                        writeToDisk(pos, buffer);
+                        writeToDisk(batch.positions, batch.buffers);
                     } finally {
-                        // Conditional Removal:
-                        // Remove the entry from the map only if it still maps to the specific buffer we just wrote.
-                        // If the map contains a different buffer, a new save occurred during the write,
-                        // and we must leave the new data pending.
-                        if (pendingWrites.remove(chunkKey, buffer)) {
-                            // If we successfully removed it, we are responsible for releasing the map's reference.
+                        for (int i = 0; i < batch.buffers.size(); i++) {
+                            long chunkKey = batch.chunkKeys.getLong(i);
+                            ByteBuf buffer = batch.buffers.get(i);
+
+                            // Conditional Removal:
+                            // Remove the entry from the map only if it still maps to the specific buffer we just wrote.
+                            // If the map contains a different buffer, a new save occurred during the write,
+                            // and we must leave the new data pending.
+                            if (pendingWrites.remove(chunkKey, buffer)) {
+                                // If we successfully removed it, we are responsible for releasing the map's reference.
+                                if (buffer != Unpooled.EMPTY_BUFFER) {
+                                    buffer.release();
+                                }
+                            }
+
+                            // Release the reference acquired by retain() when the batch was collected.
                             if (buffer != Unpooled.EMPTY_BUFFER) {
                                 buffer.release();
                             }
                         }
-
-                        // Release the reference acquired by retain() at the start of the loop.
-                        if (buffer != Unpooled.EMPTY_BUFFER) {
-                            buffer.release();
-                        }
                     }
-                }, ioProcessor.getExecutor());
+                });
 
                 futures.add(writeTask);
             } catch (Exception e) {
-                // If submission fails (e.g. executor shut down concurrently), release our local reference.
-                if (buffer != Unpooled.EMPTY_BUFFER) {
-                    buffer.release();
+                // If submission fails (e.g. executor shut down concurrently), release our local references.
+                for (ByteBuf buffer : batch.buffers) {
+                    if (buffer != Unpooled.EMPTY_BUFFER) {
+                        buffer.release();
+                    }
                 }
             }
         }
@@ -276,58 +554,127 @@ public abstract class VxChunkBasedStorage<T, D> {
     }
 
     /**
-     * Writes the buffer data to the region file system.
+     * Writes the buffers of one region to the region file system.
      * Handles both writing valid data and clearing sectors for empty data.
      *
-     * @param pos    The position of the chunk.
-     * @param buffer The buffer containing the serialized data.
+     * @param positions The positions of the chunks, all within the same region.
+     * @param buffers   The buffers containing the serialized data, in the same order.
      */
-    private void writeToDisk(ChunkPos pos, ByteBuf buffer) {
+    private void writeToDisk(List<ChunkPos> positions, List<ByteBuf> buffers) {
+        ChunkPos first = positions.get(0);
         try {
-            boolean isDeletion = !buffer.isReadable(); // Checks for EMPTY_BUFFER or 0 readable bytes
-
             // Retrieve the region file. Only create a new file if we are writing actual data.
-            VxRegionFile regionFile = regionCache.getRegionFile(pos, !isDeletion);
+            boolean hasData = false;
+            for (ByteBuf buffer : buffers) {
+                hasData |= buffer.isReadable(); // False for EMPTY_BUFFER or 0 readable bytes
+            }
+            VxRegionFile regionFile = cacheFor(first).getRegionFile(first, hasData);
 
             if (regionFile != null) {
-                if (!isDeletion) {
-                    regionFile.write(pos, buffer);
-                } else {
-                    // Write an empty buffer to the file to mark the chunk sector as free/deleted.
-                    regionFile.write(pos, Unpooled.EMPTY_BUFFER);
+                // Empty buffers mark their chunk sectors as free/deleted.
+                regionFile.writeBatch(positions, buffers);
+
+                if (regionFile.shouldCompact()) {
+                    scheduleCompaction(first);
                 }
             }
         } catch (IOException e) {
-            VxMainClass.LOGGER.error("Failed to flush chunk {}", pos, e);
+            VxMainClass.LOGGER.error("Failed to flush {} chunks of the region of {}", positions.size(), first, e);
         }
     }
 
     /**
-     * Deserializes the raw buffer into a list of data objects.
+     * Compacts a region file in the background on the worker owning it. Queued loads of that worker
+     * still run first; the file is checked again once the task runs.
+     *
+     * @param pos A chunk position within the region.
      */
-    private List<D> deserializeChunk(ByteBuf buffer) {
+    private void scheduleCompaction(ChunkPos pos) {
+        try {
+            ioProcessor.run(regionKey(pos), false, () -> {
+                try {
+                    VxRegionFile regionFile = cacheFor(pos).getRegionFile(pos, false);
+                    if (regionFile != null && regionFile.shouldCompact()) {
+                        long reclaimed = regionFile.compact();
+                        VxMainClass.LOGGER.debug("Compacted region of {} in {}, reclaimed {} bytes", pos, storagePath, reclaimed);
+                    }
+                } catch (IOException e) {
+                    VxMainClass.LOGGER.error("Failed to compact region of {}", pos, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down: the region will be compacted on a later run
+        }
+    }
+
+    /**
+     * Deserializes the data of a chunk, keeping whatever could be read before an error.
+     */
+    private List<D> deserializeChunk(ChunkPos pos, ByteBuf buffer) {
         if (!buffer.isReadable()) return Collections.emptyList();
 
-        VxByteBuf vxBuf = new VxByteBuf(buffer);
         List<D> results = new ArrayList<>();
-
         try {
-            int count = vxBuf.readInt();
-            for (int i = 0; i < count; i++) {
-                D data = readSingle(vxBuf);
-                if (data != null) {
-                    results.add(data);
-                }
-            }
+            readChunk(pos, new VxByteBuf(buffer), results);
         } catch (Exception e) {
-            VxMainClass.LOGGER.error("Error deserializing chunk data", e);
+            VxMainClass.LOGGER.error("Error deserializing chunk data at {}", pos, e);
         }
         return results;
     }
 
+    /**
+     * The pending writes of one region file, collected for a single batched write.
+     */
+    private static final class RegionBatch {
+        final LongArrayList chunkKeys = new LongArrayList();
+        final List<ChunkPos> positions = new ArrayList<>();
+        final List<ByteBuf> buffers = new ArrayList<>();
+
+        void add(long chunkKey, ChunkPos pos, ByteBuf buffer) {
+            chunkKeys.add(chunkKey);
+            positions.add(pos);
+            buffers.add(buffer);
+        }
+    }
+
     // --- Abstract implementation hooks ---
 
     protected abstract void writeSingle(T object, VxByteBuf buffer);
 
     protected abstract D readSingle(VxByteBuf buffer);
+
+    /**
+     * Serializes all objects of a chunk into one chunk entry.
+     * <p>
+     * The default layout is record based: the object count followed by one {@link #writeSingle} record per object.
+     * Subclasses may override this together with {@link #readChunk} to store a chunk in a different layout,
+     * as long as {@link #readChunk} keeps reading the default layout.
+     *
+     * @param pos     The chunk position.
+     * @param objects The objects to save, never empty.
+     * @param buffer  The buffer to write into.
+     */
+    protected void writeChunk(ChunkPos pos, Collection<T> objects, VxByteBuf buffer) {
+        buffer.writeInt(objects.size());
+        for (T obj : objects) {
+            writeSingle(obj, buffer);
+        }
+    }
+
+    /**
+     * Deserializes a chunk entry written by {@link #writeChunk}.
+     *
+     * @param pos     The chunk position.
+     * @param buffer  The buffer to read from.
+     * @param results Receives the deserialized data objects. Objects added before an exception is thrown are kept.
+     */
+    protected void readChunk(ChunkPos pos, VxByteBuf buffer, List<D> results) {
+        int count = buffer.readInt();
+        for (int i = 0; i < count; i++) {
+            D data = readSingle(buffer);
+            if (data != null) {
+                results.add(data);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -31,6 +31,15 @@ public interface VxChunkPersistenceHandler {
      */
     void onChunkLoad(ChunkPos pos);
 
+    /**
+     * Called when a chunk is expected to load soon, e.g. because a player is moving towards it.
+     * Implementations may read the chunk's data ahead of time so that {@link #onChunkLoad} is served from memory.
+     *
+     * @param pos The position of the chunk that is likely to load.
+     */
+    default void onChunkPrefetch(ChunkPos pos) {
+    }
+
     /**
      * Called when a chunk is being removed from memory.
      *
@@ -0,0 +1,194 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Predicts which chunks fast-moving players are about to load and requests their data ahead of time.
+ * <p>
+ * Every {@link #UPDATE_INTERVAL} ticks, the horizontal velocity of each player is estimated from the movement
+ * since the last update and smoothed, so it works for elytra flight, minecarts and vehicles alike. For players
+ * faster than {@link #MIN_SPEED}, the position is extrapolated up to {@link #LOOKAHEAD_TICKS} ahead, and every
+ * chunk that lies within the view distance of an extrapolated position, but neither within the view distance of
+ * the current position nor loaded already, is passed to the prefetcher, nearest extrapolation first.
+ * Movements faster than {@link #MAX_SPEED} are treated as teleports and reset the estimate.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxChunkReadAhead {
+
+    /**
+     * The interval, in ticks, between two updates.
+     */
+    public static final int UPDATE_INTERVAL = 5;
+
+    /**
+     * How far ahead positions are extrapolated, in ticks.
+     */
+    public static final int LOOKAHEAD_TICKS = 60;
+
+    /**
+     * The number of extrapolated positions up to {@link #LOOKAHEAD_TICKS}.
+     */
+    private static final int LOOKAHEAD_STEPS = 4;
+
+    /**
+     * The minimum horizontal speed in blocks per tick for read-ahead. Sprinting is about 0.28.
+     */
+    public static final double MIN_SPEED = 0.3;
+
+    /**
+     * The horizontal speed in blocks per tick above which a movement is considered a teleport.
+     */
+    private static final double MAX_SPEED = 10.0;
+
+    /**
+     * The weight of the newest velocity sample in the smoothed velocity.
+     */
+    private static final double SMOOTHING = 0.5;
+
+    /**
+     * The maximum number of chunks requested per update, across all players.
+     */
+    public static final int MAX_REQUESTS_PER_UPDATE = 512;
+
+    /**
+     * The movement state of one player.
+     */
+    private static final class Track {
+        double x, z;
+        double velX, velZ;
+        int samples;
+        int generation;
+    }
+
+    private final Consumer<ChunkPos> prefetcher;
+    private final Map<UUID, Track> tracks = new HashMap<>();
+    private int timer;
+    private int generation;
+    private int budget;
+
+    /**
+     * Creates a predictor.
+     *
+     * @param prefetcher Receives the chunks to read ahead. Called repeatedly for the same chunks while a player
+     *                   approaches them, so it must ignore chunks that are already cached or being read.
+     */
+    public VxChunkReadAhead(Consumer<ChunkPos> prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    /**
+     * Updates the predictions for all players of a level. Must be called every game tick on the server thread.
+     *
+     * @param level The server level.
+     */
+    public void tick(ServerLevel level) {
+        if (++timer < UPDATE_INTERVAL) return;
+        timer = 0;
+
+        int viewDistance = level.getServer().getPlayerList().getViewDistance();
+        beginUpdate();
+        for (ServerPlayer player : level.players()) {
+            update(player.getUUID(), player.getX(), player.getZ(), viewDistance,
+                    key -> level.hasChunk(ChunkPos.getX(key), ChunkPos.getZ(key)));
+        }
+        endUpdate();
+    }
+
+    /**
+     * Starts an update. Followed by one {@link #update} per player and {@link #endUpdate}.
+     */
+    public void beginUpdate() {
+        generation++;
+        budget = MAX_REQUESTS_PER_UPDATE;
+    }
+
+    /**
+     * Updates the prediction for one player and requests the chunks ahead of it.
+     * Updates must be {@link #UPDATE_INTERVAL} ticks apart.
+     *
+     * @param id           The player ID.
+     * @param x            The X coordinate of the player.
+     * @param z            The Z coordinate of the player.
+     * @param viewDistance The view distance in chunks.
+     * @param loaded       Tests whether a chunk, given as packed position, is loaded already.
+     */
+    public void update(UUID id, double x, double z, int viewDistance, LongPredicate loaded) {
+        Track track = tracks.computeIfAbsent(id, k -> new Track());
+        track.generation = generation;
+
+        if (track.samples > 0) {
+            double velX = (x - track.x) / UPDATE_INTERVAL;
+            double velZ = (z - track.z) / UPDATE_INTERVAL;
+            if (velX * velX + velZ * velZ > MAX_SPEED * MAX_SPEED) {
+                track.samples = 0;
+            } else if (track.samples == 1) {
+                track.velX = velX;
+                track.velZ = velZ;
+            } else {
+                track.velX += SMOOTHING * (velX - track.velX);
+                track.velZ += SMOOTHING * (velZ - track.velZ);
+            }
+        }
+        track.x = x;
+        track.z = z;
+        track.samples++;
+
+        if (track.samples > 1 && track.velX * track.velX + track.velZ * track.velZ >= MIN_SPEED * MIN_SPEED) {
+            requestAhead(track, viewDistance, loaded);
+        }
+    }
+
+    /**
+     * Finishes an update and forgets players that were not updated.
+     */
+    public void endUpdate() {
+        tracks.values().removeIf(track -> track.generation != generation);
+    }
+
+    /**
+     * Requests the chunks around the extrapolated positions of a player.
+     */
+    private void requestAhead(Track track, int viewDistance, LongPredicate loaded) {
+        // Earlier players of this update may have used up the budget
+        if (budget <= 0) return;
+
+        int chunkX = (int) Math.floor(track.x) >> 4;
+        int chunkZ = (int) Math.floor(track.z) >> 4;
+        int previousX = chunkX;
+        int previousZ = chunkZ;
+
+        for (int step = 1; step <= LOOKAHEAD_STEPS; step++) {
+            double ticks = (double) LOOKAHEAD_TICKS * step / LOOKAHEAD_STEPS;
+            int centerX = (int) Math.floor(track.x + track.velX * ticks) >> 4;
+            int centerZ = (int) Math.floor(track.z + track.velZ * ticks) >> 4;
+            if (centerX == previousX && centerZ == previousZ) continue;
+
+            for (int x = centerX - viewDistance; x <= centerX + viewDistance; x++) {
+                for (int z = centerZ - viewDistance; z <= centerZ + viewDistance; z++) {
+                    // Covered by the current view or by the previous, nearer extrapolation
+                    if (Math.abs(x - chunkX) <= viewDistance && Math.abs(z - chunkZ) <= viewDistance) continue;
+                    if (Math.abs(x - previousX) <= viewDistance && Math.abs(z - previousZ) <= viewDistance) continue;
+                    if (loaded.test(ChunkPos.asLong(x, z))) continue;
+
+                    prefetcher.accept(new ChunkPos(x, z));
+                    if (--budget <= 0) return;
+                }
+            }
+            previousX = centerX;
+            previousZ = centerZ;
+        }
+    }
+}
@@ -4,114 +4,323 @@
  */
 package net.xmx.velthoric.core.persistence;
 
+import it.unimi.dsi.fastutil.HashCommon;
 import net.xmx.velthoric.init.VxMainClass;
-import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
- * A dedicated, single-threaded processor for handling asynchronous Disk I/O operations.
+ * A small, bounded pool of worker threads for handling asynchronous Disk I/O operations.
  * <p>
- * This class wraps an {@link ExecutorService} to ensure that all physical file system interactions
- * for a specific storage domain (e.g., Bodies or Constraints) occur sequentially on a separate thread.
- * This prevents I/O blocking on the main game thread or the physics simulation thread.
+ * Work is <b>sharded</b>: every task is submitted with a shard key (e.g., a packed region position), and
+ * all tasks with the same key run on the same worker, in submission order within their priority. A region
+ * file is therefore only ever touched by one thread and needs no cross-thread coordination, while
+ * different regions proceed in parallel. With a single worker this degenerates into the classic
+ * sequential I/O thread.
+ * <p>
+ * <b>Priorities:</b>
+ * Each worker has two queues. <i>Urgent</i> tasks (chunk loads, which a player is waiting for) are always
+ * taken before <i>background</i> tasks (saves), so a world save in progress does not delay chunk loading.
+ * <p>
+ * <b>Completion:</b>
+ * Every task is tied to the future returned on submission. The future is completed by the task, or
+ * completed exceptionally with a {@link RejectedExecutionException} if a forced shutdown drops the task,
+ * so nobody waits forever on work that will never run.
  * <p>
  * <b>Threading Model:</b>
- * The underlying thread is configured as a Daemon thread with slightly lower priority,
- * ensuring it does not prevent the JVM from shutting down and has minimal impact on
+ * The worker threads are configured as Daemon threads with slightly lower priority,
+ * ensuring they do not prevent the JVM from shutting down and have minimal impact on
  * real-time tick performance.
  *
  * @author xI-Mx-Ix
  */
 public class VxIOProcessor implements AutoCloseable {
 
-    private final ExecutorService executor;
+    private final Worker[] workers;
     private final String workerName;
+    private volatile boolean shutdown;
 
     /**
-     * Constructs a new I/O processor.
+     * Constructs a new I/O processor with a single worker.
      *
      * @param name The logical name of the worker (e.g., "Body-IO"), used for thread naming.
      */
     public VxIOProcessor(String name) {
+        this(name, 1);
+    }
+
+    /**
+     * Constructs a new I/O processor.
+     *
+     * @param name        The logical name of the workers (e.g., "Body-IO"), used for thread naming.
+     * @param workerCount The number of worker threads.
+     */
+    public VxIOProcessor(String name, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("An I/O processor needs at least one worker");
+        }
         this.workerName = name;
-        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
-            private final AtomicInteger threadId = new AtomicInteger(1);
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            Worker worker = new Worker();
+            Thread t = new Thread(worker, "VxIO-" + name + "-" + (i + 1));
 
-            @Override
-            public Thread newThread(@NotNull Runnable r) {
-                Thread t = new Thread(r, "VxIO-" + name + "-" + threadId.getAndIncrement());
+            // Daemon threads do not prevent the JVM from exiting.
+            // This is crucial if the server stops forcefully.
+            t.setDaemon(true);
 
-                // Daemon threads do not prevent the JVM from exiting.
-                // This is crucial if the server stops forcefully.
-                t.setDaemon(true);
+            // Priority is set slightly below NORM to favor tick processing
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            worker.thread = t;
+            workers[i] = worker;
+            t.start();
+        }
+    }
 
-                // Priority is set slightly below NORM to favor tick processing
-                t.setPriority(Thread.NORM_PRIORITY - 1);
-                return t;
-            }
-        });
+    /**
+     * @return The number of worker threads.
+     */
+    public int getWorkerCount() {
+        return workers.length;
     }
 
     /**
-     * Retrieves the underlying executor service.
-     * <p>
-     * This allows clients (like {@link VxChunkBasedStorage}) to submit complex tasks,
-     * such as {@link java.util.concurrent.CompletableFuture} chains, directly to the worker.
+     * Maps a shard key to the index of the worker that owns it.
      *
-     * @return The backing single-threaded executor.
+     * @param shardKey The shard key, e.g., a packed region position.
+     * @return The worker index in {@code [0, getWorkerCount())}.
      */
-    public ExecutorService getExecutor() {
-        return executor;
+    public int shardOf(long shardKey) {
+        if (workers.length == 1) return 0;
+        return (int) ((HashCommon.mix(shardKey) & Long.MAX_VALUE) % workers.length);
     }
 
     /**
-     * Checks if the I/O processor's executor has been shut down.
+     * Runs a task producing a result on the worker owning a shard.
+     *
+     * @param shardKey The shard key, e.g., a packed region position.
+     * @param urgent   True to run the task before any pending background work of that worker.
+     * @param task     The task.
+     * @param <T>      The result type.
+     * @return A future completed with the result of the task, exceptionally if the task throws or is dropped.
+     * A task may throw a {@link CompletionException} to fail the future without the error being logged again.
+     * @throws RejectedExecutionException If the processor is shut down.
+     */
+    public <T> CompletableFuture<T> supply(long shardKey, boolean urgent, Supplier<T> task) {
+        Task<T> wrapped = new Task<>(task);
+        workers[shardOf(shardKey)].submit(wrapped, urgent);
+        return wrapped.future;
+    }
+
+    /**
+     * Runs a task on the worker owning a shard.
+     *
+     * @param shardKey The shard key, e.g., a packed region position.
+     * @param urgent   True to run the task before any pending background work of that worker.
+     * @param task     The task.
+     * @return A future completed once the task ran, exceptionally if the task throws or is dropped.
+     * @throws RejectedExecutionException If the processor is shut down.
+     */
+    public CompletableFuture<Void> run(long shardKey, boolean urgent, Runnable task) {
+        return supply(shardKey, urgent, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Checks if the I/O processor has been shut down.
      *
      * @return {@code true} if the processor is shut down, {@code false} otherwise.
      */
     public boolean isShutdown() {
-        return executor.isShutdown();
+        return shutdown;
     }
 
     /**
-     * Submits a simple runnable task to the I/O thread.
+     * Submits a simple runnable task to the first worker as background work.
      *
      * @param task The task to execute.
      */
     public void execute(Runnable task) {
-        if (!executor.isShutdown()) {
-            executor.execute(task);
-        } else {
+        try {
+            workers[0].submit(new Task<>(() -> {
+                task.run();
+                return null;
+            }), false);
+        } catch (RejectedExecutionException e) {
             VxMainClass.LOGGER.warn("Attempted to execute I/O task on shut down processor: {}", workerName);
         }
     }
 
     /**
-     * Initiates a graceful shutdown of the I/O worker.
+     * Initiates a graceful shutdown of the I/O workers.
      * <p>
-     * This method waits up to 5 seconds for currently running tasks to complete before
-     * forcing a shutdown. This ensures that in-progress file writes have a chance to finish.
+     * Queued tasks are still executed. This method waits up to 5 seconds in total for the workers
+     * to drain their queues before interrupting them. This ensures that in-progress file writes have a chance to finish.
+     * Tasks still queued after that are dropped, and their futures are completed exceptionally.
      */
     @Override
     public void close() {
-        if (executor.isShutdown()) return;
+        if (shutdown) return;
+        shutdown = true;
 
-        executor.shutdown();
+        for (Worker worker : workers) {
+            worker.wake();
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
         try {
-            // Wait a reasonable amount of time for pending writes to flush
-            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
-                VxMainClass.LOGGER.warn("I/O Processor {} did not terminate in time, forcing shutdown.", workerName);
-                executor.shutdownNow();
+            for (Worker worker : workers) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis > 0) {
+                    worker.thread.join(remainingMillis);
+                }
+                if (worker.thread.isAlive()) {
+                    VxMainClass.LOGGER.warn("I/O Processor {} did not terminate in time, forcing shutdown.", workerName);
+                    forceShutdown();
+                    break;
+                }
             }
         } catch (InterruptedException e) {
             VxMainClass.LOGGER.error("Interrupted while shutting down I/O Processor {}", workerName, e);
-            executor.shutdownNow();
+            forceShutdown();
             Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Drops the queued tasks of all workers and interrupts the tasks that are running.
+     */
+    private void forceShutdown() {
+        int dropped = 0;
+        for (Worker worker : workers) {
+            dropped += worker.drain();
+            worker.thread.interrupt();
+        }
+        if (dropped > 0) {
+            VxMainClass.LOGGER.warn("I/O Processor {} dropped {} queued tasks", workerName, dropped);
+        }
+    }
+
+    /**
+     * A queued task and the future it completes.
+     */
+    private static final class Task<T> implements Runnable {
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Task(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (CompletionException e) {
+                // The task failed its future on purpose and reported the error itself
+                future.completeExceptionally(e);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+                throw t;
+            }
+        }
+
+        void reject(String workerName) {
+            future.completeExceptionally(new RejectedExecutionException("I/O processor " + workerName + " was shut down before the task ran"));
+        }
+    }
+
+    /**
+     * A single worker thread with an urgent and a background queue.
+     */
+    private final class Worker implements Runnable {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final ArrayDeque<Task<?>> urgentTasks = new ArrayDeque<>();
+        private final ArrayDeque<Task<?>> backgroundTasks = new ArrayDeque<>();
+        private Thread thread;
+
+        /**
+         * Set by a forced shutdown; the worker takes no further tasks.
+         */
+        private boolean dropping;
+
+        void submit(Task<?> task, boolean urgent) {
+            lock.lock();
+            try {
+                if (shutdown) {
+                    throw new RejectedExecutionException("I/O processor " + workerName + " is shut down");
+                }
+                (urgent ? urgentTasks : backgroundTasks).addLast(task);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Empties both queues and rejects their tasks.
+         *
+         * @return The number of rejected tasks.
+         */
+        int drain() {
+            lock.lock();
+            try {
+                dropping = true;
+                int count = urgentTasks.size() + backgroundTasks.size();
+                Task<?> task;
+                while ((task = urgentTasks.pollFirst()) != null) task.reject(workerName);
+                while ((task = backgroundTasks.pollFirst()) != null) task.reject(workerName);
+                notEmpty.signalAll();
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void wake() {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task<?> task;
+                lock.lock();
+                try {
+                    while (urgentTasks.isEmpty() && backgroundTasks.isEmpty()) {
+                        if (shutdown || dropping) return;
+                        notEmpty.await();
+                    }
+                    if (dropping) return;
+                    task = urgentTasks.isEmpty() ? backgroundTasks.pollFirst() : urgentTasks.pollFirst();
+                } catch (InterruptedException e) {
+                    // Forced shutdown while idle; the queues were drained by forceShutdown
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    VxMainClass.LOGGER.error("Uncaught exception in I/O Processor {}", workerName, t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded in-memory cache of chunk entries that were read before their chunk was loaded.
+ * <p>
+ * Entries are added by read-ahead and taken out by the chunk load they were read for. An entry lives at most
+ * for the configured time to live, and the oldest entries are evicted once the total size exceeds the limit.
+ * Chunks without data are cached as empty arrays, so their loads are served from memory as well.
+ * <p>
+ * A save of a chunk {@link #invalidate invalidates} both its entry and a read that is still in progress, so a
+ * read that started before the save can never put outdated data into the cache. All methods are synchronized
+ * on this instance.
+ *
+ * @author xI-Mx-Ix
+ */
+public class VxReadAheadCache {
+
+    /**
+     * A cached chunk entry.
+     *
+     * @param data      The chunk entry, empty if the chunk has no data.
+     * @param expiresAt The {@link System#nanoTime()} after which the entry is discarded.
+     */
+    private record Entry(byte[] data, long expiresAt) {
+    }
+
+    /**
+     * The entries in insertion order, which is also the order of expiry.
+     */
+    private final Long2ObjectLinkedOpenHashMap<Entry> entries = new Long2ObjectLinkedOpenHashMap<>();
+
+    /**
+     * The tokens of reads that are in progress.
+     */
+    private final Long2ObjectMap<Object> reads = new Long2ObjectOpenHashMap<>();
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes The maximum total size of all cached entries.
+     * @param ttlNanos The time to live of an entry in nanoseconds.
+     */
+    public VxReadAheadCache(long maxBytes, long ttlNanos) {
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttlNanos;
+    }
+
+    /**
+     * Registers a read-ahead of a chunk, unless the chunk is already cached or being read.
+     *
+     * @param chunkKey The packed chunk position.
+     * @return A token to pass to {@link #complete}, or null if the chunk does not need to be read.
+     */
+    @Nullable
+    public synchronized Object begin(long chunkKey) {
+        expire(System.nanoTime());
+        if (entries.containsKey(chunkKey) || reads.containsKey(chunkKey)) {
+            return null;
+        }
+        Object token = new Object();
+        reads.put(chunkKey, token);
+        return token;
+    }
+
+    /**
+     * Caches the result of a read-ahead, unless the chunk was saved, loaded or invalidated since {@link #begin}.
+     *
+     * @param chunkKey The packed chunk position.
+     * @param token    The token of the read.
+     * @param data     The chunk entry, or null if the read failed.
+     */
+    public synchronized void complete(long chunkKey, Object token, byte @Nullable [] data) {
+        if (reads.get(chunkKey) != token) {
+            return;
+        }
+        reads.remove(chunkKey);
+        if (data == null || data.length > maxBytes) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        expire(now);
+        Entry previous = entries.putAndMoveToLast(chunkKey, new Entry(data, now + ttlNanos));
+        if (previous != null) {
+            bytes -= previous.data().length;
+        }
+        bytes += data.length;
+        while (bytes > maxBytes && !entries.isEmpty()) {
+            bytes -= entries.removeFirst().data().length;
+        }
+    }
+
+    /**
+     * Removes the entry of a chunk that is being loaded.
+     * A read-ahead that is still in progress is discarded, since the load reads the chunk itself.
+     *
+     * @param chunkKey The packed chunk position.
+     * @return The chunk entry, empty if the chunk has no data, or null if the chunk is not cached.
+     */
+    public synchronized byte @Nullable [] take(long chunkKey) {
+        if (entries.isEmpty() && reads.isEmpty()) {
+            misses++;
+            return null;
+        }
+        expire(System.nanoTime());
+        reads.remove(chunkKey);
+        Entry entry = entries.remove(chunkKey);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        bytes -= entry.data().length;
+        hits++;
+        return entry.data();
+    }
+
+    /**
+     * Forgets a chunk whose stored data changed, including a read-ahead that is still in progress.
+     *
+     * @param chunkKey The packed chunk position.
+     */
+    public synchronized void invalidate(long chunkKey) {
+        if (entries.isEmpty() && reads.isEmpty()) return;
+        reads.remove(chunkKey);
+        Entry entry = entries.remove(chunkKey);
+        if (entry != null) {
+            bytes -= entry.data().length;
+        }
+    }
+
+    /**
+     * Forgets all entries and reads.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        reads.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return The total size of all cached entries in bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The number of chunk loads served from the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of chunk loads that were not cached.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void expire(long now) {
+        while (!entries.isEmpty() && entries.get(entries.firstLongKey()).expiresAt() - now < 0) {
+            bytes -= entries.removeFirst().data().length;
+        }
+    }
+}
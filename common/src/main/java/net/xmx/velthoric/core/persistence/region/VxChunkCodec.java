@@ -0,0 +1,408 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.region;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import net.xmx.velthoric.init.VxMainClass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encodes and decodes the payload of a single chunk entry in a {@link VxRegionFile}.
+ * <p>
+ * <b>Payload Format (version 1):</b>
+ * <ul>
+ *     <li>Byte 0: <b>Version</b> - The payload format version, currently {@link #VERSION}.</li>
+ *     <li>Byte 1: <b>Codec</b> - {@link #CODEC_NONE}, {@link #CODEC_ZSTD} or {@link #CODEC_ZSTD_DICT}.</li>
+ *     <li>Bytes 2-5: <b>Raw Length</b> (Integer) - The size of the decoded data.</li>
+ *     <li>Bytes 6-9: <b>Dictionary ID</b> (Integer) - Only present for {@link #CODEC_ZSTD_DICT}.</li>
+ *     <li>Remaining bytes: the (possibly compressed) chunk data. Zstd frames carry a content checksum.</li>
+ * </ul>
+ * <p>
+ * Bodies in a chunk share most of their layout, so the chunk data compresses well. Small chunks
+ * compress poorly on their own, which is why each storage trains a Zstd <b>dictionary</b> from the
+ * first chunks it writes and keeps it next to its region files. Once it exists, every new chunk is
+ * compressed with it. The dictionary is never replaced, since stored chunks reference it by ID: it is
+ * forced to disk before the first chunk using it is encoded, and no new dictionary is trained while a
+ * dictionary file exists, even if it cannot be read.
+ * <p>
+ * This class is thread-safe. Compression contexts are kept per thread. Sampling never blocks an
+ * encoding thread: a chunk is skipped as a sample while another thread holds the trainer.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxChunkCodec {
+
+    /**
+     * The current payload format version.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * The chunk data is stored as is.
+     */
+    public static final byte CODEC_NONE = 0;
+
+    /**
+     * The chunk data is a plain Zstd frame.
+     */
+    public static final byte CODEC_ZSTD = 1;
+
+    /**
+     * The chunk data is a Zstd frame compressed with the storage dictionary.
+     */
+    public static final byte CODEC_ZSTD_DICT = 2;
+
+    /**
+     * Zstd level for region data. Chunks are compressed on the I/O thread, so a slightly
+     * higher level than the network one is affordable.
+     */
+    private static final int COMPRESSION_LEVEL = 5;
+
+    /**
+     * Chunks smaller than this are stored uncompressed, the frame overhead would eat the gain.
+     */
+    private static final int MIN_COMPRESS_SIZE = 64;
+
+    /**
+     * The target size of a trained dictionary.
+     */
+    private static final int DICTIONARY_SIZE = 16 * 1024;
+
+    /**
+     * The amount of sample data collected before a dictionary is trained.
+     */
+    private static final int TRAINING_BYTES = 1024 * 1024;
+
+    /**
+     * The minimum number of chunks sampled before a dictionary is trained.
+     */
+    private static final int MIN_TRAINING_SAMPLES = 64;
+
+    /**
+     * Larger chunks are only sampled up to this size.
+     */
+    private static final int MAX_SAMPLE_SIZE = 64 * 1024;
+
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    private final Path dictionaryPath;
+
+    /**
+     * Frames carry a content checksum, so a corrupted entry fails to decode instead of decoding to wrong data.
+     */
+    private final ThreadLocal<ZstdCompressCtx> compressContext = ThreadLocal.withInitial(() -> {
+        ZstdCompressCtx ctx = new ZstdCompressCtx();
+        ctx.setLevel(COMPRESSION_LEVEL);
+        ctx.setChecksum(true);
+        return ctx;
+    });
+
+    /**
+     * Like {@link #compressContext}, with the dictionary loaded. Only used once the dictionary exists,
+     * which is never replaced afterwards.
+     */
+    private final ThreadLocal<ZstdCompressCtx> dictCompressContext = ThreadLocal.withInitial(() -> {
+        ZstdCompressCtx ctx = new ZstdCompressCtx();
+        ctx.setChecksum(true);
+        ctx.loadDict(this.dictCompress);
+        return ctx;
+    });
+
+    private final ThreadLocal<ZstdDecompressCtx> decompressContext = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    /**
+     * The digested dictionary, or null while none has been trained or loaded.
+     */
+    private volatile ZstdDictCompress dictCompress;
+    private volatile ZstdDictDecompress dictDecompress;
+    private volatile int dictionaryId;
+
+    /**
+     * Collects chunk samples until a dictionary can be trained. Null once training is done or abandoned.
+     * Guarded by {@link #trainingLock}.
+     */
+    private ZstdDictTrainer trainer;
+    private int trainingSamples;
+    private int trainingBytes;
+    private final ReentrantLock trainingLock = new ReentrantLock();
+
+    /**
+     * Whether chunks are still collected for training, checked without locking on every encode.
+     */
+    private volatile boolean sampling;
+
+    /**
+     * Creates a codec for a storage directory, loading its dictionary if one was trained before.
+     *
+     * @param dictionaryPath The path of the dictionary file of the storage.
+     */
+    public VxChunkCodec(Path dictionaryPath) {
+        this.dictionaryPath = dictionaryPath;
+        if (Files.notExists(dictionaryPath)) {
+            this.trainer = new ZstdDictTrainer(TRAINING_BYTES, DICTIONARY_SIZE);
+            this.sampling = true;
+            return;
+        }
+        // A dictionary that exists but cannot be read is kept as is: training a new one would orphan its chunks
+        try {
+            installDictionary(Files.readAllBytes(dictionaryPath));
+        } catch (IOException | ZstdException e) {
+            VxMainClass.LOGGER.error("Failed to load region dictionary {}. Chunks compressed with it cannot be read.", dictionaryPath, e);
+        }
+    }
+
+    /**
+     * Encodes raw chunk data into a versioned payload, choosing the smallest codec.
+     *
+     * @param raw The raw chunk data (readable bytes). Not modified or released.
+     * @return A new buffer containing the payload. The caller is responsible for releasing it.
+     */
+    public ByteBuf encode(ByteBuf raw) {
+        int rawLength = raw.readableBytes();
+        if (sampling) {
+            sample(raw);
+        }
+
+        ZstdDictCompress dict = this.dictCompress;
+        if (rawLength >= MIN_COMPRESS_SIZE) {
+            byte codec = dict != null ? CODEC_ZSTD_DICT : CODEC_ZSTD;
+            int headerSize = headerSize(codec);
+            int bound = (int) Zstd.compressBound(rawLength);
+            ByteBuf out = ALLOCATOR.directBuffer(headerSize + bound);
+            ByteBuf source = raw.isDirect() ? raw : ALLOCATOR.directBuffer(rawLength).writeBytes(raw, raw.readerIndex(), rawLength);
+            try {
+                ByteBuffer dst = out.nioBuffer(0, headerSize + bound);
+                ByteBuffer src = source.nioBuffer(source.readerIndex(), rawLength);
+                ZstdCompressCtx ctx = dict != null ? dictCompressContext.get() : compressContext.get();
+                long compressedSize = ctx.compressDirectByteBuffer(dst, headerSize, bound, src, 0, rawLength);
+                if (Zstd.isError(compressedSize)) {
+                    throw new ZstdException(compressedSize);
+                }
+
+                if (compressedSize < rawLength) {
+                    writeHeader(out, codec, rawLength, dict != null ? this.dictionaryId : 0);
+                    out.writerIndex(headerSize + (int) compressedSize);
+                    return out;
+                }
+            } catch (ZstdException e) {
+                VxMainClass.LOGGER.warn("Region chunk compression failed, storing uncompressed", e);
+            } finally {
+                if (source != raw) source.release();
+            }
+            // Incompressible: fall through and store the data as is
+            out.release();
+        }
+
+        ByteBuf out = ALLOCATOR.directBuffer(headerSize(CODEC_NONE) + rawLength);
+        writeHeader(out, CODEC_NONE, rawLength, 0);
+        out.writeBytes(raw, raw.readerIndex(), rawLength);
+        return out;
+    }
+
+    /**
+     * Decodes a versioned payload back into raw chunk data.
+     *
+     * @param payload The payload (readable bytes), as written by {@link #encode}. Not released.
+     * @return A new buffer containing the raw data. The caller is responsible for releasing it.
+     * @throws IOException If the payload is malformed or references an unknown dictionary.
+     */
+    public ByteBuf decode(ByteBuf payload) throws IOException {
+        if (payload.readableBytes() < headerSize(CODEC_NONE)) {
+            throw new IOException("Truncated chunk payload header");
+        }
+        int start = payload.readerIndex();
+        byte version = payload.getByte(start);
+        byte codec = payload.getByte(start + 1);
+        int rawLength = payload.getInt(start + 2);
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported chunk payload version " + version);
+        }
+        if (rawLength < 0) {
+            throw new IOException("Invalid raw chunk length " + rawLength);
+        }
+
+        int headerSize = headerSize(codec);
+        int dataLength = payload.readableBytes() - headerSize;
+        if (dataLength < 0) {
+            throw new IOException("Truncated chunk payload header");
+        }
+
+        switch (codec) {
+            case CODEC_NONE -> {
+                if (dataLength < rawLength) throw new IOException("Truncated uncompressed chunk data");
+                return payload.retainedSlice(start + headerSize, rawLength);
+            }
+            case CODEC_ZSTD, CODEC_ZSTD_DICT -> {
+                ZstdDictDecompress dict = null;
+                if (codec == CODEC_ZSTD_DICT) {
+                    int id = payload.getInt(start + 6);
+                    dict = this.dictDecompress;
+                    if (dict == null || id != this.dictionaryId) {
+                        throw new IOException("Chunk references unknown region dictionary " + id);
+                    }
+                }
+
+                ByteBuf source = payload.isDirect() ? payload : ALLOCATOR.directBuffer(dataLength).writeBytes(payload, start + headerSize, dataLength);
+                int sourceOffset = source == payload ? start + headerSize : 0;
+                ByteBuf out = ALLOCATOR.directBuffer(rawLength);
+                try {
+                    ByteBuffer dst = out.nioBuffer(0, rawLength);
+                    ByteBuffer src = source.nioBuffer(sourceOffset, dataLength);
+                    long size = dict != null
+                            ? Zstd.decompressDirectByteBufferFastDict(dst, 0, rawLength, src, 0, dataLength, dict)
+                            : decompressContext.get().decompressDirectByteBuffer(dst, 0, rawLength, src, 0, dataLength);
+                    if (Zstd.isError(size)) {
+                        throw new ZstdException(size);
+                    }
+                    if (size != rawLength) {
+                        throw new IOException("Chunk decompressed to " + size + " bytes, expected " + rawLength);
+                    }
+                    out.writerIndex(rawLength);
+                    return out;
+                } catch (ZstdException | IOException e) {
+                    out.release();
+                    throw e instanceof IOException io ? io : new IOException("Chunk decompression failed", e);
+                } finally {
+                    if (source != payload) source.release();
+                }
+            }
+            default -> throw new IOException("Unknown chunk codec " + codec);
+        }
+    }
+
+    /**
+     * @return The ID of the active dictionary, or 0 if none exists yet.
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * Writes the payload header at the start of the buffer and moves the writer index behind it.
+     */
+    private static void writeHeader(ByteBuf out, byte codec, int rawLength, int dictionaryId) {
+        out.writerIndex(0);
+        out.writeByte(VERSION);
+        out.writeByte(codec);
+        out.writeInt(rawLength);
+        if (codec == CODEC_ZSTD_DICT) {
+            out.writeInt(dictionaryId);
+        }
+    }
+
+    /**
+     * @return The header size in bytes for a codec.
+     */
+    private static int headerSize(byte codec) {
+        return codec == CODEC_ZSTD_DICT ? 10 : 6;
+    }
+
+    /**
+     * Feeds a chunk into the dictionary trainer and trains the dictionary once enough data was seen.
+     * Skips the chunk if another thread is using the trainer.
+     */
+    private void sample(ByteBuf raw) {
+        if (raw.readableBytes() < MIN_COMPRESS_SIZE || !trainingLock.tryLock()) return;
+        try {
+            if (trainer == null) return;
+
+            int length = Math.min(raw.readableBytes(), MAX_SAMPLE_SIZE);
+            byte[] sample = new byte[length];
+            raw.getBytes(raw.readerIndex(), sample);
+            boolean accepted = trainer.addSample(sample);
+            if (accepted) {
+                trainingSamples++;
+                trainingBytes += length;
+            }
+
+            if ((!accepted || trainingBytes >= TRAINING_BYTES) && trainingSamples >= MIN_TRAINING_SAMPLES) {
+                train();
+            } else if (!accepted) {
+                // The sample buffer is full of a few huge chunks; plain Zstd already does well there.
+                trainer = null;
+                sampling = false;
+            }
+        } finally {
+            trainingLock.unlock();
+        }
+    }
+
+    /**
+     * Trains the dictionary, persists it and activates it for all further writes.
+     * <p>
+     * The dictionary is only activated once it is durable on disk, so no chunk can reference a dictionary
+     * that a crash could lose. If a dictionary file appeared in the meantime, it is left untouched.
+     */
+    private void train() {
+        ZstdDictTrainer current = trainer;
+        trainer = null;
+        sampling = false;
+        try {
+            byte[] dictionary = current.trainSamples();
+            Path directory = dictionaryPath.getParent();
+            Path temp = dictionaryPath.resolveSibling(dictionaryPath.getFileName() + ".tmp");
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer data = ByteBuffer.wrap(dictionary);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            if (!Files.notExists(dictionaryPath)) {
+                Files.deleteIfExists(temp);
+                VxMainClass.LOGGER.warn("Region dictionary {} appeared during training, using plain Zstd", dictionaryPath);
+                return;
+            }
+            Files.move(temp, dictionaryPath, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(directory);
+            installDictionary(dictionary);
+            VxMainClass.LOGGER.debug("Trained region dictionary {} ({} bytes from {} chunks)", dictionaryPath, dictionary.length, trainingSamples);
+        } catch (IOException | ZstdException e) {
+            VxMainClass.LOGGER.warn("Failed to train region dictionary {}, using plain Zstd", dictionaryPath, e);
+        }
+    }
+
+    /**
+     * Forces a directory entry change, such as a rename, to disk.
+     * Some platforms cannot open directories; they persist renames with the file system metadata.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            VxMainClass.LOGGER.debug("Cannot force directory {} to disk", directory, e);
+        }
+    }
+
+    /**
+     * Digests a dictionary for compression and decompression.
+     */
+    private void installDictionary(byte[] dictionary) {
+        ZstdDictDecompress decompress = new ZstdDictDecompress(dictionary);
+        ZstdDictCompress compress = new ZstdDictCompress(dictionary, COMPRESSION_LEVEL);
+        this.dictionaryId = (int) Zstd.getDictIdFromDict(dictionary);
+        this.dictDecompress = decompress;
+        this.dictCompress = compress;
+    }
+}
@@ -5,17 +5,24 @@
 package net.xmx.velthoric.core.persistence.region;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
 import net.minecraft.world.level.ChunkPos;
 import net.xmx.velthoric.init.VxMainClass;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
-import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Manages a single region file containing physics data for a 32x32 chunk area.
@@ -33,13 +40,22 @@ import java.util.BitSet;
  *         </ul>
  *     </li>
  *     <li><b>Sectors:</b> Data is stored in 4KB aligned blocks. Sector 0 and 1 are reserved for the header.</li>
+ *     <li><b>Chunk Entry:</b> A 4-byte length word followed by the payload. If the highest bit of the word
+ *     ({@link #VERSIONED_FLAG}) is set, the payload starts with a versioned header and may be compressed
+ *     (see {@link VxChunkCodec}). Otherwise it is a legacy entry holding the raw chunk data.</li>
  * </ul>
  * <p>
  * <b>Features:</b>
  * <ul>
  *     <li><b>No Size Limit:</b> Supports chunks significantly larger than 1MB (up to Terabytes theoretically).</li>
  *     <li><b>Auto-Pruning:</b> If all data is deleted from the file, the file is automatically closed and deleted from the disk.</li>
- *     <li><b>Space Management:</b> Uses a BitSet to track used sectors and fill gaps (fragmentation handling).</li>
+ *     <li><b>Space Management:</b> Free space is tracked as extents in size-class free lists (see {@link VxSectorAllocator}),
+ *     rebuilt from the header on open, so allocation cost does not grow with the file size.</li>
+ *     <li><b>Mapped Header:</b> The header table is memory-mapped; lookups and updates are plain memory accesses.</li>
+ *     <li><b>Compaction:</b> Once a file is mostly holes, {@link #compact()} rewrites its live entries into a
+ *     fresh file and swaps it in atomically. The {@code regionTool} Gradle task does the same offline.</li>
+ *     <li><b>Compression:</b> Chunks are always written in the versioned format, so files written by older
+ *     versions are upgraded chunk by chunk as they are saved again.</li>
  * </ul>
  * <p>
  * This class is thread-safe for reading and writing.
@@ -65,25 +81,48 @@ public class VxRegionFile implements AutoCloseable {
      */
     private static final int HEADER_SECTOR_COUNT = 2;
 
+    /**
+     * Set in the length word of chunk entries written with a {@link VxChunkCodec} payload header.
+     * Legacy entries store a plain positive length there.
+     */
+    private static final int VERSIONED_FLAG = 0x80000000;
+
+    /**
+     * Files are only compacted once they span at least this many data sectors (256 KB).
+     */
+    private static final int MIN_COMPACTION_SECTORS = 64;
+
+    /**
+     * Files whose share of live sectors falls below this ratio are compacted.
+     */
+    private static final double COMPACTION_LIVE_RATIO = 0.5;
+
+    private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+    /**
+     * A read-only sector of zeros, used to pad entries to full sectors without copying.
+     */
+    private static final ByteBuffer ZERO_SECTOR = ByteBuffer.allocateDirect(SECTOR_SIZE).asReadOnlyBuffer();
+
     private final Path path;
+    private final VxChunkCodec codec;
     private FileChannel fileChannel;
 
     /**
-     * In-memory cache of chunk sector offsets.
-     * Index = (x & 31) + (z & 31) * 32.
+     * A memory-mapped view of the header table. Entry index = (x & 31) + (z & 31) * 32.
+     * Lookups and updates are plain memory accesses; the OS writes dirty pages back.
      */
-    private final int[] chunkOffsets = new int[1024];
+    private MappedByteBuffer header;
 
     /**
-     * In-memory cache of chunk sector counts.
+     * Tracks the free space of the file. Rebuilt from the header when the file is opened.
      */
-    private final int[] chunkSectorCounts = new int[1024];
+    private final VxSectorAllocator allocator = new VxSectorAllocator(HEADER_SECTOR_COUNT);
 
     /**
-     * Tracks which sectors in the file are currently occupied.
-     * Used to find free space for new writes.
+     * Set once the platform refused to swap in a compacted file, to avoid retrying on every write.
      */
-    private final BitSet usedSectors = new BitSet();
+    private boolean compactionUnsupported;
 
     /**
      * Constructs a new region file handler.
@@ -91,11 +130,13 @@ public class VxRegionFile implements AutoCloseable {
      * If the file exists, the header is read and parsed.
      * If the file does not exist, a new file with a blank header is created.
      *
-     * @param path The path to the physical file.
+     * @param path  The path to the physical file.
+     * @param codec The codec used for chunk payloads, shared by all region files of a storage.
      * @throws IOException If the file cannot be opened or created.
      */
-    public VxRegionFile(Path path) throws IOException {
+    public VxRegionFile(Path path, VxChunkCodec codec) throws IOException {
         this.path = path;
+        this.codec = codec;
         boolean exists = Files.exists(path);
 
         // Ensure parent directory exists
@@ -108,18 +149,28 @@ public class VxRegionFile implements AutoCloseable {
                 StandardOpenOption.READ,
                 StandardOpenOption.WRITE);
 
-        if (exists) {
-            if (fileChannel.size() < HEADER_SIZE) {
-                // File exists but is corrupt/too small -> Reset header
-                writeHeader();
-            } else {
-                readHeader();
-            }
+        boolean valid = exists && fileChannel.size() >= HEADER_SIZE;
+
+        // Mapping grows the file to the full header size if necessary
+        this.header = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+
+        if (valid) {
+            readHeader();
         } else {
+            // New file, or the file exists but is corrupt/too small -> Reset header
             writeHeader();
         }
     }
 
+    /**
+     * Opens the file channel and maps the header of an existing, valid region file.
+     */
+    private void open() throws IOException {
+        this.fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        readHeader();
+    }
+
     /**
      * Checks if the underlying file channel is open.
      *
@@ -130,240 +181,447 @@ public class VxRegionFile implements AutoCloseable {
     }
 
     /**
-     * Reads the header table from the beginning of the file.
-     * Populates the internal offset/count arrays and the used sectors bitmap.
-     *
-     * @throws IOException If an I/O error occurs.
+     * Rebuilds the free space of the file from the header table.
      */
-    private void readHeader() throws IOException {
-        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
-        fileChannel.read(header, 0);
-        header.flip();
-
+    private void readHeader() {
+        int[] offsets = new int[1024];
+        int[] counts = new int[1024];
         for (int i = 0; i < 1024; i++) {
-            int offset = header.getInt();
-            int count = header.getInt();
-
-            chunkOffsets[i] = offset;
-            chunkSectorCounts[i] = count;
-
-            if (offset != 0 && count != 0) {
-                for (int s = 0; s < count; s++) {
-                    usedSectors.set(offset + s);
-                }
-            }
+            offsets[i] = sectorOffset(i);
+            counts[i] = sectorCount(i);
         }
+        allocator.rebuild(offsets, counts);
     }
 
     /**
      * Writes a blank header to the file.
      * Used when initializing a new file or recovering a corrupt one.
-     *
-     * @throws IOException If an I/O error occurs.
      */
-    private void writeHeader() throws IOException {
-        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private void writeHeader() {
         // Fill with zeros (1024 chunks * 2 ints per chunk = 2048 ints)
         for (int i = 0; i < 2048; i++) {
-            header.putInt(0);
+            header.putInt(i * 4, 0);
         }
-        header.flip();
-        fileChannel.write(header, 0);
+    }
 
-        // Mark the header sectors (0 and 1) as used so data isn't written there.
-        for (int i = 0; i < HEADER_SECTOR_COUNT; i++) {
-            usedSectors.set(i);
-        }
+    /**
+     * @return The start sector of a chunk entry, or 0 if the chunk is not present.
+     */
+    private int sectorOffset(int index) {
+        return header.getInt(index * 8);
+    }
+
+    /**
+     * @return The number of sectors reserved for a chunk entry.
+     */
+    private int sectorCount(int index) {
+        return header.getInt(index * 8 + 4);
+    }
+
+    /**
+     * Updates a chunk entry of the header table.
+     */
+    private void setEntry(int index, int sectorOffset, int sectorCount) {
+        header.putInt(index * 8, sectorOffset);
+        header.putInt(index * 8 + 4, sectorCount);
     }
 
     /**
      * Reads a data chunk from the file.
+     * <p>
+     * Versioned entries are decoded with the storage's {@link VxChunkCodec}, legacy entries are returned as is.
      *
      * @param pos The chunk position (relative to the region).
-     * @return A Netty ByteBuf containing the data, or null if the chunk does not exist.
+     * @return A Netty ByteBuf containing the raw data, or null if the chunk does not exist.
      * The caller is responsible for releasing the buffer.
+     * @throws IOException If the chunk exists but cannot be read or decoded.
      */
-    public synchronized ByteBuf read(ChunkPos pos) {
+    public ByteBuf read(ChunkPos pos) throws IOException {
+        return read(getIndex(pos));
+    }
+
+    /**
+     * Reads a data chunk by its entry index.
+     *
+     * @param index The entry index, (x & 31) + (z & 31) * 32.
+     * @return A Netty ByteBuf containing the raw data, or null if the chunk does not exist.
+     * The caller is responsible for releasing the buffer.
+     * @throws IOException If the chunk exists but cannot be read or decoded.
+     */
+    synchronized ByteBuf read(int index) throws IOException {
         if (!isOpen()) return null;
 
-        int index = getIndex(pos);
-        int sectorOffset = chunkOffsets[index];
-        int sectorCount = chunkSectorCounts[index];
+        int sectorOffset = sectorOffset(index);
+        int sectorCount = sectorCount(index);
 
         // If offset or count is 0, the chunk is empty/not present.
         if (sectorOffset == 0 || sectorCount == 0) return null;
 
-        try {
-            // 1. Read the length prefix (first 4 bytes of the sector)
-            ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
-            fileChannel.read(lengthBuffer, (long) sectorOffset * SECTOR_SIZE);
-            lengthBuffer.flip();
-            int length = lengthBuffer.getInt();
-
-            // 2. Validate length
-            // It must be > 0 and fit within the allocated sector count.
-            if (length <= 0 || length > sectorCount * SECTOR_SIZE) {
-                VxMainClass.LOGGER.warn("Invalid chunk data length {} at {}. Sector Count: {}", length, pos, sectorCount);
-                return null;
-            }
+        // 1. Read the length prefix (first 4 bytes of the sector)
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        readFully(lengthBuffer, (long) sectorOffset * SECTOR_SIZE, index);
+        lengthBuffer.flip();
+        int lengthWord = lengthBuffer.getInt();
+        boolean versioned = (lengthWord & VERSIONED_FLAG) != 0;
+        int length = lengthWord & ~VERSIONED_FLAG;
+
+        // 2. Validate length
+        // It must be > 0 and fit within the allocated sector count.
+        if (length <= 0 || length > sectorCount * SECTOR_SIZE - 4) {
+            throw new IOException("Invalid chunk data length " + length + " at entry " + index + " of " + path + " (" + sectorCount + " sectors)");
+        }
 
-            // 3. Read the payload
+        // 3. Read the payload
+        if (!versioned) {
+            // Legacy entry: the payload is the raw chunk data
             ByteBuffer data = ByteBuffer.allocate(length);
             // Offset + 4 bytes to skip the length prefix
-            fileChannel.read(data, (long) sectorOffset * SECTOR_SIZE + 4);
+            readFully(data, (long) sectorOffset * SECTOR_SIZE + 4, index);
             data.flip();
 
             return Unpooled.wrappedBuffer(data);
+        }
+
+        ByteBuf payload = ALLOCATOR.directBuffer(length);
+        try {
+            readFully(payload.nioBuffer(0, length), (long) sectorOffset * SECTOR_SIZE + 4, index);
+            payload.writerIndex(length);
+            return codec.decode(payload);
         } catch (IOException e) {
-            VxMainClass.LOGGER.error("Failed to read chunk {}", pos, e);
-            return null;
+            throw new IOException("Failed to decode entry " + index + " of " + path, e);
+        } finally {
+            payload.release();
+        }
+    }
+
+    /**
+     * Fills a buffer from the file, failing if the file ends first.
+     */
+    private void readFully(ByteBuffer buffer, long position, int index) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Entry " + index + " of " + path + " extends beyond the end of the file");
+            }
+            position += read;
         }
     }
 
     /**
      * Writes a data chunk to the file.
      * <p>
+     * The data is always stored in the versioned payload format, compressed if that makes it smaller.
      * If the provided buffer is empty (readable bytes == 0), this method acts as a delete operation.
      *
      * @param pos  The chunk position.
      * @param data The buffer containing the data to write.
      */
-    public synchronized void write(ChunkPos pos, ByteBuf data) {
-        if (!isOpen()) return;
+    public void write(ChunkPos pos, ByteBuf data) {
+        writeBatch(List.of(pos), List.of(data));
+    }
 
-        try {
-            int index = getIndex(pos);
-            int oldSectorOffset = chunkOffsets[index];
-            int oldSectorCount = chunkSectorCounts[index];
+    /**
+     * Writes several data chunks of this region in one operation.
+     * <p>
+     * All written chunks are allocated a single contiguous run of fresh sectors (see {@link VxSectorAllocator}),
+     * the payloads are written in file order with gathering writes (chunks in adjacent sectors share one system
+     * call), and the header is updated once for the whole batch. A chunk is never rewritten in place: its old
+     * sectors are only returned to the free space after the header points to the new data. If the process dies
+     * while the batch is written, the header still points to the old, intact entries.
+     * <p>
+     * The data is not forced to disk. After a power loss, the header may have been written back without the data
+     * it points to, since the operating system does not preserve the order of page write-backs.
+     * <p>
+     * Empty buffers (readable bytes == 0) delete their chunk.
+     *
+     * @param positions The chunk positions. Each position may appear only once.
+     * @param data      The buffers containing the data to write, in the same order as the positions.
+     */
+    public synchronized void writeBatch(List<ChunkPos> positions, List<ByteBuf> data) {
+        if (!isOpen()) return;
 
-            int dataSize = data.readableBytes();
+        int count = positions.size();
+        int[] indices = new int[count];
+        int[] targets = new int[count];
+        int[] sectorCounts = new int[count];
+        ByteBuf[] payloads = new ByteBuf[count];
+        IntArrayList released = new IntArrayList();
+        int allocatedStart = 0;
+        int writtenSectors = 0;
 
-            // ==========================================
-            // CASE 1: Deletion (Empty Data)
-            // ==========================================
-            if (dataSize == 0) {
-                if (oldSectorOffset != 0) {
-                    // 1. Mark previously used sectors as free
-                    for (int i = 0; i < oldSectorCount; i++) {
-                        usedSectors.clear(oldSectorOffset + i);
+        try {
+            // 1. Encode the payloads and release the old sectors of every rewritten chunk
+            boolean deleted = false;
+            for (int i = 0; i < count; i++) {
+                int index = getIndex(positions.get(i));
+                indices[i] = index;
+                int oldSectorOffset = sectorOffset(index);
+                int oldSectorCount = sectorCount(index);
+                ByteBuf chunk = data.get(i);
+
+                if (!chunk.isReadable()) {
+                    // Deletion
+                    if (oldSectorOffset != 0) {
+                        released.add(oldSectorOffset);
+                        released.add(oldSectorCount);
+                        deleted = true;
                     }
+                    continue;
+                }
 
-                    // 2. Clear memory cache
-                    chunkOffsets[index] = 0;
-                    chunkSectorCounts[index] = 0;
+                payloads[i] = codec.encode(chunk);
 
-                    // 3. Clear header entry on disk (write 0 for offset and 0 for count)
-                    ByteBuffer headerEntry = ByteBuffer.allocate(8);
-                    headerEntry.putInt(0); // Offset
-                    headerEntry.putInt(0); // Count
-                    headerEntry.flip();
-                    fileChannel.write(headerEntry, index * 8L);
+                // Payload size + 4 bytes for the length word.
+                int sectorsNeeded = (payloads[i].readableBytes() + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+                sectorCounts[i] = sectorsNeeded;
 
-                    // 4. Check if the file is now completely empty
-                    checkAndPruneFile();
+                // Never in place: the old entry must stay intact until the header points to the new one
+                if (oldSectorOffset != 0) {
+                    released.add(oldSectorOffset);
+                    released.add(oldSectorCount);
                 }
-                return;
+                writtenSectors += sectorsNeeded;
             }
 
-            // ==========================================
-            // CASE 2: Writing Data
-            // ==========================================
-
-            // Calculate required sectors.
-            // Payload size + 4 bytes for length prefix.
-            int totalSize = dataSize + 4;
-            int sectorsNeeded = (totalSize + SECTOR_SIZE - 1) / SECTOR_SIZE;
-
-            int newSectorOffset;
-
-            // Strategy: Reuse existing sectors if the count matches exactly.
-            if (oldSectorOffset != 0 && oldSectorCount == sectorsNeeded) {
-                newSectorOffset = oldSectorOffset;
-            } else {
-                // Otherwise, free the old sectors and allocate a new block.
-                if (oldSectorOffset != 0) {
-                    for (int i = 0; i < oldSectorCount; i++) {
-                        usedSectors.clear(oldSectorOffset + i);
+            // 2. Allocate one run for all written chunks
+            if (writtenSectors > 0) {
+                allocatedStart = allocator.allocate(writtenSectors);
+                int next = allocatedStart;
+                for (int i = 0; i < count; i++) {
+                    if (payloads[i] != null) {
+                        targets[i] = next;
+                        next += sectorCounts[i];
                     }
                 }
-                newSectorOffset = allocateSectors(sectorsNeeded);
             }
 
-            // Prepare the file buffer: [Length (4 bytes)] + [Data] + [Padding]
-            ByteBuffer fileBuffer = ByteBuffer.allocate(sectorsNeeded * SECTOR_SIZE);
-            fileBuffer.putInt(dataSize);
+            // 3. Write the payloads in file order
+            writePayloads(payloads, targets, sectorCounts);
+
+            // 4. Update the header, once the whole batch is written
+            for (int i = 0; i < count; i++) {
+                setEntry(indices[i], payloads[i] != null ? targets[i] : 0, payloads[i] != null ? sectorCounts[i] : 0);
+            }
+            allocatedStart = 0; // The header owns the new run now
 
-            // Transfer data from Netty ByteBuf to NIO ByteBuffer
-            int headerPos = fileBuffer.position();
-            fileBuffer.limit(headerPos + dataSize);
-            data.getBytes(data.readerIndex(), fileBuffer);
+            // 5. Only now may the replaced sectors be reused
+            for (int i = 0; i < released.size(); i += 2) {
+                allocator.free(released.getInt(i), released.getInt(i + 1));
+            }
 
-            // Restore limit to write full sectors (padding included)
-            fileBuffer.limit(fileBuffer.capacity());
-            fileBuffer.position(0);
+            // 6. Check if the file is now completely empty
+            if (deleted) {
+                checkAndPruneFile();
+            }
+        } catch (IOException e) {
+            VxMainClass.LOGGER.error("Failed to write {} chunks to {}", count, path, e);
+            // The header still points to the old entries, so the new run can be reused
+            if (allocatedStart != 0) {
+                allocator.free(allocatedStart, writtenSectors);
+            }
+        } finally {
+            for (ByteBuf payload : payloads) {
+                if (payload != null) payload.release();
+            }
+        }
+    }
 
-            // Write to disk
-            fileChannel.write(fileBuffer, (long) newSectorOffset * SECTOR_SIZE);
+    /**
+     * Writes encoded payloads to their target sectors. Each entry is laid out as
+     * {@code [Length Word (4 bytes)] + [Payload] + [Padding]}; entries in adjacent sectors are
+     * written together with a single gathering write.
+     */
+    private void writePayloads(ByteBuf[] payloads, int[] targets, int[] sectorCounts) throws IOException {
+        IntArrayList order = new IntArrayList(payloads.length);
+        for (int i = 0; i < payloads.length; i++) {
+            if (payloads[i] != null) order.add(i);
+        }
+        order.sort((a, b) -> Integer.compare(targets[a], targets[b]));
+
+        List<ByteBuffer> parts = new ArrayList<>();
+        int runStart = 0;
+        while (runStart < order.size()) {
+            // Extend the run while the next entry starts right after the previous one
+            int runEnd = runStart + 1;
+            while (runEnd < order.size()) {
+                int previous = order.getInt(runEnd - 1);
+                if (targets[order.getInt(runEnd)] != targets[previous] + sectorCounts[previous]) break;
+                runEnd++;
+            }
 
-            // Update Memory
-            chunkOffsets[index] = newSectorOffset;
-            chunkSectorCounts[index] = sectorsNeeded;
+            parts.clear();
+            for (int r = runStart; r < runEnd; r++) {
+                int i = order.getInt(r);
+                int dataSize = payloads[i].readableBytes();
+                ByteBuffer lengthWord = ByteBuffer.allocate(4);
+                lengthWord.putInt(0, dataSize | VERSIONED_FLAG);
+                parts.add(lengthWord);
+                parts.add(payloads[i].nioBuffer());
+
+                int padding = sectorCounts[i] * SECTOR_SIZE - 4 - dataSize;
+                if (padding > 0) {
+                    parts.add(ZERO_SECTOR.duplicate().limit(padding));
+                }
+            }
 
-            // Update Header on disk (8 bytes)
-            ByteBuffer headerEntry = ByteBuffer.allocate(8);
-            headerEntry.putInt(newSectorOffset);
-            headerEntry.putInt(sectorsNeeded);
-            headerEntry.flip();
-            fileChannel.write(headerEntry, index * 8L);
+            ByteBuffer[] buffers = parts.toArray(new ByteBuffer[0]);
+            fileChannel.position((long) targets[order.getInt(runStart)] * SECTOR_SIZE);
+            // Gathering writes may be partial (e.g., when exceeding the OS vector limit)
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                fileChannel.write(buffers);
+            }
+            runStart = runEnd;
+        }
+    }
 
+    /**
+     * @return The share of sectors in the file that hold live chunk data, between 0 and 1.
+     * @throws IOException If the file size cannot be determined.
+     */
+    public synchronized double getLiveRatio() throws IOException {
+        if (!isOpen()) return 1.0;
+        long dataSectors = Math.max(fileChannel.size() / SECTOR_SIZE, allocator.getEnd()) - HEADER_SECTOR_COUNT;
+        if (dataSectors <= 0) return 1.0;
+        long liveSectors = allocator.getEnd() - HEADER_SECTOR_COUNT - allocator.getFreeSectors();
+        return (double) liveSectors / dataSectors;
+    }
+
+    /**
+     * Checks whether the file is large enough and sparse enough to be worth compacting.
+     *
+     * @return True if {@link #compact()} should be run.
+     */
+    public synchronized boolean shouldCompact() {
+        if (!isOpen() || compactionUnsupported) return false;
+        try {
+            long dataSectors = fileChannel.size() / SECTOR_SIZE - HEADER_SECTOR_COUNT;
+            return dataSectors >= MIN_COMPACTION_SECTORS && getLiveRatio() < COMPACTION_LIVE_RATIO;
         } catch (IOException e) {
-            VxMainClass.LOGGER.error("Failed to write chunk {}", pos, e);
+            return false;
         }
     }
 
     /**
-     * Scans the used sectors bitmap to find a continuous range of free sectors.
-     * Uses a "First Fit" algorithm.
+     * Rewrites the region into a fresh file that holds only the live entries, packed without gaps,
+     * and atomically swaps it in for the current file.
+     * <p>
+     * Entries are copied verbatim (payloads are not decoded or recompressed) and laid out in entry
+     * order, so neighboring chunks end up next to each other. The fresh file is fully written and
+     * forced to disk before it replaces the old one; if anything fails before the swap, the old file
+     * stays untouched. Where the platform refuses to replace a file that is still mapped, the
+     * compaction is abandoned and not retried for this instance.
      *
-     * @param count The number of contiguous sectors required.
-     * @return The start sector index.
-     * @throws IOException If the file size calculation fails.
+     * @return The number of bytes reclaimed, or 0 if nothing was compacted.
+     * @throws IOException If the file cannot be reopened after the swap.
      */
-    private int allocateSectors(int count) throws IOException {
-        int fileSectorCount = (int) (fileChannel.size() / SECTOR_SIZE);
-
-        // Start search after the header.
-        // Sectors 0 and 1 are reserved.
-        int searchStart = HEADER_SECTOR_COUNT;
-
-        // 1. Try to fill gaps within the existing file
-        for (int i = searchStart; i < fileSectorCount; i++) {
-            if (!usedSectors.get(i)) {
-                int run = 0;
-                for (int j = 0; j < count; j++) {
-                    if (i + j < fileSectorCount && !usedSectors.get(i + j)) {
-                        run++;
-                    } else {
-                        break;
+    public synchronized long compact() throws IOException {
+        if (!isOpen()) return 0;
+
+        long sizeBefore = fileChannel.size();
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+
+        // 1. Write the live entries into the fresh file
+        try (FileChannel target = FileChannel.open(temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer newHeader = ByteBuffer.allocate(HEADER_SIZE);
+            int cursor = HEADER_SECTOR_COUNT;
+            for (int index = 0; index < 1024; index++) {
+                int sectorOffset = sectorOffset(index);
+                int sectorCount = sectorCount(index);
+                if (sectorOffset < HEADER_SECTOR_COUNT || sectorCount <= 0) continue;
+
+                long position = (long) sectorOffset * SECTOR_SIZE;
+                long remaining = (long) sectorCount * SECTOR_SIZE;
+                target.position((long) cursor * SECTOR_SIZE);
+                while (remaining > 0) {
+                    long copied = fileChannel.transferTo(position, remaining, target);
+                    if (copied <= 0) {
+                        throw new IOException("Entry " + index + " of " + path + " extends beyond the end of the file");
                     }
+                    position += copied;
+                    remaining -= copied;
                 }
-                if (run == count) {
-                    for (int k = 0; k < count; k++) usedSectors.set(i + k);
-                    return i;
-                }
+
+                newHeader.putInt(index * 8, cursor);
+                newHeader.putInt(index * 8 + 4, sectorCount);
+                cursor += sectorCount;
             }
+            target.write(newHeader, 0);
+            target.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
         }
 
-        // 2. Append to end of file
-        int newOffset = fileSectorCount;
+        // 2. Swap the fresh file in
+        header.force();
+        fileChannel.close();
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            VxMainClass.LOGGER.warn("Could not swap in compacted region file {}, keeping the old one", path, e);
+            compactionUnsupported = true;
+            Files.deleteIfExists(temp);
+            open();
+            return 0;
+        }
+
+        // 3. Continue on the compacted file
+        open();
+        return Math.max(0, sizeBefore - fileChannel.size());
+    }
 
-        // Safety: Ensure we never overwrite the header if the file was truncated/corrupt
-        if (newOffset < HEADER_SECTOR_COUNT) {
-            newOffset = HEADER_SECTOR_COUNT;
+    /**
+     * Checks the structure of the file and that every entry can be read and decoded.
+     *
+     * @return A description of every problem found; empty if the file is intact.
+     * @throws IOException If the file size cannot be determined.
+     */
+    synchronized List<String> verify() throws IOException {
+        List<String> problems = new ArrayList<>();
+        if (!isOpen()) {
+            problems.add("file is not open");
+            return problems;
         }
 
-        for (int k = 0; k < count; k++) usedSectors.set(newOffset + k);
-        return newOffset;
+        long fileSectors = (fileChannel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        long[] extents = new long[1024];
+        int extentCount = 0;
+        for (int index = 0; index < 1024; index++) {
+            int sectorOffset = sectorOffset(index);
+            int sectorCount = sectorCount(index);
+            if (sectorOffset == 0 && sectorCount == 0) continue;
+
+            if (sectorOffset < HEADER_SECTOR_COUNT || sectorCount <= 0) {
+                problems.add("entry " + index + ": invalid location " + sectorOffset + "+" + sectorCount);
+                continue;
+            }
+            if ((long) sectorOffset + sectorCount > fileSectors) {
+                problems.add("entry " + index + ": sectors " + sectorOffset + "+" + sectorCount + " extend beyond the file (" + fileSectors + " sectors)");
+                continue;
+            }
+            extents[extentCount++] = ((long) sectorOffset << 32) | index;
+
+            try {
+                ByteBuf data = read(index);
+                if (data != null) data.release();
+            } catch (IOException e) {
+                problems.add("entry " + index + ": " + e.getMessage() + (e.getCause() != null ? " (" + e.getCause().getMessage() + ")" : ""));
+            }
+        }
+
+        // Overlapping entries: sort by start sector and compare neighbors
+        LongArrays.radixSort(extents, 0, extentCount);
+        for (int i = 1; i < extentCount; i++) {
+            int previous = (int) extents[i - 1];
+            int current = (int) extents[i];
+            if (sectorOffset(previous) + sectorCount(previous) > sectorOffset(current)) {
+                problems.add("entries " + previous + " and " + current + " overlap");
+            }
+        }
+        return problems;
     }
 
     /**
@@ -373,9 +631,9 @@ public class VxRegionFile implements AutoCloseable {
      * @throws IOException If file operations fail.
      */
     private void checkAndPruneFile() throws IOException {
-        // Iterate through memory cache to see if any chunk is active
-        for (int offset : chunkOffsets) {
-            if (offset != 0) {
+        // Iterate through the header to see if any chunk is active
+        for (int i = 0; i < 1024; i++) {
+            if (sectorOffset(i) != 0) {
                 return; // File still has data, do nothing.
             }
         }
@@ -387,6 +645,8 @@ public class VxRegionFile implements AutoCloseable {
         try {
             Files.deleteIfExists(path);
         } catch (IOException e) {
+            // Some platforms refuse to delete a file while a mapping of it is still reachable.
+            // The file is left behind with an all-empty header, which reads as an empty region.
             VxMainClass.LOGGER.warn("Failed to delete empty region file: {}", path, e);
         }
     }
@@ -404,7 +664,9 @@ public class VxRegionFile implements AutoCloseable {
     @Override
     public synchronized void close() throws IOException {
         if (fileChannel != null && fileChannel.isOpen()) {
-            fileChannel.force(true);
+            header.force();
+            // Only the file content has to be durable; the size is covered by fdatasync semantics as well
+            fileChannel.force(false);
             fileChannel.close();
         }
     }
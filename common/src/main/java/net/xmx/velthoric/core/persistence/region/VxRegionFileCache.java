@@ -17,19 +17,27 @@ import java.util.Map;
 /**
  * An LRU (Least Recently Used) cache for open {@link VxRegionFile} instances.
  * This prevents the application from exhausting file handles when many regions are accessed.
+ * <p>
+ * Each I/O worker of a storage owns its own cache, so a region file is never evicted (and closed)
+ * by a thread other than the one using it.
  *
  * @author xI-Mx-Ix
  */
 public class VxRegionFileCache {
 
-    private static final int MAX_OPEN_FILES = 64;
+    private final int maxOpenFiles;
     private final Path storageDirectory;
     private final String extension;
 
-    private final Map<RegionPos, VxRegionFile> cache = new LinkedHashMap<>(MAX_OPEN_FILES, 0.75f, true) {
+    /**
+     * The chunk payload codec shared by all region files of the storage.
+     */
+    private final VxChunkCodec codec;
+
+    private final Map<RegionPos, VxRegionFile> cache = new LinkedHashMap<>(16, 0.75f, true) {
         @Override
         protected boolean removeEldestEntry(Map.Entry<RegionPos, VxRegionFile> eldest) {
-            if (size() > MAX_OPEN_FILES) {
+            if (size() > maxOpenFiles) {
                 try {
                     eldest.getValue().close();
                 } catch (IOException e) {
@@ -41,9 +49,17 @@ public class VxRegionFileCache {
         }
     };
 
-    public VxRegionFileCache(Path storageDirectory, String extension) {
+    /**
+     * @param storageDirectory The directory holding the region files.
+     * @param extension        The file extension of the region files.
+     * @param codec            The chunk payload codec of the storage.
+     * @param maxOpenFiles     The maximum number of region files kept open by this cache.
+     */
+    public VxRegionFileCache(Path storageDirectory, String extension, VxChunkCodec codec, int maxOpenFiles) {
         this.storageDirectory = storageDirectory;
         this.extension = extension;
+        this.codec = codec;
+        this.maxOpenFiles = maxOpenFiles;
     }
 
     /**
@@ -81,7 +97,7 @@ public class VxRegionFileCache {
         }
 
         // Open/Create the file and add to cache
-        VxRegionFile newFile = new VxRegionFile(filePath);
+        VxRegionFile newFile = new VxRegionFile(filePath, codec);
         cache.put(regionPos, newFile);
         return newFile;
     }
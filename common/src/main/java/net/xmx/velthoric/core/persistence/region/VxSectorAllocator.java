@@ -0,0 +1,248 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.region;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntBidirectionalIterator;
+import it.unimi.dsi.fastutil.ints.IntRBTreeSet;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+/**
+ * Manages the free space of a {@link VxRegionFile} in units of sectors.
+ * <p>
+ * Free space is kept as <b>extents</b> (runs of free sectors). Adjacent extents are merged when space is
+ * freed, and each extent is filed in a <b>size class</b>: lengths 1 to 4 have exact classes, longer extents
+ * are grouped by power of two. Within a class, extents are ordered by position, so allocation prefers the
+ * front of the file.
+ * <p>
+ * An allocation takes the lowest extent of the smallest class that is guaranteed to fit, splitting off the
+ * remainder. Only within the class of the requested length itself are extents scanned for one that is long
+ * enough. If nothing fits, the data is appended at the end of the file, absorbing a free extent at the tail.
+ * Allocation cost therefore depends on the number of size classes, not on the file size.
+ * <p>
+ * The allocator is not persisted. It is rebuilt from the header of the region file when the file is opened.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author xI-Mx-Ix
+ */
+public final class VxSectorAllocator {
+
+    /**
+     * The number of size classes holding a single exact length (1 to 4 sectors).
+     */
+    private static final int EXACT_CLASSES = 4;
+
+    /**
+     * The total number of size classes. The last class holds everything longer than 128 sectors.
+     */
+    private static final int CLASS_COUNT = 10;
+
+    /**
+     * The first sector that may be allocated (everything before belongs to the file header).
+     */
+    private final int firstSector;
+
+    /**
+     * Start sectors of the free extents, per size class, in ascending order.
+     */
+    private final IntRBTreeSet[] classes = new IntRBTreeSet[CLASS_COUNT];
+
+    /**
+     * Free extents: start sector to length.
+     */
+    private final Int2IntOpenHashMap lengthByStart = new Int2IntOpenHashMap();
+
+    /**
+     * Free extents: end sector (exclusive) to start sector. Used to merge with the preceding extent.
+     */
+    private final Int2IntOpenHashMap startByEnd = new Int2IntOpenHashMap();
+
+    /**
+     * The end of the used space in sectors. Everything from here on is free.
+     */
+    private int end;
+
+    /**
+     * The total number of sectors in free extents below {@link #end}.
+     */
+    private int freeSectors;
+
+    /**
+     * Creates an allocator for an empty file.
+     *
+     * @param firstSector The first sector after the file header.
+     */
+    public VxSectorAllocator(int firstSector) {
+        this.firstSector = firstSector;
+        this.end = firstSector;
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            classes[i] = new IntRBTreeSet();
+        }
+        lengthByStart.defaultReturnValue(-1);
+        startByEnd.defaultReturnValue(-1);
+    }
+
+    /**
+     * Rebuilds the free space from the entries of a region header. Everything that is not referenced
+     * by an entry is free; space behind the last entry is trimmed.
+     *
+     * @param offsets The start sector of each entry (0 for unused entries).
+     * @param counts  The sector count of each entry.
+     */
+    public void rebuild(int[] offsets, int[] counts) {
+        for (IntRBTreeSet set : classes) set.clear();
+        lengthByStart.clear();
+        startByEnd.clear();
+        freeSectors = 0;
+
+        // Sort the used extents by start sector: (start << 32 | count)
+        long[] used = new long[offsets.length];
+        int n = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] >= firstSector && counts[i] > 0) {
+                used[n++] = ((long) offsets[i] << 32) | counts[i];
+            }
+        }
+        LongArrays.radixSort(used, 0, n);
+
+        int cursor = firstSector;
+        for (int i = 0; i < n; i++) {
+            int start = (int) (used[i] >>> 32);
+            int count = (int) used[i];
+            if (start > cursor) {
+                addExtent(cursor, start - cursor);
+            }
+            // Overlapping entries (a damaged header) are tolerated by never moving the cursor back
+            cursor = Math.max(cursor, start + count);
+        }
+        end = cursor;
+    }
+
+    /**
+     * Allocates a run of contiguous sectors.
+     *
+     * @param count The number of sectors, at least 1.
+     * @return The first sector of the run.
+     */
+    public int allocate(int count) {
+        int sizeClass = classOf(count);
+        for (int k = sizeClass; k < CLASS_COUNT; k++) {
+            IntRBTreeSet set = classes[k];
+            if (set.isEmpty()) continue;
+
+            if (k < EXACT_CLASSES || k > sizeClass) {
+                // Every extent of this class is long enough
+                return takeFrom(set.firstInt(), count);
+            }
+
+            // Mixed lengths in the requested class: first fit by position
+            for (IntBidirectionalIterator it = set.iterator(); it.hasNext(); ) {
+                int start = it.nextInt();
+                if (lengthByStart.get(start) >= count) {
+                    return takeFrom(start, count);
+                }
+            }
+        }
+
+        // Nothing fits: append, reusing a free extent at the tail
+        int start = end;
+        int tailStart = startByEnd.get(end);
+        if (tailStart >= 0) {
+            removeExtent(tailStart, end - tailStart);
+            start = tailStart;
+        }
+        end = start + count;
+        return start;
+    }
+
+    /**
+     * Returns a run of sectors to the free space, merging it with adjacent free extents.
+     *
+     * @param start The first sector of the run.
+     * @param count The number of sectors.
+     */
+    public void free(int start, int count) {
+        if (start < firstSector || count <= 0) return;
+
+        int mergedStart = start;
+        int mergedEnd = start + count;
+
+        int previousStart = startByEnd.get(mergedStart);
+        if (previousStart >= 0) {
+            removeExtent(previousStart, mergedStart - previousStart);
+            mergedStart = previousStart;
+        }
+        int nextLength = lengthByStart.get(mergedEnd);
+        if (nextLength >= 0) {
+            removeExtent(mergedEnd, nextLength);
+            mergedEnd += nextLength;
+        }
+
+        if (mergedEnd >= end) {
+            // The run is at the tail: shrink the used space instead of keeping an extent
+            end = mergedStart;
+        } else {
+            addExtent(mergedStart, mergedEnd - mergedStart);
+        }
+    }
+
+    /**
+     * @return The end of the used space in sectors, i.e. the size the file needs.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return The number of free sectors below {@link #getEnd()}.
+     */
+    public int getFreeSectors() {
+        return freeSectors;
+    }
+
+    /**
+     * @return The number of free extents, a measure of fragmentation.
+     */
+    public int getFreeExtentCount() {
+        return lengthByStart.size();
+    }
+
+    /**
+     * Allocates from the front of a free extent, keeping the remainder free.
+     */
+    private int takeFrom(int start, int count) {
+        int length = lengthByStart.get(start);
+        removeExtent(start, length);
+        if (length > count) {
+            addExtent(start + count, length - count);
+        }
+        return start;
+    }
+
+    private void addExtent(int start, int length) {
+        lengthByStart.put(start, length);
+        startByEnd.put(start + length, start);
+        classes[classOf(length)].add(start);
+        freeSectors += length;
+    }
+
+    private void removeExtent(int start, int length) {
+        lengthByStart.remove(start);
+        startByEnd.remove(start + length);
+        classes[classOf(length)].remove(start);
+        freeSectors -= length;
+    }
+
+    /**
+     * @return The size class of a length: exact for 1 to 4, then one class per power of two.
+     */
+    private static int classOf(int length) {
+        if (length <= EXACT_CLASSES) return length - 1;
+        // 5-8 -> 4, 9-16 -> 5, ..., 65-128 -> 8, 129+ -> 9
+        int log2Ceil = 32 - Integer.numberOfLeadingZeros(length - 1);
+        return Math.min(CLASS_COUNT - 1, EXACT_CLASSES + log2Ceil - 3);
+    }
+}
@@ -73,6 +73,18 @@ public enum VxFieldType {
      */
     COMPOUND(15, -1);
 
+    /**
+     * All types indexed by their ID.
+     */
+    private static final VxFieldType[] BY_ID;
+
+    static {
+        int maxId = 0;
+        for (VxFieldType type : values()) maxId = Math.max(maxId, type.id);
+        BY_ID = new VxFieldType[maxId + 1];
+        for (VxFieldType type : values()) BY_ID[type.id] = type;
+    }
+
     /**
      * The unique byte identifier written to the storage file to identify the field type.
      */
@@ -125,15 +137,12 @@ public enum VxFieldType {
 
     /**
      * Retrieves a field type by its ID.
-     * This method searches the available types and returns the matching enumeration instance.
+     * This is a table lookup, as it runs once per field of every deserialized object.
      *
      * @param id The byte identifier read from the persistence format.
      * @return The corresponding field type, or null if the ID is unknown.
      */
     public static VxFieldType fromId(byte id) {
-        for (VxFieldType type : values()) {
-            if (type.id == id) return type;
-        }
-        return null;
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
     }
 }
\ No newline at end of file
@@ -6,11 +6,14 @@ package net.xmx.velthoric.core.persistence.schema;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import net.xmx.velthoric.init.VxMainClass;
 import net.xmx.velthoric.network.VxByteBuf;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
@@ -21,6 +24,13 @@ import java.util.function.Predicate;
  * without breaking backward compatibility) while maintaining the raw speed and low GC pressure
  * of direct buffer writing. Unknown fields are safely skipped, and unchanged default values
  * can be omitted to save space.
+ * <p>
+ * <b>Compilation:</b>
+ * On first use after registration, the schema is compiled into a generated class by {@link VxSchemaCompiler}
+ * that avoids the megamorphic lambda calls of the generic loop. The generic loop stays available as the
+ * <i>interpreter</i> ({@link #serializeInterpreted}, {@link #deserializeInterpreted}). It is used if compilation
+ * fails, and the first {@link #CROSS_CHECK_SAMPLES} serializations of a compiled schema are compared against it.
+ * On any difference, the schema permanently falls back to the interpreter.
  *
  * @param <T> The type of object managed by this schema.
  * @author xI-Mx-Ix
@@ -33,11 +43,36 @@ public class VxSchema<T> {
      */
     public static final short END_OF_SCHEMA = 0;
 
+    /**
+     * Whether schemas are compiled. If disabled, all schemas use the interpreter.
+     */
+    private static final boolean COMPILE = true;
+
+    /**
+     * The number of serializations checked against the interpreter after a schema was compiled.
+     */
+    private static final int CROSS_CHECK_SAMPLES = 64;
+
     /**
      * An internal registry mapping the unique field IDs to their respective definitions.
      */
     private final Map<Short, VxSchemaField<T>> fields = new HashMap<>();
 
+    /**
+     * The compiled codec, or null if the schema was not compiled (yet).
+     */
+    private volatile VxSchemaCodec<T> compiled;
+
+    /**
+     * Set if compilation failed or the compiled codec disagreed with the interpreter.
+     */
+    private volatile boolean compilationDisabled;
+
+    /**
+     * The remaining serializations to cross-check against the interpreter.
+     */
+    private final AtomicInteger pendingCrossChecks = new AtomicInteger();
+
     /**
      * Registers a new field within the schema architecture.
      * <p>
@@ -52,7 +87,7 @@ public class VxSchema<T> {
      * @param reader    The consumer function that reads data and applies it back to the object.
      * @throws IllegalArgumentException if the ID is 0 or already registered.
      */
-    public void register(short id, String name, VxFieldType type, Predicate<T> condition, BiConsumer<T, VxByteBuf> writer, BiConsumer<T, VxByteBuf> reader) {
+    public synchronized void register(short id, String name, VxFieldType type, Predicate<T> condition, BiConsumer<T, VxByteBuf> writer, BiConsumer<T, VxByteBuf> reader) {
         if (id == END_OF_SCHEMA) {
             throw new IllegalArgumentException("Field ID 0 is reserved for END_OF_SCHEMA.");
         }
@@ -60,6 +95,15 @@ public class VxSchema<T> {
             throw new IllegalArgumentException("Field ID " + id + " is already registered.");
         }
         fields.put(id, new VxSchemaField<>(id, name, type, condition, writer, reader));
+        // Recompile on next use
+        compiled = null;
+    }
+
+    /**
+     * @return True if this schema currently runs through a compiled codec.
+     */
+    public boolean isCompiled() {
+        return compiledCodec() != null;
     }
 
     /**
@@ -73,6 +117,24 @@ public class VxSchema<T> {
      * @param buf    The target buffer to write the encoded TLV payload into.
      */
     public void serialize(T object, VxByteBuf buf) {
+        VxSchemaCodec<T> codec = compiledCodec();
+        if (codec == null) {
+            serializeInterpreted(object, buf);
+        } else if (pendingCrossChecks.get() > 0 && pendingCrossChecks.getAndDecrement() > 0) {
+            serializeCrossChecked(codec, object, buf);
+        } else {
+            codec.serialize(object, buf);
+        }
+    }
+
+    /**
+     * Serializes an object with the interpreter, i.e. by iterating over the registered fields.
+     * Produces exactly the same bytes as {@link #serialize}.
+     *
+     * @param object The object to extract and serialize state from.
+     * @param buf    The target buffer to write the encoded TLV payload into.
+     */
+    public void serializeInterpreted(T object, VxByteBuf buf) {
         for (VxSchemaField<T> field : fields.values()) {
             if (!field.shouldWrite(object)) continue;
 
@@ -111,6 +173,22 @@ public class VxSchema<T> {
      * @param buf    The source buffer containing the encoded TLV payload.
      */
     public void deserialize(T object, VxByteBuf buf) {
+        VxSchemaCodec<T> codec = compiledCodec();
+        if (codec != null) {
+            codec.deserialize(object, buf);
+        } else {
+            deserializeInterpreted(object, buf);
+        }
+    }
+
+    /**
+     * Deserializes with the interpreter, i.e. by looking up every field in the registry.
+     * Behaves exactly like {@link #deserialize}.
+     *
+     * @param object The target object to populate with deserialized data.
+     * @param buf    The source buffer containing the encoded TLV payload.
+     */
+    public void deserializeInterpreted(T object, VxByteBuf buf) {
         while (buf.isReadable()) {
             short id = buf.readShort();
             if (id == END_OF_SCHEMA) break;
@@ -153,4 +231,66 @@ public class VxSchema<T> {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the compiled codec, compiling the schema if necessary.
+     *
+     * @return The codec, or null if the interpreter must be used.
+     */
+    private VxSchemaCodec<T> compiledCodec() {
+        VxSchemaCodec<T> codec = compiled;
+        if (codec != null || !COMPILE || compilationDisabled) {
+            return codec;
+        }
+        synchronized (this) {
+            if (compiled == null && !compilationDisabled) {
+                try {
+                    compiled = VxSchemaCompiler.compile(new ArrayList<>(fields.values()));
+                    pendingCrossChecks.set(CROSS_CHECK_SAMPLES);
+                } catch (Exception | LinkageError e) {
+                    VxMainClass.LOGGER.warn("Failed to compile schema {}, using the interpreter", describe(), e);
+                    compilationDisabled = true;
+                }
+            }
+            return compiled;
+        }
+    }
+
+    /**
+     * Serializes with the compiled codec and verifies the result against the interpreter.
+     * On a difference the interpreter's output is kept and compilation is disabled for this schema.
+     */
+    private void serializeCrossChecked(VxSchemaCodec<T> codec, T object, VxByteBuf buf) {
+        int start = buf.writerIndex();
+        codec.serialize(object, buf);
+
+        ByteBuf reference = ByteBufAllocator.DEFAULT.heapBuffer();
+        try {
+            serializeInterpreted(object, new VxByteBuf(reference));
+            int length = buf.writerIndex() - start;
+            if (length != reference.readableBytes() || !ByteBufUtil.equals(buf, start, reference, 0, length)) {
+                VxMainClass.LOGGER.error("Compiled schema {} disagrees with the interpreter, falling back to the interpreter", describe());
+                synchronized (this) {
+                    compilationDisabled = true;
+                    compiled = null;
+                }
+                buf.writerIndex(start);
+                buf.writeBytes(reference);
+            }
+        } finally {
+            reference.release();
+        }
+    }
+
+    /**
+     * @return The field names of this schema, for log messages.
+     */
+    private String describe() {
+        StringBuilder sb = new StringBuilder("[");
+        for (VxSchemaField<T> field : fields.values()) {
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(field.getName());
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.schema;
+
+import net.xmx.velthoric.network.VxByteBuf;
+
+/**
+ * A serializer and deserializer for the TLV payload of one {@link VxSchema}, generated by {@link VxSchemaCompiler}.
+ * Implementations produce exactly the same bytes as the interpreter of {@link VxSchema}.
+ *
+ * @param <T> The type of object managed by the schema.
+ * @author xI-Mx-Ix
+ */
+interface VxSchemaCodec<T> {
+
+    /**
+     * Serializes an object, see {@link VxSchema#serialize}.
+     *
+     * @param object The object to serialize.
+     * @param buf    The target buffer.
+     */
+    void serialize(T object, VxByteBuf buf);
+
+    /**
+     * Deserializes into an object, see {@link VxSchema#deserialize}.
+     *
+     * @param object The object to populate.
+     * @param buf    The source buffer.
+     */
+    void deserialize(T object, VxByteBuf buf);
+}
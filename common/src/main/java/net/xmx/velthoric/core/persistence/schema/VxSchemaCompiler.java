@@ -0,0 +1,392 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.core.persistence.schema;
+
+import net.xmx.velthoric.init.VxMainClass;
+import net.xmx.velthoric.network.VxByteBuf;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Compiles a {@link VxSchema} into a generated {@link VxSchemaCodec} class.
+ * <p>
+ * The interpreter of {@link VxSchema} loops over all fields and calls their condition, writer and reader
+ * through one shared call site each. With a dozen different lambdas behind these sites they are megamorphic,
+ * so the JIT can inline none of them. The generated class instead contains:
+ * <ul>
+ *     <li>A straight-line serializer with one call site per field. The conditions, writers and readers are
+ *     {@code static final} fields of the generated class, which the JIT treats as constants, so every call
+ *     site is monomorphic and the lambda bodies can be inlined.</li>
+ *     <li>Field IDs and type bytes as constants, and variable-length fields written in place with a
+ *     back-patched length instead of through a temporary buffer.</li>
+ *     <li>A deserializer dispatching on the field ID with a {@code lookupswitch} instead of a boxed map lookup.</li>
+ * </ul>
+ * The generated class is a <b>hidden class</b> (see {@link MethodHandles.Lookup#defineHiddenClassWithClassData}):
+ * it receives the lambdas as class data, cannot be referenced by name and is unloaded together with its schema.
+ * The output is byte-identical to the interpreter, which {@link VxSchema} cross-checks after compiling.
+ *
+ * @author xI-Mx-Ix
+ */
+final class VxSchemaCompiler {
+
+    /**
+     * The name of the generated class. The JVM appends a unique suffix to hidden classes.
+     */
+    private static final String CLASS_NAME = Type.getInternalName(VxSchemaCompiler.class).replace("VxSchemaCompiler", "VxCompiledSchema");
+
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String BYTE_BUF = "io/netty/buffer/ByteBuf";
+    private static final String BYTE_BUF_DESC = "L" + BYTE_BUF + ";";
+    private static final String VX_BYTE_BUF = Type.getInternalName(VxByteBuf.class);
+    private static final String PREDICATE = Type.getInternalName(Predicate.class);
+    private static final String BI_CONSUMER = Type.getInternalName(BiConsumer.class);
+    private static final String CODEC_METHOD_DESC = "(Ljava/lang/Object;L" + VX_BYTE_BUF + ";)V";
+
+    /**
+     * Returned by {@link #readLength} for an unknown field type.
+     */
+    private static final int UNKNOWN_TYPE = -2;
+
+    private VxSchemaCompiler() {
+    }
+
+    /**
+     * Generates and loads the codec for a list of fields.
+     *
+     * @param fields The fields in the order the interpreter writes them.
+     * @param <T>    The type of object managed by the schema.
+     * @return A new codec instance.
+     * @throws ReflectiveOperationException If the generated class cannot be defined or instantiated.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> VxSchemaCodec<T> compile(List<VxSchemaField<T>> fields) throws ReflectiveOperationException {
+        List<Object> classData = new ArrayList<>(fields.size() * 3);
+        for (VxSchemaField<T> field : fields) {
+            classData.add(field.getCondition());
+            classData.add(field.getWriter());
+            classData.add(field.getReader());
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup()
+                .defineHiddenClassWithClassData(generate(fields), List.copyOf(classData), true);
+        return (VxSchemaCodec<T>) lookup.lookupClass().getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Generates the class file of a codec.
+     */
+    private static byte[] generate(List<? extends VxSchemaField<?>> fields) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Never needed by the generated code; avoids loading classes through the wrong class loader
+                return OBJECT;
+            }
+        };
+        cw.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, OBJECT,
+                new String[]{Type.getInternalName(VxSchemaCodec.class)});
+
+        for (int i = 0; i < fields.size(); i++) {
+            int access = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL;
+            cw.visitField(access, "condition" + i, "L" + PREDICATE + ";", null, null).visitEnd();
+            cw.visitField(access, "writer" + i, "L" + BI_CONSUMER + ";", null, null).visitEnd();
+            cw.visitField(access, "reader" + i, "L" + BI_CONSUMER + ";", null, null).visitEnd();
+        }
+
+        generateStaticInit(cw, fields.size());
+        generateConstructor(cw);
+        generateSerialize(cw, fields);
+        generateDeserialize(cw, fields);
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Loads the lambdas from the class data into the static fields.
+     */
+    private static void generateStaticInit(ClassWriter cw, int fieldCount) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                "()Ljava/lang/invoke/MethodHandles$Lookup;", false);
+        mv.visitLdcInsn(ConstantDescs.DEFAULT_NAME);
+        mv.visitLdcInsn(Type.getType(List.class));
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;", false);
+        mv.visitTypeInsn(Opcodes.CHECKCAST, "java/util/List");
+        mv.visitVarInsn(Opcodes.ASTORE, 0);
+
+        String[] names = {"condition", "writer", "reader"};
+        String[] types = {PREDICATE, BI_CONSUMER, BI_CONSUMER};
+        for (int i = 0; i < fieldCount; i++) {
+            for (int k = 0; k < 3; k++) {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                pushInt(mv, i * 3 + k);
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;", true);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, types[k]);
+                mv.visitFieldInsn(Opcodes.PUTSTATIC, CLASS_NAME, names[k] + i, "L" + types[k] + ";");
+            }
+        }
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateConstructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates the equivalent of {@link VxSchema#serializeInterpreted}, unrolled over the fields.
+     * Locals: 1 = object, 2 = buffer, 3 = length position.
+     */
+    private static void generateSerialize(ClassWriter cw, List<? extends VxSchemaField<?>> fields) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "serialize", CODEC_METHOD_DESC, null, null);
+        mv.visitCode();
+
+        for (int i = 0; i < fields.size(); i++) {
+            VxSchemaField<?> field = fields.get(i);
+            Label skip = new Label();
+
+            mv.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "condition" + i, "L" + PREDICATE + ";");
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, PREDICATE, "test", "(Ljava/lang/Object;)Z", true);
+            mv.visitJumpInsn(Opcodes.IFEQ, skip);
+
+            // Header: ID and type
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            pushInt(mv, field.getId());
+            invokeBuf(mv, "writeShort", "(I)" + BYTE_BUF_DESC);
+            mv.visitInsn(Opcodes.POP);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            pushInt(mv, field.getType().getId());
+            invokeBuf(mv, "writeByte", "(I)" + BYTE_BUF_DESC);
+            mv.visitInsn(Opcodes.POP);
+
+            boolean variable = field.getType().isVariableLength();
+            if (variable) {
+                // Reserve the length and remember where it goes
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                invokeBuf(mv, "writerIndex", "()I");
+                mv.visitVarInsn(Opcodes.ISTORE, 3);
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitInsn(Opcodes.ICONST_0);
+                invokeBuf(mv, "writeInt", "(I)" + BYTE_BUF_DESC);
+                mv.visitInsn(Opcodes.POP);
+            }
+
+            mv.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "writer" + i, "L" + BI_CONSUMER + ";");
+            mv.visitVarInsn(Opcodes.ALOAD, 1);
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, BI_CONSUMER, "accept", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+
+            if (variable) {
+                // buf.setInt(lengthPos, buf.writerIndex() - lengthPos - 4)
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitVarInsn(Opcodes.ILOAD, 3);
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                invokeBuf(mv, "writerIndex", "()I");
+                mv.visitVarInsn(Opcodes.ILOAD, 3);
+                mv.visitInsn(Opcodes.ISUB);
+                mv.visitInsn(Opcodes.ICONST_4);
+                mv.visitInsn(Opcodes.ISUB);
+                invokeBuf(mv, "setInt", "(II)" + BYTE_BUF_DESC);
+                mv.visitInsn(Opcodes.POP);
+            }
+            mv.visitLabel(skip);
+        }
+
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        pushInt(mv, VxSchema.END_OF_SCHEMA);
+        invokeBuf(mv, "writeShort", "(I)" + BYTE_BUF_DESC);
+        mv.visitInsn(Opcodes.POP);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates the equivalent of {@link VxSchema#deserializeInterpreted} with a switch over the field IDs.
+     * Locals: 1 = object, 2 = buffer, 3 = field ID, 4 = type ID, 5 = length, 6 = slice, 7 = exception.
+     */
+    private static void generateDeserialize(ClassWriter cw, List<? extends VxSchemaField<?>> fields) {
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "deserialize", CODEC_METHOD_DESC, null, null);
+        mv.visitCode();
+
+        Label loop = new Label();
+        Label end = new Label();
+        Label skip = new Label();
+
+        // Field indices sorted by ID for the switch
+        Integer[] order = new Integer[fields.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Short.compare(fields.get(a).getId(), fields.get(b).getId()));
+        int[] keys = new int[order.length];
+        Label[] cases = new Label[order.length];
+        for (int k = 0; k < order.length; k++) {
+            keys[k] = fields.get(order[k]).getId();
+            cases[k] = new Label();
+        }
+
+        // while (buf.isReadable())
+        mv.visitLabel(loop);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        invokeBuf(mv, "isReadable", "()Z");
+        mv.visitJumpInsn(Opcodes.IFEQ, end);
+
+        // short id = buf.readShort(); if (id == END_OF_SCHEMA) break;
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        invokeBuf(mv, "readShort", "()S");
+        mv.visitVarInsn(Opcodes.ISTORE, 3);
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        mv.visitJumpInsn(Opcodes.IFEQ, end);
+
+        // byte typeId = buf.readByte(); int length = readLength(typeId, buf);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        invokeBuf(mv, "readByte", "()B");
+        mv.visitVarInsn(Opcodes.ISTORE, 4);
+        mv.visitVarInsn(Opcodes.ILOAD, 4);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(VxSchemaCompiler.class), "readLength",
+                "(BL" + VX_BYTE_BUF + ";)I", false);
+        mv.visitVarInsn(Opcodes.ISTORE, 5);
+        mv.visitVarInsn(Opcodes.ILOAD, 5);
+        pushInt(mv, UNKNOWN_TYPE);
+        mv.visitJumpInsn(Opcodes.IF_ICMPEQ, end);
+
+        mv.visitVarInsn(Opcodes.ILOAD, 3);
+        mv.visitLookupSwitchInsn(skip, keys, cases);
+
+        for (int k = 0; k < order.length; k++) {
+            int i = order[k];
+            VxSchemaField<?> field = fields.get(i);
+            mv.visitLabel(cases[k]);
+
+            // A field with a mismatched type is skipped
+            mv.visitVarInsn(Opcodes.ILOAD, 4);
+            pushInt(mv, field.getType().getId());
+            mv.visitJumpInsn(Opcodes.IF_ICMPNE, skip);
+
+            if (field.getType().isVariableLength()) {
+                // A strict slice prevents the reader from reading past its bounds
+                Label tryStart = new Label();
+                Label tryEnd = new Label();
+                Label handler = new Label();
+                mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitVarInsn(Opcodes.ILOAD, 5);
+                invokeBuf(mv, "readBytes", "(I)" + BYTE_BUF_DESC);
+                mv.visitVarInsn(Opcodes.ASTORE, 6);
+
+                mv.visitLabel(tryStart);
+                mv.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "reader" + i, "L" + BI_CONSUMER + ";");
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitTypeInsn(Opcodes.NEW, VX_BYTE_BUF);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitVarInsn(Opcodes.ALOAD, 6);
+                mv.visitMethodInsn(Opcodes.INVOKESPECIAL, VX_BYTE_BUF, "<init>", "(" + BYTE_BUF_DESC + ")V", false);
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, BI_CONSUMER, "accept", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+                mv.visitLabel(tryEnd);
+
+                mv.visitVarInsn(Opcodes.ALOAD, 6);
+                invokeBuf(mv, "release", "()Z");
+                mv.visitInsn(Opcodes.POP);
+                mv.visitJumpInsn(Opcodes.GOTO, loop);
+
+                mv.visitLabel(handler);
+                mv.visitVarInsn(Opcodes.ASTORE, 7);
+                mv.visitVarInsn(Opcodes.ALOAD, 6);
+                invokeBuf(mv, "release", "()Z");
+                mv.visitInsn(Opcodes.POP);
+                mv.visitVarInsn(Opcodes.ALOAD, 7);
+                mv.visitInsn(Opcodes.ATHROW);
+            } else {
+                mv.visitFieldInsn(Opcodes.GETSTATIC, CLASS_NAME, "reader" + i, "L" + BI_CONSUMER + ";");
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitVarInsn(Opcodes.ALOAD, 2);
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, BI_CONSUMER, "accept", "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+                mv.visitJumpInsn(Opcodes.GOTO, loop);
+            }
+        }
+
+        // Unknown or mismatched field
+        mv.visitLabel(skip);
+        mv.visitVarInsn(Opcodes.ILOAD, 4);
+        mv.visitVarInsn(Opcodes.ILOAD, 5);
+        mv.visitVarInsn(Opcodes.ALOAD, 2);
+        mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(VxSchemaCompiler.class), "skip",
+                "(BIL" + VX_BYTE_BUF + ";)V", false);
+        mv.visitJumpInsn(Opcodes.GOTO, loop);
+
+        mv.visitLabel(end);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void invokeBuf(MethodVisitor mv, String name, String descriptor) {
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, BYTE_BUF, name, descriptor, false);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(Opcodes.ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(Opcodes.SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    // --- Runtime helpers called by the generated code ---
+
+    /**
+     * Resolves the type of a field header and reads its length.
+     *
+     * @return The payload length of a variable-length field, -1 for a fixed-length field,
+     * or {@link #UNKNOWN_TYPE} if the type is unknown and deserialization must stop.
+     */
+    static int readLength(byte typeId, VxByteBuf buf) {
+        VxFieldType type = VxFieldType.fromId(typeId);
+        if (type == null) {
+            VxMainClass.LOGGER.warn("Encountered unknown field type {} in schema. Aborting deserialization for this object.", typeId);
+            return UNKNOWN_TYPE;
+        }
+        if (!type.isVariableLength()) return -1;
+        int length = buf.readInt();
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length " + length + " for field of type " + type);
+        }
+        return length;
+    }
+
+    /**
+     * Skips the payload of an unknown or mismatched field.
+     */
+    static void skip(byte typeId, int length, VxByteBuf buf) {
+        buf.skipBytes(length >= 0 ? length : VxFieldType.fromId(typeId).getFixedLength());
+    }
+}
@@ -95,6 +95,27 @@ public class VxSchemaField<T> {
         return type;
     }
 
+    /**
+     * @return The write condition, for {@link VxSchemaCompiler}.
+     */
+    Predicate<T> getCondition() {
+        return condition;
+    }
+
+    /**
+     * @return The writer, for {@link VxSchemaCompiler}.
+     */
+    BiConsumer<T, VxByteBuf> getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return The reader, for {@link VxSchemaCompiler}.
+     */
+    BiConsumer<T, VxByteBuf> getReader() {
+        return reader;
+    }
+
     /**
      * Evaluates whether this field should be serialized for the given object.
      * By dynamically skipping fields containing default values (e.g., zero velocity),
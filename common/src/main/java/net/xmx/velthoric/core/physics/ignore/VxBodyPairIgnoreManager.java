@@ -72,9 +72,14 @@ public class VxBodyPairIgnoreManager implements VxChunkPersistenceHandler {
             // Determine which chunk owns this ignore.
             // We use the chunk of body1 if it exists, otherwise a default fallback.
             VxServerBodyManager manager = world.getBodyManager();
-            VxBody b1 = manager.getVxBody(id1);
+            VxBody b1 = manager.requestBody(id1);
             int idx = b1 != null ? b1.getDataStoreIndex() : -1;
             long chunkKey = (idx != -1) ? manager.getDataStore().serverCurrent().chunkKey[idx] : 0;
+
+            // A body that is still dormant belongs to the chunk it was stored in
+            if (b1 == null && manager.isDormant(id1)) {
+                chunkKey = manager.getDormantChunks().chunkOf(id1);
+            }
             
             // Fallback: If the body was just spawned, it might not have its chunk key in the SoA yet.
             if (chunkKey == 0 || chunkKey == Long.MAX_VALUE) {
@@ -147,6 +152,13 @@ public class VxBodyPairIgnoreManager implements VxChunkPersistenceHandler {
         VxBody b1 = manager.getVxBody(ignore.getBody1Id());
         VxBody b2 = manager.getVxBody(ignore.getBody2Id());
 
+        // The partner of a loaded body may lie in a dormant chunk; requesting it decodes that chunk
+        if (b1 != null && b2 == null) {
+            b2 = manager.requestBody(ignore.getBody2Id());
+        } else if (b2 != null && b1 == null) {
+            b1 = manager.requestBody(ignore.getBody1Id());
+        }
+
         if (b1 != null && b2 != null && b1.getBodyId() != 0 && b2.getBodyId() != 0) {
             BodyPairIgnoreHandler handler = world.getBodyPairIgnoreHandler();
             if (handler != null) {
@@ -224,6 +236,16 @@ public class VxBodyPairIgnoreManager implements VxChunkPersistenceHandler {
         });
     }
 
+    /**
+     * Reads the collision ignores of a chunk that is likely to load soon into the read-ahead cache of the storage.
+     *
+     * @param pos The position of the chunk.
+     */
+    @Override
+    public void onChunkPrefetch(ChunkPos pos) {
+        ignoreStorage.prefetch(pos);
+    }
+
     /**
      * Handles the unloading of collision ignores when a chunk is removed from memory.
      * <p>
@@ -244,14 +266,14 @@ public class VxBodyPairIgnoreManager implements VxChunkPersistenceHandler {
 
     /**
      * Internal cleanup logic to remove an ignore from the dependency tracking 
-     * if neither participating body is currently loaded in memory.
+     * if neither participating body is currently loaded in memory. Bodies of dormant chunks count as loaded.
      *
      * @param ignore The ignore pair to check.
      */
     private void removeIfOrphaned(VxBodyPairIgnore ignore) {
         VxServerBodyManager manager = world.getBodyManager();
-        boolean b1Loaded = manager.getVxBody(ignore.getBody1Id()) != null;
-        boolean b2Loaded = manager.getVxBody(ignore.getBody2Id()) != null;
+        boolean b1Loaded = manager.getVxBody(ignore.getBody1Id()) != null || manager.isDormant(ignore.getBody1Id());
+        boolean b2Loaded = manager.getVxBody(ignore.getBody2Id()) != null || manager.isDormant(ignore.getBody2Id());
 
         if (!b1Loaded && !b2Loaded) {
             pendingIgnores.getOrDefault(ignore.getBody1Id(), Collections.emptySet()).remove(ignore);
@@ -15,6 +15,7 @@ import net.xmx.velthoric.core.constraint.manager.VxConstraintManager;
 import net.xmx.velthoric.core.ragdoll.VxRagdollManager;
 import net.xmx.velthoric.core.terrain.VxTerrainSystem;
 import net.xmx.velthoric.core.persistence.VxChunkPersistenceHandler;
+import net.xmx.velthoric.core.persistence.VxChunkReadAhead;
 import net.xmx.velthoric.core.physics.ignore.VxBodyPairIgnoreManager;
 import net.xmx.velthoric.core.terrain.interaction.VxTerrainInteractionHandler;
 import net.xmx.velthoric.init.VxMainClass;
@@ -104,7 +105,15 @@ public final class VxPhysicsWorld implements Runnable, Executor {
         /**
          * Size of the temporary memory allocator used by the physics job system.
          */
-        int tempAllocatorSize
+        int tempAllocatorSize,
+
+        /**
+         * Distance in chunks around players within which stored bodies are decoded and simulated. Like the view
+         * distance, it covers a square of chunks around the chunk of each player. Chunks further away keep their bodies serialized until a player comes close or a body is requested
+         * by ID. 0 decodes every chunk as soon as it loads (the default), a negative value uses the server's
+         * simulation distance.
+         */
+        int bodySimulationDistance
     ) {}
 
     /**
@@ -183,6 +192,11 @@ public final class VxPhysicsWorld implements Runnable, Executor {
      */
     private final List<VxChunkPersistenceHandler> persistenceHandlers = new ArrayList<>();
 
+    /**
+     * Predicts the chunks that moving players are about to load and reads their data ahead of time.
+     */
+    private final VxChunkReadAhead chunkReadAhead = new VxChunkReadAhead(this::prefetchChunkData);
+
     /**
      * A thread-safe queue of commands to be executed on the physics thread.
      */
@@ -250,7 +264,8 @@ public final class VxPhysicsWorld implements Runnable, Executor {
                 1.0f,          // timeBeforeSleep
                 0.005f,        // pointVelocitySleepThreshold
                 -9.81f,        // gravityY
-                64 * 1024 * 1024 // tempAllocatorSize
+                64 * 1024 * 1024, // tempAllocatorSize
+                0              // bodySimulationDistance (decode every chunk on load)
         ));
     }
 
@@ -285,6 +300,17 @@ public final class VxPhysicsWorld implements Runnable, Executor {
         }
     }
 
+    /**
+     * Asks all registered persistence systems to read the data of a chunk that is likely to load soon.
+     *
+     * @param pos The position of the chunk.
+     */
+    public void prefetchChunkData(ChunkPos pos) {
+        for (VxChunkPersistenceHandler handler : persistenceHandlers) {
+            handler.onChunkPrefetch(pos);
+        }
+    }
+
     /**
      * Triggers a save for all registered persistence systems for the given chunk.
      *
@@ -496,6 +522,7 @@ public final class VxPhysicsWorld implements Runnable, Executor {
      */
     public void onGameTick(ServerLevel level) {
         this.bodyManager.onGameTick(level);
+        this.chunkReadAhead.tick(level);
         VxTerrainInteractionHandler.tick(this);
     }
 
@@ -606,6 +633,13 @@ public final class VxPhysicsWorld implements Runnable, Executor {
         return FIXED_TIME_STEP;
     }
 
+    /**
+     * @return True if the calling thread is the physics thread of this world.
+     */
+    public boolean isPhysicsThread() {
+        return Thread.currentThread() == this.physicsThreadExecutor;
+    }
+
     /**
      * @return True if the physics simulation thread is active and running.
      */
@@ -46,9 +46,10 @@ public abstract class VxVehicle extends VxBody implements VxMountable {
 
     /**
      * Synchronizes the vehicle's linear speed in km/h.
-     * This is common to all vehicle types.
+     * This is common to all vehicle types. It is only shown in the HUD, so it is sent
+     * to riders only, at most 10 times per second.
      */
-    public static final VxServerAccessor<Float> SYNC_SPEED = VxServerAccessor.create(VxVehicle.class, VxDataSerializers.FLOAT);
+    public static final VxServerAccessor<Float> SYNC_SPEED = VxServerAccessor.create(VxVehicle.class, VxDataSerializers.FLOAT).ridersOnly().maxRate(10);
 
     /**
      * The configuration for this vehicle instance.
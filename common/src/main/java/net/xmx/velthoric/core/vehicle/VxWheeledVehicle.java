@@ -57,38 +57,46 @@ public abstract class VxWheeledVehicle extends VxVehicle {
 
     // --- Network Synchronization Accessors ---
 
+    /**
+     * The distance in blocks within which players receive animation and audio details
+     * (RPM, pedals, steering wheel, wheel states). Beyond it, these details are not noticeable.
+     */
+    public static final double DETAIL_SYNC_RADIUS = 64.0;
+
     /**
      * Synchronizes the current engine RPM to clients for audio and UI.
+     * Only sent to players within hearing range, at most 20 times per second.
      */
     public static final VxServerAccessor<Float> SYNC_RPM =
-            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.FLOAT);
+            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.FLOAT).nearby(DETAIL_SYNC_RADIUS).maxRate(20);
 
     /**
      * Synchronizes the current gear index to clients.
      * <p>
      * Values: 0 (Neutral), -1 (Reverse), 1+ (Forward Gears).
+     * Only displayed in the HUD, so it is only sent to riders.
      */
     public static final VxServerAccessor<Integer> SYNC_GEAR =
-            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.INTEGER);
+            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.INTEGER).ridersOnly();
 
     /**
      * Synchronizes the smoothed throttle input [0..1] for animation (pedals).
      */
     public static final VxServerAccessor<Float> SYNC_THROTTLE =
-            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.FLOAT);
+            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.FLOAT).nearby(DETAIL_SYNC_RADIUS).maxRate(20);
 
     /**
      * Synchronizes the smoothed steering input [-1..1] for animation (steering wheel).
      */
     public static final VxServerAccessor<Float> SYNC_STEER =
-            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.FLOAT);
+            VxServerAccessor.create(VxWheeledVehicle.class, VxDataSerializers.FLOAT).nearby(DETAIL_SYNC_RADIUS).maxRate(20);
 
     /**
      * Synchronizes the visual state (rotation, compression, steering) of all wheels.
      * Used for smooth client-side interpolation of wheel parts.
      */
     public static final VxServerAccessor<List<VxVehicleWheelState>> SYNC_WHEELS =
-            VxServerAccessor.create(VxWheeledVehicle.class, VxVehicleSerializers.WHEEL_STATES);
+            VxServerAccessor.create(VxWheeledVehicle.class, VxVehicleSerializers.WHEEL_STATES).nearby(DETAIL_SYNC_RADIUS).maxRate(20);
 
     // --- Components ---
 
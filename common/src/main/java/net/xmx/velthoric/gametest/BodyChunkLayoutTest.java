@@ -0,0 +1,258 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.persistence.VxBodyChunkIndex;
+import net.xmx.velthoric.core.body.persistence.VxBodyCodec;
+import net.xmx.velthoric.core.body.persistence.VxColumnarBodyCodec;
+import net.xmx.velthoric.core.body.persistence.VxSerializedBodyData;
+import net.xmx.velthoric.core.persistence.schema.VxFieldType;
+import net.xmx.velthoric.core.persistence.schema.VxSchema;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Verification of the body chunk layouts.
+ * <p>
+ * Chunks of serialized bodies are written in the record layout of {@link VxBodyCodec} and in the
+ * columnar layout of {@link VxColumnarBodyCodec}, and read back the way the body storage reads them.
+ * The schema payloads are built by hand, including the cases the columnar layout has to fall back on:
+ * positions that are not exact relative to the chunk, fields with unexpected types and fields out of order.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class BodyChunkLayoutTest {
+
+    private static final ResourceLocation[] TYPES = {
+            ResourceLocation.tryParse("velthoric:box"),
+            ResourceLocation.tryParse("velthoric:marble"),
+            ResourceLocation.tryParse("velthoric:rope")
+    };
+
+    /**
+     * Verifies that both layouts read back exactly the bodies that were written, that a chunk in the
+     * record layout is converted to the same columnar data as the bodies it holds, and that the index
+     * of a columnar chunk finds every stored position.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testLayoutRoundTrip(GameTestHelper helper) {
+        Random random = new Random(46);
+        ChunkPos[] chunks = {new ChunkPos(0, 0), new ChunkPos(-3, 7), new ChunkPos(1_800_000, -1_800_000)};
+        for (ChunkPos pos : chunks) {
+            for (int count : new int[]{0, 1, 64}) {
+                Map<UUID, double[]> positions = new HashMap<>();
+                List<VxSerializedBodyData> bodies = createBodies(pos, count, random, positions);
+                String where = count + " bodies in chunk " + pos.x + "," + pos.z;
+
+                byte[] records = writeRecords(bodies);
+                byte[] columns = writeColumnar(pos, bodies);
+                helper.assertTrue(!VxColumnarBodyCodec.isColumnar(Unpooled.wrappedBuffer(records)), "A record chunk of " + where + " reads as columnar.");
+                helper.assertTrue(VxColumnarBodyCodec.isColumnar(Unpooled.wrappedBuffer(columns)), "A columnar chunk of " + where + " reads as records.");
+
+                List<VxSerializedBodyData> fromRecords = readChunk(pos, records);
+                List<VxSerializedBodyData> fromColumns = readChunk(pos, columns);
+                assertSameBodies(helper, bodies, fromRecords, "in the record layout with " + where);
+                assertSameBodies(helper, bodies, fromColumns, "in the columnar layout with " + where);
+
+                // A chunk of the old layout is converted when it is saved again
+                helper.assertTrue(Arrays.equals(writeColumnar(pos, fromRecords), columns), "Converting the record chunk of " + where + " changed its data.");
+
+                VxBodyChunkIndex index = VxColumnarBodyCodec.index(pos, new VxByteBuf(Unpooled.wrappedBuffer(columns)));
+                helper.assertTrue(index.size() == count, "The index of " + where + " holds " + index.size() + " bodies.");
+                for (int i = 0; i < index.size(); i++) {
+                    double[] expected = positions.get(index.ids()[i]);
+                    if (expected == null) continue; // Raw bodies are indexed at the chunk center
+                    double[] actual = Arrays.copyOfRange(index.positions(), i * 3, i * 3 + 3);
+                    helper.assertTrue(Arrays.equals(expected, actual), "The index of " + where + " moved body " + i + ".");
+                }
+
+                release(bodies);
+                release(fromRecords);
+                release(fromColumns);
+            }
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a columnar chunk of an unknown layout version and every truncated columnar chunk
+     * fail to read instead of producing bodies.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRejectsUnknownAndTruncated(GameTestHelper helper) {
+        ChunkPos pos = new ChunkPos(5, -2);
+        List<VxSerializedBodyData> bodies = createBodies(pos, 16, new Random(47), new HashMap<>());
+        byte[] columns = writeColumnar(pos, bodies);
+        release(bodies);
+
+        byte[] future = columns.clone();
+        Unpooled.wrappedBuffer(future).setInt(0, VxColumnarBodyCodec.MARKER | (VxColumnarBodyCodec.VERSION + 1));
+        helper.assertTrue(readFails(pos, future), "A chunk of an unknown layout version was read.");
+        try {
+            VxColumnarBodyCodec.index(pos, new VxByteBuf(Unpooled.wrappedBuffer(future)));
+            helper.fail("A chunk of an unknown layout version was indexed.");
+        } catch (DecoderException expected) {
+            // Expected
+        }
+
+        for (int length = 4; length < columns.length; length++) {
+            helper.assertTrue(readFails(pos, Arrays.copyOf(columns, length)), "A columnar chunk cut to " + length + " of " + columns.length + " bytes was read.");
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Creates serialized bodies with schema payloads as {@link VxBodyCodec#SCHEMA} writes them, remembering
+     * the position of every body whose fields are in order.
+     */
+    public static List<VxSerializedBodyData> createBodies(ChunkPos pos, int count, Random random, Map<UUID, double[]> positions) {
+        byte[][] shapes = new byte[3][];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = new byte[20 + random.nextInt(60)];
+            random.nextBytes(shapes[i]);
+        }
+
+        List<VxSerializedBodyData> bodies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UUID id = new UUID(random.nextLong(), random.nextLong());
+            VxByteBuf payload = new VxByteBuf(Unpooled.buffer());
+            double[] position = {
+                    pos.getMinBlockX() + random.nextDouble() * 16,
+                    64 + random.nextInt(32) + random.nextFloat(),
+                    pos.getMinBlockZ() + random.nextDouble() * 16
+            };
+            boolean outOfOrder = random.nextInt(16) == 0;
+
+            if (outOfOrder) writeQuaternion(payload, random);
+            payload.writeShort(VxBodyCodec.FIELD_POSITION).writeByte(VxFieldType.RVEC3.getId());
+            payload.writeDouble(position[0]).writeDouble(position[1]).writeDouble(position[2]);
+            if (!outOfOrder) writeQuaternion(payload, random);
+            if (random.nextInt(4) != 0) {
+                payload.writeShort(VxBodyCodec.FIELD_LINEAR_VELOCITY).writeByte(VxFieldType.VEC3F.getId());
+                payload.writeFloat(random.nextFloat()).writeFloat(-random.nextFloat()).writeFloat(0f);
+                payload.writeShort(VxBodyCodec.FIELD_ANGULAR_VELOCITY).writeByte(VxFieldType.VEC3F.getId());
+                payload.writeFloat(0f).writeFloat(random.nextFloat()).writeFloat(0f);
+            }
+            if (random.nextInt(8) == 0) {
+                // A field of an unexpected type stays in the residual
+                payload.writeShort(VxBodyCodec.FIELD_MOTION_TYPE).writeByte(VxFieldType.INT.getId()).writeInt(random.nextInt(3));
+            } else {
+                payload.writeShort(VxBodyCodec.FIELD_MOTION_TYPE).writeByte(VxFieldType.BYTE.getId()).writeByte(random.nextInt(3));
+            }
+            payload.writeShort(VxBodyCodec.FIELD_ACTIVATION).writeByte(VxFieldType.BYTE.getId()).writeByte(random.nextInt(2));
+            payload.writeShort(VxBodyCodec.FIELD_BEHAVIORS).writeByte(VxFieldType.LONG.getId()).writeLong(random.nextInt(8));
+            if (random.nextInt(10) == 0) {
+                byte[] vertices = new byte[12 * (1 + random.nextInt(40))];
+                random.nextBytes(vertices);
+                writeVariable(payload, VxBodyCodec.FIELD_SOFT_BODY_VERTICES, VxFieldType.BYTES, vertices);
+            }
+            if (random.nextInt(6) != 0) {
+                writeVariable(payload, VxBodyCodec.FIELD_SHAPE, VxFieldType.SHAPE, shapes[random.nextInt(shapes.length)]);
+            }
+            byte[] typeData = new byte[random.nextInt(24)];
+            random.nextBytes(typeData);
+            writeVariable(payload, VxBodyCodec.FIELD_TYPE_DATA, VxFieldType.BYTES, typeData);
+            payload.writeShort(VxSchema.END_OF_SCHEMA);
+
+            bodies.add(new VxSerializedBodyData(TYPES[random.nextInt(TYPES.length)], id, payload));
+            if (!outOfOrder) positions.put(id, position);
+        }
+        return bodies;
+    }
+
+    private static void writeQuaternion(VxByteBuf payload, Random random) {
+        payload.writeShort(VxBodyCodec.FIELD_ROTATION).writeByte(VxFieldType.QUATERNION.getId());
+        payload.writeFloat(0f).writeFloat(random.nextFloat()).writeFloat(0f).writeFloat(1f);
+    }
+
+    private static void writeVariable(VxByteBuf payload, short id, VxFieldType type, byte[] data) {
+        payload.writeShort(id).writeByte(type.getId());
+        payload.writeInt(data.length).writeBytes(data);
+    }
+
+    /**
+     * Writes a chunk in the record layout, the layout of every chunk saved before the columnar one.
+     */
+    public static byte[] writeRecords(List<VxSerializedBodyData> bodies) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        buf.writeInt(bodies.size());
+        for (VxSerializedBodyData body : bodies) {
+            VxBodyCodec.serialize(body, buf);
+        }
+        return ByteBufUtil.getBytes(buf);
+    }
+
+    public static byte[] writeColumnar(ChunkPos pos, List<VxSerializedBodyData> bodies) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        VxColumnarBodyCodec.write(pos, Collections.emptyList(), bodies, buf);
+        return ByteBufUtil.getBytes(buf);
+    }
+
+    /**
+     * Reads a chunk of either layout, as the body storage does.
+     */
+    public static List<VxSerializedBodyData> readChunk(ChunkPos pos, byte[] data) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.wrappedBuffer(data));
+        List<VxSerializedBodyData> results = new ArrayList<>();
+        if (VxColumnarBodyCodec.isColumnar(buf)) {
+            VxColumnarBodyCodec.read(pos, buf, results);
+        } else {
+            int count = buf.readInt();
+            for (int i = 0; i < count; i++) {
+                results.add(VxBodyCodec.deserialize(buf));
+            }
+        }
+        return results;
+    }
+
+    private static boolean readFails(ChunkPos pos, byte[] data) {
+        List<VxSerializedBodyData> results = new ArrayList<>();
+        try {
+            VxColumnarBodyCodec.read(pos, new VxByteBuf(Unpooled.wrappedBuffer(data)), results);
+            return false;
+        } catch (RuntimeException e) {
+            return true;
+        } finally {
+            release(results);
+        }
+    }
+
+    private static void assertSameBodies(GameTestHelper helper, List<VxSerializedBodyData> expected, List<VxSerializedBodyData> actual, String where) {
+        helper.assertTrue(expected.size() == actual.size(), actual.size() + " of " + expected.size() + " bodies were read " + where + ".");
+        for (int i = 0; i < expected.size(); i++) {
+            VxSerializedBodyData a = expected.get(i);
+            VxSerializedBodyData b = actual.get(i);
+            helper.assertTrue(a.id().equals(b.id()) && a.typeId().equals(b.typeId()), "Body " + i + " changed its identity " + where + ".");
+            helper.assertTrue(ByteBufUtil.equals(a.bodyData(), b.bodyData()), "Body " + i + " changed its payload " + where + ".");
+        }
+    }
+
+    public static void release(List<VxSerializedBodyData> bodies) {
+        for (VxSerializedBodyData body : bodies) {
+            ByteBuf data = body.bodyData();
+            if (data.refCnt() > 0) data.release();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.network.internal.VxNetworkDispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Verification of the chunk departure tracking that guards chunk removal shortcuts.
+ * <p>
+ * Departures are recorded for chunks far outside the test structure, so the tracking of the
+ * running server is not affected.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class ChunkDepartureTest {
+
+    private static final int FAR_CHUNK = 1_000_000;
+
+    /**
+     * Verifies that departures recorded concurrently from several threads, as the physics thread
+     * does, are all visible to the game thread while it keeps querying, including while old entries
+     * are pruned.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testConcurrentDepartures(GameTestHelper helper) {
+        VxNetworkDispatcher dispatcher = VelthoricGameTestUtils.getManager(helper).getNetworkDispatcher();
+        helper.assertTrue(dispatcher.isChunkSettled(ChunkPos.asLong(FAR_CHUNK, -FAR_CHUNK)), "An untouched chunk is not settled.");
+
+        int threads = 4;
+        int perThread = 3_000; // Together above the pruning threshold
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int row = FAR_CHUNK + t;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) dispatcher.onBodyLeavingChunk(ChunkPos.asLong(FAR_CHUNK + i, row));
+                }));
+            }
+            // Read like the game thread does while the writers are running
+            boolean running = true;
+            while (running) {
+                for (int i = 0; i < perThread; i += 97) dispatcher.isChunkSettled(ChunkPos.asLong(FAR_CHUNK + i, FAR_CHUNK));
+                running = false;
+                for (Future<?> writer : writers) running |= !writer.isDone();
+            }
+            for (Future<?> writer : writers) writer.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Concurrent departures failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                helper.assertTrue(!dispatcher.isChunkSettled(ChunkPos.asLong(FAR_CHUNK + i, FAR_CHUNK + t)),
+                        "The departure from chunk " + i + " of writer " + t + " was lost.");
+            }
+        }
+        helper.succeed();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.stephengold.joltjni.Quat;
+import com.github.stephengold.joltjni.RVec3;
+import com.github.stephengold.joltjni.enumerate.EActivation;
+import com.github.stephengold.joltjni.enumerate.EMotionType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.Vec3;
+import net.xmx.velthoric.builtin.VxRegisteredBodies;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.VxRemovalReason;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataContainer;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+import net.xmx.velthoric.math.VxTransform;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Verification of the client decode path of state batches.
+ * <p>
+ * Multi-section payloads are written with the server's record writer and applied to a standalone
+ * client data store, including records of unknown bodies and of outdated ID generations.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class ClientStateDecodeTest {
+
+    private static final int BODIES = 3;
+    private static final int SECTIONS = 20;
+
+    /**
+     * Verifies that records are applied to the bodies their network IDs are bound to, that unknown
+     * and stale IDs are skipped without losing the stream position, and that decoding does not
+     * allocate per record.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testDecodeResolvesAndSkips(GameTestHelper helper) {
+        VxServerBodyManager manager = VelthoricGameTestUtils.getManager(helper);
+        VxClientBodyDataStore store = new VxClientBodyDataStore();
+        VxBody[] bodies = new VxBody[BODIES];
+        int[] networkIds = new int[BODIES];
+        int[] indices = new int[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            Vec3 pos = helper.absoluteVec(new Vec3(3.5 + i * 3, 2.0, 9.5));
+            bodies[i] = manager.createBody(VxRegisteredBodies.BOX,
+                    new VxTransform(new RVec3(pos.x, pos.y, pos.z), Quat.sIdentity()),
+                    EMotionType.Static, EActivation.DontActivate, b -> {});
+            helper.assertTrue(bodies[i] != null, "Failed to spawn test body " + i + ".");
+            // Dense indices with different generations, like after some churn on the server
+            networkIds[i] = VxNetworkIdAllocator.pack(5 + i * 700, i + 1);
+            indices[i] = store.addBody(bodies[i], networkIds[i]);
+        }
+
+        int unknownId = VxNetworkIdAllocator.pack(4000, 0);
+        int staleId = VxNetworkIdAllocator.pack(5, 0);
+        helper.assertTrue(store.getIndexForNetworkId(staleId) == -1, "An outdated generation resolved to a body.");
+        helper.assertTrue(store.getIndexForNetworkId(unknownId) == -1, "An unbound ID resolved to a body.");
+        helper.assertTrue(store.getSupersededNetworkId(staleId) == networkIds[0], "The bound generation was not reported as superseded.");
+
+        ByteBuf payload = Unpooled.buffer();
+        try {
+            VxPacketFactory.writeStateHeader(payload, 1000L);
+            for (int section = 0; section < SECTIONS; section++) {
+                payload.writeLong(ChunkPos.asLong(section, 1));
+                payload.writeInt(2 + BODIES);
+                VxPacketFactory.writeStateRecord(payload, unknownId, false, 0, 0, 0, 0f, 0f, 0f, 1f, 9f, 9f, 9f, 0, 0, 0);
+                VxPacketFactory.writeStateRecord(payload, staleId, true, 0, 0, 0, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0, 0, 0);
+                for (int i = 0; i < BODIES; i++) {
+                    // Section-relative values, so the last section wins with a known result
+                    VxPacketFactory.writeStateRecord(payload, networkIds[i], false,
+                            section * 16 + i + 0.25, 70.5, 16 + 0.75, 0f, 0f, 0f, 1f,
+                            i, section, 0f, section * 16, 0.0, 16.0);
+                }
+            }
+            long timestamp = payload.readLong();
+            int start = payload.readerIndex();
+
+            S2CUpdateBodyStateBatchPacket.applySections(payload, store, timestamp, 0.0);
+            helper.assertTrue(!payload.isReadable(), "Decoding stopped before the end of the payload.");
+            VxClientBodyDataContainer c = store.clientCurrent();
+            for (int i = 0; i < BODIES; i++) {
+                int index = indices[i];
+                int last = SECTIONS - 1;
+                helper.assertTrue(c.state1_posX[index] == last * 16 + i + 0.25 && c.state1_posY[index] == 70.5
+                                && c.state1_posZ[index] == 16.75, "Body " + i + " has the wrong position.");
+                helper.assertTrue(c.state1_velX[index] == i && c.state1_velY[index] == last,
+                        "Body " + i + " has the wrong velocity.");
+                helper.assertTrue(!c.isResting[index], "A stale resting record was applied to body " + i + ".");
+                helper.assertTrue(c.state1_timestamp[index] == 1000L, "Body " + i + " has the wrong timestamp.");
+            }
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean counter && counter.isThreadAllocatedMemorySupported()) {
+                for (int i = 0; i < 200; i++) {
+                    payload.readerIndex(start);
+                    S2CUpdateBodyStateBatchPacket.applySections(payload, store, timestamp, 0.0);
+                }
+                int passes = 1000;
+                long before = counter.getThreadAllocatedBytes(Thread.currentThread().threadId());
+                for (int i = 0; i < passes; i++) {
+                    payload.readerIndex(start);
+                    S2CUpdateBodyStateBatchPacket.applySections(payload, store, timestamp, 0.0);
+                }
+                long allocated = counter.getThreadAllocatedBytes(Thread.currentThread().threadId()) - before;
+                long records = (long) passes * SECTIONS * (2 + BODIES);
+                helper.assertTrue(allocated < records, "Decoding allocated " + allocated + " bytes for " + records + " records.");
+            }
+        } finally {
+            payload.release();
+        }
+
+        for (VxBody body : bodies) {
+            manager.removeBody(body.getPhysicsId(), VxRemovalReason.DISCARD);
+        }
+        helper.succeed();
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.stephengold.joltjni.*;
+import com.github.stephengold.joltjni.enumerate.*;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.constraint.persistence.VxConstraintSettingsCodec;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Verification of the constraint settings persistence formats.
+ * <p>
+ * For every constraint subtype, settings with non-default values are written with
+ * {@link VxConstraintSettingsCodec} and read back, both in the binary format and in the
+ * legacy object stream format. Jolt's own object stream of the restored settings serves
+ * as the reference, since it contains every field of the settings.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class ConstraintSettingsTest {
+
+    /**
+     * Round-trips the settings of all constraint subtypes through both formats.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testSettingsRoundTrip(GameTestHelper helper) {
+        Random random = new Random(7);
+        for (EConstraintSubType subType : EConstraintSubType.values()) {
+            if (!VxConstraintSettingsCodec.supports(subType) && subType != EConstraintSubType.Path) {
+                continue;
+            }
+            try (TwoBodyConstraintSettings original = createSample(subType, random)) {
+                byte[] reference = VxConstraintSettingsCodec.encodeStream(original);
+                byte[] data = VxConstraintSettingsCodec.encode(original, subType);
+                helper.assertTrue(VxConstraintSettingsCodec.isBinary(data) == VxConstraintSettingsCodec.supports(subType),
+                        subType + " settings were written in the wrong format.");
+
+                try (TwoBodyConstraintSettings restored = VxConstraintSettingsCodec.decode(data)) {
+                    helper.assertTrue(restored != null, subType + " settings could not be read back.");
+                    helper.assertTrue(Arrays.equals(reference, VxConstraintSettingsCodec.encodeStream(restored)),
+                            subType + " settings changed after a round trip.");
+                }
+
+                try (TwoBodyConstraintSettings legacy = VxConstraintSettingsCodec.decode(reference)) {
+                    helper.assertTrue(legacy != null, "Legacy " + subType + " settings could not be read.");
+                    helper.assertTrue(Arrays.equals(reference, VxConstraintSettingsCodec.encodeStream(legacy)),
+                            "Legacy " + subType + " settings changed after a round trip.");
+                }
+            }
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Creates settings of a subtype with every serialized field set to a non-default value.
+     * The constraint settings benchmark builds its constraint mix from these settings as well.
+     *
+     * @param subType The subtype, one with a binary layout or {@link EConstraintSubType#Path}.
+     * @param random  The source of the field values.
+     * @return A new settings object owned by the caller.
+     */
+    public static TwoBodyConstraintSettings createSample(EConstraintSubType subType, Random random) {
+        TwoBodyConstraintSettings settings = switch (subType) {
+            case Fixed -> {
+                FixedConstraintSettings s = new FixedConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPoint1(point(random));
+                s.setAxisX1(axis(random));
+                s.setAxisY1(axis(random));
+                s.setPoint2(point(random));
+                s.setAxisX2(axis(random));
+                s.setAxisY2(axis(random));
+                yield s;
+            }
+            case Point -> {
+                PointConstraintSettings s = new PointConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPoint1(point(random));
+                s.setPoint2(point(random));
+                yield s;
+            }
+            case Distance -> {
+                DistanceConstraintSettings s = new DistanceConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPoint1(point(random));
+                s.setPoint2(point(random));
+                s.setMinDistance(random.nextFloat());
+                s.setMaxDistance(1 + random.nextFloat());
+                spring(s.getLimitsSpringSettings(), random);
+                yield s;
+            }
+            case Hinge -> {
+                HingeConstraintSettings s = new HingeConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPoint1(point(random));
+                s.setHingeAxis1(axis(random));
+                s.setNormalAxis1(axis(random));
+                s.setPoint2(point(random));
+                s.setHingeAxis2(axis(random));
+                s.setNormalAxis2(axis(random));
+                s.setLimitsMin(-random.nextFloat());
+                s.setLimitsMax(random.nextFloat());
+                spring(s.getLimitsSpringSettings(), random);
+                s.setMaxFrictionTorque(random.nextFloat());
+                motor(s.getMotorSettings(), random);
+                yield s;
+            }
+            case Slider -> {
+                SliderConstraintSettings s = new SliderConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPoint1(point(random));
+                s.setSliderAxis1(axis(random));
+                s.setNormalAxis1(axis(random));
+                s.setPoint2(point(random));
+                s.setSliderAxis2(axis(random));
+                s.setNormalAxis2(axis(random));
+                s.setLimitsMin(-random.nextFloat());
+                s.setLimitsMax(random.nextFloat());
+                spring(s.getLimitsSpringSettings(), random);
+                s.setMaxFrictionForce(random.nextFloat());
+                motor(s.getMotorSettings(), random);
+                yield s;
+            }
+            case Cone -> {
+                ConeConstraintSettings s = new ConeConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPoint1(point(random));
+                s.setTwistAxis1(axis(random));
+                s.setPoint2(point(random));
+                s.setTwistAxis2(axis(random));
+                s.setHalfConeAngle(random.nextFloat());
+                yield s;
+            }
+            case SwingTwist -> {
+                SwingTwistConstraintSettings s = new SwingTwistConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPosition1(point(random));
+                s.setTwistAxis1(axis(random));
+                s.setPlaneAxis1(axis(random));
+                s.setPosition2(point(random));
+                s.setTwistAxis2(axis(random));
+                s.setPlaneAxis2(axis(random));
+                s.setSwingType(ESwingType.Pyramid);
+                s.setNormalHalfConeAngle(random.nextFloat());
+                s.setPlaneHalfConeAngle(random.nextFloat());
+                s.setTwistMinAngle(-random.nextFloat());
+                s.setTwistMaxAngle(random.nextFloat());
+                s.setMaxFrictionTorque(random.nextFloat());
+                motor(s.getSwingMotorSettings(), random);
+                motor(s.getTwistMotorSettings(), random);
+                yield s;
+            }
+            case SixDof -> {
+                SixDofConstraintSettings s = new SixDofConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setPosition1(point(random));
+                s.setAxisX1(axis(random));
+                s.setAxisY1(axis(random));
+                s.setPosition2(point(random));
+                s.setAxisX2(axis(random));
+                s.setAxisY2(axis(random));
+                s.setSwingType(ESwingType.Pyramid);
+                for (EAxis axis : new EAxis[]{EAxis.TranslationX, EAxis.TranslationY, EAxis.TranslationZ,
+                        EAxis.RotationX, EAxis.RotationY, EAxis.RotationZ}) {
+                    s.setMaxFriction(axis, random.nextFloat());
+                    s.setLimitedAxis(axis, -random.nextFloat(), random.nextFloat());
+                    motor(s.getMotorSettings(axis), random);
+                }
+                spring(s.getLimitsSpringSettings(EAxis.TranslationX), random);
+                spring(s.getLimitsSpringSettings(EAxis.TranslationY), random);
+                spring(s.getLimitsSpringSettings(EAxis.TranslationZ), random);
+                yield s;
+            }
+            case Gear -> {
+                GearConstraintSettings s = new GearConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setHingeAxis1(axis(random));
+                s.setHingeAxis2(axis(random));
+                s.setRatio(1 + random.nextFloat());
+                yield s;
+            }
+            case Pulley -> {
+                PulleyConstraintSettings s = new PulleyConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setBodyPoint1(point(random));
+                s.setFixedPoint1(point(random));
+                s.setBodyPoint2(point(random));
+                s.setFixedPoint2(point(random));
+                s.setRatio(1 + random.nextFloat());
+                s.setMinLength(random.nextFloat());
+                s.setMaxLength(2 + random.nextFloat());
+                yield s;
+            }
+            case RackAndPinion -> {
+                RackAndPinionConstraintSettings s = new RackAndPinionConstraintSettings();
+                s.setSpace(EConstraintSpace.LocalToBodyCom);
+                s.setHingeAxis(axis(random));
+                s.setSliderAxis(axis(random));
+                s.setRatio(1 + random.nextFloat());
+                yield s;
+            }
+            case Path -> new PathConstraintSettings();
+            default -> throw new IllegalArgumentException("Unknown constraint subtype " + subType);
+        };
+        settings.setConstraintPriority(random.nextInt(4));
+        settings.setNumVelocityStepsOverride(random.nextInt(3));
+        settings.setNumPositionStepsOverride(random.nextInt(3));
+        settings.setDrawConstraintSize(0.5f + random.nextFloat());
+        settings.setUserData(random.nextLong());
+        return settings;
+    }
+
+    private static RVec3 point(Random random) {
+        return new RVec3(random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2, random.nextDouble() * 4 - 2);
+    }
+
+    private static Vec3 axis(Random random) {
+        return new Vec3(random.nextFloat(), random.nextFloat(), random.nextFloat()).normalized();
+    }
+
+    private static void spring(SpringSettings spring, Random random) {
+        if (random.nextBoolean()) {
+            spring.setMode(ESpringMode.StiffnessAndDamping);
+            spring.setStiffness(random.nextFloat() * 1000);
+        } else {
+            spring.setMode(ESpringMode.FrequencyAndDamping);
+            spring.setFrequency(random.nextFloat() * 10);
+        }
+        spring.setDamping(random.nextFloat());
+    }
+
+    private static void motor(MotorSettings motor, Random random) {
+        spring(motor.getSpringSettings(), random);
+        motor.setMinForceLimit(-random.nextFloat() * 100);
+        motor.setMaxForceLimit(random.nextFloat() * 100);
+        motor.setMinTorqueLimit(-random.nextFloat() * 100);
+        motor.setMaxTorqueLimit(random.nextFloat() * 100);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.persistence.VxIOProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification of the I/O processor's task completion.
+ * <p>
+ * Standalone processors are shut down while tasks are still queued, the way storages are closed
+ * when the server stops.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class IOProcessorTest {
+
+    /**
+     * Verifies that a graceful shutdown still runs every queued task, urgent ones first, and that
+     * task failures reach their futures.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testGracefulShutdown(GameTestHelper helper) {
+        VxIOProcessor processor = new VxIOProcessor("GameTest", 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> order = new ArrayList<>();
+
+        CompletableFuture<Void> blocker = processor.run(0, false, () -> {
+            started.countDown();
+            awaitUninterruptibly(release);
+        });
+        awaitUninterruptibly(started);
+        CompletableFuture<Integer> background = processor.supply(0, false, () -> record(order, 1));
+        CompletableFuture<Integer> urgent = processor.supply(0, true, () -> record(order, 2));
+        CompletableFuture<Integer> failing = processor.supply(0, false, () -> {
+            throw new IllegalStateException("Expected by the test");
+        });
+        release.countDown();
+        processor.close();
+
+        helper.assertTrue(blocker.isDone() && background.join() == 1 && urgent.join() == 2, "Queued tasks did not run on shutdown.");
+        synchronized (order) {
+            helper.assertTrue(order.equals(List.of(2, 1)), "Tasks ran in the order " + order + ".");
+        }
+        helper.assertTrue(failing.isCompletedExceptionally(), "A failing task completed normally.");
+        helper.assertTrue(rejected(() -> processor.run(0, true, () -> {})), "A closed processor accepted a task.");
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a forced shutdown completes the futures of every queued task exceptionally
+     * instead of leaving them pending, while the running task still completes its own future.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testForcedShutdownRejectsQueued(GameTestHelper helper) {
+        VxIOProcessor processor = new VxIOProcessor("GameTest", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // A long write that ignores interrupts keeps the worker busy past the shutdown
+        CompletableFuture<Void> running = processor.run(0, false, () -> {
+            started.countDown();
+            awaitUninterruptibly(release);
+        });
+        awaitUninterruptibly(started);
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int value = i;
+            queued.add(processor.supply(i, i % 2 == 0, () -> value));
+        }
+
+        // Interrupting the closing thread forces the shutdown without waiting for the timeout
+        Thread closer = new Thread(processor::close, "Velthoric-GameTest-Closer");
+        closer.start();
+        while (!processor.isShutdown()) {
+            Thread.onSpinWait();
+        }
+        closer.interrupt();
+        try {
+            closer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException("Interrupted while closing the processor", e);
+        }
+        helper.assertTrue(!closer.isAlive(), "Closing the processor hung.");
+
+        for (CompletableFuture<Integer> future : queued) {
+            helper.assertTrue(future.isDone(), "A dropped task left its future pending.");
+            helper.assertTrue(future.isCompletedExceptionally(), "A task ran after the forced shutdown.");
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                helper.assertTrue(e.getCause() instanceof RejectedExecutionException, "A dropped task failed with " + e.getCause() + ".");
+            }
+        }
+
+        helper.assertTrue(!running.isDone(), "The running task was completed before it finished.");
+        release.countDown();
+        running.join();
+        helper.succeed();
+    }
+
+    private static int record(List<Integer> order, int value) {
+        synchronized (order) {
+            order.add(value);
+        }
+        return value;
+    }
+
+    private static boolean rejected(Runnable submission) {
+        try {
+            submission.run();
+            return false;
+        } catch (RejectedExecutionException e) {
+            return true;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
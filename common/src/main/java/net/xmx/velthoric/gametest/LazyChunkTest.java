@@ -0,0 +1,233 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.persistence.VxBodyChunkIndex;
+import net.xmx.velthoric.core.body.persistence.VxColumnarBodyCodec;
+import net.xmx.velthoric.core.body.persistence.VxSerializedBodyData;
+import net.xmx.velthoric.core.body.server.VxDormantChunks;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Verification of the cost of dormant body chunks.
+ * <p>
+ * A player flies in a straight line over chunks that all hold the same number of bodies in the columnar
+ * layout. Chunks entering the view distance are loaded and chunks leaving it are unloaded, once decoding
+ * every chunk on load and once keeping chunks outside the simulation distance in {@link VxDormantChunks},
+ * woken every 10 ticks the way the body manager does. Adding bodies to Jolt is not part of the test.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class LazyChunkTest {
+
+    private static final int BODIES_PER_CHUNK = 32;
+    private static final int TICKS = 800;
+    private static final double SPEED = 1.6;
+    private static final int VIEW_DISTANCE = 6;
+    private static final int SIMULATION_DISTANCE = 2;
+    private static final int CHECK_INTERVAL = 10;
+
+    /**
+     * The state of one loaded chunk.
+     */
+    private static final class LoadedChunk {
+        List<VxSerializedBodyData> bodies;
+    }
+
+    /**
+     * The measurements of one flight.
+     */
+    private static final class Flight {
+        long cpuNanos;
+        long decodedBodies;
+        long retainedBytes;
+        long peakRetainedBytes;
+        long loadedBodies;
+    }
+
+    /**
+     * Verifies that dormant chunks decode fewer bodies, retain less memory and spend less CPU time on
+     * chunk loads than decoding every chunk, while no chunk within the simulation distance stays dormant.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testDormantFlightCost(GameTestHelper helper) {
+        Long2ObjectMap<byte[]> world = createWorld();
+
+        // The faster of three flights is compared, after one flight of each kind to warm up
+        Flight eager = null;
+        Flight lazy = null;
+        for (int run = 0; run < 4; run++) {
+            Flight e = fly(helper, world, false);
+            Flight l = fly(helper, world, true);
+            if (run == 0) continue;
+            if (eager == null || e.cpuNanos < eager.cpuNanos) eager = e;
+            if (lazy == null || l.cpuNanos < lazy.cpuNanos) lazy = l;
+        }
+
+        helper.assertTrue(eager.decodedBodies == eager.loadedBodies, "Decoding on load skipped bodies.");
+        helper.assertTrue(lazy.loadedBodies == eager.loadedBodies, "The flights loaded different bodies.");
+        helper.assertTrue(lazy.decodedBodies * 2 < eager.decodedBodies,
+                "Dormant chunks decoded " + lazy.decodedBodies + " of " + eager.decodedBodies + " bodies.");
+        helper.assertTrue(lazy.peakRetainedBytes < eager.peakRetainedBytes,
+                "Dormant chunks retained " + lazy.peakRetainedBytes + " bytes, decoded chunks " + eager.peakRetainedBytes + ".");
+        helper.assertTrue(lazy.cpuNanos < eager.cpuNanos,
+                "Dormant chunks took " + lazy.cpuNanos / 1000 + " us, decoded chunks " + eager.cpuNanos / 1000 + " us.");
+        helper.succeed();
+    }
+
+    /**
+     * Encodes every chunk the flight touches, so that only loading is measured.
+     */
+    private static Long2ObjectMap<byte[]> createWorld() {
+        Long2ObjectMap<byte[]> world = new Long2ObjectOpenHashMap<>();
+        Random random = new Random(49);
+        int lastChunkX = (int) Math.floor(TICKS * SPEED) >> 4;
+        for (int x = -VIEW_DISTANCE; x <= lastChunkX + VIEW_DISTANCE; x++) {
+            for (int z = -VIEW_DISTANCE; z <= VIEW_DISTANCE; z++) {
+                ChunkPos pos = new ChunkPos(x, z);
+                List<VxSerializedBodyData> bodies = BodyChunkLayoutTest.createBodies(pos, BODIES_PER_CHUNK, random, new HashMap<>());
+                world.put(pos.toLong(), BodyChunkLayoutTest.writeColumnar(pos, bodies));
+                BodyChunkLayoutTest.release(bodies);
+            }
+        }
+        return world;
+    }
+
+    /**
+     * Simulates one flight along the X axis.
+     */
+    private static Flight fly(GameTestHelper helper, Long2ObjectMap<byte[]> world, boolean lazy) {
+        Flight flight = new Flight();
+        Long2ObjectMap<LoadedChunk> loaded = new Long2ObjectOpenHashMap<>();
+        VxDormantChunks dormant = new VxDormantChunks();
+        int previousChunkX = Integer.MIN_VALUE;
+
+        for (int tick = 0; tick < TICKS; tick++) {
+            double playerX = tick * SPEED;
+            int chunkX = (int) Math.floor(playerX) >> 4;
+            long start = System.nanoTime();
+
+            if (chunkX != previousChunkX) {
+                var iterator = loaded.long2ObjectEntrySet().iterator();
+                while (iterator.hasNext()) {
+                    var entry = iterator.next();
+                    if (Math.abs(ChunkPos.getX(entry.getLongKey()) - chunkX) > VIEW_DISTANCE) {
+                        flight.retainedBytes -= release(entry.getValue());
+                        dormant.unload(entry.getLongKey());
+                        iterator.remove();
+                    }
+                }
+
+                for (int x = chunkX - VIEW_DISTANCE; x <= chunkX + VIEW_DISTANCE; x++) {
+                    for (int z = -VIEW_DISTANCE; z <= VIEW_DISTANCE; z++) {
+                        long key = ChunkPos.asLong(x, z);
+                        if (loaded.containsKey(key)) continue;
+                        ChunkPos pos = new ChunkPos(x, z);
+                        byte[] stored = world.get(key);
+                        LoadedChunk chunk = new LoadedChunk();
+                        if (lazy && !isNear(pos, chunkX)) {
+                            // The body manager keeps a copy of the entry, the storage buffer is released
+                            Object token = dormant.beginLoad(key);
+                            byte[] data = stored.clone();
+                            VxBodyChunkIndex index = VxColumnarBodyCodec.index(pos, new VxByteBuf(Unpooled.wrappedBuffer(data)));
+                            dormant.completeLoad(token, pos, data, index);
+                        } else {
+                            flight.retainedBytes += decode(pos, stored, chunk, flight);
+                        }
+                        flight.loadedBodies += BODIES_PER_CHUNK;
+                        loaded.put(key, chunk);
+                    }
+                }
+                previousChunkX = chunkX;
+            }
+
+            if (lazy && tick % CHECK_INTERVAL == 0) {
+                for (VxDormantChunks.Chunk chunk : dormant.snapshot()) {
+                    if (isNear(chunk.pos(), chunkX) && dormant.trySchedule(chunk)) {
+                        flight.retainedBytes += decode(chunk.pos(), chunk.data(), loaded.get(chunk.pos().toLong()), flight);
+                        dormant.remove(chunk);
+                    }
+                }
+            }
+
+            long nanos = System.nanoTime() - start;
+            flight.cpuNanos += nanos;
+
+            // Each index entry holds an ID and a position
+            long dormantBytes = dormant.retainedBytes() + dormant.bodyCount() * 40L;
+            flight.peakRetainedBytes = Math.max(flight.peakRetainedBytes, flight.retainedBytes + dormantBytes);
+
+            if (lazy && tick % CHECK_INTERVAL == 0) {
+                for (VxDormantChunks.Chunk chunk : dormant.snapshot()) {
+                    helper.assertTrue(!isNear(chunk.pos(), chunkX),
+                            "A chunk within the simulation distance stayed dormant: " + chunk.pos() + ".");
+                }
+            }
+        }
+
+        for (var entry : loaded.long2ObjectEntrySet()) {
+            flight.retainedBytes -= release(entry.getValue());
+            dormant.unload(entry.getLongKey());
+        }
+        helper.assertTrue(flight.retainedBytes == 0, "Released chunks left " + flight.retainedBytes + " bytes.");
+        helper.assertTrue(dormant.size() == 0 && dormant.bodyCount() == 0 && dormant.retainedBytes() == 0, "Unloaded chunks stayed dormant.");
+        return flight;
+    }
+
+    /**
+     * Checks whether a chunk lies within the simulation distance of the player's chunk, in chunks,
+     * the way the body manager measures it on load and when waking dormant chunks.
+     */
+    private static boolean isNear(ChunkPos pos, int playerChunkX) {
+        return Math.max(Math.abs(pos.x - playerChunkX), Math.abs(pos.z)) <= SIMULATION_DISTANCE;
+    }
+
+    /**
+     * Decodes a chunk entry into the chunk.
+     *
+     * @return The retained bytes of the decoded bodies.
+     */
+    private static long decode(ChunkPos pos, byte[] data, LoadedChunk chunk, Flight flight) {
+        chunk.bodies = BodyChunkLayoutTest.readChunk(pos, data);
+        flight.decodedBodies += chunk.bodies.size();
+        return retained(chunk.bodies);
+    }
+
+    /**
+     * Releases the decoded bodies of a chunk.
+     *
+     * @return The retained bytes that were released.
+     */
+    private static long release(LoadedChunk chunk) {
+        if (chunk.bodies == null) return 0;
+        long bytes = retained(chunk.bodies);
+        BodyChunkLayoutTest.release(chunk.bodies);
+        chunk.bodies = null;
+        return bytes;
+    }
+
+    /**
+     * Counts the payload capacity of the bodies and their IDs; object headers are not counted.
+     */
+    private static long retained(List<VxSerializedBodyData> bodies) {
+        long bytes = 0;
+        for (VxSerializedBodyData body : bodies) {
+            bytes += body.bodyData().capacity() + 16;
+        }
+        return bytes;
+    }
+}
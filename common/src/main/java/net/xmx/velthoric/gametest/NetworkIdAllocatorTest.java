@@ -0,0 +1,153 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Random;
+
+/**
+ * Verification of the network ID allocator.
+ * <p>
+ * A standalone allocator is driven through long random sequences of allocations and releases,
+ * like bodies being added and removed on a busy server.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class NetworkIdAllocatorTest {
+
+    /**
+     * Verifies that released indices are only reused after {@link VxNetworkIdAllocator#REUSE_DELAY} newer
+     * releases, in release order and with the next generation, so that a network ID only comes back after
+     * {@code 2^GENERATION_BITS} times the delay; that the generation wraps after that many reuses; that
+     * stale, invalid and double releases are ignored; and that the index range stays within the delay of
+     * the peak number of live IDs under churn.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testGenerationWrapUnderChurn(GameTestHelper helper) {
+        VxNetworkIdAllocator allocator = new VxNetworkIdAllocator();
+        int generations = 1 << VxNetworkIdAllocator.GENERATION_BITS;
+        int delay = VxNetworkIdAllocator.REUSE_DELAY;
+
+        // A single body removed and replaced over and over never gets its own index back right away
+        int first = allocator.allocate();
+        helper.assertTrue(first > 0 && VxNetworkIdAllocator.indexOf(first) == 1, "The first ID is " + first + ".");
+        int id = first;
+        for (int i = 0; i < delay; i++) {
+            allocator.release(id);
+            id = allocator.allocate();
+            helper.assertTrue(VxNetworkIdAllocator.indexOf(id) == i + 2, "Index " + VxNetworkIdAllocator.indexOf(id) + " was reused within the delay.");
+        }
+        allocator.release(id);
+        id = allocator.allocate();
+        helper.assertTrue(id == VxNetworkIdAllocator.pack(1, 1), "The oldest released index was not reused first, got " + id + ".");
+
+        // Every index cycles through all generations once before the first ID comes back
+        IntSet seen = new IntOpenHashSet();
+        seen.add(first);
+        int releases = delay + 1;
+        while (id != first) {
+            helper.assertTrue(VxNetworkIdAllocator.indexOf(id) != 1 || seen.add(id), "Generation " + VxNetworkIdAllocator.generationOf(id) + " of index 1 repeated early.");
+            allocator.release(id);
+            id = allocator.allocate();
+            releases++;
+            helper.assertTrue(allocator.getIndexBound() == delay + 2, "The index range grew to " + allocator.getIndexBound() + ".");
+        }
+        helper.assertTrue(seen.size() == generations, "Index 1 came back after " + seen.size() + " of " + generations + " generations.");
+        helper.assertTrue(releases >= generations * delay, "The first ID came back after " + releases + " releases.");
+
+        // Stale, invalid and double releases must not free an index that is in use or queue one twice
+        allocator.clear();
+        int owner = allocator.allocate();
+        allocator.release(owner);
+        allocator.release(owner);
+        allocator.release(VxNetworkIdAllocator.pack(VxNetworkIdAllocator.indexOf(owner), VxNetworkIdAllocator.generationOf(owner) + 1));
+        allocator.release(0);
+        allocator.release(-1);
+        allocator.release(VxNetworkIdAllocator.pack(5000, 0));
+        IntSet liveIndices = new IntOpenHashSet();
+        for (int i = 0; i < delay + 4; i++) {
+            int allocated = allocator.allocate();
+            helper.assertTrue(liveIndices.add(VxNetworkIdAllocator.indexOf(allocated)),
+                    "Index " + VxNetworkIdAllocator.indexOf(allocated) + " was handed out twice after a double release.");
+        }
+
+        // Random churn
+        allocator.clear();
+        Random random = new Random(39);
+        IntArrayList live = new IntArrayList();
+        liveIndices.clear();
+        Int2IntMap releasedAt = new Int2IntOpenHashMap();
+        int peak = 0;
+        int released = 0;
+        for (int step = 0; step < 200_000; step++) {
+            // Grow towards ~2,000 live IDs, then hover around that size
+            boolean add = live.isEmpty() || random.nextInt(2_000) >= live.size() - 100;
+            if (add) {
+                int allocated = allocator.allocate();
+                int index = VxNetworkIdAllocator.indexOf(allocated);
+                helper.assertTrue(allocated > 0, "Allocated the invalid ID " + allocated + ".");
+                helper.assertTrue(liveIndices.add(index), "Index " + index + " was handed out twice.");
+                helper.assertTrue(!releasedAt.containsKey(index) || released - releasedAt.get(index) >= delay,
+                        "Index " + index + " was reused after " + (released - releasedAt.get(index)) + " releases.");
+                live.add(allocated);
+                peak = Math.max(peak, live.size());
+            } else {
+                int slot = random.nextInt(live.size());
+                int releasedId = live.getInt(slot);
+                live.set(slot, live.getInt(live.size() - 1));
+                live.popInt();
+                liveIndices.remove(VxNetworkIdAllocator.indexOf(releasedId));
+                allocator.release(releasedId);
+                releasedAt.put(VxNetworkIdAllocator.indexOf(releasedId), released++);
+            }
+            helper.assertTrue(allocator.getIndexBound() <= peak + delay + 1,
+                    "Index bound " + allocator.getIndexBound() + " exceeds the peak of " + peak + " live IDs by more than the delay.");
+        }
+
+        allocator.clear();
+        helper.assertTrue(allocator.getIndexBound() == 1 && allocator.allocate() == first, "Clear did not reset the allocator.");
+        helper.succeed();
+    }
+
+    /**
+     * Verifies the VarInt sizes of network IDs stated by the allocator: indices up to 1,023 take two
+     * bytes and indices up to 131,071 three, for every generation.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testVarIntSizes(GameTestHelper helper) {
+        int maxGeneration = VxNetworkIdAllocator.GENERATION_MASK;
+        helper.assertTrue(varIntSize(VxNetworkIdAllocator.pack(7, maxGeneration)) == 1, "Indices below 8 do not fit one byte.");
+        helper.assertTrue(varIntSize(VxNetworkIdAllocator.pack(8, 0)) == 2, "Index 8 fits one byte.");
+        helper.assertTrue(varIntSize(VxNetworkIdAllocator.pack(1_023, maxGeneration)) == 2, "Index 1,023 does not fit two bytes.");
+        helper.assertTrue(varIntSize(VxNetworkIdAllocator.pack(1_024, 0)) == 3, "Index 1,024 fits two bytes.");
+        helper.assertTrue(varIntSize(VxNetworkIdAllocator.pack(131_071, maxGeneration)) == 3, "Index 131,071 does not fit three bytes.");
+        helper.assertTrue(varIntSize(VxNetworkIdAllocator.pack(131_072, 0)) == 4, "Index 131,072 fits three bytes.");
+        helper.succeed();
+    }
+
+    private static int varIntSize(int value) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            buf.writeVarInt(value);
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.network.metrics.VxHistogram;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Verification of the networking metrics.
+ * <p>
+ * Histograms are fed known distributions, and the global registry is fed packets of a player
+ * that does not exist, so the statistics of the running server stay intact.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class NetworkMetricsTest {
+
+    /**
+     * Verifies that percentiles stay within the documented relative error, that small values are
+     * exact and that concurrent recording loses no value.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testHistogramAccuracy(GameTestHelper helper) {
+        VxHistogram histogram = new VxHistogram();
+        helper.assertTrue(histogram.percentile(50) == 0 && histogram.getMean() == 0.0, "An empty histogram reported values.");
+
+        int n = 100_000;
+        for (int value = 1; value <= n; value++) {
+            histogram.record(value);
+        }
+        helper.assertTrue(histogram.getCount() == n && histogram.getMax() == n
+                && histogram.getSum() == (long) n * (n + 1) / 2, "Count, max or sum are wrong.");
+        for (double p : new double[]{0.001, 1, 25, 50, 90, 99, 99.9, 100}) {
+            long exact = Math.max(1, (long) Math.ceil(n * p / 100.0));
+            long reported = histogram.percentile(p);
+            helper.assertTrue(reported >= exact && reported <= exact + exact / 8,
+                    "p" + p + " is " + reported + ", exact value " + exact + ".");
+        }
+
+        VxHistogram small = new VxHistogram();
+        for (int value = 0; value < 8; value++) {
+            small.record(value);
+        }
+        small.record(-5); // Negative values count as zero
+        helper.assertTrue(small.percentile(20) == 0 && small.percentile(50) == 3 && small.percentile(100) == 7,
+                "Values below the first power-of-two range are not exact.");
+        helper.assertTrue(small.getCount() == 9 && small.getSum() == 28, "Negative values were not clamped.");
+
+        VxHistogram huge = new VxHistogram();
+        huge.record(Long.MAX_VALUE);
+        helper.assertTrue(huge.percentile(50) == Long.MAX_VALUE, "The largest long does not map to a bucket.");
+
+        VxHistogram shared = new VxHistogram();
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long value = 1L << (t * 4);
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) shared.record(value);
+                }));
+            }
+            for (Future<?> writer : writers) writer.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Concurrent recording failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        helper.assertTrue(shared.getCount() == (long) threads * perThread, "Concurrent recording lost values.");
+        helper.assertTrue(shared.percentile(100) == 1L << ((threads - 1) * 4), "Concurrent recording lost the maximum.");
+        helper.assertTrue(shared.percentile(100.0 / threads) == 1, "Concurrent recording misplaced bucket counts.");
+
+        shared.reset();
+        helper.assertTrue(shared.getCount() == 0 && shared.percentile(99) == 0 && shared.getMax() == 0, "Reset left recorded values.");
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that disabled collection records nothing, that per-player packets appear in the report
+     * and that the statistics of a player are dropped when the player leaves.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRegistryCollection(GameTestHelper helper) {
+        VxNetworkMetrics metrics = VxNetworkMetrics.getInstance();
+        boolean wasEnabled = metrics.isEnabled();
+        UUID player = UUID.randomUUID();
+        String name = "gametest-" + player.toString().substring(0, 8);
+        try {
+            metrics.setEnabled(false);
+            metrics.recordPacketSent(player, name, 0xFE, 1000);
+            helper.assertTrue(reportLine(metrics, name) == null, "Disabled metrics recorded a packet.");
+
+            metrics.setEnabled(true);
+            for (int i = 0; i < 10; i++) {
+                metrics.recordPacketSent(player, name, 0xFE, 1000);
+            }
+            String line = reportLine(metrics, name);
+            helper.assertTrue(line != null && line.trim().endsWith(" 10 pkts"), "Report line of the player is " + line + ".");
+
+            metrics.removePlayer(player);
+            helper.assertTrue(reportLine(metrics, name) == null, "A removed player is still reported.");
+        } finally {
+            metrics.removePlayer(player);
+            metrics.setEnabled(wasEnabled);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Returns the report line mentioning the given text, or null if there is none.
+     */
+    private static String reportLine(VxNetworkMetrics metrics, String text) {
+        List<String> lines = new ArrayList<>();
+        metrics.dump(Integer.MAX_VALUE, lines::add);
+        for (String line : lines) {
+            if (line.contains(text)) return line;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.luben.zstd.Zstd;
+import com.github.stephengold.joltjni.Quat;
+import com.github.stephengold.joltjni.RVec3;
+import com.github.stephengold.joltjni.enumerate.EActivation;
+import com.github.stephengold.joltjni.enumerate.EMotionType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.Vec3;
+import net.xmx.velthoric.builtin.VxRegisteredBodies;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.VxRemovalReason;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.math.VxTransform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Verification of the parallel serialization of state batches.
+ * <p>
+ * Static bodies are grouped into many batches, which are serialized and compressed once on the
+ * test thread and then repeatedly on a worker pool, the way the network dispatcher splits a sync cycle.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class ParallelSerializationTest {
+
+    private static final int BATCHES = 48;
+    private static final int WORKERS = 8;
+    private static final int ROUNDS = 10;
+
+    /**
+     * Verifies that sections serialized and compressed concurrently are byte-identical to serial ones.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testParallelMatchesSerial(GameTestHelper helper) {
+        VxServerBodyManager manager = VelthoricGameTestUtils.getManager(helper);
+        VxPacketFactory factory = manager.getNetworkDispatcher().getPacketFactory();
+        List<VxBody> bodies = new ArrayList<>();
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 12; z++) {
+                Vec3 pos = helper.absoluteVec(new Vec3(1.5 + x, 3.0 + (x + z) % 5 * 0.37, 1.5 + z));
+                bodies.add(manager.createBody(VxRegisteredBodies.BOX,
+                        new VxTransform(new RVec3(pos.x, pos.y, pos.z), Quat.sIdentity()),
+                        EMotionType.Static, EActivation.DontActivate, b -> {}));
+            }
+        }
+
+        helper.runAtTickTime(5, () -> {
+            List<IntArrayList> batches = new ArrayList<>();
+            for (int i = 0; i < BATCHES; i++) batches.add(new IntArrayList());
+            for (int i = 0; i < bodies.size(); i++) {
+                helper.assertTrue(bodies.get(i) != null && bodies.get(i).getDataStoreIndex() != -1, "Test body was not added.");
+                batches.get(i % BATCHES).add(bodies.get(i).getDataStoreIndex());
+            }
+
+            byte[][] expected = new byte[BATCHES][];
+            for (int i = 0; i < BATCHES; i++) {
+                expected[i] = serialize(factory, helper, i, batches.get(i));
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(WORKERS);
+            try {
+                for (int round = 0; round < ROUNDS; round++) {
+                    List<Future<byte[]>> results = new ArrayList<>();
+                    for (int i = 0; i < BATCHES; i++) {
+                        int batch = i;
+                        results.add(pool.submit(() -> serialize(factory, helper, batch, batches.get(batch))));
+                    }
+                    for (int i = 0; i < BATCHES; i++) {
+                        helper.assertTrue(Arrays.equals(expected[i], results.get(i).get()),
+                                "Batch " + i + " differs when serialized in parallel (round " + round + ").");
+                    }
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Parallel serialization failed", e);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            bodies.forEach(body -> manager.removeBody(body.getPhysicsId(), VxRemovalReason.DISCARD));
+            helper.succeed();
+        });
+    }
+
+    /**
+     * Serializes one batch as a state section, compresses it with the calling thread's context
+     * and checks that it decompresses to the raw section.
+     *
+     * @return The raw section bytes.
+     */
+    private static byte[] serialize(VxPacketFactory factory, GameTestHelper helper, int batch, IntArrayList indices) {
+        ByteBuf raw = PooledByteBufAllocator.DEFAULT.directBuffer();
+        ByteBuf compressed = null;
+        try {
+            factory.writeStateSection(raw, ChunkPos.asLong(batch, -batch), indices, helper.getLevel());
+            byte[] bytes = ByteBufUtil.getBytes(raw);
+            compressed = VxPacketFactory.compressDirect(raw);
+            byte[] restored = Zstd.decompress(ByteBufUtil.getBytes(compressed), bytes.length);
+            if (!Arrays.equals(bytes, restored)) {
+                throw new IllegalStateException("Batch " + batch + " does not survive compression.");
+            }
+            return bytes;
+        } finally {
+            raw.release();
+            if (compressed != null) compressed.release();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.persistence.VxChunkBasedStorage;
+import net.xmx.velthoric.core.persistence.VxChunkReadAhead;
+import net.xmx.velthoric.core.persistence.VxReadAheadCache;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Verification of chunk loads served by read-ahead.
+ * <p>
+ * A storage of opaque byte arrays writes chunks spread over several regions, reads them ahead through
+ * {@link VxChunkBasedStorage#prefetch} and loads them again, recording the threads that decode them.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class ReadAheadTest {
+
+    /**
+     * A storage of opaque byte arrays, one record per chunk, that records the thread decoding each chunk.
+     */
+    private static final class BlobStorage extends VxChunkBasedStorage<byte[], byte[]> {
+        final Map<ChunkPos, String> decodingThreads = new ConcurrentHashMap<>();
+
+        BlobStorage(Path directory) {
+            super(directory, "gametest", "vxtest");
+        }
+
+        /**
+         * Waits until the background work queued so far on the worker of a chunk's region has run.
+         */
+        void awaitBackground(ChunkPos pos) {
+            ioProcessor.run(regionKey(pos), false, () -> {}).join();
+        }
+
+        /**
+         * @return The name of the I/O thread owning the chunk's region.
+         */
+        String workerOf(ChunkPos pos) {
+            return "VxIO-IO-gametest-" + (ioProcessor.shardOf(regionKey(pos)) + 1);
+        }
+
+        private static long regionKey(ChunkPos pos) {
+            return ChunkPos.asLong(pos.x >> 5, pos.z >> 5);
+        }
+
+        @Override
+        protected void readChunk(ChunkPos pos, VxByteBuf buffer, List<byte[]> results) {
+            decodingThreads.put(pos, Thread.currentThread().getName());
+            super.readChunk(pos, buffer, results);
+        }
+
+        @Override
+        protected void writeSingle(byte[] object, VxByteBuf buffer) {
+            buffer.writeInt(object.length);
+            buffer.writeBytes(object);
+        }
+
+        @Override
+        protected byte[] readSingle(VxByteBuf buffer) {
+            byte[] data = new byte[buffer.readInt()];
+            buffer.readBytes(data);
+            return data;
+        }
+    }
+
+    /**
+     * Verifies that chunks read ahead are loaded with their stored data, that the load is decoded on the
+     * I/O worker owning the chunk's region instead of a shared pool, that an entry is used by one load only, and that
+     * a save after the read-ahead wins over the cached entry.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testReadAheadServesLoads(GameTestHelper helper) {
+        Path dir = createTempDir();
+        BlobStorage storage = new BlobStorage(dir);
+        try {
+            Random random = new Random(50);
+            ChunkPos[] chunks = new ChunkPos[24];
+            byte[][] data = new byte[chunks.length][];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = new ChunkPos(i * 13 - 150, 40 - i * 7);
+                data[i] = new byte[1 + random.nextInt(6000)];
+                random.nextBytes(data[i]);
+                storage.saveChunk(chunks[i], List.of(data[i]));
+            }
+            storage.flush(true).join();
+
+            VxReadAheadCache cache = storage.getReadAheadCache();
+            for (ChunkPos pos : chunks) {
+                storage.prefetch(pos);
+            }
+            for (ChunkPos pos : chunks) {
+                storage.awaitBackground(pos);
+            }
+            helper.assertTrue(cache.getBytes() > 0, "Nothing was read ahead.");
+
+            // A save after the read-ahead replaces the cached entry
+            byte[] replaced = {1, 2, 3};
+            storage.saveChunk(chunks[0], List.of(replaced));
+            data[0] = replaced;
+
+            long hits = cache.getHits();
+            for (int i = 0; i < chunks.length; i++) {
+                assertLoad(helper, storage, chunks[i], data[i], "read ahead");
+                String thread = storage.decodingThreads.get(chunks[i]);
+                helper.assertTrue(storage.workerOf(chunks[i]).equals(thread), "Chunk " + chunks[i] + " was decoded on " + thread + ".");
+            }
+            helper.assertTrue(cache.getHits() - hits == chunks.length - 1, (cache.getHits() - hits) + " of " + (chunks.length - 1) + " loads were served by read-ahead.");
+            helper.assertTrue(cache.getBytes() == 0, "Loaded entries stayed in the read-ahead cache.");
+
+            // Each entry is used once, so loading again reads the region files
+            hits = cache.getHits();
+            for (int i = 0; i < chunks.length; i++) {
+                assertLoad(helper, storage, chunks[i], data[i], "again");
+            }
+            helper.assertTrue(cache.getHits() == hits, "A read-ahead entry was used twice.");
+        } finally {
+            storage.shutdown();
+            VelthoricGameTestUtils.deleteRecursively(dir);
+        }
+
+        helper.assertTrue(storage.loadChunk(new ChunkPos(0, 0)).join().isEmpty(), "A closed storage loaded a chunk.");
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that the read-ahead requests of many fast players together stay within the budget of an update,
+     * and that the budget is renewed by the next update.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRequestsStayWithinBudget(GameTestHelper helper) {
+        int[] requests = {0};
+        VxChunkReadAhead readAhead = new VxChunkReadAhead(pos -> requests[0]++);
+        UUID[] players = new UUID[40];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new UUID(0, i);
+        }
+
+        for (int update = 0; update < 6; update++) {
+            requests[0] = 0;
+            readAhead.beginUpdate();
+            for (int i = 0; i < players.length; i++) {
+                // Every player flies its own way at elytra speed, far apart from the others
+                double angle = 2 * Math.PI * i / players.length;
+                double distance = update * VxChunkReadAhead.UPDATE_INTERVAL * 2.0;
+                readAhead.update(players[i], i * 10_000 + Math.cos(angle) * distance, Math.sin(angle) * distance, 12, key -> false);
+            }
+            readAhead.endUpdate();
+            helper.assertTrue(requests[0] <= VxChunkReadAhead.MAX_REQUESTS_PER_UPDATE,
+                    "Update " + update + " requested " + requests[0] + " chunks.");
+            if (update > 1) {
+                helper.assertTrue(requests[0] == VxChunkReadAhead.MAX_REQUESTS_PER_UPDATE, "Update " + update + " did not use its budget.");
+            }
+        }
+        helper.succeed();
+    }
+
+    private static void assertLoad(GameTestHelper helper, BlobStorage storage, ChunkPos pos, byte[] expected, String when) {
+        List<byte[]> loaded = storage.loadChunk(pos).join();
+        helper.assertTrue(loaded.size() == 1 && Arrays.equals(loaded.get(0), expected), "Chunk " + pos + " loaded " + when + " differs from its stored data.");
+    }
+
+    private static Path createTempDir() {
+        try {
+            return Files.createTempDirectory("velthoric-readahead-test");
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the test directory", e);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.persistence.region.VxChunkCodec;
+import net.xmx.velthoric.core.persistence.region.VxRegionFile;
+import net.xmx.velthoric.core.persistence.region.VxSectorAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Verification of region files and their chunk codec.
+ * <p>
+ * The file tests work on region files in a temporary directory, filled with chunk data shaped like
+ * serialized bodies: a type name, an ID and a transform per body.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class RegionFileTest {
+
+    private static final int SECTOR_SIZE = 4096;
+
+    /**
+     * Verifies that chunks round-trip through a region file while the dictionary is trained and after
+     * it is reloaded, that a dictionary which exists but cannot be read is never replaced, and that
+     * chunks which cannot be decoded fail loudly instead of reading as missing.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testDictionaryRoundTrip(GameTestHelper helper) {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("velthoric-region");
+            Path dictionary = dir.resolve("dictionary.vxb.zdict");
+            Path file = dir.resolve("r.0.0.vxb");
+            Random random = new Random(41);
+            byte[][] expected = new byte[1024][];
+
+            // Enough chunks to train the dictionary, then chunks compressed with it
+            VxChunkCodec codec = new VxChunkCodec(dictionary);
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                writeChunks(region, random, expected, 0, 700);
+                helper.assertTrue(codec.getDictionaryId() != 0 && Files.exists(dictionary), "No dictionary was trained.");
+                writeChunks(region, random, expected, 0, 100);
+                assertContents(helper, region, expected, "while training");
+            }
+
+            // The dictionary must be read back from disk
+            codec = new VxChunkCodec(dictionary);
+            helper.assertTrue(codec.getDictionaryId() != 0, "The trained dictionary was not loaded.");
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                assertContents(helper, region, expected, "after reopening");
+            }
+
+            // A corrupted frame must not decode, neither to wrong data nor as a missing chunk
+            flipPayloadByte(file, 0);
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                helper.assertTrue(readFails(region, 0), "A corrupted chunk did not fail to read.");
+            }
+
+            // An unreadable dictionary must not be replaced, even after enough data to train a new one
+            byte[] unreadable = new byte[512];
+            random.nextBytes(unreadable);
+            Files.write(dictionary, unreadable);
+            codec = new VxChunkCodec(dictionary);
+            helper.assertTrue(codec.getDictionaryId() == 0, "An unreadable dictionary was loaded.");
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                helper.assertTrue(readFails(region, 1), "A chunk of an unreadable dictionary did not fail to read.");
+                writeChunks(region, random, expected, 800, 1000);
+                helper.assertTrue(codec.getDictionaryId() == 0, "A new dictionary was trained.");
+                helper.assertTrue(Arrays.equals(Files.readAllBytes(dictionary), unreadable), "The unreadable dictionary was overwritten.");
+                for (int index = 800; index < 1000; index++) {
+                    assertChunk(helper, region, index, expected[index], "without a dictionary");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Region round trip failed", e);
+        } finally {
+            VelthoricGameTestUtils.deleteRecursively(dir);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a batch never writes into sectors the header points to, even when a chunk keeps its
+     * size, so a process that dies before the header is updated leaves every old entry readable.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testCrashSafeBatch(GameTestHelper helper) {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("velthoric-region");
+            VxChunkCodec codec = new VxChunkCodec(dir.resolve("dictionary.vxb.zdict"));
+            Path file = dir.resolve("r.0.0.vxb");
+            Random random = new Random(43);
+            byte[][] before = new byte[1024][];
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                writeChunks(region, random, before, 0, 300);
+            }
+            byte[] oldHeader = readHeader(file);
+
+            // Rewrite one batch of chunks with data of the same length, the case that used to be written in place
+            byte[][] after = before.clone();
+            for (int index = 0; index < 64; index++) {
+                after[index] = before[index].clone();
+                after[index][after[index].length / 2] ^= 0x5A;
+            }
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                writeAll(region, after, 0, 64);
+                assertContents(helper, region, after, "after the rewrite");
+            }
+
+            byte[] newHeader = readHeader(file);
+            long[] oldExtents = extents(oldHeader);
+            long[] newExtents = extents(newHeader);
+            for (int index = 0; index < 64; index++) {
+                long extent = newExtents[index];
+                for (long old : oldExtents) {
+                    helper.assertTrue(old == 0 || extentEnd(extent) <= extentStart(old) || extentEnd(old) <= extentStart(extent),
+                            "The batch wrote sectors " + extentStart(extent) + "-" + extentEnd(extent) + " the old header points to.");
+                }
+            }
+
+            // A process dying after the data writes leaves the old header on disk
+            Path crashed = dir.resolve("r.1.0.vxb");
+            Files.copy(file, crashed);
+            try (FileChannel channel = FileChannel.open(crashed, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(oldHeader), 0);
+            }
+            try (VxRegionFile region = new VxRegionFile(crashed, codec)) {
+                assertContents(helper, region, before, "with the header from before the batch");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Crash-safe batch failed", e);
+        } finally {
+            VelthoricGameTestUtils.deleteRecursively(dir);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that compaction keeps every entry byte for byte, packs the entries without gaps in entry
+     * order, shrinks the file, and leaves a region that can be written and reopened.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testCompactionIdentity(GameTestHelper helper) {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("velthoric-region");
+            VxChunkCodec codec = new VxChunkCodec(dir.resolve("dictionary.vxb.zdict"));
+            Path file = dir.resolve("r.0.0.vxb");
+            Random random = new Random(45);
+            byte[][] expected = new byte[1024][];
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                writeChunks(region, random, expected, 0, 1024);
+
+                // Delete most chunks and rewrite some of the rest, leaving holes all over the file
+                byte[][] changes = new byte[1024][];
+                for (int index = 0; index < 1024; index++) {
+                    int roll = random.nextInt(10);
+                    changes[index] = roll < 7 ? new byte[0] : roll < 9 ? expected[index] : chunkData(random);
+                    expected[index] = changes[index].length == 0 ? null : changes[index];
+                }
+                writeAll(region, changes, 0, 1024);
+                helper.assertTrue(region.shouldCompact(), "A sparse region was not considered for compaction.");
+
+                byte[] headerBefore = readHeader(file);
+                byte[][] entriesBefore = rawEntries(file, headerBefore);
+                long sizeBefore = Files.size(file);
+                long reclaimed = region.compact();
+                helper.assertTrue(reclaimed > 0 && Files.size(file) == sizeBefore - reclaimed, "Compaction reclaimed " + reclaimed + " bytes.");
+                helper.assertTrue(!Files.exists(dir.resolve("r.0.0.vxb.compact")), "The temporary compaction file was left behind.");
+
+                // Entries are copied verbatim and packed in entry order right behind the header
+                byte[] headerAfter = readHeader(file);
+                byte[][] entriesAfter = rawEntries(file, headerAfter);
+                long[] extents = extents(headerAfter);
+                int cursor = 2;
+                for (int index = 0; index < 1024; index++) {
+                    helper.assertTrue(Arrays.equals(entriesBefore[index], entriesAfter[index]), "Entry " + index + " changed its stored bytes.");
+                    if (extents[index] == 0) continue;
+                    helper.assertTrue(extentStart(extents[index]) == cursor, "Entry " + index + " starts at sector " + extentStart(extents[index]) + " instead of " + cursor + ".");
+                    cursor = extentEnd(extents[index]);
+                }
+                helper.assertTrue(Files.size(file) == (long) cursor * SECTOR_SIZE, "The compacted file has " + Files.size(file) + " bytes for " + cursor + " sectors.");
+                assertContents(helper, region, expected, "after compaction");
+
+                // The compacted file keeps working
+                writeChunks(region, random, expected, 0, 64);
+                assertContents(helper, region, expected, "after writing to the compacted file");
+            }
+            try (VxRegionFile region = new VxRegionFile(file, codec)) {
+                assertContents(helper, region, expected, "after reopening the compacted file");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Compaction failed", e);
+        } finally {
+            VelthoricGameTestUtils.deleteRecursively(dir);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies the sector allocator against a plain model of used sectors under random allocations and
+     * frees: runs never overlap, the file only grows when no free extent fits, free extents are always
+     * merged, the tail is trimmed, and rebuilding from the entries reproduces the same free space.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testSectorAllocator(GameTestHelper helper) {
+        int firstSector = 2;
+        VxSectorAllocator allocator = new VxSectorAllocator(firstSector);
+        boolean[] used = new boolean[1 << 16];
+        List<int[]> live = new ArrayList<>();
+        Random random = new Random(44);
+
+        for (int step = 0; step < 20_000; step++) {
+            if (live.isEmpty() || random.nextInt(100) < 55) {
+                // Mostly small entries, sometimes a large one
+                int count = random.nextInt(10) == 0 ? 1 + random.nextInt(300) : 1 + random.nextInt(4);
+                int end = allocator.getEnd();
+                boolean holeFits = longestFreeRun(used, firstSector, end) >= count;
+                int start = allocator.allocate(count);
+                helper.assertTrue(start >= firstSector, "Allocated sector " + start + " inside the header.");
+                for (int s = start; s < start + count; s++) {
+                    helper.assertTrue(!used[s], "Sector " + s + " was allocated twice.");
+                    used[s] = true;
+                }
+                helper.assertTrue(!holeFits || start + count <= end, "The file grew although a free extent fits " + count + " sectors.");
+                live.add(new int[]{start, count});
+            } else {
+                int[] run = live.remove(random.nextInt(live.size()));
+                allocator.free(run[0], run[1]);
+                for (int s = run[0]; s < run[0] + run[1]; s++) used[s] = false;
+            }
+            checkFreeSpace(helper, allocator, used, firstSector);
+        }
+
+        int[] offsets = new int[live.size()];
+        int[] counts = new int[live.size()];
+        for (int i = 0; i < live.size(); i++) {
+            offsets[i] = live.get(i)[0];
+            counts[i] = live.get(i)[1];
+        }
+        VxSectorAllocator rebuilt = new VxSectorAllocator(firstSector);
+        rebuilt.rebuild(offsets, counts);
+        helper.assertTrue(rebuilt.getEnd() == allocator.getEnd() && rebuilt.getFreeSectors() == allocator.getFreeSectors()
+                && rebuilt.getFreeExtentCount() == allocator.getFreeExtentCount(), "Rebuilding from the entries changed the free space.");
+        checkFreeSpace(helper, rebuilt, used, firstSector);
+        helper.succeed();
+    }
+
+    /**
+     * Compares the end, free sector count and extent count of an allocator with the model.
+     */
+    private static void checkFreeSpace(GameTestHelper helper, VxSectorAllocator allocator, boolean[] used, int firstSector) {
+        int end = firstSector;
+        for (int s = firstSector; s < used.length; s++) {
+            if (used[s]) end = s + 1;
+        }
+        int free = 0;
+        int extents = 0;
+        for (int s = firstSector; s < end; s++) {
+            if (!used[s]) {
+                free++;
+                if (s == firstSector || used[s - 1]) extents++;
+            }
+        }
+        helper.assertTrue(allocator.getEnd() == end, "The allocator ends at " + allocator.getEnd() + ", the last used sector at " + end + ".");
+        helper.assertTrue(allocator.getFreeSectors() == free, "The allocator reports " + allocator.getFreeSectors() + " free sectors, " + free + " are free.");
+        helper.assertTrue(allocator.getFreeExtentCount() == extents, "The allocator keeps " + allocator.getFreeExtentCount() + " extents for " + extents + " free runs.");
+    }
+
+    private static int longestFreeRun(boolean[] used, int from, int to) {
+        int longest = 0;
+        int run = 0;
+        for (int s = from; s < to; s++) {
+            run = used[s] ? 0 : run + 1;
+            longest = Math.max(longest, run);
+        }
+        return longest;
+    }
+
+    /**
+     * Writes fresh chunk data to the entries {@code [from, to)} in batches, remembering it in {@code expected}.
+     */
+    static void writeChunks(VxRegionFile region, Random random, byte[][] expected, int from, int to) {
+        for (int index = from; index < to; index++) {
+            expected[index] = chunkData(random);
+        }
+        writeAll(region, expected, from, to);
+    }
+
+    /**
+     * Writes the given data to the entries {@code [from, to)} in batches of 64 chunks.
+     */
+    static void writeAll(VxRegionFile region, byte[][] chunks, int from, int to) {
+        List<ChunkPos> positions = new ArrayList<>();
+        List<ByteBuf> data = new ArrayList<>();
+        for (int index = from; index < to; index++) {
+            positions.add(new ChunkPos(index & 31, index >> 5));
+            data.add(Unpooled.wrappedBuffer(chunks[index]));
+            if (positions.size() == 64 || index == to - 1) {
+                region.writeBatch(positions, data);
+                positions.clear();
+                data.clear();
+            }
+        }
+    }
+
+    /**
+     * Creates the data of a chunk holding a few bodies.
+     */
+    static byte[] chunkData(Random random) {
+        ByteBuf buf = Unpooled.buffer();
+        int bodies = 4 + random.nextInt(40);
+        buf.writeInt(bodies);
+        for (int i = 0; i < bodies; i++) {
+            byte[] type = (random.nextBoolean() ? "velthoric:box" : "velthoric:marble").getBytes();
+            buf.writeByte(type.length).writeBytes(type);
+            buf.writeLong(random.nextLong()).writeLong(random.nextLong());
+            buf.writeDouble(random.nextInt(512) + 0.5).writeDouble(64 + random.nextInt(16)).writeDouble(random.nextInt(512) + 0.5);
+            buf.writeFloat(0f).writeFloat(random.nextFloat()).writeFloat(0f).writeFloat(1f);
+            buf.writeByte(random.nextInt(3));
+        }
+        return ByteBufUtil.getBytes(buf);
+    }
+
+    /**
+     * Checks that every entry holds the expected data, or nothing where none is expected.
+     */
+    static void assertContents(GameTestHelper helper, VxRegionFile region, byte[][] expected, String when) {
+        for (int index = 0; index < expected.length; index++) {
+            assertChunk(helper, region, index, expected[index], when);
+        }
+    }
+
+    static void assertChunk(GameTestHelper helper, VxRegionFile region, int index, byte[] expected, String when) {
+        byte[] actual;
+        try {
+            ByteBuf data = region.read(new ChunkPos(index & 31, index >> 5));
+            actual = data == null ? null : ByteBufUtil.getBytes(data);
+            if (data != null) data.release();
+        } catch (IOException e) {
+            throw new IllegalStateException("Entry " + index + " cannot be read " + when, e);
+        }
+        helper.assertTrue(Arrays.equals(actual, expected), "Entry " + index + " differs " + when + ".");
+    }
+
+    private static boolean readFails(VxRegionFile region, int index) {
+        try {
+            ByteBuf data = region.read(new ChunkPos(index & 31, index >> 5));
+            if (data != null) data.release();
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Reads the header table of a region file.
+     */
+    private static byte[] readHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_SIZE);
+            channel.read(header, 0);
+            return header.array();
+        }
+    }
+
+    /**
+     * Reads the stored bytes of every entry, exactly as the header locates them, or null for missing entries.
+     */
+    private static byte[][] rawEntries(Path file, byte[] header) throws IOException {
+        long[] extents = extents(header);
+        byte[][] entries = new byte[1024][];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int index = 0; index < 1024; index++) {
+                if (extents[index] == 0) continue;
+                ByteBuffer entry = ByteBuffer.allocate((extentEnd(extents[index]) - extentStart(extents[index])) * SECTOR_SIZE);
+                long position = (long) extentStart(extents[index]) * SECTOR_SIZE;
+                while (entry.hasRemaining()) {
+                    int read = channel.read(entry, position + entry.position());
+                    if (read < 0) break;
+                }
+                entries[index] = entry.array();
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the sector range of every entry as {@code start << 32 | end}, or 0 for missing entries.
+     */
+    private static long[] extents(byte[] header) {
+        ByteBuffer table = ByteBuffer.wrap(header);
+        long[] extents = new long[1024];
+        for (int index = 0; index < 1024; index++) {
+            int offset = table.getInt(index * 8);
+            int count = table.getInt(index * 8 + 4);
+            if (offset != 0) extents[index] = ((long) offset << 32) | (offset + count);
+        }
+        return extents;
+    }
+
+    private static int extentStart(long extent) {
+        return (int) (extent >>> 32);
+    }
+
+    private static int extentEnd(long extent) {
+        return (int) extent;
+    }
+
+    /**
+     * Flips a byte inside the compressed data of an entry, located through the documented header layout.
+     */
+    private static void flipPayloadByte(Path file, int index) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer entry = ByteBuffer.allocate(4);
+            channel.read(entry, index * 8L);
+            long position = (long) entry.getInt(0) * SECTOR_SIZE + 4 + 40;
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) ~b.get(0));
+            channel.write(b.rewind(), position);
+        }
+    }
+}
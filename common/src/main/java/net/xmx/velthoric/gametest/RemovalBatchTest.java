@@ -0,0 +1,158 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxRemovalQueue;
+import net.xmx.velthoric.core.network.internal.VxRemovalSet;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Random;
+
+/**
+ * Verification of body removal batches.
+ * <p>
+ * ID sets are written with {@link VxRemovalSet} and read back, and chunk shortcuts are queued and
+ * cancelled in a {@link VxRemovalQueue} the way the network dispatcher does when chunks leave and
+ * re-enter a player's view.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class RemovalBatchTest {
+
+    /**
+     * The number of indices per window of the removal set.
+     */
+    private static final int WINDOW = 256;
+
+    /**
+     * Verifies that ID sets round-trip in both window forms: scattered IDs around window boundaries,
+     * dense windows with odd and even counts, whose generations share bytes, and two generations of
+     * one index, which cannot share a bit. Dense removals must cost less than a byte per ID.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRemovalSetRoundTrip(GameTestHelper helper) {
+        Random random = new Random(40);
+
+        assertRoundTrip(helper, new IntArrayList(), "empty");
+
+        // Scattered IDs on both sides of window boundaries, written as deltas
+        IntArrayList boundaries = new IntArrayList();
+        for (int index : new int[]{1, WINDOW - 1, WINDOW, 2 * WINDOW - 1, 2 * WINDOW, 40 * WINDOW, 40 * WINDOW + 255}) {
+            boundaries.add(VxNetworkIdAllocator.pack(index, random.nextInt(16)));
+        }
+        int bytes = assertRoundTrip(helper, boundaries, "window boundaries");
+        helper.assertTrue(bytes < boundaries.size() * 4, "Scattered IDs took " + bytes + " bytes.");
+
+        // Dense windows with an odd and an even count, written as bitsets
+        for (int count : new int[]{WINDOW - 1, WINDOW, 3 * WINDOW + 17}) {
+            IntArrayList dense = new IntArrayList();
+            for (int i = 0; i < count; i++) {
+                dense.add(VxNetworkIdAllocator.pack(5 * WINDOW + 1 + i, random.nextInt(16)));
+            }
+            bytes = assertRoundTrip(helper, dense, count + " dense IDs");
+            helper.assertTrue(bytes < count, count + " dense IDs took " + bytes + " bytes.");
+        }
+
+        // Two generations of one index in an otherwise dense window, plus duplicates
+        IntArrayList generations = new IntArrayList();
+        for (int i = 0; i < WINDOW; i++) {
+            generations.add(VxNetworkIdAllocator.pack(2 * WINDOW + i, 3));
+        }
+        generations.add(VxNetworkIdAllocator.pack(2 * WINDOW + 9, 4));
+        generations.add(VxNetworkIdAllocator.pack(2 * WINDOW + 9, 3));
+        generations.add(VxNetworkIdAllocator.pack(2 * WINDOW + 200, 3));
+        assertRoundTrip(helper, generations, "two generations of one index");
+
+        // Random mix over many windows
+        IntArrayList mixed = new IntArrayList();
+        for (int i = 0; i < 20_000; i++) {
+            int index = random.nextInt(8) == 0 ? 1 + random.nextInt(1 << 20) : 1 + random.nextInt(30_000);
+            mixed.add(VxNetworkIdAllocator.pack(index, random.nextInt(16)));
+        }
+        assertRoundTrip(helper, mixed, "random mix");
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a queued chunk shortcut is sent as the chunk while nothing changed, that it is held
+     * back while states are still queued, and that it turns back into explicit IDs when the chunk or one
+     * of its bodies is tracked again before it was sent.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testShortcutDowngradesOnRetrack(GameTestHelper helper) {
+        long chunkA = 11L;
+        long chunkB = 12L;
+        IntArrayList bodiesA = IntArrayList.of(VxNetworkIdAllocator.pack(1, 0), VxNetworkIdAllocator.pack(2, 0));
+        IntArrayList bodiesB = IntArrayList.of(VxNetworkIdAllocator.pack(3, 0), VxNetworkIdAllocator.pack(4, 0));
+
+        VxRemovalQueue queue = new VxRemovalQueue();
+        queue.addChunk(chunkA, bodiesA, true);
+        queue.addChunk(chunkB, bodiesB, false);
+        IntArrayList ids = new IntArrayList();
+        LongArrayList chunks = new LongArrayList();
+        queue.drain(ids, chunks, false);
+        helper.assertTrue(chunks.isEmpty() && !queue.isEmpty(), "A shortcut was sent while states were still queued.");
+        helper.assertTrue(new IntOpenHashSet(ids).equals(new IntOpenHashSet(bodiesB)), "An unsettled chunk was not listed by ID.");
+
+        ids.clear();
+        queue.drain(ids, chunks, true);
+        helper.assertTrue(ids.isEmpty() && chunks.equals(LongArrayList.of(chunkA)) && queue.isEmpty(), "A settled chunk was not sent as a shortcut.");
+
+        // The whole chunk becomes visible again: its new bodies must not be caught by the shortcut
+        queue.addChunk(chunkA, bodiesA, true);
+        queue.downgradeChunk(chunkA);
+        ids.clear();
+        chunks.clear();
+        queue.drain(ids, chunks, true);
+        helper.assertTrue(chunks.isEmpty(), "A re-tracked chunk was still removed as a whole.");
+        helper.assertTrue(new IntOpenHashSet(ids).equals(new IntOpenHashSet(bodiesA)), "A re-tracked chunk lost its pending removals.");
+
+        // A single body is tracked again: it stays, the rest of its chunk is listed by ID
+        queue.addChunk(chunkA, bodiesA, true);
+        helper.assertTrue(queue.cancel(bodiesA.getInt(0)), "The removal of a shortcut member was not cancelled.");
+        helper.assertTrue(!queue.cancel(bodiesA.getInt(0)), "A removal was cancelled twice.");
+        ids.clear();
+        queue.drain(ids, chunks, true);
+        helper.assertTrue(chunks.isEmpty(), "A chunk with a re-tracked body was still removed as a whole.");
+        helper.assertTrue(ids.equals(IntArrayList.of(bodiesA.getInt(1))), "The other members of the chunk were not listed by ID.");
+        helper.assertTrue(queue.isEmpty(), "Draining left removals in the queue.");
+        helper.succeed();
+    }
+
+    /**
+     * Writes and reads a set, comparing it with the distinct input IDs.
+     *
+     * @return The encoded size in bytes.
+     */
+    private static int assertRoundTrip(GameTestHelper helper, IntArrayList ids, String name) {
+        IntOpenHashSet expected = new IntOpenHashSet(ids);
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            VxRemovalSet.write(buf, new IntArrayList(ids));
+            int bytes = buf.readableBytes();
+            IntArrayList read = new IntArrayList();
+            VxRemovalSet.read(buf, read::add);
+            helper.assertTrue(!buf.isReadable(), "Reading " + name + " left " + buf.readableBytes() + " bytes.");
+            helper.assertTrue(read.size() == expected.size() && expected.containsAll(read), "The " + name + " set did not round-trip.");
+            for (int i = 1; i < read.size(); i++) {
+                helper.assertTrue(Integer.compareUnsigned(read.getInt(i - 1), read.getInt(i)) < 0, "The " + name + " set was not read in ascending order.");
+            }
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.stephengold.joltjni.Quat;
+import com.github.stephengold.joltjni.RVec3;
+import com.github.stephengold.joltjni.enumerate.EActivation;
+import com.github.stephengold.joltjni.enumerate.EMotionType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.Vec3;
+import net.xmx.velthoric.builtin.VxRegisteredBodies;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.VxRemovalReason;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataContainer;
+import net.xmx.velthoric.core.body.client.VxClientBodyDataStore;
+import net.xmx.velthoric.core.body.client.VxClientBodyInterpolator;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+import net.xmx.velthoric.math.VxTransform;
+
+/**
+ * Verification of rest-state suppression on the receiving side.
+ * <p>
+ * State records are written with the server's record writer and applied to a standalone
+ * client data store, which is then driven by the client interpolator tick by tick.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class RestStateSyncTest {
+
+    private static final long TICK_NANOS = 50_000_000L;
+
+    /**
+     * Verifies that a resting record settles the render state on the exact rest transform,
+     * that a settled body is left untouched, and that an active record wakes it up again.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRestingRecordsSettle(GameTestHelper helper) {
+        VxServerBodyManager manager = VelthoricGameTestUtils.getManager(helper);
+        Vec3 spawn = helper.absoluteVec(new Vec3(9.5, 2.0, 9.5));
+        VxBody box = manager.createBody(VxRegisteredBodies.BOX,
+                new VxTransform(new RVec3(spawn.x, spawn.y, spawn.z), Quat.sIdentity()),
+                EMotionType.Static, EActivation.DontActivate, b -> {});
+        helper.assertTrue(box != null, "Failed to spawn the test body.");
+
+        VxClientBodyDataStore store = new VxClientBodyDataStore();
+        VxClientBodyInterpolator interpolator = new VxClientBodyInterpolator();
+        int networkId = VxNetworkIdAllocator.pack(1, 0);
+        int index = store.addBody(box, networkId);
+        VxClientBodyDataContainer c = store.clientCurrent();
+        c.render_isInitialized[index] = true;
+
+        double baseY = helper.getLevel().getMinBuildHeight();
+        long timestamp = TICK_NANOS;
+
+        // A moving body, then a rest position that a float offset cannot represent exactly
+        apply(store, timestamp, networkId, false, 3.25, baseY + 4.5, 5.75, 1f, baseY);
+        interpolator.updateInterpolationTargets(store, timestamp);
+        double restX = 3.1234567890123;
+        double restY = baseY + 4.0000000001;
+        double restZ = 5.9876543210987;
+        timestamp += TICK_NANOS;
+        apply(store, timestamp, networkId, true, restX, restY, restZ, 0f, baseY);
+        helper.assertTrue(c.isResting[index] && !c.state1_isActive[index], "Resting record did not flag the body as resting.");
+
+        for (int tick = 0; tick < 3; tick++) {
+            timestamp += TICK_NANOS;
+            interpolator.updateInterpolationTargets(store, timestamp);
+        }
+        helper.assertTrue(c.render_isSettled[index], "Render state did not settle within three ticks.");
+        helper.assertTrue(c.posX[index] == restX && c.posY[index] == restY && c.posZ[index] == restZ,
+                "Settled render position differs from the rest transform.");
+
+        RVec3 interpolated = new RVec3();
+        interpolator.interpolatePosition(store, index, 0.5f, interpolated);
+        helper.assertTrue(interpolated.xx() == restX && interpolated.yy() == restY && interpolated.zz() == restZ,
+                "Frame interpolation of a settled body moved it off the rest transform.");
+
+        // A settled body is skipped, so changes to its history must not reach the render state
+        c.state1_posX[index] = restX + 10.0;
+        timestamp += TICK_NANOS;
+        interpolator.updateInterpolationTargets(store, timestamp);
+        helper.assertTrue(c.posX[index] == restX && c.prev_posX[index] == restX,
+                "Settled body was still interpolated.");
+
+        timestamp += TICK_NANOS;
+        apply(store, timestamp, networkId, false, 4.0, baseY + 4.0, 6.0, 2f, baseY);
+        helper.assertTrue(!c.isResting[index] && !c.render_isSettled[index], "Active record did not wake the body.");
+        helper.assertTrue(c.state0_timestamp[index] == 0, "Woken body would interpolate across the rest gap.");
+
+        manager.removeBody(box.getPhysicsId(), VxRemovalReason.DISCARD);
+        helper.succeed();
+    }
+
+    /**
+     * Writes a single-record state payload for chunk (0, 0) and applies it to the store.
+     */
+    private static void apply(VxClientBodyDataStore store, long timestamp, int networkId, boolean resting,
+                              double x, double y, double z, float velX, double baseY) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            VxPacketFactory.writeStateHeader(buf, timestamp);
+            buf.writeLong(ChunkPos.asLong(0, 0));
+            buf.writeInt(1);
+            VxPacketFactory.writeStateRecord(buf, networkId, resting, x, y, z, 0f, 0f, 0f, 1f,
+                    velX, 0f, 0f, 0.0, baseY, 0.0);
+            long payloadTimestamp = buf.readLong();
+            S2CUpdateBodyStateBatchPacket.applySections(buf, store, payloadTimestamp, baseY);
+        } finally {
+            buf.release();
+        }
+    }
+}
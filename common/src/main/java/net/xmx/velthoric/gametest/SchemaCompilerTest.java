@@ -0,0 +1,287 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.persistence.schema.VxFieldType;
+import net.xmx.velthoric.core.persistence.schema.VxSchema;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Verification of the schema compiler.
+ * <p>
+ * The sample schema mirrors the body schema of {@code VxBodyCodec} field by field (position, rotation,
+ * velocities with skip conditions, motion type, activation, behaviors, soft body vertices, shape and type data),
+ * but operates on plain objects, so it runs without a physics world. The schema benchmark uses the same schema.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class SchemaCompilerTest {
+
+    /**
+     * A plain object with the persistent state of a body.
+     */
+    public static final class Sample {
+        public double posX, posY, posZ;
+        public float rotX, rotY, rotZ, rotW;
+        public float linX, linY, linZ;
+        public float angX, angY, angZ;
+        public byte motionType, activation;
+        public long behaviors;
+        public float[] vertices;
+        public byte[] shape;
+        public byte[] typeData;
+    }
+
+    /**
+     * Verifies that the compiled codec writes exactly the bytes of the interpreter for every object, well past
+     * the cross-checked first serializations, and that both deserializers restore the same objects.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testCompiledMatchesInterpreter(GameTestHelper helper) {
+        VxSchema<Sample> schema = createSchema();
+        helper.assertTrue(schema.isCompiled(), "The sample schema could not be compiled.");
+
+        Sample[] samples = createSamples(2_000, new Random(47));
+        samples[0] = new Sample(); // Every skip condition applies
+        ByteBuf compiled = Unpooled.buffer();
+        ByteBuf interpreted = Unpooled.buffer();
+        VxByteBuf compiledBuf = new VxByteBuf(compiled);
+        VxByteBuf interpretedBuf = new VxByteBuf(interpreted);
+        for (int i = 0; i < samples.length; i++) {
+            int compiledStart = compiled.writerIndex();
+            int interpretedStart = interpreted.writerIndex();
+            schema.serialize(samples[i], compiledBuf);
+            schema.serializeInterpreted(samples[i], interpretedBuf);
+            int length = compiled.writerIndex() - compiledStart;
+            helper.assertTrue(length == interpreted.writerIndex() - interpretedStart
+                    && ByteBufUtil.equals(compiled, compiledStart, interpreted, interpretedStart, length), "Object " + i + " was serialized differently.");
+        }
+        // A disagreement during the cross-checks would have replaced the compiled output and disabled the codec
+        helper.assertTrue(schema.isCompiled(), "The compiled codec disagreed with the interpreter and was disabled.");
+
+        for (int i = 0; i < samples.length; i++) {
+            Sample fromCompiled = new Sample();
+            Sample fromInterpreted = new Sample();
+            schema.deserialize(fromCompiled, compiledBuf);
+            schema.deserializeInterpreted(fromInterpreted, interpretedBuf);
+            helper.assertTrue(equal(samples[i], fromCompiled), "Object " + i + " changed after compiled deserialization.");
+            helper.assertTrue(equal(samples[i], fromInterpreted), "Object " + i + " changed after interpreted deserialization.");
+            helper.assertTrue(compiled.readerIndex() == interpreted.readerIndex(), "Object " + i + " was read to a different end.");
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that both deserializers treat data of other versions alike: fields in a different order are
+     * read, unknown fields and fields with a changed type are skipped, and an unknown field type stops the
+     * object at the same position.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testCompiledSkipsLikeInterpreter(GameTestHelper helper) {
+        VxSchema<Sample> schema = createSchema();
+        helper.assertTrue(schema.isCompiled(), "The sample schema could not be compiled.");
+
+        VxByteBuf payload = new VxByteBuf(Unpooled.buffer());
+        payload.writeShort(10).writeByte(VxFieldType.BYTES.getId()).writeInt(3).writeBytes(new byte[]{7, 8, 9});
+        payload.writeShort(42).writeByte(VxFieldType.BYTES.getId()).writeInt(5).writeBytes(new byte[5]);
+        payload.writeShort(1).writeByte(VxFieldType.VEC3F.getId()).writeFloat(1f).writeFloat(2f).writeFloat(3f);
+        payload.writeShort(43).writeByte(VxFieldType.LONG.getId()).writeLong(-1L);
+        payload.writeShort(5).writeByte(VxFieldType.BYTE.getId()).writeByte(2);
+        payload.writeShort(2).writeByte(VxFieldType.QUATERNION.getId()).writeFloat(0f).writeFloat(0.6f).writeFloat(0f).writeFloat(0.8f);
+        payload.writeShort(VxSchema.END_OF_SCHEMA);
+        int firstEnd = payload.writerIndex();
+        payload.writeShort(6).writeByte(VxFieldType.BYTE.getId()).writeByte(1);
+        payload.writeShort(7).writeByte(99).writeLong(0x11L);
+        payload.writeShort(VxSchema.END_OF_SCHEMA);
+
+        VxByteBuf forCompiled = new VxByteBuf(payload.copy());
+        VxByteBuf forInterpreted = new VxByteBuf(payload.copy());
+        for (int object = 0; object < 2; object++) {
+            Sample fromCompiled = new Sample();
+            Sample fromInterpreted = new Sample();
+            schema.deserialize(fromCompiled, forCompiled);
+            schema.deserializeInterpreted(fromInterpreted, forInterpreted);
+            helper.assertTrue(equal(fromCompiled, fromInterpreted), "Object " + object + " was read differently.");
+            helper.assertTrue(forCompiled.readerIndex() == forInterpreted.readerIndex(), "Object " + object + " was read to a different end.");
+            if (object == 0) {
+                helper.assertTrue(forCompiled.readerIndex() == firstEnd, "The first object did not end at its end marker.");
+                helper.assertTrue(fromCompiled.posX == 0 && fromCompiled.motionType == 2 && fromCompiled.rotW == 0.8f
+                        && Arrays.equals(fromCompiled.typeData, new byte[]{7, 8, 9}), "The known fields of the first object were not read.");
+            } else {
+                helper.assertTrue(fromCompiled.activation == 1 && fromCompiled.behaviors == 0, "The second object was not read up to the unknown type.");
+            }
+        }
+        forCompiled.release();
+        forInterpreted.release();
+        payload.release();
+        helper.succeed();
+    }
+
+    /**
+     * Creates a schema with the same fields, types and conditions as the body schema.
+     *
+     * @return A new sample schema.
+     */
+    public static VxSchema<Sample> createSchema() {
+        VxSchema<Sample> schema = new VxSchema<>();
+        schema.register((short) 1, "position", VxFieldType.RVEC3, s -> true,
+                (s, buf) -> {
+                    buf.writeDouble(s.posX);
+                    buf.writeDouble(s.posY);
+                    buf.writeDouble(s.posZ);
+                },
+                (s, buf) -> {
+                    s.posX = buf.readDouble();
+                    s.posY = buf.readDouble();
+                    s.posZ = buf.readDouble();
+                });
+        schema.register((short) 2, "rotation", VxFieldType.QUATERNION, s -> true,
+                (s, buf) -> {
+                    buf.writeFloat(s.rotX);
+                    buf.writeFloat(s.rotY);
+                    buf.writeFloat(s.rotZ);
+                    buf.writeFloat(s.rotW);
+                },
+                (s, buf) -> {
+                    s.rotX = buf.readFloat();
+                    s.rotY = buf.readFloat();
+                    s.rotZ = buf.readFloat();
+                    s.rotW = buf.readFloat();
+                });
+        schema.register((short) 3, "linear_velocity", VxFieldType.VEC3F,
+                s -> s.linX != 0 || s.linY != 0 || s.linZ != 0,
+                (s, buf) -> {
+                    buf.writeFloat(s.linX);
+                    buf.writeFloat(s.linY);
+                    buf.writeFloat(s.linZ);
+                },
+                (s, buf) -> {
+                    s.linX = buf.readFloat();
+                    s.linY = buf.readFloat();
+                    s.linZ = buf.readFloat();
+                });
+        schema.register((short) 4, "angular_velocity", VxFieldType.VEC3F,
+                s -> s.angX != 0 || s.angY != 0 || s.angZ != 0,
+                (s, buf) -> {
+                    buf.writeFloat(s.angX);
+                    buf.writeFloat(s.angY);
+                    buf.writeFloat(s.angZ);
+                },
+                (s, buf) -> {
+                    s.angX = buf.readFloat();
+                    s.angY = buf.readFloat();
+                    s.angZ = buf.readFloat();
+                });
+        schema.register((short) 5, "motion_type", VxFieldType.BYTE, s -> true,
+                (s, buf) -> buf.writeByte(s.motionType),
+                (s, buf) -> s.motionType = buf.readByte());
+        schema.register((short) 6, "activation", VxFieldType.BYTE, s -> true,
+                (s, buf) -> buf.writeByte(s.activation),
+                (s, buf) -> s.activation = buf.readByte());
+        schema.register((short) 7, "behaviors", VxFieldType.LONG, s -> s.behaviors != 0,
+                (s, buf) -> buf.writeLong(s.behaviors),
+                (s, buf) -> s.behaviors = buf.readLong());
+        schema.register((short) 8, "soft_body_vertices", VxFieldType.BYTES, s -> s.vertices != null,
+                (s, buf) -> {
+                    buf.writeInt(s.vertices.length);
+                    for (float v : s.vertices) buf.writeFloat(v);
+                },
+                (s, buf) -> {
+                    float[] vertices = new float[buf.readInt()];
+                    for (int i = 0; i < vertices.length; i++) vertices[i] = buf.readFloat();
+                    s.vertices = vertices;
+                });
+        schema.register((short) 9, "shape", VxFieldType.SHAPE, s -> s.shape != null,
+                (s, buf) -> buf.writeBytes(s.shape),
+                (s, buf) -> {
+                    s.shape = new byte[buf.readableBytes()];
+                    buf.readBytes(s.shape);
+                });
+        schema.register((short) 10, "type_data", VxFieldType.BYTES, s -> true,
+                (s, buf) -> {
+                    if (s.typeData != null) buf.writeBytes(s.typeData);
+                },
+                (s, buf) -> {
+                    s.typeData = new byte[buf.readableBytes()];
+                    buf.readBytes(s.typeData);
+                    if (s.typeData.length == 0) s.typeData = null;
+                });
+        return schema;
+    }
+
+    /**
+     * Creates objects with a realistic mix of resting, moving and soft bodies.
+     *
+     * @param count  The number of objects.
+     * @param random The source of the object state.
+     * @return The objects.
+     */
+    public static Sample[] createSamples(int count, Random random) {
+        byte[][] shapes = new byte[8][];
+        for (int i = 0; i < shapes.length; i++) {
+            shapes[i] = new byte[40 + 12 * i];
+            random.nextBytes(shapes[i]);
+        }
+
+        Sample[] samples = new Sample[count];
+        for (int i = 0; i < count; i++) {
+            Sample s = new Sample();
+            s.posX = random.nextDouble() * 10_000 - 5_000;
+            s.posY = 60 + random.nextDouble() * 40;
+            s.posZ = random.nextDouble() * 10_000 - 5_000;
+            s.rotY = random.nextFloat();
+            s.rotW = (float) Math.sqrt(1 - s.rotY * s.rotY);
+            if (random.nextInt(5) == 0) {
+                s.linX = random.nextFloat();
+                s.linY = random.nextFloat();
+                s.angZ = random.nextFloat();
+            }
+            s.motionType = 2;
+            s.activation = (byte) random.nextInt(2);
+            if (random.nextInt(20) == 0) {
+                s.behaviors = 0x11;
+                s.vertices = new float[60];
+                for (int v = 0; v < s.vertices.length; v++) s.vertices[v] = random.nextFloat();
+            }
+            s.shape = shapes[random.nextInt(shapes.length)];
+            if (random.nextInt(3) == 0) {
+                s.typeData = new byte[8];
+                random.nextBytes(s.typeData);
+            }
+            samples[i] = s;
+        }
+        return samples;
+    }
+
+    /**
+     * Compares the complete state of two objects.
+     *
+     * @param a The first object.
+     * @param b The second object.
+     * @return True if every field is equal.
+     */
+    public static boolean equal(Sample a, Sample b) {
+        return a.posX == b.posX && a.posY == b.posY && a.posZ == b.posZ
+                && a.rotX == b.rotX && a.rotY == b.rotY && a.rotZ == b.rotZ && a.rotW == b.rotW
+                && a.linX == b.linX && a.linY == b.linY && a.linZ == b.linZ
+                && a.angX == b.angX && a.angY == b.angY && a.angZ == b.angZ
+                && a.motionType == b.motionType && a.activation == b.activation && a.behaviors == b.behaviors
+                && Arrays.equals(a.vertices, b.vertices)
+                && Arrays.equals(a.shape, b.shape)
+                && Arrays.equals(a.typeData, b.typeData);
+    }
+}
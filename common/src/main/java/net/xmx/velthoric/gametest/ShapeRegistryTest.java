@@ -0,0 +1,266 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.stephengold.joltjni.Vec3;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.body.shape.VxBoxShape;
+import net.xmx.velthoric.core.body.shape.VxCollisionShape;
+import net.xmx.velthoric.core.body.shape.VxMutableCompoundShape;
+import net.xmx.velthoric.core.body.shape.VxShapeCodec;
+import net.xmx.velthoric.core.body.shape.VxSphereShape;
+import net.xmx.velthoric.core.network.internal.VxClientShapeCache;
+import net.xmx.velthoric.core.network.internal.VxShapeRegistry;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.Arrays;
+
+/**
+ * Verification of the content-addressed shape registry of a connection.
+ * <p>
+ * Shape entries of many bodies are written by a {@link VxShapeRegistry}, committed as if their packet
+ * was sent, and read back by a {@link VxClientShapeCache}. Every shape the client resolves is compared
+ * with the shape written for that body by its canonical {@link VxShapeCodec} encoding.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class ShapeRegistryTest {
+
+    /**
+     * A registry whose hash maps every shape to the same value, so that every lookup after the first
+     * definition is a hash hit with different content.
+     */
+    private static final class CollidingRegistry extends VxShapeRegistry {
+        @Override
+        protected long hash(ByteBuf buf, int length) {
+            return 42L;
+        }
+    }
+
+    /**
+     * Verifies that bodies sharing shape content, even through distinct instances, define it once and
+     * reference it afterwards, and that every referencing body resolves to the same client instance.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testShapesAreSharedAcrossBodies(GameTestHelper helper) {
+        VxShapeRegistry registry = new VxShapeRegistry();
+        VxClientShapeCache client = new VxClientShapeCache();
+        VxByteBuf packet = new VxByteBuf(Unpooled.buffer());
+        try {
+            int bodies = 2000;
+            VxCollisionShape[] written = new VxCollisionShape[bodies];
+            for (int i = 0; i < bodies; i++) {
+                // A new instance per body, as every body type creates its own shape
+                written[i] = switch (i % 3) {
+                    case 0 -> new VxBoxShape(new Vec3(0.5f, 0.5f, 0.5f));
+                    case 1 -> new VxSphereShape(0.5f);
+                    default -> new VxBoxShape(new Vec3(1f, 0.25f, 2f));
+                };
+            }
+            int[] markers = writeAll(registry, packet, written);
+            registry.commit();
+            VxCollisionShape[] read = readAll(helper, client, packet, written);
+
+            helper.assertTrue(count(markers, VxShapeRegistry.SHAPE_DEFINITION) == 3,
+                    count(markers, VxShapeRegistry.SHAPE_DEFINITION) + " definitions were sent for 3 distinct shapes.");
+            helper.assertTrue(count(markers, VxShapeRegistry.SHAPE_REFERENCE) == bodies - 3, "Not every repeated shape was sent as a reference.");
+            helper.assertTrue(packet.writerIndex() < bodies * 3, "The entries of " + bodies + " bodies took " + packet.writerIndex() + " bytes.");
+            for (int i = 3; i < bodies; i++) {
+                helper.assertTrue(read[i] == read[i % 3], "Body " + i + " did not share the client instance of its shape.");
+            }
+        } finally {
+            packet.release();
+            registry.release();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a hash hit with different content is never sent as a reference: with every hash
+     * colliding, each body must still resolve to its own shape on the client.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testHashCollisionsAreVerified(GameTestHelper helper) {
+        VxShapeRegistry registry = new CollidingRegistry();
+        VxClientShapeCache client = new VxClientShapeCache();
+        VxByteBuf packet = new VxByteBuf(Unpooled.buffer());
+        try {
+            VxCollisionShape a = new VxSphereShape(0.5f);
+            VxCollisionShape b = new VxSphereShape(0.75f);
+            VxCollisionShape c = new VxBoxShape(new Vec3(0.5f, 0.5f, 0.5f));
+            VxCollisionShape[] written = {a, b, a, a, c, b, c, c, a};
+            int[] markers = writeAll(registry, packet, written);
+            registry.commit();
+            readAll(helper, client, packet, written);
+
+            // A repeat directly after its own definition is the only case the colliding hash still points to it
+            int[] expected = {
+                    VxShapeRegistry.SHAPE_DEFINITION, VxShapeRegistry.SHAPE_DEFINITION, VxShapeRegistry.SHAPE_DEFINITION,
+                    VxShapeRegistry.SHAPE_REFERENCE, VxShapeRegistry.SHAPE_DEFINITION, VxShapeRegistry.SHAPE_DEFINITION,
+                    VxShapeRegistry.SHAPE_DEFINITION, VxShapeRegistry.SHAPE_REFERENCE, VxShapeRegistry.SHAPE_DEFINITION
+            };
+            helper.assertTrue(Arrays.equals(markers, expected), "Colliding shapes were written as " + Arrays.toString(markers) + ".");
+        } finally {
+            packet.release();
+            registry.release();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that definitions are overwritten in ring order once more than {@link VxShapeRegistry#CAPACITY}
+     * distinct shapes were sent: the evicted shapes are defined again, the newest are still referenced, and
+     * the client resolves every body to its shape throughout.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRingOverwritesOldestDefinitions(GameTestHelper helper) {
+        VxShapeRegistry registry = new VxShapeRegistry();
+        VxClientShapeCache client = new VxClientShapeCache();
+        VxByteBuf packet = new VxByteBuf(Unpooled.buffer());
+        try {
+            int overflow = 100;
+            VxCollisionShape[] distinct = new VxCollisionShape[VxShapeRegistry.CAPACITY + overflow];
+            for (int i = 0; i < distinct.length; i++) {
+                distinct[i] = new VxSphereShape(0.01f * (i + 1));
+            }
+            writeAll(registry, packet, distinct);
+            registry.commit();
+            readAll(helper, client, packet, distinct);
+
+            // The first definitions after the wrap reuse the first slots
+            packet.clear();
+            registry.writeShape(packet, new VxSphereShape(0.01f * (VxShapeRegistry.CAPACITY + 1)));
+            helper.assertTrue(packet.readByte() == VxShapeRegistry.SHAPE_REFERENCE && packet.readVarInt() == 0,
+                    "The first shape after the wrap does not live in slot 0.");
+
+            // The oldest shapes were evicted, the newest are still known
+            VxCollisionShape[] again = new VxCollisionShape[2 * overflow];
+            for (int i = 0; i < overflow; i++) {
+                again[i] = new VxSphereShape(0.01f * (i + 1));
+                again[overflow + i] = distinct[distinct.length - 1 - i];
+            }
+            packet.clear();
+            int[] markers = writeAll(registry, packet, again);
+            registry.commit();
+            readAll(helper, client, packet, again);
+            for (int i = 0; i < overflow; i++) {
+                helper.assertTrue(markers[i] == VxShapeRegistry.SHAPE_DEFINITION, "Evicted shape " + i + " was not defined again.");
+            }
+            // Redefining the oldest shapes evicted the next oldest slots, never the newest
+            for (int i = overflow; i < again.length; i++) {
+                helper.assertTrue(markers[i] == VxShapeRegistry.SHAPE_REFERENCE, "Recent shape " + (distinct.length - 1 - (i - overflow)) + " was evicted.");
+            }
+        } finally {
+            packet.release();
+            registry.release();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that mutable compound shapes are always sent inline, decode to a separate instance per
+     * body, and neither occupy a slot nor disturb the references of shared shapes.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testMutableCompoundsStayInline(GameTestHelper helper) {
+        VxShapeRegistry registry = new VxShapeRegistry();
+        VxClientShapeCache client = new VxClientShapeCache();
+        VxByteBuf packet = new VxByteBuf(Unpooled.buffer());
+        try {
+            VxCollisionShape box = new VxBoxShape(new Vec3(0.5f, 0.5f, 0.5f));
+            VxCollisionShape[] written = new VxCollisionShape[6];
+            for (int i = 0; i < written.length; i += 2) {
+                written[i] = new VxMutableCompoundShape()
+                        .addShape(new VxBoxShape(new Vec3(0.5f, 0.5f, 0.5f)), new Vec3(0f, 0f, 0f))
+                        .addShape(new VxSphereShape(0.25f), new Vec3(0f, 1f, 0f));
+                written[i + 1] = box;
+            }
+            int[] markers = writeAll(registry, packet, written);
+            registry.commit();
+            VxCollisionShape[] read = readAll(helper, client, packet, written);
+
+            int[] expected = {
+                    VxShapeRegistry.SHAPE_INLINE, VxShapeRegistry.SHAPE_DEFINITION, VxShapeRegistry.SHAPE_INLINE,
+                    VxShapeRegistry.SHAPE_REFERENCE, VxShapeRegistry.SHAPE_INLINE, VxShapeRegistry.SHAPE_REFERENCE
+            };
+            helper.assertTrue(Arrays.equals(markers, expected), "Mutable compounds were written as " + Arrays.toString(markers) + ".");
+            helper.assertTrue(read[0] != read[2] && read[2] != read[4], "Bodies shared a mutable compound instance.");
+            helper.assertTrue(read[1] == read[3] && read[3] == read[5], "A mutable compound broke the references of a shared shape.");
+
+            // The box took the first slot, so the inline shapes consumed none
+            packet.clear();
+            registry.writeShape(packet, box);
+            helper.assertTrue(packet.readByte() == VxShapeRegistry.SHAPE_REFERENCE && packet.readVarInt() == 0,
+                    "A mutable compound occupied a shape slot.");
+        } finally {
+            packet.release();
+            registry.release();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Writes the shape entry of every body into the packet.
+     *
+     * @return The marker of each entry.
+     */
+    private static int[] writeAll(VxShapeRegistry registry, VxByteBuf packet, VxCollisionShape[] shapes) {
+        int[] markers = new int[shapes.length];
+        for (int i = 0; i < shapes.length; i++) {
+            int start = packet.writerIndex();
+            registry.writeShape(packet, shapes[i]);
+            markers[i] = packet.getByte(start);
+        }
+        return markers;
+    }
+
+    /**
+     * Reads every entry of the packet into the client cache, checking that each resolves to the shape
+     * written for its body.
+     *
+     * @return The shape the client resolved for each body.
+     */
+    private static VxCollisionShape[] readAll(GameTestHelper helper, VxClientShapeCache client, VxByteBuf packet, VxCollisionShape[] written) {
+        VxCollisionShape[] read = new VxCollisionShape[written.length];
+        for (int i = 0; i < written.length; i++) {
+            read[i] = client.readShape(packet);
+            helper.assertTrue(read[i] != null && Arrays.equals(encode(read[i]), encode(written[i])),
+                    "Body " + i + " resolved to a different shape on the client.");
+        }
+        helper.assertTrue(!packet.isReadable(), "The packet has unread bytes.");
+        return read;
+    }
+
+    /**
+     * @return The canonical encoding of a shape.
+     */
+    private static byte[] encode(VxCollisionShape shape) {
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            VxShapeCodec.write(buf, shape);
+            return ByteBufUtil.getBytes(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static int count(int[] markers, int marker) {
+        int n = 0;
+        for (int m : markers) if (m == marker) n++;
+        return n;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.stephengold.joltjni.Quat;
+import com.github.stephengold.joltjni.RVec3;
+import com.github.stephengold.joltjni.Vec3;
+import com.github.stephengold.joltjni.enumerate.EActivation;
+import com.github.stephengold.joltjni.enumerate.EMotionType;
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.builtin.VxRegisteredBodies;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.VxRemovalReason;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
+import net.xmx.velthoric.core.body.shape.VxBoxShape;
+import net.xmx.velthoric.core.body.shape.VxCollisionShape;
+import net.xmx.velthoric.core.body.shape.VxSphereShape;
+import net.xmx.velthoric.core.network.internal.VxClientShapeCache;
+import net.xmx.velthoric.core.network.internal.VxShapeRegistry;
+import net.xmx.velthoric.core.network.internal.VxSpawnData;
+import net.xmx.velthoric.math.VxTransform;
+import net.xmx.velthoric.network.VxByteBuf;
+
+/**
+ * Verification of spawn delivery to a single connection.
+ * <p>
+ * Shape entries are written into simulated packets, of which only some reach a client-side
+ * {@link VxClientShapeCache}, the way records are dropped or packets fail on the server.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class SpawnDeliveryTest {
+
+    /**
+     * Verifies that shape definitions of dropped records and failed packets are sent again, so the
+     * client never receives a reference to a slot it does not know.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRollbackResendsDefinitions(GameTestHelper helper) {
+        VxShapeRegistry registry = new VxShapeRegistry();
+        VxClientShapeCache client = new VxClientShapeCache();
+        VxCollisionShape small = new VxSphereShape(0.5f);
+        VxCollisionShape large = new VxSphereShape(0.75f);
+        VxCollisionShape box = new VxBoxShape(new Vec3(1f, 0.5f, 1f));
+
+        VxByteBuf packet = new VxByteBuf(Unpooled.buffer());
+        try {
+            // Packet 1 is delivered
+            expect(helper, registry, packet, small, VxShapeRegistry.SHAPE_DEFINITION, "first small sphere");
+            registry.commit();
+            deliver(helper, client, packet, 1);
+
+            // Packet 2: one record is dropped, then the whole packet fails
+            packet.clear();
+            expect(helper, registry, packet, small, VxShapeRegistry.SHAPE_REFERENCE, "delivered small sphere");
+            expect(helper, registry, packet, box, VxShapeRegistry.SHAPE_DEFINITION, "first box");
+            int checkpoint = registry.checkpoint();
+            int mark = packet.writerIndex();
+            expect(helper, registry, packet, large, VxShapeRegistry.SHAPE_DEFINITION, "first large sphere");
+            packet.writerIndex(mark);
+            registry.rollback(checkpoint);
+            expect(helper, registry, packet, box, VxShapeRegistry.SHAPE_REFERENCE, "box defined earlier in the packet");
+            registry.rollback(0);
+
+            // Packet 3 is delivered and must define everything packet 2 lost
+            packet.clear();
+            expect(helper, registry, packet, box, VxShapeRegistry.SHAPE_DEFINITION, "box of the failed packet");
+            expect(helper, registry, packet, large, VxShapeRegistry.SHAPE_DEFINITION, "large sphere of the dropped record");
+            expect(helper, registry, packet, small, VxShapeRegistry.SHAPE_REFERENCE, "delivered small sphere");
+            expect(helper, registry, packet, box, VxShapeRegistry.SHAPE_REFERENCE, "box defined earlier in the packet");
+            registry.commit();
+            deliver(helper, client, packet, 4);
+
+            // Rolling back after a commit must not touch delivered definitions
+            registry.rollback(0);
+            packet.clear();
+            expect(helper, registry, packet, large, VxShapeRegistry.SHAPE_REFERENCE, "delivered large sphere");
+        } finally {
+            packet.release();
+            registry.release();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a spawn record is only reported complete for a body that is still present.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRemovedBodyIsSkipped(GameTestHelper helper) {
+        VxServerBodyManager manager = VelthoricGameTestUtils.getManager(helper);
+        BlockPos pos = helper.absolutePos(new BlockPos(9, 2, 9));
+        VxBody body = manager.createBody(VxRegisteredBodies.BOX,
+                new VxTransform(new RVec3(pos.getX() + 0.5, pos.getY(), pos.getZ() + 0.5), Quat.sIdentity()),
+                EMotionType.Static, EActivation.DontActivate, b -> {});
+        helper.assertTrue(body != null, "Failed to spawn the test body.");
+
+        VxShapeRegistry registry = new VxShapeRegistry();
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            helper.assertTrue(VxSpawnData.writeIfPresent(buf, body, 1L, registry) && buf.isReadable(),
+                    "The record of a present body was rejected.");
+            helper.assertTrue(buf.readUUID().equals(body.getPhysicsId()), "The record does not start with the body ID.");
+
+            manager.removeBody(body.getPhysicsId(), VxRemovalReason.DISCARD);
+            buf.clear();
+            helper.assertTrue(!VxSpawnData.writeIfPresent(buf, body, 2L, registry), "The record of a removed body was accepted.");
+            helper.assertTrue(!buf.isReadable(), "A removed body was written.");
+        } finally {
+            buf.release();
+            registry.release();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Writes a shape entry and checks its marker.
+     */
+    private static void expect(GameTestHelper helper, VxShapeRegistry registry, VxByteBuf packet,
+                               VxCollisionShape shape, byte marker, String what) {
+        int start = packet.writerIndex();
+        registry.writeShape(packet, shape);
+        helper.assertTrue(packet.getByte(start) == marker, "The " + what + " was written with marker " + packet.getByte(start) + ".");
+    }
+
+    /**
+     * Reads every shape entry of a delivered packet into the client cache.
+     */
+    private static void deliver(GameTestHelper helper, VxClientShapeCache client, VxByteBuf packet, int entries) {
+        for (int i = 0; i < entries; i++) {
+            helper.assertTrue(client.readShape(packet) != null, "Entry " + i + " references a shape the client does not know.");
+        }
+        helper.assertTrue(!packet.isReadable(), "The delivered packet has unread bytes.");
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.builtin.VxRegisteredBodies;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxSpawnScheduler;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Verification of the nearest-first spawn scheduling of a single connection.
+ * <p>
+ * Bodies are placed in a standalone server data container and handed to a {@link VxSpawnScheduler}.
+ * A simulated timeline of 50 ms cycles sends chunks to the client nearest first, as the chunk map does
+ * after a join, and polls the scheduler with a per-cycle body budget, as the network thread does.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class SpawnSchedulerTest {
+
+    private static final long CYCLE_NANOS = 50_000_000L;
+
+    private static final int JOIN_BODIES = 30_000;
+    private static final int JOIN_RADIUS = 20;
+    private static final int CHUNKS_PER_CYCLE = 64;
+    private static final int BODIES_PER_CYCLE = 600;
+
+    /**
+     * Verifies that a player joining an area with 30k bodies costs the game thread little time, sees the
+     * first body in the cycle its chunk arrives, receives the nearest bodies first, and receives every
+     * body exactly once and never before its chunk.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testJoinStreamsNearestFirst(GameTestHelper helper) {
+        Random random = new Random(38);
+        VxServerBodyDataContainer c = new VxServerBodyDataContainer(JOIN_BODIES);
+        VxBody[] bodies = new VxBody[JOIN_BODIES];
+        int side = JOIN_RADIUS * 2 + 1;
+        for (int i = 0; i < JOIN_BODIES; i++) {
+            bodies[i] = createBody(c, i, (random.nextDouble() * side - JOIN_RADIUS) * 16, 64 + random.nextDouble() * 8,
+                    (random.nextDouble() * side - JOIN_RADIUS) * 16);
+        }
+
+        // The chunks around the player, nearest first
+        long[] chunks = new long[side * side];
+        int n = 0;
+        for (int ring = 0; ring <= JOIN_RADIUS; ring++) {
+            for (int x = -ring; x <= ring; x++) {
+                for (int z = -ring; z <= ring; z++) {
+                    if (Math.max(Math.abs(x), Math.abs(z)) == ring) chunks[n++] = ChunkPos.asLong(x, z);
+                }
+            }
+        }
+
+        VxSpawnScheduler scheduler = new VxSpawnScheduler();
+        LongOpenHashSet sent = new LongOpenHashSet();
+        IntOpenHashSet spawned = new IntOpenHashSet();
+        long gameThreadNanos = 0;
+        long start = System.nanoTime();
+        for (VxBody body : bodies) scheduler.add(body);
+        gameThreadNanos += System.nanoTime() - start;
+
+        int firstVisibleCycle = -1;
+        int cycles = 0;
+        int sentChunks = 0;
+        double nearDistance = 0;
+        int nearCount = 0;
+        while (spawned.size() < JOIN_BODIES) {
+            helper.assertTrue(cycles < 10_000, "The join did not complete, " + spawned.size() + " of " + JOIN_BODIES + " bodies spawned.");
+
+            // Game thread: the chunk map sends the next chunks
+            start = System.nanoTime();
+            for (int i = 0; i < CHUNKS_PER_CYCLE && sentChunks < chunks.length; i++) {
+                scheduler.markChunkSent(chunks[sentChunks]);
+                sent.add(chunks[sentChunks++]);
+            }
+            gameThreadNanos += System.nanoTime() - start;
+
+            // Network thread
+            long now = (cycles + 1) * CYCLE_NANOS;
+            for (int i = 0; i < BODIES_PER_CYCLE; i++) {
+                VxBody body = scheduler.poll(c, 0, 64, 0, now);
+                if (body == null) break;
+                int index = body.getDataStoreIndex();
+                helper.assertTrue(sent.contains(c.chunkKey[index]), "A body was spawned before its chunk was sent.");
+                helper.assertTrue(spawned.add(body.getNetworkId()), "A body was spawned twice.");
+                if (firstVisibleCycle == -1) firstVisibleCycle = cycles;
+                if (spawned.size() <= BODIES_PER_CYCLE) {
+                    nearDistance += Math.sqrt(c.posX[index] * c.posX[index] + c.posZ[index] * c.posZ[index]);
+                    nearCount++;
+                }
+            }
+            cycles++;
+        }
+
+        double averageDistance = 0;
+        for (int i = 0; i < JOIN_BODIES; i++) {
+            averageDistance += Math.sqrt(c.posX[i] * c.posX[i] + c.posZ[i] * c.posZ[i]) / JOIN_BODIES;
+        }
+        helper.assertTrue(scheduler.size() == 0, scheduler.size() + " bodies stayed pending.");
+        helper.assertTrue(firstVisibleCycle == 0, "The first body became visible after " + firstVisibleCycle * 50 + " ms.");
+        helper.assertTrue(nearDistance / nearCount < averageDistance / 4,
+                "The first bodies were on average " + (int) (nearDistance / nearCount) + " blocks away, all bodies " + (int) averageDistance + ".");
+        helper.assertTrue(gameThreadNanos < 100_000_000L, "The join cost the game thread " + gameThreadNanos / 1000 + " us.");
+        scheduler.getShapes().release();
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a body skipped because its chunk was not sent is handed out once it moves into a sent
+     * chunk, without a sort being triggered by a new chunk or body.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testSkippedBodyIsReconsidered(GameTestHelper helper) {
+        VxServerBodyDataContainer c = new VxServerBodyDataContainer(2);
+        VxBody near = createBody(c, 0, 40, 64, 8);
+        VxBody far = createBody(c, 1, 8, 64, 200);
+
+        VxSpawnScheduler scheduler = new VxSpawnScheduler();
+        scheduler.add(near);
+        scheduler.add(far);
+        scheduler.markChunkSent(c.chunkKey[1]);
+
+        helper.assertTrue(scheduler.poll(c, 0, 64, 0, CYCLE_NANOS) == far, "The body in the sent chunk was not handed out.");
+        helper.assertTrue(scheduler.poll(c, 0, 64, 0, CYCLE_NANOS) == null, "A body in a chunk that was not sent was handed out.");
+
+        // The near body drifts into the sent chunk; neither a chunk nor a body becomes ready
+        c.posX[0] = 8;
+        c.posZ[0] = 200;
+        c.chunkKey[0] = c.chunkKey[1];
+        helper.assertTrue(scheduler.poll(c, 0, 64, 0, 2 * CYCLE_NANOS) == near, "A skipped body was never reconsidered.");
+        helper.assertTrue(scheduler.size() == 0, "The scheduler kept a handed out body.");
+        scheduler.getShapes().release();
+        helper.succeed();
+    }
+
+    /**
+     * Creates a body at the given index of the container.
+     */
+    private static VxBody createBody(VxServerBodyDataContainer c, int index, double x, double y, double z) {
+        VxBody body = new VxBody(VxRegisteredBodies.BOX, UUID.randomUUID());
+        body.setDataStoreIndex(null, index);
+        body.setNetworkId(VxNetworkIdAllocator.pack(index + 1, 0));
+        c.posX[index] = x;
+        c.posY[index] = y;
+        c.posZ[index] = z;
+        c.chunkKey[index] = ChunkPos.asLong((int) Math.floor(x) >> 4, (int) Math.floor(z) >> 4);
+        return body;
+    }
+}
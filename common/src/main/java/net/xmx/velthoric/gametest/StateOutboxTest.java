@@ -0,0 +1,415 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2FloatMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.network.internal.VxNetworkIdAllocator;
+import net.xmx.velthoric.core.network.internal.VxPacketFactory;
+import net.xmx.velthoric.core.network.internal.VxStateOutbox;
+import net.xmx.velthoric.core.network.internal.packet.S2CUpdateBodyStateBatchPacket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Verification of the per-connection state outbox.
+ * <p>
+ * Chunk sections are written with the server's record writer and passed through a
+ * {@link VxStateOutbox}. The drained payloads are parsed record by record in the wire format
+ * the client reads.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class StateOutboxTest {
+
+    private static final int CHUNKS = 200;
+    private static final int BODIES_PER_CHUNK = 3;
+    private static final int MAX_PAYLOAD = 4 * 1024;
+
+    /**
+     * Verifies that the sections of many chunks are merged into a few size-bounded payloads,
+     * each holding self-contained chunk sections, and that no record is lost or duplicated.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testSectionsAggregatePerPlayer(GameTestHelper helper) {
+        VxStateOutbox outbox = new VxStateOutbox();
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            offer(outbox, chunk, 1.0f, 100L);
+        }
+
+        List<ByteBuf> payloads = drain(outbox);
+        try {
+            helper.assertTrue(outbox.isEmpty(), "Draining left records in the outbox.");
+            helper.assertTrue(payloads.size() < CHUNKS / 10,
+                    CHUNKS + " chunk sections were sent as " + payloads.size() + " payloads.");
+
+            Int2LongMap chunkByBody = new Int2LongOpenHashMap();
+            for (ByteBuf payload : payloads) {
+                helper.assertTrue(payload.readableBytes() <= MAX_PAYLOAD, "Payload of " + payload.readableBytes() + " bytes exceeds the limit.");
+                helper.assertTrue(payload.readLong() == 100L, "Payload carries the wrong timestamp.");
+                parse(helper, payload, chunkByBody, null);
+            }
+            helper.assertTrue(chunkByBody.size() == CHUNKS * BODIES_PER_CHUNK,
+                    "Expected " + CHUNKS * BODIES_PER_CHUNK + " records, got " + chunkByBody.size() + ".");
+            for (Int2LongMap.Entry entry : chunkByBody.int2LongEntrySet()) {
+                int chunk = (VxNetworkIdAllocator.indexOf(entry.getIntKey()) - 1) / BODIES_PER_CHUNK;
+                helper.assertTrue(entry.getLongValue() == ChunkPos.asLong(chunk, 0),
+                        "Record of body " + entry.getIntKey() + " landed in the wrong chunk section.");
+            }
+        } finally {
+            payloads.forEach(ByteBuf::release);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a connection that cannot drain for several cycles keeps only the newest
+     * record per body, and that discarded bodies are never sent.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testSlowChannelCoalesces(GameTestHelper helper) {
+        VxStateOutbox outbox = new VxStateOutbox();
+        int cycles = 20;
+        for (int cycle = 1; cycle <= cycles; cycle++) {
+            // The channel is not writable: cycles pile up without a single drain
+            for (int chunk = 0; chunk < 4; chunk++) {
+                offer(outbox, chunk, cycle, cycle * 50L);
+            }
+        }
+        int discarded = VxNetworkIdAllocator.pack(1 + BODIES_PER_CHUNK, 0);
+        helper.assertTrue(outbox.discard(discarded), "Discard did not find the queued record.");
+        helper.assertTrue(!outbox.discard(discarded), "Discard removed a record twice.");
+
+        List<ByteBuf> payloads = drain(outbox);
+        try {
+            helper.assertTrue(payloads.size() == 1, "A backlog of " + cycles + " cycles was sent as " + payloads.size() + " payloads.");
+            ByteBuf payload = payloads.get(0);
+            helper.assertTrue(payload.readLong() == cycles * 50L, "Payload does not carry the newest timestamp.");
+
+            Int2LongMap chunkByBody = new Int2LongOpenHashMap();
+            Int2FloatMap velocityByBody = new Int2FloatOpenHashMap();
+            parse(helper, payload, chunkByBody, velocityByBody);
+            helper.assertTrue(chunkByBody.size() == 4 * BODIES_PER_CHUNK - 1,
+                    "Expected one record per body, got " + chunkByBody.size() + ".");
+            helper.assertTrue(!chunkByBody.containsKey(discarded), "A discarded body was sent.");
+            for (Int2FloatMap.Entry entry : velocityByBody.int2FloatEntrySet()) {
+                helper.assertTrue(entry.getFloatValue() == cycles, "Body " + entry.getIntKey() + " was sent with an outdated state.");
+            }
+        } finally {
+            payloads.forEach(ByteBuf::release);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that records keep the timestamp of the cycle that produced them: a body that was last
+     * offered in an older cycle is sent with that cycle's timestamp, in a payload of its own.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRecordsKeepTheirCycle(GameTestHelper helper) {
+        VxStateOutbox outbox = new VxStateOutbox();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            offer(outbox, chunk, 1.0f, 50L);
+        }
+        // The next cycle only updates chunks 2 to 5
+        for (int chunk = 2; chunk < 6; chunk++) {
+            offer(outbox, chunk, 2.0f, 100L);
+        }
+
+        List<ByteBuf> payloads = drain(outbox);
+        try {
+            helper.assertTrue(payloads.size() == 2, "Two cycles were sent as " + payloads.size() + " payloads.");
+            long[] expectedTimestamps = {50L, 100L};
+            float[] expectedVelocities = {1.0f, 2.0f};
+            for (int i = 0; i < 2; i++) {
+                ByteBuf payload = payloads.get(i);
+                helper.assertTrue(payload.readLong() == expectedTimestamps[i], "Payload " + i + " carries the wrong timestamp.");
+                Int2LongMap chunkByBody = new Int2LongOpenHashMap();
+                Int2FloatMap velocityByBody = new Int2FloatOpenHashMap();
+                parse(helper, payload, chunkByBody, velocityByBody);
+                helper.assertTrue(chunkByBody.size() == 2 * BODIES_PER_CHUNK + (i == 0 ? 0 : 2 * BODIES_PER_CHUNK),
+                        "Payload " + i + " holds " + chunkByBody.size() + " records.");
+                for (Int2LongMap.Entry entry : chunkByBody.int2LongEntrySet()) {
+                    int chunk = ChunkPos.getX(entry.getLongValue());
+                    helper.assertTrue((chunk < 2) == (i == 0), "Chunk " + chunk + " was sent with the wrong cycle.");
+                }
+                for (Int2FloatMap.Entry entry : velocityByBody.int2FloatEntrySet()) {
+                    helper.assertTrue(entry.getFloatValue() == expectedVelocities[i], "Body " + entry.getIntKey() + " was sent with the wrong state.");
+                }
+            }
+        } finally {
+            payloads.forEach(ByteBuf::release);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that offers and discards do not wait for a drain whose sink is blocked, and that records
+     * offered meanwhile are kept for the next drain.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testDrainDoesNotBlockDiscard(GameTestHelper helper) {
+        VxStateOutbox outbox = new VxStateOutbox();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            offer(outbox, chunk, 1.0f, 50L);
+        }
+
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<ByteBuf> blocked = new ArrayList<>();
+        Thread drainer = new Thread(() -> {
+            ByteBuf aggregate = Unpooled.buffer(MAX_PAYLOAD);
+            try {
+                outbox.drain(aggregate, MAX_PAYLOAD, payload -> {
+                    blocked.add(Unpooled.copiedBuffer(payload));
+                    entered.countDown();
+                    awaitUninterruptibly(release);
+                });
+            } finally {
+                aggregate.release();
+            }
+        }, "VxStateOutbox-test-drain");
+        drainer.start();
+
+        List<ByteBuf> payloads = List.of();
+        try {
+            helper.assertTrue(await(entered), "The drain did not reach its sink.");
+
+            // The sink is blocked, like a slow compression or connection write
+            CompletableFuture<Boolean> other = CompletableFuture.supplyAsync(() -> {
+                offer(outbox, 4, 2.0f, 100L);
+                boolean discardedNew = outbox.discard(VxNetworkIdAllocator.pack(4 * BODIES_PER_CHUNK + 1, 0));
+                boolean discardedDrained = outbox.discard(VxNetworkIdAllocator.pack(1, 0));
+                return discardedNew && !discardedDrained;
+            });
+            boolean result;
+            try {
+                result = other.get(5, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("An offer or discard waited for the blocked drain.", e);
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+            helper.assertTrue(result, "A discard during the drain saw the wrong records.");
+            helper.assertTrue(!outbox.isEmpty(), "The offer during the drain was lost.");
+
+            release.countDown();
+            drainer.join(5000);
+            helper.assertTrue(!drainer.isAlive(), "The drain did not finish.");
+
+            payloads = drain(outbox);
+            helper.assertTrue(payloads.size() == 1, "The next drain sent " + payloads.size() + " payloads.");
+            ByteBuf payload = payloads.get(0);
+            helper.assertTrue(payload.readLong() == 100L, "The next drain carries the wrong timestamp.");
+            Int2LongMap chunkByBody = new Int2LongOpenHashMap();
+            parse(helper, payload, chunkByBody, null);
+            helper.assertTrue(chunkByBody.size() == BODIES_PER_CHUNK - 1, "The next drain sent " + chunkByBody.size() + " records.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            release.countDown();
+            blocked.forEach(ByteBuf::release);
+            payloads.forEach(ByteBuf::release);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that a body only counts as settled for a removal once its rest record or resting spawn was
+     * actually sent: not while the network thread has marked it resting but not offered the record yet,
+     * not while the record is queued or being sent, and no longer once a newer record or a discard came in.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRestDeliveredOnlyOnceSent(GameTestHelper helper) {
+        int body = VxNetworkIdAllocator.pack(7, 0);
+
+        // Asleep on the server, but the rest record was not serialized and offered yet
+        VxStateOutbox outbox = new VxStateOutbox();
+        helper.assertTrue(!outbox.discardSettled(body), "A rest record that was never offered counted as delivered.");
+
+        // Offered but not drained
+        offerSingle(outbox, body, true, 50L);
+        helper.assertTrue(!outbox.discardSettled(body), "A queued rest record counted as delivered.");
+        helper.assertTrue(outbox.isEmpty(), "The queued rest record was not discarded.");
+
+        // Discarded while the drain sends it
+        offerSingle(outbox, body, true, 50L);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread drainer = new Thread(() -> {
+            ByteBuf aggregate = Unpooled.buffer(MAX_PAYLOAD);
+            try {
+                outbox.drain(aggregate, MAX_PAYLOAD, payload -> {
+                    entered.countDown();
+                    awaitUninterruptibly(release);
+                });
+            } finally {
+                aggregate.release();
+            }
+        }, "VxStateOutbox-test-drain");
+        drainer.start();
+        try {
+            helper.assertTrue(await(entered), "The drain did not reach its sink.");
+            helper.assertTrue(!outbox.discardSettled(body), "A rest record that was still being sent counted as delivered.");
+            release.countDown();
+            drainer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            release.countDown();
+        }
+        helper.assertTrue(!outbox.discardSettled(body), "A body discarded during the drain counted as delivered afterwards.");
+
+        // Drained
+        offerSingle(outbox, body, true, 100L);
+        drain(outbox).forEach(ByteBuf::release);
+        helper.assertTrue(outbox.discardSettled(body), "A drained rest record did not count as delivered.");
+        helper.assertTrue(!outbox.discardSettled(body), "The delivery outlived the discard of the body.");
+
+        // Woken up again after the rest record was delivered
+        offerSingle(outbox, body, true, 150L);
+        drain(outbox).forEach(ByteBuf::release);
+        offerSingle(outbox, body, false, 200L);
+        helper.assertTrue(!outbox.discardSettled(body), "A body with a newer active record counted as settled.");
+
+        // Spawned while resting
+        IntArrayList spawned = IntArrayList.of(body);
+        outbox.beginRestDelivery(body);
+        helper.assertTrue(!outbox.discardSettled(body), "A resting spawn that was still being sent counted as delivered.");
+        outbox.completeRestDelivery(spawned, true);
+        helper.assertTrue(!outbox.discardSettled(body), "A spawn discarded while being sent counted as delivered afterwards.");
+        outbox.beginRestDelivery(body);
+        outbox.completeRestDelivery(spawned, false);
+        helper.assertTrue(!outbox.discardSettled(body), "A failed spawn counted as delivered.");
+        outbox.beginRestDelivery(body);
+        outbox.completeRestDelivery(spawned, true);
+        helper.assertTrue(outbox.discardSettled(body), "A sent resting spawn did not count as delivered.");
+        helper.succeed();
+    }
+
+    /**
+     * Offers a section holding a single record of a body in chunk 0.
+     */
+    private static void offerSingle(VxStateOutbox outbox, int networkId, boolean resting, long timestamp) {
+        ByteBuf section = Unpooled.buffer();
+        try {
+            section.writeLong(ChunkPos.asLong(0, 0));
+            section.writeInt(1);
+            VxPacketFactory.writeStateRecord(section, networkId, resting, 4.0, 64.0, 4.0, 0f, 0f, 0f, 1f,
+                    0f, 0f, 0f, 0.0, 0.0, 0.0);
+            outbox.offer(section, timestamp);
+        } finally {
+            section.release();
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Offers a section of one chunk. Every third body of a chunk is resting; active bodies carry
+     * the marker as their X velocity.
+     */
+    private static void offer(VxStateOutbox outbox, int chunk, float marker, long timestamp) {
+        ByteBuf section = Unpooled.buffer();
+        try {
+            section.writeLong(ChunkPos.asLong(chunk, 0));
+            section.writeInt(BODIES_PER_CHUNK);
+            for (int i = 0; i < BODIES_PER_CHUNK; i++) {
+                int networkId = VxNetworkIdAllocator.pack(chunk * BODIES_PER_CHUNK + i + 1, 0);
+                double x = chunk * 16 + i;
+                VxPacketFactory.writeStateRecord(section, networkId, i == 2, x, 64.0, 8.0, 0f, 0f, 0f, 1f,
+                        marker, 0f, 0f, chunk * 16, 0.0, 0.0);
+            }
+            outbox.offer(section, timestamp);
+        } finally {
+            section.release();
+        }
+    }
+
+    /**
+     * Drains the outbox, copying every payload since the sink's buffer is reused.
+     */
+    private static List<ByteBuf> drain(VxStateOutbox outbox) {
+        List<ByteBuf> payloads = new ArrayList<>();
+        ByteBuf aggregate = Unpooled.buffer(MAX_PAYLOAD);
+        try {
+            outbox.drain(aggregate, MAX_PAYLOAD, payload -> payloads.add(Unpooled.copiedBuffer(payload)));
+        } finally {
+            aggregate.release();
+        }
+        return payloads;
+    }
+
+    /**
+     * Reads all chunk sections of a payload positioned after its timestamp.
+     */
+    private static void parse(GameTestHelper helper, ByteBuf payload, Int2LongMap chunkByBody, Int2FloatMap velocityByBody) {
+        while (payload.isReadable()) {
+            long chunkKey = payload.readLong();
+            int count = payload.readInt();
+            helper.assertTrue(count > 0, "Empty chunk section.");
+            for (int i = 0; i < count; i++) {
+                int networkId = payload.readInt();
+                byte record = payload.readByte();
+                helper.assertTrue(!chunkByBody.containsKey(networkId), "Body " + networkId + " was sent twice.");
+                chunkByBody.put(networkId, chunkKey);
+                if (record == S2CUpdateBodyStateBatchPacket.RECORD_RESTING) {
+                    payload.skipBytes(S2CUpdateBodyStateBatchPacket.RESTING_RECORD_SIZE);
+                    continue;
+                }
+                payload.skipBytes(7 * 4);
+                float velX = payload.readFloat();
+                payload.skipBytes(2 * 4);
+                if (velocityByBody != null) velocityByBody.put(networkId, velX);
+            }
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.stephengold.joltjni.Quat;
+import com.github.stephengold.joltjni.RVec3;
+import com.github.stephengold.joltjni.enumerate.EActivation;
+import com.github.stephengold.joltjni.enumerate.EMotionType;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.phys.Vec3;
+import net.xmx.velthoric.builtin.VxRegisteredBodies;
+import net.xmx.velthoric.core.body.VxBody;
+import net.xmx.velthoric.core.body.VxRemovalReason;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
+import net.xmx.velthoric.core.network.synchronization.VxDataSerializers;
+import net.xmx.velthoric.core.network.synchronization.VxSyncScope;
+import net.xmx.velthoric.core.network.synchronization.VxSynchronizedData;
+import net.xmx.velthoric.core.network.synchronization.accessor.VxServerAccessor;
+import net.xmx.velthoric.math.VxTransform;
+import net.xmx.velthoric.network.VxByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verification of the synchronized data container of bodies.
+ * <p>
+ * Containers are built from accessors owned by test-only classes, so their layouts are independent
+ * of any registered body type. Records are written by a server-side container and read by a second
+ * container built from the same definitions, the way a client mirrors a body's data.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class SynchronizedDataTest {
+
+    /**
+     * Owner of a layout of ten fixed-size entries, which needs a two-byte mask.
+     */
+    private static final class Narrow {
+        static final VxServerAccessor<Boolean> FLAG = VxServerAccessor.create(Narrow.class, VxDataSerializers.BOOLEAN);
+        static final VxServerAccessor<Float> SPEED = VxServerAccessor.create(Narrow.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Byte> MODE = VxServerAccessor.create(Narrow.class, VxDataSerializers.BYTE);
+        static final VxServerAccessor<Float> HEAT = VxServerAccessor.create(Narrow.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Boolean> LOCKED = VxServerAccessor.create(Narrow.class, VxDataSerializers.BOOLEAN);
+        static final VxServerAccessor<Byte> GEAR = VxServerAccessor.create(Narrow.class, VxDataSerializers.BYTE);
+        static final VxServerAccessor<Float> FUEL = VxServerAccessor.create(Narrow.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Byte> COLOR = VxServerAccessor.create(Narrow.class, VxDataSerializers.BYTE);
+        static final VxServerAccessor<Boolean> LIGHTS = VxServerAccessor.create(Narrow.class, VxDataSerializers.BOOLEAN);
+        static final VxServerAccessor<Float> DAMAGE = VxServerAccessor.create(Narrow.class, VxDataSerializers.FLOAT);
+
+        static VxSynchronizedData build() {
+            return new VxSynchronizedData.Builder()
+                    .define(FLAG, false).define(SPEED, 0f).define(MODE, (byte) 0).define(HEAT, 0f)
+                    .define(LOCKED, false).define(GEAR, (byte) 0).define(FUEL, 0f).define(COLOR, (byte) 0)
+                    .define(LIGHTS, false).define(DAMAGE, 0f)
+                    .build();
+        }
+    }
+
+    /**
+     * Owner of a layout of 70 entries, whose mask spans two 64-bit words.
+     */
+    private static final class Wide {
+        static final int SIZE = 70;
+        @SuppressWarnings("unchecked")
+        static final VxServerAccessor<Byte>[] FIELDS = new VxServerAccessor[SIZE];
+
+        static {
+            for (int i = 0; i < SIZE; i++) {
+                FIELDS[i] = VxServerAccessor.create(Wide.class, VxDataSerializers.BYTE);
+            }
+        }
+
+        static VxSynchronizedData build() {
+            VxSynchronizedData.Builder builder = new VxSynchronizedData.Builder();
+            for (VxServerAccessor<Byte> field : FIELDS) {
+                builder.define(field, (byte) 0);
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Owner of a layout with a variable-size entry.
+     */
+    private static final class Labelled {
+        static final VxServerAccessor<Byte> KIND = VxServerAccessor.create(Labelled.class, VxDataSerializers.BYTE);
+        static final VxServerAccessor<String> LABEL = VxServerAccessor.create(Labelled.class, VxDataSerializers.STRING);
+        static final VxServerAccessor<Float> SCALE = VxServerAccessor.create(Labelled.class, VxDataSerializers.FLOAT);
+
+        static VxSynchronizedData build() {
+            return new VxSynchronizedData.Builder()
+                    .define(LABEL, "").define(SCALE, 1f).define(KIND, (byte) 0)
+                    .build();
+        }
+    }
+
+    /**
+     * Owner of a layout with a rate-limited entry.
+     */
+    private static final class Limited {
+        static final VxServerAccessor<Float> GAUGE = VxServerAccessor.create(Limited.class, VxDataSerializers.FLOAT).maxRate(10);
+        static final VxServerAccessor<Float> PLAIN = VxServerAccessor.create(Limited.class, VxDataSerializers.FLOAT);
+
+        static VxSynchronizedData build() {
+            return new VxSynchronizedData.Builder().define(GAUGE, 0f).define(PLAIN, 0f).build();
+        }
+    }
+
+    /**
+     * Owner of a layout mixing every scope.
+     */
+    private static final class Scoped {
+        static final VxServerAccessor<Float> HEALTH = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT);
+        static final VxServerAccessor<Float> RPM = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT).nearby(8);
+        static final VxServerAccessor<Float> SPEED = VxServerAccessor.create(Scoped.class, VxDataSerializers.FLOAT).ridersOnly();
+        static final VxServerAccessor<Byte> HORN = VxServerAccessor.create(Scoped.class, VxDataSerializers.BYTE).nearby(32);
+        static final VxServerAccessor<Byte> GEAR = VxServerAccessor.create(Scoped.class, VxDataSerializers.BYTE).ridersOnly();
+
+        static VxSynchronizedData build() {
+            return new VxSynchronizedData.Builder()
+                    .define(HEALTH, 20f).define(RPM, 0f).define(SPEED, 0f).define(HORN, (byte) 0).define(GEAR, (byte) 0)
+                    .build();
+        }
+    }
+
+    /**
+     * Verifies that a dirty record consists of the little-endian mask followed by the changed values
+     * only, that fixed layouts are sized exactly in advance, and that a receiver applies exactly the
+     * changed entries and consumes the whole record.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testDirtyMaskEncoding(GameTestHelper helper) {
+        VxBody body = spawn(helper);
+        long[] mask = new long[VxSynchronizedData.MAX_MASK_WORDS];
+
+        VxSynchronizedData sender = Narrow.build();
+        VxSynchronizedData receiver = Narrow.build();
+        helper.assertTrue(!sender.isDirty(), "A new container is dirty.");
+        sender.set(Narrow.SPEED, 12.5f);
+        sender.set(Narrow.HEAT, 0.75f);
+        sender.set(Narrow.DAMAGE, 3f);
+        sender.set(Narrow.FLAG, false); // Unchanged values do not mark entries
+        helper.assertTrue(sender.isDirty(), "Changed values did not mark the container dirty.");
+        sender.takeSendable(0L, mask);
+        helper.assertTrue(mask[0] == (1L << 1 | 1L << 3 | 1L << 9), "Unexpected dirty mask " + Long.toBinaryString(mask[0]) + ".");
+        helper.assertTrue(!sender.isDirty(), "Taking the changes left the container dirty.");
+        helper.assertTrue(sender.recordSize(mask) == 2 + 3 * 4, "Record of three floats is sized " + sender.recordSize(mask) + ".");
+
+        VxByteBuf buf = new VxByteBuf(Unpooled.buffer());
+        try {
+            sender.writeRecord(buf, mask);
+            helper.assertTrue(buf.readableBytes() == sender.recordSize(mask), "Record size differs from the written bytes.");
+            helper.assertTrue(buf.getByte(0) == 0b0000_1010 && buf.getByte(1) == 0b0000_0010, "Mask bytes are not little-endian.");
+            helper.assertTrue(buf.getFloat(2) == 12.5f && buf.getFloat(6) == 0.75f && buf.getFloat(10) == 3f,
+                    "Values are not written in accessor order.");
+
+            receiver.readEntries(buf, body);
+            helper.assertTrue(!buf.isReadable(), "Reading left " + buf.readableBytes() + " bytes of the record.");
+            helper.assertTrue(receiver.get(Narrow.SPEED) == 12.5f && receiver.get(Narrow.HEAT) == 0.75f
+                    && receiver.get(Narrow.DAMAGE) == 3f, "Changed values were not applied.");
+            helper.assertTrue(receiver.get(Narrow.FUEL) == 0f && receiver.get(Narrow.MODE) == 0,
+                    "Unchanged entries were modified.");
+
+            // Masks spanning several words: bits at both word edges
+            VxSynchronizedData wideSender = Wide.build();
+            VxSynchronizedData wideReceiver = Wide.build();
+            int[] changed = {0, 7, 63, 64, Wide.SIZE - 1};
+            boolean[] isChanged = new boolean[Wide.SIZE];
+            for (int bit : changed) {
+                wideSender.set(Wide.FIELDS[bit], (byte) (bit + 1));
+                isChanged[bit] = true;
+            }
+            wideSender.takeSendable(0L, mask);
+            helper.assertTrue(mask[0] == (1L | 1L << 7 | 1L << 63) && mask[1] == (1L | 1L << 5), "Unexpected wide dirty mask.");
+            buf.clear();
+            wideSender.writeRecord(buf, mask);
+            helper.assertTrue(buf.readableBytes() == 9 + changed.length, "Wide record has " + buf.readableBytes() + " bytes.");
+            helper.assertTrue(buf.getByte(7) == (byte) 0x80 && buf.getByte(8) == 0b0010_0001, "Wide mask crosses words incorrectly.");
+            wideReceiver.readEntries(buf, body);
+            helper.assertTrue(!buf.isReadable(), "Reading left bytes of the wide record.");
+            for (int bit = 0; bit < Wide.SIZE; bit++) {
+                helper.assertTrue(wideReceiver.get(Wide.FIELDS[bit]) == (isChanged[bit] ? bit + 1 : 0), "Wide entry " + bit + " has the wrong value.");
+            }
+
+            // Variable-size layouts cannot be sized up front, but still round-trip
+            VxSynchronizedData labelled = Labelled.build();
+            VxSynchronizedData labelledReceiver = Labelled.build();
+            labelled.set(Labelled.LABEL, "crane arm");
+            labelled.set(Labelled.KIND, (byte) 4);
+            helper.assertTrue(labelled.recordSize(mask) == -1, "A variable-size layout reported a record size.");
+            buf.clear();
+            labelled.writeAll(buf);
+            labelledReceiver.readEntries(buf, body);
+            helper.assertTrue(!buf.isReadable(), "Reading left bytes of the full record.");
+            helper.assertTrue(labelledReceiver.get(Labelled.LABEL).equals("crane arm") && labelledReceiver.get(Labelled.KIND) == 4
+                    && labelledReceiver.get(Labelled.SCALE) == 1f, "Full record did not restore every entry.");
+        } finally {
+            buf.release();
+        }
+
+        VelthoricGameTestUtils.getManager(helper).removeBody(body.getPhysicsId(), VxRemovalReason.DISCARD);
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that rate-limited entries are deferred until their interval has passed, independent
+     * of the origin of the timestamps, and that exactly one caller claims the queued flag.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testRateLimitAndQueue(GameTestHelper helper) {
+        long[] mask = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        long interval = 100_000_000L;
+        long gauge = 1L;
+        long plain = 1L << 1;
+
+        // nanoTime may return zero or negative values, which must not count as "never sent"
+        for (long origin : new long[]{0L, -5_000_000_000L, Long.MIN_VALUE + 1}) {
+            VxSynchronizedData data = Limited.build();
+            data.set(Limited.GAUGE, 1f);
+            data.set(Limited.PLAIN, 1f);
+            helper.assertTrue(!data.takeSendable(origin, mask) && mask[0] == (gauge | plain),
+                    "First changes were not sent at once (origin " + origin + ").");
+
+            data.set(Limited.GAUGE, 2f);
+            data.set(Limited.PLAIN, 2f);
+            helper.assertTrue(data.takeSendable(origin + interval / 2, mask) && mask[0] == plain,
+                    "The rate limit did not defer the entry (origin " + origin + ").");
+            helper.assertTrue(data.isDirty(), "A deferred entry left the container clean.");
+            helper.assertTrue(data.takeSendable(origin + interval - 1, mask) && mask[0] == 0,
+                    "A deferred entry was sent before its interval (origin " + origin + ").");
+            helper.assertTrue(!data.takeSendable(origin + interval, mask) && mask[0] == gauge,
+                    "A deferred entry was not sent after its interval (origin " + origin + ").");
+            helper.assertTrue(!data.isDirty(), "Sending the deferred entry left the container dirty.");
+        }
+
+        VxSynchronizedData data = Limited.build();
+        helper.assertTrue(data.tryMarkQueued(), "A new container could not be queued.");
+        helper.assertTrue(!data.tryMarkQueued(), "A queued container was queued twice.");
+        data.clearQueued();
+        helper.assertTrue(data.tryMarkQueued(), "A released container could not be queued again.");
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                VxSynchronizedData contended = Limited.build();
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger winners = new AtomicInteger();
+                List<Future<?>> claims = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    claims.add(pool.submit(() -> {
+                        start.await();
+                        if (contended.tryMarkQueued()) winners.incrementAndGet();
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> claim : claims) claim.get();
+                helper.assertTrue(winners.get() == 1, winners.get() + " threads claimed the queued flag in round " + round + ".");
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Concurrent queueing failed", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Verifies that changed entries are split into the unscoped part every tracker receives and
+     * per-player scoped parts selected by distance and mounting, and that marking a scope dirty
+     * resends exactly the entries of that scope.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testScopeSelection(GameTestHelper helper) {
+        long health = 1L;
+        long rpm = 1L << 1;
+        long speed = 1L << 2;
+        long horn = 1L << 3;
+        long gear = 1L << 4;
+        long[] mask = new long[VxSynchronizedData.MAX_MASK_WORDS];
+        long[] selected = new long[VxSynchronizedData.MAX_MASK_WORDS];
+
+        VxSynchronizedData data = Scoped.build();
+        data.set(Scoped.HEALTH, 15f);
+        data.set(Scoped.RPM, 3000f);
+        data.set(Scoped.SPEED, 12f);
+        data.set(Scoped.HORN, (byte) 1);
+        data.set(Scoped.GEAR, (byte) 3);
+        data.takeSendable(0L, mask);
+        helper.assertTrue(mask[0] == (health | rpm | speed | horn | gear), "Not every changed entry was taken.");
+        helper.assertTrue(data.hasScoped(mask), "Scoped entries were not detected.");
+
+        helper.assertTrue(data.selectUnscoped(mask, selected) && selected[0] == health, "Unscoped selection is wrong.");
+        helper.assertTrue(data.selectScoped(mask, 5 * 5, false, selected) && selected[0] == (rpm | horn),
+                "A player at 5 blocks did not receive both nearby entries.");
+        helper.assertTrue(data.selectScoped(mask, 8 * 8, false, selected) && selected[0] == (rpm | horn),
+                "The nearby radius is not inclusive.");
+        helper.assertTrue(data.selectScoped(mask, 20 * 20, false, selected) && selected[0] == horn,
+                "A player at 20 blocks received an entry limited to 8 blocks.");
+        helper.assertTrue(!data.selectScoped(mask, 40 * 40, false, selected) && selected[0] == 0,
+                "A distant player received scoped entries.");
+        helper.assertTrue(data.selectScoped(mask, 40 * 40, true, selected) && selected[0] == (speed | gear),
+                "A distant rider did not receive exactly the rider entries.");
+        helper.assertTrue(data.selectScoped(mask, 0, true, selected) && selected[0] == (rpm | speed | horn | gear),
+                "A close rider did not receive every scoped entry.");
+
+        long[] unscopedOnly = {health, 0, 0, 0};
+        helper.assertTrue(!data.hasScoped(unscopedOnly), "An unscoped mask was reported as scoped.");
+        helper.assertTrue(!data.selectScoped(unscopedOnly, 0, true, selected), "Unscoped entries were selected per player.");
+
+        // A player who just mounted gets the current rider entries without any change
+        helper.assertTrue(!data.isDirty(), "Taking the changes left the container dirty.");
+        helper.assertTrue(data.markScopeDirty(VxSyncScope.RIDERS), "The rider scope was reported as empty.");
+        data.takeSendable(1L, mask);
+        helper.assertTrue(mask[0] == (speed | gear), "Marking the rider scope dirty took other entries.");
+        helper.assertTrue(!Limited.build().markScopeDirty(VxSyncScope.RIDERS), "A layout without rider entries reported them.");
+
+        boolean rejected = false;
+        try {
+            VxServerAccessor.create(Scoped.class, VxDataSerializers.BYTE).nearby(0);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        helper.assertTrue(rejected, "A zero sync radius was accepted.");
+        helper.succeed();
+    }
+
+    /**
+     * Spawns a static box that receives the decoded records.
+     */
+    private static VxBody spawn(GameTestHelper helper) {
+        VxServerBodyManager manager = VelthoricGameTestUtils.getManager(helper);
+        Vec3 pos = helper.absoluteVec(new Vec3(9.5, 2.0, 9.5));
+        VxBody body = manager.createBody(VxRegisteredBodies.BOX,
+                new VxTransform(new RVec3(pos.x, pos.y, pos.z), Quat.sIdentity()),
+                EMotionType.Static, EActivation.DontActivate, b -> {});
+        helper.assertTrue(body != null, "Failed to spawn the test body.");
+        return body;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.world.level.ChunkPos;
+import net.xmx.velthoric.core.body.server.VxServerBodyDataContainer;
+import net.xmx.velthoric.core.network.capture.VxTrafficRecorder;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Verification of network traffic captures.
+ * <p>
+ * Sync cycles over a standalone server data container are recorded into a temporary capture file,
+ * which is then parsed in the documented layout the offline replay reads.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class TrafficCaptureTest {
+
+    private static final int CYCLES = 6;
+    private static final int CHUNKS = 3;
+    private static final int BODIES_PER_CHUNK = 4;
+    private static final int MIN_BUILD_HEIGHT = -64;
+
+    /**
+     * Verifies that every cycle becomes one frame holding a snapshot of the dirty bodies at the time of
+     * the cycle, that watchers keep stable IDs for the whole capture and that the recorder's statistics
+     * match the file.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testCaptureRoundTrip(GameTestHelper helper) {
+        VxServerBodyDataContainer c = new VxServerBodyDataContainer(CHUNKS * BODIES_PER_CHUNK);
+        Long2ObjectMap<IntArrayList> dirtyByChunk = new Long2ObjectOpenHashMap<>();
+        Map<Long, Set<UUID>> watchers = new HashMap<>();
+        UUID[] players = {UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID()};
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            IntArrayList indices = new IntArrayList();
+            for (int i = 0; i < BODIES_PER_CHUNK; i++) {
+                int index = chunk * BODIES_PER_CHUNK + i;
+                c.networkId[index] = 100 + index;
+                indices.add(index);
+            }
+            long key = ChunkPos.asLong(chunk, -chunk);
+            dirtyByChunk.put(key, indices);
+            // Overlapping watcher sets, so a player is seen through several chunks
+            Set<UUID> chunkWatchers = new LinkedHashSet<>();
+            chunkWatchers.add(players[chunk]);
+            chunkWatchers.add(players[(chunk + 1) % players.length]);
+            watchers.put(key, chunkWatchers);
+        }
+
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("velthoric-capture");
+            Path file = dir.resolve("nested/test.vxnc");
+            long rawBytes = 0;
+            int frames = 0;
+            Map<Integer, UUID> playerById = new HashMap<>();
+
+            VxTrafficRecorder recorder = new VxTrafficRecorder(file, MIN_BUILD_HEIGHT);
+            try {
+                for (int cycle = 0; cycle < CYCLES; cycle++) {
+                    fill(c, cycle);
+                    recorder.recordCycle(1000L + cycle, dirtyByChunk, c, watchers, Collections.emptyMap());
+                }
+                // The recorder snapshots the container: changes after the last cycle must not leak into the file
+                fill(c, CYCLES + 10);
+            } finally {
+                recorder.close();
+            }
+            helper.assertTrue(recorder.getFrameCount() == CYCLES && recorder.getDroppedFrames() == 0,
+                    "Recorded " + recorder.getFrameCount() + " frames, dropped " + recorder.getDroppedFrames() + ".");
+
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                helper.assertTrue(in.readInt() == VxTrafficRecorder.MAGIC, "Capture has the wrong magic.");
+                helper.assertTrue(in.readInt() == VxTrafficRecorder.VERSION, "Capture has the wrong version.");
+                helper.assertTrue(in.readInt() == MIN_BUILD_HEIGHT, "Capture has the wrong build height.");
+                while (true) {
+                    int rawLength;
+                    try {
+                        rawLength = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    byte[] compressed = new byte[in.readInt()];
+                    in.readFully(compressed);
+                    byte[] raw = Zstd.decompress(compressed, rawLength);
+                    rawBytes += raw.length;
+                    checkFrame(helper, Unpooled.wrappedBuffer(raw), frames, dirtyByChunk, watchers, playerById);
+                    frames++;
+                }
+            }
+            helper.assertTrue(frames == CYCLES, "Capture holds " + frames + " frames.");
+            helper.assertTrue(rawBytes == recorder.getRawBytes(), "Recorder reports " + recorder.getRawBytes() + " raw bytes, file holds " + rawBytes + ".");
+            helper.assertTrue(playerById.size() == players.length, "Watchers were assigned " + playerById.size() + " IDs.");
+        } catch (IOException e) {
+            throw new IllegalStateException("Capture round trip failed", e);
+        } finally {
+            VelthoricGameTestUtils.deleteRecursively(dir);
+        }
+        helper.succeed();
+    }
+
+    /**
+     * Writes the state of every body for the given cycle.
+     */
+    private static void fill(VxServerBodyDataContainer c, int cycle) {
+        for (int index = 0; index < CHUNKS * BODIES_PER_CHUNK; index++) {
+            c.isResting[index] = (index + cycle) % 3 == 0;
+            c.posX[index] = index * 1.5 + cycle;
+            c.posY[index] = 70.25 + cycle;
+            c.posZ[index] = -index - 0.125 * cycle;
+            c.rotX[index] = 0f;
+            c.rotY[index] = 0.6f;
+            c.rotZ[index] = 0f;
+            c.rotW[index] = 0.8f;
+            c.velX[index] = cycle;
+            c.velY[index] = -index;
+            c.velZ[index] = 0.5f;
+        }
+    }
+
+    /**
+     * Parses one decompressed frame and compares it with the state of the given cycle.
+     */
+    private static void checkFrame(GameTestHelper helper, ByteBuf frame, int cycle, Long2ObjectMap<IntArrayList> dirtyByChunk,
+                                   Map<Long, Set<UUID>> watchers, Map<Integer, UUID> playerById) {
+        VxServerBodyDataContainer expected = new VxServerBodyDataContainer(CHUNKS * BODIES_PER_CHUNK);
+        fill(expected, cycle);
+
+        helper.assertTrue(frame.readLong() == 1000L + cycle, "Frame " + cycle + " has the wrong timestamp.");
+        helper.assertTrue(frame.readInt() == 0, "Frame " + cycle + " lists players that were not passed.");
+        int chunkCount = frame.readInt();
+        helper.assertTrue(chunkCount == CHUNKS, "Frame " + cycle + " holds " + chunkCount + " chunks.");
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            long key = frame.readLong();
+            IntArrayList indices = dirtyByChunk.get(key);
+            helper.assertTrue(indices != null, "Frame " + cycle + " holds an unknown chunk.");
+
+            int watcherCount = frame.readInt();
+            Set<UUID> expectedWatchers = watchers.get(key);
+            helper.assertTrue(watcherCount == expectedWatchers.size(), "Chunk has " + watcherCount + " watchers.");
+            for (UUID uuid : expectedWatchers) {
+                int id = frame.readInt();
+                UUID known = playerById.putIfAbsent(id, uuid);
+                helper.assertTrue(known == null || known.equals(uuid), "Player ID " + id + " was reused for another player.");
+            }
+
+            int bodyCount = frame.readInt();
+            helper.assertTrue(bodyCount == indices.size(), "Chunk holds " + bodyCount + " bodies.");
+            for (int i = 0; i < bodyCount; i++) {
+                int start = frame.readerIndex();
+                int index = indices.getInt(i);
+                helper.assertTrue(frame.readInt() == 100 + index, "Body record has the wrong network ID.");
+                helper.assertTrue(frame.readBoolean() == expected.isResting[index], "Body " + index + " has the wrong rest flag.");
+                helper.assertTrue(frame.readDouble() == expected.posX[index] && frame.readDouble() == expected.posY[index]
+                        && frame.readDouble() == expected.posZ[index], "Body " + index + " has the wrong position in frame " + cycle + ".");
+                helper.assertTrue(frame.readFloat() == expected.rotX[index] && frame.readFloat() == expected.rotY[index]
+                        && frame.readFloat() == expected.rotZ[index] && frame.readFloat() == expected.rotW[index],
+                        "Body " + index + " has the wrong rotation.");
+                helper.assertTrue(frame.readFloat() == expected.velX[index] && frame.readFloat() == expected.velY[index]
+                        && frame.readFloat() == expected.velZ[index], "Body " + index + " has the wrong velocity.");
+                helper.assertTrue(frame.readerIndex() - start == VxTrafficRecorder.BODY_RECORD_SIZE, "Body record size differs from the format.");
+            }
+        }
+        helper.assertTrue(!frame.isReadable(), "Frame " + cycle + " has trailing bytes.");
+    }
+}
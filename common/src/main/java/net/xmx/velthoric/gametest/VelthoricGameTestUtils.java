@@ -10,10 +10,17 @@ import net.minecraft.gametest.framework.TestFunction;
 import net.minecraft.world.level.block.Rotation;
 import net.xmx.velthoric.core.body.server.VxServerBodyManager;
 import net.xmx.velthoric.core.physics.world.VxPhysicsWorld;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Stream;
 import java.util.function.Consumer;
 
 /**
@@ -57,6 +64,48 @@ public final class VelthoricGameTestUtils {
         tests.add(create("funnel_flow", "physics_box_funnel", new FunnelFlowTest()::testFunnelFlowPersistence));
         tests.add(create("pegs_density", "physics_box_pegs", new PegsDensityTest()::testPegsDensityPersistence));
         tests.add(create("soft_body_interaction", "physics_box_empty", new EmptyStructureTest()::testInteractionPersistence));
+        tests.add(create("constraint_settings_roundtrip", "physics_box_empty", new ConstraintSettingsTest()::testSettingsRoundTrip));
+        tests.add(create("rest_state_sync", "physics_box_empty", new RestStateSyncTest()::testRestingRecordsSettle));
+        tests.add(create("vertex_stream_roundtrip", "physics_box_empty", new VertexStreamTest()::testKeyframeDeltaRoundTrip));
+        tests.add(create("state_outbox_aggregation", "physics_box_empty", new StateOutboxTest()::testSectionsAggregatePerPlayer));
+        tests.add(create("state_outbox_coalescing", "physics_box_empty", new StateOutboxTest()::testSlowChannelCoalesces));
+        tests.add(create("state_outbox_record_cycles", "physics_box_empty", new StateOutboxTest()::testRecordsKeepTheirCycle));
+        tests.add(create("state_outbox_drain_unlocked", "physics_box_empty", new StateOutboxTest()::testDrainDoesNotBlockDiscard));
+        tests.add(create("state_outbox_rest_delivery", "physics_box_empty", new StateOutboxTest()::testRestDeliveredOnlyOnceSent));
+        tests.add(create("removal_set_roundtrip", "physics_box_empty", new RemovalBatchTest()::testRemovalSetRoundTrip));
+        tests.add(create("removal_shortcut_downgrade", "physics_box_empty", new RemovalBatchTest()::testShortcutDowngradesOnRetrack));
+        tests.add(create("spawn_join_nearest_first", "physics_box_empty", new SpawnSchedulerTest()::testJoinStreamsNearestFirst));
+        tests.add(create("spawn_skipped_reconsidered", "physics_box_empty", new SpawnSchedulerTest()::testSkippedBodyIsReconsidered));
+        tests.add(create("parallel_state_serialization", "physics_box_empty", new ParallelSerializationTest()::testParallelMatchesSerial));
+        tests.add(create("client_state_decode", "physics_box_empty", new ClientStateDecodeTest()::testDecodeResolvesAndSkips));
+        tests.add(create("synchronized_data_encoding", "physics_box_empty", new SynchronizedDataTest()::testDirtyMaskEncoding));
+        tests.add(create("synchronized_data_rate_limit", "physics_box_empty", new SynchronizedDataTest()::testRateLimitAndQueue));
+        tests.add(create("synchronized_data_scopes", "physics_box_empty", new SynchronizedDataTest()::testScopeSelection));
+        tests.add(create("traffic_capture_roundtrip", "physics_box_empty", new TrafficCaptureTest()::testCaptureRoundTrip));
+        tests.add(create("network_metrics_histogram", "physics_box_empty", new NetworkMetricsTest()::testHistogramAccuracy));
+        tests.add(create("network_metrics_registry", "physics_box_empty", new NetworkMetricsTest()::testRegistryCollection));
+        tests.add(create("spawn_shape_rollback", "physics_box_empty", new SpawnDeliveryTest()::testRollbackResendsDefinitions));
+        tests.add(create("spawn_removed_body", "physics_box_empty", new SpawnDeliveryTest()::testRemovedBodyIsSkipped));
+        tests.add(create("shape_registry_shared", "physics_box_empty", new ShapeRegistryTest()::testShapesAreSharedAcrossBodies));
+        tests.add(create("shape_registry_collisions", "physics_box_empty", new ShapeRegistryTest()::testHashCollisionsAreVerified));
+        tests.add(create("shape_registry_ring", "physics_box_empty", new ShapeRegistryTest()::testRingOverwritesOldestDefinitions));
+        tests.add(create("shape_registry_mutable_inline", "physics_box_empty", new ShapeRegistryTest()::testMutableCompoundsStayInline));
+        tests.add(create("network_id_allocator_churn", "physics_box_empty", new NetworkIdAllocatorTest()::testGenerationWrapUnderChurn));
+        tests.add(create("network_id_varint_sizes", "physics_box_empty", new NetworkIdAllocatorTest()::testVarIntSizes));
+        tests.add(create("chunk_departures_concurrent", "physics_box_empty", new ChunkDepartureTest()::testConcurrentDepartures));
+        tests.add(create("region_dictionary_roundtrip", "physics_box_empty", new RegionFileTest()::testDictionaryRoundTrip));
+        tests.add(create("io_processor_graceful_shutdown", "physics_box_empty", new IOProcessorTest()::testGracefulShutdown));
+        tests.add(create("io_processor_forced_shutdown", "physics_box_empty", new IOProcessorTest()::testForcedShutdownRejectsQueued));
+        tests.add(create("region_crash_safe_batch", "physics_box_empty", new RegionFileTest()::testCrashSafeBatch));
+        tests.add(create("region_sector_allocator", "physics_box_empty", new RegionFileTest()::testSectorAllocator));
+        tests.add(create("region_compaction_identity", "physics_box_empty", new RegionFileTest()::testCompactionIdentity));
+        tests.add(create("body_chunk_layout_roundtrip", "physics_box_empty", new BodyChunkLayoutTest()::testLayoutRoundTrip));
+        tests.add(create("body_chunk_layout_rejects_invalid", "physics_box_empty", new BodyChunkLayoutTest()::testRejectsUnknownAndTruncated));
+        tests.add(create("schema_compiled_matches_interpreter", "physics_box_empty", new SchemaCompilerTest()::testCompiledMatchesInterpreter));
+        tests.add(create("schema_compiled_skips_like_interpreter", "physics_box_empty", new SchemaCompilerTest()::testCompiledSkipsLikeInterpreter));
+        tests.add(create("lazy_chunk_flight_cost", "physics_box_empty", new LazyChunkTest()::testDormantFlightCost));
+        tests.add(create("read_ahead_serves_loads", "physics_box_empty", new ReadAheadTest()::testReadAheadServesLoads));
+        tests.add(create("read_ahead_budget", "physics_box_empty", new ReadAheadTest()::testRequestsStayWithinBudget));
 
         return tests;
     }
@@ -91,4 +140,22 @@ public final class VelthoricGameTestUtils {
         }
         return world.getBodyManager();
     }
+
+    /**
+     * Deletes a temporary test directory and everything in it.
+     *
+     * @param dir The directory to delete, or null if it was never created.
+     */
+    public static void deleteRecursively(@Nullable Path dir) {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete test directory " + dir, e);
+        }
+    }
 }
\ No newline at end of file
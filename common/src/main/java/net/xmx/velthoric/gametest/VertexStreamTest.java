@@ -0,0 +1,117 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.gametest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.xmx.velthoric.core.network.internal.VxVertexStreamCodec;
+
+/**
+ * Verification of the soft body vertex stream encoding.
+ * <p>
+ * A waving cloth grid is streamed through {@link VxVertexStreamCodec} frame by frame and
+ * reconstructed by a receiver that watches from the start and by one that joins mid-stream.
+ * </p>
+ *
+ * @author xI-Mx-Ix
+ */
+public class VertexStreamTest {
+
+    private static final int GRID = 12;
+    private static final float SIZE = 4.0f;
+
+    /**
+     * Verifies the reconstruction error bound, the keyframe cadence, the size of deltas and
+     * the recovery of a receiver that missed the start of the stream.
+     *
+     * @param helper The GameTest helper instance.
+     */
+    @SuppressWarnings("unused")
+    public void testKeyframeDeltaRoundTrip(GameTestHelper helper) {
+        VxVertexStreamCodec.State server = new VxVertexStreamCodec.State();
+        VxVertexStreamCodec.State watcher = new VxVertexStreamCodec.State();
+        VxVertexStreamCodec.State lateJoiner = new VxVertexStreamCodec.State();
+        int frames = 2 * VxVertexStreamCodec.KEYFRAME_INTERVAL + 10;
+        int joinFrame = 5;
+        float[] received = null;
+        int largestPredictedDeltaBytes = 0;
+
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                float[] vertices = cloth(frame);
+                buf.clear();
+                VxVertexStreamCodec.write(buf, vertices, server);
+
+                byte kind = buf.getByte(0);
+                boolean expectKeyframe = frame % (VxVertexStreamCodec.KEYFRAME_INTERVAL + 1) == 0;
+                helper.assertTrue((kind == VxVertexStreamCodec.RECORD_KEYFRAME) == expectKeyframe,
+                        "Frame " + frame + " has record kind " + kind + ".");
+                if (kind == VxVertexStreamCodec.RECORD_DELTA && frame % (VxVertexStreamCodec.KEYFRAME_INTERVAL + 1) != 1) {
+                    // The first delta after a keyframe has no linear prediction yet
+                    largestPredictedDeltaBytes = Math.max(largestPredictedDeltaBytes, buf.readableBytes());
+                }
+
+                received = VxVertexStreamCodec.read(buf.duplicate(), watcher, received);
+                helper.assertTrue(received != null, "Frame " + frame + " could not be reconstructed.");
+                float error = maxError(vertices, received);
+                helper.assertTrue(error <= maxQuantizationError(), "Frame " + frame + " is off by " + error + ".");
+
+                if (frame >= joinFrame) {
+                    float[] late = VxVertexStreamCodec.read(buf.duplicate(), lateJoiner, null);
+                    if (frame <= VxVertexStreamCodec.KEYFRAME_INTERVAL) {
+                        helper.assertTrue(late == null, "A delta was applied without its history at frame " + frame + ".");
+                    } else {
+                        helper.assertTrue(late != null && maxError(vertices, late) <= maxQuantizationError(),
+                                "Late receiver did not recover at frame " + frame + ".");
+                    }
+                }
+            }
+        } finally {
+            buf.release();
+        }
+
+        // Smooth motion must leave single-byte residuals: one byte per coordinate plus the record header
+        helper.assertTrue(largestPredictedDeltaBytes <= GRID * GRID * 3 + 8,
+                "Predicted deltas take up to " + largestPredictedDeltaBytes + " bytes.");
+        helper.succeed();
+    }
+
+    /**
+     * A square cloth grid with a travelling wave, drifting slowly sideways.
+     */
+    private static float[] cloth(int frame) {
+        float[] vertices = new float[GRID * GRID * 3];
+        int j = 0;
+        for (int x = 0; x < GRID; x++) {
+            for (int z = 0; z < GRID; z++) {
+                float u = x * SIZE / (GRID - 1);
+                float v = z * SIZE / (GRID - 1);
+                vertices[j++] = u + frame * 0.01f;
+                vertices[j++] = 0.3f * (float) Math.sin(u + frame * 0.05f);
+                vertices[j++] = v;
+            }
+        }
+        return vertices;
+    }
+
+    /**
+     * Half a quantization step of the largest axis extent, plus float rounding.
+     * Steps never get finer than the codec's minimum step of 1e-4 blocks.
+     */
+    private static float maxQuantizationError() {
+        float extent = SIZE + 1.0f;
+        return 0.5f * Math.max(extent / 0xFFFF, 1.0e-4f) + 1.0e-5f;
+    }
+
+    private static float maxError(float[] expected, float[] actual) {
+        float max = 0;
+        for (int i = 0; i < expected.length; i++) {
+            max = Math.max(max, Math.abs(expected[i] - actual[i]));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.mixin.impl.body;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.network.PlayerChunkSender;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.xmx.velthoric.core.body.server.VxServerBodyManager;
+import net.xmx.velthoric.core.network.internal.VxNetworkDispatcher;
+import net.xmx.velthoric.core.physics.world.VxPhysicsWorld;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Mixin to hook into {@link PlayerChunkSender} to learn when a chunk has actually been sent to a client.
+ * Chunks are only marked pending when they enter a player's view and are sent later in rate-limited batches,
+ * so physics bodies inside a chunk are held back by the network dispatcher until this point.
+ *
+ * @author xI-Mx-Ix
+ */
+@Mixin(PlayerChunkSender.class)
+public abstract class MixinPlayerChunkSender_ChunkTracking {
+
+    /**
+     * Injects after the chunk packet has been written to the player's connection.
+     *
+     * @param packetListener The player's packet listener.
+     * @param level The level the chunk belongs to.
+     * @param chunk The chunk that was sent.
+     * @param ci Callback info.
+     */
+    @Inject(method = "sendChunk", at = @At("TAIL"))
+    private static void velthoric$onSendChunk(ServerGamePacketListenerImpl packetListener, ServerLevel level, LevelChunk chunk, CallbackInfo ci) {
+        VxPhysicsWorld world = VxPhysicsWorld.get(level.dimension());
+        if (world != null) {
+            VxServerBodyManager manager = world.getBodyManager();
+            if (manager != null) {
+                VxNetworkDispatcher dispatcher = manager.getNetworkDispatcher();
+                if (dispatcher != null) {
+                    dispatcher.onChunkSent(packetListener.player, chunk.getPos());
+                }
+            }
+        }
+    }
+}
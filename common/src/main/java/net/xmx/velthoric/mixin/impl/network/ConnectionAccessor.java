@@ -0,0 +1,27 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.mixin.impl.network;
+
+import io.netty.channel.Channel;
+import net.minecraft.network.Connection;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+/**
+ * Accessor mixin to retrieve the Netty channel of a connection.
+ * This is required to check channel writability before queueing high-frequency state packets.
+ *
+ * @author xI-Mx-Ix
+ */
+@Mixin(Connection.class)
+public interface ConnectionAccessor {
+    /**
+     * Accesses the underlying Netty channel.
+     *
+     * @return The channel, or null if the connection has not been established yet.
+     */
+    @Accessor("channel")
+    Channel velthoric_getChannel();
+}
@@ -0,0 +1,27 @@
+/*
+ * This file is part of Velthoric.
+ * Licensed under LGPL 3.0.
+ */
+package net.xmx.velthoric.mixin.impl.network;
+
+import net.minecraft.network.Connection;
+import net.minecraft.server.network.ServerCommonPacketListenerImpl;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+/**
+ * Accessor mixin to retrieve the connection of a server-side packet listener.
+ * This is required to send packets without an immediate flush and to flush once per sync cycle.
+ *
+ * @author xI-Mx-Ix
+ */
+@Mixin(ServerCommonPacketListenerImpl.class)
+public interface ServerCommonPacketListenerImplAccessor {
+    /**
+     * Accesses the network connection of the listener.
+     *
+     * @return The connection instance.
+     */
+    @Accessor("connection")
+    Connection velthoric_getConnection();
+}
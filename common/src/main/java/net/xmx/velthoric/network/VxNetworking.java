@@ -10,15 +10,22 @@ import dev.architectury.utils.Env;
 import dev.architectury.utils.GameInstance;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import it.unimi.dsi.fastutil.bytes.Byte2ObjectMap;
 import it.unimi.dsi.fastutil.bytes.Byte2ObjectOpenHashMap;
 import net.fabricmc.api.EnvType;
+import net.minecraft.network.Connection;
+import net.minecraft.network.protocol.common.ClientboundCustomPayloadPacket;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.Level;
+import net.xmx.velthoric.core.network.metrics.VxNetworkMetrics;
+import net.xmx.velthoric.mixin.impl.network.ConnectionAccessor;
+import net.xmx.velthoric.mixin.impl.network.ServerCommonPacketListenerImplAccessor;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
@@ -102,6 +109,9 @@ public class VxNetworking {
 
         targetMap.put(byteId, (Function<VxByteBuf, IVxNetPacket>) decoder);
         PACKET_TO_ID.put(clazz, byteId);
+        if (side == NetworkManager.Side.S2C) {
+            VxNetworkMetrics.getInstance().registerPacketType(id, clazz.getSimpleName());
+        }
     }
 
     /**
@@ -216,9 +226,70 @@ public class VxNetworking {
         byte[] data = createByteArray(packet);
         if (NetworkManager.canPlayerReceive(player, VxRawPayload.TYPE_S2C)) {
             NetworkManager.sendToPlayer(player, new VxRawPayload(data, VxRawPayload.TYPE_S2C));
+            recordSent(player, data);
+        }
+    }
+
+    /**
+     * Writes a packet to a player's connection, optionally without flushing the channel.
+     * <p>
+     * Used by high-frequency senders that write several packets per cycle and flush once
+     * via {@link #flush(ServerPlayer)}.
+     *
+     * @param player The target player.
+     * @param packet The packet to send.
+     * @param flush  Whether to flush the channel immediately.
+     */
+    public static void sendToPlayer(ServerPlayer player, IVxNetPacket packet, boolean flush) {
+        if (flush) {
+            sendToPlayer(player, packet);
+            return;
+        }
+        byte[] data = createByteArray(packet);
+        if (NetworkManager.canPlayerReceive(player, VxRawPayload.TYPE_S2C)) {
+            getConnection(player).send(new ClientboundCustomPayloadPacket(new VxRawPayload(data, VxRawPayload.TYPE_S2C)), null, false);
+            recordSent(player, data);
+        }
+    }
+
+    /**
+     * Accounts an encoded packet sent to a player in the {@link VxNetworkMetrics}.
+     */
+    private static void recordSent(ServerPlayer player, byte[] data) {
+        VxNetworkMetrics metrics = VxNetworkMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordPacketSent(player.getUUID(), player.getGameProfile().getName(), data[0], data.length);
         }
     }
 
+    /**
+     * Flushes all packets written to a player's connection without an immediate flush.
+     *
+     * @param player The target player.
+     */
+    public static void flush(ServerPlayer player) {
+        getConnection(player).flushChannel();
+    }
+
+    /**
+     * Checks whether a player's channel can accept more outbound data without exceeding
+     * the Netty high water mark.
+     *
+     * @param player The target player.
+     * @return True if the channel is open and writable.
+     */
+    public static boolean isWritable(ServerPlayer player) {
+        Channel channel = ((ConnectionAccessor) getConnection(player)).velthoric_getChannel();
+        return channel != null && channel.isWritable();
+    }
+
+    /**
+     * Resolves the network connection of a server-side player.
+     */
+    private static Connection getConnection(ServerPlayer player) {
+        return ((ServerCommonPacketListenerImplAccessor) player.connection).velthoric_getConnection();
+    }
+
     /**
      * Sends a packet from the Server to all connected players.
      *
@@ -228,10 +299,9 @@ public class VxNetworking {
         if (GameInstance.getServer() == null) return;
 
         byte[] data = createByteArray(packet);
-        NetworkManager.sendToPlayers(
-                GameInstance.getServer().getPlayerList().getPlayers(),
-                new VxRawPayload(data, VxRawPayload.TYPE_S2C)
-        );
+        List<ServerPlayer> players = GameInstance.getServer().getPlayerList().getPlayers();
+        NetworkManager.sendToPlayers(players, new VxRawPayload(data, VxRawPayload.TYPE_S2C));
+        VxNetworkMetrics.getInstance().recordPacketBroadcast(data[0], data.length, players.size());
     }
 
     /**
@@ -247,6 +317,7 @@ public class VxNetworking {
         if (level != null) {
             byte[] data = createByteArray(packet);
             NetworkManager.sendToPlayers(level.players(), new VxRawPayload(data, VxRawPayload.TYPE_S2C));
+            VxNetworkMetrics.getInstance().recordPacketBroadcast(data[0], data.length, level.players().size());
         }
     }
 }
\ No newline at end of file